@@ -58,6 +58,11 @@ public final class RestfulParameters {
      */
     public static final String MEMBERSHIP_JPA_ID = "memid";
 
+    /**
+     * Parameter name for a JPA ID of an Activity.
+     */
+    public static final String ACTIVITY_JPA_ID = "actid";
+
     /**
      * Parameter name for a JPA ID of an Address Category.
      */
@@ -93,6 +98,67 @@ public final class RestfulParameters {
      */
     public static final String TO_DATE = "tod";
 
+    /**
+     * Parameter name for a boolean flag restricting results to items to which the active Membership is admitted.
+     */
+    public static final String ADMITTED_ONLY = "admitted";
+
+    /**
+     * Parameter name for the JPA ID of an ActivitySeries.
+     */
+    public static final String SERIES_JPA_ID = "seriesid";
+
+    /**
+     * Parameter name for the start time of an occurrence within an ActivitySeries, given in yyyyMMddHHmmss form.
+     */
+    public static final String OCCURRENCE = "occurrence";
+
+    /**
+     * Parameter name for the scope of an edit within an ActivitySeries.
+     */
+    public static final String SCOPE = "scope";
+
+    /**
+     * Parameter name for Membership JPA IDs, given as repeated parameters or as a comma-separated list.
+     */
+    public static final String MEMBERS = "members";
+
+    /**
+     * Parameter name for the maximum number of results retrieved.
+     */
+    public static final String MAX_RESULTS = "max";
+
+    /**
+     * Parameter name for the index of the first result retrieved.
+     */
+    public static final String FIRST_RESULT = "first";
+
+    /**
+     * Parameter name for facets to count within a faceted search, given as repeated parameters
+     * or as a comma-separated list.
+     */
+    public static final String FACETS = "facet";
+
+    /**
+     * Parameter name for the prefix of a name, used within autocomplete-style searches.
+     */
+    public static final String PREFIX = "prefix";
+
+    /**
+     * Parameter name for Group JPA IDs.
+     */
+    public static final String GROUP_JPA_ID = "groupid";
+
+    /**
+     * Parameter name for the number of levels retrieved within a hierarchy.
+     */
+    public static final String DEPTH = "depth";
+
+    /**
+     * Parameter name for a Locale, given as an IETF BCP 47 language tag (such as "sv-SE").
+     */
+    public static final String LOCALE = "locale";
+
     /*
      * Hide constructor for utility classes.
      */
@@ -22,7 +22,6 @@
 package se.mithlond.services.backend.war.resources.food;
 
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.Logger;
@@ -30,12 +29,15 @@ import org.slf4j.LoggerFactory;
 import se.mithlond.services.backend.war.resources.AbstractResource;
 import se.mithlond.services.backend.war.resources.RestfulParameters;
 import se.mithlond.services.content.api.report.ExcelReportService;
+import se.mithlond.services.content.api.report.ExcelSheetWriter;
 import se.mithlond.services.content.api.report.ReportService;
 import se.mithlond.services.organisation.api.FoodAndAllergyService;
+import se.mithlond.services.organisation.api.FoodCatalogueService;
 import se.mithlond.services.organisation.api.parameters.FoodAndAllergySearchParameters;
 import se.mithlond.services.organisation.model.food.Allergy;
 import se.mithlond.services.organisation.model.food.Food;
 import se.mithlond.services.organisation.model.food.FoodPreference;
+import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.food.Foods;
 import se.mithlond.services.shared.spi.algorithms.TimeFormat;
 
@@ -46,8 +48,12 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
@@ -74,69 +80,94 @@ public class FoodResource extends AbstractResource {
     @EJB
     private ExcelReportService excelReportService;
 
+    @EJB
+    private FoodCatalogueService foodCatalogueService;
+
     /**
-     * Retrieves a Foods container holding all known Food substances, including all Categorization.
+     * <p>Retrieves a Foods container holding all known Food substances, including all Categorization.
+     * Unless all details are requested, the Foods are served from the in-memory Food catalogue, and may be
+     * narrowed down using a prefix (which also matches misspelled words). Responses from the catalogue carry
+     * an entity tag, implying that clients may issue conditional requests.</p>
      *
      * @param getAllDetails if {@code true}, includes a detailed representation of all food
      *                      stuffs - and otherwise a shallow one.
-     * @return a Foods transport container holding all Food known to this organisation.
+     * @param prefix        An optional prefix of the (localized) food name or category name. Ignored if all
+     *                      details are requested.
+     * @param localeTag     An optional language tag (such as "sv-SE") of the Locale used for food names.
+     *                      Defaults to the Locale of the Organisation of the ActiveMembership.
+     * @param maxResults    The maximum number of Foods retrieved when searching by prefix.
+     * @param request       The active Request, used to evaluate preconditions.
+     * @return a Foods transport container holding all Food known to this organisation (or the ones matching
+     * the supplied prefix), or a "304 Not Modified" response if the client's copy is still valid.
      */
     @GET
-    public Foods getAllFoods(@QueryParam(RestfulParameters.DETAILS)
-                             @DefaultValue("false") final boolean getAllDetails) {
+    public Response getAllFoods(
+            @QueryParam(RestfulParameters.DETAILS) @DefaultValue("false") final boolean getAllDetails,
+            @QueryParam(RestfulParameters.PREFIX) final String prefix,
+            @QueryParam(RestfulParameters.LOCALE) final String localeTag,
+            @QueryParam(RestfulParameters.MAX_RESULTS) @DefaultValue("" + FoodCatalogueService.DEFAULT_MAX_RESULTS)
+            final int maxResults,
+            @Context final Request request) {
+
+        // Use the same Locale as the Organisation of the ActiveMembership, unless another Locale was requested.
+        final Locale locale = localeTag == null || localeTag.trim().isEmpty()
+                ? getActiveMembership().getOrganisation().getLocale()
+                : Locale.forLanguageTag(localeTag.trim());
+
+        if (getAllDetails) {
+
+            final Foods toReturn = new Foods(false, locale);
 
-        // Use the same Locale as the Organisation of the ActiveMembership.
-        final Locale locale = getActiveMembership().getOrganisation().getLocale();
-        final Foods toReturn = new Foods(!getAllDetails, locale);
+            // Find and add all Foods.
+            foodAndAllergyService.getAllFoods().forEach(f -> toReturn.add(false, f));
 
-        // Find and add all Foods.
-        foodAndAllergyService.getAllFoods().forEach(f -> toReturn.add(!getAllDetails, f));
+            // Find and add all FoodPreference Categories.
+            toReturn.getFoodPreferences().addAll(foodAndAllergyService.getAllFoodPreferences());
+
+            // All Done.
+            return Response.ok(toReturn).build();
+        }
+
+        // Is the client's copy of the Foods still valid?
+        final EntityTag entityTag = new EntityTag(locale.toLanguageTag() + "-"
+                + foodCatalogueService.getCatalogueVersion());
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.tag(entityTag).build();
+        }
 
-        // Find and add all FoodPreference Categories.
-        toReturn.getFoodPreferences().addAll(foodAndAllergyService.getAllFoodPreferences());
+        final Foods toReturn = prefix == null || prefix.trim().isEmpty()
+                ? foodCatalogueService.getFoods(locale)
+                : foodCatalogueService.searchFoods(locale, prefix, maxResults);
 
         // All Done.
-        return toReturn;
+        return Response.ok(toReturn).tag(entityTag).build();
     }
 
     /**
+     * Retrieves the Allergies and Preferences food report, which is streamed to the client as it is written.
+     *
+     * @param includeLoginNotPermitted If {@code true}, even memberships currently not permitted login are included.
      * @return The Allergies and Preferences food report.
      */
     @GET
     @Path("/report/excel")
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    @Produces(ExcelReportService.EXCEL_CONTENT_TYPE)
+    @Produces(ExcelReportService.XLSX_CONTENT_TYPE)
     public Response getAllergyAndPreferencesReport(
             @QueryParam(RestfulParameters.INCLUDE_LOGIN_NOT_PERMITTED) final Boolean includeLoginNotPermitted) {
 
-        // Create the workbook to return
-        final Workbook workbook = excelReportService.createDocument(getActiveMembership(),
-                "Allergier och Matpreferenser");
-        final String fileName = "allergyReport_" + TimeFormat.COMPACT_LOCALDATETIME.print(LocalDateTime.now()) + ".xls";
+        final Membership activeMembership = getActiveMembership();
+        final String fileName = "allergyReport_" + TimeFormat.COMPACT_LOCALDATETIME.print(LocalDateTime.now())
+                + ".xlsx";
         final boolean withLoginOnly = includeLoginNotPermitted != null && !includeLoginNotPermitted;
 
-        final List<String> allergyColumns = Arrays.asList("Alias",
-                "Allergigrad",
-                "Allerginivå",
-                "Födoämne",
-                "Grupp",
-                "Undergrupp");
-        final Sheet allergySheet = excelReportService.createStandardExcelSheet(
-                workbook,
-                "Allergier",
-                "Allergier",
-                allergyColumns);
-
-        if (log.isDebugEnabled()) {
-            log.debug("Got non-null Workbook: " + (workbook != null));
-        }
-
         // #1) Find the allergies and food prefs per membership alias.
         final SortedMap<String, SortedSet<Allergy>> alias2AllergiesMap = new TreeMap<>();
         final SortedMap<String, SortedSet<FoodPreference>> alias2PreferencesMap = new TreeMap<>();
 
         final FoodAndAllergySearchParameters searchParameters = FoodAndAllergySearchParameters.builder()
-                .withOrganisationIDs(getActiveMembership().getOrganisation().getId())
+                .withOrganisationIDs(activeMembership.getOrganisation().getId())
                 .withLoginOnly(withLoginOnly)
                 .build();
         foodAndAllergyService.getAllergiesFor(searchParameters).forEach((k, v) -> {
@@ -146,80 +177,110 @@ public class FoodResource extends AbstractResource {
             alias2PreferencesMap.put(k.getAlias(), v);
         });
 
-        // #2) Create an Excel Sheet holding the Allergies.
-        int currentRowIndex = 2;
-        final CellStyle standardCellStyle = excelReportService.getCellStyle(
-                ExcelReportService.ExcelElement.NON_WRAPPING,
-                workbook);
-        final CellStyle rowCellStyle = excelReportService.getCellStyle(ExcelReportService.ExcelElement.CELL,
-                workbook);
+        // #2) Create and write the workbook while streaming the response.
+        final StreamingOutput output = out -> {
 
-        for (Map.Entry<String, SortedSet<Allergy>> current : alias2AllergiesMap.entrySet()) {
+            final Workbook workbook = excelReportService.createStreamingDocument(activeMembership,
+                    "Allergier och Matpreferenser",
+                    ExcelReportService.DEFAULT_ROW_WINDOW_SIZE,
+                    true);
+            try {
+
+                addAllergySheet(workbook, alias2AllergiesMap);
+                addPreferenceSheet(workbook, alias2PreferencesMap);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Streaming allergy report for [" + alias2AllergiesMap.size() + "] and preference report "
+                            + "for [" + alias2PreferencesMap.size() + "] aliases.");
+                }
+                workbook.write(out);
+
+            } finally {
+                excelReportService.dispose(workbook);
+            }
+        };
 
-            final SortedSet<Allergy> allergies = current.getValue();
+        // All Done.
+        return Response.ok(output, ExcelReportService.XLSX_CONTENT_TYPE)
+                .header(ReportService.SUGGESTED_FILENAME_HEADER, fileName)
+                .header("Content-Disposition", "attachment; filename=" + fileName)
+                .build();
+    }
 
-            if (allergies.size() > 0) {
+    //
+    // Private helpers
+    //
 
-                for (Allergy currentAllergy : allergies) {
+    private void addAllergySheet(final Workbook workbook,
+                                 final SortedMap<String, SortedSet<Allergy>> alias2AllergiesMap) {
 
-                    final Row currentRow = allergySheet.createRow(currentRowIndex++);
-                    currentRow.setRowStyle(rowCellStyle);
+        final List<String> allergyColumns = Arrays.asList("Alias",
+                "Allergigrad",
+                "Allerginivå",
+                "Födoämne",
+                "Grupp",
+                "Undergrupp");
+        final Sheet allergySheet = excelReportService.createStandardExcelSheet(
+                workbook,
+                "Allergier",
+                "Allergier",
+                allergyColumns);
 
-                    final Food currentFood = currentAllergy.getFood();
-                    final String categoryID = currentFood.getCategory().getCategoryID();
-                    final String subcategoryID = currentFood.getSubCategory().getCategoryID();
-                    final String foodName = currentFood.getLocalizedFoodName().getText();
-                    final String allergySeverityDesc = currentAllergy.getSeverity().getShortDescription().getText();
-                    final String allergySortOrder = "" + currentAllergy.getSeverity().getSeveritySortOrder();
+        final CellStyle standardCellStyle = excelReportService.getCellStyle(
+                ExcelReportService.ExcelElement.NON_WRAPPING,
+                workbook);
+        final CellStyle rowCellStyle = excelReportService.getCellStyle(ExcelReportService.ExcelElement.CELL,
+                workbook);
 
-                    // Populate the row with Cells.
-                    excelReportService.addCell(0, currentRow, current.getKey(), standardCellStyle);
-                    excelReportService.addCell(1, currentRow, allergySeverityDesc, standardCellStyle);
-                    excelReportService.addCell(2, currentRow, allergySortOrder, standardCellStyle);
-                    excelReportService.addCell(3, currentRow, foodName, standardCellStyle);
-                    excelReportService.addCell(4, currentRow, categoryID, standardCellStyle);
-                    excelReportService.addCell(5, currentRow, subcategoryID, standardCellStyle);
-                }
+        final ExcelSheetWriter writer = new ExcelSheetWriter(allergySheet, allergyColumns);
+        for (Map.Entry<String, SortedSet<Allergy>> current : alias2AllergiesMap.entrySet()) {
+            for (Allergy currentAllergy : current.getValue()) {
+
+                final Food currentFood = currentAllergy.getFood();
+                final String categoryID = currentFood.getCategory().getCategoryID();
+                final String subcategoryID = currentFood.getSubCategory().getCategoryID();
+                final String foodName = currentFood.getLocalizedFoodName().getText();
+                final String allergySeverityDesc = currentAllergy.getSeverity().getShortDescription().getText();
+                final String allergySortOrder = "" + currentAllergy.getSeverity().getSeveritySortOrder();
+
+                // Populate the row with Cells.
+                writer.addRow(standardCellStyle,
+                        current.getKey(),
+                        allergySeverityDesc,
+                        allergySortOrder,
+                        foodName,
+                        categoryID,
+                        subcategoryID)
+                        .setRowStyle(rowCellStyle);
             }
         }
+        writer.applyColumnWidths();
+    }
+
+    private void addPreferenceSheet(final Workbook workbook,
+                                    final SortedMap<String, SortedSet<FoodPreference>> alias2PreferencesMap) {
 
-        // #3) Create an Excel Sheet holding the Food preferences.
-        currentRowIndex = 2;
         final List<String> preferenceColumnNames = Arrays.asList("Alias", "Preferens", "Beskrivning");
         final Sheet preferenceSheet = excelReportService.createStandardExcelSheet(workbook,
                 "Preferenser",
                 "Matpreferenser",
                 preferenceColumnNames);
 
-        // Insert relevant data into the Excel Sheet.
-        currentRowIndex = 2;
-        for (Map.Entry<String, SortedSet<FoodPreference>> current : alias2PreferencesMap.entrySet()) {
-
-            final SortedSet<FoodPreference> preferences = current.getValue();
-
-            if (preferences.size() > 0) {
-
-                for (FoodPreference currentPreference : preferences) {
+        final CellStyle standardCellStyle = excelReportService.getCellStyle(
+                ExcelReportService.ExcelElement.NON_WRAPPING,
+                workbook);
 
-                    final Row currentRow = preferenceSheet.createRow(currentRowIndex++);
-                    final String categoryID = currentPreference.getCategory().getCategoryID();
-                    final String desc = currentPreference.getCategory().getDescription();
+        final ExcelSheetWriter writer = new ExcelSheetWriter(preferenceSheet, preferenceColumnNames);
+        for (Map.Entry<String, SortedSet<FoodPreference>> current : alias2PreferencesMap.entrySet()) {
+            for (FoodPreference currentPreference : current.getValue()) {
 
-                    // Populate the row with Cells.
-                    excelReportService.addCell(0, currentRow, current.getKey(), standardCellStyle);
-                    excelReportService.addCell(1, currentRow, categoryID, standardCellStyle);
-                    excelReportService.addCell(2, currentRow, desc, standardCellStyle);
-                }
+                // Populate the row with Cells.
+                writer.addRow(standardCellStyle,
+                        current.getKey(),
+                        currentPreference.getCategory().getCategoryID(),
+                        currentPreference.getCategory().getDescription());
             }
         }
-
-        // Convert the workbook to a byte[], and send it back to the client.
-        final Response.ResponseBuilder builder = Response.ok(
-                excelReportService.convertToByteArray(workbook), ExcelReportService.EXCEL_CONTENT_TYPE)
-                .header(ReportService.SUGGESTED_FILENAME_HEADER, fileName);
-        builder.header("Content-Disposition", "attachment; filename=" + fileName);
-
-        // All Done.
-        return builder.build();
+        writer.applyColumnWidths();
     }
 }
@@ -22,30 +22,72 @@
 package se.mithlond.services.backend.war.resources.organisation;
 
 import io.swagger.annotations.Api;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.backend.war.resources.AbstractResource;
 import se.mithlond.services.backend.war.resources.RestfulParameters;
+import se.mithlond.services.content.api.report.ExcelReportService;
+import se.mithlond.services.content.api.report.ExcelSheetWriter;
+import se.mithlond.services.content.api.report.ReportService;
+import se.mithlond.services.organisation.api.ActivityConflictService;
+import se.mithlond.services.organisation.api.ActivitySeriesService;
 import se.mithlond.services.organisation.api.ActivityService;
+import se.mithlond.services.organisation.api.AdmissionService;
+import se.mithlond.services.organisation.api.AllergyMatrixService;
 import se.mithlond.services.organisation.api.parameters.ActivitySearchParameters;
+import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflicts;
+import se.mithlond.services.organisation.model.transport.activity.ActivityFacetVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivitySeriesVO;
 import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
 import se.mithlond.services.organisation.model.transport.activity.Admissions;
+import se.mithlond.services.organisation.model.transport.activity.FreeBusy;
 import se.mithlond.services.organisation.model.transport.address.CategoriesAndAddresses;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrix;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrixCellVO;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrixRowVO;
+import se.mithlond.services.organisation.model.transport.food.FoodPreferenceCountVO;
 import se.mithlond.services.shared.spi.algorithms.TimeFormat;
+import se.mithlond.services.shared.spi.algorithms.calendar.ICalendarWriter;
 
 import javax.ejb.EJB;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Resource facade to Activities and Activity management.
@@ -59,10 +101,30 @@ public class ActivityResource extends AbstractResource {
     // Our log
     private static final Logger log = LoggerFactory.getLogger(ActivityResource.class);
 
+    /**
+     * The PRODID of calendar feeds emitted by this resource.
+     */
+    public static final String CALENDAR_PRODUCT_ID = "-//Mithlond//Mithlond Services//SV";
+
     // Internal state
     @EJB
     private ActivityService activityService;
 
+    @EJB
+    private AdmissionService admissionService;
+
+    @EJB
+    private ActivitySeriesService activitySeriesService;
+
+    @EJB
+    private ActivityConflictService activityConflictService;
+
+    @EJB
+    private AllergyMatrixService allergyMatrixService;
+
+    @EJB
+    private ExcelReportService excelReportService;
+
     /**
      * Retrieves all Activities owned by an Organisation within a DateTime interval.
      *
@@ -122,6 +184,163 @@ public class ActivityResource extends AbstractResource {
         }
     }
 
+    /**
+     * Performs a faceted and paginated search for the Activities owned by an Organisation within a DateTime
+     * interval. The result holds a page of shallow ActivityVOs, the total number of matching Activities and the
+     * counts of the requested facets.
+     *
+     * @param organisationID The ID of the Organisation owning the activities extracted.
+     * @param fromDate       The String representing the beginning of the interval which should contain the
+     *                       {@link Activity#getStartTime()}, in the form 'yyyyMMdd'. Defaults to now.
+     * @param toDate         The String representing the end of the interval which should contain the
+     *                       {@link Activity#getStartTime()}, in the form 'yyyyMMdd'. Defaults to two months
+     *                       after the fromDate.
+     * @param facets         The names of the facets to count, such as {@code MONTH}, given as repeated parameters
+     *                       or comma-separated lists.
+     * @param firstResult    The index of the first ActivityVO within the page. Defaults to 0.
+     * @param maxResults     The maximum number of ActivityVOs within the page. Defaults to 0, implying all.
+     * @return An {@link Activities} wrapper holding the page, total count and facet counts.
+     */
+    @GET
+    @Path("/search")
+    public Activities searchActivities(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            @QueryParam(RestfulParameters.FROM_DATE) final String fromDate,
+            @QueryParam(RestfulParameters.TO_DATE) final String toDate,
+            @QueryParam(RestfulParameters.FACETS) final List<String> facets,
+            @QueryParam(RestfulParameters.FIRST_RESULT) @DefaultValue("0") final int firstResult,
+            @QueryParam(RestfulParameters.MAX_RESULTS) @DefaultValue("0") final int maxResults) {
+
+        // Check sanity
+        Validate.notNull(organisationID, "organisationID");
+
+        // Handle default values for from and to dates
+        final LocalDateTime fromDateTime = fromDate == null || fromDate.isEmpty()
+                ? LocalDateTime.now()
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(fromDate)).atStartOfDay();
+        final LocalDateTime toDateTime = toDate == null || toDate.isEmpty()
+                ? fromDateTime.plusMonths(2)
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(toDate)).atStartOfDay();
+
+        // Accept both repeated parameters and comma-separated lists.
+        final ActivityFacetVO.Facet[] requestedFacets = facets == null
+                ? new ActivityFacetVO.Facet[0]
+                : facets.stream()
+                .filter(Objects::nonNull)
+                .flatMap(current -> Arrays.stream(current.split(",")))
+                .map(current -> current.trim().toUpperCase(Locale.ENGLISH))
+                .filter(current -> !current.isEmpty())
+                .map(ActivityFacetVO.Facet::valueOf)
+                .toArray(ActivityFacetVO.Facet[]::new);
+
+        final ActivitySearchParameters params = ActivitySearchParameters.builder()
+                .withOrganisationIDs(organisationID)
+                .withStartPeriod(fromDateTime)
+                .withEndPeriod(toDateTime)
+                .withFacets(requestedFacets)
+                .withPage(firstResult, maxResults)
+                .build();
+
+        // Delegate to the service
+        final Activities toReturn = activityService.searchActivities(params, getActiveMembership());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Returning [" + toReturn.getActivityVOs().size() + " / " + toReturn.getTotalCount()
+                    + "] ActivityVOs and facets " + toReturn.getFacets());
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves an iCalendar (RFC 5545) feed of the Activities owned by an Organisation, suitable for
+     * subscription from calendar applications. The feed is streamed to the client while Activities are read
+     * from the database, implying that memory consumption is constant regardless of the number of Activities.
+     * The response carries an ETag calculated from the Activity versions, and responds with
+     * {@code 304 Not Modified} if the client supplies a matching {@code If-None-Match} header.
+     *
+     * @param organisationID The ID of the Organisation owning the activities extracted.
+     * @param fromDate       The String representing the beginning of the interval which should contain the
+     *                       {@link Activity#getStartTime()}, in the form 'yyyyMMdd'. Defaults to one month ago.
+     * @param toDate         The String representing the end of the interval which should contain the
+     *                       {@link Activity#getStartTime()}, in the form 'yyyyMMdd'. Defaults to one year
+     *                       after the fromDate.
+     * @param admittedOnly   if {@code true}, only Activities to which the active Membership is admitted are
+     *                       included in the feed.
+     * @param request        The active Request, used to evaluate preconditions.
+     * @return A Response streaming the iCalendar feed, or a {@code 304 Not Modified} response.
+     */
+    @GET
+    @Path("/calendar.ics")
+    @Produces(ICalendarWriter.CONTENT_TYPE + ";charset=UTF-8")
+    public Response getActivityCalendar(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            @QueryParam(RestfulParameters.FROM_DATE) final String fromDate,
+            @QueryParam(RestfulParameters.TO_DATE) final String toDate,
+            @QueryParam(RestfulParameters.ADMITTED_ONLY) @DefaultValue("false") final boolean admittedOnly,
+            @Context final Request request) {
+
+        // Handle default values for from and to dates
+        final LocalDateTime fromDateTime = fromDate == null || fromDate.isEmpty()
+                ? LocalDate.now().minusMonths(1).atStartOfDay()
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(fromDate)).atStartOfDay();
+        final LocalDateTime toDateTime = toDate == null || toDate.isEmpty()
+                ? fromDateTime.plusYears(1)
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(toDate)).atStartOfDay();
+
+        final Membership activeMembership = getActiveMembership();
+        final ActivitySearchParameters.ActivitySearchParametersBuilder builder = ActivitySearchParameters.builder()
+                .withOrganisationIDs(organisationID)
+                .withStartPeriod(fromDateTime)
+                .withEndPeriod(toDateTime);
+        if (admittedOnly) {
+            builder.withMembershipIDs(activeMembership.getId());
+        }
+        final ActivitySearchParameters params = builder.build();
+
+        // Is the client's copy of the feed still valid?
+        final EntityTag entityTag = new EntityTag(organisationID + "-" + (admittedOnly ? activeMembership.getId() : 0)
+                + "-" + activityService.getCalendarFeedVersion(params));
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("Calendar feed for OrgID [" + organisationID + "] not modified. ETag: " + entityTag);
+            }
+            return notModified.tag(entityTag).build();
+        }
+
+        final StreamingOutput feed = output -> {
+
+            final ICalendarWriter writer = new ICalendarWriter(output);
+            final LocalDateTime timestamp = LocalDateTime.now(ZoneOffset.UTC);
+
+            writer.begin(ICalendarWriter.VCALENDAR)
+                    .property("VERSION", "2.0")
+                    .property("PRODID", CALENDAR_PRODUCT_ID)
+                    .property("CALSCALE", "GREGORIAN")
+                    .property("METHOD", "PUBLISH");
+
+            try {
+                activityService.streamCalendarFeed(params, activity -> {
+                    try {
+                        writeEvent(writer, activity, timestamp);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            writer.end(ICalendarWriter.VCALENDAR).flush();
+        };
+
+        // All Done.
+        return Response.ok(feed).tag(entityTag).build();
+    }
+
     /**
      * Retrieves CategoriesAndAddresses for the supplied organisation.
      *
@@ -191,6 +410,189 @@ public class ActivityResource extends AbstractResource {
         return activityService.updateActivities(activities, true, getActiveMembership());
     }
 
+    /**
+     * Retrieves the existing Activities which conflict with the supplied (proposed) Activity, i.e. Activities
+     * overlapping it in time at the same location, or to which any of its admitted Memberships are already
+     * admitted. Nothing is created or changed.
+     *
+     * @param organisationID The ID of the Organisation owning the proposed Activity.
+     * @param proposed       The proposed Activity, which must have start and end times. If the proposed Activity
+     *                       already exists, it is not reported as conflicting with itself.
+     * @return An {@link ActivityConflicts} wrapper holding all detected conflicts. Empty if none were found.
+     */
+    @POST
+    @Path("/conflicts")
+    public ActivityConflicts getConflicts(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            final ActivityVO proposed) {
+
+        // Check sanity
+        Validate.notNull(organisationID, "organisationID");
+        Validate.notNull(proposed, "proposed");
+
+        // Delegate to the service
+        final ActivityConflicts toReturn = activityConflictService.getConflicts(organisationID, proposed);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Found [" + toReturn.getConflicts().size() + "] conflicts for proposed Activity ["
+                    + proposed.getShortDesc() + "]");
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the free/busy information of some Memberships within a time window; the merged busy intervals of
+     * each Membership, as well as the free slots common to all supplied Memberships.
+     *
+     * @param organisationID The ID of the Organisation of the Memberships.
+     * @param members        The JPA IDs of the Memberships, given as repeated parameters or comma-separated lists.
+     * @param fromDate       The String representing the beginning of the time window, in the form 'yyyyMMdd'.
+     *                       Defaults to the start of today.
+     * @param toDate         The String representing the end of the time window, in the form 'yyyyMMdd'.
+     *                       Defaults to three months after the fromDate.
+     * @return A {@link FreeBusy} wrapper holding the busy intervals and common free slots.
+     */
+    @GET
+    @Path("/freebusy")
+    public FreeBusy getFreeBusy(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            @QueryParam(RestfulParameters.MEMBERS) final List<String> members,
+            @QueryParam(RestfulParameters.FROM_DATE) final String fromDate,
+            @QueryParam(RestfulParameters.TO_DATE) final String toDate) {
+
+        // Check sanity
+        Validate.notNull(organisationID, "organisationID");
+
+        // Handle default values for from and to dates
+        final LocalDateTime fromDateTime = fromDate == null || fromDate.isEmpty()
+                ? LocalDate.now().atStartOfDay()
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(fromDate)).atStartOfDay();
+        final LocalDateTime toDateTime = toDate == null || toDate.isEmpty()
+                ? fromDateTime.plusMonths(3)
+                : ((LocalDate) TimeFormat.COMPACT_LOCALDATE.parse(toDate)).atStartOfDay();
+
+        // Accept both repeated parameters and comma-separated lists.
+        final List<Long> membershipIDs = new ArrayList<>();
+        if (members != null) {
+            members.stream()
+                    .filter(Objects::nonNull)
+                    .flatMap(current -> Arrays.stream(current.split(",")))
+                    .map(String::trim)
+                    .filter(current -> !current.isEmpty())
+                    .forEach(current -> {
+                        try {
+                            membershipIDs.add(Long.parseLong(current));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Kunde inte tolka medlemskaps-ID [" + current + "]", e);
+                        }
+                    });
+        }
+
+        // Delegate to the service
+        final FreeBusy toReturn = activityService.getFreeBusy(organisationID, membershipIDs, fromDateTime, toDateTime);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Returning free/busy for [" + membershipIDs.size() + "] memberships within ["
+                    + fromDateTime + " - " + toDateTime + "]");
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Creates a new recurring ActivitySeries, and materializes its occurrences within the materialization horizon.
+     *
+     * @param seriesVO A non-null {@link ActivitySeriesVO} holding the template and recurrence rule of the series.
+     * @return An {@link Activities} container holding the materialized occurrences.
+     */
+    @POST
+    @Path("/series/create")
+    public Activities createActivitySeries(final ActivitySeriesVO seriesVO) {
+
+        // Check sanity
+        Validate.notNull(seriesVO, "seriesVO");
+
+        // Delegate to the service
+        final Activities toReturn = activitySeriesService.createActivitySeries(seriesVO, getActiveMembership());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Created [" + toReturn.getActivityVOs().size() + "] occurrences from " + seriesVO);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Updates an occurrence of an ActivitySeries, and optionally all later occurrences.
+     *
+     * @param seriesID    The JPA ID of the ActivitySeries.
+     * @param occurrence  The original start time of the occurrence to update, in the form 'yyyyMMddHHmmss'.
+     * @param scope       The name of the {@link ActivitySeriesService.EditScope} of the update,
+     *                    i.e. "THIS_OCCURRENCE" (default) or "ALL_FUTURE".
+     * @param targetState The ActivityVO holding the desired state of the occurrence.
+     * @return An {@link Activities} container holding all updated occurrences.
+     */
+    @POST
+    @Path("/series/{" + RestfulParameters.SERIES_JPA_ID + "}/update")
+    public Activities updateOccurrence(
+            @PathParam(RestfulParameters.SERIES_JPA_ID) final Long seriesID,
+            @QueryParam(RestfulParameters.OCCURRENCE) final String occurrence,
+            @QueryParam(RestfulParameters.SCOPE) @DefaultValue("THIS_OCCURRENCE") final String scope,
+            final ActivityVO targetState) {
+
+        // Check sanity
+        Validate.notNull(seriesID, "seriesID");
+        Validate.notEmpty(occurrence, "occurrence");
+
+        final LocalDateTime occurrenceStart = (LocalDateTime) TimeFormat.COMPACT_LOCALDATETIME.parse(occurrence);
+        final ActivitySeriesService.EditScope editScope = ActivitySeriesService.EditScope.valueOf(
+                scope.trim().toUpperCase());
+
+        // Delegate to the service
+        return activitySeriesService.updateOccurrence(seriesID,
+                occurrenceStart,
+                targetState,
+                editScope,
+                getActiveMembership());
+    }
+
+    /**
+     * Admits the active Membership to the Activity with the supplied JPA ID. Concurrent admissions to the
+     * same Activity are serialized, and any participant cap of the Activity is enforced atomically.
+     *
+     * @param activityID The JPA ID of the Activity to which the active Membership should be admitted.
+     * @param note       An optional admission note, supplied as plain text within the request body.
+     * @return The name of the resulting {@link AdmissionService.AdmissionOutcome}, such as "ADMITTED" or "FULL".
+     */
+    @POST
+    @Path("/{" + RestfulParameters.ACTIVITY_JPA_ID + "}/admit")
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces(MediaType.TEXT_PLAIN)
+    public String admit(@PathParam(RestfulParameters.ACTIVITY_JPA_ID) final Long activityID,
+                        final String note) {
+
+        // Check sanity
+        Validate.notNull(activityID, "activityID");
+
+        // Delegate to the service
+        final AdmissionService.AdmissionOutcome outcome = admissionService.admit(
+                getActiveMembership(),
+                activityID,
+                note == null || note.trim().isEmpty() ? null : note.trim());
+
+        if (log.isInfoEnabled()) {
+            log.info("Admission of [" + getActiveMembership().getAlias() + "] to Activity ["
+                    + activityID + "]: " + outcome);
+        }
+
+        // All Done.
+        return outcome.name();
+    }
+
     /**
      * Updates the Admissions for the active Membership into the supplied state.
      *
@@ -228,4 +630,152 @@ public class ActivityResource extends AbstractResource {
         // All Done
         return newState;
     }
+
+    /**
+     * Retrieves the aggregated Allergies and FoodPreferences of the Memberships admitted to an Activity,
+     * as a matrix of Foods and AllergySeverities holding the number and identities of allergic Memberships.
+     * The response carries an ETag holding the version of the matrix, and responds with
+     * {@code 304 Not Modified} if the client supplies a matching {@code If-None-Match} header.
+     *
+     * @param organisationID The ID of the Organisation owning the Activity.
+     * @param activityID     The JPA ID of the Activity.
+     * @param request        The active Request, used to evaluate preconditions.
+     * @return A Response holding the AllergyMatrix, or a {@code 304 Not Modified} response.
+     */
+    @GET
+    @Path("/{" + RestfulParameters.ACTIVITY_JPA_ID + "}/allergyMatrix")
+    public Response getAllergyMatrix(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            @PathParam(RestfulParameters.ACTIVITY_JPA_ID) final Long activityID,
+            @Context final Request request) {
+
+        // Check sanity
+        Validate.notNull(activityID, "activityID");
+
+        // Is the client's copy of the matrix still valid?
+        final EntityTag entityTag = new EntityTag(activityID + "-"
+                + allergyMatrixService.getAllergyMatrixVersion(organisationID, activityID));
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.tag(entityTag).build();
+        }
+
+        // All Done.
+        return Response.ok(allergyMatrixService.getAllergyMatrix(organisationID, activityID))
+                .tag(entityTag)
+                .build();
+    }
+
+    /**
+     * Retrieves the aggregated Allergies and FoodPreferences of the Memberships admitted to an Activity,
+     * as a compact Excel sheet holding one row per Food and one column per AllergySeverity.
+     *
+     * @param organisationID The ID of the Organisation owning the Activity.
+     * @param activityID     The JPA ID of the Activity.
+     * @return A Response holding the Excel Workbook.
+     */
+    @GET
+    @Path("/{" + RestfulParameters.ACTIVITY_JPA_ID + "}/allergyMatrix/excel")
+    @Produces(ExcelReportService.EXCEL_CONTENT_TYPE)
+    public Response getAllergyMatrixReport(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long organisationID,
+            @PathParam(RestfulParameters.ACTIVITY_JPA_ID) final Long activityID) {
+
+        // Check sanity
+        Validate.notNull(activityID, "activityID");
+        final AllergyMatrix matrix = allergyMatrixService.getAllergyMatrix(organisationID, activityID);
+
+        // #1) Find the AllergySeverities present within the matrix; one column each.
+        final SortedMap<Integer, String> severities = new TreeMap<>();
+        matrix.getRows().forEach(row -> row.getCells().forEach(
+                cell -> severities.put(cell.getSeveritySortOrder(), cell.getSeverity())));
+        final List<Integer> severityOrders = new ArrayList<>(severities.keySet());
+
+        final List<String> columns = new ArrayList<>();
+        columns.add("Födoämne");
+        columns.addAll(severities.values());
+        columns.add("Totalt");
+        columns.add("Vem");
+
+        final Workbook workbook = excelReportService.createDocument(getActiveMembership(), "Allergimatris");
+        final Sheet sheet = excelReportService.createStandardExcelSheet(workbook,
+                "Allergimatris",
+                "Allergier för " + matrix.getNumAdmitted() + " anmälda",
+                columns);
+        final CellStyle cellStyle = excelReportService.getCellStyle(
+                ExcelReportService.ExcelElement.NON_WRAPPING,
+                workbook);
+        final CellStyle headerStyle = excelReportService.getCellStyle(
+                ExcelReportService.ExcelElement.HEADER,
+                workbook);
+
+        // #2) One row per Food, fitting the column widths (including the aliases) to their content.
+        final ExcelSheetWriter writer = new ExcelSheetWriter(sheet, columns);
+        for (AllergyMatrixRowVO current : matrix.getRows()) {
+
+            final String[] cellTexts = new String[columns.size()];
+            cellTexts[0] = current.getFoodName();
+            for (AllergyMatrixCellVO cell : current.getCells()) {
+                cellTexts[1 + severityOrders.indexOf(cell.getSeveritySortOrder())] = "" + cell.getCount();
+            }
+            cellTexts[columns.size() - 2] = "" + current.getTotal();
+            cellTexts[columns.size() - 1] = current.getCells()
+                    .stream()
+                    .flatMap(cell -> cell.getAliases().stream().map(alias -> alias + " (" + cell.getSeverity() + ")"))
+                    .collect(Collectors.joining(", "));
+
+            writer.addRow(cellStyle, cellTexts);
+        }
+
+        // #3) Followed by an empty row, and one row per FoodPreference.
+        if (!matrix.getFoodPreferences().isEmpty()) {
+
+            writer.addRow(cellStyle);
+            writer.addRow(headerStyle, "Matpreferens", "Antal");
+
+            for (FoodPreferenceCountVO current : matrix.getFoodPreferences()) {
+                writer.addRow(cellStyle, current.getPreference(), "" + current.getCount());
+            }
+        }
+        writer.applyColumnWidths();
+
+        // Convert the workbook to a byte[], and send it back to the client.
+        final String fileName = "allergyMatrix_" + activityID + "_"
+                + TimeFormat.COMPACT_LOCALDATETIME.print(LocalDateTime.now()) + ".xls";
+
+        // All Done.
+        return Response.ok(excelReportService.convertToByteArray(workbook), ExcelReportService.EXCEL_CONTENT_TYPE)
+                .header(ReportService.SUGGESTED_FILENAME_HEADER, fileName)
+                .header("Content-Disposition", "attachment; filename=" + fileName)
+                .build();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void writeEvent(final ICalendarWriter writer,
+                                   final Activity activity,
+                                   final LocalDateTime timestamp) throws IOException {
+
+        final Organisation organisation = activity.getOwningOrganisation();
+        final ZoneId zone = organisation.getTimeZone().toZoneId();
+        final Address location = activity.getLocation();
+
+        writer.begin(ICalendarWriter.VEVENT)
+                .property("UID", "activity-" + activity.getId() + "@" + organisation.getOrganisationName()
+                        .replaceAll("\\s", ""))
+                .number("SEQUENCE", activity.getVersion())
+                .dateTime("DTSTAMP", timestamp, ZoneOffset.UTC)
+                .dateTime("DTSTART", activity.getStartTime(), zone)
+                .dateTime("DTEND", activity.getEndTime(), zone)
+                .text("SUMMARY", activity.getShortDesc())
+                .text("DESCRIPTION", activity.getFullDesc())
+                .text("LOCATION", location == null
+                        ? activity.getAddressShortDescription()
+                        : activity.getAddressShortDescription() + ", " + location.getStreet() + " "
+                        + location.getNumber() + ", " + location.getCity())
+                .property("STATUS", activity.isCancelled() ? "CANCELLED" : "CONFIRMED")
+                .end(ICalendarWriter.VEVENT);
+    }
 }
@@ -23,7 +23,6 @@ package se.mithlond.services.backend.war.resources.organisation;
 
 import io.swagger.annotations.Api;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.Logger;
@@ -31,14 +30,17 @@ import org.slf4j.LoggerFactory;
 import se.mithlond.services.backend.war.resources.AbstractResource;
 import se.mithlond.services.backend.war.resources.RestfulParameters;
 import se.mithlond.services.content.api.report.ExcelReportService;
+import se.mithlond.services.content.api.report.ExcelSheetWriter;
 import se.mithlond.services.content.api.report.ReportService;
 import se.mithlond.services.organisation.api.FoodAndAllergyService;
+import se.mithlond.services.organisation.api.MembershipDirectoryService;
 import se.mithlond.services.organisation.api.MembershipService;
 import se.mithlond.services.organisation.api.OrganisationService;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
 import se.mithlond.services.organisation.model.address.Address;
 import se.mithlond.services.organisation.model.food.Allergy;
 import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
 import se.mithlond.services.organisation.model.transport.food.Allergies;
 import se.mithlond.services.organisation.model.transport.membership.Groups;
 import se.mithlond.services.organisation.model.transport.membership.Memberships;
@@ -54,6 +56,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
@@ -87,6 +90,9 @@ public class MembershipResource extends AbstractResource {
     @EJB
     private ExcelReportService excelReportService;
 
+    @EJB
+    private MembershipDirectoryService membershipDirectoryService;
+
     /**
      * Retrieves a {@link Memberships} wrapper containing all Membership (or MembershipVO), including the
      * OrganisationVO of the Organisation
@@ -148,6 +154,65 @@ public class MembershipResource extends AbstractResource {
         return toReturn;
     }
 
+    /**
+     * Retrieves a {@link MembershipListVO} holding listing information (alias, names, email alias, address,
+     * contact information, groups and guilds) about all Memberships within the supplied Organisation.
+     * As opposed to {@link #getMemberships(Long, boolean, boolean)}, no full User, Group or Organisation
+     * graphs are loaded or transported, making this the preferred resource for member listings.
+     *
+     * @param orgJpaID                 The JPA ID of the Organisation for which Memberships should be retrieved.
+     * @param includeLoginNotPermitted If {@code true}, the returned MembershipListVO includes all Memberships -
+     *                                 including the ones not permitted login.
+     * @return A {@link MembershipListVO} holding one SlimMemberVO per Membership, sorted by alias.
+     */
+    @Path("/slim")
+    @GET
+    public MembershipListVO getSlimMemberships(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long orgJpaID,
+            @QueryParam(RestfulParameters.INCLUDE_LOGIN_NOT_PERMITTED)
+            @DefaultValue("false") final boolean includeLoginNotPermitted) {
+
+        // All Done.
+        return membershipService.getSlimMembershipsIn(orgJpaID, includeLoginNotPermitted);
+    }
+
+    /**
+     * Searches for Memberships whose alias or names start with the supplied prefix, typically to provide
+     * autocomplete suggestions. The search is answered from the in-memory membership directory rather than
+     * from the database.
+     *
+     * @param orgJpaID                 The JPA ID of the Organisation within which Memberships should be found.
+     * @param prefix                   The prefix of an alias, first name or last name. An empty prefix matches
+     *                                 all Memberships.
+     * @param groupJpaID               If given, only Memberships within the Group or Guild with this JPA ID
+     *                                 are retrieved.
+     * @param includeLoginNotPermitted If {@code true}, Memberships not permitted login are also retrieved.
+     * @param maxResults               The maximum number of Memberships to retrieve.
+     *                                 Defaults to {@link MembershipDirectoryService#DEFAULT_MAX_RESULTS}.
+     * @return A {@link MembershipListVO} holding the SlimMemberVOs of the matching Memberships.
+     */
+    @Path("/search")
+    @GET
+    public MembershipListVO searchMemberships(
+            @PathParam(RestfulParameters.ORGANISATION_JPA_ID) final Long orgJpaID,
+            @QueryParam(RestfulParameters.PREFIX) final String prefix,
+            @QueryParam(RestfulParameters.GROUP_JPA_ID) final Long groupJpaID,
+            @QueryParam(RestfulParameters.INCLUDE_LOGIN_NOT_PERMITTED)
+            @DefaultValue("false") final boolean includeLoginNotPermitted,
+            @QueryParam(RestfulParameters.MAX_RESULTS) final Integer maxResults) {
+
+        final int effectiveMaxResults = maxResults == null || maxResults < 1
+                ? MembershipDirectoryService.DEFAULT_MAX_RESULTS
+                : maxResults;
+
+        // All Done.
+        return membershipDirectoryService.search(orgJpaID,
+                prefix,
+                groupJpaID,
+                includeLoginNotPermitted,
+                effectiveMaxResults);
+    }
+
     /**
      * Retrieves a {@link Memberships} wrapper containing the full-detail membership with the supplied LOGIN.
      *
@@ -191,7 +256,9 @@ public class MembershipResource extends AbstractResource {
     }
 
     /**
-     * Retrieves an excel report containing the Memberships within the current organisation.
+     * Retrieves an excel report containing the Memberships within the current organisation. The report is
+     * streamed to the client while the Memberships are read page by page, implying that neither all
+     * Memberships nor the entire report need be held in memory.
      *
      * @param includeLoginNotPermitted If {@code true}, even memberships currently not permitted login are included.
      * @return An Excel report containing Memberships.
@@ -199,19 +266,17 @@ public class MembershipResource extends AbstractResource {
     @GET
     @Path("/report/excel")
     @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-    @Produces(ExcelReportService.EXCEL_CONTENT_TYPE)
+    @Produces(ExcelReportService.XLSX_CONTENT_TYPE)
     public Response getMembershipsReport(
             @QueryParam(RestfulParameters.INCLUDE_LOGIN_NOT_PERMITTED) final Boolean includeLoginNotPermitted) {
 
         // Get the ActiveMembership
         final Membership activeMembership = getActiveMembership();
         final String activeOrgName = activeMembership.getOrganisation().getOrganisationName();
+        final Long activeOrgJpaID = activeMembership.getOrganisation().getId();
         final LocalDateTime now = LocalDateTime.now();
 
-        // Create the workbook to return
-        final Workbook workbook = excelReportService.createDocument(activeMembership,
-                "Medlemmar i " + activeOrgName);
-        final String fileName = "memberships_" + TimeFormat.COMPACT_LOCALDATETIME.print(now) + ".xls";
+        final String fileName = "memberships_" + TimeFormat.COMPACT_LOCALDATETIME.print(now) + ".xlsx";
         final boolean includeAll = includeLoginNotPermitted == null ? false : includeLoginNotPermitted;
 
         final List<String> membershipColumns = Arrays.asList("Alias",
@@ -222,65 +287,83 @@ public class MembershipResource extends AbstractResource {
                 "Email",
                 "Adress",
                 "Födelsedag");
-        final Sheet allergySheet = excelReportService.createStandardExcelSheet(
-                workbook,
-                "Rullan",
-                activeOrgName + "s Rulla ",
-                membershipColumns);
 
-        if (log.isDebugEnabled()) {
-            log.debug("Got non-null Workbook: " + (workbook != null));
-        }
+        // Create and write the workbook while streaming the response.
+        final StreamingOutput output = out -> {
+
+            final Workbook workbook = excelReportService.createStreamingDocument(activeMembership,
+                    "Medlemmar i " + activeOrgName,
+                    ExcelReportService.DEFAULT_ROW_WINDOW_SIZE,
+                    true);
+            try {
+
+                final Sheet membershipSheet = excelReportService.createStandardExcelSheet(
+                        workbook,
+                        "Rullan",
+                        activeOrgName + "s Rulla ",
+                        membershipColumns);
+                final CellStyle standardCellStyle = excelReportService.getCellStyle(
+                        ExcelReportService.ExcelElement.NON_WRAPPING,
+                        workbook);
+
+                // Read the Memberships page by page, and add one row per Membership.
+                final ExcelSheetWriter writer = new ExcelSheetWriter(membershipSheet, membershipColumns);
+                final int numRows = writer.addRows(
+                        (firstResult, maxResults) -> membershipService.getMembershipsIn(
+                                activeOrgJpaID, includeAll, firstResult, maxResults),
+                        ExcelSheetWriter.DEFAULT_PAGE_SIZE,
+                        MembershipResource::getReportCells,
+                        standardCellStyle);
+                writer.applyColumnWidths();
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Streaming membership report with [" + numRows + "] rows for " + activeOrgName);
+                }
+
+                workbook.write(out);
+
+            } finally {
+                excelReportService.dispose(workbook);
+            }
+        };
 
-        // #1) Find the Memberships
-        final Memberships memberships = getMemberships(activeMembership.getOrganisation().getId(),
-                includeAll,
-                false);
-
-        // #2) Create an Excel Sheet holding the Membership report details.
-        int currentRowIndex = 2;
-        final CellStyle standardCellStyle = excelReportService.getCellStyle(
-                ExcelReportService.ExcelElement.NON_WRAPPING,
-                workbook);
-
-        for (Membership current : memberships.getMemberships()) {
-
-            final Row currentRow = allergySheet.createRow(currentRowIndex++);
-
-            // Harvest some data for convenience reasons.
-            final String alias = current.getAlias()
-                    + (current.getSubAlias() != null ? " " + current.getSubAlias() : "");
-            final Map<String, String> contactDetails = current.getUser().getContactDetails();
-            final String homePhone = contactDetails.get("HOME_PHONE") == null ? "" : contactDetails.get("HOME_PHONE");
-            final String cellPhone = contactDetails.get("CELL_PHONE") == null ? "" : contactDetails.get("CELL_PHONE");
-            final String email = current.getEmailAlias() + "@" + current.getOrganisation().getEmailSuffix();
-
-            final Address homeAddress = current.getUser().getHomeAddress();
-            final String address = (homeAddress.getCareOfLine() != null ? homeAddress.getCareOfLine() + "\n" : "")
-                    + homeAddress.getStreet() + " " + homeAddress.getNumber() + "\n"
-                    + homeAddress.getZipCode() + " " + homeAddress.getCity() + "\n"
-                    + homeAddress.getCountry();
-
-            final String bDay = TimeFormat.YEAR_MONTH_DATE.print(current.getUser().getBirthday());
-
-            // Populate the row with Cells.
-            excelReportService.addCell(0, currentRow, alias, standardCellStyle);
-            excelReportService.addCell(1, currentRow, current.getUser().getFirstName(), standardCellStyle);
-            excelReportService.addCell(2, currentRow, current.getUser().getLastName(), standardCellStyle);
-            excelReportService.addCell(3, currentRow, homePhone, standardCellStyle);
-            excelReportService.addCell(4, currentRow, cellPhone, standardCellStyle);
-            excelReportService.addCell(5, currentRow, email, standardCellStyle);
-            excelReportService.addCell(6, currentRow, address, standardCellStyle);
-            excelReportService.addCell(7, currentRow, bDay, standardCellStyle);
-        }
+        // All Done.
+        return Response.ok(output, ExcelReportService.XLSX_CONTENT_TYPE)
+                .header(ReportService.SUGGESTED_FILENAME_HEADER, fileName)
+                .header("Content-Disposition", "attachment; filename=" + fileName)
+                .build();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String[] getReportCells(final Membership current) {
+
+        // Harvest some data for convenience reasons.
+        final String alias = current.getAlias()
+                + (current.getSubAlias() != null ? " " + current.getSubAlias() : "");
+        final Map<String, String> contactDetails = current.getUser().getContactDetails();
+        final String homePhone = contactDetails.get("HOME_PHONE") == null ? "" : contactDetails.get("HOME_PHONE");
+        final String cellPhone = contactDetails.get("CELL_PHONE") == null ? "" : contactDetails.get("CELL_PHONE");
+        final String email = current.getEmailAlias() + "@" + current.getOrganisation().getEmailSuffix();
+
+        final Address homeAddress = current.getUser().getHomeAddress();
+        final String address = (homeAddress.getCareOfLine() != null ? homeAddress.getCareOfLine() + "\n" : "")
+                + homeAddress.getStreet() + " " + homeAddress.getNumber() + "\n"
+                + homeAddress.getZipCode() + " " + homeAddress.getCity() + "\n"
+                + homeAddress.getCountry();
 
-        // Convert the workbook to a byte[], and send it back to the client.
-        final Response.ResponseBuilder builder = Response.ok(
-                excelReportService.convertToByteArray(workbook), ExcelReportService.EXCEL_CONTENT_TYPE)
-                .header(ReportService.SUGGESTED_FILENAME_HEADER, fileName);
-        builder.header("Content-Disposition", "attachment; filename=" + fileName);
+        final String bDay = TimeFormat.YEAR_MONTH_DATE.print(current.getUser().getBirthday());
 
         // All Done.
-        return builder.build();
+        return new String[]{alias,
+                current.getUser().getFirstName(),
+                current.getUser().getLastName(),
+                homePhone,
+                cellPhone,
+                email,
+                address,
+                bDay};
     }
 }
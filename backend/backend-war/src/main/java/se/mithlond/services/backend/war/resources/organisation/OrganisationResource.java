@@ -25,6 +25,7 @@ import io.swagger.annotations.Api;
 import se.mithlond.services.backend.war.resources.AbstractResource;
 import se.mithlond.services.backend.war.resources.RestfulParameters;
 import se.mithlond.services.organisation.api.FoodAndAllergyService;
+import se.mithlond.services.organisation.api.GroupHierarchyService;
 import se.mithlond.services.organisation.api.OrganisationService;
 import se.mithlond.services.organisation.api.parameters.FoodAndAllergySearchParameters;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
@@ -32,6 +33,7 @@ import se.mithlond.services.organisation.model.food.Allergy;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.Organisations;
 import se.mithlond.services.organisation.model.transport.food.Allergies;
+import se.mithlond.services.organisation.model.transport.membership.GroupTree;
 import se.mithlond.services.organisation.model.transport.membership.Groups;
 
 import javax.ejb.EJB;
@@ -60,6 +62,9 @@ public class OrganisationResource extends AbstractResource {
     @EJB
     private FoodAndAllergyService foodAndAllergyService;
 
+    @EJB
+    private GroupHierarchyService groupHierarchyService;
+
     /**
      * Retrieves an {@link Organisations} instance containing data for all known Organisations.
      *
@@ -119,6 +124,30 @@ public class OrganisationResource extends AbstractResource {
         return organisationService.getGroups(params);
     }
 
+    /**
+     * Retrieves the hierarchy of Groups and Guilds for the supplied Organisation, including the direct and
+     * recursive member counts of each Group. The tree is expanded to the supplied depth; deeper subtrees are
+     * retrieved by supplying the JPA ID of their root Group.
+     *
+     * @param jpaID          The JPA ID of the Organisation for which the Group tree should be retrieved.
+     * @param rootGroupJpaID The JPA ID of the root Group of the retrieved subtree, or {@code null} to retrieve
+     *                       the hierarchy below all root Groups of the Organisation.
+     * @param depth          The number of levels to expand below the root Group(s). Negative values imply
+     *                       the default depth.
+     * @return A GroupTree holding the (partly expanded) Group hierarchy of the supplied Organisation.
+     */
+    @GET
+    @Path("/{" + RestfulParameters.JPA_ID + "}/groups/tree")
+    public GroupTree getGroupTree(
+            @PathParam(RestfulParameters.JPA_ID) final Long jpaID,
+            @QueryParam(RestfulParameters.GROUP_JPA_ID) final Long rootGroupJpaID,
+            @QueryParam(RestfulParameters.DEPTH) @DefaultValue("" + GroupHierarchyService.DEFAULT_TREE_DEPTH)
+            final int depth) {
+
+        final int effectiveDepth = depth < 0 ? GroupHierarchyService.DEFAULT_TREE_DEPTH : depth;
+        return groupHierarchyService.getGroupTree(jpaID, rootGroupJpaID, effectiveDepth);
+    }
+
     /**
      * Retrieves a listing of all Allergies for all (active) Memberships within the organisation
      * with the supplied jpa ID.
@@ -31,11 +31,13 @@ import se.mithlond.services.content.model.transport.feedback.CharacterizedDescri
 import se.mithlond.services.organisation.api.FoodAndAllergyService;
 import se.mithlond.services.organisation.api.MembershipService;
 import se.mithlond.services.organisation.api.OrganisationService;
+import se.mithlond.services.organisation.api.UpcomingActivityService;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
 import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.membership.guild.Guild;
 import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
 import se.mithlond.services.organisation.model.transport.convenience.food.SlimFoodPreferencesVO;
 import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
 import se.mithlond.services.organisation.model.transport.food.Allergies;
@@ -47,6 +49,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -84,6 +88,9 @@ public class ActiveUserResource extends AbstractResource {
     @EJB
     private UserFeedbackService userFeedbackService;
 
+    @EJB
+    private UpcomingActivityService upcomingActivityService;
+
     /**
      * Retrieves a {@link Memberships} wrapper containing the full-detail membership information of
      * the currently logged in user.
@@ -118,6 +125,49 @@ public class ActiveUserResource extends AbstractResource {
         return toReturn;
     }
 
+    /**
+     * Retrieves the next upcoming Activities to which the active Membership is admitted, sorted by start time.
+     * The Activities are read from a per-Membership read model, rather than searched for in the database.
+     *
+     * @param maxResults The maximum number of Activities to retrieve.
+     *                   Defaults to {@link UpcomingActivityService#DEFAULT_MAX_RESULTS}.
+     * @return An {@link Activities} wrapper holding shallow ActivityVOs of the next upcoming Activities.
+     */
+    @Path("/activities/upcoming")
+    @GET
+    public Activities getUpcomingActivities(@QueryParam(RestfulParameters.MAX_RESULTS) final Integer maxResults) {
+
+        final int effectiveMaxResults = maxResults == null || maxResults < 1
+                ? UpcomingActivityService.DEFAULT_MAX_RESULTS
+                : maxResults;
+
+        // All Done.
+        return upcomingActivityService.getUpcomingActivities(getActiveMembership(), effectiveMaxResults);
+    }
+
+    /**
+     * Rebuilds the read model of upcoming Activities from the database. Only permitted for administrators.
+     *
+     * @return A Response holding the number of upcoming Activities within the rebuilt read model,
+     * or a {@code 403 Forbidden} response if the active Membership is not an administrator.
+     */
+    @Path("/activities/upcoming/rebuild")
+    @POST
+    public Response rebuildUpcomingActivities() {
+
+        final Membership activeMembership = getActiveMembership();
+        if (!organisationService.isAdministratorFor(activeMembership, activeMembership.getOrganisation())) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        final int numActivities = upcomingActivityService.rebuild();
+        log.info("Membership [" + activeMembership.getAlias() + "] rebuilt the read model of upcoming Activities, "
+                + "holding [" + numActivities + "] Activities.");
+
+        // All Done.
+        return Response.ok(String.valueOf(numActivities), MediaType.TEXT_PLAIN_TYPE).build();
+    }
+
     /**
      * Retrieves an {@link Allergies} wrapper containing the full-detail allery information of
      * the currently logged in user, including known Food Preferences.
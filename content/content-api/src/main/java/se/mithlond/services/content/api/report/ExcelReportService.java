@@ -26,9 +26,11 @@ import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.model.membership.Membership;
 
 import javax.ejb.Local;
 import javax.validation.constraints.NotNull;
@@ -52,6 +54,17 @@ public interface ExcelReportService extends ReportService<Workbook> {
      */
     String EXCEL_CONTENT_TYPE = "application/vnd.ms-excel";
 
+    /**
+     * The content type of Office Open XML (.xlsx) workbooks, as created by
+     * {@link #createStreamingDocument(Membership, String, int, boolean)}. Use for a @Produces annotation.
+     */
+    String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    /**
+     * The default number of rows held in memory by streaming workbooks.
+     */
+    int DEFAULT_ROW_WINDOW_SIZE = 100;
+
     /**
      * Common element definitions used to create nodes in Excel documents.
      */
@@ -88,6 +101,25 @@ public interface ExcelReportService extends ReportService<Workbook> {
         ALT_FORMULA
     }
 
+    /**
+     * <p>Creates a new and empty streaming (.xlsx) Workbook, which holds only the most recently created rows
+     * of each Sheet in memory; older rows are flushed to a temporary file. This implies that the heap required
+     * does not grow with the number of rows, and that the row limit of the legacy (.xls) format does not
+     * apply.</p>
+     * <p>Rows flushed to disk can no longer be accessed, and the Workbook must be passed to
+     * {@link #dispose(Workbook)} when written, to delete its temporary files.</p>
+     *
+     * @param activeMembership  The active Membership.
+     * @param title             The document title.
+     * @param rowWindowSize     The number of rows per Sheet held in memory. Must be positive.
+     * @param compressTempFiles if {@code true}, the temporary files are gzip-compressed, trading CPU for disk.
+     * @return a new and empty streaming Workbook.
+     */
+    Workbook createStreamingDocument(@NotNull final Membership activeMembership,
+                                     @NotNull final String title,
+                                     final int rowWindowSize,
+                                     final boolean compressTempFiles);
+
     /**
      * Acquires the given CellStyle for the provided Workbook.
      *
@@ -155,4 +187,25 @@ public interface ExcelReportService extends ReportService<Workbook> {
         // All Done.
         return baos.toByteArray();
     }
+
+    /**
+     * Releases the resources held by the supplied Workbook, including the temporary files of streaming
+     * Workbooks. The Workbook cannot be used after this call.
+     *
+     * @param toDispose The Workbook to dispose.
+     */
+    default void dispose(@NotNull final Workbook toDispose) {
+
+        // Check sanity
+        Validate.notNull(toDispose, "toDispose");
+
+        if (toDispose instanceof SXSSFWorkbook && !((SXSSFWorkbook) toDispose).dispose()) {
+            log.warn("Could not delete all temporary files of a streaming Workbook.");
+        }
+        try {
+            toDispose.close();
+        } catch (IOException e) {
+            log.warn("Could not close Workbook.", e);
+        }
+    }
 }
@@ -0,0 +1,215 @@
+/*-
+ * #%L
+ * Nazgul Project: mithlond-services-content-api
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.content.api.report;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p>Appends rows of text cells to a Sheet, tracking the maximum text length within each column. Column widths
+ * are calculated from the tracked lengths by {@link #applyColumnWidths()}, which is far cheaper than
+ * {@link Sheet#autoSizeColumn(int)} and also works for streaming Sheets, where most rows have already been
+ * flushed to disk when the widths are applied.</p>
+ * <p>Rows can be appended one at a time, or read page by page from a {@link PageSource}, implying that only
+ * a single page of data objects is held in memory at a time.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ExcelSheetWriter {
+
+    /**
+     * The default number of data objects read per page from a PageSource.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * The maximum width of a column, in characters.
+     */
+    public static final int MAX_COLUMN_WIDTH = 255;
+
+    /**
+     * Source of data objects, read page by page.
+     *
+     * @param <T> The type of data object.
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+
+        /**
+         * Retrieves a page of data objects.
+         *
+         * @param firstResult The index of the first data object to retrieve.
+         * @param maxResults  The maximum number of data objects to retrieve.
+         * @return The data objects of the page. A page holding less than maxResults data objects is the last one.
+         */
+        List<T> getPage(final int firstResult, final int maxResults);
+    }
+
+    // Internal state
+    private final Sheet sheet;
+    private final int[] maxLengths;
+    private int nextRowIndex;
+
+    /**
+     * Creates an ExcelSheetWriter appending rows after the last existing row within the supplied Sheet,
+     * such as the title and header rows created by {@code ExcelReportService.createStandardExcelSheet}.
+     *
+     * @param sheet        The Sheet to which rows should be appended.
+     * @param columnTitles The titles of the columns of the Sheet, whose lengths are the initial tracked lengths.
+     */
+    public ExcelSheetWriter(@NotNull final Sheet sheet, @NotNull final List<String> columnTitles) {
+
+        // Check sanity
+        Validate.notNull(sheet, "sheet");
+        Validate.notEmpty(columnTitles, "columnTitles");
+
+        // Assign internal state
+        this.sheet = sheet;
+        this.maxLengths = new int[columnTitles.size()];
+        for (int i = 0; i < maxLengths.length; i++) {
+            maxLengths[i] = getLength(columnTitles.get(i));
+        }
+        this.nextRowIndex = sheet.getPhysicalNumberOfRows() == 0 ? 0 : sheet.getLastRowNum() + 1;
+    }
+
+    /**
+     * Appends a Row holding one Cell per supplied text.
+     *
+     * @param style     The CellStyle of all created Cells.
+     * @param cellTexts The texts of the Cells, starting with column 0. Null texts are written as empty Cells.
+     * @return The appended Row.
+     * @throws IllegalArgumentException if more texts than columns were supplied.
+     */
+    public Row addRow(@NotNull final CellStyle style, final String... cellTexts) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(style, "style");
+        Validate.isTrue(cellTexts.length <= maxLengths.length, "Cannot handle more cell texts ["
+                + cellTexts.length + "] than columns [" + maxLengths.length + "].");
+
+        final Row toReturn = sheet.createRow(nextRowIndex++);
+        for (int i = 0; i < cellTexts.length; i++) {
+
+            final String text = cellTexts[i] == null ? "" : cellTexts[i];
+            final Cell cell = toReturn.createCell(i);
+            cell.setCellStyle(style);
+            cell.setCellValue(text);
+
+            maxLengths[i] = Math.max(maxLengths[i], getLength(text));
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Appends one Row per data object read from the supplied PageSource, until a page holding less than
+     * pageSize data objects has been read.
+     *
+     * @param source      The PageSource from which data objects are read.
+     * @param pageSize    The number of data objects to read per page. Must be positive.
+     * @param toCellTexts Function converting a data object to the texts of its Row.
+     * @param style       The CellStyle of all created Cells.
+     * @param <T>         The type of data object.
+     * @return The number of appended Rows.
+     */
+    public <T> int addRows(@NotNull final PageSource<T> source,
+                           final int pageSize,
+                           @NotNull final Function<T, String[]> toCellTexts,
+                           @NotNull final CellStyle style) {
+
+        // Check sanity
+        Validate.notNull(source, "source");
+        Validate.notNull(toCellTexts, "toCellTexts");
+        Validate.isTrue(pageSize > 0, "Cannot handle non-positive 'pageSize'.");
+
+        int toReturn = 0;
+        List<T> page;
+        do {
+
+            page = source.getPage(toReturn, pageSize);
+            for (T current : page) {
+                addRow(style, toCellTexts.apply(current));
+            }
+            toReturn += page.size();
+
+        } while (page.size() >= pageSize);
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Sets the width of each column to fit its longest tracked text.
+     */
+    public void applyColumnWidths() {
+        for (int i = 0; i < maxLengths.length; i++) {
+            sheet.setColumnWidth(i, getColumnWidth(maxLengths[i]));
+        }
+    }
+
+    /**
+     * @return The index of the next Row to append.
+     */
+    public int getNextRowIndex() {
+        return nextRowIndex;
+    }
+
+    /**
+     * Calculates the column width (in units of 1/256th of a character width) fitting a text of the supplied length.
+     *
+     * @param textLength The length of the text, in characters.
+     * @return The column width fitting the text, with some padding, but never wider than {@link #MAX_COLUMN_WIDTH}.
+     */
+    public static int getColumnWidth(final int textLength) {
+        return Math.min(MAX_COLUMN_WIDTH, textLength + 2) * 256;
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Retrieves the length of the longest line within the supplied text.
+     */
+    private static int getLength(final String text) {
+
+        int toReturn = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == '\n') {
+                toReturn = Math.max(toReturn, i - lineStart);
+                lineStart = i + 1;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+}
@@ -26,6 +26,7 @@ import se.mithlond.services.content.model.ContentPatterns;
 import se.mithlond.services.content.model.articles.Article;
 import se.mithlond.services.content.model.transport.articles.Articles;
 import se.mithlond.services.content.model.transport.articles.ContentPaths;
+import se.mithlond.services.organisation.api.persistence.CommonPersistenceTasks;
 import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.shared.authorization.api.GlobAuthorizationPattern;
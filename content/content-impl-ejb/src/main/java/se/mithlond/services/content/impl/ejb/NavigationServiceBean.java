@@ -422,6 +422,11 @@ public class NavigationServiceBean extends AbstractJpaService implements Navigat
 
         // Persist or update all children found within the current currentStandardMenu.
         // Ordering matters here, so don't use streams.
+        //
+        // Note that the children are reconciled by position rather than by a SortedMergeDiff:
+        // new nav items have no JPA ID yet and their domId is optional, so there is no unique key
+        // to merge on. Nav items are also immutable except for their parent, index and enabled state,
+        // and removing a child would cascade the removal to its parent through the ManyToOne mapping.
         for (int index = 0; index < numChildren; index++) {
 
             // Persist or update the current child?
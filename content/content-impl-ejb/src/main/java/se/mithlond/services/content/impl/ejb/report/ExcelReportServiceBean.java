@@ -21,6 +21,7 @@
  */
 package se.mithlond.services.content.impl.ejb.report;
 
+import org.apache.poi.POIXMLProperties;
 import org.apache.poi.hpsf.DocumentSummaryInformation;
 import org.apache.poi.hpsf.SummaryInformation;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
@@ -37,8 +38,11 @@ import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openxmlformats.schemas.officeDocument.x2006.extendedProperties.CTProperties;
 import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.content.api.report.ExcelReportService;
+import se.mithlond.services.content.api.report.ExcelSheetWriter;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.shared.spi.algorithms.TimeFormat;
 
@@ -49,7 +53,8 @@ import java.util.Date;
 import java.util.List;
 
 /**
- * Stateless ExcelReportService implementation.
+ * Stateless ExcelReportService implementation, creating legacy (.xls) in-memory Workbooks and
+ * streaming (.xlsx) Workbooks.
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
@@ -59,6 +64,7 @@ public class ExcelReportServiceBean implements ExcelReportService {
     // Internal constants
     private static final short GREY_25_PERCENT = IndexedColors.GREY_25_PERCENT.getIndex();
     private static final BorderStyle BORDER_THIN = BorderStyle.THIN;
+    private static final String AUTHOR = "Nazgûl Services Excel Report Generator";
 
     /**
      * {@inheritDoc}
@@ -76,7 +82,7 @@ public class ExcelReportServiceBean implements ExcelReportService {
         final SummaryInformation summaryInformation = toReturn.getSummaryInformation();
         summaryInformation.setCreateDateTime(new Date());
         summaryInformation.setTitle(title);
-        summaryInformation.setAuthor("Nazgûl Services Excel Report Generator");
+        summaryInformation.setAuthor(AUTHOR);
         summaryInformation.setSubject("Requested by: " + activeMembership.getAlias());
         summaryInformation.setRevNumber("1");
 
@@ -90,6 +96,38 @@ public class ExcelReportServiceBean implements ExcelReportService {
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Workbook createStreamingDocument(@NotNull final Membership activeMembership,
+                                           @NotNull final String title,
+                                           final int rowWindowSize,
+                                           final boolean compressTempFiles) {
+
+        // Check sanity
+        Validate.notNull(activeMembership, "activeMembership");
+        Validate.isTrue(rowWindowSize > 0, "Cannot handle non-positive 'rowWindowSize'.");
+
+        final SXSSFWorkbook toReturn = new SXSSFWorkbook(null, rowWindowSize, compressTempFiles);
+
+        // Add the same document information as for legacy Workbooks.
+        final POIXMLProperties properties = toReturn.getXSSFWorkbook().getProperties();
+        final POIXMLProperties.CoreProperties coreProperties = properties.getCoreProperties();
+        coreProperties.setTitle(title);
+        coreProperties.setCreator(AUTHOR);
+        coreProperties.setSubjectProperty("Requested by: " + activeMembership.getAlias());
+        coreProperties.setRevision("1");
+
+        final String orgName = activeMembership.getOrganisation().getOrganisationName();
+        final CTProperties extendedProperties = properties.getExtendedProperties().getUnderlyingProperties();
+        extendedProperties.setCompany(orgName);
+        extendedProperties.setManager(orgName + " is Da Boss of you!");
+
+        // All Done.
+        return toReturn;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -139,7 +177,10 @@ public class ExcelReportServiceBean implements ExcelReportService {
             headerCell.setCellValue(columnTitles.get(i));
             headerCell.setCellStyle(getCellStyle(ExcelElement.HEADER, workbook));
             toReturn.setDefaultColumnStyle(i, getCellStyle(ExcelElement.NON_WRAPPING, workbook));
-            toReturn.autoSizeColumn(i);
+
+            // Streaming Sheets cannot be auto-sized, so fit the column to its title.
+            // Use an ExcelSheetWriter to fit the columns to their content as well.
+            toReturn.setColumnWidth(i, ExcelSheetWriter.getColumnWidth(columnTitles.get(i).length()));
         }
 
         // All done
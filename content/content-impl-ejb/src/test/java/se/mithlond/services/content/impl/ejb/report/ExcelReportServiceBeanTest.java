@@ -21,27 +21,44 @@
  */
 package se.mithlond.services.content.impl.ejb.report;
 
+import org.apache.poi.POIXMLProperties;
 import org.apache.poi.hpsf.SummaryInformation;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se.mithlond.services.content.api.report.ExcelReportService;
+import se.mithlond.services.content.api.report.ExcelSheetWriter;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
 public class ExcelReportServiceBeanTest extends AbstractReportTest {
 
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(ExcelReportServiceBeanTest.class);
+
+    /**
+     * System property which must be true for the benchmark to run.
+     */
+    private static final String BENCHMARK_PROPERTY = "excel_report_benchmark";
+
     // Shared state
     private ExcelReportServiceBean unitUnderTest;
 
@@ -106,4 +123,110 @@ public class ExcelReportServiceBeanTest extends AbstractReportTest {
         //
         // Read the document, and verify that cell values match ... ?
     }
+
+    @Test
+    public void validateCreatingStreamingWorkbook() throws Exception {
+
+        // Assemble
+        final String theTitle = "Da Streaming Titul";
+        final File targetFile = getTargetFile("StreamingExcelFile", "xlsx");
+        final List<String> columnTitles = Arrays.asList("Alias", "Adress");
+
+        // Act
+        final Workbook result = unitUnderTest.createStreamingDocument(memHaxx, theTitle, 10, true);
+        final Sheet sheet = unitUnderTest.createStandardExcelSheet(result, "Rullan", "Rullan", columnTitles);
+        final ExcelSheetWriter writer = new ExcelSheetWriter(sheet, columnTitles);
+        final CellStyle cellStyle = unitUnderTest.getCellStyle(ExcelReportService.ExcelElement.NON_WRAPPING, result);
+        writer.addRow(cellStyle, "Häxx", "Testgatan 45 E\n234 54 Grååååbo");
+        writer.addRow(cellStyle, "Erion");
+        writer.applyColumnWidths();
+
+        try (FileOutputStream out = new FileOutputStream(targetFile)) {
+            result.write(out);
+        } finally {
+            unitUnderTest.dispose(result);
+        }
+
+        // Assert
+        Assert.assertTrue(result instanceof SXSSFWorkbook);
+        Assert.assertEquals(4, writer.getNextRowIndex());
+        Assert.assertEquals(ExcelSheetWriter.getColumnWidth("234 54 Grååååbo".length()), sheet.getColumnWidth(1));
+
+        try (XSSFWorkbook readBack = new XSSFWorkbook(targetFile)) {
+
+            final POIXMLProperties.CoreProperties coreProperties = readBack.getProperties().getCoreProperties();
+            Assert.assertEquals(theTitle, coreProperties.getTitle());
+            Assert.assertEquals("Nazgûl Services Excel Report Generator", coreProperties.getCreator());
+            Assert.assertEquals("Erion", readBack.getSheetAt(0).getRow(3).getCell(0).getStringCellValue());
+        }
+    }
+
+    /**
+     * Writes two 50,000-row reports to disk, and is therefore only run when the {@link #BENCHMARK_PROPERTY}
+     * system property is true, i.e. {@code mvn test -Dexcel_report_benchmark=true}.
+     */
+    @Test
+    public void benchmarkFiftyThousandRowReports() throws Exception {
+
+        // Only run when explicitly requested.
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        // Assemble
+        final int numRows = 50_000;
+        final List<String> columnTitles = Arrays.asList("Alias", "Förnamn", "Efternamn", "Email", "Adress");
+        final ExcelSheetWriter.PageSource<Integer> source = (firstResult, maxResults) -> IntStream
+                .range(firstResult, Math.min(numRows, firstResult + maxResults))
+                .boxed()
+                .collect(Collectors.toList());
+
+        // Act
+        final Workbook streaming = unitUnderTest.createStreamingDocument(memHaxx, "Benchmark",
+                ExcelReportService.DEFAULT_ROW_WINDOW_SIZE, true);
+        final long streamingStart = System.nanoTime();
+        final int streamedRows = writeBenchmarkReport(streaming, columnTitles, source, "xlsx");
+        final long streamingMillis = (System.nanoTime() - streamingStart) / 1_000_000L;
+
+        final Workbook inMemory = unitUnderTest.createDocument(memHaxx, "Benchmark");
+        final long inMemoryStart = System.nanoTime();
+        final int inMemoryRows = writeBenchmarkReport(inMemory, columnTitles, source, "xls");
+        final long inMemoryMillis = (System.nanoTime() - inMemoryStart) / 1_000_000L;
+
+        // Assert
+        Assert.assertEquals(numRows, streamedRows);
+        Assert.assertEquals(numRows, inMemoryRows);
+        log.info("Wrote " + numRows + " rows: streaming (.xlsx) in " + streamingMillis
+                + " ms, in-memory (.xls) in " + inMemoryMillis + " ms.");
+    }
+
+    //
+    // Private helpers
+    //
+
+    private int writeBenchmarkReport(final Workbook workbook,
+                                     final List<String> columnTitles,
+                                     final ExcelSheetWriter.PageSource<Integer> source,
+                                     final String fileSuffix) throws Exception {
+
+        final Sheet sheet = unitUnderTest.createStandardExcelSheet(workbook, "Rullan", "Rullan", columnTitles);
+        final ExcelSheetWriter writer = new ExcelSheetWriter(sheet, columnTitles);
+        final CellStyle cellStyle = unitUnderTest.getCellStyle(ExcelReportService.ExcelElement.NON_WRAPPING,
+                workbook);
+
+        final int toReturn = writer.addRows(source, ExcelSheetWriter.DEFAULT_PAGE_SIZE, index -> new String[]{
+                "Alias_" + index,
+                "Förnamn_" + index,
+                "Efternamn_" + index,
+                "member_" + index + "@kinnekulle.tolkien.se",
+                "Testgatan " + index + "\n234 54 Grååååbo"}, cellStyle);
+        writer.applyColumnWidths();
+
+        try (FileOutputStream out = new FileOutputStream(getTargetFile("BenchmarkExcelFile", fileSuffix))) {
+            workbook.write(out);
+        } finally {
+            unitUnderTest.dispose(workbook);
+        }
+
+        // All Done.
+        return toReturn;
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.activity.Activity;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Specification for services maintaining in-memory views over Activities and Admissions, which must be
+ * notified by the services changing Activities and Admissions. Implementations should apply the changes
+ * to their views when (and only if) the current transaction commits.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public interface ActivityChangeListener {
+
+    /**
+     * Notifies this ActivityChangeListener that the supplied Activities were created or updated within the
+     * current transaction. Cancelled Activities should be removed from any view.
+     *
+     * @param changed The non-null List of created or updated (and flushed) Activities.
+     */
+    void activitiesChanged(@NotNull final List<Activity> changed);
+
+    /**
+     * Notifies this ActivityChangeListener that the supplied Activities were removed within the current
+     * transaction.
+     *
+     * @param removed The non-null List of removed Activities.
+     */
+    void activitiesRemoved(@NotNull final List<Activity> removed);
+
+    /**
+     * Notifies this ActivityChangeListener that the Admissions to the supplied Activity were changed within
+     * the current transaction.
+     *
+     * @param activity              The non-null Activity whose Admissions were changed.
+     * @param admittedMembershipIDs The JPA IDs of the Memberships admitted to the Activity.
+     * @param revokedMembershipIDs  The JPA IDs of the Memberships whose Admissions to the Activity were removed.
+     */
+    void admissionsChanged(@NotNull final Activity activity,
+                           @NotNull final Collection<Long> admittedMembershipIDs,
+                           @NotNull final Collection<Long> revokedMembershipIDs);
+}
@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflicts;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+
+/**
+ * <p>Service specification for detecting conflicts between Activities, i.e. Activities overlapping in time
+ * at the same location, or Memberships admitted to several Activities overlapping in time.</p>
+ * <p>Conflicts are found using a per-Organisation index over the intervals of all current (i.e. non-cancelled
+ * and not yet ended) Activities, keyed by location as well as by admitted Membership. The index is built once
+ * per Organisation, and thereafter maintained incrementally by the services changing Activities and
+ * Admissions (as an {@link ActivityChangeListener}); changes are applied to the index when their
+ * transaction commits.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface ActivityConflictService extends ActivityChangeListener {
+
+    /**
+     * Specification of how detected conflicts should be handled when creating Activities or Admissions.
+     */
+    enum ConflictPolicy {
+
+        /**
+         * Conflicts are not checked.
+         */
+        IGNORE,
+
+        /**
+         * Conflicts are logged, but accepted.
+         */
+        WARN,
+
+        /**
+         * Conflicts are rejected, implying that the Activity or Admission is not created.
+         */
+        REJECT
+    }
+
+    /**
+     * @return The ConflictPolicy used when creating Activities or Admissions.
+     */
+    ConflictPolicy getConflictPolicy();
+
+    /**
+     * Retrieves the existing Activities which conflict with the supplied (proposed) Activity, either by being
+     * booked at the same location or by having any of its admitted Memberships admitted at the same time.
+     * If the proposed Activity already exists (i.e. has a JPA ID), it is not reported as conflicting with itself.
+     *
+     * @param organisationID The JPA ID of the Organisation owning the proposed Activity.
+     * @param proposed       The non-null proposed Activity, with non-null start and end times.
+     * @return An ActivityConflicts wrapper holding all detected conflicts. Empty if none were found.
+     */
+    ActivityConflicts getConflicts(final long organisationID, @NotNull final ActivityVO proposed);
+
+    /**
+     * Retrieves the existing Activities which conflict with admitting the supplied Memberships to the
+     * supplied Activity, i.e. Activities overlapping the supplied Activity to which any of the Memberships
+     * are already admitted.
+     *
+     * @param activity      The non-null Activity to which the Memberships should be admitted.
+     * @param membershipIDs The JPA IDs of the Memberships to admit.
+     * @return An ActivityConflicts wrapper holding all detected conflicts. Empty if none were found.
+     */
+    ActivityConflicts getAdmissionConflicts(@NotNull final Activity activity,
+                                            @NotNull final Collection<Long> membershipIDs);
+}
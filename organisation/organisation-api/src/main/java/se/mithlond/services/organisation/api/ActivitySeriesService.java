@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivitySeriesVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.shared.authorization.api.RequireAuthorization;
+
+import javax.ejb.Local;
+import java.time.LocalDateTime;
+
+/**
+ * Service specification for recurring Activities (i.e. ActivitySeries). Occurrences of an ActivitySeries are
+ * materialized as Activity entities only within a rolling horizon; occurrences beyond the horizon are expanded
+ * in memory when read, and materialized when the horizon moves forward or when they are edited.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface ActivitySeriesService {
+
+    /**
+     * Scope enumeration for edits of an occurrence within an ActivitySeries.
+     */
+    enum EditScope {
+
+        /**
+         * Only the edited occurrence is changed; it remains part of its ActivitySeries.
+         */
+        THIS_OCCURRENCE,
+
+        /**
+         * The edited occurrence and all later occurrences are changed. The ActivitySeries is split, implying
+         * that earlier occurrences remain unchanged within the original ActivitySeries.
+         */
+        ALL_FUTURE
+    }
+
+    /**
+     * Creates an ActivitySeries from the supplied transport object, and materializes all its occurrences
+     * starting within the materialization horizon.
+     *
+     * @param seriesVO         A non-null ActivitySeriesVO holding the template and recurrence rule.
+     * @param activeMembership The Membership of the caller, which is admitted as responsible for all occurrences
+     *                         unless the template has a responsible Group.
+     * @return An Activities wrapper holding ActivityVOs for the materialized occurrences.
+     * @throws RuntimeException if the ActivitySeriesVO was not valid.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    Activities createActivitySeries(final ActivitySeriesVO seriesVO, final Membership activeMembership)
+            throws RuntimeException;
+
+    /**
+     * Materializes all occurrences of all ActivitySeries starting before the supplied horizon, which have not
+     * already been materialized. The occurrences are inserted in batches.
+     *
+     * @param horizon The non-null (exclusive) materialization horizon.
+     * @return The number of Activities created.
+     */
+    int materializeOccurrences(final LocalDateTime horizon);
+
+    /**
+     * Updates an occurrence of an ActivitySeries, materializing it if required.
+     *
+     * @param seriesID         The JPA ID of the ActivitySeries.
+     * @param occurrenceStart  The recurrence ID (i.e. the start time as defined by the recurrence rule)
+     *                         of the occurrence to update.
+     * @param targetState      A non-null ActivityVO holding the desired state of the occurrence. Null properties
+     *                         and flags leave the corresponding state of the occurrence unchanged.
+     * @param scope            The non-null scope of the update.
+     * @param activeMembership The Membership of the caller, which must be an administrator of the
+     *                         organisation owning the ActivitySeries or responsible for the ActivitySeries.
+     * @return An Activities wrapper holding ActivityVOs for all materialized occurrences updated.
+     * @throws RuntimeException if the ActivitySeries or occurrence did not exist, or if the activeMembership
+     *                          was not permitted to update the ActivitySeries.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    Activities updateOccurrence(final long seriesID,
+                                final LocalDateTime occurrenceStart,
+                                final ActivityVO targetState,
+                                final EditScope scope,
+                                final Membership activeMembership) throws RuntimeException;
+}
@@ -22,13 +22,19 @@
 package se.mithlond.services.organisation.api;
 
 import se.mithlond.services.organisation.api.parameters.ActivitySearchParameters;
+import se.mithlond.services.organisation.model.activity.Activity;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityFacetVO;
 import se.mithlond.services.organisation.model.transport.activity.Admissions;
+import se.mithlond.services.organisation.model.transport.activity.FreeBusy;
 import se.mithlond.services.organisation.model.transport.address.CategoriesAndAddresses;
 import se.mithlond.services.shared.authorization.api.RequireAuthorization;
 
 import javax.ejb.Local;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service specification for Activity management, enabling callers
@@ -57,6 +63,8 @@ public interface ActivityService {
 
     /**
      * Retrieves all Activities within the supplied organisationName within the supplied range of dates.
+     * Shallow (i.e. ActivityVO) results also contain occurrences of ActivitySeries which are not yet materialized,
+     * unless specific activityIDs are requested. Such ActivityVOs have a seriesID but no JPA ID.
      *
      * @param parameters       A non-null ActivitySearchParameters instance detailing which Activities should be retrieved.
      * @param activeMembership The Membership executing this call (hence being the 'active' {@link Membership}).
@@ -65,6 +73,52 @@ public interface ActivityService {
     @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
     Activities getActivities(final ActivitySearchParameters parameters, final Membership activeMembership);
 
+    /**
+     * Performs a faceted and paginated search for Activities. The returned Activities holds
+     * <ol>
+     * <li>the requested page of shallow ActivityVOs (sorted by start time),</li>
+     * <li>the total number of Activities matching the search, and</li>
+     * <li>the counts of all facets requested within the parameters, calculated in a single grouped query.</li>
+     * </ol>
+     * Occurrences of ActivitySeries which are not yet materialized are not included.
+     *
+     * @param parameters       The non-null ActivitySearchParameters, holding facets and page.
+     * @param activeMembership The active Membership, used to calculate the
+     *                         {@link ActivityFacetVO.Facet#ADMITTED} facet.
+     * @return An Activities wrapper holding the page, total count and facet counts.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    Activities searchActivities(final ActivitySearchParameters parameters, final Membership activeMembership);
+
+    /**
+     * Retrieves a compact version tag for the calendar feed of Activities matching the supplied parameters,
+     * calculated from the JPA IDs and versions of the matching Activities and the location and Organisation
+     * data rendered within the feed. The tag changes whenever an Activity within the feed is created, updated
+     * or removed, or its rendered data changes, and is therefore suitable as an HTTP entity tag.
+     *
+     * @param parameters A non-null ActivitySearchParameters instance detailing which Activities should be
+     *                   included in the feed. If membershipIDs are supplied, only Activities to which any of
+     *                   the given Memberships are admitted are included.
+     * @return A non-empty version tag for the calendar feed.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    String getCalendarFeedVersion(final ActivitySearchParameters parameters);
+
+    /**
+     * Streams all Activities matching the supplied parameters, ordered by startTime, to the supplied consumer.
+     * Activities are read from the database in fixed-size batches, each of which continues directly after the
+     * last Activity of the previous batch. Streamed Activities remain managed until the current transaction
+     * ends.
+     *
+     * @param parameters A non-null ActivitySearchParameters instance detailing which Activities should be
+     *                   included in the feed. If membershipIDs are supplied, only Activities to which any of
+     *                   the given Memberships are admitted are included.
+     * @param consumer   A non-null consumer invoked once per Activity within the feed.
+     * @return The number of Activities handed to the consumer.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    int streamCalendarFeed(final ActivitySearchParameters parameters, final Consumer<Activity> consumer);
+
     /**
      * Adds the given Activities to the database/calendar shared by the organisation.
      *
@@ -125,4 +179,22 @@ public interface ActivityService {
      * within the given organisation.
      */
     CategoriesAndAddresses getActivityLocationAddresses(final Long organisationID);
+
+    /**
+     * Retrieves the free/busy information of the supplied Memberships within a time window, i.e. the merged
+     * intervals where each Membership is admitted to a non-cancelled Activity, as well as the free slots common
+     * to all supplied Memberships. Memberships not belonging to the given Organisation are reported without
+     * busy intervals.
+     *
+     * @param organisationID The JPA ID of the Organisation of the Memberships.
+     * @param membershipIDs  The JPA IDs of the Memberships for which free/busy information should be retrieved.
+     * @param from           The (inclusive) start of the time window.
+     * @param to             The (exclusive) end of the time window. Must be after {@code from}.
+     * @return The FreeBusy information for the supplied Memberships within the time window.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    FreeBusy getFreeBusy(final long organisationID,
+                         final List<Long> membershipIDs,
+                         final LocalDateTime from,
+                         final LocalDateTime to);
 }
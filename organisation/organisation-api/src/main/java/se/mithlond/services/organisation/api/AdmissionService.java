@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.shared.authorization.api.RequireAuthorization;
+
+import javax.ejb.Local;
+
+/**
+ * Service specification for contention-safe admission of a single Membership to an Activity.
+ * Admissions to the same Activity are serialized, implying that concurrent callers receive deterministic
+ * outcomes even when an Activity with a limited number of participants is opened for admissions.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface AdmissionService {
+
+    /**
+     * Outcome enumeration for admission attempts.
+     */
+    enum AdmissionOutcome {
+
+        /**
+         * The Membership was admitted to the Activity.
+         */
+        ADMITTED,
+
+        /**
+         * The Membership was not admitted, since the Activity already has its maximum number of participants.
+         */
+        FULL,
+
+        /**
+         * The Membership was already admitted to the Activity; nothing was changed.
+         */
+        ALREADY_ADMITTED,
+
+        /**
+         * The Membership was not admitted, since the Activity is cancelled or its last admission date has passed.
+         */
+        CLOSED
+    }
+
+    /**
+     * Admits the supplied Membership to the Activity with the supplied JPA ID, provided that the Activity
+     * is open for admissions and has not reached its maximum number of participants.
+     *
+     * @param activeMembership The non-null Membership to admit.
+     * @param activityID       The JPA ID of the Activity to which the activeMembership should be admitted.
+     * @param note             An optional admission note.
+     * @return The outcome of the admission attempt.
+     * @throws IllegalArgumentException if no Activity with the supplied JPA ID exists.
+     * @throws IllegalStateException    if the Activity could not be locked for admissions within a bounded time.
+     */
+    @RequireAuthorization(authorizationPatterns = "//Inbyggare/")
+    AdmissionOutcome admit(final Membership activeMembership, final long activityID, final String note)
+            throws IllegalArgumentException;
+}
@@ -0,0 +1,68 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrix;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>Service specification for aggregating the Allergies and FoodPreferences of the Memberships admitted
+ * to an Activity into an {@link AllergyMatrix}, as required by caterers. The aggregation is performed with
+ * set-based queries over the Admissions of the Activity, joined to the Allergies and FoodPreferences of the
+ * admitted Memberships.</p>
+ * <p>Each AllergyMatrix is cached per Activity, and reused as long as its version is unchanged. The version
+ * is calculated from the JPA IDs and versions of the Activity, its admitted Memberships, the relevant
+ * Allergies and FoodPreferences and the names of the allergenic Foods, implying that changes made by any
+ * service (including renamed aliases and Foods) are detected without explicit notification.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface AllergyMatrixService {
+
+    /**
+     * Retrieves the current version of the AllergyMatrix of the supplied Activity, without building it.
+     * Suitable as an entity tag for conditional requests.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation owning the Activity.
+     * @param activityJpaID     The JPA ID of the Activity.
+     * @return The current version of the AllergyMatrix of the supplied Activity.
+     * @throws IllegalArgumentException if the Activity does not exist within the supplied Organisation.
+     */
+    String getAllergyMatrixVersion(@NotNull final Long organisationJpaID, final long activityJpaID)
+            throws IllegalArgumentException;
+
+    /**
+     * Retrieves the AllergyMatrix of the supplied Activity, using food names and severity descriptions in the
+     * Locale of the owning Organisation. The returned AllergyMatrix may be cached and shared, and must
+     * therefore not be modified.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation owning the Activity.
+     * @param activityJpaID     The JPA ID of the Activity.
+     * @return The current AllergyMatrix of the supplied Activity.
+     * @throws IllegalArgumentException if the Activity does not exist within the supplied Organisation.
+     */
+    AllergyMatrix getAllergyMatrix(@NotNull final Long organisationJpaID, final long activityJpaID)
+            throws IllegalArgumentException;
+}
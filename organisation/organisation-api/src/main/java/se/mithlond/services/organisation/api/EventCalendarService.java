@@ -31,15 +31,20 @@ import javax.ejb.Local;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Specification for how to integrate an organisation with a Calendar service provider.
- * The EventCalendar metadata structure represent a Calendar within a [remote] calendar service provider.
+ * <p>Specification for how to integrate an organisation with a Calendar service provider.
+ * The EventCalendar metadata structure represent a Calendar within a [remote] calendar service provider.</p>
+ * <p>As an ActivityChangeListener, the EventCalendarService enqueues the Activities created, updated or removed
+ * within a transaction for pushing to the EventCalendars of their owning Organisations, when (and only if) the
+ * transaction commits. Removed Activities are enqueued with their last version; receivers find them absent
+ * from the database, and should remove the corresponding events.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
 @Local
-public interface EventCalendarService extends JpaCudService {
+public interface EventCalendarService extends JpaCudService, ActivityChangeListener {
 
     /**
      * The JNDI name of the EventCalendar request Destination, to which push commands are sent for further processing
@@ -86,4 +91,21 @@ public interface EventCalendarService extends JpaCudService {
                         @NotNull LocalDate startTime,
                         @NotNull LocalDate endTime,
                         @NotNull Membership activeMembership);
+
+    /**
+     * <p>Enqueues changed Activities for pushing to all EventCalendars owned by the supplied Organisation within
+     * the current runtime environment. Changes are coalesced per EventCalendar, implying that a burst of changes
+     * (such as a bulk edit of many Activities) results in a single push request per EventCalendar containing
+     * the IDs and versions of all changed Activities.</p>
+     * <p>The changes are enqueued immediately, even if the current transaction is later rolled back.
+     * Services changing Activities should therefore notify the EventCalendarService as an
+     * ActivityChangeListener instead.</p>
+     *
+     * @param owningOrganisationName The name of the Organisation owning the changed Activities.
+     *                               Cannot be {@code null} or empty.
+     * @param activityID2Version     A Map relating the JPA IDs of the changed Activities to their JPA versions.
+     *                               Cannot be {@code null}.
+     */
+    void enqueueActivityChanges(@NotNull String owningOrganisationName,
+                                @NotNull Map<Long, Long> activityID2Version);
 }
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.transport.food.Foods;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+import java.util.Locale;
+
+/**
+ * <p>Service specification for a read-only, in-memory catalogue of all Foods (and FoodPreference Categories),
+ * holding one immutable snapshot per Locale. Snapshots are built lazily, and discarded when the version of
+ * the Food catalogue changes. The version is calculated with aggregate queries over the Foods, their
+ * localized names and their Categories, implying that changes are detected without explicit notification.</p>
+ * <p>Each snapshot also indexes the words of the localized Food names and the names of their Categories,
+ * supporting autocompletion by prefix as well as typo-tolerant (i.e. within a small edit distance) search.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface FoodCatalogueService {
+
+    /**
+     * The default maximum number of Foods retrieved by {@link #searchFoods(Locale, String, int)}.
+     */
+    int DEFAULT_MAX_RESULTS = 20;
+
+    /**
+     * Retrieves the current version of the Food catalogue, without building any snapshot.
+     * Suitable (along with the Locale) as an entity tag for conditional requests.
+     *
+     * @return The current version of the Food catalogue.
+     */
+    String getCatalogueVersion();
+
+    /**
+     * Retrieves a shallow-detail Foods snapshot holding all known Foods, their Categories and all
+     * FoodPreference Categories, with food names in the supplied Locale. The returned Foods is shared
+     * between callers, and must therefore not be modified.
+     *
+     * @param locale The Locale of the food names.
+     * @return The current Foods snapshot for the supplied Locale.
+     */
+    Foods getFoods(@NotNull final Locale locale);
+
+    /**
+     * Retrieves a shallow-detail Foods holding the Foods whose localized names (or Category names) contain
+     * a word starting with the supplied prefix, followed by the Foods whose localized names (or Category
+     * names) contain a word within a small edit distance from the supplied prefix. The edit distance permitted
+     * grows with the length of the prefix, such that short prefixes must match exactly.
+     *
+     * @param locale     The Locale of the food names.
+     * @param prefix     The (case-insensitive) prefix or misspelled word to search for. A blank prefix
+     *                   matches all Foods.
+     * @param maxResults The maximum number of Foods to retrieve. Must be positive.
+     * @return A new Foods holding the matching Foods and their Categories, but no FoodPreference Categories.
+     * @throws IllegalArgumentException if maxResults is not positive.
+     */
+    Foods searchFoods(@NotNull final Locale locale, final String prefix, final int maxResults)
+            throws IllegalArgumentException;
+}
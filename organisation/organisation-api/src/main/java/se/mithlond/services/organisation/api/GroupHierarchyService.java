@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.membership.GroupTree;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * <p>Service specification for the in-memory Group hierarchy, partitioned per Organisation. Each partition
+ * holds the ancestor/descendant closure of all Groups and Guilds within its Organisation, implying that
+ * questions like "is any of these Groups within the subtree of that Group" are answered with hash lookups
+ * rather than by walking the parent chain of each Group. The closure also yields the Groups granting
+ * Administrator privileges (i.e. the subtrees of the standard administrator Groups), from which the
+ * Administrator flag of each Membership is derived and cached.</p>
+ * <p>Partitions are built from the database when first used (and on demand), and thereafter maintained
+ * incrementally by the services creating, moving and removing Groups. Cached Administrator flags and member
+ * counts are evicted when Memberships are reported as changed (as a {@link MembershipChangeListener}).</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface GroupHierarchyService extends MembershipChangeListener {
+
+    /**
+     * The default number of levels expanded below the root nodes of a GroupTree.
+     */
+    int DEFAULT_TREE_DEPTH = 1;
+
+    /**
+     * Checks if the supplied Membership is an Administrator within its own Organisation, implying that it
+     * is a member of a standard administrator Group or any Group within its subtree. GuildMemberships do not
+     * grant Administrator privileges. The Groups of the Membership are read from the database, so only the
+     * JPA ID and Organisation of the supplied Membership are used; Memberships not yet persisted are never
+     * Administrators.
+     *
+     * @param membership The non-null Membership to check.
+     * @return {@code true} if the supplied Membership is an Administrator within its own Organisation.
+     */
+    boolean isAdministrator(@NotNull final Membership membership);
+
+    /**
+     * Checks if any of the supplied Groups is the ancestor Group or any of its descendants.
+     *
+     * @param organisationJpaID  The JPA ID of the Organisation holding the Groups.
+     * @param ancestorGroupJpaID The JPA ID of the Group (or Guild) at the root of the subtree.
+     * @param groupJpaIDs        The JPA IDs of the Groups (or Guilds) to check.
+     * @return {@code true} if any of the supplied Groups is within the subtree of the ancestor Group.
+     */
+    boolean isAnyWithinSubtree(@NotNull final Long organisationJpaID,
+                               @NotNull final Long ancestorGroupJpaID,
+                               @NotNull final Collection<Long> groupJpaIDs);
+
+    /**
+     * Retrieves the JPA IDs of the supplied Group and all its descendants.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation holding the Group.
+     * @param groupJpaID        The JPA ID of the Group (or Guild) at the root of the subtree.
+     * @return An unmodifiable Set holding the JPA IDs of the Group and all its descendants.
+     * Empty if the Group is not known.
+     */
+    Set<Long> getSubtree(@NotNull final Long organisationJpaID, @NotNull final Long groupJpaID);
+
+    /**
+     * Retrieves the hierarchy of Groups and Guilds within the supplied Organisation (or the subtree of one of
+     * them), including the direct and recursive member counts of each Group and Guild. The member counts are
+     * cached per Organisation, and evicted when Memberships or Groups are reported as changed.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation holding the Groups.
+     * @param rootGroupJpaID    The JPA ID of the Group (or Guild) at the root of the retrieved subtree, or
+     *                          {@code null} to retrieve the hierarchy below all root Groups of the Organisation.
+     * @param depth             The number of levels to expand below the root node(s). Must not be negative;
+     *                          0 implies that only the root node(s) are retrieved.
+     * @return A GroupTree holding the (partly expanded) hierarchy. Empty if the root Group is not known.
+     */
+    GroupTree getGroupTree(@NotNull final Long organisationJpaID, final Long rootGroupJpaID, final int depth);
+
+    /**
+     * Notifies this GroupHierarchyService that the supplied Group was created, renamed or moved
+     * (i.e. had its parent changed) within the current transaction.
+     *
+     * @param group The non-null, created or updated (and flushed) Group or Guild.
+     */
+    void groupChanged(@NotNull final Group group);
+
+    /**
+     * Notifies this GroupHierarchyService that the supplied Group was removed within the current transaction.
+     * Any child Groups of the removed Group should be reported as changed.
+     *
+     * @param group The non-null, removed Group or Guild.
+     */
+    void groupRemoved(@NotNull final Group group);
+
+    /**
+     * Rebuilds the hierarchy partition of the supplied Organisation from the database.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation whose partition should be rebuilt.
+     * @return The number of Groups (and Guilds) within the rebuilt partition.
+     */
+    int rebuild(@NotNull final Long organisationJpaID);
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * <p>Service specification for the in-memory index of the Memberships within each Group and Guild,
+ * partitioned per Organisation. Each Membership is assigned a dense int ordinal within its Organisation,
+ * and each Group and Guild holds a compressed bitmap of the ordinals of its Memberships - implying that
+ * mailing list recipients, "members in any of these groups" and set differences between groups are
+ * calculated as bitmap operations instead of traversing Memberships.</p>
+ * <p>Partitions are built from the database when first used (and on demand), and thereafter maintained
+ * incrementally by the services changing Memberships (as a {@link MembershipChangeListener}).</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface GroupMembershipIndexService extends MembershipChangeListener {
+
+    /**
+     * Retrieves the recipients of the mailing lists of all Groups and Guilds within the supplied Organisation,
+     * i.e. the email addresses of the Memberships with the {@code loginPermitted} flag set within each Group or
+     * Guild having an emailList. Memberships without an email alias are not recipients.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation whose mailing lists should be retrieved.
+     * @return A SortedMap relating the full email address of each mailing list to the email addresses of
+     * its recipients. Mailing lists without recipients are included with an empty SortedSet.
+     */
+    SortedMap<String, SortedSet<String>> getMailingListRecipients(@NotNull final Long organisationJpaID);
+
+    /**
+     * Retrieves the email addresses of all Memberships with the {@code loginPermitted} flag set within the
+     * supplied Organisation.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation whose member email addresses should be retrieved.
+     * @return The email addresses of all Memberships permitted to login within the Organisation.
+     */
+    SortedSet<String> getMemberEmailAddresses(@NotNull final Long organisationJpaID);
+
+    /**
+     * Retrieves the JPA IDs of the Memberships within any of the supplied Groups (or Guilds), except the
+     * Memberships within any of the excluded Groups (or Guilds).
+     *
+     * @param organisationJpaID        The JPA ID of the Organisation holding the Groups.
+     * @param anyOfGroupJpaIDs         The JPA IDs of the Groups or Guilds whose Memberships should be retrieved.
+     *                                 A null or empty Collection implies all Memberships within the Organisation.
+     * @param excludedGroupJpaIDs      The JPA IDs of the Groups or Guilds whose Memberships should not be
+     *                                 retrieved. May be null or empty.
+     * @param includeLoginNotPermitted if {@code false}, only Memberships with the {@code loginPermitted} flag set
+     *                                 are retrieved.
+     * @return The JPA IDs of the matching Memberships.
+     */
+    SortedSet<Long> getMembershipIDs(@NotNull final Long organisationJpaID,
+                                     final Collection<Long> anyOfGroupJpaIDs,
+                                     final Collection<Long> excludedGroupJpaIDs,
+                                     final boolean includeLoginNotPermitted);
+
+    /**
+     * Counts the distinct Memberships within any of the supplied Groups (or Guilds), without retrieving them.
+     *
+     * @param organisationJpaID        The JPA ID of the Organisation holding the Groups.
+     * @param anyOfGroupJpaIDs         The JPA IDs of the Groups or Guilds whose Memberships should be counted.
+     *                                 A null or empty Collection implies all Memberships within the Organisation.
+     * @param includeLoginNotPermitted if {@code false}, only Memberships with the {@code loginPermitted} flag set
+     *                                 are counted.
+     * @return The number of distinct Memberships within any of the supplied Groups.
+     */
+    int countMemberships(@NotNull final Long organisationJpaID,
+                         final Collection<Long> anyOfGroupJpaIDs,
+                         final boolean includeLoginNotPermitted);
+
+    /**
+     * Rebuilds the index partition of the supplied Organisation from the database.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation whose partition should be rebuilt.
+     * @return The number of Memberships within the rebuilt partition.
+     */
+    int rebuild(@NotNull final Long organisationJpaID);
+}
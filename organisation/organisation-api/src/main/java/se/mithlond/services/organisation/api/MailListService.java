@@ -44,6 +44,28 @@ public interface MailListService {
      */
     String COMMAND_PARAM = "command";
 
+    /**
+     * The (boolean) JMS message parameter indicating that the message holds the full recipients of all mailing
+     * lists, as sent by {@link #resyncMailingLists(String)}.
+     */
+    String FULL_RESYNC_PARAM = "fullResync";
+
+    /**
+     * The kind of mailing list lines holding all recipients of a mailing list.
+     */
+    String PUSH_FULL = "full";
+
+    /**
+     * The kind of mailing list lines holding the recipients added to (prefixed with '+') and removed from
+     * (prefixed with '-') a mailing list since its previous push.
+     */
+    String PUSH_DELTA = "delta";
+
+    /**
+     * The kind of mailing list lines indicating that a mailing list no longer exists.
+     */
+    String PUSH_REMOVED = "removed";
+
     /**
      * The JNDI name of the MailingList request Destination, to which push commands are sent for further processing
      * within another thread/transaction.
@@ -59,6 +81,8 @@ public interface MailListService {
     /**
      * <p>Pushes all [locally known] email addresses to a remote MailingList service, to serve as a whitelist of
      * originating email addresses.</p>
+     * <p>The body of the outbound JMS message holds the email addresses of all Memberships permitted to login,
+     * one per line.</p>
      *
      * @param owningOrganisationName The name of the Organisation owning the EventCalendar to which activity
      *                               information should be pushed. Cannot be {@code null} or empty.
@@ -69,10 +93,26 @@ public interface MailListService {
     /**
      * <p>Pushes all mailing lists (including their metadata, such as descriptions) to a remote MailingList service, to
      * create or update existing mailing lists.</p>
+     * <p>Only the mailing lists changed since their previous push are sent. The body of the outbound JMS message
+     * holds one line per changed mailing list, on the form
+     * <code>[kind] [sequence number] [list address] [entry],[entry],...</code> where the kind is one of
+     * {@link #PUSH_FULL}, {@link #PUSH_DELTA} and {@link #PUSH_REMOVED}. The sequence number of each mailing
+     * list starts at 1 and is increased by each push of the list; receivers missing a sequence number of a list
+     * should request a {@link #resyncMailingLists(String)}. No message is sent if no mailing list changed.</p>
      *
      * @param owningOrganisationName The name of the Organisation owning the EventCalendar to which activity
      *                               information should be pushed. Cannot be {@code null} or empty.
      */
     @Asynchronous
     void pushMailingLists(@NotNull String owningOrganisationName);
+
+    /**
+     * <p>Pushes all mailing lists to a remote MailingList service, holding the full recipients of each mailing
+     * list (irrespective of its previous push) on the form described in {@link #pushMailingLists(String)}.</p>
+     *
+     * @param owningOrganisationName The name of the Organisation owning the mailing lists to push.
+     *                               Cannot be {@code null} or empty.
+     */
+    @Asynchronous
+    void resyncMailingLists(@NotNull String owningOrganisationName);
 }
@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.membership.Membership;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Specification for services maintaining in-memory views over Memberships, which must be notified by the
+ * services changing Memberships (and their Users, GroupMemberships and GuildMemberships). Implementations
+ * should apply the changes to their views when (and only if) the current transaction commits.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public interface MembershipChangeListener {
+
+    /**
+     * Notifies this MembershipChangeListener that the supplied Memberships were created or updated within the
+     * current transaction.
+     *
+     * @param changed The non-null List of created or updated (and flushed) Memberships.
+     */
+    void membershipsChanged(@NotNull final List<Membership> changed);
+
+    /**
+     * Notifies this MembershipChangeListener that the supplied Memberships were removed within the current
+     * transaction.
+     *
+     * @param removed The non-null List of removed Memberships.
+     */
+    void membershipsRemoved(@NotNull final List<Membership> removed);
+}
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>Service specification for the in-memory directory of Memberships, partitioned per Organisation.
+ * Each partition holds the slim records (i.e. SlimMemberVOs) of all Memberships within its Organisation,
+ * a prefix trie over their aliases, first names and last names as well as indices of the Memberships
+ * within each Group and Guild - implying that lookups never need to query the database.</p>
+ * <p>Partitions are built from the database when first used (and on demand), and thereafter maintained
+ * incrementally by the services changing Memberships (as a {@link MembershipChangeListener}).</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface MembershipDirectoryService extends MembershipChangeListener {
+
+    /**
+     * The default maximum number of Memberships retrieved by a search.
+     */
+    int DEFAULT_MAX_RESULTS = 20;
+
+    /**
+     * Searches for Memberships within the supplied Organisation, whose alias, sub alias, first name or last name
+     * (or any word within them) starts with the supplied prefix. Case and diacritics are ignored, except for
+     * the Swedish letters &aring;, &auml; and &ouml;.
+     *
+     * @param organisationJpaID        The JPA ID of the Organisation within which Memberships should be found.
+     * @param prefix                   The prefix to search for. A null or empty prefix matches all Memberships.
+     * @param groupJpaID               If non-null, only Memberships within the Group (or Guild) with this JPA ID
+     *                                 are retrieved.
+     * @param includeLoginNotPermitted if {@code false}, only Memberships with the {@code loginPermitted} flag set
+     *                                 are retrieved.
+     * @param maxResults               The maximum number of Memberships to retrieve. Must be positive.
+     * @return A MembershipListVO holding the SlimMemberVOs of the matching Memberships, in the order of
+     * their matching names.
+     */
+    MembershipListVO search(@NotNull final Long organisationJpaID,
+                            final String prefix,
+                            final Long groupJpaID,
+                            final boolean includeLoginNotPermitted,
+                            final int maxResults);
+
+    /**
+     * Retrieves the Memberships within the Group (or Guild) with the supplied JPA ID.
+     *
+     * @param organisationJpaID        The JPA ID of the Organisation holding the Group.
+     * @param groupJpaID               The JPA ID of the Group or Guild.
+     * @param includeLoginNotPermitted if {@code false}, only Memberships with the {@code loginPermitted} flag set
+     *                                 are retrieved.
+     * @return A MembershipListVO holding the SlimMemberVOs of the Memberships within the Group, sorted by alias.
+     */
+    MembershipListVO getGroupMembers(@NotNull final Long organisationJpaID,
+                                     @NotNull final Long groupJpaID,
+                                     final boolean includeLoginNotPermitted);
+
+    /**
+     * Rebuilds the directory partition of the supplied Organisation from the database.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation whose partition should be rebuilt.
+     * @return The number of Memberships within the rebuilt partition.
+     */
+    int rebuild(@NotNull final Long organisationJpaID);
+}
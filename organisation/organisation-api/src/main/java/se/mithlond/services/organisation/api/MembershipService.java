@@ -21,6 +21,7 @@
  */
 package se.mithlond.services.organisation.api;
 
+import se.mithlond.services.organisation.api.event.MembershipChangedEvent;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
 import se.mithlond.services.shared.spi.jpa.JpaCudService;
@@ -36,6 +37,12 @@ import java.util.List;
 @Local
 public interface MembershipService extends JpaCudService {
 
+    /**
+     * The JNDI name of the JMS Topic to which {@link MembershipChangedEvent}s are published, after the
+     * transactions changing the Memberships have committed.
+     */
+    String MEMBERSHIP_CHANGED = "java:global/jms/nazgul/services/membership/changed";
+
     /**
      * Retrieves all Memberships within the named Organisation, including the Memberships with
      * the "Login not permitted" flag set, if so indicated.
@@ -49,6 +56,39 @@ public interface MembershipService extends JpaCudService {
      */
     List<Membership> getMembershipsIn(final Long organisationJpaID, final boolean includeLoginNotPermitted);
 
+    /**
+     * Retrieves a page of the Memberships within the identified Organisation, in the same order as
+     * {@link #getMembershipsIn(Long, boolean)}. Use this method to process large numbers of Memberships
+     * without loading them all at once.
+     *
+     * @param organisationJpaID        The JpaID of the organisation for which Memberships should be retrieved.
+     * @param includeLoginNotPermitted if {@code true}, Memberships not permitted login are also retrieved.
+     * @param firstResult              The index of the first Membership to retrieve. Must not be negative.
+     * @param maxResults               The maximum number of Memberships to retrieve. Must be positive.
+     * @return The Memberships of the requested page, which is empty beyond the last page.
+     * @throws IllegalArgumentException if firstResult is negative or maxResults is not positive.
+     */
+    List<Membership> getMembershipsIn(final Long organisationJpaID,
+                                      final boolean includeLoginNotPermitted,
+                                      final int firstResult,
+                                      final int maxResults) throws IllegalArgumentException;
+
+    /**
+     * Retrieves listing information about all Memberships within the identified Organisation, including the
+     * Memberships with the "Login not permitted" flag set, if so indicated. The information is projected
+     * directly into transport objects, implying that no Membership, User or Group entities are loaded.
+     *
+     * @param organisationJpaID        The JpaID of the organisation for which all Memberships should be retrieved.
+     * @param includeLoginNotPermitted if {@code true}, all Memberships will be retrieved. if {@code false}, only
+     *                                 Memberships with the {@code loginPermitted} flag set to true will be included
+     *                                 in the result.
+     * @return A MembershipListVO holding one SlimMemberVO (including contact information, groups and guilds)
+     * per retrieved Membership, sorted by alias.
+     * @throws IllegalArgumentException if no Organisation with the supplied JPA ID could be found.
+     */
+    MembershipListVO getSlimMembershipsIn(final Long organisationJpaID, final boolean includeLoginNotPermitted)
+            throws IllegalArgumentException;
+
     /**
      * Retrieves the Membership corresponding to the supplied organisation name and alias.
      *
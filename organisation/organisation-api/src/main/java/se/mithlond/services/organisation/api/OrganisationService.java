@@ -34,6 +34,8 @@ import se.mithlond.services.shared.spi.jpa.JpaCudService;
 
 import javax.ejb.Local;
 import javax.validation.constraints.NotNull;
+import java.util.Collection;
+import java.util.SortedMap;
 import java.util.SortedSet;
 
 /**
@@ -134,4 +136,19 @@ public interface OrganisationService extends JpaCudService {
      * @return {@code true} if the supplied Membership is an Administrator within the supplied Organisation.
      */
     boolean isAdministratorFor(final Membership adminCandidate, final Organisation organisation);
+
+    /**
+     * Finds out within which of the supplied Organisations the given Membership is an Administrator, using one
+     * query to load the Organisations and (at most) one query to load the Group hierarchy. Prefer this method
+     * to repeated calls to {@link #isAdministratorFor(Membership, Organisation)} when handling several
+     * Organisations. Unknown Organisation JPA IDs are ignored.
+     *
+     * @param membership      The non-null Membership to check for Administrator-ship.
+     * @param organisationIDs The non-null JPA IDs of the Organisations within which the Membership should be
+     *                        checked for Admin-ship.
+     * @return An unmodifiable SortedMap relating each found Organisation to {@code true} if the supplied
+     * Membership is an Administrator within it.
+     */
+    SortedMap<Organisation, Boolean> resolveAdministrativeScopes(@NotNull final Membership membership,
+                                                                 @NotNull final Collection<Long> organisationIDs);
 }
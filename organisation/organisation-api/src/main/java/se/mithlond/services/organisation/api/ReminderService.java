@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import javax.ejb.Local;
+
+/**
+ * <p>Service specification for reminding Memberships before their Activities start, and before the
+ * admission deadlines (i.e. the late and last admission dates) of Activities pass. Due reminders are
+ * dispatched in batches as JMS messages to the {@link #REMINDER_REQUEST} Topic, whose consumers resolve
+ * the reminded Memberships and send the actual mails.</p>
+ * <p>Reminders are scheduled in memory for a rolling window, loaded from the database at startup and
+ * thereafter maintained incrementally by the services changing Activities (as an
+ * {@link ActivityChangeListener}). A persisted high-water mark holds the time up to which all due reminders
+ * have been dispatched, implying that no reminder is dispatched twice or lost following a restart.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface ReminderService extends ActivityChangeListener {
+
+    /**
+     * The JNDI name of the JMS Topic to which due reminders are dispatched.
+     */
+    String REMINDER_REQUEST = "java:global/jms/nazgul/services/reminders/request";
+
+    /**
+     * The kinds of event about which Memberships are reminded.
+     */
+    enum ReminderType {
+
+        /**
+         * The start of an Activity. Admitted Memberships should be reminded.
+         */
+        ACTIVITY_START,
+
+        /**
+         * The late admission date of an Activity, after which admissions cost the late admission cost.
+         * Memberships not yet admitted should be reminded.
+         */
+        LATE_ADMISSION,
+
+        /**
+         * The end of the last admission date of an Activity, after which no admissions are accepted.
+         * Memberships not yet admitted should be reminded.
+         */
+        LAST_ADMISSION
+    }
+
+    /**
+     * Dispatches all reminders due by now, and moves the persisted high-water mark accordingly.
+     *
+     * @return The number of dispatched reminders.
+     */
+    int dispatchDueReminders();
+
+    /**
+     * Re-schedules all reminders within the rolling window from the database.
+     *
+     * @return The number of scheduled reminders.
+     */
+    int reload();
+
+    /**
+     * @return The number of currently scheduled (i.e. not yet dispatched) reminders.
+     */
+    int getNumberOfScheduledReminders();
+}
@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api;
+
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+
+import javax.ejb.Local;
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>Service specification for the read model of upcoming Activities per Membership, i.e. the non-cancelled
+ * and not yet ended Activities to which each Membership is admitted, sorted by start time.</p>
+ * <p>The read model is built from the database at startup (and on demand), and thereafter maintained
+ * incrementally by the services changing Activities and Admissions (as an {@link ActivityChangeListener}).
+ * Ended Activities are pruned periodically.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Local
+public interface UpcomingActivityService extends ActivityChangeListener {
+
+    /**
+     * The default maximum number of upcoming Activities retrieved.
+     */
+    int DEFAULT_MAX_RESULTS = 10;
+
+    /**
+     * Retrieves the next upcoming Activities to which the supplied Membership is admitted, sorted by start time.
+     * The ActivityVOs within the returned Activities are shallow, i.e. their admissions are not populated.
+     *
+     * @param activeMembership The non-null Membership for which upcoming Activities should be retrieved.
+     * @param maxResults       The maximum number of Activities to retrieve. Must be positive.
+     * @return An Activities wrapper holding the ActivityVOs of the next upcoming Activities.
+     */
+    Activities getUpcomingActivities(@NotNull final Membership activeMembership, final int maxResults);
+
+    /**
+     * Rebuilds the read model of upcoming Activities from the database.
+     *
+     * @return The number of upcoming Activities within the rebuilt read model.
+     */
+    int rebuild();
+}
@@ -0,0 +1,269 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api.event;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Compact, immutable event describing that a Membership was changed within a committed transaction.
+ * The event carries the JPA IDs of the Organisation and Membership, the version of the Membership after
+ * the change, and the kinds of change - but not the changed state itself. Consumers should hence re-read
+ * the changed Membership, unless they already hold the given (or a later) version.</p>
+ * <p>Events are transported as text, one event per line, where each line holds the colon-separated
+ * {@code organisationJpaID:membershipJpaID:version:changeKindMask}. The change kind mask has bit
+ * {@code ChangeKind.ordinal()} set for each kind of change.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class MembershipChangedEvent implements Serializable, Comparable<MembershipChangedEvent> {
+
+    private static final long serialVersionUID = 8829990042L;
+
+    /**
+     * The kinds of Membership change.
+     */
+    public enum ChangeKind {
+
+        /**
+         * The Membership was created.
+         */
+        CREATED,
+
+        /**
+         * The personal data (i.e. birthday, contact details or home address) of the Membership's User was changed.
+         */
+        PERSONAL_DATA,
+
+        /**
+         * The loginPermitted flag of the Membership was changed.
+         */
+        LOGIN_PERMISSION,
+
+        /**
+         * The GroupMemberships of the Membership were changed.
+         */
+        GROUPS,
+
+        /**
+         * The GuildMemberships of the Membership were changed.
+         */
+        GUILDS,
+
+        /**
+         * The Membership was removed.
+         */
+        REMOVED
+    }
+
+    // Internal state
+    private final long organisationJpaID;
+    private final long membershipJpaID;
+    private final long version;
+    private final Set<ChangeKind> changeKinds;
+
+    /**
+     * Compound constructor creating a MembershipChangedEvent wrapping the supplied data.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation of the changed Membership.
+     * @param membershipJpaID   The JPA ID of the changed Membership.
+     * @param version           The version of the Membership after the change.
+     * @param changeKinds       The non-empty kinds of change.
+     */
+    public MembershipChangedEvent(final long organisationJpaID,
+                                  final long membershipJpaID,
+                                  final long version,
+                                  final Set<ChangeKind> changeKinds) {
+
+        // Check sanity
+        Validate.notNull(changeKinds, "changeKinds");
+        Validate.isTrue(!changeKinds.isEmpty(), "Cannot handle empty changeKinds.");
+
+        // Assign internal state
+        this.organisationJpaID = organisationJpaID;
+        this.membershipJpaID = membershipJpaID;
+        this.version = version;
+        this.changeKinds = Collections.unmodifiableSet(EnumSet.copyOf(changeKinds));
+    }
+
+    /**
+     * @return The JPA ID of the Organisation of the changed Membership.
+     */
+    public long getOrganisationJpaID() {
+        return organisationJpaID;
+    }
+
+    /**
+     * @return The JPA ID of the changed Membership.
+     */
+    public long getMembershipJpaID() {
+        return membershipJpaID;
+    }
+
+    /**
+     * @return The version of the Membership after the change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The unmodifiable and non-empty Set of change kinds.
+     */
+    public Set<ChangeKind> getChangeKinds() {
+        return changeKinds;
+    }
+
+    /**
+     * Converts the supplied MembershipChangedEvents to the compact text body of a message.
+     *
+     * @param events The non-null MembershipChangedEvents to convert.
+     * @return The compact text body, holding one line per event.
+     */
+    public static String toMessageBody(final List<MembershipChangedEvent> events) {
+
+        // Check sanity
+        Validate.notNull(events, "events");
+
+        return events.stream()
+                .map(current -> {
+
+                    int mask = 0;
+                    for (ChangeKind currentKind : current.changeKinds) {
+                        mask |= 1 << currentKind.ordinal();
+                    }
+
+                    return current.organisationJpaID + ":" + current.membershipJpaID + ":" + current.version
+                            + ":" + mask;
+                })
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Parses the compact text body of a message.
+     *
+     * @param messageBody The compact text body, holding one line per event.
+     * @return The MembershipChangedEvents within the supplied message body, in message order.
+     * @throws IllegalArgumentException if any line within the message body could not be parsed.
+     */
+    public static List<MembershipChangedEvent> parseMessageBody(final String messageBody)
+            throws IllegalArgumentException {
+
+        final List<MembershipChangedEvent> toReturn = new ArrayList<>();
+        if (messageBody != null && !messageBody.trim().isEmpty()) {
+            for (String current : messageBody.trim().split("\n")) {
+
+                final String[] parts = current.trim().split(":");
+                Validate.isTrue(parts.length == 4, "Cannot parse MembershipChangedEvent [" + current + "]");
+
+                try {
+
+                    final int mask = Integer.parseInt(parts[3]);
+                    final Set<ChangeKind> changeKinds = EnumSet.noneOf(ChangeKind.class);
+                    for (ChangeKind currentKind : ChangeKind.values()) {
+                        if ((mask & (1 << currentKind.ordinal())) != 0) {
+                            changeKinds.add(currentKind);
+                        }
+                    }
+
+                    toReturn.add(new MembershipChangedEvent(
+                            Long.parseLong(parts[0]),
+                            Long.parseLong(parts[1]),
+                            Long.parseLong(parts[2]),
+                            changeKinds));
+
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Cannot parse MembershipChangedEvent [" + current + "]", e);
+                }
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final MembershipChangedEvent that) {
+
+        int toReturn = Long.compare(this.membershipJpaID, that.membershipJpaID);
+        if (toReturn == 0) {
+            toReturn = Long.compare(this.version, that.version);
+        }
+        if (toReturn == 0) {
+            toReturn = Long.compare(this.organisationJpaID, that.organisationJpaID);
+        }
+        if (toReturn == 0) {
+            toReturn = toMessageBody(Collections.singletonList(this))
+                    .compareTo(toMessageBody(Collections.singletonList(that)));
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MembershipChangedEvent)) {
+            return false;
+        }
+
+        final MembershipChangedEvent that = (MembershipChangedEvent) o;
+        return organisationJpaID == that.organisationJpaID
+                && membershipJpaID == that.membershipJpaID
+                && version == that.version
+                && changeKinds.equals(that.changeKinds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(membershipJpaID) ^ Long.hashCode(version);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "MembershipChangedEvent [org: " + organisationJpaID + ", membership: " + membershipJpaID
+                + ", version: " + version + ", changes: " + changeKinds + "]";
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api.event;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <p>Consumer-side helper maintaining a local replica of Memberships (or any per-Membership state derived from
+ * them) from {@link MembershipChangedEvent}s. The replica is typically seeded by a single full read, after which
+ * only the Memberships of received events are re-read using the supplied loader.</p>
+ * <p>Since events may be delivered more than once, and events from concurrent transactions may arrive out of
+ * order, events whose version is not newer than the version already held for the same Membership are ignored.
+ * Removed Memberships are remembered by version, implying that a delayed change event cannot resurrect them.</p>
+ *
+ * @param <T> The type of the replicated per-Membership state.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class MembershipReplica<T> {
+
+    // Internal state
+    private final Function<MembershipChangedEvent, T> loader;
+    private final Map<Long, Long> membershipID2Version = new HashMap<>();
+    private final Map<Long, T> membershipID2State = new HashMap<>();
+
+    /**
+     * Compound constructor creating a MembershipReplica using the supplied loader to read changed Memberships.
+     *
+     * @param loader The non-null Function reading the current state of the Membership identified by an event.
+     *               A {@code null} return value implies that the Membership no longer exists.
+     */
+    public MembershipReplica(final Function<MembershipChangedEvent, T> loader) {
+        this.loader = Validate.notNull(loader, "loader");
+    }
+
+    /**
+     * Seeds (or overwrites) the replicated state of a single Membership, typically from a full read.
+     *
+     * @param membershipJpaID The JPA ID of the Membership.
+     * @param version         The version of the Membership.
+     * @param state           The non-null state of the Membership.
+     */
+    public synchronized void put(final long membershipJpaID, final long version, final T state) {
+
+        // Check sanity
+        Validate.notNull(state, "state");
+
+        membershipID2Version.put(membershipJpaID, version);
+        membershipID2State.put(membershipJpaID, state);
+    }
+
+    /**
+     * Applies the supplied MembershipChangedEvent to this MembershipReplica.
+     *
+     * @param event The non-null MembershipChangedEvent.
+     * @return {@code true} if the event was applied, and {@code false} if it was ignored as a stale or
+     * duplicate event.
+     */
+    public synchronized boolean apply(final MembershipChangedEvent event) {
+
+        // Check sanity
+        Validate.notNull(event, "event");
+
+        final long membershipJpaID = event.getMembershipJpaID();
+        final Long knownVersion = membershipID2Version.get(membershipJpaID);
+        final boolean isRemoval = event.getChangeKinds().contains(MembershipChangedEvent.ChangeKind.REMOVED);
+
+        // Removing a Membership does not increase its version.
+        final boolean isStale = knownVersion != null && (isRemoval
+                ? event.getVersion() < knownVersion || !membershipID2State.containsKey(membershipJpaID)
+                : event.getVersion() <= knownVersion);
+        if (isStale) {
+            return false;
+        }
+
+        final T state = isRemoval ? null : loader.apply(event);
+        membershipID2Version.put(membershipJpaID, event.getVersion());
+        if (state == null) {
+            membershipID2State.remove(membershipJpaID);
+        } else {
+            membershipID2State.put(membershipJpaID, state);
+        }
+
+        // All Done.
+        return true;
+    }
+
+    /**
+     * Applies the supplied MembershipChangedEvents to this MembershipReplica.
+     *
+     * @param events The non-null MembershipChangedEvents.
+     * @return The number of applied (i.e. not ignored) events.
+     */
+    public int applyAll(final Collection<MembershipChangedEvent> events) {
+
+        // Check sanity
+        Validate.notNull(events, "events");
+
+        int toReturn = 0;
+        for (MembershipChangedEvent current : events) {
+            if (apply(current)) {
+                toReturn++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Parses and applies the MembershipChangedEvents within the supplied message body.
+     *
+     * @param messageBody The compact text body of a received message.
+     * @return The number of applied (i.e. not ignored) events.
+     * @see MembershipChangedEvent#parseMessageBody(String)
+     */
+    public int applyMessageBody(final String messageBody) {
+        return applyAll(MembershipChangedEvent.parseMessageBody(messageBody));
+    }
+
+    /**
+     * Retrieves the replicated state of a Membership.
+     *
+     * @param membershipJpaID The JPA ID of the Membership.
+     * @return The replicated state, or {@code null} if the Membership is unknown or removed.
+     */
+    public synchronized T get(final long membershipJpaID) {
+        return membershipID2State.get(membershipJpaID);
+    }
+
+    /**
+     * Retrieves the version of a Membership known to this MembershipReplica.
+     *
+     * @param membershipJpaID The JPA ID of the Membership.
+     * @return The known version of the Membership, or {@code -1} if the Membership is unknown.
+     */
+    public synchronized long getVersion(final long membershipJpaID) {
+        return membershipID2Version.getOrDefault(membershipJpaID, -1L);
+    }
+
+    /**
+     * @return An unmodifiable copy of the replicated state, keyed by Membership JPA ID.
+     */
+    public synchronized Map<Long, T> getSnapshot() {
+        return Collections.unmodifiableMap(new HashMap<>(membershipID2State));
+    }
+
+    /**
+     * @return The number of replicated (i.e. not removed) Memberships.
+     */
+    public synchronized int size() {
+        return membershipID2State.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "MembershipReplica [" + membershipID2State.size() + " Memberships, "
+                + (membershipID2Version.size() - membershipID2State.size()) + " removed]";
+    }
+}
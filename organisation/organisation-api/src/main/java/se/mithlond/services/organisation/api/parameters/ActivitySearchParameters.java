@@ -21,7 +21,9 @@
  */
 package se.mithlond.services.organisation.api.parameters;
 
+import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.transport.activity.ActivityFacetVO;
 import se.mithlond.services.shared.spi.algorithms.TimeFormat;
 
 import javax.validation.constraints.NotNull;
@@ -44,7 +46,7 @@ import java.util.SortedMap;
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
 @XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"startPeriod", "endPeriod",
-        "organisationIDs", "activityIDs", "membershipIDs", "freeTextSearch"})
+        "organisationIDs", "activityIDs", "membershipIDs", "freeTextSearch", "facets", "firstResult", "maxResults"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ActivitySearchParameters
         extends AbstractSearchParameters<ActivitySearchParameters.ActivitySearchParametersBuilder> {
@@ -71,6 +73,16 @@ public class ActivitySearchParameters
     @XmlElement
     private String freeTextSearch;
 
+    @XmlElementWrapper
+    @XmlElement(name = "facet")
+    private List<ActivityFacetVO.Facet> facets;
+
+    @XmlElement
+    private int firstResult;
+
+    @XmlElement
+    private int maxResults;
+
     /**
      * JAXB-friendly constructor.
      */
@@ -86,13 +98,19 @@ public class ActivitySearchParameters
      * @param activityIDs     the JPA IDs of the activities for which results should be retrieved.
      * @param membershipIDs   the membership JPA IDs for which results should be retrieved.
      * @param freeTextSearch  an optional text snippet which should serve as the criterion of a free text search.
+     * @param facets          the facets which should be counted within a faceted search.
+     * @param firstResult     the index of the first result which should be retrieved within a paginated search.
+     * @param maxResults      the maximum number of results to retrieve within a paginated search; 0 for all.
      */
     private ActivitySearchParameters(final LocalDateTime startPeriod,
             final LocalDateTime endPeriod,
             final List<Long> organisationIDs,
             final List<Long> activityIDs,
             final List<Long> membershipIDs,
-            final String freeTextSearch) {
+            final String freeTextSearch,
+            final List<ActivityFacetVO.Facet> facets,
+            final int firstResult,
+            final int maxResults) {
 
         this.startPeriod = startPeriod;
         this.endPeriod = endPeriod;
@@ -100,6 +118,9 @@ public class ActivitySearchParameters
         this.activityIDs = activityIDs;
         this.membershipIDs = membershipIDs;
         this.freeTextSearch = freeTextSearch;
+        this.facets = facets;
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
     }
 
     /**
@@ -144,6 +165,27 @@ public class ActivitySearchParameters
         return freeTextSearch;
     }
 
+    /**
+     * @return the facets which should be counted within a faceted search. Never null.
+     */
+    public List<ActivityFacetVO.Facet> getFacets() {
+        return facets == null ? new ArrayList<>() : facets;
+    }
+
+    /**
+     * @return the index of the first result which should be retrieved within a paginated search.
+     */
+    public int getFirstResult() {
+        return firstResult;
+    }
+
+    /**
+     * @return the maximum number of results to retrieve within a paginated search; 0 indicates all results.
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -155,6 +197,9 @@ public class ActivitySearchParameters
         toPopulate.put("organisationIDs", organisationIDs.toString());
         toPopulate.put("membershipIDs", membershipIDs.toString());
         toPopulate.put("freeTextSearch", freeTextSearch);
+        toPopulate.put("facets", getFacets().toString());
+        toPopulate.put("firstResult", "" + firstResult);
+        toPopulate.put("maxResults", "" + maxResults);
     }
 
     /**
@@ -186,6 +231,9 @@ public class ActivitySearchParameters
         private List<Long> activityIDs = new ArrayList<>();
         private List<Long> membershipIDs = new ArrayList<>();
         private String freeTextSearch = "%";
+        private List<ActivityFacetVO.Facet> facets = new ArrayList<>();
+        private int firstResult;
+        private int maxResults;
 
         /**
          * Adds the provided organisation IDs parameter to be used by the ActivitySearchParametersBuilder instance.
@@ -302,6 +350,37 @@ public class ActivitySearchParameters
             return this;
         }
 
+        /**
+         * Adds the provided facets to be counted within a faceted search.
+         *
+         * @param facets the facets which should be counted within a faceted search.
+         * @return This ActivitySearchParametersBuilder instance.
+         */
+        public ActivitySearchParametersBuilder withFacets(@NotNull final ActivityFacetVO.Facet... facets) {
+            return addValuesIfApplicable(this.facets, "facets", facets);
+        }
+
+        /**
+         * Assigns the page of results which should be retrieved within a paginated search.
+         *
+         * @param firstResult The index of the first result to retrieve. Cannot be negative.
+         * @param maxResults  The maximum number of results to retrieve. Cannot be negative; 0 indicates all results.
+         * @return This ActivitySearchParametersBuilder instance.
+         */
+        public ActivitySearchParametersBuilder withPage(final int firstResult, final int maxResults) {
+
+            // Check sanity
+            Validate.isTrue(firstResult >= 0, "Cannot handle negative 'firstResult'.");
+            Validate.isTrue(maxResults >= 0, "Cannot handle negative 'maxResults'.");
+
+            // Assign internal state
+            this.firstResult = firstResult;
+            this.maxResults = maxResults;
+
+            // All Done.
+            return this;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -319,7 +398,10 @@ public class ActivitySearchParameters
                     organisationIDs,
                     activityIDs,
                     membershipIDs,
-                    freeTextSearch);
+                    freeTextSearch,
+                    facets,
+                    firstResult,
+                    maxResults);
 
             // Add the preferred response mode.
             toReturn.preferDetailedResponse = this.preferDetailedResponse;
@@ -1,6 +1,6 @@
 /*
  * #%L
- * Nazgul Project: mithlond-services-content-impl-ejb
+ * Nazgul Project: mithlond-services-organisation-api
  * %%
  * Copyright (C) 2015 - 2016 Mithlond
  * %%
@@ -19,7 +19,7 @@
  * limitations under the License.
  * #L%
  */
-package se.mithlond.services.content.impl.ejb;
+package se.mithlond.services.organisation.api.persistence;
 
 import se.mithlond.services.organisation.model.Category;
 import se.mithlond.services.organisation.model.Organisation;
@@ -0,0 +1,244 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api.persistence;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.membership.Membership;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Memo for the entity lookups of {@link CommonPersistenceTasks}, intended for service methods which
+ * resolve the same Organisations, address Categories and Memberships repeatedly (such as once per ActivityVO
+ * or AdmissionVO within a bulk operation). Each lookup hits the database only the first time a given natural key
+ * is requested, and the {@code prefetch} methods load all entities for a set of natural keys within a single query.
+ * A typical usage is to prefetch all natural keys referenced by the supplied transport objects before
+ * looping over them, implying that the loop itself does not fire any lookup queries at all.
+ * <p>The memoized entities are managed within the persistence context of the supplied EntityManager.
+ * Hence, a PersistenceLookupMemo is transaction-scoped: create a new instance within each service method
+ * invocation (i.e. each container-managed transaction), never let it outlive the transaction and never share
+ * it between threads.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class PersistenceLookupMemo {
+
+    // Internal state
+    private final EntityManager entityManager;
+    private final Map<String, Organisation> organisations;
+    private final Map<String, Category> addressCategories;
+    private final Map<String, Membership> memberships;
+
+    /**
+     * Creates a new, empty PersistenceLookupMemo using the supplied EntityManager for all database lookups.
+     *
+     * @param entityManager The non-null and active {@link EntityManager}.
+     */
+    public PersistenceLookupMemo(final EntityManager entityManager) {
+
+        // Check sanity
+        this.entityManager = Validate.notNull(entityManager, "entityManager");
+
+        // Assign internal state
+        this.organisations = new HashMap<>();
+        this.addressCategories = new HashMap<>();
+        this.memberships = new HashMap<>();
+    }
+
+    /**
+     * Loads all Organisations with the supplied names (which are not already memoized) within a single query.
+     *
+     * @param organisationNames The names of the Organisations to prefetch. Null or empty names are ignored.
+     * @return This PersistenceLookupMemo, for chaining.
+     */
+    public PersistenceLookupMemo prefetchOrganisations(final Collection<String> organisationNames) {
+
+        final List<String> toFetch = getUnknownKeys(organisationNames, organisations, Function.identity());
+        if (!toFetch.isEmpty()) {
+            entityManager.createNamedQuery(Organisation.NAMEDQ_GET_BY_NAMES, Organisation.class)
+                    .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAMES, toFetch)
+                    .getResultList()
+                    .forEach(org -> organisations.put(org.getOrganisationName(), org));
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Loads all Categories with the classification {@link CategorizedAddress#ACTIVITY_CLASSIFICATION} and any of
+     * the supplied categoryIDs (which are not already memoized) within a single query.
+     *
+     * @param categoryIDs The (case insensitive) IDs of the Categories to prefetch. Null or empty IDs are ignored.
+     * @return This PersistenceLookupMemo, for chaining.
+     */
+    public PersistenceLookupMemo prefetchAddressCategories(final Collection<String> categoryIDs) {
+
+        final List<String> toFetch = getUnknownKeys(categoryIDs, addressCategories,
+                PersistenceLookupMemo::getCategoryKey);
+        if (!toFetch.isEmpty()) {
+            entityManager.createNamedQuery(Category.NAMEDQ_GET_BY_IDS_CLASSIFICATION, Category.class)
+                    .setParameter(OrganisationPatterns.PARAM_CATEGORY_IDS, toFetch)
+                    .setParameter(OrganisationPatterns.PARAM_CLASSIFICATION,
+                            CategorizedAddress.ACTIVITY_CLASSIFICATION)
+                    .getResultList()
+                    .forEach(cat -> addressCategories.put(getCategoryKey(cat.getCategoryID()), cat));
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Loads all Memberships having any of the supplied aliases within any of the supplied organisations
+     * within a single query.
+     *
+     * @param aliases           The aliases of the Memberships to prefetch. Null or empty aliases are ignored.
+     * @param organisationNames The names of the Organisations of the Memberships to prefetch.
+     *                          Null or empty names are ignored.
+     * @return This PersistenceLookupMemo, for chaining.
+     */
+    public PersistenceLookupMemo prefetchMemberships(final Collection<String> aliases,
+                                                     final Collection<String> organisationNames) {
+
+        final List<String> aliasList = getUnknownKeys(aliases, Collections.emptyMap(), Function.identity());
+        final List<String> organisationNameList = getUnknownKeys(organisationNames,
+                Collections.emptyMap(),
+                Function.identity());
+
+        if (!aliasList.isEmpty() && !organisationNameList.isEmpty()) {
+            entityManager.createNamedQuery(Membership.NAMEDQ_GET_BY_ALIASES_ORGANISATIONS, Membership.class)
+                    .setParameter(OrganisationPatterns.PARAM_ALIASES, aliasList)
+                    .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAMES, organisationNameList)
+                    .getResultList()
+                    .forEach(mem -> memberships.put(
+                            getMembershipKey(mem.getAlias(), mem.getOrganisation().getOrganisationName()), mem));
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Retrieves a single organisation with the given name, firing a database query only if the
+     * Organisation was not already memoized.
+     *
+     * @param organisationName the non-empty organisationName.
+     * @return The Organisation corresponding to the supplied organisationName.
+     * @throws IllegalArgumentException if no single organisation with the given organisationName could be found.
+     * @see CommonPersistenceTasks#getOrganisation(EntityManager, String)
+     */
+    public Organisation getOrganisation(final String organisationName) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notEmpty(organisationName, "organisationName");
+
+        // All Done.
+        return organisations.computeIfAbsent(organisationName,
+                name -> CommonPersistenceTasks.getOrganisation(entityManager, name));
+    }
+
+    /**
+     * Retrieves the Category with the classification {@link CategorizedAddress#ACTIVITY_CLASSIFICATION}
+     * and the given ID, firing a database query only if the Category was not already memoized.
+     *
+     * @param categoryID the non-empty categoryID.
+     * @return The Category corresponding to the supplied categoryID and having the
+     * classification {@link CategorizedAddress#ACTIVITY_CLASSIFICATION}
+     * @throws IllegalArgumentException if no Category could be found.
+     * @see CommonPersistenceTasks#getAddressCategory(EntityManager, String)
+     */
+    public Category getAddressCategory(final String categoryID) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notEmpty(categoryID, "categoryID");
+
+        // All Done.
+        return addressCategories.computeIfAbsent(getCategoryKey(categoryID),
+                key -> CommonPersistenceTasks.getAddressCategory(entityManager, categoryID));
+    }
+
+    /**
+     * Retrieves a single Membership with the supplied alias and organisationName, firing a database query
+     * only if the Membership was not already memoized.
+     *
+     * @param alias            The non-empty alias.
+     * @param organisationName The non-empty organisationName.
+     * @return The Membership with the given alias and organisationName.
+     * @throws IllegalArgumentException if no Membership could be found.
+     * @see CommonPersistenceTasks#getSingleMembership(EntityManager, String, String)
+     */
+    public Membership getSingleMembership(final String alias, final String organisationName)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notEmpty(alias, "alias");
+        Validate.notEmpty(organisationName, "organisationName");
+
+        // All Done.
+        return memberships.computeIfAbsent(getMembershipKey(alias, organisationName),
+                key -> CommonPersistenceTasks.getSingleMembership(entityManager, alias, organisationName));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static <T> List<String> getUnknownKeys(final Collection<String> candidates,
+                                                   final Map<String, T> memo,
+                                                   final Function<String, String> keyFunction) {
+
+        if (candidates == null) {
+            return new ArrayList<>();
+        }
+
+        return candidates.stream()
+                .filter(Objects::nonNull)
+                .filter(candidate -> !candidate.isEmpty())
+                .map(keyFunction)
+                .filter(key -> !memo.containsKey(key))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static String getCategoryKey(final String categoryID) {
+        return categoryID.toLowerCase(Locale.ROOT);
+    }
+
+    private static String getMembershipKey(final String alias, final String organisationName) {
+        return alias + "\n" + organisationName;
+    }
+}
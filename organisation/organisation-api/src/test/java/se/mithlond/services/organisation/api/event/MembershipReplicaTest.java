@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-api
+ * %%
+ * Copyright (C) 2015 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.api.event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class MembershipReplicaTest {
+
+    @Test
+    public void validateMessageBodyRoundTrip() {
+
+        // Assemble
+        final List<MembershipChangedEvent> events = Arrays.asList(
+                new MembershipChangedEvent(1L, 12L, 7L, EnumSet.of(MembershipChangedEvent.ChangeKind.GUILDS)),
+                new MembershipChangedEvent(2L, 13L, 1L, EnumSet.of(
+                        MembershipChangedEvent.ChangeKind.PERSONAL_DATA,
+                        MembershipChangedEvent.ChangeKind.LOGIN_PERMISSION)));
+
+        // Act
+        final String messageBody = MembershipChangedEvent.toMessageBody(events);
+        final List<MembershipChangedEvent> parsed = MembershipChangedEvent.parseMessageBody(messageBody);
+
+        // Assert
+        Assert.assertEquals("1:12:7:16\n2:13:1:6", messageBody);
+        Assert.assertEquals(events, parsed);
+        Assert.assertTrue(MembershipChangedEvent.parseMessageBody("").isEmpty());
+
+        try {
+            MembershipChangedEvent.parseMessageBody("1:12:x:16");
+            Assert.fail("Malformed message bodies should yield IllegalArgumentExceptions.");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void validateIgnoringStaleAndDuplicateEvents() {
+
+        // Assemble
+        final List<Long> loadedIDs = new ArrayList<>();
+        final MembershipReplica<String> unitUnderTest = new MembershipReplica<>(event -> {
+            loadedIDs.add(event.getMembershipJpaID());
+            return "member_" + event.getMembershipJpaID() + "_v" + event.getVersion();
+        });
+        unitUnderTest.put(12L, 5L, "member_12_v5");
+
+        // Act
+        final int numApplied = unitUnderTest.applyMessageBody("1:12:7:16\n1:12:7:16\n1:12:6:8\n1:13:1:1");
+
+        // Assert
+        Assert.assertEquals(2, numApplied);
+        Assert.assertEquals(Arrays.asList(12L, 13L), loadedIDs);
+        Assert.assertEquals("member_12_v7", unitUnderTest.get(12L));
+        Assert.assertEquals(7L, unitUnderTest.getVersion(12L));
+        Assert.assertEquals("member_13_v1", unitUnderTest.get(13L));
+        Assert.assertEquals(-1L, unitUnderTest.getVersion(14L));
+        Assert.assertEquals(2, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateRemovedMembershipsAreNotResurrected() {
+
+        // Assemble
+        final MembershipReplica<String> unitUnderTest = new MembershipReplica<>(
+                event -> "member_" + event.getMembershipJpaID() + "_v" + event.getVersion());
+        unitUnderTest.put(12L, 5L, "member_12_v5");
+
+        // Act
+        final boolean removed = unitUnderTest.apply(new MembershipChangedEvent(
+                1L, 12L, 5L, EnumSet.of(MembershipChangedEvent.ChangeKind.REMOVED)));
+        final boolean removedAgain = unitUnderTest.apply(new MembershipChangedEvent(
+                1L, 12L, 5L, EnumSet.of(MembershipChangedEvent.ChangeKind.REMOVED)));
+        final boolean delayedChange = unitUnderTest.apply(new MembershipChangedEvent(
+                1L, 12L, 4L, EnumSet.of(MembershipChangedEvent.ChangeKind.GUILDS)));
+
+        // Assert
+        Assert.assertTrue(removed);
+        Assert.assertFalse(removedAgain);
+        Assert.assertFalse(delayedChange);
+        Assert.assertNull(unitUnderTest.get(12L));
+        Assert.assertEquals(0, unitUnderTest.size());
+        Assert.assertTrue(unitUnderTest.getSnapshot().isEmpty());
+    }
+}
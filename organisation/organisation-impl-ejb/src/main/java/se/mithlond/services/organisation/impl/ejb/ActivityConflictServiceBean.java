@@ -0,0 +1,571 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.ActivityConflictService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflictVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflicts;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+import se.mithlond.services.shared.spi.algorithms.Surroundings;
+import se.mithlond.services.shared.spi.algorithms.calendar.IntervalIndex;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>ActivityConflictService Singleton EJB implementation, holding one conflict index per Organisation.
+ * Each index is built lazily (using two scalar queries) the first time conflicts are requested for an
+ * Organisation, and holds all non-cancelled Activities ending after the start of that day. Thereafter,
+ * the index is maintained incrementally: changes reported within a transaction are applied when (and
+ * only if) the transaction commits. Indices are built without holding any lock; changes committed
+ * while an index is built are buffered, and replayed onto the index before it is published.</p>
+ * <p>The ConflictPolicy is read from the {@link #CONFLICT_POLICY_PROPERTY} system property,
+ * and defaults to {@link ConflictPolicy#WARN}.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ActivityConflictServiceBean extends AbstractJpaService implements ActivityConflictService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(ActivityConflictServiceBean.class);
+
+    /**
+     * System property holding the name of the ConflictPolicy, such as "REJECT".
+     */
+    public static final String CONFLICT_POLICY_PROPERTY = "activity_conflict_policy";
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // Internal state
+    private final ConflictPolicy conflictPolicy;
+    private final Object lock = new Object();
+    private final ConcurrentMap<Long, OrganisationIndex> orgID2Index = new ConcurrentHashMap<>();
+    private final Map<Long, PendingBuild> orgID2PendingBuild = new HashMap<>();
+
+    /**
+     * Default constructor, reading the ConflictPolicy from the {@link #CONFLICT_POLICY_PROPERTY} system property.
+     */
+    public ActivityConflictServiceBean() {
+        this(getConfiguredConflictPolicy());
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param conflictPolicy The non-null ConflictPolicy to use.
+     */
+    public ActivityConflictServiceBean(final ConflictPolicy conflictPolicy) {
+        this.conflictPolicy = Validate.notNull(conflictPolicy, "conflictPolicy");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConflictPolicy getConflictPolicy() {
+        return conflictPolicy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ActivityConflicts getConflicts(final long organisationID, final ActivityVO proposed) {
+
+        // Check sanity
+        Validate.notNull(proposed, "proposed");
+        final LocalDateTime startTime = Validate.notNull(proposed.getStartTime(), "getStartTime()");
+        final LocalDateTime endTime = Validate.notNull(proposed.getEndTime(), "getEndTime()");
+
+        final List<Long> membershipIDs = proposed.getAdmissions() == null
+                ? Collections.emptyList()
+                : proposed.getAdmissions().stream()
+                .filter(Objects::nonNull)
+                .filter(adm -> !Boolean.FALSE.equals(adm.getAdmitted()))
+                .map(AdmissionVO::getMembershipID)
+                .filter(id -> id != null && !AdmissionVO.UNINITIALIZED.equals(id))
+                .collect(Collectors.toList());
+
+        // All Done.
+        return getIndex(organisationID).getConflicts(proposed.getJpaID(),
+                startTime,
+                endTime,
+                getLocationKey(proposed.getAddressShortDescription(), proposed.getLocation()),
+                membershipIDs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ActivityConflicts getAdmissionConflicts(final Activity activity, final Collection<Long> membershipIDs) {
+
+        // Check sanity
+        Validate.notNull(activity, "activity");
+        Validate.notNull(membershipIDs, "membershipIDs");
+
+        // All Done.
+        return getIndex(activity.getOwningOrganisation().getId()).getConflicts(activity.getId(),
+                activity.getStartTime(),
+                activity.getEndTime(),
+                null,
+                membershipIDs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesChanged(final List<Activity> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        // Snapshot all Activities, since an index may be built before the transaction commits.
+        final List<Runnable> changes = changed.stream()
+                .map(activity -> {
+
+                    final IndexedActivity snapshot = new IndexedActivity(activity);
+                    return (Runnable) () -> applyToIndex(snapshot.organisationID,
+                            index -> index.replace(snapshot));
+                })
+                .collect(Collectors.toList());
+
+        applyAfterCommit(changes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesRemoved(final List<Activity> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        applyAfterCommit(removed.stream()
+                .map(activity -> {
+
+                    final long organisationID = activity.getOwningOrganisation().getId();
+                    final long activityID = activity.getId();
+                    return (Runnable) () -> applyToIndex(organisationID, index -> index.remove(activityID));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void admissionsChanged(final Activity activity,
+                                  final Collection<Long> admittedMembershipIDs,
+                                  final Collection<Long> revokedMembershipIDs) {
+
+        // Check sanity
+        Validate.notNull(activity, "activity");
+        Validate.notNull(admittedMembershipIDs, "admittedMembershipIDs");
+        Validate.notNull(revokedMembershipIDs, "revokedMembershipIDs");
+
+        final long organisationID = activity.getOwningOrganisation().getId();
+        final long activityID = activity.getId();
+        final List<Long> admitted = new ArrayList<>(admittedMembershipIDs);
+        final List<Long> revoked = new ArrayList<>(revokedMembershipIDs);
+
+        applyAfterCommit(Collections.singletonList(() -> applyToIndex(organisationID,
+                index -> index.updateAdmissions(activityID, admitted, revoked))));
+    }
+
+    /**
+     * Retrieves the location key of the supplied address data, used to find Activities at the same location.
+     * The key is case insensitive, and consists of the short description and street address of the location.
+     *
+     * @param addressShortDescription The short description of the location, such as "Stora salen".
+     * @param location                The Address of the location.
+     * @return The location key, or {@code null} if neither short description nor location is given.
+     */
+    public static String getLocationKey(final String addressShortDescription, final Address location) {
+
+        final List<String> parts = new ArrayList<>();
+        parts.add(addressShortDescription);
+        if (location != null) {
+            parts.add(location.getStreet());
+            parts.add(location.getNumber());
+            parts.add(location.getZipCode());
+            parts.add(location.getCity());
+        }
+
+        final String toReturn = parts.stream()
+                .filter(Objects::nonNull)
+                .map(part -> part.trim().toLowerCase(Locale.forLanguageTag("sv")))
+                .filter(part -> !part.isEmpty())
+                .collect(Collectors.joining("|"));
+
+        // All Done.
+        return toReturn.isEmpty() ? null : toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private OrganisationIndex getIndex(final long organisationID) {
+
+        final OrganisationIndex existing = orgID2Index.get(organisationID);
+        if (existing != null) {
+            return existing;
+        }
+
+        // Register the build, to buffer any changes committed while the index is read from the database.
+        final PendingBuild pendingBuild;
+        synchronized (lock) {
+
+            final OrganisationIndex built = orgID2Index.get(organisationID);
+            if (built != null) {
+                return built;
+            }
+
+            pendingBuild = orgID2PendingBuild.computeIfAbsent(organisationID, k -> new PendingBuild());
+            pendingBuild.numBuilders++;
+        }
+
+        try {
+
+            // Read the index without holding the lock.
+            final OrganisationIndex built = buildIndex(organisationID);
+
+            synchronized (lock) {
+
+                // Another thread published its index first? Then use that one.
+                final OrganisationIndex published = orgID2Index.get(organisationID);
+                if (published != null) {
+                    return published;
+                }
+
+                // Replay the changes committed during the build, and publish the index.
+                pendingBuild.changes.forEach(change -> change.accept(built));
+                orgID2Index.put(organisationID, built);
+                return built;
+            }
+
+        } finally {
+            synchronized (lock) {
+                if (--pendingBuild.numBuilders == 0) {
+                    orgID2PendingBuild.remove(organisationID);
+                }
+            }
+        }
+    }
+
+    private OrganisationIndex buildIndex(final long organisationID) {
+
+        final LocalDateTime indexStart = LocalDate.now().atStartOfDay();
+        final OrganisationIndex toReturn = new OrganisationIndex();
+
+        // Read the intervals and locations of all current Activities.
+        final List<Object[]> activityData = entityManager.createNamedQuery(
+                Activity.NAMEDQ_GET_INTERVAL_DATA_BY_ORGANISATION_ID, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationID)
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, indexStart)
+                .getResultList();
+        for (Object[] current : activityData) {
+
+            final IndexedActivity indexed = new IndexedActivity(organisationID,
+                    (Long) current[0],
+                    (LocalDateTime) current[1],
+                    (LocalDateTime) current[2],
+                    (String) current[3],
+                    (String) current[4],
+                    getLocationKey((String) current[4], (Address) current[5]),
+                    new TreeSet<>());
+            toReturn.id2Activity.put(indexed.activityID, indexed);
+        }
+
+        // ... and add the admitted Memberships.
+        entityManager.createNamedQuery(Admission.NAMEDQ_GET_ADMITTED_IDS_BY_ORGANISATION_ID, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationID)
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, indexStart)
+                .getResultList()
+                .forEach(current -> {
+
+                    final IndexedActivity indexed = toReturn.id2Activity.get((Long) current[0]);
+                    if (indexed != null) {
+                        indexed.membershipIDs.add((Long) current[1]);
+                    }
+                });
+
+        new ArrayList<>(toReturn.id2Activity.values()).forEach(toReturn::replace);
+
+        if (log.isInfoEnabled()) {
+            log.info("Built conflict index for Organisation [" + organisationID + "]: " + toReturn);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    private void applyToIndex(final long organisationID, final Consumer<OrganisationIndex> change) {
+
+        synchronized (lock) {
+
+            final OrganisationIndex index = orgID2Index.get(organisationID);
+            if (index != null) {
+                change.accept(index);
+            } else {
+
+                // Not yet built? Then buffer the change if the index is being built, or
+                // simply discard it since the change is read when the index is built.
+                final PendingBuild pendingBuild = orgID2PendingBuild.get(organisationID);
+                if (pendingBuild != null) {
+                    pendingBuild.changes.add(change);
+                }
+            }
+        }
+    }
+
+    private void applyAfterCommit(final List<Runnable> changes) {
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, changes);
+    }
+
+    private static ConflictPolicy getConfiguredConflictPolicy() {
+
+        final String value = Surroundings.getProperty(CONFLICT_POLICY_PROPERTY);
+        return value == null || value.trim().isEmpty()
+                ? ConflictPolicy.WARN
+                : ConflictPolicy.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * The changes committed while the index of an Organisation is built. Only accessed while holding the lock.
+     */
+    private static final class PendingBuild {
+
+        private final List<Consumer<OrganisationIndex>> changes = new ArrayList<>();
+        private int numBuilders;
+    }
+
+    /**
+     * Immutable snapshot of the indexed state of an Activity.
+     */
+    private static final class IndexedActivity {
+
+        private final long organisationID;
+        private final long activityID;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final String shortDesc;
+        private final String addressShortDescription;
+        private final String locationKey;
+        private final SortedSet<Long> membershipIDs;
+        private final boolean cancelled;
+
+        private IndexedActivity(final Activity activity) {
+            this(activity.getOwningOrganisation().getId(),
+                    activity.getId(),
+                    activity.getStartTime(),
+                    activity.getEndTime(),
+                    activity.getShortDesc(),
+                    activity.getAddressShortDescription(),
+                    getLocationKey(activity.getAddressShortDescription(), activity.getLocation()),
+                    activity.getAdmissions().stream()
+                            .map(adm -> adm.getAdmitted().getId())
+                            .collect(Collectors.toCollection(TreeSet::new)),
+                    activity.isCancelled());
+        }
+
+        private IndexedActivity(final long organisationID,
+                                final long activityID,
+                                final LocalDateTime startTime,
+                                final LocalDateTime endTime,
+                                final String shortDesc,
+                                final String addressShortDescription,
+                                final String locationKey,
+                                final SortedSet<Long> membershipIDs) {
+            this(organisationID, activityID, startTime, endTime, shortDesc, addressShortDescription,
+                    locationKey, membershipIDs, false);
+        }
+
+        private IndexedActivity(final long organisationID,
+                                final long activityID,
+                                final LocalDateTime startTime,
+                                final LocalDateTime endTime,
+                                final String shortDesc,
+                                final String addressShortDescription,
+                                final String locationKey,
+                                final SortedSet<Long> membershipIDs,
+                                final boolean cancelled) {
+            this.organisationID = organisationID;
+            this.activityID = activityID;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.shortDesc = shortDesc;
+            this.addressShortDescription = addressShortDescription;
+            this.locationKey = locationKey;
+            this.membershipIDs = membershipIDs;
+            this.cancelled = cancelled;
+        }
+
+        private boolean isIndexable() {
+            return !cancelled && startTime != null && endTime != null && endTime.isAfter(startTime);
+        }
+    }
+
+    /**
+     * The conflict index of a single Organisation. The location and membership IntervalIndices are
+     * guarded by this OrganisationIndex, so that queries never observe a partially applied change.
+     */
+    private static final class OrganisationIndex {
+
+        private final Map<Long, IndexedActivity> id2Activity = new ConcurrentHashMap<>();
+        private final IntervalIndex<String, Long> locations = new IntervalIndex<>();
+        private final IntervalIndex<Long, Long> memberships = new IntervalIndex<>();
+
+        private synchronized void replace(final IndexedActivity indexed) {
+
+            remove(indexed.activityID);
+            if (!indexed.isIndexable()) {
+                return;
+            }
+
+            id2Activity.put(indexed.activityID, indexed);
+            if (indexed.locationKey != null) {
+                locations.put(indexed.locationKey, indexed.activityID, indexed.startTime, indexed.endTime);
+            }
+            indexed.membershipIDs.forEach(membershipID -> memberships.put(membershipID,
+                    indexed.activityID, indexed.startTime, indexed.endTime));
+        }
+
+        private synchronized void remove(final long activityID) {
+
+            id2Activity.remove(activityID);
+            locations.removeAll(activityID);
+            memberships.removeAll(activityID);
+        }
+
+        private synchronized void updateAdmissions(final long activityID,
+                                                   final List<Long> admitted,
+                                                   final List<Long> revoked) {
+
+            final IndexedActivity indexed = id2Activity.get(activityID);
+            if (indexed != null) {
+
+                revoked.forEach(membershipID -> {
+                    indexed.membershipIDs.remove(membershipID);
+                    memberships.remove(membershipID, activityID);
+                });
+                admitted.forEach(membershipID -> {
+                    indexed.membershipIDs.add(membershipID);
+                    memberships.put(membershipID, activityID, indexed.startTime, indexed.endTime);
+                });
+            }
+        }
+
+        private synchronized ActivityConflicts getConflicts(final Long proposedActivityID,
+                                                            final LocalDateTime startTime,
+                                                            final LocalDateTime endTime,
+                                                            final String locationKey,
+                                                            final Collection<Long> membershipIDs) {
+
+            final ActivityConflicts toReturn = new ActivityConflicts();
+
+            // #1) Activities at the same location.
+            final Stream<ActivityConflictVO> locationConflicts = locationKey == null
+                    ? Stream.empty()
+                    : locations.getOverlapping(locationKey, startTime, endTime).keySet().stream()
+                    .filter(activityID -> !activityID.equals(proposedActivityID))
+                    .map(activityID -> toConflictVO(activityID, ActivityConflictVO.ConflictType.LOCATION,
+                            proposedActivityID, null));
+
+            // #2) Activities to which any of the Memberships are admitted.
+            final Stream<ActivityConflictVO> membershipConflicts = new TreeSet<>(membershipIDs).stream()
+                    .flatMap(membershipID -> memberships.getOverlapping(membershipID, startTime, endTime)
+                            .keySet()
+                            .stream()
+                            .filter(activityID -> !activityID.equals(proposedActivityID))
+                            .map(activityID -> toConflictVO(activityID,
+                                    ActivityConflictVO.ConflictType.MEMBERSHIP,
+                                    proposedActivityID,
+                                    membershipID)));
+
+            Stream.concat(locationConflicts, membershipConflicts).forEach(toReturn.getConflicts()::add);
+
+            // All Done.
+            return toReturn;
+        }
+
+        private ActivityConflictVO toConflictVO(final Long activityID,
+                                                final ActivityConflictVO.ConflictType conflictType,
+                                                final Long proposedActivityID,
+                                                final Long membershipID) {
+
+            final IndexedActivity conflicting = id2Activity.get(activityID);
+            return new ActivityConflictVO(activityID,
+                    conflictType,
+                    proposedActivityID,
+                    membershipID,
+                    conflicting.startTime,
+                    conflicting.endTime,
+                    conflicting.shortDesc,
+                    conflicting.addressShortDescription);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "[" + id2Activity.size() + " activities, locations: " + locations
+                    + ", memberships: " + memberships + "]";
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.ActivityConflictService;
+import se.mithlond.services.organisation.api.ActivitySeriesService;
+import se.mithlond.services.organisation.api.EventCalendarService;
+import se.mithlond.services.organisation.api.OrganisationService;
+import se.mithlond.services.organisation.api.ReminderService;
+import se.mithlond.services.organisation.api.UpcomingActivityService;
+import se.mithlond.services.organisation.api.persistence.CommonPersistenceTasks;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.ActivitySeries;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivitySeriesVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.shared.spi.algorithms.calendar.RecurrenceRule;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+import se.mithlond.services.shared.spi.jpa.JpaUtilities;
+
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Stateless;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>ActivitySeriesService Stateless EJB implementation. Occurrences of each ActivitySeries are materialized
+ * as Activity entities within a rolling horizon of {@link #MATERIALIZATION_HORIZON_WEEKS} weeks, which is moved
+ * forward by a nightly timer. Occurrences are inserted in batches of {@link #MATERIALIZATION_BATCH_SIZE}
+ * Activities, between which the EntityManager is flushed and cleared. This keeps the persistence context small,
+ * and lets the JPA provider group the INSERT statements into JDBC batches.</p>
+ * <p>Edits of a single occurrence only touch the (materialized) Activity of that occurrence, while edits of
+ * all future occurrences split the ActivitySeries: the original ActivitySeries ends the day before the
+ * edited occurrence, and a new ActivitySeries (based on the edited occurrence) takes over all later
+ * occurrences, including their Admissions. Splitting is refused if it would remove a materialized occurrence
+ * holding Admissions.</p>
+ * <p>The current time (and hence the materialization horizon) is always given in the time zone of the
+ * organisation owning each ActivitySeries.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Stateless
+public class ActivitySeriesServiceBean extends AbstractJpaService implements ActivitySeriesService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(ActivitySeriesServiceBean.class);
+
+    /**
+     * The number of weeks (from the start of today) within which occurrences of ActivitySeries are materialized.
+     */
+    public static final int MATERIALIZATION_HORIZON_WEEKS = 8;
+
+    /**
+     * The number of materialized occurrences persisted before the EntityManager is flushed and cleared.
+     * Should match the JDBC batch size of the persistence unit.
+     */
+    public static final int MATERIALIZATION_BATCH_SIZE = 50;
+
+    @EJB
+    private OrganisationService organisationServiceBean;
+
+    @EJB
+    private ActivityConflictService activityConflictService;
+
+    @EJB
+    private UpcomingActivityService upcomingActivityService;
+
+    @EJB
+    private ReminderService reminderService;
+
+    @EJB
+    private EventCalendarService eventCalendarService;
+
+    // Internal state
+    private final Clock clock;
+
+    /**
+     * Default constructor.
+     */
+    public ActivitySeriesServiceBean() {
+        this.clock = Clock.systemDefaultZone();
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param organisationService An OrganisationService to inject.
+     * @param clock               The non-null Clock providing the current time.
+     */
+    public ActivitySeriesServiceBean(final OrganisationService organisationService, final Clock clock) {
+
+        // Assign internal state.
+        this.organisationServiceBean = organisationService;
+        this.clock = Validate.notNull(clock, "clock");
+    }
+
+    /**
+     * Retrieves the materialization horizon, relative to the supplied time.
+     *
+     * @param now The current time.
+     * @return The start of the day {@link #MATERIALIZATION_HORIZON_WEEKS} weeks after the supplied time.
+     */
+    public static LocalDateTime getMaterializationHorizon(final LocalDateTime now) {
+        return Validate.notNull(now, "now").truncatedTo(ChronoUnit.DAYS).plusWeeks(MATERIALIZATION_HORIZON_WEEKS);
+    }
+
+    /**
+     * Nightly timer callback, moving the materialization horizon of all ActivitySeries forward.
+     * The horizon of each ActivitySeries is relative to the current time within its owning organisation.
+     */
+    @Schedule(hour = "3", minute = "15", persistent = false)
+    public void materializeWithinHorizon() {
+
+        final Map<Long, LocalDateTime> orgID2Horizon = entityManager.createNamedQuery(
+                Organisation.NAMEDQ_GET_ALL, Organisation.class)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(Organisation::getId, org -> getMaterializationHorizon(getNow(org))));
+        if (orgID2Horizon.isEmpty()) {
+            return;
+        }
+
+        final LocalDateTime latestHorizon = Collections.max(orgID2Horizon.values());
+        final int numCreated = materializeOccurrences(latestHorizon, series -> orgID2Horizon.getOrDefault(
+                series.getOwningOrganisation().getId(), latestHorizon));
+
+        if (log.isInfoEnabled()) {
+            log.info("Materialized [" + numCreated + "] ActivitySeries occurrences until " + orgID2Horizon);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Activities createActivitySeries(final ActivitySeriesVO seriesVO, final Membership activeMembership)
+            throws RuntimeException {
+
+        // Check sanity
+        Validate.notNull(seriesVO, "seriesVO");
+        Validate.notNull(activeMembership, "activeMembership");
+
+        final ActivityVO templateVO = Validate.notNull(seriesVO.getTemplate(), "seriesVO.getTemplate()");
+        final RecurrenceRule recurrenceRule = seriesVO.getRecurrenceRule();
+        Validate.notNull(templateVO.getOrganisation(), "templateVO.getOrganisation()");
+        Validate.notNull(templateVO.getLocation(), "templateVO.getLocation()");
+        Validate.notNull(templateVO.getLastAdmissionDate(), "templateVO.getLastAdmissionDate()");
+        validateStartAndEndTimes(
+                Validate.notNull(templateVO.getStartTime(), "templateVO.getStartTime()"),
+                Validate.notNull(templateVO.getEndTime(), "templateVO.getEndTime()"));
+
+        // ActivitySeries can only be created within the organisation of the activeMembership.
+        final Organisation organisation = CommonPersistenceTasks.getOrganisation(entityManager,
+                templateVO.getOrganisation().getOrganisationName());
+        if (organisation.getId() != activeMembership.getOrganisation().getId()) {
+            throw new IllegalArgumentException("Aktivitetsserier kan bara skapas inom den egna organisationen ["
+                    + activeMembership.getOrganisation().getOrganisationName() + "]");
+        }
+
+        // Create the template Activity, which is never persisted.
+        final Activity template = new Activity(
+                Validate.notEmpty(templateVO.getShortDesc(), "templateVO.getShortDesc()"),
+                Validate.notEmpty(templateVO.getFullDesc(), "templateVO.getFullDesc()"),
+                templateVO.getStartTime(),
+                templateVO.getEndTime(),
+                templateVO.getCost(),
+                templateVO.getLateAdmissionCost(),
+                templateVO.getLateAdmissionDate(),
+                templateVO.getLastAdmissionDate(),
+                false,
+                templateVO.getDressCode(),
+                CommonPersistenceTasks.getAddressCategory(entityManager, templateVO.getAddressCategory()),
+                templateVO.getLocation(),
+                templateVO.getAddressShortDescription(),
+                organisation,
+                getResponsibleGroup(organisation, templateVO.getResponsibleGroupName()),
+                templateVO.isOpenToGeneralPublic());
+
+        // Persist the ActivitySeries, and materialize its occurrences within the horizon.
+        final LocalDateTime now = getNow(organisation);
+        final ActivitySeries series = new ActivitySeries(template, recurrenceRule, activeMembership);
+        entityManager.persist(series);
+
+        final List<Activity> created = materialize(series, getMaterializationHorizon(now), now);
+        entityManager.flush();
+        notifyActivitiesChanged(created, Collections.emptyList());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Created " + series + " with [" + created.size() + "] materialized occurrences.");
+        }
+
+        // All Done.
+        final Activities toReturn = new Activities();
+        created.forEach(current -> toReturn.addActivityVOs(new ActivityVO(current)));
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int materializeOccurrences(final LocalDateTime horizon) {
+
+        // Check sanity
+        Validate.notNull(horizon, "horizon");
+
+        // All Done.
+        return materializeOccurrences(horizon, series -> horizon);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Activities updateOccurrence(final long seriesID,
+                                       final LocalDateTime occurrenceStart,
+                                       final ActivityVO targetState,
+                                       final EditScope scope,
+                                       final Membership activeMembership) throws RuntimeException {
+
+        // Check sanity
+        Validate.notNull(occurrenceStart, "occurrenceStart");
+        Validate.notNull(targetState, "targetState");
+        Validate.notNull(scope, "scope");
+        Validate.notNull(activeMembership, "activeMembership");
+
+        final ActivitySeries series = entityManager.find(ActivitySeries.class, seriesID);
+        if (series == null) {
+            throw new IllegalArgumentException("Hittade ingen aktivitetsserie med JPA ID [" + seriesID + "]");
+        }
+
+        final boolean isAdmin = organisationServiceBean.isAdministratorFor(
+                activeMembership, series.getOwningOrganisation());
+        final Membership responsible = series.getResponsibleMembership();
+        if (!isAdmin && (responsible == null || responsible.getId() != activeMembership.getId())) {
+            throw new IllegalArgumentException("[" + activeMembership.getAlias()
+                    + "] har inte behörighet att ändra aktivitetsserien [" + series.getShortDesc() + "]");
+        }
+
+        if (series.getOccurrences(occurrenceStart, occurrenceStart).isEmpty()) {
+            throw new IllegalArgumentException("[" + occurrenceStart + "] är inget tillfälle i aktivitetsserien ["
+                    + series.getShortDesc() + "]");
+        }
+
+        // Materialize all occurrences up to (and including) the edited occurrence.
+        // Occurrences are at least a week apart, so no later occurrence is materialized.
+        final LocalDateTime now = getNow(series.getOwningOrganisation());
+        final List<Activity> materialized = new ArrayList<>();
+        if (!occurrenceStart.isBefore(series.getMaterializedUntil())) {
+            materialized.addAll(materialize(series, occurrenceStart.plusDays(1), now));
+            entityManager.flush();
+        }
+
+        final List<Activity> fromOccurrence = entityManager.createNamedQuery(
+                Activity.NAMEDQ_GET_BY_SERIES_ID_FROM_OCCURRENCE, Activity.class)
+                .setParameter(OrganisationPatterns.PARAM_SERIES_ID, seriesID)
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, occurrenceStart)
+                .getResultList();
+        if (fromOccurrence.isEmpty() || !fromOccurrence.get(0).getSeriesOccurrence().equals(occurrenceStart)) {
+            throw new IllegalArgumentException("Tillfället [" + occurrenceStart + "] i aktivitetsserien ["
+                    + series.getShortDesc() + "] är borttaget.");
+        }
+
+        final Activity edited = fromOccurrence.get(0);
+        applyTargetState(targetState, edited);
+
+        final List<Activity> updated = scope == EditScope.THIS_OCCURRENCE
+                ? fromOccurrence.subList(0, 1)
+                : splitSeries(series, fromOccurrence, now);
+        entityManager.flush();
+
+        materialized.addAll(updated);
+        notifyActivitiesChanged(materialized, fromOccurrence.stream()
+                .filter(current -> !entityManager.contains(current))
+                .collect(Collectors.toList()));
+
+        // All Done.
+        final Activities toReturn = new Activities();
+        updated.forEach(current -> toReturn.addActivityVOs(new ActivityVO(current)));
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Notifies the ActivityChangeListeners of created/updated and removed (and flushed) occurrences.
+     */
+    private void notifyActivitiesChanged(final List<Activity> changed, final List<Activity> removed) {
+
+        Stream.of(activityConflictService, upcomingActivityService, reminderService, eventCalendarService)
+                .filter(Objects::nonNull)
+                .forEach(listener -> {
+                    listener.activitiesChanged(changed);
+                    listener.activitiesRemoved(removed);
+                });
+    }
+
+    /**
+     * Materializes the occurrences of all ActivitySeries whose high-water mark is before the supplied latest
+     * horizon, each one up to the horizon given by the supplied function.
+     */
+    private int materializeOccurrences(final LocalDateTime latestHorizon,
+                                       final Function<ActivitySeries, LocalDateTime> horizonOf) {
+
+        final List<Long> seriesIDs = entityManager.createNamedQuery(
+                ActivitySeries.NAMEDQ_GET_IDS_TO_MATERIALIZE, Long.class)
+                .setParameter(OrganisationPatterns.PARAM_END_TIME, latestHorizon)
+                .getResultList();
+
+        //
+        // Handle one ActivitySeries at a time, and flush/clear the EntityManager whenever a full
+        // batch of occurrences is pending. Since all ActivitySeries are re-read by ID, none of them
+        // is detached by the clear operation while being materialized.
+        //
+        final List<Activity> pending = new ArrayList<>();
+        int numCreated = 0;
+
+        for (Long current : seriesIDs) {
+
+            final ActivitySeries series = entityManager.find(ActivitySeries.class, current);
+            if (series == null) {
+                continue;
+            }
+
+            final List<Activity> materialized = materialize(series,
+                    horizonOf.apply(series),
+                    getNow(series.getOwningOrganisation()));
+            numCreated += materialized.size();
+            pending.addAll(materialized);
+
+            if (pending.size() >= MATERIALIZATION_BATCH_SIZE) {
+                entityManager.flush();
+                notifyActivitiesChanged(pending, Collections.emptyList());
+                entityManager.clear();
+                pending.clear();
+            }
+        }
+        entityManager.flush();
+        notifyActivitiesChanged(pending, Collections.emptyList());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Materialized [" + numCreated + "] occurrences within [" + seriesIDs.size()
+                    + "] ActivitySeries until " + latestHorizon);
+        }
+
+        // All Done.
+        return numCreated;
+    }
+
+    /**
+     * Persists Activities for all occurrences of the supplied ActivitySeries starting at or after its
+     * materialization high-water mark and before the supplied horizon, and moves the high-water mark.
+     */
+    private List<Activity> materialize(final ActivitySeries series,
+                                       final LocalDateTime horizon,
+                                       final LocalDateTime now) {
+
+        final List<Activity> toReturn = new ArrayList<>();
+        if (!series.getMaterializedUntil().isBefore(horizon)) {
+            return toReturn;
+        }
+
+        series.getOccurrences(series.getMaterializedUntil(), horizon)
+                .stream()
+                .filter(occurrence -> occurrence.isBefore(horizon))
+                .forEach(occurrence -> {
+
+                    final Activity toPersist = series.createOccurrence(occurrence, now);
+                    entityManager.persist(toPersist);
+                    toReturn.add(toPersist);
+                });
+
+        series.setMaterializedUntil(horizon);
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Splits the supplied ActivitySeries at the first of the supplied (materialized) occurrences, which has been
+     * edited. A new ActivitySeries is created from the edited occurrence, and all supplied occurrences are moved
+     * to it. The remaining occurrences are aligned with the recurrence rule of the new ActivitySeries, and get
+     * its template properties re-applied. Materialized occurrences which are not occurrences of the new
+     * ActivitySeries are removed, unless any of them holds Admissions (in which case the split is refused,
+     * rather than silently revoking the Admissions).
+     */
+    private List<Activity> splitSeries(final ActivitySeries series,
+                                       final List<Activity> fromOccurrence,
+                                       final LocalDateTime now) {
+
+        final Activity edited = fromOccurrence.get(0);
+        final LocalDateTime occurrenceStart = edited.getSeriesOccurrence();
+        final RecurrenceRule rule = series.getRecurrenceRule();
+
+        // Occurrences counted by the original ActivitySeries are not counted again.
+        final Integer remainingCount = rule.getCount() == null
+                ? null
+                : rule.getCount() - rule.getNumberOfOccurrencesBefore(series.getStartTime(), occurrenceStart);
+        final RecurrenceRule remainingRule = new RecurrenceRule(rule.getFrequency(),
+                rule.getInterval(),
+                rule.getUntil(),
+                remainingCount,
+                rule.getExceptions()
+                        .stream()
+                        .filter(date -> !date.isBefore(occurrenceStart.toLocalDate()))
+                        .collect(Collectors.toList()));
+
+        final ActivitySeries newSeries = new ActivitySeries(edited, remainingRule, series.getResponsibleMembership());
+
+        // Align the materialized occurrences with the recurrence rule of the new ActivitySeries.
+        final Duration offset = Duration.between(occurrenceStart, edited.getStartTime());
+        final LocalDateTime newHorizon = fromOccurrence.get(fromOccurrence.size() - 1).getSeriesOccurrence()
+                .plus(offset)
+                .plusDays(1);
+        final List<LocalDateTime> newOccurrences = newSeries.getOccurrences(newSeries.getStartTime(), newHorizon)
+                .stream()
+                .filter(occurrence -> occurrence.isBefore(newHorizon))
+                .collect(Collectors.toList());
+
+        // Never remove occurrences to which members are admitted.
+        fromOccurrence.stream()
+                .skip(newOccurrences.size())
+                .filter(current -> current.getAdmissions() != null && !current.getAdmissions().isEmpty())
+                .findFirst()
+                .ifPresent(current -> {
+                    throw new IllegalArgumentException("Tillfället [" + current.getSeriesOccurrence()
+                            + "] i aktivitetsserien [" + series.getShortDesc() + "] har ["
+                            + current.getAdmissions().size() + "] anmälningar, och kan inte tas bort. "
+                            + "Ändra endast detta tillfälle, eller avanmäl deltagarna först.");
+                });
+        entityManager.persist(newSeries);
+
+        final List<Activity> toReturn = new ArrayList<>();
+        for (int i = 0; i < Math.max(fromOccurrence.size(), newOccurrences.size()); i++) {
+
+            if (i >= newOccurrences.size()) {
+
+                // Not an occurrence of the new ActivitySeries.
+                entityManager.remove(fromOccurrence.get(i));
+
+            } else if (i >= fromOccurrence.size()) {
+
+                // An occurrence which was not materialized within the original ActivitySeries.
+                final Activity toPersist = newSeries.createOccurrence(newOccurrences.get(i), now);
+                entityManager.persist(toPersist);
+                toReturn.add(toPersist);
+
+            } else {
+
+                final Activity current = fromOccurrence.get(i);
+                if (i == 0) {
+                    current.setSeries(newSeries, newOccurrences.get(i));
+                } else {
+                    newSeries.applyTemplateTo(current, newOccurrences.get(i));
+                }
+                toReturn.add(current);
+            }
+        }
+        newSeries.setMaterializedUntil(newHorizon);
+
+        // End the original ActivitySeries before the edited occurrence, or remove it if nothing remains.
+        if (occurrenceStart.equals(series.getStartTime())) {
+            entityManager.remove(series);
+        } else {
+            series.setRecurrenceRule(rule.withUntil(occurrenceStart.toLocalDate().minusDays(1)));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Split " + series + " into " + newSeries + ", moving [" + toReturn.size() + "] occurrences.");
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Assigns all non-null properties (and given flags) of the supplied ActivityVO to the supplied occurrence.
+     */
+    private void applyTargetState(final ActivityVO targetState, final Activity occurrence) {
+
+        final LocalDateTime startTime = targetState.getStartTime() == null
+                ? occurrence.getStartTime()
+                : targetState.getStartTime();
+        final LocalDateTime endTime = targetState.getEndTime() == null
+                ? occurrence.getEndTime()
+                : targetState.getEndTime();
+        validateStartAndEndTimes(startTime, endTime);
+
+        occurrence.setStartTime(startTime);
+        occurrence.setEndTime(endTime);
+        targetState.getCancelled().ifPresent(occurrence::setCancelled);
+        targetState.getOpenToGeneralPublic().ifPresent(occurrence::setOpenToGeneralPublic);
+
+        if (targetState.getShortDesc() != null) {
+            occurrence.setShortDesc(targetState.getShortDesc());
+        }
+        if (targetState.getFullDesc() != null) {
+            occurrence.setFullDesc(targetState.getFullDesc());
+        }
+        if (targetState.getCost() != null) {
+            occurrence.setCost(targetState.getCost());
+        }
+        if (targetState.getLateAdmissionCost() != null) {
+            occurrence.setLateAdmissionCost(targetState.getLateAdmissionCost());
+        }
+        if (targetState.getLateAdmissionDate() != null) {
+            occurrence.setLateAdmissionDate(targetState.getLateAdmissionDate());
+        }
+        if (targetState.getLastAdmissionDate() != null) {
+            occurrence.setLastAdmissionDate(targetState.getLastAdmissionDate());
+        }
+        if (targetState.getDressCode() != null) {
+            occurrence.setDressCode(targetState.getDressCode());
+        }
+        if (targetState.getAddressShortDescription() != null) {
+            occurrence.setAddressShortDescription(targetState.getAddressShortDescription());
+        }
+        if (targetState.getLocation() != null) {
+            occurrence.setLocation(targetState.getLocation());
+        }
+        if (targetState.getAddressCategory() != null) {
+            occurrence.setAddressCategory(CommonPersistenceTasks.getAddressCategory(
+                    entityManager, targetState.getAddressCategory()));
+        }
+    }
+
+    /**
+     * Retrieves the current time within the time zone of the supplied Organisation.
+     */
+    private LocalDateTime getNow(final Organisation organisation) {
+        return LocalDateTime.now(clock.withZone(organisation.getTimeZone().toZoneId()));
+    }
+
+    private Group getResponsibleGroup(final Organisation organisation, final String groupName) {
+
+        if (groupName == null || groupName.isEmpty()) {
+            return null;
+        }
+
+        final List<Group> groups = JpaUtilities.findEntities(Group.class,
+                Group.NAMEDQ_GET_BY_NAME_ORGANISATION,
+                true,
+                entityManager,
+                aQuery -> {
+                    aQuery.setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME,
+                            organisation.getOrganisationName());
+                    aQuery.setParameter(OrganisationPatterns.PARAM_GROUP_NAME, groupName);
+                });
+
+        if (groups == null || groups.isEmpty()) {
+            throw new IllegalArgumentException("Hittade ingen grupp [" + groupName + "] inom ["
+                    + organisation.getOrganisationName() + "]");
+        }
+
+        // All Done.
+        return groups.get(0);
+    }
+
+    private static void validateStartAndEndTimes(final LocalDateTime startTime, final LocalDateTime endTime) {
+
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("Aktivitetens sluttid [" + endTime
+                    + "] måste vara efter starttiden [" + startTime + "]");
+        }
+    }
+}
@@ -24,13 +24,20 @@ package se.mithlond.services.organisation.impl.ejb;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.ActivityChangeListener;
+import se.mithlond.services.organisation.api.ActivityConflictService;
 import se.mithlond.services.organisation.api.ActivityService;
+import se.mithlond.services.organisation.api.EventCalendarService;
 import se.mithlond.services.organisation.api.OrganisationService;
+import se.mithlond.services.organisation.api.ReminderService;
+import se.mithlond.services.organisation.api.UpcomingActivityService;
 import se.mithlond.services.organisation.api.parameters.ActivitySearchParameters;
+import se.mithlond.services.organisation.api.persistence.PersistenceLookupMemo;
 import se.mithlond.services.organisation.model.Category;
 import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.ActivitySeries;
 import se.mithlond.services.organisation.model.activity.Admission;
 import se.mithlond.services.organisation.model.address.Address;
 import se.mithlond.services.organisation.model.address.CategorizedAddress;
@@ -38,22 +45,36 @@ import se.mithlond.services.organisation.model.membership.Group;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.OrganisationVO;
 import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflictVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflicts;
+import se.mithlond.services.organisation.model.transport.activity.ActivityFacetVO;
 import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
 import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
 import se.mithlond.services.organisation.model.transport.activity.Admissions;
+import se.mithlond.services.organisation.model.transport.activity.FreeBusy;
+import se.mithlond.services.organisation.model.transport.activity.MemberBusyVO;
+import se.mithlond.services.organisation.model.transport.activity.TimeIntervalVO;
 import se.mithlond.services.organisation.model.transport.address.CategoriesAndAddresses;
 import se.mithlond.services.organisation.model.user.User;
 import se.mithlond.services.shared.spi.algorithms.TimeFormat;
+import se.mithlond.services.shared.spi.algorithms.calendar.FreeBusyCalculator;
 import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 import se.mithlond.services.shared.spi.jpa.JpaUtilities;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -61,10 +82,13 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * ActivityService Stateless EJB implementation.
@@ -91,11 +115,34 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
      */
     public static final String HOMEADRESS_CATEGORY = "Hemadress";
 
+    /**
+     * The number of Activities read from the database within each page while streaming a calendar feed.
+     */
+    public static final int CALENDAR_FEED_BATCH_SIZE = 250;
+
+    /**
+     * The maximum number of Activity JPA IDs supplied within each query retrieving AdmissionVOs
+     * for the ActivityVOs returned from {@link #getActivities(ActivitySearchParameters, Membership)}.
+     */
+    public static final int ADMISSION_VO_BATCH_SIZE = 500;
+
     @EJB
     private OrganisationService organisationServiceBean;
 
-    // @EJB
-    // private EventCalendarService eventCalendarService;
+    @EJB
+    private EventCalendarService eventCalendarService;
+
+    @EJB
+    private ActivityConflictService activityConflictService;
+
+    @EJB
+    private UpcomingActivityService upcomingActivityService;
+
+    @EJB
+    private ReminderService reminderService;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
 
     /**
      * Default constructor.
@@ -117,6 +164,60 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         this.organisationServiceBean = organisationService;
     }
 
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param organisationService     An OrganisationService to inject.
+     * @param activityConflictService An ActivityConflictService to inject.
+     */
+    public ActivityServiceBean(final OrganisationService organisationService,
+                               final ActivityConflictService activityConflictService) {
+
+        // Delegate
+        this(organisationService);
+
+        // Assign internal state.
+        this.activityConflictService = activityConflictService;
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param organisationService     An OrganisationService to inject.
+     * @param activityConflictService An ActivityConflictService to inject.
+     * @param upcomingActivityService An UpcomingActivityService to inject.
+     */
+    public ActivityServiceBean(final OrganisationService organisationService,
+                               final ActivityConflictService activityConflictService,
+                               final UpcomingActivityService upcomingActivityService) {
+
+        // Delegate
+        this(organisationService, activityConflictService);
+
+        // Assign internal state.
+        this.upcomingActivityService = upcomingActivityService;
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param organisationService     An OrganisationService to inject.
+     * @param activityConflictService An ActivityConflictService to inject.
+     * @param upcomingActivityService An UpcomingActivityService to inject.
+     * @param reminderService         A ReminderService to inject.
+     */
+    public ActivityServiceBean(final OrganisationService organisationService,
+                               final ActivityConflictService activityConflictService,
+                               final UpcomingActivityService upcomingActivityService,
+                               final ReminderService reminderService) {
+
+        // Delegate
+        this(organisationService, activityConflictService, upcomingActivityService);
+
+        // Assign internal state.
+        this.reminderService = reminderService;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -138,18 +239,9 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
 
         // Acquire the padded lists.
         final List<Long> organisationIDs = parameters.getOrganisationIDs();
-        final List<Long> activityIDs = parameters.getActivityIDs();
-        final SortedMap<Organisation, Boolean> adminMap = new TreeMap<>();
-
-        organisationIDs.stream().sorted().forEach(orgID -> {
-
-            final Organisation org = entityManager.find(Organisation.class, orgID);
-            if (org == null) {
-                log.error("Found no Organisation for orgID [" + orgID + "]. This should not happen.");
-            } else if (!adminMap.containsKey(org)) {
-                adminMap.put(org, organisationServiceBean.isAdministratorFor(activeMembership, org));
-            }
-        });
+        final SortedMap<Organisation, Boolean> adminMap = organisationServiceBean.resolveAdministrativeScopes(
+                activeMembership,
+                organisationIDs.stream().filter(orgID -> orgID != 0L).collect(Collectors.toList()));
 
         if (log.isDebugEnabled()) {
 
@@ -161,36 +253,13 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
             log.debug(builder.toString());
         }
 
-        final TypedQuery<Activity> query = entityManager.createNamedQuery(
-                Activity.NAMEDQ_GET_BY_SEARCH_PARAMETERS, Activity.class)
-                .setParameter(OrganisationPatterns.PARAM_NUM_ACTIVITYIDS, activityIDsSize)
-                .setParameter(OrganisationPatterns.PARAM_IDS, activityIDs)
-                // .setParameter(OrganisationPatterns.PARAM_NUM_MEMBERSHIPIDS, membershipIDsSize)
-                // .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_IDS, membershipIDs)
-                .setParameter(OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS, organisationIDsSize)
-                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, organisationIDs)
-                .setParameter(OrganisationPatterns.PARAM_START_TIME, parameters.getStartPeriod())
-                .setParameter(OrganisationPatterns.PARAM_END_TIME, parameters.getEndPeriod());
-
-        /*
-        if (parameters.getStartPeriod() != null) {
-            query.setParameter(OrganisationPatterns.PARAM_START_TIME,
-                    Timestamp.valueOf(parameters.getStartPeriod()),
-                    TemporalType.TIMESTAMP);
-        }
-
-        if (parameters.getEndPeriod() != null) {
-            query.setParameter(OrganisationPatterns.PARAM_START_TIME,
-                    Timestamp.valueOf(parameters.getEndPeriod()),
-                    TemporalType.TIMESTAMP);
-        }
-        */
-
-        final List<Activity> activities = query.getResultList();
-
         final Activities toReturn = new Activities();
         if (parameters.isDetailedResponsePreferred()) {
 
+            final List<Activity> activities = decorateSearchQuery(entityManager.createNamedQuery(
+                    Activity.NAMEDQ_GET_BY_SEARCH_PARAMETERS, Activity.class),
+                    parameters, organisationIDsSize, activityIDsSize)
+                    .getResultList();
             toReturn.getActivities().addAll(activities);
 
             if (log.isDebugEnabled()) {
@@ -199,8 +268,22 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
 
         } else {
 
-            final List<ActivityVO> activityVOs = activities.stream().map(ActivityVO::new).collect(Collectors.toList());
-            activityVOs.forEach(toReturn::addActivityVOs);
+            // Project the ActivityVOs directly from the database; no Activity entities are loaded.
+            final List<ActivityVO> activityVOs = decorateSearchQuery(entityManager.createNamedQuery(
+                    Activity.NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS, ActivityVO.class),
+                    parameters, organisationIDsSize, activityIDsSize)
+                    .getResultList();
+
+            // Stitch in the AdmissionVOs, retrieved in batches.
+            addAdmissionVOs(activityVOs);
+
+            // Unless specific Activities were requested, expand the occurrences of all ActivitySeries
+            // which are not yet materialized within the requested period.
+            final List<ActivityVO> allVOs = new ArrayList<>(activityVOs);
+            if (activityIDsSize == 0) {
+                addUnmaterializedOccurrenceVOs(allVOs, parameters, organisationIDsSize);
+            }
+            allVOs.forEach(toReturn::addActivityVOs);
 
             if (log.isDebugEnabled()) {
                 log.debug("Added [" + toReturn.getActivityVOs().size() + "] ActivityVO objects to result.");
@@ -211,6 +294,141 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Activities searchActivities(final ActivitySearchParameters parameters, final Membership activeMembership) {
+
+        // Check sanity
+        Validate.notNull(parameters, "parameters");
+        Validate.notNull(activeMembership, "activeMembership");
+
+        // Pad the ID Lists.
+        final int organisationIDsSize = AbstractJpaService.padAndGetSize(parameters.getOrganisationIDs(), 0L);
+        final int activityIDsSize = AbstractJpaService.padAndGetSize(parameters.getActivityIDs(), 0L);
+
+        // #1) Count the total and all requested facets from a single grouped query.
+        final SortedMap<ActivityFacetVO.Facet, SortedMap<String, Long>> facet2ValueCounts = new TreeMap<>();
+        parameters.getFacets().forEach(facet -> facet2ValueCounts.put(facet, new TreeMap<>()));
+
+        long totalCount = 0;
+        final List<Object[]> groups = decorateSearchQuery(entityManager.createNamedQuery(
+                Activity.NAMEDQ_GET_FACET_COUNTS_BY_SEARCH_PARAMETERS, Object[].class),
+                parameters, organisationIDsSize, activityIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_ID, activeMembership.getId())
+                .getResultList();
+        for (Object[] current : groups) {
+
+            final long count = ((Number) current[5]).longValue();
+            totalCount += count;
+
+            addFacetCount(facet2ValueCounts, ActivityFacetVO.Facet.ADDRESS_CATEGORY, (String) current[0], count);
+            addFacetCount(facet2ValueCounts, ActivityFacetVO.Facet.MONTH, String.format("%04d-%02d",
+                    ((Number) current[1]).intValue(), ((Number) current[2]).intValue()), count);
+            addFacetCount(facet2ValueCounts, ActivityFacetVO.Facet.RESPONSIBLE_GROUP,
+                    current[3] == null ? "" : (String) current[3], count);
+            addFacetCount(facet2ValueCounts, ActivityFacetVO.Facet.ADMITTED, "" + (current[4] != null), count);
+        }
+
+        // #2) Project the requested page of ActivityVOs directly from the database.
+        final TypedQuery<ActivityVO> pageQuery = decorateSearchQuery(entityManager.createNamedQuery(
+                Activity.NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS, ActivityVO.class),
+                parameters, organisationIDsSize, activityIDsSize)
+                .setFirstResult(parameters.getFirstResult());
+        if (parameters.getMaxResults() > 0) {
+            pageQuery.setMaxResults(parameters.getMaxResults());
+        }
+        final List<ActivityVO> page = pageQuery.getResultList();
+        addAdmissionVOs(page);
+
+        // #3) Package the result.
+        final Activities toReturn = new Activities(page.toArray(new ActivityVO[page.size()]));
+        toReturn.setTotalCount(totalCount);
+        facet2ValueCounts.forEach((facet, valueCounts) -> valueCounts.forEach((value, count) ->
+                toReturn.getFacets().add(new ActivityFacetVO(facet, value, count))));
+
+        if (log.isDebugEnabled()) {
+            log.debug("Faceted search yielded [" + page.size() + " / " + totalCount + "] ActivityVOs from ["
+                    + groups.size() + "] groups, and facets " + toReturn.getFacets());
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCalendarFeedVersion(final ActivitySearchParameters parameters) {
+
+        // Check sanity
+        Validate.notNull(parameters, "parameters");
+
+        // Only the JPA IDs, versions and rendered location and Organisation data are retrieved;
+        // no Activity is loaded. Unlike aggregates, the fingerprint of the ordered rows changes
+        // whenever any Activity is replaced by another or has its rendered data changed.
+        final List<Object[]> rows = decorateCalendarFeedQuery(
+                entityManager.createNamedQuery(Activity.NAMEDQ_GET_CALENDAR_FEED_VERSION, Object[].class),
+                parameters).getResultList();
+        final long fingerprint = VersionFingerprints.fingerprint(VersionFingerprints.FNV_OFFSET_BASIS, rows);
+
+        // All Done.
+        return Long.toHexString(rows.size()) + "-" + Long.toHexString(fingerprint);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int streamCalendarFeed(final ActivitySearchParameters parameters, final Consumer<Activity> consumer) {
+
+        // Check sanity
+        Validate.notNull(parameters, "parameters");
+        Validate.notNull(consumer, "consumer");
+
+        final TypedQuery<Activity> query = decorateCalendarFeedQuery(
+                entityManager.createNamedQuery(Activity.NAMEDQ_GET_CALENDAR_FEED, Activity.class),
+                parameters);
+
+        //
+        // JPA 2.1 has no portable cursor; read the feed in fixed-size batches using keyset paging
+        // on (startTime, id), so each batch seeks directly past the last Activity of the previous
+        // batch instead of skipping all previously streamed rows. The persistence context is not
+        // cleared between batches, since that would detach the Activities managed by the caller.
+        //
+        LocalDateTime afterStartTime = parameters.getStartPeriod();
+        long afterID = Long.MIN_VALUE;
+        int numStreamed = 0;
+        while (true) {
+
+            final List<Activity> batch = query
+                    .setParameter(OrganisationPatterns.PARAM_AFTER_START_TIME, afterStartTime)
+                    .setParameter(OrganisationPatterns.PARAM_AFTER_ID, afterID)
+                    .setMaxResults(CALENDAR_FEED_BATCH_SIZE)
+                    .getResultList();
+
+            batch.forEach(consumer);
+            numStreamed += batch.size();
+
+            if (batch.size() < CALENDAR_FEED_BATCH_SIZE) {
+                break;
+            }
+
+            final Activity last = batch.get(batch.size() - 1);
+            afterStartTime = last.getStartTime();
+            afterID = last.getId();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Streamed [" + numStreamed + "] Activities for calendar feed " + parameters);
+        }
+
+        // All Done.
+        return numStreamed;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -340,6 +558,28 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         final List<Activity> persistedActivities = new ArrayList<>();
         if (!acceptedVOs.isEmpty()) {
 
+            // Prefetch all Organisations, address Categories and admitted Memberships referenced by the
+            // accepted VOs, to avoid firing identical lookup queries for each ActivityVO and AdmissionVO.
+            final List<AdmissionVO> acceptedAdmissions = acceptedVOs.stream()
+                    .map(ActivityVO::getAdmissions)
+                    .filter(Objects::nonNull)
+                    .flatMap(Set::stream)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
+            final PersistenceLookupMemo lookupMemo = new PersistenceLookupMemo(entityManager)
+                    .prefetchOrganisations(acceptedVOs.stream()
+                            .map(ActivityVO::getOrganisation)
+                            .filter(Objects::nonNull)
+                            .map(OrganisationVO::getOrganisationName)
+                            .collect(Collectors.toList()))
+                    .prefetchAddressCategories(acceptedVOs.stream()
+                            .map(ActivityVO::getAddressCategory)
+                            .collect(Collectors.toList()))
+                    .prefetchMemberships(
+                            acceptedAdmissions.stream().map(AdmissionVO::getAlias).collect(Collectors.toList()),
+                            acceptedAdmissions.stream().map(AdmissionVO::getOrganisation).collect(Collectors.toList()));
+
             acceptedVOs.forEach(theVO -> {
 
                 // #3.1) Validate that the data given are sane.
@@ -366,14 +606,19 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
 
                 // #3.3) Get the managed objects from the Database.
                 //
-                final Organisation organisation = CommonPersistenceTasks.getOrganisation(entityManager,
-                        organisationVO.getOrganisationName());
-                final Category category = CommonPersistenceTasks.getAddressCategory(entityManager, addressCategory);
+                final Organisation organisation = lookupMemo.getOrganisation(organisationVO.getOrganisationName());
+                final Category category = lookupMemo.getAddressCategory(addressCategory);
 
                 // Is a Group responsible for the Activity?
                 final Optional<Group> responsibleGroup =
                         validateActivityHasResponsibleAndRetrieveGroup(entityManager, theVO);
 
+                // Does the Activity conflict with any existing Activity?
+                if (isCheckingConflicts()) {
+                    handleConflicts(activityConflictService.getConflicts(organisation.getId(), theVO),
+                            "Aktiviteten [" + shortDesc + "]");
+                }
+
                 // #3.4) Create the Activity object to persist.
                 //
                 final Activity toPersist = new Activity(shortDesc,
@@ -392,16 +637,14 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
                         organisation,
                         responsibleGroup.orElse(null),
                         theVO.isOpenToGeneralPublic());
+                toPersist.setMaxParticipants(theVO.getMaxParticipants());
 
                 // #3.5) Convert all supplied AdmissionVOs to Admission objects.
                 //
                 theVO.getAdmissions().stream().map(c -> {
 
                     // Convert the AdmissionVO to an Admission
-                    final Membership admitted = CommonPersistenceTasks.getSingleMembership(
-                            entityManager,
-                            c.getAlias(),
-                            c.getOrganisation());
+                    final Membership admitted = lookupMemo.getSingleMembership(c.getAlias(), c.getOrganisation());
 
                     // Compile the admission note, which should be on the following format:
                     //
@@ -426,6 +669,13 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
 
                 }).forEach(toPersist.getAdmissions()::add);
 
+                // The new Activity is not visible to other transactions, so no locks are required.
+                if (!AdmissionServiceBean.hasCapacityFor(toPersist, 0L, toPersist.getAdmissions().size())) {
+                    throw new IllegalArgumentException("Aktiviteten [" + shortDesc + "] har plats för ["
+                            + toPersist.getMaxParticipants() + "] deltagare, men [" + toPersist.getAdmissions().size()
+                            + "] anmälningar angavs.");
+                }
+
                 // Persist the Object
                 entityManager.persist(toPersist);
 
@@ -434,8 +684,9 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
             });
         }
 
-        // Flush the EntityManager.
+        // Flush the EntityManager, and push the new Activities to the EventCalendars.
         entityManager.flush();
+        getActivityChangeListeners().forEach(listener -> listener.activitiesChanged(persistedActivities));
 
         // All Done.
         persistedActivities.forEach(act -> toReturn.addActivityVOs(new ActivityVO(act)));
@@ -462,6 +713,7 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         //
         final Organisation activeOrganisation = activeMembership.getOrganisation();
         final Activities toReturn = new Activities();
+        final List<Activity> updatedActivities = new ArrayList<>();
 
         // #2) Find the current timestamp, as interpreted within the TimeZone where the Activity takes place.
         //
@@ -552,7 +804,7 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
                 update(theVO.getAddressShortDescription(),
                         toUpdate.getAddressShortDescription(),
                         toUpdate::setAddressShortDescription);
-                toUpdate.setCancelled(theVO.isCancelled());
+                theVO.getCancelled().ifPresent(toUpdate::setCancelled);
                 update(theVO.getDressCode(), toUpdate.getDressCode(), toUpdate::setDressCode);
 
                 // #1.2) Costs
@@ -571,6 +823,24 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
                 update(theVO.getEndTime(), toUpdate.getEndTime(),
                         c -> toUpdate.setEndTime((LocalDateTime) c));
 
+                // #1.4) Participant cap, which cannot be lowered below the current number of Admissions.
+                //       The Activity is locked exactly as when admitting, so the count stays current.
+                //
+                final Integer maxParticipants = theVO.getMaxParticipants();
+                if (maxParticipants != null && !maxParticipants.equals(toUpdate.getMaxParticipants())) {
+
+                    AdmissionServiceBean.lockForAdmissions(transactionSynchronizationRegistry,
+                            entityManager,
+                            Collections.singletonList(toUpdate.getId()));
+                    final int numAdmissions = toUpdate.getAdmissions().size();
+                    if (numAdmissions > maxParticipants) {
+                        throw new IllegalArgumentException("Aktiviteten [" + toUpdate.getShortDesc()
+                                + "] har redan [" + numAdmissions + "] anmälda, och kan inte begränsas till ["
+                                + maxParticipants + "] deltagare.");
+                    }
+                    toUpdate.setMaxParticipants(maxParticipants);
+                }
+
                 // #2) Update JPA relations
                 //
                 // #2.1) Activity location: Category
@@ -607,6 +877,7 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
 
                 // Now flush before returning the updated object.
                 entityManager.flush();
+                updatedActivities.add(toUpdate);
 
                 // Populate the returning structure.
                 toReturn.addActivityVOs(new ActivityVO(toUpdate));
@@ -616,7 +887,8 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
             }
         });
 
-        // Flush the EntityManager, and re-select the now updated Activity.
+        // Push the updated Activities to the EventCalendars.
+        getActivityChangeListeners().forEach(listener -> listener.activitiesChanged(updatedActivities));
 
         // All Done.
         return toReturn;
@@ -685,156 +957,204 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
                     + "] Admissions for processing.");
         }
 
-        // Find the Activity objects as indicated by the accepted AdmissionVOs
-        if (!acceptedAdmissions.isEmpty()) {
+        if (acceptedAdmissions.isEmpty()) {
+            return toReturn;
+        }
 
-            final List<Long> activityJpaIDs = acceptedAdmissions.stream()
-                    .map(AdmissionVO::getActivityID)
-                    .filter(Objects::nonNull)
-                    .sorted()
-                    .distinct()
-                    .collect(Collectors.toList());
+        // #1) Group the accepted AdmissionVOs by Activity JPA ID in a single pass.
+        //     Each group is sorted by Membership JPA ID, and the last AdmissionVO for any Membership wins.
+        final SortedMap<Long, SortedMap<Long, AdmissionVO>> activityID2DesiredMap = new TreeMap<>();
+        final SortedSet<Long> membershipIDs = new TreeSet<>();
+        for (AdmissionVO current : acceptedAdmissions) {
 
-            if (activityJpaIDs != null && !activityJpaIDs.isEmpty()) {
+            if (current.getActivityID() == null || current.getMembershipID() == null) {
+                log.warn("Ignoring AdmissionVO lacking activityID or membershipID: " + current);
+                continue;
+            }
 
-                final List<Activity> impliedActivities = entityManager
-                        .createQuery("select a from Activity a where a.id in :jpaIDs", Activity.class)
-                        .setParameter("jpaIDs", activityJpaIDs)
-                        .getResultList();
+            activityID2DesiredMap.computeIfAbsent(current.getActivityID(), k -> new TreeMap<>())
+                    .put(current.getMembershipID(), current);
+            membershipIDs.add(current.getMembershipID());
+        }
 
-                if (log.isDebugEnabled()) {
+        if (activityID2DesiredMap.isEmpty()) {
+            return toReturn;
+        }
 
-                    log.debug("Found [" + (impliedActivities == null
-                            ? "0 <Null impliedActivities>"
-                            : "" + impliedActivities.size())
-                            + "] activities from the [" + acceptedAdmissions.size() + "] accepted AdmissionVOs.");
-                }
+        // #2) Load the implied Activities, their existing Admissions and the referenced Memberships
+        //     using one batched query each, irrespective of the number of Activities and Admissions.
+        //     The Activities are locked exactly as within the AdmissionService, so their Admissions
+        //     cannot be changed by other transactions until this transaction completes.
+        final List<Long> activityIDs = new ArrayList<>(activityID2DesiredMap.keySet());
+        final Map<Long, Activity> id2ActivityMap = AdmissionServiceBean.lockForAdmissions(
+                transactionSynchronizationRegistry,
+                entityManager,
+                activityIDs)
+                .stream()
+                .collect(Collectors.toMap(Activity::getId, a -> a));
 
-                if (impliedActivities != null && !impliedActivities.isEmpty()) {
-
-                    for (Activity current : impliedActivities) {
-
-                        // Get the current Admissions of this Activity
-                        final Set<Admission> existingAdmissions = current.getAdmissions();
-                        final Map<Long, Admission> existingAdmissionsMap = existingAdmissions
-                                .stream()
-                                .collect(Collectors.toMap(c -> c.getAdmitted().getId(), c -> c));
-                        final Set<Admission> currentResponsible = existingAdmissions.stream()
-                                .filter(Admission::isResponsible)
-                                .collect(Collectors.toSet());
-
-                        // Find the received Admissions for this Activity.
-                        final Map<Long, AdmissionVO> receivedTargetState = acceptedAdmissions
-                                .stream()
-                                .filter(adm -> adm.getActivityID() == current.getId())
-                                .collect(Collectors.toMap(AdmissionVO::getMembershipID, c -> c));
-
-                        // Create collections where the new/updated/removed admission structures reside.
-                        final SortedMap<Long, AdmissionVO> toAdd = new TreeMap<>();
-                        final SortedMap<Long, AdmissionVO> toUpdate = new TreeMap<>();
-                        final SortedMap<Long, Admission> toRemove = new TreeMap<>();
-
-                        receivedTargetState.entrySet().stream()
-                                .filter(e -> !e.getValue().getAdmitted())
-                                .map(e -> existingAdmissionsMap.get(e.getKey()))
-                                .filter(e -> {
-
-                                    // At least one responsible must remain after removing this Admission.
-                                    boolean atLeastOneResponsibleRemains = true;
-                                    if (e.isResponsible()) {
-
-                                        atLeastOneResponsibleRemains = currentResponsible.stream()
-                                                .filter(Admission::isResponsible)
-                                                .filter(adm -> adm.getAdmissionId().membershipId != e.getAdmissionId().membershipId)
-                                                .collect(Collectors.toSet())
-                                                .size() > 0;
-                                    }
-
-                                    // All Done.
-                                    return atLeastOneResponsibleRemains;
-                                })
-                                .forEach(e -> toRemove.put(e.getAdmissionId().membershipId, e));
-
-                        receivedTargetState.entrySet().stream()
-                                .filter(e -> e.getValue().getAdmitted())
-                                .filter(e -> existingAdmissionsMap.containsKey(e.getKey()))
-                                .forEach(e -> toUpdate.put(e.getKey(), e.getValue()));
-
-                        receivedTargetState.entrySet().stream()
-                                .filter(e -> e.getValue().getAdmitted())
-                                .filter(e -> !existingAdmissionsMap.containsKey(e.getKey()))
-                                .forEach(e -> toAdd.put(e.getKey(), e.getValue()));
-
-                        // Add / Persist new Admissions as required.
-                        //
-                        toAdd.forEach((key, value) -> {
+        final SortedMap<Long, List<Admission>> activityID2ExistingMap = new TreeMap<>();
+        entityManager.createNamedQuery(Admission.NAMEDQ_GET_BY_ACTIVITY_IDS, Admission.class)
+                .setParameter(OrganisationPatterns.PARAM_IDS, activityIDs)
+                .getResultList()
+                .forEach(adm -> activityID2ExistingMap.computeIfAbsent(
+                        adm.getAdmissionId().activityId, k -> new ArrayList<>()).add(adm));
+
+        final Map<Long, Membership> id2MembershipMap = entityManager
+                .createNamedQuery(Membership.NAMEDQ_GET_BY_IDS, Membership.class)
+                .setParameter(OrganisationPatterns.PARAM_IDS, new ArrayList<>(membershipIDs))
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(Membership::getId, m -> m));
 
-                            // First, find the Membership for this JPA ID.
-                            final Membership membership = entityManager.find(Membership.class, key);
+        if (log.isDebugEnabled()) {
+            log.debug("Found [" + id2ActivityMap.size() + "] activities and [" + id2MembershipMap.size()
+                    + "] memberships from the [" + acceptedAdmissions.size() + "] accepted AdmissionVOs.");
+        }
 
-                            // If this Membership was admitted by someone else, add a note stating so.
-                            String admissionNote = value.getNote().orElse(null);
-                            if (membership.getId() != activeMembership.getId()) {
+        // #3) Sorted-merge the existing and desired Admissions of each Activity.
+        final List<AdmissionDiff> diffs = new ArrayList<>();
+        activityID2DesiredMap.forEach((activityID, desired) -> {
 
-                                final String admittedBySomeoneElse = " Anmäld av " + activeMembership.getAlias()
-                                        + " (" + activeMembership.getOrganisation().getOrganisationName() + ")";
+            final Activity activity = id2ActivityMap.get(activityID);
+            if (activity == null) {
+                log.warn("Found no Activity with JPA ID [" + activityID + "]. Ignoring its AdmissionVOs.");
+            } else {
+                diffs.add(AdmissionDiff.merge(activity,
+                        activityID2ExistingMap.getOrDefault(activityID, Collections.emptyList()),
+                        new ArrayList<>(desired.values())));
+            }
+        });
 
-                                admissionNote = (admissionNote == null
-                                        ? admittedBySomeoneElse
-                                        : admissionNote + admittedBySomeoneElse);
-                            }
+        // #4) Check that no Activity gets more participants than permitted.
+        diffs.forEach(diff -> {
+
+            final Activity activity = diff.getActivity();
+            final long numRemaining = activityID2ExistingMap.getOrDefault(activity.getId(), Collections.emptyList())
+                    .size() - diff.getToDelete().size();
+            final int numToAdmit = (int) diff.getToCreate().stream()
+                    .map(AdmissionVO::getMembershipID)
+                    .filter(id2MembershipMap::containsKey)
+                    .count();
+
+            if (!AdmissionServiceBean.hasCapacityFor(activity, numRemaining, numToAdmit)) {
+                throw new IllegalArgumentException("Aktiviteten [" + activity.getShortDesc() + "] har plats för ["
+                        + activity.getMaxParticipants() + "] deltagare, och har redan [" + numRemaining
+                        + "] anmälda. Kan inte anmäla [" + numToAdmit + "] till.");
+            }
+        });
 
-                            // Create an Admission from the supplied Membership
-                            final Admission toPersist = new Admission(
-                                    current,
-                                    membership,
-                                    now,
-                                    now,
-                                    admissionNote,
-                                    value.isResponsible(),
-                                    activeMembership);
-
-                            // Persist and add the Admission to this Activity's admission set.
-                            entityManager.persist(toPersist);
-                            existingAdmissions.add(toPersist);
-
-                            // ... and add the new Admission to the return wrapper.
-                            toReturn.getDetails().add(new AdmissionVO(toPersist));
-                        });
+        // #5) Check that no Membership gets admitted to Activities overlapping in time.
+        if (isCheckingConflicts()) {
+            diffs.stream()
+                    .filter(diff -> !diff.getToCreate().isEmpty())
+                    .forEach(diff -> handleConflicts(activityConflictService.getAdmissionConflicts(
+                            diff.getActivity(),
+                            diff.getToCreate().stream()
+                                    .map(AdmissionVO::getMembershipID)
+                                    .collect(Collectors.toList())),
+                            "Anmälan till aktiviteten [" + diff.getActivity().getShortDesc() + "]"));
+        }
 
-                        // Remove the deleted admissions
-                        //
-                        toRemove.forEach((key, value) -> {
+        // #6) Apply all diffs, and flush once.
+        final PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory()
+                .getPersistenceUnitUtil();
+        final String admittedBySomeoneElse = " Anmäld av " + activeMembership.getAlias()
+                + " (" + activeMembership.getOrganisation().getOrganisationName() + ")";
 
-                            existingAdmissions.remove(value);
-                            entityManager.remove(value);
-                        });
+        for (AdmissionDiff current : diffs) {
 
-                        // Update the rest of the relevant and received Admissions
-                        //
-                        toUpdate.forEach((key, value) -> {
+            final Activity activity = current.getActivity();
 
-                            final Admission admission = existingAdmissionsMap.get(key);
-                            if (admission != null) {
+            // Only synchronize the in-memory Admissions of the Activity if they were already loaded.
+            final boolean syncAdmissions = persistenceUnitUtil.isLoaded(activity, "admissions");
 
-                                // Update the Admission data.
-                                admission.setAdmissionNote(value.getNote().orElse(null));
-                                admission.setAdmittedBy(activeMembership);
-                                admission.setResponsible(value.isResponsible());
+            if (log.isDebugEnabled()) {
+                log.debug("Applying " + current);
+            }
 
-                                // ... and add the updated Admission to the return wrapper.
-                                toReturn.getDetails().add(new AdmissionVO(admission));
+            // Add / Persist new Admissions as required.
+            for (AdmissionVO value : current.getToCreate()) {
 
-                            } else {
-                                log.warn("Could not find an existing admission with MembershipJpaID ["
-                                        + key + "]. Weird.");
-                            }
-                        });
-                    }
+                final Membership membership = id2MembershipMap.get(value.getMembershipID());
+                if (membership == null) {
+                    log.warn("Found no Membership with JPA ID [" + value.getMembershipID() + "]. Ignoring.");
+                    continue;
+                }
+
+                // If this Membership was admitted by someone else, add a note stating so.
+                String admissionNote = value.getNote().orElse(null);
+                if (membership.getId() != activeMembership.getId()) {
+                    admissionNote = (admissionNote == null
+                            ? admittedBySomeoneElse
+                            : admissionNote + admittedBySomeoneElse);
                 }
+
+                // Create an Admission from the supplied Membership
+                final Admission toPersist = new Admission(
+                        activity,
+                        membership,
+                        now,
+                        now,
+                        admissionNote,
+                        value.isResponsible(),
+                        activeMembership);
+
+                // Persist and add the Admission to this Activity's admission set.
+                entityManager.persist(toPersist);
+                if (syncAdmissions) {
+                    activity.getAdmissions().add(toPersist);
+                }
+
+                // ... and add the new Admission to the return wrapper.
+                toReturn.getDetails().add(new AdmissionVO(toPersist));
+            }
+
+            // Remove the deleted admissions
+            for (Admission value : current.getToDelete()) {
+
+                if (syncAdmissions) {
+                    activity.getAdmissions().remove(value);
+                }
+                entityManager.remove(value);
+            }
+
+            // Update the rest of the relevant and received Admissions
+            for (Map.Entry<Admission, AdmissionVO> entry : current.getToModify()) {
+
+                final Admission admission = entry.getKey();
+                final AdmissionVO value = entry.getValue();
+
+                // Update the Admission data.
+                admission.setAdmissionNote(value.getNote().orElse(null));
+                admission.setAdmittedBy(activeMembership);
+                admission.setResponsible(value.isResponsible());
+
+                // ... and add the updated Admission to the return wrapper.
+                toReturn.getDetails().add(new AdmissionVO(admission));
+            }
+
+            if (!current.getRejected().isEmpty() && log.isInfoEnabled()) {
+                log.info("Refused removing [" + current.getRejected().size() + "] Admissions from Activity ["
+                        + activity.getId() + "], since it would be left without anyone responsible.");
             }
         }
 
+        entityManager.flush();
+
+        final List<ActivityChangeListener> listeners = getActivityChangeListeners();
+        diffs.forEach(diff -> {
+
+            final List<Long> admitted = diff.getToCreate().stream()
+                    .map(AdmissionVO::getMembershipID)
+                    .filter(id2MembershipMap::containsKey)
+                    .collect(Collectors.toList());
+            final List<Long> revoked = diff.getToDelete().stream()
+                    .map(adm -> adm.getAdmitted().getId())
+                    .collect(Collectors.toList());
+            listeners.forEach(listener -> listener.admissionsChanged(diff.getActivity(), admitted, revoked));
+        });
+
         // All Done
         return toReturn;
     }
@@ -867,6 +1187,89 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         return !otherResponsibleAdmissions.isEmpty();
     }
 
+    /**
+     * Assigns the search parameters of the supplied ActivitySearchParameters to the supplied query, which should
+     * be either {@link Activity#NAMEDQ_GET_BY_SEARCH_PARAMETERS} or
+     * {@link Activity#NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS}. The ID Lists within the parameters must be padded.
+     */
+    private static <T> TypedQuery<T> decorateSearchQuery(final TypedQuery<T> query,
+                                                         final ActivitySearchParameters parameters,
+                                                         final int organisationIDsSize,
+                                                         final int activityIDsSize) {
+
+        return query.setParameter(OrganisationPatterns.PARAM_NUM_ACTIVITYIDS, activityIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_IDS, parameters.getActivityIDs())
+                .setParameter(OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS, organisationIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, parameters.getOrganisationIDs())
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, parameters.getStartPeriod())
+                .setParameter(OrganisationPatterns.PARAM_END_TIME, parameters.getEndPeriod());
+    }
+
+    /**
+     * Retrieves AdmissionVOs for the supplied ActivityVOs using the {@link Admission#NAMEDQ_GET_VO_BY_ACTIVITY_IDS}
+     * projection, fired once per batch of {@link #ADMISSION_VO_BATCH_SIZE} Activities, and adds each AdmissionVO
+     * to the ActivityVO with the corresponding JPA ID.
+     */
+    private void addAdmissionVOs(final List<ActivityVO> activityVOs) {
+
+        final Map<Long, ActivityVO> id2ActivityVO = new HashMap<>();
+        activityVOs.forEach(current -> id2ActivityVO.put(current.getJpaID(), current));
+
+        final List<Long> activityIDs = new ArrayList<>(id2ActivityVO.keySet());
+        for (int fromIndex = 0; fromIndex < activityIDs.size(); fromIndex += ADMISSION_VO_BATCH_SIZE) {
+
+            final List<Long> batch = activityIDs.subList(fromIndex,
+                    Math.min(fromIndex + ADMISSION_VO_BATCH_SIZE, activityIDs.size()));
+
+            entityManager.createNamedQuery(Admission.NAMEDQ_GET_VO_BY_ACTIVITY_IDS, AdmissionVO.class)
+                    .setParameter(OrganisationPatterns.PARAM_IDS, batch)
+                    .getResultList()
+                    .forEach(admissionVO -> {
+
+                        final ActivityVO activityVO = id2ActivityVO.get(admissionVO.getActivityID());
+                        if (activityVO != null) {
+                            activityVO.getAdmissions().add(admissionVO);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Expands the occurrences of all ActivitySeries (within the organisations of the supplied parameters) which
+     * start within the search period but are not yet materialized, and adds an ActivityVO for each such
+     * occurrence to the supplied List. The List is re-sorted by startTime.
+     */
+    private void addUnmaterializedOccurrenceVOs(final List<ActivityVO> activityVOs,
+                                                final ActivitySearchParameters parameters,
+                                                final int organisationIDsSize) {
+
+        final LocalDateTime rangeStart = parameters.getStartPeriod();
+        final LocalDateTime rangeEnd = parameters.getEndPeriod();
+
+        final List<ActivitySeries> seriesList = entityManager.createNamedQuery(
+                ActivitySeries.NAMEDQ_GET_UNMATERIALIZED_BY_ORGANISATION_IDS_AND_DATERANGE, ActivitySeries.class)
+                .setParameter(OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS, organisationIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, parameters.getOrganisationIDs())
+                .setParameter(OrganisationPatterns.PARAM_END_TIME, rangeEnd)
+                .getResultList();
+
+        if (seriesList.isEmpty()) {
+            return;
+        }
+
+        for (ActivitySeries current : seriesList) {
+
+            // Only occurrences at or after the materialization high-water mark lack a persisted Activity.
+            final LocalDateTime materializedUntil = current.getMaterializedUntil();
+            final LocalDateTime from = materializedUntil.isAfter(rangeStart) ? materializedUntil : rangeStart;
+
+            current.getOccurrences(from, rangeEnd)
+                    .forEach(occurrence -> activityVOs.add(new ActivityVO(current, occurrence)));
+        }
+
+        activityVOs.sort(Comparator.comparing(ActivityVO::getStartTime));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -952,10 +1355,142 @@ public class ActivityServiceBean extends AbstractJpaService implements ActivityS
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FreeBusy getFreeBusy(final long organisationID,
+                                final List<Long> membershipIDs,
+                                final LocalDateTime from,
+                                final LocalDateTime to) {
+
+        // Check sanity
+        Validate.notNull(membershipIDs, "membershipIDs");
+        Validate.notNull(from, "from");
+        Validate.notNull(to, "to");
+        Validate.isTrue(to.isAfter(from), "Cannot handle 'to' not after 'from'.");
+
+        // #1) Sort and de-duplicate the Membership IDs, so that all query batches - and hence
+        //     all rows fed to the FreeBusyCalculator - are sorted by Membership ID and startTime.
+        final List<Long> sortedIDs = new ArrayList<>(new TreeSet<>(membershipIDs.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())));
+
+        final FreeBusyCalculator<Long> calculator = new FreeBusyCalculator<>(from, to);
+        calculator.addKeys(sortedIDs);
+
+        // #2) Feed the merged busy intervals in a single pass over the (batched) projection.
+        for (int fromIndex = 0; fromIndex < sortedIDs.size(); fromIndex += ADMISSION_VO_BATCH_SIZE) {
+
+            final List<Long> batch = sortedIDs.subList(fromIndex,
+                    Math.min(fromIndex + ADMISSION_VO_BATCH_SIZE, sortedIDs.size()));
+
+            final List<Object[]> rows = entityManager.createNamedQuery(
+                    Admission.NAMEDQ_GET_BUSY_INTERVALS_BY_MEMBERSHIP_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_IDS, batch)
+                    .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationID)
+                    .setParameter(OrganisationPatterns.PARAM_START_TIME, from)
+                    .setParameter(OrganisationPatterns.PARAM_END_TIME, to)
+                    .getResultList();
+
+            rows.forEach(row -> calculator.addBusy((Long) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]));
+        }
+
+        // #3) Convert to transport form.
+        final FreeBusy toReturn = new FreeBusy(from, to);
+        calculator.getBusy().forEach((membershipID, intervals) -> {
+
+            final MemberBusyVO memberBusy = new MemberBusyVO(membershipID);
+            intervals.forEach(current -> memberBusy.getBusy().add(
+                    new TimeIntervalVO(current.getStart(), current.getEnd())));
+            toReturn.getMembers().add(memberBusy);
+        });
+        calculator.getFree().forEach(current -> toReturn.getFree().add(
+                new TimeIntervalVO(current.getStart(), current.getEnd())));
+
+        if (log.isDebugEnabled()) {
+            log.debug("Calculated free/busy for [" + sortedIDs.size() + "] memberships within [" + from + " - "
+                    + to + "], yielding [" + toReturn.getFree().size() + "] common free slots.");
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
     //
     // Private helpers
     //
 
+    private static void addFacetCount(
+            final SortedMap<ActivityFacetVO.Facet, SortedMap<String, Long>> facet2ValueCounts,
+            final ActivityFacetVO.Facet facet,
+            final String value,
+            final long count) {
+
+        final SortedMap<String, Long> valueCounts = facet2ValueCounts.get(facet);
+        if (valueCounts != null) {
+            valueCounts.merge(value, count, Long::sum);
+        }
+    }
+
+    private List<ActivityChangeListener> getActivityChangeListeners() {
+        return Stream.of(activityConflictService, upcomingActivityService, reminderService, eventCalendarService)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private boolean isCheckingConflicts() {
+        return activityConflictService != null
+                && activityConflictService.getConflictPolicy() != ActivityConflictService.ConflictPolicy.IGNORE;
+    }
+
+    private void handleConflicts(final ActivityConflicts conflicts, final String description) {
+
+        if (conflicts.getConflicts().isEmpty()) {
+            return;
+        }
+
+        final String conflictDescriptions = conflicts.getConflicts().stream()
+                .map(current -> "[" + current.getShortDesc() + "] ("
+                        + TimeFormat.YEAR_MONTH_DATE_HOURS_MINUTES.print(current.getStartTime()) + " - "
+                        + TimeFormat.YEAR_MONTH_DATE_HOURS_MINUTES.print(current.getEndTime()) + ")"
+                        + (current.getConflictType() == ActivityConflictVO.ConflictType.LOCATION
+                        ? " på samma plats"
+                        : " för medlemskap [" + current.getMembershipID() + "]"))
+                .collect(Collectors.joining(", "));
+
+        if (activityConflictService.getConflictPolicy() == ActivityConflictService.ConflictPolicy.REJECT) {
+            throw new IllegalArgumentException(description + " krockar med " + conflictDescriptions);
+        }
+
+        log.warn(description + " krockar med " + conflictDescriptions);
+    }
+
+    private static <Q extends Query> Q decorateCalendarFeedQuery(final Q query,
+                                                                 final ActivitySearchParameters parameters) {
+
+        // Copy the ID Lists, since padding them would alter the supplied parameters.
+        final List<Long> organisationIDs = parameters.getOrganisationIDs() == null
+                ? new ArrayList<>()
+                : new ArrayList<>(parameters.getOrganisationIDs());
+        final List<Long> membershipIDs = parameters.getMembershipIDs() == null
+                ? new ArrayList<>()
+                : new ArrayList<>(parameters.getMembershipIDs());
+
+        final int organisationIDsSize = AbstractJpaService.padAndGetSize(organisationIDs, 0L);
+        final int membershipIDsSize = AbstractJpaService.padAndGetSize(membershipIDs, 0L);
+
+        query.setParameter(OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS, organisationIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, organisationIDs)
+                .setParameter(OrganisationPatterns.PARAM_NUM_MEMBERSHIPIDS, membershipIDsSize)
+                .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_IDS, membershipIDs)
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, parameters.getStartPeriod())
+                .setParameter(OrganisationPatterns.PARAM_END_TIME, parameters.getEndPeriod());
+
+        // All Done.
+        return query;
+    }
+
     private static AdmissionVO createResponsibleAdmissionVoFor(final Membership activeMembership,
                                                                final ActivityVO activity) {
 
@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The difference between the existing and the desired Admissions of a single Activity, as calculated by a
+ * single sorted merge of the two admission sequences. Both sequences must be sorted in ascending order of
+ * Membership JPA ID, and the desired sequence must hold at most one AdmissionVO per Membership.
+ * The merge applies the following rules:</p>
+ * <ol>
+ * <li>A desired, admitted AdmissionVO without a corresponding existing Admission should be <strong>created</strong>.
+ * </li>
+ * <li>A desired, admitted AdmissionVO with a corresponding existing Admission should be <strong>modified</strong>.
+ * </li>
+ * <li>A desired, non-admitted AdmissionVO with a corresponding existing Admission should be
+ * <strong>deleted</strong> - unless the deletion would leave the Activity without anyone responsible, in which
+ * case the AdmissionVO is <strong>rejected</strong>. At least one responsible Admission always remains,
+ * even for Activities organized by a Group.</li>
+ * <li>Existing Admissions without a corresponding desired AdmissionVO, as well as desired non-admitted
+ * AdmissionVOs without a corresponding existing Admission, are ignored.</li>
+ * </ol>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class AdmissionDiff {
+
+    // Internal state
+    private final Activity activity;
+    private final List<AdmissionVO> toCreate = new ArrayList<>();
+    private final List<Map.Entry<Admission, AdmissionVO>> toModify = new ArrayList<>();
+    private final List<Admission> toDelete = new ArrayList<>();
+    private final List<AdmissionVO> rejected = new ArrayList<>();
+
+    private AdmissionDiff(final Activity activity) {
+        this.activity = activity;
+    }
+
+    /**
+     * Creates an AdmissionDiff by merging the supplied existing and desired admission sequences.
+     *
+     * @param activity  The non-null Activity to which all existing Admissions belong.
+     * @param existing  The existing Admissions of the Activity, sorted in ascending order of Membership JPA ID.
+     * @param desired   The desired AdmissionVOs for the Activity, sorted in ascending order of Membership JPA ID
+     *                  and holding at most one AdmissionVO per Membership.
+     * @return An AdmissionDiff holding the changes required to transform the existing into the desired state.
+     * @throws IllegalArgumentException if any of the sequences were not strictly sorted.
+     */
+    public static AdmissionDiff merge(final Activity activity,
+                                      final List<Admission> existing,
+                                      final List<AdmissionVO> desired) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(activity, "activity");
+        Validate.notNull(existing, "existing");
+        Validate.notNull(desired, "desired");
+
+        final AdmissionDiff toReturn = new AdmissionDiff(activity);
+
+        int numResponsible = 0;
+        for (Admission current : existing) {
+            if (current.isResponsible()) {
+                numResponsible++;
+            }
+        }
+
+        int existingIndex = 0;
+        int desiredIndex = 0;
+        long lastExistingID = Long.MIN_VALUE;
+        long lastDesiredID = Long.MIN_VALUE;
+
+        while (desiredIndex < desired.size()) {
+
+            final AdmissionVO desiredVO = desired.get(desiredIndex);
+            final long desiredID = desiredVO.getMembershipID();
+            Validate.isTrue(desiredIndex == 0 || desiredID > lastDesiredID,
+                    "Desired AdmissionVOs must be strictly sorted by membershipID. Found [" + desiredID
+                            + "] after [" + lastDesiredID + "]");
+
+            final Admission existingAdmission = existingIndex < existing.size() ? existing.get(existingIndex) : null;
+            final long existingID = existingAdmission == null
+                    ? Long.MAX_VALUE
+                    : existingAdmission.getAdmissionId().membershipId;
+
+            if (existingAdmission != null) {
+                Validate.isTrue(existingIndex == 0 || existingID > lastExistingID,
+                        "Existing Admissions must be strictly sorted by membershipID. Found [" + existingID
+                                + "] after [" + lastExistingID + "]");
+            }
+
+            if (existingID < desiredID) {
+
+                // Existing Admission not mentioned within the desired state; leave it be.
+                lastExistingID = existingID;
+                existingIndex++;
+                continue;
+            }
+
+            final boolean isAdmitted = desiredVO.getAdmitted() != null && desiredVO.getAdmitted();
+            if (existingID == desiredID) {
+
+                if (isAdmitted) {
+                    toReturn.toModify.add(new AbstractMap.SimpleImmutableEntry<>(existingAdmission, desiredVO));
+                } else if (!existingAdmission.isResponsible() || numResponsible > 1) {
+
+                    // At least one responsible remains after removing this Admission.
+                    if (existingAdmission.isResponsible()) {
+                        numResponsible--;
+                    }
+                    toReturn.toDelete.add(existingAdmission);
+                } else {
+                    toReturn.rejected.add(desiredVO);
+                }
+
+                lastExistingID = existingID;
+                existingIndex++;
+
+            } else if (isAdmitted) {
+
+                // No existing Admission for the desired Membership.
+                toReturn.toCreate.add(desiredVO);
+            }
+
+            lastDesiredID = desiredID;
+            desiredIndex++;
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * @return The Activity to which this AdmissionDiff pertains.
+     */
+    public Activity getActivity() {
+        return activity;
+    }
+
+    /**
+     * @return The AdmissionVOs for which new Admissions should be created.
+     */
+    public List<AdmissionVO> getToCreate() {
+        return Collections.unmodifiableList(toCreate);
+    }
+
+    /**
+     * @return The existing Admissions to modify, each paired with the AdmissionVO holding its desired state.
+     */
+    public List<Map.Entry<Admission, AdmissionVO>> getToModify() {
+        return Collections.unmodifiableList(toModify);
+    }
+
+    /**
+     * @return The existing Admissions which should be deleted.
+     */
+    public List<Admission> getToDelete() {
+        return Collections.unmodifiableList(toDelete);
+    }
+
+    /**
+     * @return The non-admitted AdmissionVOs whose corresponding Admissions could not be deleted, since
+     * the Activity would otherwise be left without anyone responsible.
+     */
+    public List<AdmissionVO> getRejected() {
+        return Collections.unmodifiableList(rejected);
+    }
+
+    /**
+     * @return {@code true} if this AdmissionDiff implies no change to the Admissions of its Activity.
+     */
+    public boolean isEmpty() {
+        return toCreate.isEmpty() && toModify.isEmpty() && toDelete.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AdmissionDiff [activity: " + activity.getId()
+                + ", toCreate: " + toCreate.size()
+                + ", toModify: " + toModify.size()
+                + ", toDelete: " + toDelete.size()
+                + ", rejected: " + rejected.size() + "]";
+    }
+}
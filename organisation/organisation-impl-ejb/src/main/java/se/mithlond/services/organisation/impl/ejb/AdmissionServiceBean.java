@@ -0,0 +1,369 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.ActivityConflictService;
+import se.mithlond.services.organisation.api.AdmissionService;
+import se.mithlond.services.organisation.api.UpcomingActivityService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.transaction.UserTransaction;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>AdmissionService Stateless EJB implementation, which serializes admissions per Activity in two layers:</p>
+ * <ol>
+ * <li>A striped, in-JVM lock keyed by Activity JPA ID is held for the full duration of the transaction,
+ * so that concurrent callers within this JVM queue up without consuming database connections.</li>
+ * <li>The Activity row is read using {@link LockModeType#PESSIMISTIC_WRITE}, so that callers within
+ * other JVMs (i.e. other cluster nodes) are also serialized.</li>
+ * </ol>
+ * <p>Since the in-JVM lock must be released only after the transaction has completed,
+ * this bean manages its own transactions. Other services adding Admissions within container-managed
+ * transactions acquire the same locks using {@link #lockForAdmissions(TransactionSynchronizationRegistry,
+ * EntityManager, Collection)}, and check the participant cap using {@link #hasCapacityFor(Activity, long, int)}.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Stateless
+@TransactionManagement(TransactionManagementType.BEAN)
+public class AdmissionServiceBean extends AbstractJpaService implements AdmissionService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(AdmissionServiceBean.class);
+
+    /**
+     * The number of lock stripes; must be a power of 2.
+     */
+    public static final int NUM_LOCK_STRIPES = 64;
+
+    /**
+     * The maximum number of seconds to wait for a lock stripe.
+     */
+    public static final long LOCK_TIMEOUT_SECONDS = 30;
+
+    // Key of the TransactionSynchronizationRegistry resource holding the stripes acquired by a transaction.
+    private static final String HELD_STRIPES_KEY = AdmissionServiceBean.class.getName() + ".heldStripes";
+
+    // Shared between all bean instances within the pool.
+    // Semaphores rather than ReentrantLocks, since the container may complete a transaction in another thread.
+    private static final Semaphore[] LOCK_STRIPES = new Semaphore[NUM_LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES.length; i++) {
+            LOCK_STRIPES[i] = new Semaphore(1, true);
+        }
+    }
+
+    @Resource
+    private UserTransaction userTransaction;
+
+    @EJB
+    private ActivityConflictService activityConflictService;
+
+    @EJB
+    private UpcomingActivityService upcomingActivityService;
+
+    /**
+     * Default constructor.
+     */
+    public AdmissionServiceBean() {
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param userTransaction The UserTransaction to inject.
+     */
+    public AdmissionServiceBean(final UserTransaction userTransaction) {
+
+        // Delegate
+        this();
+
+        // Assign internal state.
+        this.userTransaction = userTransaction;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AdmissionOutcome admit(final Membership activeMembership, final long activityID, final String note)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(activeMembership, "activeMembership");
+
+        final int stripe = getStripeIndex(activityID);
+        acquireStripe(stripe);
+        try {
+
+            userTransaction.begin();
+            final AdmissionOutcome toReturn = admitWithinTransaction(activeMembership, activityID, note);
+            userTransaction.commit();
+
+            if (log.isDebugEnabled()) {
+                log.debug("Admission of [" + activeMembership.getAlias() + "] to Activity [" + activityID
+                        + "] yielded " + toReturn);
+            }
+
+            // All Done.
+            return toReturn;
+
+        } catch (IllegalArgumentException e) {
+
+            rollbackQuietly();
+            throw e;
+
+        } catch (Exception e) {
+
+            rollbackQuietly();
+            throw new IllegalStateException("Could not admit [" + activeMembership.getAlias()
+                    + "] to Activity [" + activityID + "]", e);
+
+        } finally {
+            LOCK_STRIPES[stripe].release();
+        }
+    }
+
+    /**
+     * Retrieves the lock stripe for the supplied Activity JPA ID.
+     *
+     * @param activityID The JPA ID of an Activity.
+     * @return The lock guarding admissions to the Activity with the supplied JPA ID.
+     */
+    static Semaphore getLockFor(final long activityID) {
+        return LOCK_STRIPES[getStripeIndex(activityID)];
+    }
+
+    /**
+     * <p>Serializes the current (container-managed) transaction with all other transactions adding Admissions
+     * to any of the Activities with the supplied JPA IDs, including {@link #admit(Membership, long, String)}.</p>
+     * <ol>
+     * <li>The lock stripes of the Activities are acquired in index order, and held until the transaction
+     * completes. Stripes already held by the transaction are not acquired again. If the supplied registry is
+     * {@code null} or no transaction is active (i.e. outside of a container), no stripes are acquired.</li>
+     * <li>The Activities are read using {@link LockModeType#PESSIMISTIC_WRITE}, in JPA ID order.</li>
+     * </ol>
+     * <p>Admissions of the returned Activities counted after this method returns are therefore current until the
+     * transaction completes, and can be checked using {@link #hasCapacityFor(Activity, long, int)}.</p>
+     *
+     * @param registry      The TransactionSynchronizationRegistry of the container. May be {@code null}.
+     * @param entityManager The EntityManager used to read and lock the Activities.
+     * @param activityIDs   The JPA IDs of the Activities to which Admissions should be added.
+     * @return The locked Activities, sorted by JPA ID. Nonexistent Activities are not included.
+     * @throws IllegalStateException if a lock stripe could not be acquired within {@link #LOCK_TIMEOUT_SECONDS}.
+     */
+    static List<Activity> lockForAdmissions(final TransactionSynchronizationRegistry registry,
+                                            final EntityManager entityManager,
+                                            final Collection<Long> activityIDs) throws IllegalStateException {
+
+        // Check sanity
+        Validate.notNull(entityManager, "entityManager");
+        Validate.notNull(activityIDs, "activityIDs");
+
+        if (activityIDs.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // #1) Serialize with other transactions within this JVM.
+        if (registry != null && registry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION) {
+            acquireStripes(registry, activityIDs);
+        }
+
+        // #2) Serialize with other transactions within other JVMs.
+        return entityManager.createNamedQuery(Activity.NAMEDQ_GET_BY_IDS, Activity.class)
+                .setParameter(OrganisationPatterns.PARAM_IDS, new ArrayList<>(new TreeSet<>(activityIDs)))
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * Checks if the supplied Activity has room for the supplied number of additional participants.
+     * This check is only reliable for Activities locked using {@link #lockForAdmissions(
+     * TransactionSynchronizationRegistry, EntityManager, Collection)} (or not yet persisted).
+     *
+     * @param activity      The non-null Activity.
+     * @param numAdmissions The current number of Admissions to the Activity.
+     * @param numToAdmit    The number of Memberships to admit to the Activity.
+     * @return {@code true} if the Activity has no participant cap, or if the cap is not exceeded by admitting
+     * the supplied number of Memberships.
+     */
+    static boolean hasCapacityFor(final Activity activity, final long numAdmissions, final int numToAdmit) {
+
+        final Integer maxParticipants = activity.getMaxParticipants();
+        return maxParticipants == null || numAdmissions + numToAdmit <= maxParticipants;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private AdmissionOutcome admitWithinTransaction(final Membership activeMembership,
+                                                    final long activityID,
+                                                    final String note) {
+
+        // #1) Lock the Activity row, to serialize admissions across cluster nodes.
+        final Activity activity = entityManager.find(Activity.class, activityID, LockModeType.PESSIMISTIC_WRITE);
+        if (activity == null) {
+            throw new IllegalArgumentException("Hittade ingen aktivitet med ID [" + activityID + "]");
+        }
+
+        final LocalDateTime now = LocalDateTime.now(activity.getOwningOrganisation().getTimeZone().toZoneId());
+        final LocalDate lastAdmissionDate = activity.getLastAdmissionDate();
+        if (activity.isCancelled() || (lastAdmissionDate != null && now.toLocalDate().isAfter(lastAdmissionDate))) {
+            return AdmissionOutcome.CLOSED;
+        }
+
+        // #2) Count the current Admissions, and those of the activeMembership, in a single query.
+        final Object[] counts = (Object[]) entityManager.createNamedQuery(
+                Admission.NAMEDQ_GET_COUNT_BY_ACTIVITY_ID_AND_MEMBERSHIP_ID)
+                .setParameter(OrganisationPatterns.PARAM_ACTIVITY_ID, activityID)
+                .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_ID, activeMembership.getId())
+                .getSingleResult();
+
+        final long numAdmissions = counts[0] == null ? 0L : ((Number) counts[0]).longValue();
+        final long numOwnAdmissions = counts[1] == null ? 0L : ((Number) counts[1]).longValue();
+
+        if (numOwnAdmissions > 0) {
+            return AdmissionOutcome.ALREADY_ADMITTED;
+        }
+
+        if (!hasCapacityFor(activity, numAdmissions, 1)) {
+            return AdmissionOutcome.FULL;
+        }
+
+        // #3) Create the Admission.
+        final Membership membership = entityManager.find(Membership.class, activeMembership.getId());
+        if (membership == null) {
+            throw new IllegalArgumentException("Hittade inget medlemskap med ID [" + activeMembership.getId() + "]");
+        }
+
+        entityManager.persist(new Admission(activity, membership, now, now, note, false, null));
+        entityManager.flush();
+
+        Stream.of(activityConflictService, upcomingActivityService)
+                .filter(Objects::nonNull)
+                .forEach(listener -> listener.admissionsChanged(activity,
+                        Collections.singletonList(membership.getId()),
+                        Collections.emptyList()));
+
+        // All Done.
+        return AdmissionOutcome.ADMITTED;
+    }
+
+    private static int getStripeIndex(final long activityID) {
+
+        // Spread the bits of the ID, since consecutive IDs are the typical case.
+        final int hash = Long.hashCode(activityID) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (NUM_LOCK_STRIPES - 1);
+    }
+
+    private static void acquireStripes(final TransactionSynchronizationRegistry registry,
+                                       final Collection<Long> activityIDs) {
+
+        @SuppressWarnings("unchecked")
+        SortedSet<Integer> heldStripes = (SortedSet<Integer>) registry.getResource(HELD_STRIPES_KEY);
+        if (heldStripes == null) {
+
+            // Release all stripes acquired by this transaction when it completes, irrespective of its outcome.
+            final SortedSet<Integer> acquired = new TreeSet<>();
+            registry.putResource(HELD_STRIPES_KEY, acquired);
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Do nothing.
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    acquired.forEach(index -> LOCK_STRIPES[index].release());
+                    acquired.clear();
+                }
+            });
+
+            heldStripes = acquired;
+        }
+
+        // Acquire the missing stripes in index order, to avoid deadlocks with other transactions.
+        final SortedSet<Integer> toAcquire = new TreeSet<>();
+        activityIDs.stream().map(AdmissionServiceBean::getStripeIndex).forEach(toAcquire::add);
+        toAcquire.removeAll(heldStripes);
+
+        for (Integer current : toAcquire) {
+            acquireStripe(current);
+            heldStripes.add(current);
+        }
+    }
+
+    private static void acquireStripe(final int index) throws IllegalStateException {
+
+        try {
+            if (!LOCK_STRIPES[index].tryAcquire(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Could not acquire admission lock stripe [" + index
+                        + "] within [" + LOCK_TIMEOUT_SECONDS + "] seconds.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring admission lock stripe [" + index + "]", e);
+        }
+    }
+
+    private void rollbackQuietly() {
+
+        try {
+            if (userTransaction.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                userTransaction.rollback();
+            }
+        } catch (Exception e) {
+            log.error("Could not rollback transaction", e);
+        }
+    }
+}
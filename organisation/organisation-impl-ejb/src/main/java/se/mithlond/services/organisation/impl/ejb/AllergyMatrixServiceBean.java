@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.AllergyMatrixService;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.food.Allergy;
+import se.mithlond.services.organisation.model.food.AllergySeverity;
+import se.mithlond.services.organisation.model.food.Food;
+import se.mithlond.services.organisation.model.food.FoodPreference;
+import se.mithlond.services.organisation.model.localization.Localizable;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrix;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrixRowVO;
+import se.mithlond.services.organisation.model.transport.food.FoodPreferenceCountVO;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * <p>AllergyMatrixService Singleton EJB implementation, caching the most recently built AllergyMatrix of each
+ * Activity. Each lookup calculates the version of the AllergyMatrix by fingerprinting the JPA IDs and versions
+ * retrieved by four narrow queries (over the Activity and its admitted Memberships, the Allergies and
+ * FoodPreferences of those Memberships, and the names of the Foods within the Allergies), and rebuilds the
+ * AllergyMatrix only if the cached version differs.</p>
+ * <p>Lookups never block; concurrent lookups of a changed Activity may both build its AllergyMatrix,
+ * which is harmless since the results are equal.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AllergyMatrixServiceBean extends AbstractJpaService implements AllergyMatrixService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(AllergyMatrixServiceBean.class);
+
+    /**
+     * The maximum number of cached AllergyMatrix instances. The cache is cleared when exceeded.
+     */
+    public static final int MAX_CACHED_MATRICES = 256;
+
+    // Internal state
+    private final ConcurrentMap<Long, AllergyMatrix> activityID2Matrix = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAllergyMatrixVersion(final Long organisationJpaID, final long activityJpaID)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        // All Done.
+        return getAdmissionsVersion(organisationJpaID, activityJpaID)[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AllergyMatrix getAllergyMatrix(final Long organisationJpaID, final long activityJpaID)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        // #1) Is the cached AllergyMatrix still valid?
+        final String[] versionAndNumAdmitted = getAdmissionsVersion(organisationJpaID, activityJpaID);
+        final AllergyMatrix cached = activityID2Matrix.get(activityJpaID);
+        if (cached != null && cached.getVersion().equals(versionAndNumAdmitted[0])) {
+            return cached;
+        }
+
+        // #2) Build and cache the AllergyMatrix.
+        final AllergyMatrix toReturn = build(organisationJpaID,
+                activityJpaID,
+                versionAndNumAdmitted[0],
+                Integer.parseInt(versionAndNumAdmitted[1]));
+
+        if (activityID2Matrix.size() >= MAX_CACHED_MATRICES) {
+            activityID2Matrix.clear();
+        }
+        activityID2Matrix.put(activityJpaID, toReturn);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Built " + toReturn);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Calculates the version of the AllergyMatrix of the supplied Activity.
+     *
+     * @return An array holding [version, numAdmitted].
+     */
+    private String[] getAdmissionsVersion(final Long organisationJpaID, final long activityJpaID) {
+
+        // #1) Each row holds [activityVersion, organisationJpaID, membershipJpaID, membershipVersion].
+        final List<Object[]> admissions = getVersionRows(Activity.NAMEDQ_GET_ADMISSIONS_VERSION, activityJpaID);
+        if (admissions.isEmpty() || toLong(admissions.get(0)[1]) != organisationJpaID) {
+            throw new IllegalArgumentException("No Activity with JPA ID [" + activityJpaID
+                    + "] found within Organisation with JPA ID [" + organisationJpaID + "].");
+        }
+        final long numAdmitted = admissions.stream().filter(current -> current[2] != null).count();
+
+        // #2) The versions of the Allergies and FoodPreferences of the admitted Memberships,
+        //     and of the names of the Foods within the Allergies.
+        final List<Object[]> allergies = getVersionRows(
+                Allergy.NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID, activityJpaID);
+        final List<Object[]> foodNames = getVersionRows(
+                Allergy.NAMEDQ_GET_ADMITTED_FOOD_NAME_VERSION_BY_ACTIVITY_ID, activityJpaID);
+        final List<Object[]> preferences = getVersionRows(
+                FoodPreference.NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID, activityJpaID);
+
+        // #3) Fingerprint all (ordered) rows. Unlike sums of JPA IDs, the fingerprint changes whenever
+        //     any entity is replaced by another, or has its version incremented.
+        long fingerprint = VersionFingerprints.FNV_OFFSET_BASIS;
+        for (List<Object[]> current : Arrays.asList(admissions, allergies, foodNames, preferences)) {
+            fingerprint = VersionFingerprints.fingerprint(fingerprint, current);
+        }
+
+        final String version = LongStream.of(toLong(admissions.get(0)[0]),
+                numAdmitted,
+                allergies.size(),
+                foodNames.size(),
+                preferences.size(),
+                fingerprint)
+                .mapToObj(Long::toHexString)
+                .collect(Collectors.joining("-"));
+
+        // All Done.
+        return new String[]{version, "" + numAdmitted};
+    }
+
+    private List<Object[]> getVersionRows(final String namedQuery, final long activityJpaID) {
+        return entityManager.createNamedQuery(namedQuery, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ACTIVITY_ID, activityJpaID)
+                .getResultList();
+    }
+
+    private AllergyMatrix build(final Long organisationJpaID,
+                                final long activityJpaID,
+                                final String version,
+                                final int numAdmitted) {
+
+        final Locale locale = entityManager.find(Organisation.class, organisationJpaID).getLocale();
+        final AllergyMatrix toReturn = new AllergyMatrix(activityJpaID, version, numAdmitted);
+
+        // #1) Each row holds [Food, AllergySeverity, membershipJpaID, alias], ordered by Food and severity.
+        final List<Object[]> allergies = entityManager.createNamedQuery(
+                Allergy.NAMEDQ_GET_ADMITTED_BY_ACTIVITY_ID, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ACTIVITY_ID, activityJpaID)
+                .getResultList();
+
+        AllergyMatrixRowVO currentRow = null;
+        for (Object[] current : allergies) {
+
+            final Food food = (Food) current[0];
+            final AllergySeverity severity = (AllergySeverity) current[1];
+
+            if (currentRow == null || !currentRow.getFoodJpaID().equals(food.getId())) {
+                currentRow = new AllergyMatrixRowVO(food.getId(), getText(food.getLocalizedFoodName(), locale));
+                toReturn.getRows().add(currentRow);
+            }
+            currentRow.getCell(severity.getSeveritySortOrder(), getText(severity.getShortDescription(), locale))
+                    .add((Long) current[2], (String) current[3]);
+        }
+
+        final Collator collator = Collator.getInstance(locale);
+        toReturn.getRows().forEach(AllergyMatrixRowVO::updateTotal);
+        toReturn.getRows().sort(Comparator.comparing(AllergyMatrixRowVO::getFoodName, collator));
+
+        // #2) Each row holds [categoryID, count] of a FoodPreference.
+        entityManager.createNamedQuery(FoodPreference.NAMEDQ_GET_ADMITTED_COUNTS_BY_ACTIVITY_ID, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ACTIVITY_ID, activityJpaID)
+                .getResultList()
+                .forEach(current -> toReturn.getFoodPreferences().add(
+                        new FoodPreferenceCountVO((String) current[0], (int) toLong(current[1]))));
+
+        // All Done.
+        return toReturn;
+    }
+
+    private static String getText(final Localizable texts, final Locale locale) {
+
+        final String toReturn = texts.getText(locale, Localizable.DEFAULT_CLASSIFIER);
+        return toReturn == null ? texts.getText() : toReturn;
+    }
+
+    private static long toLong(final Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+}
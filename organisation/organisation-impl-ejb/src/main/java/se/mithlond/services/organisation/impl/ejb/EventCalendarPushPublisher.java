@@ -0,0 +1,296 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.EventCalendarService;
+import se.mithlond.services.shared.spi.algorithms.Surroundings;
+import se.mithlond.services.shared.spi.algorithms.messages.CoalescingBuffer;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Singleton EJB which coalesces Activity change notifications per (organisation, EventCalendar) and publishes
+ * them as compact JMS messages to the {@link EventCalendarService#CALENDAR_REQUEST} Topic. Changes are released
+ * when no further change has been received within the debounce window, or at the latest when the first pending
+ * change has waited for the max latency. Hence, a bulk edit of many Activities yields a single message per
+ * EventCalendar instead of a message storm.</p>
+ * <p>Each published message has the {@link #MESSAGE_TYPE} property {@link #ACTIVITIES_CHANGED}, and a text body
+ * listing the changed Activities as comma-separated {@code activityID:version} pairs, sorted by activityID.
+ * Pending changes are published when this bean is destroyed, and changes which could not be published are
+ * retained for the next attempt (i.e. at-least-once delivery) - or logged, if this bean is being destroyed.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class EventCalendarPushPublisher {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(EventCalendarPushPublisher.class);
+
+    /**
+     * System property holding the debounce window in milliseconds.
+     */
+    public static final String DEBOUNCE_MILLIS_PROPERTY = "eventcalendar_debounce_millis";
+
+    /**
+     * System property holding the max latency in milliseconds.
+     */
+    public static final String MAX_LATENCY_MILLIS_PROPERTY = "eventcalendar_max_latency_millis";
+
+    /**
+     * The default debounce window, used unless the {@link #DEBOUNCE_MILLIS_PROPERTY} is set.
+     */
+    public static final Duration DEFAULT_DEBOUNCE_WINDOW = Duration.ofSeconds(5);
+
+    /**
+     * The default max latency, used unless the {@link #MAX_LATENCY_MILLIS_PROPERTY} is set.
+     */
+    public static final Duration DEFAULT_MAX_LATENCY = Duration.ofSeconds(30);
+
+    /**
+     * The JMS message property holding the type of message.
+     */
+    public static final String MESSAGE_TYPE = "message_type";
+
+    /**
+     * The {@link #MESSAGE_TYPE} of messages holding coalesced Activity changes.
+     */
+    public static final String ACTIVITIES_CHANGED = "activities_changed";
+
+    // The separator between the organisation name and calendar identifier within buffer keys.
+    private static final char KEY_SEPARATOR = '\n';
+
+    /**
+     * The JavaEE-injected JMSContext.
+     */
+    @Inject
+    private JMSContext jmsContext;
+
+    /**
+     * The JMS Topic used to send EventCalendar requests.
+     */
+    @Resource(mappedName = EventCalendarService.CALENDAR_REQUEST)
+    private Topic topic;
+
+    // Internal state
+    private final CoalescingBuffer<String> buffer;
+
+    /**
+     * Default constructor, reading the debounce window and max latency from system properties.
+     */
+    public EventCalendarPushPublisher() {
+        this(new CoalescingBuffer<>(
+                getDuration(DEBOUNCE_MILLIS_PROPERTY, DEFAULT_DEBOUNCE_WINDOW),
+                getDuration(MAX_LATENCY_MILLIS_PROPERTY, DEFAULT_MAX_LATENCY)));
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param buffer The CoalescingBuffer used to coalesce changes.
+     */
+    public EventCalendarPushPublisher(final CoalescingBuffer<String> buffer) {
+        this.buffer = Validate.notNull(buffer, "buffer");
+    }
+
+    /**
+     * Enqueues changed Activities for publishing to the supplied EventCalendar.
+     *
+     * @param owningOrganisationName The name of the Organisation owning the EventCalendar.
+     * @param calendarIdentifier     The identifier of the EventCalendar.
+     * @param activityID2Version     A Map relating the JPA IDs of changed Activities to their versions.
+     */
+    public void enqueue(final String owningOrganisationName,
+                        final String calendarIdentifier,
+                        final Map<Long, Long> activityID2Version) {
+
+        // Check sanity
+        Validate.notEmpty(owningOrganisationName, "owningOrganisationName");
+        Validate.notEmpty(calendarIdentifier, "calendarIdentifier");
+        Validate.notNull(activityID2Version, "activityID2Version");
+
+        final String key = owningOrganisationName + KEY_SEPARATOR + calendarIdentifier;
+        final LocalDateTime now = LocalDateTime.now();
+        activityID2Version.forEach((id, version) -> buffer.add(key, id, version, now));
+    }
+
+    /**
+     * Timer callback, publishing the changes of all EventCalendars which are due.
+     * Runs every 5 seconds, so changes are pushed at most 5 seconds later than they become due.
+     */
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    public void publishDue() {
+        publish(buffer.drainDue(LocalDateTime.now()), true);
+    }
+
+    /**
+     * Publishes all pending changes before this bean is destroyed. Changes which could not be published
+     * are logged, since they cannot be retained.
+     */
+    @PreDestroy
+    public void publishAll() {
+
+        publish(buffer.drainAll(), false).forEach((key, activityID2Version) -> {
+
+            final int separatorIndex = key.indexOf(KEY_SEPARATOR);
+            log.warn("Dropping [" + activityID2Version.size() + "] unpublished Activity changes for calendar ["
+                    + key.substring(separatorIndex + 1) + "] within [" + key.substring(0, separatorIndex)
+                    + "]: " + toMessageBody(activityID2Version));
+        });
+
+        if (log.isInfoEnabled()) {
+            log.info("Shutting down " + buffer + ". Coalescing saved [" + getNumberOfMessagesSaved()
+                    + "] JMS messages.");
+        }
+    }
+
+    /**
+     * @return The number of Activity change notifications received.
+     */
+    public long getNumberOfChangesReceived() {
+        return buffer.getNumberOfChangesReceived();
+    }
+
+    /**
+     * @return The number of JMS messages published.
+     */
+    public long getNumberOfMessagesSent() {
+        return buffer.getNumberOfBatchesReleased();
+    }
+
+    /**
+     * @return The number of JMS messages saved by coalescing Activity change notifications.
+     */
+    public long getNumberOfMessagesSaved() {
+        return buffer.getNumberOfMessagesSaved();
+    }
+
+    /**
+     * Converts the supplied changes to the compact text body of a published message.
+     *
+     * @param activityID2Version A SortedMap relating the JPA IDs of changed Activities to their versions.
+     * @return A comma-separated String of {@code activityID:version} pairs.
+     */
+    public static String toMessageBody(final SortedMap<Long, Long> activityID2Version) {
+        return activityID2Version.entrySet()
+                .stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Parses the compact text body of a published message.
+     *
+     * @param messageBody A comma-separated String of {@code activityID:version} pairs.
+     * @return A SortedMap relating the JPA IDs of changed Activities to their versions.
+     */
+    public static SortedMap<Long, Long> parseMessageBody(final String messageBody) {
+
+        final SortedMap<Long, Long> toReturn = new TreeMap<>();
+        if (messageBody != null && !messageBody.isEmpty()) {
+            for (String current : messageBody.split(",")) {
+
+                final int separatorIndex = current.indexOf(':');
+                toReturn.put(Long.parseLong(current.substring(0, separatorIndex).trim()),
+                        Long.parseLong(current.substring(separatorIndex + 1).trim()));
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private SortedMap<String, SortedMap<Long, Long>> publish(final SortedMap<String, SortedMap<Long, Long>> toPublish,
+                                                             final boolean restoreOnFailure) {
+
+        final SortedMap<String, SortedMap<Long, Long>> failed = new TreeMap<>();
+        toPublish.forEach((key, activityID2Version) -> {
+
+            final int separatorIndex = key.indexOf(KEY_SEPARATOR);
+            final String organisationName = key.substring(0, separatorIndex);
+            final String calendarIdentifier = key.substring(separatorIndex + 1);
+
+            try {
+
+                // Create a compact JMS message holding all changes.
+                final TextMessage msg = jmsContext.createTextMessage(toMessageBody(activityID2Version));
+                msg.setStringProperty(MESSAGE_TYPE, ACTIVITIES_CHANGED);
+                msg.setStringProperty("organisation_name", organisationName);
+                msg.setStringProperty("calendar_identifier", calendarIdentifier);
+                msg.setIntProperty("activity_count", activityID2Version.size());
+
+                // Send the message.
+                jmsContext.createProducer().send(topic, msg);
+
+            } catch (JMSException | JMSRuntimeException e) {
+                log.error("Could not publish [" + activityID2Version.size() + "] Activity changes for calendar ["
+                        + calendarIdentifier + "] within [" + organisationName + "]", e);
+                failed.put(key, activityID2Version);
+            }
+        });
+
+        if (!failed.isEmpty() && restoreOnFailure) {
+            buffer.restore(failed, LocalDateTime.now());
+        }
+
+        if (log.isDebugEnabled() && !toPublish.isEmpty()) {
+            log.debug("Published [" + (toPublish.size() - failed.size()) + "/" + toPublish.size()
+                    + "] coalesced EventCalendar messages. " + buffer);
+        }
+
+        // All Done.
+        return failed;
+    }
+
+    private static Duration getDuration(final String propertyName, final Duration defaultValue) {
+
+        final String value = Surroundings.getProperty(propertyName);
+        return value == null || value.trim().isEmpty()
+                ? defaultValue
+                : Duration.ofMillis(Long.parseLong(value.trim()));
+    }
+}
@@ -25,7 +25,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.organisation.api.EventCalendarService;
+import se.mithlond.services.organisation.api.persistence.CommonPersistenceTasks;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
 import se.mithlond.services.organisation.model.activity.EventCalendar;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.shared.spi.algorithms.Deployment;
@@ -36,20 +38,28 @@ import se.mithlond.services.shared.spi.jpa.JpaUtilities;
 
 import javax.annotation.Resource;
 import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.jms.JMSContext;
 import javax.jms.JMSException;
 import javax.jms.TextMessage;
 import javax.jms.Topic;
+import javax.transaction.TransactionSynchronizationRegistry;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * EventCalendarService Stateless EJB implementation.
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
+@Stateless
 public class EventCalendarServiceBean extends AbstractJpaService implements EventCalendarService {
 
     // Our Logger
@@ -73,6 +83,15 @@ public class EventCalendarServiceBean extends AbstractJpaService implements Even
     @Resource(mappedName = EventCalendarService.CALENDAR_REQUEST)
     private Topic queue;
 
+    /**
+     * The Singleton coalescing Activity changes before pushing them to EventCalendars.
+     */
+    @EJB
+    private EventCalendarPushPublisher pushPublisher;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
     /**
      * {@inheritDoc}
      */
@@ -83,25 +102,63 @@ public class EventCalendarServiceBean extends AbstractJpaService implements Even
         Validate.notEmpty(organisationName, "organisationName");
         Validate.notNull(activeMembership, "activeMembership");
 
-        // Find the environment identifier (i.e. name).
-        final String environment = Surroundings.getProperty(ENVIRONMENT_OVERRIDE_PROPERTY) == null
-                ? Deployment.getDeploymentType()
-                : Surroundings.getProperty(ENVIRONMENT_OVERRIDE_PROPERTY);
+        // Find the EventCalendars for the current environment.
+        return getCalendarsInCurrentEnvironment(organisationName);
+    }
 
-        // Find the EventCalendars for the supplied environment.
-        final List<EventCalendar> toReturn = new ArrayList<>();
-        toReturn.addAll(JpaUtilities.findEntities(
-                EventCalendar.class,
-                EventCalendar.NAMEDQ_GET_BY_ORGANISATION_AND_RUNTIME,
-                true,
-                entityManager,
-                aQuery -> {
-                    aQuery.setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, organisationName);
-                    aQuery.setParameter(OrganisationPatterns.PARAM_ENVIRONMENT_ID, environment);
-                }));
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueueActivityChanges(final String owningOrganisationName,
+                                       final Map<Long, Long> activityID2Version) {
 
-        // All Done.
-        return toReturn;
+        // Check sanity
+        Validate.notEmpty(owningOrganisationName, "owningOrganisationName");
+        Validate.notNull(activityID2Version, "activityID2Version");
+
+        if (!activityID2Version.isEmpty()) {
+
+            // Coalesce the changes for each EventCalendar of the organisation.
+            getCalendarsInCurrentEnvironment(owningOrganisationName).forEach(calendar -> pushPublisher.enqueue(
+                    owningOrganisationName,
+                    calendar.getCalendarIdentifier(),
+                    activityID2Version));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesChanged(final List<Activity> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        enqueueAfterCommit(changed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesRemoved(final List<Activity> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        enqueueAfterCommit(removed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void admissionsChanged(final Activity activity,
+                                  final Collection<Long> admittedMembershipIDs,
+                                  final Collection<Long> revokedMembershipIDs) {
+        // Admissions are not part of the pushed events. Do nothing.
     }
 
     /**
@@ -145,4 +202,55 @@ public class EventCalendarServiceBean extends AbstractJpaService implements Even
             throw new IllegalArgumentException("Could not send JMS TextMessage", e);
         }
     }
+
+    //
+    // Private helpers
+    //
+
+    private void enqueueAfterCommit(final List<Activity> activities) {
+
+        if (activities.isEmpty()) {
+            return;
+        }
+
+        // Snapshot the (flushed) IDs and versions, grouped by owning organisation.
+        final SortedMap<String, SortedMap<Long, Long>> orgName2ActivityVersions = new TreeMap<>();
+        activities.forEach(current -> orgName2ActivityVersions
+                .computeIfAbsent(current.getOwningOrganisation().getOrganisationName(), k -> new TreeMap<>())
+                .put(current.getId(), current.getVersion()));
+
+        // Resolve the EventCalendars within the transaction, as no EntityManager is usable after commit.
+        final List<Runnable> enqueueTasks = new ArrayList<>();
+        orgName2ActivityVersions.forEach((orgName, activityID2Version) -> getCalendarsInCurrentEnvironment(orgName)
+                .stream()
+                .map(EventCalendar::getCalendarIdentifier)
+                .forEach(calendarIdentifier -> enqueueTasks.add(
+                        () -> pushPublisher.enqueue(orgName, calendarIdentifier, activityID2Version))));
+
+        // Coalesced by the push publisher, so a bulk change results in a single push per calendar.
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, enqueueTasks);
+    }
+
+    private List<EventCalendar> getCalendarsInCurrentEnvironment(final String organisationName) {
+
+        // Find the environment identifier (i.e. name).
+        final String environment = Surroundings.getProperty(ENVIRONMENT_OVERRIDE_PROPERTY) == null
+                ? Deployment.getDeploymentType()
+                : Surroundings.getProperty(ENVIRONMENT_OVERRIDE_PROPERTY);
+
+        // Find the EventCalendars for the supplied environment.
+        final List<EventCalendar> toReturn = new ArrayList<>();
+        toReturn.addAll(JpaUtilities.findEntities(
+                EventCalendar.class,
+                EventCalendar.NAMEDQ_GET_BY_ORGANISATION_AND_RUNTIME,
+                true,
+                entityManager,
+                aQuery -> {
+                    aQuery.setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, organisationName);
+                    aQuery.setParameter(OrganisationPatterns.PARAM_ENVIRONMENT_ID, environment);
+                }));
+
+        // All Done.
+        return toReturn;
+    }
 }
@@ -44,6 +44,9 @@ import se.mithlond.services.organisation.model.transport.food.AllergyVO;
 import se.mithlond.services.organisation.model.transport.food.FoodPreferenceVO;
 import se.mithlond.services.organisation.model.transport.user.UserVO;
 import se.mithlond.services.organisation.model.user.User;
+import se.mithlond.services.shared.spi.algorithms.diff.DiffHolder;
+import se.mithlond.services.shared.spi.algorithms.diff.KeyedDiffHolder;
+import se.mithlond.services.shared.spi.algorithms.diff.SortedMergeDiff;
 import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 
 import javax.ejb.EJB;
@@ -51,11 +54,12 @@ import javax.ejb.Stateless;
 import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotNull;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -677,81 +681,58 @@ public class FoodAndAllergyServiceBean extends AbstractJpaService implements Foo
 
         final Map<String, AllergySeverity> localizedSeverityMap = severities.stream()
                 .collect(Collectors.toMap(as -> as.getShortDescription().getText(locale, "Default"), as -> as));
-        final Map<String, Allergy> existingAllergyMap = existingAllergies.stream()
-                .collect(Collectors.toMap(a -> "" + a.getUser().getId() + "_" + a.getFood().getId(), a -> a));
-        final Map<String, AllergyVO> targetVoMap = targetState.stream()
-                .collect(Collectors.toMap(a -> "" + a.getUserID() + "_" + a.getFoodJpaID(), a -> a));
 
-        // Collect all existing Allergies which should be removed from the database,
-        // and the received AllergyVOs which should be converted to Allergy objects and persisted.
-        final Set<Allergy> toRemove = new TreeSet<>();
-        final Set<Allergy> toAdd = new TreeSet<>();
-        final Set<Allergy> toUpdate = new TreeSet<>();
+        // Merge the existing and desired Allergies of the user by Food JPA ID.
+        // Allergies with unchanged severity and note are left as they are.
+        final List<KeyedDiffHolder<Long, Allergy, AllergyVO>> diff = SortedMergeDiff.diff(
+                existingAllergies, a -> a.getFood().getId(),
+                targetState, AllergyVO::getFoodJpaID,
+                (existing, desired) -> Objects.equals(existing.getNote(), desired.getNote())
+                        && Objects.equals(existing.getSeverity(), localizedSeverityMap.get(desired.getSeverity())));
 
-        final Map<Long, Food> id2FoodMap = getAllFoods()
-                .stream()
-                .collect(Collectors.toMap(NazgulEntity::getId, f -> f));
-
-        targetVoMap.entrySet().stream()
-                .filter(e -> !existingAllergyMap.containsKey(e.getKey()))
-                .map(e -> {
+        if (log.isDebugEnabled()) {
+            log.debug(userLogMsg + " about to synchronize [" + diff.size() + "] Allergies: " + diff
+                    .stream()
+                    .map(d -> d.getModification() + " [" + d.getActual()
+                            .map(a -> a.getFood().getLocalizedFoodName().getText())
+                            .orElse("Food " + d.getKey()) + "]")
+                    .reduce((l, r) -> l + "\n " + r).orElse("<none>"));
+        }
 
-                    final AllergyVO currentVO = e.getValue();
+        final Map<Long, Food> id2FoodMap = new HashMap<>();
+        for (KeyedDiffHolder<Long, Allergy, AllergyVO> current : diff) {
 
-                    // All Done.
-                    return new Allergy(id2FoodMap.get(currentVO.getFoodJpaID()),
-                            user,
-                            localizedSeverityMap.get(currentVO.getSeverity()),
-                            currentVO.getNote());
+            switch (current.getModification()) {
+                case CREATED:
 
-                }).forEach(toAdd::add);
+                    if (id2FoodMap.isEmpty()) {
+                        getAllFoods().forEach(f -> id2FoodMap.put(f.getId(), f));
+                    }
 
-        existingAllergyMap.entrySet().stream()
-                .filter(a -> !targetVoMap.containsKey(a.getKey()))
-                .map(Map.Entry::getValue)
-                .forEach(toRemove::add);
+                    final AllergyVO toCreate = current.getComparison().get();
+                    entityManager.persist(new Allergy(id2FoodMap.get(toCreate.getFoodJpaID()),
+                            user,
+                            localizedSeverityMap.get(toCreate.getSeverity()),
+                            toCreate.getNote()));
+                    break;
 
-        existingAllergyMap.entrySet().stream()
-                .filter(a -> targetVoMap.containsKey(a.getKey()))
-                .map(Map.Entry::getValue)
-                .forEach(toUpdate::add);
+                case MODIFIED:
 
-        if (log.isDebugEnabled()) {
+                    // Update all applicable properties
+                    final Allergy toUpdate = current.getActual().get();
+                    final AllergyVO desiredState = current.getComparison().get();
+                    toUpdate.setSeverity(localizedSeverityMap.get(desiredState.getSeverity()));
+                    toUpdate.setNote(desiredState.getNote());
+                    break;
 
-            log.debug(userLogMsg + " about to REMOVE [" + toRemove.size() + "] Allergies: " + toRemove
-                    .stream()
-                    .map(a -> "[" + a.getFood().getLocalizedFoodName().getText() + " :: "
-                            + a.getSeverity().getShortDescription().getText() + "]")
-                    .sorted()
-                    .reduce((l, r) -> l + "\n " + r).orElse("<none>"));
+                case DELETED:
+                    entityManager.remove(current.getActual().get());
+                    break;
 
-            log.debug(userLogMsg + " about to ADD [" + toAdd.size() + "] Allergies: " + toAdd
-                    .stream()
-                    .map(a -> "[" + a.getFood().getLocalizedFoodName().getText() + " :: "
-                            + a.getSeverity().getShortDescription().getText() + "]")
-                    .sorted()
-                    .reduce((l, r) -> l + "\n " + r).orElse("<none>"));
-
-            log.debug(userLogMsg + " about to UPDATE [" + toUpdate.size() + "] Allergies: " + toUpdate
-                    .stream()
-                    .map(a -> "[" + a.getFood().getLocalizedFoodName().getText() + " :: "
-                            + a.getSeverity().getShortDescription().getText() + "]")
-                    .sorted()
-                    .reduce((l, r) -> l + "\n " + r).orElse("<none>"));
+                default:
+                    break;
+            }
         }
-
-        // Update the database state
-        toAdd.forEach(a -> entityManager.persist(a));
-        toRemove.forEach(a -> entityManager.remove(a));
-        toUpdate.forEach(a -> {
-
-            final String key = "" + a.getUser().getId() + "_" + a.getFood().getId();
-            final AllergyVO desiredState = targetVoMap.get(key);
-
-            // Update all applicable properties
-            a.setSeverity(localizedSeverityMap.get(desiredState.getSeverity()));
-            a.setNote(desiredState.getNote());
-        });
     }
 
     private void persistFoodPreferencesFor(final User user,
@@ -765,9 +746,6 @@ public class FoodAndAllergyServiceBean extends AbstractJpaService implements Foo
                 FoodPreference.NAMEDQ_GET_BY_USERID, FoodPreference.class)
                 .setParameter(OrganisationPatterns.PARAM_USER_ID, user.getId())
                 .getResultList();
-        final Map<String, FoodPreference> catId2FoodPrefMap = existingFoodPrefs
-                .stream()
-                .collect(Collectors.toMap(fp -> fp.getCategory().getCategoryID(), fp -> fp));
 
         // Check sanity:
         // Should we remove all Food Preferences?
@@ -775,52 +753,45 @@ public class FoodAndAllergyServiceBean extends AbstractJpaService implements Foo
             log.info("As instructed, removing all Food Preferences for " + userLogMsg);
         }
 
-        // Collect all existing FoodPreferences which should be removed from the database,
-        // and the received FoodPreferenceVOs which should be converted to FoodPreferences and
-        // persisted.
-        final Set<FoodPreference> toRemove = new TreeSet<>();
-        final Set<FoodPreferenceVO> toAdd = new TreeSet<>();
+        // Merge the existing and desired FoodPreferences by (case-insensitive) Category ID.
+        // FoodPreferences hold no state beyond their Category, so none are modified.
+        final Set<String> desiredCategoryIDs = new HashSet<>();
+        final List<FoodPreferenceVO> desiredFoodPrefs = targetState.stream()
+                .filter(fp -> desiredCategoryIDs.add(getCategoryKey(fp.getPreference())))
+                .collect(Collectors.toList());
 
-        targetState.stream().filter(fp -> !catId2FoodPrefMap.containsKey(fp.getPreference())).forEach(toAdd::add);
-        existingFoodPrefs.stream()
-                .filter(pref -> isAbsentFromTargetState(pref, targetState))
-                .forEach(toRemove::add);
+        final List<KeyedDiffHolder<String, FoodPreference, FoodPreferenceVO>> diff = SortedMergeDiff.diff(
+                existingFoodPrefs, fp -> getCategoryKey(fp.getCategory().getCategoryID()),
+                desiredFoodPrefs, fp -> getCategoryKey(fp.getPreference()),
+                (existing, desired) -> true);
 
         if (log.isDebugEnabled()) {
 
             log.debug("About to update FoodPreferences in Database for " + userLogMsg
-
-                    + ".\nTo Remove: " + toRemove.stream()
-                    .map(pref -> pref.getCategory().getCategoryID())
-                    .sorted()
+                    + ".\nChanges: " + diff.stream()
+                    .map(KeyedDiffHolder::toString)
                     .reduce((l, r) -> l + ", " + r)
                     .orElse("<none>")
+                    + "\nTargetState: " + targetState);
+        }
+
+        // Update the database state.
+        for (KeyedDiffHolder<String, FoodPreference, FoodPreferenceVO> current : diff) {
 
-                    + "\nTo Add: " + toAdd
-                    + "\nTargetState: " + targetState
+            if (current.getModification() == DiffHolder.Modification.DELETED) {
+                entityManager.remove(current.getActual().get());
+            } else if (current.getModification() == DiffHolder.Modification.CREATED) {
 
-                    + "\nExisting: " + existingFoodPrefs.stream()
-                    .map(fp -> fp.getCategory().getCategoryID())
-                    .sorted()
-                    .reduce((l, r) -> l + ", " + r)
-                    .orElse("<none>"));
+                foodPreferenceCategories.stream()
+                        .filter(c -> getCategoryKey(c.getCategoryID()).equals(current.getKey()))
+                        .findFirst()
+                        .ifPresent(theCategory -> entityManager.persist(new FoodPreference(theCategory, user)));
+            }
         }
+    }
 
-        // Update the database state.
-        toRemove.forEach(pref -> entityManager.remove(pref));
-        toAdd.stream()
-                .map(fp -> {
-
-                    final Category theCategory = foodPreferenceCategories
-                            .stream()
-                            .filter(c -> c.getCategoryID().equalsIgnoreCase(fp.getPreference()))
-                            .findFirst()
-                            .orElse(null);
-
-                    return theCategory != null ? new FoodPreference(theCategory, user) : null;
-                })
-                .filter(Objects::nonNull)
-                .forEach(pref -> entityManager.persist(pref));
+    private static String getCategoryKey(final String categoryID) {
+        return categoryID.toLowerCase(Locale.ENGLISH);
     }
 
     private boolean removeAllPreferences(final Set<FoodPreferenceVO> targetState) {
@@ -828,30 +799,4 @@ public class FoodAndAllergyServiceBean extends AbstractJpaService implements Foo
                 && (targetState.size() == 1
                 && targetState.iterator().next().getPreference().equalsIgnoreCase(NO_PREFERENCES_VALUE));
     }
-
-    private boolean isAbsentFromTargetState(final FoodPreference aPref, final Set<FoodPreferenceVO> targetState) {
-
-        final String toMatch = aPref.getCategory().getCategoryID();
-        final Optional<String> foundMatchingCategoryIDs = targetState.stream()
-                .map(FoodPreferenceVO::getPreference)
-                .filter(catID -> {
-
-                    final boolean isMatch = catID.equalsIgnoreCase(toMatch);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Comparing foodPreference Category [" + toMatch + "] with received VO ["
-                                + catID + "]: " + isMatch);
-                    }
-
-                    return isMatch;
-                })
-                .findFirst();
-
-        final boolean toReturn = !foundMatchingCategoryIDs.isPresent();
-
-        if (log.isDebugEnabled()) {
-            log.debug("... isAbsentFromTargetState: " + toReturn);
-        }
-
-        return toReturn;
-    }
 }
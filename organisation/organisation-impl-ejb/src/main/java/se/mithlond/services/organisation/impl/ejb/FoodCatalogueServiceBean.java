@@ -0,0 +1,309 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.FoodAndAllergyService;
+import se.mithlond.services.organisation.api.FoodCatalogueService;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.food.Food;
+import se.mithlond.services.organisation.model.transport.food.FoodVO;
+import se.mithlond.services.organisation.model.transport.food.Foods;
+import se.mithlond.services.shared.spi.algorithms.search.BKTree;
+import se.mithlond.services.shared.spi.algorithms.search.PrefixTrie;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>FoodCatalogueService Singleton EJB implementation, holding one immutable Catalogue per Locale. Each
+ * Catalogue holds a shallow-detail Foods snapshot, along with a {@link PrefixTrie} and a {@link BKTree} over
+ * the words of the localized Food names and the names of their Categories. Catalogues are built lazily from
+ * the database, and all Catalogues are discarded when the version of the Food catalogue changes.</p>
+ * <p>Since Foods are rarely changed (and not by any service within this application), the version is
+ * re-calculated at most once per version check interval. Searching never blocks, since the search structures
+ * of each Catalogue are frozen once built; building Catalogues and checking the version are serialized.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class FoodCatalogueServiceBean extends AbstractJpaService implements FoodCatalogueService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(FoodCatalogueServiceBean.class);
+
+    /**
+     * The default number of milliseconds between version checks of the Food catalogue.
+     */
+    public static final long DEFAULT_VERSION_CHECK_INTERVAL_MILLIS = 30_000L;
+
+    @EJB
+    private FoodAndAllergyService foodAndAllergyService;
+
+    // Internal state
+    private final Object lock = new Object();
+    private final Map<Locale, Catalogue> catalogues = new ConcurrentHashMap<>();
+    private final long versionCheckIntervalMillis;
+    private volatile String catalogueVersion;
+    private volatile long versionCheckedAt;
+
+    /**
+     * JEE-compliant constructor.
+     */
+    public FoodCatalogueServiceBean() {
+        this.versionCheckIntervalMillis = DEFAULT_VERSION_CHECK_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param foodAndAllergyService      The FoodAndAllergyService used to read all Foods and FoodPreferences.
+     * @param versionCheckIntervalMillis The number of milliseconds between version checks of the Food catalogue.
+     *                                   Zero implies that the version is checked on each call.
+     */
+    public FoodCatalogueServiceBean(final FoodAndAllergyService foodAndAllergyService,
+                                    final long versionCheckIntervalMillis) {
+
+        // Check sanity
+        Validate.isTrue(versionCheckIntervalMillis >= 0, "Cannot handle negative 'versionCheckIntervalMillis'.");
+
+        // Assign internal state
+        this.foodAndAllergyService = foodAndAllergyService;
+        this.versionCheckIntervalMillis = versionCheckIntervalMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCatalogueVersion() {
+
+        final long now = System.currentTimeMillis();
+        if (catalogueVersion == null || now - versionCheckedAt >= versionCheckIntervalMillis) {
+            synchronized (lock) {
+                if (catalogueVersion == null || now - versionCheckedAt >= versionCheckIntervalMillis) {
+
+                    final String currentVersion = calculateCatalogueVersion();
+                    if (!currentVersion.equals(catalogueVersion)) {
+
+                        if (catalogueVersion != null && log.isInfoEnabled()) {
+                            log.info("Food catalogue version changed from [" + catalogueVersion + "] to ["
+                                    + currentVersion + "]. Discarding " + catalogues.size() + " catalogue(s).");
+                        }
+
+                        catalogues.clear();
+                        catalogueVersion = currentVersion;
+                    }
+                    versionCheckedAt = now;
+                }
+            }
+        }
+
+        // All Done.
+        return catalogueVersion;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Foods getFoods(final Locale locale) {
+        return getCatalogue(locale).foods;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Foods searchFoods(final Locale locale, final String prefix, final int maxResults)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.isTrue(maxResults > 0, "Cannot handle non-positive 'maxResults'.");
+        final Catalogue catalogue = getCatalogue(locale);
+
+        // #1) Prefix matches go first, followed by fuzzy matches of the whole word.
+        final Set<FoodVO> hits = new LinkedHashSet<>(catalogue.prefixes.search(prefix, maxResults));
+        final String folded = PrefixTrie.fold(prefix);
+        if (hits.size() < maxResults && !folded.isEmpty()) {
+            hits.addAll(catalogue.words.search(folded, getMaxDistance(folded), maxResults));
+        }
+
+        // #2) Wrap the hits and their Categories.
+        final Foods toReturn = new Foods(true, locale);
+        hits.stream().limit(maxResults).forEach(food -> {
+            toReturn.getFoods().add(food);
+            toReturn.getCategories().add(catalogue.categories.get(food.getCategoryID()));
+            toReturn.getSubCategories().add(catalogue.categories.get(food.getSubCategoryID()));
+        });
+
+        // All Done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Catalogue getCatalogue(final Locale locale) {
+
+        // Check sanity
+        Validate.notNull(locale, "locale");
+
+        // Discard stale Catalogues before looking up the Catalogue of the Locale.
+        // Return the Catalogue found or built, since the Catalogues may be cleared concurrently.
+        final String version = getCatalogueVersion();
+        final Catalogue existing = catalogues.get(locale);
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (lock) {
+
+            final Catalogue concurrentlyBuilt = catalogues.get(locale);
+            if (concurrentlyBuilt != null) {
+                return concurrentlyBuilt;
+            }
+
+            final Catalogue built = new Catalogue(version, readFoods(locale));
+            catalogues.put(locale, built);
+
+            if (log.isInfoEnabled()) {
+                log.info("Built " + built);
+            }
+
+            // All Done.
+            return built;
+        }
+    }
+
+    private Foods readFoods(final Locale locale) {
+
+        final Foods toReturn = new Foods(true, locale);
+        foodAndAllergyService.getAllFoods().forEach(food -> toReturn.add(true, food));
+        toReturn.getFoodPreferences().addAll(foodAndAllergyService.getAllFoodPreferences());
+
+        // All Done.
+        return toReturn;
+    }
+
+    private String calculateCatalogueVersion() {
+
+        // Each row holds [count, versionSum, ...] aggregates.
+        final Object[] foodsRow = (Object[]) entityManager.createNamedQuery(Food.NAMEDQ_GET_CATALOGUE_VERSION)
+                .getSingleResult();
+        final Object[] categoriesRow = (Object[]) entityManager.createNamedQuery(Food.NAMEDQ_GET_CATEGORIES_VERSION)
+                .getSingleResult();
+
+        // All Done.
+        return Stream.concat(Arrays.stream(foodsRow), Arrays.stream(categoriesRow))
+                .map(current -> Long.toHexString(current == null ? 0L : ((Number) current).longValue()))
+                .collect(Collectors.joining("-"));
+    }
+
+    /**
+     * Retrieves the maximum edit distance permitted for fuzzy matches, such that short words must match
+     * exactly. Otherwise, nearly every short word would match nearly every other one.
+     */
+    private static int getMaxDistance(final String folded) {
+        return folded.length() <= 3 ? 0 : folded.length() <= 6 ? 1 : 2;
+    }
+
+    /**
+     * The immutable Food catalogue of a single Locale.
+     */
+    private static final class Catalogue {
+
+        // Internal state
+        private final String version;
+        private final Foods foods;
+        private final Map<Long, Category> categories = new HashMap<>();
+        private final PrefixTrie<FoodVO> prefixes = new PrefixTrie<>();
+        private final BKTree<FoodVO> words = new BKTree<>();
+
+        private Catalogue(final String version, final Foods foods) {
+
+            this.version = version;
+            this.foods = foods;
+
+            Stream.concat(foods.getCategories().stream(), foods.getSubCategories().stream())
+                    .forEach(category -> categories.put(category.getId(), category));
+            foods.getFoods().forEach(food -> getSearchKeys(food).forEach(key -> {
+                prefixes.put(key, food);
+                words.put(key, food);
+            }));
+
+            // The search structures are immutable from here on, and can be searched without synchronization.
+            prefixes.freeze();
+            words.freeze();
+        }
+
+        private Set<String> getSearchKeys(final FoodVO food) {
+
+            final Set<String> toReturn = new TreeSet<>();
+            Stream.of(food.getFoodName(),
+                    getCategoryName(food.getCategoryID()),
+                    getCategoryName(food.getSubCategoryID()))
+                    .filter(Objects::nonNull)
+                    .forEach(name -> {
+                        toReturn.add(name);
+                        toReturn.addAll(Arrays.asList(name.split("[\\s,/-]+")));
+                    });
+
+            // All Done.
+            return toReturn;
+        }
+
+        private String getCategoryName(final long categoryJpaID) {
+
+            final Category category = categories.get(categoryJpaID);
+            return category == null ? null : category.getCategoryID();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Food catalogue [" + foods.getLocale() + ", version " + version + "]: "
+                    + foods.getFoods().size() + " Foods, " + categories.size() + " Categories, "
+                    + words.size() + " search keys.";
+        }
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.GroupHierarchyService;
+import se.mithlond.services.organisation.api.GroupMembershipIndexService;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.GroupMembership;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.membership.guild.Guild;
+import se.mithlond.services.organisation.model.transport.membership.GroupTree;
+import se.mithlond.services.organisation.model.transport.membership.GroupTreeNodeVO;
+import se.mithlond.services.shared.spi.algorithms.search.PrefixTrie;
+import se.mithlond.services.shared.spi.algorithms.tree.AncestryClosure;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.text.Collator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>GroupHierarchyService Singleton EJB implementation, holding one hierarchy partition per Organisation.
+ * Each partition holds an {@link AncestryClosure} over the JPA IDs of all Groups and Guilds within its
+ * Organisation, the JPA IDs of all Groups within the subtrees of the standard administrator Groups, and the
+ * cached Administrator flags of Memberships. Partitions are built lazily from the database, and changes
+ * reported within a transaction are applied when (and only if) the transaction commits.</p>
+ * <p>Administrator flags are read from the Groups of the Membership within the database (never from the
+ * supplied Membership entity), and are cached only after the reading transaction commits.</p>
+ * <p>Cached lookups never block; applying changes and building partitions are serialized. Any change to the
+ * Group hierarchy evicts all cached Administrator flags within the Organisation.</p>
+ * <p>The member counts of the {@link GroupTree} are cached per partition. Direct counts are read with a single
+ * grouped query, and recursive counts (i.e. distinct Memberships within a subtree, which cannot be summed from
+ * the direct counts) are read from the {@link GroupMembershipIndexService}. Any change to the Group hierarchy
+ * or to Memberships evicts the cached counts of the Organisation.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GroupHierarchyServiceBean extends AbstractJpaService implements GroupHierarchyService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(GroupHierarchyServiceBean.class);
+
+    /**
+     * The names (compared case-insensitively) of the standard administrator Groups.
+     */
+    private static final String[] STD_ADMINISTRATOR_GROUPNAMES = {"Administratörer", "Administrators"};
+
+    /**
+     * The member counts [direct, directLoginPermitted, recursive, recursiveLoginPermitted] of empty Groups.
+     */
+    private static final int[] NO_MEMBERS = new int[4];
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    @EJB
+    private GroupMembershipIndexService groupMembershipIndexService;
+
+    // Internal state
+    private final Object lock = new Object();
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * JEE-compliant constructor.
+     */
+    public GroupHierarchyServiceBean() {
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param groupMembershipIndexService The GroupMembershipIndexService used to count the distinct Memberships
+     *                                    within subtrees of Groups.
+     */
+    public GroupHierarchyServiceBean(final GroupMembershipIndexService groupMembershipIndexService) {
+        this.groupMembershipIndexService = groupMembershipIndexService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAdministrator(final Membership membership) {
+
+        // Check sanity
+        Validate.notNull(membership, "membership");
+
+        // Memberships which are not yet persisted have no committed Groups.
+        final Long membershipJpaID = membership.getId();
+        if (membershipJpaID == null) {
+            return false;
+        }
+
+        final long organisationJpaID = membership.getOrganisation().getId();
+        final Partition partition = getPartition(organisationJpaID);
+
+        // Read the flags and generation before the administrative Groups; see Partition.refresh.
+        final Map<Long, Boolean> administratorFlags = partition.administratorFlags;
+        final long generation = partition.administratorFlagsGeneration;
+        final Boolean cached = administratorFlags.get(membershipJpaID);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Read the Groups of the Membership from the database rather than from the supplied
+        // (and possibly detached or modified) Membership entity.
+        final Set<Long> administrativeGroupIDs = partition.administrativeGroupIDs;
+        final boolean toReturn = entityManager.createNamedQuery(
+                GroupMembership.NAMEDQ_GET_GROUP_IDS_BY_MEMBERSHIP_ID, Long.class)
+                .setParameter(OrganisationPatterns.PARAM_MEMBERSHIP_ID, membershipJpaID)
+                .getResultList()
+                .stream()
+                .anyMatch(administrativeGroupIDs::contains);
+
+        // Only cache the flag once the Groups it was read from are committed, and
+        // provided that no Administrator flag was evicted in the meantime.
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, Collections.singletonList(() -> {
+
+            synchronized (lock) {
+                if (partition.administratorFlagsGeneration == generation) {
+                    administratorFlags.put(membershipJpaID, toReturn);
+                }
+            }
+        }));
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAnyWithinSubtree(final Long organisationJpaID,
+                                      final Long ancestorGroupJpaID,
+                                      final Collection<Long> groupJpaIDs) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+        Validate.notNull(ancestorGroupJpaID, "ancestorGroupJpaID");
+        Validate.notNull(groupJpaIDs, "groupJpaIDs");
+
+        // All Done.
+        return getPartition(organisationJpaID).closure.isAnyWithinSubtree(groupJpaIDs, ancestorGroupJpaID);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> getSubtree(final Long organisationJpaID, final Long groupJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+        Validate.notNull(groupJpaID, "groupJpaID");
+
+        // All Done.
+        return getPartition(organisationJpaID).closure.getSubtree(groupJpaID);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GroupTree getGroupTree(final Long organisationJpaID, final Long rootGroupJpaID, final int depth) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+        Validate.isTrue(depth >= 0, "depth must not be negative.");
+
+        final Partition partition = getPartition(organisationJpaID);
+        final Map<Long, int[]> memberCounts = getMemberCounts(organisationJpaID, partition);
+
+        // #1) Find the root node(s) of the tree.
+        final Set<Long> roots;
+        if (rootGroupJpaID == null) {
+            roots = partition.closure.getRoots();
+        } else {
+            roots = partition.closure.contains(rootGroupJpaID)
+                    ? Collections.singleton(rootGroupJpaID)
+                    : Collections.emptySet();
+        }
+
+        // #2) Expand the tree to the requested depth.
+        final GroupTree toReturn = new GroupTree(organisationJpaID, partition.organisationName, depth);
+        partition.sortedByName(roots)
+                .forEach(current -> toReturn.getRoots().add(getNode(partition, memberCounts, current, depth)));
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void groupChanged(final Group group) {
+
+        // Check sanity
+        Validate.notNull(group, "group");
+
+        // Snapshot the Group, since it may be changed after this transaction.
+        final long organisationJpaID = group.getOrganisation().getId();
+        final Long groupJpaID = group.getId();
+        final Long parentJpaID = group.getParent() == null ? null : group.getParent().getId();
+        final String groupName = group.getGroupName();
+        final boolean guild = group instanceof Guild;
+
+        applyAfterCommit(organisationJpaID, partition -> partition.put(groupJpaID, parentJpaID, groupName, guild));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void groupRemoved(final Group group) {
+
+        // Check sanity
+        Validate.notNull(group, "group");
+
+        final long organisationJpaID = group.getOrganisation().getId();
+        final Long groupJpaID = group.getId();
+
+        applyAfterCommit(organisationJpaID, partition -> partition.remove(groupJpaID));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsChanged(final List<Membership> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        changed.forEach(this::evictAdministratorFlagAfterCommit);
+        evictMemberCountsAfterCommit(changed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsRemoved(final List<Membership> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        removed.forEach(this::evictAdministratorFlagAfterCommit);
+        evictMemberCountsAfterCommit(removed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rebuild(final Long organisationJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        synchronized (lock) {
+
+            final Organisation organisation = entityManager.find(Organisation.class, organisationJpaID);
+            if (organisation == null) {
+                throw new IllegalArgumentException("No Organisation with JPA ID [" + organisationJpaID + "] found.");
+            }
+
+            // Each row holds [groupID, parentGroupID, groupName] of a Group or Guild.
+            final Partition rebuilt = new Partition(organisation.getOrganisationName());
+            entityManager.createNamedQuery(Group.NAMEDQ_GET_ANCESTRY_BY_ORGANISATION_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS,
+                            Collections.singletonList(organisationJpaID))
+                    .getResultList()
+                    .forEach(row -> rebuilt.put((Long) row[0], (Long) row[1], (String) row[2], false));
+            rebuilt.guildIDs.addAll(entityManager
+                    .createNamedQuery(Group.NAMEDQ_GET_GUILD_IDS_BY_ORGANISATION_IDS, Long.class)
+                    .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS,
+                            Collections.singletonList(organisationJpaID))
+                    .getResultList());
+            rebuilt.refresh();
+
+            partitions.put(organisationJpaID, rebuilt);
+
+            if (log.isInfoEnabled()) {
+                log.info("Built group hierarchy partition: " + rebuilt);
+            }
+
+            // All Done.
+            return rebuilt.closure.size();
+        }
+    }
+
+    /**
+     * Checks if the supplied groupName is the name of a standard administrator Group.
+     *
+     * @param groupName A Group name.
+     * @return {@code true} if the supplied groupName is (case-insensitively) a standard administrator Group name.
+     */
+    static boolean isAdministratorGroupName(final String groupName) {
+
+        for (final String currentAdminGroupName : STD_ADMINISTRATOR_GROUPNAMES) {
+            if (currentAdminGroupName.equalsIgnoreCase(groupName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Partition getPartition(final Long organisationJpaID) {
+
+        if (!partitions.containsKey(organisationJpaID)) {
+            synchronized (lock) {
+                if (!partitions.containsKey(organisationJpaID)) {
+                    rebuild(organisationJpaID);
+                }
+            }
+        }
+        return partitions.get(organisationJpaID);
+    }
+
+    private Map<Long, int[]> getMemberCounts(final Long organisationJpaID, final Partition partition) {
+
+        final Map<Long, int[]> cached = partition.memberCounts;
+        if (cached != null) {
+            return cached;
+        }
+
+        // Counts calculated while the cache was evicted may be stale; only cache them if no eviction occurred.
+        final long generation = partition.memberCountsGeneration;
+        final Map<Long, int[]> toReturn = new HashMap<>();
+
+        // #1) Each row holds [groupID, loginPermitted, count] for the direct Memberships of a Group or Guild.
+        entityManager.createNamedQuery(GroupMembership.NAMEDQ_GET_MEMBER_COUNTS_BY_ORGANISATION_ID, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationJpaID)
+                .getResultList()
+                .forEach(row -> {
+                    final int[] counts = toReturn.computeIfAbsent((Long) row[0], k -> new int[4]);
+                    final int count = ((Number) row[2]).intValue();
+                    counts[0] += count;
+                    if (Boolean.TRUE.equals(row[1])) {
+                        counts[1] += count;
+                    }
+                });
+
+        // #2) Count the distinct Memberships within the subtree of each Group.
+        for (Long current : partition.groupNames.keySet()) {
+
+            final Set<Long> subtree = partition.closure.getSubtree(current);
+            final int[] counts = toReturn.computeIfAbsent(current, k -> new int[4]);
+
+            if (groupMembershipIndexService != null) {
+                counts[2] = groupMembershipIndexService.countMemberships(organisationJpaID, subtree, true);
+                counts[3] = groupMembershipIndexService.countMemberships(organisationJpaID, subtree, false);
+            } else {
+
+                // No index available; approximate by summing the direct counts within the subtree.
+                for (Long descendant : subtree) {
+                    final int[] descendantCounts = toReturn.getOrDefault(descendant, NO_MEMBERS);
+                    counts[2] += descendantCounts[0];
+                    counts[3] += descendantCounts[1];
+                }
+            }
+        }
+
+        final Map<Long, int[]> memberCounts = Collections.unmodifiableMap(toReturn);
+        synchronized (lock) {
+            if (partition.memberCountsGeneration == generation) {
+                partition.memberCounts = memberCounts;
+            }
+        }
+
+        // All Done.
+        return memberCounts;
+    }
+
+    private GroupTreeNodeVO getNode(final Partition partition,
+                                    final Map<Long, int[]> memberCounts,
+                                    final Long groupJpaID,
+                                    final int remainingDepth) {
+
+        final Set<Long> children = partition.closure.getChildren(groupJpaID);
+        final int[] counts = memberCounts.getOrDefault(groupJpaID, NO_MEMBERS);
+        final GroupTreeNodeVO toReturn = new GroupTreeNodeVO(groupJpaID,
+                partition.groupNames.get(groupJpaID),
+                partition.guildIDs.contains(groupJpaID),
+                counts[0], counts[1], counts[2], counts[3],
+                children.size());
+
+        // Deeper subtrees are retrieved on demand, using the node as root.
+        if (remainingDepth > 0) {
+            partition.sortedByName(children).forEach(current -> toReturn.getChildren().add(
+                    getNode(partition, memberCounts, current, remainingDepth - 1)));
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    private void evictMemberCountsAfterCommit(final List<Membership> memberships) {
+
+        final Set<Long> organisationJpaIDs = new HashSet<>();
+        memberships.forEach(current -> organisationJpaIDs.add(current.getOrganisation().getId()));
+
+        organisationJpaIDs.forEach(current -> TransactionCallbacks.runAfterCommit(
+                transactionSynchronizationRegistry, Collections.singletonList(() -> {
+
+                    synchronized (lock) {
+                        final Partition partition = partitions.get(current);
+                        if (partition != null) {
+                            partition.evictMemberCounts();
+                        }
+                    }
+                })));
+    }
+
+    private void evictAdministratorFlagAfterCommit(final Membership membership) {
+
+        final long organisationJpaID = membership.getOrganisation().getId();
+        final Long membershipJpaID = membership.getId();
+
+        if (membershipJpaID != null) {
+            TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, Collections.singletonList(
+                    () -> {
+                        synchronized (lock) {
+                            final Partition partition = partitions.get(organisationJpaID);
+                            if (partition != null) {
+                                partition.evictAdministratorFlag(membershipJpaID);
+                            }
+                        }
+                    }));
+        }
+    }
+
+    private void applyAfterCommit(final long organisationJpaID, final Consumer<Partition> change) {
+
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, Collections.singletonList(() -> {
+
+            synchronized (lock) {
+
+                // Not yet built? Then the change is read when the partition is built.
+                final Partition partition = partitions.get(organisationJpaID);
+                if (partition != null) {
+                    try {
+                        change.accept(partition);
+                        partition.refresh();
+                    } catch (IllegalArgumentException e) {
+
+                        // The reported change would create a cycle. Rebuild from the database when next used.
+                        log.error("Could not apply Group change within " + partition
+                                + ". Discarding the partition.", e);
+                        partitions.remove(organisationJpaID);
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * The Group hierarchy of a single Organisation. Mutators must only be called while holding the lock.
+     */
+    private static final class Partition {
+
+        // Internal state
+        private final String organisationName;
+        private final AncestryClosure<Long> closure = new AncestryClosure<>();
+        private final Map<Long, String> groupNames = new ConcurrentHashMap<>();
+        private final Set<Long> guildIDs = ConcurrentHashMap.newKeySet();
+        private volatile Set<Long> administrativeGroupIDs = Collections.emptySet();
+        private volatile Map<Long, Boolean> administratorFlags = new ConcurrentHashMap<>();
+        private volatile long administratorFlagsGeneration;
+        private volatile Map<Long, int[]> memberCounts;
+        private volatile long memberCountsGeneration;
+
+        private Partition(final String organisationName) {
+            this.organisationName = organisationName;
+        }
+
+        private void put(final Long groupJpaID, final Long parentJpaID, final String groupName, final boolean guild) {
+            closure.put(groupJpaID, parentJpaID);
+            groupNames.put(groupJpaID, groupName);
+            if (guild) {
+                guildIDs.add(groupJpaID);
+            }
+        }
+
+        private void remove(final Long groupJpaID) {
+            closure.remove(groupJpaID);
+            groupNames.remove(groupJpaID);
+            guildIDs.remove(groupJpaID);
+        }
+
+        private List<Long> sortedByName(final Collection<Long> groupJpaIDs) {
+
+            final Collator collator = Collator.getInstance(PrefixTrie.SWEDISH);
+            final Comparator<Long> byName = Comparator.comparing(
+                    current -> groupNames.getOrDefault(current, ""), collator);
+
+            return groupJpaIDs.stream()
+                    .sorted(byName.thenComparing(Comparator.naturalOrder()))
+                    .collect(Collectors.toList());
+        }
+
+        private void evictAdministratorFlag(final Long membershipJpaID) {
+            administratorFlagsGeneration++;
+            administratorFlags.remove(membershipJpaID);
+        }
+
+        private void evictMemberCounts() {
+            memberCountsGeneration++;
+            memberCounts = null;
+        }
+
+        /**
+         * Recalculates the administrative Groups, and evicts all cached Administrator flags and member counts.
+         * Increasing the generation implies that flags calculated from the previous administrative Groups
+         * by concurrent lookups are never cached.
+         */
+        private void refresh() {
+
+            final Set<Long> administrativeGroups = new HashSet<>();
+            groupNames.entrySet()
+                    .stream()
+                    .filter(entry -> isAdministratorGroupName(entry.getValue()))
+                    .forEach(entry -> administrativeGroups.addAll(closure.getSubtree(entry.getKey())));
+
+            this.administrativeGroupIDs = Collections.unmodifiableSet(administrativeGroups);
+            this.administratorFlags = new ConcurrentHashMap<>();
+            administratorFlagsGeneration++;
+            evictMemberCounts();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Partition [" + organisationName + "]: " + closure + ", "
+                    + administrativeGroupIDs.size() + " administrative Groups, "
+                    + administratorFlags.size() + " cached Administrator flags.";
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.GroupMembershipIndexService;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGroupMembershipVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimMemberVO;
+import se.mithlond.services.shared.spi.algorithms.bitmap.CompressedBitmap;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>GroupMembershipIndexService Singleton EJB implementation, holding one index partition per Organisation.
+ * Each partition assigns a dense int ordinal to each of its Memberships (re-using the ordinals of removed
+ * Memberships), and holds one {@link CompressedBitmap} per Group and Guild as well as bitmaps of all
+ * Memberships and of the Memberships permitted to login. Partitions are built lazily from the database,
+ * and changes reported within a transaction are applied when (and only if) the transaction commits.</p>
+ * <p>Reads never block. Published bitmaps are never mutated; applying a change replaces the affected bitmaps
+ * with changed copies, implying that readers always operate on complete bitmaps.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class GroupMembershipIndexServiceBean extends AbstractJpaService implements GroupMembershipIndexService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(GroupMembershipIndexServiceBean.class);
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // Internal state
+    private final Object lock = new Object();
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedMap<String, SortedSet<String>> getMailingListRecipients(final Long organisationJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        final Partition partition = getPartition(organisationJpaID);
+        final CompressedBitmap loginPermitted = partition.loginPermitted;
+
+        // The Groups are read from the database, to find their current mailing lists.
+        final SortedMap<String, SortedSet<String>> toReturn = new TreeMap<>();
+        entityManager.createNamedQuery(Group.NAMEDQ_GET_BY_ORGANISATION, Group.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, partition.organisationName)
+                .getResultList()
+                .stream()
+                .filter(group -> group.getEmailList() != null)
+                .forEach(group -> {
+
+                    final SortedSet<String> recipients = toReturn.computeIfAbsent(
+                            group.getEmailList(), k -> new TreeSet<>());
+                    recipients.addAll(partition.getEmailAddresses(
+                            partition.getGroupBitmap(group.getId()).and(loginPermitted)));
+                });
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedSet<String> getMemberEmailAddresses(final Long organisationJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        final Partition partition = getPartition(organisationJpaID);
+        return partition.getEmailAddresses(partition.loginPermitted);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedSet<Long> getMembershipIDs(final Long organisationJpaID,
+                                            final Collection<Long> anyOfGroupJpaIDs,
+                                            final Collection<Long> excludedGroupJpaIDs,
+                                            final boolean includeLoginNotPermitted) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        final Partition partition = getPartition(organisationJpaID);
+        CompressedBitmap result = partition.select(anyOfGroupJpaIDs, includeLoginNotPermitted);
+
+        // Remove the Memberships within the excluded Groups.
+        if (excludedGroupJpaIDs != null && !excludedGroupJpaIDs.isEmpty()) {
+            result = result.andNot(partition.union(excludedGroupJpaIDs));
+        }
+
+        // All Done.
+        return partition.getMembershipIDs(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int countMemberships(final Long organisationJpaID,
+                                final Collection<Long> anyOfGroupJpaIDs,
+                                final boolean includeLoginNotPermitted) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        // All Done.
+        return getPartition(organisationJpaID).select(anyOfGroupJpaIDs, includeLoginNotPermitted).getCardinality();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rebuild(final Long organisationJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        synchronized (lock) {
+
+            final Organisation organisation = entityManager.find(Organisation.class, organisationJpaID);
+            if (organisation == null) {
+                throw new IllegalArgumentException("No Organisation with JPA ID [" + organisationJpaID + "] found.");
+            }
+
+            // Both Memberships permitted and not permitted login go into the partition.
+            final Partition rebuilt = new Partition(organisation.getOrganisationName(),
+                    organisation.getEmailSuffix());
+            for (boolean loginPermitted : Arrays.asList(true, false)) {
+                entityManager.createNamedQuery(Membership.NAMEDQ_GET_BY_ORGANISATION_ID_LOGINPERMITTED,
+                        Membership.class)
+                        .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationJpaID)
+                        .setParameter(OrganisationPatterns.PARAM_LOGIN_PERMITTED, loginPermitted)
+                        .getResultList()
+                        .forEach(current -> rebuilt.put(new SlimMemberVO(current)));
+            }
+
+            // Subsequent changes must not mutate the published bitmaps.
+            rebuilt.published = true;
+            partitions.put(organisationJpaID, rebuilt);
+
+            if (log.isInfoEnabled()) {
+                log.info("Built group membership index partition: " + rebuilt);
+            }
+
+            // All Done.
+            return rebuilt.ordinals.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsChanged(final List<Membership> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        applyAfterCommit(changed.stream()
+                .map(membership -> {
+
+                    // Snapshot the Membership, since it may be changed after this transaction.
+                    final long organisationJpaID = membership.getOrganisation().getId();
+                    final SlimMemberVO snapshot = new SlimMemberVO(membership);
+
+                    return (Runnable) () -> applyToPartition(organisationJpaID, partition -> partition.put(snapshot));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsRemoved(final List<Membership> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        applyAfterCommit(removed.stream()
+                .map(membership -> {
+
+                    final long organisationJpaID = membership.getOrganisation().getId();
+                    final long membershipJpaID = membership.getId();
+
+                    return (Runnable) () -> applyToPartition(organisationJpaID,
+                            partition -> partition.remove(membershipJpaID));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Partition getPartition(final Long organisationJpaID) {
+
+        if (!partitions.containsKey(organisationJpaID)) {
+            synchronized (lock) {
+                if (!partitions.containsKey(organisationJpaID)) {
+                    rebuild(organisationJpaID);
+                }
+            }
+        }
+        return partitions.get(organisationJpaID);
+    }
+
+    private void applyToPartition(final long organisationJpaID, final Consumer<Partition> change) {
+
+        synchronized (lock) {
+
+            // Not yet built? Then the change is read when the partition is built.
+            final Partition partition = partitions.get(organisationJpaID);
+            if (partition != null) {
+                change.accept(partition);
+            }
+        }
+    }
+
+    private void applyAfterCommit(final List<Runnable> changes) {
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, changes);
+    }
+
+    /**
+     * The index of a single Organisation. Mutators must only be called while holding the lock.
+     */
+    private static final class Partition {
+
+        // Internal state
+        private final String organisationName;
+        private final String emailSuffix;
+        private final Map<Long, Integer> ordinals = new ConcurrentHashMap<>();
+        private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+        private final Map<Long, CompressedBitmap> groupBitmaps = new ConcurrentHashMap<>();
+        private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        private volatile CompressedBitmap all = new CompressedBitmap();
+        private volatile CompressedBitmap loginPermitted = new CompressedBitmap();
+        private boolean published;
+
+        private Partition(final String organisationName, final String emailSuffix) {
+            this.organisationName = organisationName;
+            this.emailSuffix = emailSuffix;
+        }
+
+        private CompressedBitmap getGroupBitmap(final Long groupJpaID) {
+            final CompressedBitmap toReturn = groupJpaID == null ? null : groupBitmaps.get(groupJpaID);
+            return toReturn == null ? new CompressedBitmap() : toReturn;
+        }
+
+        private CompressedBitmap union(final Collection<Long> groupJpaIDs) {
+            return CompressedBitmap.orAll(groupJpaIDs.stream()
+                    .map(this::getGroupBitmap)
+                    .collect(Collectors.toList()));
+        }
+
+        private CompressedBitmap select(final Collection<Long> anyOfGroupJpaIDs,
+                                        final boolean includeLoginNotPermitted) {
+
+            // Union of the supplied Groups, or all Memberships.
+            final CompressedBitmap toReturn = anyOfGroupJpaIDs == null || anyOfGroupJpaIDs.isEmpty()
+                    ? all
+                    : union(anyOfGroupJpaIDs);
+
+            // Restrict to Memberships permitted to login?
+            return includeLoginNotPermitted ? toReturn : toReturn.and(loginPermitted);
+        }
+
+        private SortedSet<String> getEmailAddresses(final CompressedBitmap members) {
+
+            final SortedSet<String> toReturn = new TreeSet<>();
+            members.forEach(ordinal -> {
+                final Entry entry = entries.get(ordinal);
+                if (entry != null && entry.emailAddress != null) {
+                    toReturn.add(entry.emailAddress);
+                }
+            });
+            return toReturn;
+        }
+
+        private SortedSet<Long> getMembershipIDs(final CompressedBitmap members) {
+
+            final SortedSet<Long> toReturn = new TreeSet<>();
+            members.forEach(ordinal -> {
+                final Entry entry = entries.get(ordinal);
+                if (entry != null) {
+                    toReturn.add(entry.membershipJpaID);
+                }
+            });
+            return toReturn;
+        }
+
+        private void put(final SlimMemberVO member) {
+
+            final Long membershipJpaID = member.getJpaID();
+            final Integer existingOrdinal = ordinals.get(membershipJpaID);
+            final int ordinal = existingOrdinal != null
+                    ? existingOrdinal
+                    : freeOrdinals.isEmpty() ? ordinals.size() : freeOrdinals.pop();
+
+            final Set<Long> groupJpaIDs = Stream.concat(member.getGroups().stream(), member.getGuilds().stream())
+                    .map(SlimGroupMembershipVO::getJpaID)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            final Entry previous = entries.get(ordinal);
+            final Set<Long> previousGroupJpaIDs = previous == null ? new HashSet<>() : previous.groupJpaIDs;
+
+            // Only update the bitmaps of the Groups and Guilds entered or left.
+            previousGroupJpaIDs.stream()
+                    .filter(groupJpaID -> !groupJpaIDs.contains(groupJpaID))
+                    .forEach(groupJpaID -> updateGroupBitmap(groupJpaID, bitmap -> bitmap.remove(ordinal)));
+            groupJpaIDs.stream()
+                    .filter(groupJpaID -> !previousGroupJpaIDs.contains(groupJpaID))
+                    .forEach(groupJpaID -> updateGroupBitmap(groupJpaID, bitmap -> bitmap.add(ordinal)));
+
+            if (previous == null) {
+                all = update(all, bitmap -> bitmap.add(ordinal));
+            }
+            if (loginPermitted.contains(ordinal) != member.getLoginPermitted()) {
+                loginPermitted = update(loginPermitted, bitmap -> {
+                    if (member.getLoginPermitted()) {
+                        bitmap.add(ordinal);
+                    } else {
+                        bitmap.remove(ordinal);
+                    }
+                });
+            }
+
+            entries.put(ordinal, new Entry(membershipJpaID, getEmailAddress(member.getEmailAlias()), groupJpaIDs));
+            ordinals.put(membershipJpaID, ordinal);
+        }
+
+        private void remove(final Long membershipJpaID) {
+
+            final Integer ordinal = ordinals.remove(membershipJpaID);
+            if (ordinal != null) {
+
+                final Entry previous = entries.remove(ordinal);
+                previous.groupJpaIDs.forEach(groupJpaID -> updateGroupBitmap(groupJpaID,
+                        bitmap -> bitmap.remove(ordinal)));
+                all = update(all, bitmap -> bitmap.remove(ordinal));
+                loginPermitted = update(loginPermitted, bitmap -> bitmap.remove(ordinal));
+
+                freeOrdinals.push(ordinal);
+            }
+        }
+
+        private void updateGroupBitmap(final Long groupJpaID, final Consumer<CompressedBitmap> change) {
+
+            final CompressedBitmap updated = update(getGroupBitmap(groupJpaID), change);
+            if (updated.isEmpty()) {
+                groupBitmaps.remove(groupJpaID);
+            } else {
+                groupBitmaps.put(groupJpaID, updated);
+            }
+        }
+
+        private CompressedBitmap update(final CompressedBitmap bitmap, final Consumer<CompressedBitmap> change) {
+
+            // Copy on write, unless the partition is still being built.
+            final CompressedBitmap toReturn = published ? bitmap.copy() : bitmap;
+            change.accept(toReturn);
+            return toReturn;
+        }
+
+        private String getEmailAddress(final String emailAlias) {
+
+            if (emailAlias == null || emailAlias.trim().isEmpty()) {
+                return null;
+            }
+
+            final String alias = emailAlias.trim();
+            return alias.contains("@") ? alias : alias + "@" + emailSuffix;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+
+            final long bitmapBytes = groupBitmaps.values().stream().mapToLong(CompressedBitmap::getSizeInBytes).sum();
+            return "Partition [" + organisationName + "]: " + ordinals.size() + " Memberships, "
+                    + groupBitmaps.size() + " Groups and Guilds, " + bitmapBytes + " bitmap bytes.";
+        }
+    }
+
+    /**
+     * The indexed state of a single Membership.
+     */
+    private static final class Entry {
+
+        // Internal state
+        private final long membershipJpaID;
+        private final String emailAddress;
+        private final Set<Long> groupJpaIDs;
+
+        private Entry(final long membershipJpaID, final String emailAddress, final Set<Long> groupJpaIDs) {
+            this.membershipJpaID = membershipJpaID;
+            this.emailAddress = emailAddress;
+            this.groupJpaIDs = groupJpaIDs;
+        }
+    }
+}
@@ -1,8 +1,8 @@
-/*-
+/*
  * #%L
  * Nazgul Project: mithlond-services-organisation-impl-ejb
  * %%
- * Copyright (C) 2015 - 2017 Mithlond
+ * Copyright (C) 2015 - 2016 Mithlond
  * %%
  * Licensed under the jGuru Europe AB license (the "License"), based
  * on Apache License, Version 2.0; you may not use this file except
@@ -23,22 +23,40 @@ package se.mithlond.services.organisation.impl.ejb;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.mithlond.services.organisation.api.GroupMembershipIndexService;
 import se.mithlond.services.organisation.api.MailListService;
 import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.MailingListPushState;
 import se.mithlond.services.shared.spi.algorithms.Deployment;
 import se.mithlond.services.shared.spi.algorithms.messages.JmsCompliantMap;
 import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 
 import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
 import javax.jms.Queue;
 import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * MailListService POJO implementation adapting all calls to outbound JMS messages, sent onto the
+ * <p>MailListService POJO implementation adapting all calls to outbound JMS messages, sent onto the
+ * MailingList request Queue.</p>
+ * <p>The recipients of each mailing list last pushed are persisted as a {@link MailingListPushState}, implying
+ * that subsequent pushes only contain the mailing lists changed since, as deltas of their recipients.
+ * The persisted states are only updated when the JMS message was sent.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
@@ -46,7 +64,7 @@ import javax.jms.TextMessage;
 public class MailListServiceBean extends AbstractJpaService implements MailListService {
 
     // Our Logger
-    private static final Logger log = LoggerFactory.getLogger(EventCalendarServiceBean.class);
+    private static final Logger log = LoggerFactory.getLogger(MailListServiceBean.class);
 
     /**
      * The JavaEE-injected JMSContext.
@@ -60,6 +78,29 @@ public class MailListServiceBean extends AbstractJpaService implements MailListS
     @Resource(mappedName = MailListService.MAILING_LIST_REQUEST)
     private Queue queue;
 
+    @EJB
+    private GroupMembershipIndexService groupMembershipIndexService;
+
+    /**
+     * Default constructor.
+     */
+    public MailListServiceBean() {
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param groupMembershipIndexService A GroupMembershipIndexService to inject.
+     */
+    public MailListServiceBean(final GroupMembershipIndexService groupMembershipIndexService) {
+
+        // Delegate
+        this();
+
+        // Assign internal state
+        this.groupMembershipIndexService = groupMembershipIndexService;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -67,18 +108,13 @@ public class MailListServiceBean extends AbstractJpaService implements MailListS
     public void pushEmailsOfMembers(final String owningOrganisationName) {
 
         // First, find the Organisation
-        final Organisation org = entityManager.createNamedQuery(Organisation.NAMEDQ_GET_BY_NAME, Organisation.class)
-                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, owningOrganisationName)
-                .getSingleResult();
+        final Organisation org = getOrganisation(owningOrganisationName);
 
-        // Compile the properties for the outbound JMS Message
-        final JmsCompliantMap propertyMap = new JmsCompliantMap();
-        propertyMap.put(ORGANISATION_NAME_PARAM, org.getOrganisationName());
-        propertyMap.put(COMMAND_PARAM, "pushEmailAddresses");
-        propertyMap.put(Deployment.DEPLOYMENT_TYPE_KEY, Deployment.getDeploymentType());
+        // The message body holds one email address per line.
+        final SortedSet<String> emailAddresses = groupMembershipIndexService.getMemberEmailAddresses(org.getId());
 
         // Send the message
-        sendJmsMessage(propertyMap);
+        sendJmsMessage(getPropertyMap(org, "pushEmailAddresses"), String.join("\n", emailAddresses));
     }
 
     /**
@@ -86,35 +122,147 @@ public class MailListServiceBean extends AbstractJpaService implements MailListS
      */
     @Override
     public void pushMailingLists(final String owningOrganisationName) {
+        pushMailingLists(owningOrganisationName, false);
+    }
 
-        // First, find the Organisation
-        final Organisation org = entityManager.createNamedQuery(Organisation.NAMEDQ_GET_BY_NAME, Organisation.class)
-                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, owningOrganisationName)
-                .getSingleResult();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resyncMailingLists(final String owningOrganisationName) {
+        pushMailingLists(owningOrganisationName, true);
+    }
 
-        // Compile the properties for the outbound JMS Message
-        final JmsCompliantMap propertyMap = new JmsCompliantMap();
-        propertyMap.put(ORGANISATION_NAME_PARAM, org.getOrganisationName());
-        propertyMap.put(COMMAND_PARAM, "pushMailingLists");
-        propertyMap.put(Deployment.DEPLOYMENT_TYPE_KEY, Deployment.getDeploymentType());
+    /**
+     * Sends the supplied properties and body as a JMS TextMessage to the MailingList request Queue.
+     * Override to redirect or capture outbound messages (e.g. in tests).
+     *
+     * @param propertyMap The properties of the JMS message.
+     * @param body        The body of the JMS message.
+     * @throws JMSException if the JMS message could not be created or sent.
+     */
+    protected void send(final JmsCompliantMap propertyMap, final String body) throws JMSException {
 
-        // Send the message
-        sendJmsMessage(propertyMap);
+        final TextMessage textMessage = jmsContext.createTextMessage(body);
+        JmsCompliantMap.copyProperties(textMessage, propertyMap);
+
+        jmsContext.createProducer().send(queue, textMessage);
     }
 
     //
     // Private helpers
     //
 
-    private void sendJmsMessage(final JmsCompliantMap propertyMap) {
+    private void pushMailingLists(final String owningOrganisationName, final boolean fullResync) {
 
-        try {
-            final TextMessage textMessage = jmsContext.createTextMessage();
-            JmsCompliantMap.copyProperties(textMessage, propertyMap);
+        // #1) Find the Organisation, the current recipients and the state of each mailing list last pushed.
+        final Organisation org = getOrganisation(owningOrganisationName);
+        final SortedMap<String, SortedSet<String>> current =
+                groupMembershipIndexService.getMailingListRecipients(org.getId());
+
+        final SortedMap<String, MailingListPushState> lastPushed = new TreeMap<>();
+        entityManager.createNamedQuery(MailingListPushState.NAMEDQ_GET_BY_ORGANISATION, MailingListPushState.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, org.getOrganisationName())
+                .getResultList()
+                .forEach(state -> lastPushed.put(state.getListAddress(), state));
+
+        // #2) Compile one line per changed mailing list, and the state updates to perform when sent.
+        final List<String> lines = new ArrayList<>();
+        final List<Runnable> stateUpdates = new ArrayList<>();
+        current.forEach((listAddress, recipients) -> {
 
-            jmsContext.createProducer().send(queue, textMessage);
-        } catch (Exception e) {
+            final MailingListPushState state = lastPushed.remove(listAddress);
+            if (state == null) {
+
+                // Never pushed before.
+                lines.add(toLine(PUSH_FULL, 1L, listAddress, recipients));
+                stateUpdates.add(() -> entityManager.persist(
+                        new MailingListPushState(org.getOrganisationName(), listAddress, recipients)));
+                return;
+            }
+
+            if (!fullResync && state.getContentHash().equals(MailingListPushState.hashOf(recipients))) {
+
+                // Unchanged since the last push.
+                return;
+            }
+
+            final SortedSet<String> previousRecipients = state.getRecipients();
+            final List<String> delta = Stream.concat(
+                    difference(recipients, previousRecipients).stream().map(added -> "+" + added),
+                    difference(previousRecipients, recipients).stream().map(removed -> "-" + removed))
+                    .collect(Collectors.toList());
+
+            // Fall back to the full list when the delta would not be smaller.
+            final long sequenceNumber = state.getSequenceNumber() + 1;
+            lines.add(fullResync || delta.size() >= recipients.size()
+                    ? toLine(PUSH_FULL, sequenceNumber, listAddress, recipients)
+                    : toLine(PUSH_DELTA, sequenceNumber, listAddress, delta));
+            stateUpdates.add(() -> state.advance(recipients));
+        });
+
+        // #3) Mailing lists which no longer exist.
+        lastPushed.values().forEach(state -> {
+            lines.add(toLine(PUSH_REMOVED, state.getSequenceNumber() + 1, state.getListAddress(), new TreeSet<>()));
+            stateUpdates.add(() -> entityManager.remove(state));
+        });
+
+        // #4) Send the changes, and update the states only if sent.
+        if (lines.isEmpty()) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("No mailing lists changed within [" + org.getOrganisationName() + "]. Nothing pushed.");
+            }
+            return;
+        }
+
+        final JmsCompliantMap propertyMap = getPropertyMap(org, "pushMailingLists");
+        propertyMap.put(FULL_RESYNC_PARAM, fullResync);
+        if (sendJmsMessage(propertyMap, String.join("\n", lines))) {
+            stateUpdates.forEach(Runnable::run);
+        }
+    }
+
+    private Organisation getOrganisation(final String organisationName) {
+        return entityManager.createNamedQuery(Organisation.NAMEDQ_GET_BY_NAME, Organisation.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, organisationName)
+                .getSingleResult();
+    }
+
+    private static JmsCompliantMap getPropertyMap(final Organisation org, final String command) {
+
+        // Compile the properties for the outbound JMS Message
+        final JmsCompliantMap toReturn = new JmsCompliantMap();
+        toReturn.put(ORGANISATION_NAME_PARAM, org.getOrganisationName());
+        toReturn.put(COMMAND_PARAM, command);
+        toReturn.put(Deployment.DEPLOYMENT_TYPE_KEY, Deployment.getDeploymentType());
+        return toReturn;
+    }
+
+    private static SortedSet<String> difference(final SortedSet<String> left, final SortedSet<String> right) {
+
+        final SortedSet<String> toReturn = new TreeSet<>(left);
+        toReturn.removeAll(right);
+        return toReturn;
+    }
+
+    private static String toLine(final String kind,
+                                 final long sequenceNumber,
+                                 final String listAddress,
+                                 final Collection<String> entries) {
+
+        final String toReturn = kind + " " + sequenceNumber + " " + listAddress;
+        return entries.isEmpty() ? toReturn : toReturn + " " + String.join(",", entries);
+    }
+
+    private boolean sendJmsMessage(final JmsCompliantMap propertyMap, final String body) {
+
+        try {
+            send(propertyMap, body);
+            return true;
+        } catch (JMSException | JMSRuntimeException e) {
             log.error("Could not send MailList JMS message", e);
+            return false;
         }
     }
 }
@@ -0,0 +1,358 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.MembershipDirectoryService;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGroupMembershipVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimMemberVO;
+import se.mithlond.services.shared.spi.algorithms.search.PrefixTrie;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>MembershipDirectoryService Singleton EJB implementation, holding one directory partition per
+ * Organisation. Each partition holds the SlimMemberVOs of all Memberships within its Organisation, a
+ * {@link PrefixTrie} over the words of their aliases and names, and indices of the Memberships within
+ * each Group and Guild. Partitions are built lazily from the database, and changes reported within a
+ * transaction are applied when (and only if) the transaction commits.</p>
+ * <p>Searching never blocks; applying changes and building partitions are serialized, implying that
+ * changes committed while a partition is built are applied to the built partition.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MembershipDirectoryServiceBean extends AbstractJpaService implements MembershipDirectoryService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(MembershipDirectoryServiceBean.class);
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // Internal state
+    private final Object lock = new Object();
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MembershipListVO search(final Long organisationJpaID,
+                                   final String prefix,
+                                   final Long groupJpaID,
+                                   final boolean includeLoginNotPermitted,
+                                   final int maxResults) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+        Validate.isTrue(maxResults > 0, "Cannot handle non-positive 'maxResults'.");
+
+        final Partition partition = getPartition(organisationJpaID);
+        final Set<Long> groupMembers = groupJpaID == null ? null : partition.getGroupMembers(groupJpaID);
+
+        final MembershipListVO toReturn = partition.createMembershipList();
+        for (Long current : partition.trie.search(prefix, 0)) {
+
+            if (groupMembers != null && !groupMembers.contains(current)) {
+                continue;
+            }
+
+            final SlimMemberVO member = partition.members.get(current);
+            if (member != null && (includeLoginNotPermitted || member.getLoginPermitted())) {
+
+                toReturn.getMemberInformation().add(member);
+                if (toReturn.getMemberInformation().size() >= maxResults) {
+                    break;
+                }
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MembershipListVO getGroupMembers(final Long organisationJpaID,
+                                            final Long groupJpaID,
+                                            final boolean includeLoginNotPermitted) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+        Validate.notNull(groupJpaID, "groupJpaID");
+
+        final Partition partition = getPartition(organisationJpaID);
+        final Collator collator = Collator.getInstance(PrefixTrie.SWEDISH);
+
+        final MembershipListVO toReturn = partition.createMembershipList();
+        toReturn.addAll(partition.getGroupMembers(groupJpaID)
+                .stream()
+                .map(partition.members::get)
+                .filter(Objects::nonNull)
+                .filter(member -> includeLoginNotPermitted || member.getLoginPermitted())
+                .sorted(Comparator.comparing(SlimMemberVO::getFullAlias, collator))
+                .collect(Collectors.toList()));
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rebuild(final Long organisationJpaID) {
+
+        // Check sanity
+        Validate.notNull(organisationJpaID, "organisationJpaID");
+
+        synchronized (lock) {
+
+            final Organisation organisation = entityManager.find(Organisation.class, organisationJpaID);
+            if (organisation == null) {
+                throw new IllegalArgumentException("No Organisation with JPA ID [" + organisationJpaID + "] found.");
+            }
+
+            // Both Memberships permitted and not permitted login go into the partition.
+            final Partition rebuilt = new Partition(organisation.getOrganisationName(), organisationJpaID);
+            for (boolean loginPermitted : Arrays.asList(true, false)) {
+                entityManager.createNamedQuery(Membership.NAMEDQ_GET_BY_ORGANISATION_ID_LOGINPERMITTED,
+                        Membership.class)
+                        .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, organisationJpaID)
+                        .setParameter(OrganisationPatterns.PARAM_LOGIN_PERMITTED, loginPermitted)
+                        .getResultList()
+                        .forEach(current -> rebuilt.put(new SlimMemberVO(current)));
+            }
+
+            partitions.put(organisationJpaID, rebuilt);
+
+            if (log.isInfoEnabled()) {
+                log.info("Built membership directory partition: " + rebuilt);
+            }
+
+            // All Done.
+            return rebuilt.members.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsChanged(final List<Membership> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        applyAfterCommit(changed.stream()
+                .map(membership -> {
+
+                    // Snapshot the Membership, since it may be changed after this transaction.
+                    final long organisationJpaID = membership.getOrganisation().getId();
+                    final SlimMemberVO snapshot = new SlimMemberVO(membership);
+
+                    return (Runnable) () -> applyToPartition(organisationJpaID, partition -> partition.put(snapshot));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void membershipsRemoved(final List<Membership> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        applyAfterCommit(removed.stream()
+                .map(membership -> {
+
+                    final long organisationJpaID = membership.getOrganisation().getId();
+                    final long membershipJpaID = membership.getId();
+
+                    return (Runnable) () -> applyToPartition(organisationJpaID,
+                            partition -> partition.remove(membershipJpaID));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Partition getPartition(final Long organisationJpaID) {
+
+        if (!partitions.containsKey(organisationJpaID)) {
+            synchronized (lock) {
+                if (!partitions.containsKey(organisationJpaID)) {
+                    rebuild(organisationJpaID);
+                }
+            }
+        }
+        return partitions.get(organisationJpaID);
+    }
+
+    private void applyToPartition(final long organisationJpaID, final Consumer<Partition> change) {
+
+        synchronized (lock) {
+
+            // Not yet built? Then the change is read when the partition is built.
+            final Partition partition = partitions.get(organisationJpaID);
+            if (partition != null) {
+                change.accept(partition);
+            }
+        }
+    }
+
+    private void applyAfterCommit(final List<Runnable> changes) {
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, changes);
+    }
+
+    /**
+     * The directory of a single Organisation. Mutators must only be called while holding the lock.
+     */
+    private static final class Partition {
+
+        // Internal state
+        private final String organisationName;
+        private final Long organisationJpaID;
+        private final Map<Long, SlimMemberVO> members = new ConcurrentHashMap<>();
+        private final PrefixTrie<Long> trie = new PrefixTrie<>();
+        private final Map<Long, Set<Long>> groupIndex = new ConcurrentHashMap<>();
+        private final Map<Long, Set<Long>> guildIndex = new ConcurrentHashMap<>();
+
+        private Partition(final String organisationName, final Long organisationJpaID) {
+            this.organisationName = organisationName;
+            this.organisationJpaID = organisationJpaID;
+        }
+
+        private MembershipListVO createMembershipList() {
+            return new MembershipListVO(organisationName, organisationJpaID);
+        }
+
+        private Set<Long> getGroupMembers(final Long groupJpaID) {
+
+            final Set<Long> groupMembers = groupIndex.get(groupJpaID);
+            if (groupMembers != null) {
+                return groupMembers;
+            }
+
+            final Set<Long> guildMembers = guildIndex.get(groupJpaID);
+            return guildMembers == null ? Collections.emptySet() : guildMembers;
+        }
+
+        private void put(final SlimMemberVO member) {
+
+            final Long membershipJpaID = member.getJpaID();
+
+            // Remove any previous state of the Membership.
+            remove(membershipJpaID);
+
+            members.put(membershipJpaID, member);
+            getSearchKeys(member).forEach(key -> trie.put(key, membershipJpaID));
+            member.getGroups().forEach(group -> groupIndex
+                    .computeIfAbsent(group.getJpaID(), k -> ConcurrentHashMap.newKeySet())
+                    .add(membershipJpaID));
+            member.getGuilds().forEach(guild -> guildIndex
+                    .computeIfAbsent(guild.getJpaID(), k -> ConcurrentHashMap.newKeySet())
+                    .add(membershipJpaID));
+        }
+
+        private void remove(final Long membershipJpaID) {
+
+            final SlimMemberVO previous = members.remove(membershipJpaID);
+            if (previous != null) {
+
+                getSearchKeys(previous).forEach(key -> trie.remove(key, membershipJpaID));
+                removeFrom(groupIndex, previous.getGroups(), membershipJpaID);
+                removeFrom(guildIndex, previous.getGuilds(), membershipJpaID);
+            }
+        }
+
+        private static void removeFrom(final Map<Long, Set<Long>> index,
+                                       final List<? extends SlimGroupMembershipVO> groups,
+                                       final Long membershipJpaID) {
+
+            groups.forEach(group -> index.computeIfPresent(group.getJpaID(), (groupJpaID, groupMembers) -> {
+                groupMembers.remove(membershipJpaID);
+                return groupMembers.isEmpty() ? null : groupMembers;
+            }));
+        }
+
+        private static Set<String> getSearchKeys(final SlimMemberVO member) {
+
+            final Set<String> toReturn = new TreeSet<>();
+            final List<String> names = Arrays.asList(member.getFullAlias(),
+                    member.getFirstName(),
+                    member.getLastName(),
+                    member.getFirstName() + " " + member.getLastName());
+
+            names.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(name -> {
+                        toReturn.add(name);
+                        toReturn.addAll(Arrays.asList(name.split("[\\s,]+")));
+                    });
+
+            // All Done.
+            return toReturn;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "Partition [" + organisationName + "]: " + members.size() + " Memberships, "
+                    + groupIndex.size() + " Groups, " + guildIndex.size() + " Guilds, "
+                    + trie.getNumberOfNodes() + " trie nodes.";
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.MembershipService;
+import se.mithlond.services.organisation.api.event.MembershipChangedEvent;
+import se.mithlond.services.organisation.model.membership.Membership;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Stateless EJB publishing {@link MembershipChangedEvent}s to the {@link MembershipService#MEMBERSHIP_CHANGED}
+ * Topic when (and only if) the transaction changing the Memberships commits. All Memberships reported within a
+ * single call are published within a single message, whose text body is created by
+ * {@link MembershipChangedEvent#toMessageBody(List)}.</p>
+ * <p>The versions of the Memberships are read after the commit, implying that the published versions are the
+ * committed ones. Since messages are sent after the commit, a message which could not be sent is logged and
+ * dropped; consumers should hence periodically re-synchronize their replicas from a full read.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Stateless
+public class MembershipEventPublisher {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(MembershipEventPublisher.class);
+
+    /**
+     * The JMS message property holding the type of message.
+     */
+    public static final String MESSAGE_TYPE = "message_type";
+
+    /**
+     * The {@link #MESSAGE_TYPE} of messages holding MembershipChangedEvents.
+     */
+    public static final String MEMBERSHIPS_CHANGED = "memberships_changed";
+
+    /**
+     * The JavaEE-injected JMSContext.
+     */
+    @Inject
+    private JMSContext jmsContext;
+
+    /**
+     * The JMS Topic to which MembershipChangedEvents are published.
+     */
+    @Resource(mappedName = MembershipService.MEMBERSHIP_CHANGED)
+    private Topic topic;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * Publishes MembershipChangedEvents for the supplied Memberships after the current transaction commits.
+     *
+     * @param changed     The non-null Memberships changed within the current transaction.
+     * @param changeKinds The non-empty kinds of change.
+     */
+    public void publishAfterCommit(final List<Membership> changed,
+                                   final Set<MembershipChangedEvent.ChangeKind> changeKinds) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+        Validate.notNull(changeKinds, "changeKinds");
+        Validate.isTrue(!changeKinds.isEmpty(), "Cannot handle empty changeKinds.");
+
+        final List<Membership> toPublish = new ArrayList<>(changed);
+        final Set<MembershipChangedEvent.ChangeKind> kinds = EnumSet.copyOf(changeKinds);
+        toPublish.removeIf(current -> current == null || current.getId() == null);
+        if (toPublish.isEmpty()) {
+            return;
+        }
+
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, Collections.singletonList(() -> {
+
+            // Read the committed versions.
+            final List<MembershipChangedEvent> events = new ArrayList<>();
+            toPublish.forEach(current -> events.add(new MembershipChangedEvent(
+                    current.getOrganisation().getId(),
+                    current.getId(),
+                    current.getVersion(),
+                    kinds)));
+
+            try {
+                send(events);
+            } catch (JMSException | JMSRuntimeException e) {
+                log.error("Could not publish " + events, e);
+            }
+        }));
+    }
+
+    /**
+     * Sends the supplied MembershipChangedEvents as a single JMS message to the
+     * {@link MembershipService#MEMBERSHIP_CHANGED} Topic.
+     *
+     * @param events The non-empty MembershipChangedEvents to send.
+     * @throws JMSException if the message could not be created.
+     */
+    protected void send(final List<MembershipChangedEvent> events) throws JMSException {
+
+        final TextMessage msg = jmsContext.createTextMessage(MembershipChangedEvent.toMessageBody(events));
+        msg.setStringProperty(MESSAGE_TYPE, MEMBERSHIPS_CHANGED);
+        msg.setIntProperty("event_count", events.size());
+
+        jmsContext.createProducer().send(topic, msg);
+    }
+}
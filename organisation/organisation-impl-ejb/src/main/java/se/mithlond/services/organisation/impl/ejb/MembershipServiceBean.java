@@ -25,36 +25,49 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.jguru.nazgul.core.persistence.model.NazgulEntity;
+import se.mithlond.services.organisation.api.GroupHierarchyService;
+import se.mithlond.services.organisation.api.GroupMembershipIndexService;
+import se.mithlond.services.organisation.api.MembershipDirectoryService;
 import se.mithlond.services.organisation.api.MembershipService;
 import se.mithlond.services.organisation.api.OrganisationService;
+import se.mithlond.services.organisation.api.event.MembershipChangedEvent;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
+import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.GroupMembership;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.membership.guild.Guild;
 import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
 import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
 import se.mithlond.services.organisation.model.transport.convenience.membership.SlimContactInfoVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGroupMembershipVO;
 import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGuildMembershipVO;
 import se.mithlond.services.organisation.model.transport.convenience.membership.SlimMemberVO;
 import se.mithlond.services.organisation.model.transport.membership.Groups;
 import se.mithlond.services.organisation.model.user.User;
 import se.mithlond.services.shared.spi.algorithms.StandardAlgorithms;
+import se.mithlond.services.shared.spi.algorithms.diff.DiffHolder;
+import se.mithlond.services.shared.spi.algorithms.diff.KeyedDiffHolder;
+import se.mithlond.services.shared.spi.algorithms.diff.SortedMergeDiff;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransportable;
 import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.persistence.LockModeType;
 import javax.validation.ConstraintViolationException;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -70,9 +83,59 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
     // Our Logger
     private static final Logger log = LoggerFactory.getLogger(MembershipServiceBean.class);
 
+    /**
+     * The maximum number of Membership JPA IDs supplied within each query retrieving the contact details,
+     * groups and guilds for the SlimMemberVOs returned from {@link #getSlimMembershipsIn(Long, boolean)}.
+     */
+    public static final int SLIM_MEMBER_BATCH_SIZE = 500;
+
     @EJB
     private OrganisationService organisationServiceBean;
 
+    @EJB
+    private MembershipDirectoryService membershipDirectoryService;
+
+    @EJB
+    private GroupHierarchyService groupHierarchyService;
+
+    @EJB
+    private MembershipEventPublisher membershipEventPublisher;
+
+    @EJB
+    private GroupMembershipIndexService groupMembershipIndexService;
+
+    /**
+     * Default constructor.
+     */
+    public MembershipServiceBean() {
+    }
+
+    /**
+     * Injectable, test-friendly, constructor. Services which are not used by a test may be {@code null}.
+     *
+     * @param organisationService         An OrganisationService to inject.
+     * @param membershipDirectoryService  A MembershipDirectoryService to inject.
+     * @param groupHierarchyService       A GroupHierarchyService to inject.
+     * @param membershipEventPublisher    A MembershipEventPublisher to inject.
+     * @param groupMembershipIndexService A GroupMembershipIndexService to inject.
+     */
+    public MembershipServiceBean(final OrganisationService organisationService,
+                                 final MembershipDirectoryService membershipDirectoryService,
+                                 final GroupHierarchyService groupHierarchyService,
+                                 final MembershipEventPublisher membershipEventPublisher,
+                                 final GroupMembershipIndexService groupMembershipIndexService) {
+
+        // Delegate
+        this();
+
+        // Assign internal state.
+        this.organisationServiceBean = organisationService;
+        this.membershipDirectoryService = membershipDirectoryService;
+        this.groupHierarchyService = groupHierarchyService;
+        this.membershipEventPublisher = membershipEventPublisher;
+        this.groupMembershipIndexService = groupMembershipIndexService;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -102,6 +165,68 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Membership> getMembershipsIn(final Long orgJpaID,
+                                             final boolean includeLoginNotPermitted,
+                                             final int firstResult,
+                                             final int maxResults) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.isTrue(firstResult >= 0, "Cannot handle negative 'firstResult'.");
+        Validate.isTrue(maxResults > 0, "Cannot handle non-positive 'maxResults'.");
+
+        // All Done.
+        return entityManager.createNamedQuery(Membership.NAMEDQ_GET_PAGE_BY_ORGANISATION_ID, Membership.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, orgJpaID)
+                .setParameter(OrganisationPatterns.PARAM_LOGIN_PERMITTED, !includeLoginNotPermitted)
+                .setFirstResult(firstResult)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MembershipListVO getSlimMembershipsIn(final Long orgJpaID, final boolean includeLoginNotPermitted)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(orgJpaID, "orgJpaID");
+
+        final Organisation organisation = entityManager.find(Organisation.class, orgJpaID);
+        if (organisation == null) {
+            throw new IllegalArgumentException("No Organisation with JPA ID [" + orgJpaID + "] found.");
+        }
+
+        // #1) Project the Membership and User data of each member into a SlimMemberVO.
+        final List<Boolean> loginPermittedValues = includeLoginNotPermitted
+                ? Arrays.asList(true, false)
+                : Collections.singletonList(true);
+        final List<SlimMemberVO> slimMembers = entityManager.createNamedQuery(
+                Membership.NAMEDQ_GET_SLIM_BY_ORGANISATION_ID_LOGINPERMITTED, SlimMemberVO.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_ID, orgJpaID)
+                .setParameter(OrganisationPatterns.PARAM_LOGIN_PERMITTED_VALUES, loginPermittedValues)
+                .getResultList();
+
+        // #2) Stitch in the contact details, groups and guilds, retrieved in batches.
+        addSlimMemberDetails(slimMembers);
+
+        final MembershipListVO toReturn = new MembershipListVO(organisation.getOrganisationName(), orgJpaID);
+        toReturn.addAll(slimMembers);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Projected [" + slimMembers.size() + "] SlimMemberVOs within organisation ["
+                    + organisation.getOrganisationName() + "]");
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -277,6 +402,9 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
             if (log.isInfoEnabled()) {
                 log.info("Updated User to " + updatedUser);
             }
+
+            // Keep the in-memory views and event consumers in sync.
+            notifyMembershipChanged(toUpdate, MembershipChangedEvent.ChangeKind.PERSONAL_DATA);
         }
 
         // All Done.
@@ -306,23 +434,11 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
 
         final Membership[] toReturn = new Membership[]{activeMembership};
 
-        // #2) Find the Groups for which we should have Memberships,
-        //     as suggested by the inbound state.
-        final List<SlimGuildMembershipVO> desiredGuildVOs = receivedData.getGuilds();
-
-        final Map<Long, GuildMembership.GuildRole> desiredID2RoleMap = desiredGuildVOs.stream()
+        // #2) Find the desired state, as suggested by the inbound state.
+        final List<SlimGuildMembershipVO> desiredGuildVOs = receivedData.getGuilds()
+                .stream()
                 .filter(slimVO -> slimVO.getJpaID() != null && slimVO.getMemberType() != null)
-                .collect(Collectors.toMap(
-                        AbstractSimpleTransportable::getJpaID,
-                        slimVO -> MembershipServiceBean.getRoleFrom(slimVO.getMemberType())));
-
-        if (log.isDebugEnabled()) {
-            log.debug("Found desired id2RoleMap: " + desiredID2RoleMap.entrySet()
-                    .stream()
-                    .map(e -> "[JpaID: " + e.getKey() + ", Role: " + e.getValue() + "]")
-                    .reduce((l, r) -> l + ", " + r)
-                    .orElse("<none>"));
-        }
+                .collect(Collectors.toList());
 
         // #3) Find the existing state.
         final List<GuildMembership> existingGuildMemberships = activeMembership.getGroupMemberships()
@@ -330,10 +446,6 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
                 .filter(gr -> gr instanceof GuildMembership)
                 .map(gr -> (GuildMembership) gr)
                 .collect(Collectors.toList());
-        final Map<Long, GuildMembership.GuildRole> existingGuildMembershipMap = existingGuildMemberships
-                .stream()
-                .sorted()
-                .collect(Collectors.toMap(gms -> gms.getGuild().getId(), GuildMembership::toGuildRole));
 
         if (log.isInfoEnabled()) {
             log.info("Found existing GuildMemberships: " + existingGuildMemberships
@@ -343,61 +455,27 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
                     .orElse("<none>"));
         }
 
-        // #4) Synthesize sets of JpaIDs to remove, add and update.
-        final Set<Long> toRemoveGuildIDs = existingGuildMembershipMap.keySet()
-                .stream()
-                .filter(existingID -> !desiredID2RoleMap.keySet().contains(existingID))
-                .collect(Collectors.toSet());
-        final Set<Long> toAddGuildIDs = desiredID2RoleMap.keySet()
-                .stream()
-                .filter(desiredID -> !existingGuildMembershipMap.keySet().contains(desiredID))
-                .collect(Collectors.toSet());
-        final Set<Long> toUpdateIDs = desiredID2RoleMap.keySet()
-                .stream()
-                .filter(desiredID -> !toRemoveGuildIDs.contains(desiredID))
-                .filter(desiredID -> !toAddGuildIDs.contains(desiredID))
-                .collect(Collectors.toSet());
+        // #4) Merge the existing and desired states by Guild JPA ID.
+        //     GuildMemberships whose GuildRole is unchanged are left as they are.
+        final List<KeyedDiffHolder<Long, GuildMembership, SlimGuildMembershipVO>> diff = SortedMergeDiff.diff(
+                existingGuildMemberships, gm -> gm.getGuild().getId(),
+                desiredGuildVOs, AbstractSimpleTransportable::getJpaID,
+                (existing, desired) -> GuildMembership.toGuildRole(existing) == getRoleFrom(desired.getMemberType()));
 
         if (log.isInfoEnabled()) {
-
-
-            final StringBuilder builder = new StringBuilder(" === Updating GuildMemberships for ["
-                    + activeMembership.getAlias() + " in "
-                    + activeMembership.getOrganisation().getOrganisationName() + "]");
-
-            final String addedGuildMemberships = "\nAdding GuildMem to: " + toAddGuildIDs
+            log.info(" === Updating GuildMemberships for [" + activeMembership.getAlias() + " in "
+                    + activeMembership.getOrganisation().getOrganisationName() + "]: " + diff
                     .stream()
-                    .sorted()
-                    .map(c -> "" + c)
+                    .map(KeyedDiffHolder::toString)
                     .reduce((l, r) -> l + ", " + r)
-                    .orElse("<none>");
-            builder.append(addedGuildMemberships);
-            
-            final String removedGuildMemberships = "\nRemoving GuildMem from: " + toRemoveGuildIDs
-                    .stream()
-                    .sorted()
-                    .map(c -> "" + c)
-                    .reduce((l, r) -> l + ", " + r)
-                    .orElse("<none>");
-            builder.append(removedGuildMemberships);
-
-            final String updateCandidates = "\nPossibly updating GuildMem type: " + toUpdateIDs
-                    .stream()
-                    .sorted()
-                    .map(c -> "" + c)
-                    .reduce((l, r) -> l + ", " + r)
-                    .orElse("<none>");
-            builder.append(updateCandidates);
-            log.info(builder.toString());
+                    .orElse("<none>"));
         }
 
         // #5) Remove any undesired guild memberships.
-        final Set<GuildMembership> toBeRemoved = activeMembership.getGroupMemberships()
-                .stream()
-                .filter(gr -> gr instanceof GuildMembership)
-                .map(gr -> (GuildMembership) gr)
-                .filter(grm -> toRemoveGuildIDs.contains(grm.getGroup().getId()))
-                .collect(Collectors.toSet());
+        final List<GuildMembership> toBeRemoved = diff.stream()
+                .filter(current -> current.getModification() == DiffHolder.Modification.DELETED)
+                .map(current -> current.getActual().get())
+                .collect(Collectors.toList());
 
         toBeRemoved.forEach(gm -> {
 
@@ -424,13 +502,19 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
         activeMembership.getGroupMemberships().removeAll(toBeRemoved);
 
         // #6) Add any new GuildMemberships as requested.
-        if (toAddGuildIDs != null && !toAddGuildIDs.isEmpty()) {
+        final Map<Long, GuildMembership.GuildRole> toAddID2RoleMap = diff.stream()
+                .filter(current -> current.getModification() == DiffHolder.Modification.CREATED)
+                .collect(Collectors.toMap(
+                        KeyedDiffHolder::getKey,
+                        current -> getRoleFrom(current.getComparison().get().getMemberType())));
+
+        if (!toAddID2RoleMap.isEmpty()) {
 
             final GroupIdSearchParameters searchParameters = GroupIdSearchParameters
                     .builder()
                     .withDetailedResponsePreferred(true)
                     .withOrganisationIDs(activeMembership.getOrganisation().getId())
-                    .withGroupIDs(toAddGuildIDs.toArray(new Long[toAddGuildIDs.size()]))
+                    .withGroupIDs(toAddID2RoleMap.keySet().toArray(new Long[toAddID2RoleMap.size()]))
                     .build();
 
             final Groups desiredGroups = organisationServiceBean.getGroups(searchParameters);
@@ -446,7 +530,7 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
                                 // Map the Guild JPA ID and desired GuildRole
                                 // to a (newly constructed) GuildMembership.
                                 //
-                                final GuildMembership.GuildRole desiredGuildRole = desiredID2RoleMap.get(g.getId());
+                                final GuildMembership.GuildRole desiredGuildRole = toAddID2RoleMap.get(g.getId());
 
                                 final boolean isGuildMaster = GuildMembership.GuildRole.guildMaster
                                         .name()
@@ -487,64 +571,59 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
             });
         }
 
-        // Update the others GuildMemberships (possibly WRT membership type)
-        toUpdateIDs.stream()
-                .map(anID -> activeMembership.getGroupMemberships()
-                        .stream()
-                        .filter(gr -> gr instanceof GuildMembership)
-                        .map(gr -> (GuildMembership) gr)
-                        .filter(gu -> gu.getGuild().getId() == anID).findFirst().orElse(null))
-                .filter(Objects::nonNull)
-                .forEach(gu -> {
-
-                    // Find the desired membership type for this Guild.
-                    final GuildMembership.GuildRole guildRole = desiredID2RoleMap.get(gu.getGuild().getId());
-                    if (guildRole != null) {
-
-                        boolean isGuildMaster = false;
-                        boolean isDeputy = false;
-                        boolean isAuditor = false;
-
-                        switch (guildRole) {
-                            case guildMaster:
-                                isGuildMaster = true;
-                                break;
-
-                            case deputyGuildMaster:
-                                isDeputy = true;
-                                break;
-
-                            case auditor:
-                                isAuditor = true;
-                                break;
-
-                            case member:
-                                // Simply use default values
-                                break;
-
-                            case none:
-                                log.warn("No desired GuildRole 'none' for " + gu.toString()
-                                        + ". This implies that the GuildMembership should be removed.");
-                                break;
-                        }
-
-                        // Update the state of this GuildMembership
-                        gu.setGuildMaster(isGuildMaster);
-                        gu.setDeputyGuildMaster(isDeputy);
-                        gu.setAuditor(isAuditor);
-
-                        // Then, merge it into the
-                        entityManager.merge(gu);
-
-                        // Now update to persist.
-                        toReturn[0] = update(toReturn[0]);
-
-                    } else {
-                        log.warn("No desired GuildRole given for " + gu.toString()
-                                + ". Not modifying that GuildMembership.");
+        // #7) Update the GuildRole of modified GuildMemberships.
+        diff.stream()
+                .filter(current -> current.getModification() == DiffHolder.Modification.MODIFIED)
+                .forEach(current -> {
+
+                    final GuildMembership gu = current.getActual().get();
+                    final GuildMembership.GuildRole guildRole = getRoleFrom(
+                            current.getComparison().get().getMemberType());
+
+                    boolean isGuildMaster = false;
+                    boolean isDeputy = false;
+                    boolean isAuditor = false;
+
+                    switch (guildRole) {
+                        case guildMaster:
+                            isGuildMaster = true;
+                            break;
+
+                        case deputyGuildMaster:
+                            isDeputy = true;
+                            break;
+
+                        case auditor:
+                            isAuditor = true;
+                            break;
+
+                        case member:
+                            // Simply use default values
+                            break;
+
+                        case none:
+                            log.warn("No desired GuildRole 'none' for " + gu.toString()
+                                    + ". This implies that the GuildMembership should be removed.");
+                            break;
                     }
+
+                    // Update the state of this GuildMembership
+                    gu.setGuildMaster(isGuildMaster);
+                    gu.setDeputyGuildMaster(isDeputy);
+                    gu.setAuditor(isAuditor);
+
+                    // Then, merge it into the
+                    entityManager.merge(gu);
+
+                    // Now update to persist.
+                    toReturn[0] = update(toReturn[0]);
                 });
 
+        // Keep the in-memory views and event consumers in sync.
+        if (!diff.isEmpty()) {
+            notifyMembershipChanged(toReturn[0], MembershipChangedEvent.ChangeKind.GUILDS);
+        }
+
         // All Done.
         return toReturn[0];
     }
@@ -553,6 +632,88 @@ public class MembershipServiceBean extends AbstractJpaService implements Members
     // Private helpers
     //
 
+    /**
+     * Adds the contact details, groups and guilds to the supplied SlimMemberVOs, using one scalar query each
+     * per batch of {@link #SLIM_MEMBER_BATCH_SIZE} Memberships.
+     */
+    private void addSlimMemberDetails(final List<SlimMemberVO> slimMembers) {
+
+        final Map<Long, SlimMemberVO> id2SlimMember = new HashMap<>();
+        slimMembers.forEach(current -> id2SlimMember.put(current.getJpaID(), current));
+
+        final List<Long> membershipIDs = new ArrayList<>(id2SlimMember.keySet());
+        for (int fromIndex = 0; fromIndex < membershipIDs.size(); fromIndex += SLIM_MEMBER_BATCH_SIZE) {
+
+            final List<Long> batch = membershipIDs.subList(fromIndex,
+                    Math.min(fromIndex + SLIM_MEMBER_BATCH_SIZE, membershipIDs.size()));
+
+            // Contact details: [membershipID, contactType, addressOrNumber]
+            entityManager.createNamedQuery(Membership.NAMEDQ_GET_CONTACTDETAILS_BY_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_IDS, batch)
+                    .getResultList()
+                    .stream()
+                    .filter(row -> row[1] != null && !((String) row[1]).isEmpty())
+                    .filter(row -> row[2] != null && !((String) row[2]).isEmpty())
+                    .forEach(row -> id2SlimMember.get((Long) row[0]).getContactInfo().add(
+                            new SlimContactInfoVO((String) row[1], (String) row[2])));
+
+            // Groups: [membershipID, groupID, groupName, parentGroupName, organisationName]
+            entityManager.createNamedQuery(GroupMembership.NAMEDQ_GET_GROUP_DATA_BY_MEMBERSHIP_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_IDS, batch)
+                    .getResultList()
+                    .forEach(row -> {
+
+                        final String organisationName = (String) row[4];
+                        final String parentXmlID = row[3] == null
+                                ? null
+                                : Group.getXmlID(organisationName, (String) row[3]);
+
+                        id2SlimMember.get((Long) row[0]).getGroups().add(new SlimGroupMembershipVO(
+                                (Long) row[1],
+                                Group.getXmlID(organisationName, (String) row[2]),
+                                parentXmlID));
+                    });
+
+            // Guilds: [membershipID, guildID, guildName, organisationName, guildMaster, deputy, auditor]
+            entityManager.createNamedQuery(GuildMembership.NAMEDQ_GET_GUILD_DATA_BY_MEMBERSHIP_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_IDS, batch)
+                    .getResultList()
+                    .forEach(row -> id2SlimMember.get((Long) row[0]).getGuilds().add(new SlimGuildMembershipVO(
+                            (Long) row[1],
+                            Guild.getGuildXmlID((String) row[3], (String) row[2]),
+                            GuildMembership.toGuildRole((Boolean) row[4], (Boolean) row[5], (Boolean) row[6]))));
+        }
+
+        slimMembers.forEach(SlimMemberVO::sortDetails);
+    }
+
+    private void notifyMembershipChanged(final Membership changed,
+                                         final MembershipChangedEvent.ChangeKind changeKind) {
+
+        if (membershipDirectoryService != null) {
+            membershipDirectoryService.membershipsChanged(Collections.singletonList(changed));
+        }
+
+        // Notify the index before the hierarchy, since the member counts evicted by the
+        // GroupHierarchyService after commit are recalculated from the (then updated) index.
+        if (groupMembershipIndexService != null) {
+            groupMembershipIndexService.membershipsChanged(Collections.singletonList(changed));
+        }
+        if (groupHierarchyService != null) {
+            groupHierarchyService.membershipsChanged(Collections.singletonList(changed));
+        }
+
+        if (membershipEventPublisher != null) {
+
+            // Changes to the User, GroupMemberships or GuildMemberships do not increase the version of the
+            // Membership by themselves. Force an increase, to let consumers order and de-duplicate events.
+            if (entityManager.contains(changed)) {
+                entityManager.lock(changed, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            }
+            membershipEventPublisher.publishAfterCommit(Collections.singletonList(changed), EnumSet.of(changeKind));
+        }
+    }
+
     private static GuildMembership.GuildRole getRoleFrom(@NotNull final String memberType) {
 
         // #0) Check sanity
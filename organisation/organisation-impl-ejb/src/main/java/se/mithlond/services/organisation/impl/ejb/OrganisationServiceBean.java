@@ -24,6 +24,7 @@ package se.mithlond.services.organisation.impl.ejb;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.GroupHierarchyService;
 import se.mithlond.services.organisation.api.OrganisationService;
 import se.mithlond.services.organisation.api.parameters.CategorizedAddressSearchParameters;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
@@ -43,13 +44,22 @@ import se.mithlond.services.organisation.model.transport.membership.GroupVO;
 import se.mithlond.services.organisation.model.transport.membership.Groups;
 import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -63,7 +73,28 @@ public class OrganisationServiceBean extends AbstractJpaService implements Organ
     // Our Logger
     private static final Logger log = LoggerFactory.getLogger(OrganisationServiceBean.class);
 
-    private static final String[] STD_ADMINISTRATOR_GROUPNAMES = {"Administratörer", "Administrators"};
+    @EJB
+    private GroupHierarchyService groupHierarchyService;
+
+    /**
+     * Default constructor.
+     */
+    public OrganisationServiceBean() {
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param groupHierarchyService A GroupHierarchyService to inject.
+     */
+    public OrganisationServiceBean(final GroupHierarchyService groupHierarchyService) {
+
+        // Delegate
+        this();
+
+        // Assign internal state.
+        this.groupHierarchyService = groupHierarchyService;
+    }
 
     /**
      * {@inheritDoc}
@@ -358,33 +389,104 @@ public class OrganisationServiceBean extends AbstractJpaService implements Organ
             return false;
         }
 
-        // Make this an efficient / CPU-quick test for admin-ness.
-        final Optional<Group> firstAdminGroup = adminCandidate.getGroupMemberships()
+        // All Done.
+        return isAdministratorWithin(adminCandidate, organisation.getId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SortedMap<Organisation, Boolean> resolveAdministrativeScopes(final Membership membership,
+                                                                        final Collection<Long> organisationIDs) {
+
+        // Check sanity
+        Validate.notNull(membership, "membership");
+        Validate.notNull(organisationIDs, "organisationIDs");
+
+        final SortedMap<Organisation, Boolean> toReturn = new TreeMap<>();
+        final List<Long> distinctIDs = organisationIDs.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        if (distinctIDs.isEmpty()) {
+            return Collections.unmodifiableSortedMap(toReturn);
+        }
+
+        // #1) Load all requested Organisations in one query.
+        final List<Organisation> organisations = entityManager.createNamedQuery(
+                Organisation.NAMEDQ_GET_BY_IDS, Organisation.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, distinctIDs)
+                .getResultList();
+        if (organisations.size() < distinctIDs.size()) {
+            log.warn("Found [" + organisations.size() + "] Organisations for the [" + distinctIDs.size()
+                    + "] requested JPA IDs " + distinctIDs);
+        }
+
+        // #2) A Membership can only be an Administrator within its own Organisation.
+        //     Check the hierarchy of its own Organisation's Groups only if requested.
+        final long ownOrganisationID = membership.getOrganisation().getId();
+        final boolean isAdministrator = organisations.stream().anyMatch(org -> org.getId() == ownOrganisationID)
+                && isAdministratorWithin(membership, ownOrganisationID);
+
+        organisations.forEach(org -> toReturn.put(org, isAdministrator && org.getId() == ownOrganisationID));
+
+        // All Done.
+        return Collections.unmodifiableSortedMap(toReturn);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private boolean isAdministratorWithin(final Membership membership, final long organisationID) {
+
+        // Use the cached Group hierarchy closure, unless running without container (i.e. within unit tests).
+        if (groupHierarchyService != null) {
+            return membership.getOrganisation().getId() == organisationID
+                    && groupHierarchyService.isAdministrator(membership);
+        }
+
+        // Walk the Group hierarchy, loaded in one query.
+        return hasAdministratorAncestry(membership, organisationID);
+    }
+
+    private boolean hasAdministratorAncestry(final Membership membership, final long organisationID) {
+
+        final List<Long> groupIDs = membership.getGroupMemberships()
                 .stream()
                 .filter(gr -> !(gr instanceof GuildMembership))
-                .filter(gr -> gr.getGroup().getOrganisation().getId() == organisation.getId())
                 .map(GroupMembership::getGroup)
-                .filter(gr -> {
-
-                    // Loop 'upwards' through all implied Parent Groups.
-                    for (Group currentGroup = gr; currentGroup != null; currentGroup = currentGroup.getParent()) {
+                .filter(gr -> gr.getOrganisation().getId() == organisationID)
+                .map(Group::getId)
+                .collect(Collectors.toList());
+        if (groupIDs.isEmpty()) {
+            return false;
+        }
 
-                        final String currentGroupName = currentGroup.getGroupName();
-                        for (final String currentAdminGroupName : STD_ADMINISTRATOR_GROUPNAMES) {
+        // Map the JPA ID of each Group to its [groupID, parentGroupID, groupName].
+        final Map<Long, Object[]> groupID2Ancestry = new HashMap<>();
+        entityManager.createNamedQuery(Group.NAMEDQ_GET_ANCESTRY_BY_ORGANISATION_IDS, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_IDS, Collections.singletonList(organisationID))
+                .getResultList()
+                .forEach(current -> groupID2Ancestry.put((Long) current[0], current));
 
-                            // Is the currentGroupName listed as an Admin group name.
-                            if (currentAdminGroupName.equalsIgnoreCase(currentGroupName)) {
-                                return true;
-                            }
-                        }
-                    }
+        // Loop 'upwards' through all implied Parent Groups.
+        final Set<Long> visited = new HashSet<>();
+        for (Long groupID : groupIDs) {
 
-                    // Nah.
-                    return false;
+            Object[] current = groupID2Ancestry.get(groupID);
+            while (current != null && visited.add((Long) current[0])) {
 
-                }).findFirst();
+                if (GroupHierarchyServiceBean.isAdministratorGroupName((String) current[2])) {
+                    return true;
+                }
+                current = current[1] == null ? null : groupID2Ancestry.get((Long) current[1]);
+            }
+        }
 
-        // All Done.
-        return firstAdminGroup.isPresent();
+        // Nah.
+        return false;
     }
 }
@@ -0,0 +1,591 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.ReminderService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.ReminderHighWaterMark;
+import se.mithlond.services.shared.spi.algorithms.Surroundings;
+import se.mithlond.services.shared.spi.algorithms.calendar.TimingWheel;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>ReminderService Singleton EJB implementation, holding all reminders due within a rolling window in a
+ * hierarchical {@link TimingWheel} (with one minute ticks). Hence, finding the due reminders every minute
+ * costs no database roundtrip; the database is only queried at startup and when the window needs to be
+ * extended, which happens when less than half of it remains. Changes reported within a transaction are
+ * applied to the wheel when (and only if) the transaction commits.</p>
+ * <p>Due reminders are dispatched as JMS messages holding (at most) {@link #DISPATCH_BATCH_SIZE} reminders
+ * each, with the {@link #MESSAGE_TYPE} property {@link #REMINDERS_DUE} and a text body listing the reminders
+ * as comma-separated {@code activityID:reminderType} pairs, sorted by due time. Reminders whose event has
+ * already passed (e.g. following a long downtime) are skipped. The persisted {@link ReminderHighWaterMark}
+ * is moved after each dispatch; reminders which could not be dispatched are retried on the next timeout, and
+ * the mark is not moved past them. Following a restart, the reminders due after the mark are re-scheduled
+ * (implying that reminders due during a downtime are dispatched late rather than lost).</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Startup
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ReminderServiceBean extends AbstractJpaService implements ReminderService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(ReminderServiceBean.class);
+
+    /**
+     * System property holding the number of minutes before each event that reminders are due.
+     */
+    public static final String LEAD_TIME_MINUTES_PROPERTY = "reminder_lead_time_minutes";
+
+    /**
+     * System property holding the number of minutes of the rolling window of scheduled reminders.
+     */
+    public static final String WINDOW_MINUTES_PROPERTY = "reminder_window_minutes";
+
+    /**
+     * The default lead time, used unless the {@link #LEAD_TIME_MINUTES_PROPERTY} is set.
+     */
+    public static final Duration DEFAULT_LEAD_TIME = Duration.ofHours(24);
+
+    /**
+     * The default rolling window, used unless the {@link #WINDOW_MINUTES_PROPERTY} is set.
+     */
+    public static final Duration DEFAULT_WINDOW = Duration.ofDays(7);
+
+    /**
+     * The name of the {@link ReminderHighWaterMark} of Activity reminders.
+     */
+    public static final String HIGH_WATER_MARK_NAME = "activity_reminders";
+
+    /**
+     * The maximum number of reminders within a single JMS message.
+     */
+    public static final int DISPATCH_BATCH_SIZE = 200;
+
+    /**
+     * The JMS message property holding the type of message.
+     */
+    public static final String MESSAGE_TYPE = "message_type";
+
+    /**
+     * The {@link #MESSAGE_TYPE} of messages holding due reminders.
+     */
+    public static final String REMINDERS_DUE = "reminders_due";
+
+    // The tick length and number of buckets per level of the timing wheel.
+    private static final Duration TICK = Duration.ofMinutes(1);
+    private static final int WHEEL_SIZE = 60;
+
+    /**
+     * The JavaEE-injected JMSContext.
+     */
+    @Inject
+    private JMSContext jmsContext;
+
+    /**
+     * The JMS Topic to which due reminders are dispatched.
+     */
+    @Resource(mappedName = ReminderService.REMINDER_REQUEST)
+    private Topic topic;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // Internal state
+    private final Clock clock;
+    private final Duration leadTime;
+    private final Duration window;
+    private final Object lock = new Object();
+    private TimingWheel<String, Reminder> wheel;
+    private LocalDateTime loadedUntil;
+    private LocalDateTime dispatchedUntil;
+
+    /**
+     * Default constructor, reading the lead time and rolling window from system properties.
+     */
+    public ReminderServiceBean() {
+        this(Clock.systemDefaultZone(),
+                getDuration(LEAD_TIME_MINUTES_PROPERTY, DEFAULT_LEAD_TIME),
+                getDuration(WINDOW_MINUTES_PROPERTY, DEFAULT_WINDOW));
+    }
+
+    /**
+     * Injectable, test-friendly, constructor.
+     *
+     * @param clock    The non-null Clock providing the current time.
+     * @param leadTime The non-negative duration before each event that its reminder is due.
+     * @param window   The positive duration of the rolling window of scheduled reminders.
+     */
+    public ReminderServiceBean(final Clock clock, final Duration leadTime, final Duration window) {
+
+        // Check sanity
+        Validate.notNull(clock, "clock");
+        Validate.notNull(leadTime, "leadTime");
+        Validate.notNull(window, "window");
+        Validate.isTrue(!leadTime.isNegative(), "Cannot handle negative 'leadTime'.");
+        Validate.isTrue(!window.isNegative() && !window.isZero(), "Cannot handle non-positive 'window'.");
+
+        // Assign internal state
+        this.clock = clock;
+        this.leadTime = leadTime;
+        this.window = window;
+    }
+
+    /**
+     * Schedules the reminders within the rolling window at startup. Failures are logged, implying that
+     * the reminders are scheduled on the first timeout instead.
+     */
+    @PostConstruct
+    public void initialize() {
+
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("Could not schedule reminders at startup. Scheduling them on the first timeout.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Schedule(second = "0", minute = "*", hour = "*", persistent = false)
+    public int dispatchDueReminders() {
+
+        synchronized (lock) {
+
+            final LocalDateTime now = LocalDateTime.now(clock);
+            if (wheel == null) {
+                reload();
+            }
+
+            // Extend the rolling window when less than half of it remains.
+            final LocalDateTime horizon = now.plus(window);
+            if (loadedUntil.isBefore(horizon.minus(window.dividedBy(2)))) {
+                load(loadedUntil, horizon, now);
+            }
+
+            final List<Reminder> due = wheel.advanceTo(now).stream()
+                    .filter(current -> current.getEventTime().isAfter(now))
+                    .collect(Collectors.toList());
+
+            LocalDateTime newHighWaterMark = now;
+            int numDispatched = 0;
+            for (int i = 0; i < due.size(); i += DISPATCH_BATCH_SIZE) {
+
+                final List<Reminder> batch = due.subList(i, Math.min(i + DISPATCH_BATCH_SIZE, due.size()));
+                try {
+
+                    send(batch);
+                    numDispatched += batch.size();
+
+                } catch (JMSException | JMSRuntimeException e) {
+
+                    // Retry the remaining reminders on the next timeout, and don't move the mark past them.
+                    final List<Reminder> failed = due.subList(i, due.size());
+                    failed.forEach(current -> wheel.schedule(current.getKey(), current.getDue(), current));
+                    newHighWaterMark = failed.get(0).getDue().minusSeconds(1);
+
+                    log.error("Could not dispatch [" + failed.size() + "] reminders. Retrying.", e);
+                    break;
+                }
+            }
+
+            // No due reminder is left behind the mark; hence, it need only be moved after dispatching.
+            if (numDispatched > 0) {
+
+                moveHighWaterMark(newHighWaterMark);
+                if (log.isDebugEnabled()) {
+                    log.debug("Dispatched [" + numDispatched + "] reminders. " + wheel);
+                }
+            }
+
+            // All Done.
+            return numDispatched;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reload() {
+
+        synchronized (lock) {
+
+            final LocalDateTime now = LocalDateTime.now(clock);
+            dispatchedUntil = getHighWaterMark(now).getDispatchedUntil();
+
+            // Reminders due more than the lead time ago concern events which have already passed.
+            final LocalDateTime from = dispatchedUntil.isAfter(now.minus(leadTime))
+                    ? dispatchedUntil
+                    : now.minus(leadTime);
+
+            wheel = new TimingWheel<>(TICK, WHEEL_SIZE, now);
+            load(from, now.plus(window), now);
+
+            if (log.isInfoEnabled()) {
+                log.info("Scheduled reminders dispatched after [" + dispatchedUntil + "]: " + wheel);
+            }
+
+            // All Done.
+            return wheel.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfScheduledReminders() {
+
+        synchronized (lock) {
+            return wheel == null ? 0 : wheel.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesChanged(final List<Activity> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        applyAfterCommit(changed.stream()
+                .map(activity -> {
+
+                    // Snapshot the Activity, since it may be changed after this transaction.
+                    final long activityID = activity.getId();
+                    final List<Reminder> reminders = activity.isCancelled()
+                            ? Collections.emptyList()
+                            : getReminders(activityID,
+                            activity.getStartTime(),
+                            activity.getLateAdmissionDate(),
+                            activity.getLastAdmissionDate(),
+                            leadTime);
+
+                    return (Runnable) () -> applyToWheel(scheduled -> {
+
+                        cancelReminders(scheduled, activityID);
+                        reminders.stream()
+                                .filter(current -> current.getDue().isAfter(dispatchedUntil)
+                                        && !current.getDue().isAfter(loadedUntil))
+                                .forEach(current -> scheduled.schedule(current.getKey(), current.getDue(), current));
+                    });
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesRemoved(final List<Activity> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        applyAfterCommit(removed.stream()
+                .map(activity -> {
+
+                    final long activityID = activity.getId();
+                    return (Runnable) () -> applyToWheel(scheduled -> cancelReminders(scheduled, activityID));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void admissionsChanged(final Activity activity,
+                                  final Collection<Long> admittedMembershipIDs,
+                                  final Collection<Long> revokedMembershipIDs) {
+
+        // Nothing to do; the reminded Memberships are resolved when the reminders are consumed.
+    }
+
+    /**
+     * Creates the reminders of a single Activity, due the supplied lead time before each event.
+     *
+     * @param activityID        The JPA ID of the Activity.
+     * @param startTime         The non-null start time of the Activity.
+     * @param lateAdmissionDate The optional late admission date of the Activity.
+     * @param lastAdmissionDate The optional last admission date of the Activity.
+     * @param leadTime          The duration before each event that its reminder is due.
+     * @return The reminders of the Activity, sorted by due time.
+     */
+    public static List<Reminder> getReminders(final long activityID,
+                                              final LocalDateTime startTime,
+                                              final LocalDate lateAdmissionDate,
+                                              final LocalDate lastAdmissionDate,
+                                              final Duration leadTime) {
+
+        final List<Reminder> toReturn = new ArrayList<>();
+        toReturn.add(new Reminder(activityID, ReminderType.ACTIVITY_START, startTime, leadTime));
+
+        // Admission deadlines after the start of the Activity are meaningless.
+        if (lateAdmissionDate != null && lateAdmissionDate.atStartOfDay().isBefore(startTime)) {
+            toReturn.add(new Reminder(activityID,
+                    ReminderType.LATE_ADMISSION,
+                    lateAdmissionDate.atStartOfDay(),
+                    leadTime));
+        }
+        if (lastAdmissionDate != null && lastAdmissionDate.plusDays(1).atStartOfDay().isBefore(startTime)) {
+            toReturn.add(new Reminder(activityID,
+                    ReminderType.LAST_ADMISSION,
+                    lastAdmissionDate.plusDays(1).atStartOfDay(),
+                    leadTime));
+        }
+
+        // All Done.
+        toReturn.sort((left, right) -> left.getDue().compareTo(right.getDue()));
+        return toReturn;
+    }
+
+    /**
+     * Converts the supplied reminders to the compact text body of a dispatched message.
+     *
+     * @param reminders The reminders to convert.
+     * @return A comma-separated String of {@code activityID:reminderType} pairs.
+     */
+    public static String toMessageBody(final List<Reminder> reminders) {
+        return reminders.stream()
+                .map(Reminder::getKey)
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Dispatches a batch of due reminders as a JMS message to the {@link ReminderService#REMINDER_REQUEST} Topic.
+     *
+     * @param batch The non-empty batch of due reminders, sorted by due time.
+     * @throws JMSException if the message could not be created.
+     */
+    protected void send(final List<Reminder> batch) throws JMSException {
+
+        final TextMessage msg = jmsContext.createTextMessage(toMessageBody(batch));
+        msg.setStringProperty(MESSAGE_TYPE, REMINDERS_DUE);
+        msg.setIntProperty("reminder_count", batch.size());
+
+        jmsContext.createProducer().send(topic, msg);
+    }
+
+    /**
+     * A reminder about an event of an Activity, due a lead time before the event.
+     */
+    public static final class Reminder {
+
+        // Internal state
+        private final long activityID;
+        private final ReminderType reminderType;
+        private final LocalDateTime eventTime;
+        private final LocalDateTime due;
+
+        /**
+         * Creates a Reminder wrapping the supplied data.
+         *
+         * @param activityID   The JPA ID of the Activity.
+         * @param reminderType The non-null type of the reminder.
+         * @param eventTime    The non-null time of the event about which the reminder is given.
+         * @param leadTime     The non-null duration before the event that the reminder is due.
+         */
+        public Reminder(final long activityID,
+                        final ReminderType reminderType,
+                        final LocalDateTime eventTime,
+                        final Duration leadTime) {
+
+            // Check sanity
+            Validate.notNull(reminderType, "reminderType");
+            Validate.notNull(eventTime, "eventTime");
+            Validate.notNull(leadTime, "leadTime");
+
+            // Assign internal state
+            this.activityID = activityID;
+            this.reminderType = reminderType;
+            this.eventTime = eventTime;
+            this.due = eventTime.minus(leadTime);
+        }
+
+        /**
+         * @return The JPA ID of the Activity.
+         */
+        public long getActivityID() {
+            return activityID;
+        }
+
+        /**
+         * @return The type of this Reminder.
+         */
+        public ReminderType getReminderType() {
+            return reminderType;
+        }
+
+        /**
+         * @return The time of the event about which this Reminder is given.
+         */
+        public LocalDateTime getEventTime() {
+            return eventTime;
+        }
+
+        /**
+         * @return The time when this Reminder is due.
+         */
+        public LocalDateTime getDue() {
+            return due;
+        }
+
+        /**
+         * @return The key of this Reminder, on the form {@code activityID:reminderType}.
+         */
+        public String getKey() {
+            return getKey(activityID, reminderType);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return getKey() + " due " + due;
+        }
+
+        private static String getKey(final long activityID, final ReminderType reminderType) {
+            return activityID + ":" + reminderType.name();
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void load(final LocalDateTime from, final LocalDateTime to, final LocalDateTime now) {
+
+        // The reminders due within (from, to] concern events within (from + leadTime, to + leadTime].
+        final LocalDateTime eventsFrom = from.plus(leadTime);
+        final LocalDateTime eventsTo = to.plus(leadTime);
+
+        entityManager.createNamedQuery(Activity.NAMEDQ_GET_REMINDER_TIMES_BY_DATERANGE, Object[].class)
+                .setParameter(OrganisationPatterns.PARAM_START_TIME, eventsFrom)
+                .setParameter(OrganisationPatterns.PARAM_END_TIME, eventsTo)
+                .setParameter(OrganisationPatterns.PARAM_START_DATE, eventsFrom.toLocalDate().minusDays(1))
+                .setParameter(OrganisationPatterns.PARAM_END_DATE, eventsTo.toLocalDate())
+                .getResultList()
+                .stream()
+                .flatMap(current -> getReminders((Long) current[0],
+                        (LocalDateTime) current[1],
+                        (LocalDate) current[2],
+                        (LocalDate) current[3],
+                        leadTime).stream())
+                .filter(current -> current.getDue().isAfter(from)
+                        && !current.getDue().isAfter(to)
+                        && current.getEventTime().isAfter(now))
+                .forEach(current -> wheel.schedule(current.getKey(), current.getDue(), current));
+
+        loadedUntil = to;
+    }
+
+    private ReminderHighWaterMark getHighWaterMark(final LocalDateTime now) {
+
+        final List<ReminderHighWaterMark> marks = entityManager.createNamedQuery(
+                ReminderHighWaterMark.NAMEDQ_GET_BY_NAME, ReminderHighWaterMark.class)
+                .setParameter(OrganisationPatterns.PARAM_REMINDER_MARK_NAME, HIGH_WATER_MARK_NAME)
+                .getResultList();
+        if (!marks.isEmpty()) {
+            return marks.get(0);
+        }
+
+        // No reminders dispatched before; don't dispatch reminders which were due before now.
+        final ReminderHighWaterMark toReturn = new ReminderHighWaterMark(HIGH_WATER_MARK_NAME, now);
+        entityManager.persist(toReturn);
+        return toReturn;
+    }
+
+    private void moveHighWaterMark(final LocalDateTime newHighWaterMark) {
+
+        final ReminderHighWaterMark mark = getHighWaterMark(newHighWaterMark);
+        if (mark.advanceTo(newHighWaterMark)) {
+            dispatchedUntil = newHighWaterMark;
+        }
+    }
+
+    private static void cancelReminders(final TimingWheel<String, Reminder> scheduled, final long activityID) {
+
+        for (ReminderType current : ReminderType.values()) {
+            scheduled.cancel(Reminder.getKey(activityID, current));
+        }
+    }
+
+    private void applyToWheel(final Consumer<TimingWheel<String, Reminder>> change) {
+
+        synchronized (lock) {
+
+            // Not yet loaded? Then the change is read when the reminders are loaded.
+            if (wheel != null) {
+                change.accept(wheel);
+            }
+        }
+    }
+
+    private void applyAfterCommit(final List<Runnable> changes) {
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, changes);
+    }
+
+    private static Duration getDuration(final String propertyName, final Duration defaultValue) {
+
+        final String value = Surroundings.getProperty(propertyName);
+        return value == null || value.trim().isEmpty()
+                ? defaultValue
+                : Duration.ofMinutes(Long.parseLong(value.trim()));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.List;
+
+/**
+ * Utility to defer actions - typically updates of in-memory views over persisted state - until the
+ * current transaction has committed.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class TransactionCallbacks {
+
+    /*
+     * Hide constructor for utility classes.
+     */
+    private TransactionCallbacks() {
+        // Do nothing
+    }
+
+    /**
+     * Runs the supplied actions when (and only if) the current transaction commits. If the supplied
+     * TransactionSynchronizationRegistry is {@code null} (i.e. when running outside of a container) or no
+     * transaction is active, the actions are run immediately.
+     *
+     * @param registry The TransactionSynchronizationRegistry of the container. May be {@code null}.
+     * @param actions  The non-null actions to run.
+     */
+    public static void runAfterCommit(final TransactionSynchronizationRegistry registry,
+                                      final List<Runnable> actions) {
+
+        if (actions.isEmpty()) {
+            return;
+        }
+
+        if (registry == null || registry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
+
+            // Not within a transaction; run the actions immediately.
+            actions.forEach(Runnable::run);
+            return;
+        }
+
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // Do nothing.
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    actions.forEach(Runnable::run);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.api.UpcomingActivityService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.shared.spi.algorithms.calendar.UpcomingIndex;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>UpcomingActivityService Singleton EJB implementation, holding the upcoming Activities of each Membership
+ * within an {@link UpcomingIndex} (i.e. a skip list of shallow ActivityVOs per Membership JPA ID). The index
+ * is built at startup using two scalar queries, and rebuilt lazily should that fail. Thereafter, changes
+ * reported within a transaction are applied when (and only if) the transaction commits.</p>
+ * <p>Reading upcoming Activities never blocks; applying changes and rebuilding are serialized, implying
+ * that changes committed while rebuilding are applied to the rebuilt index.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@Startup
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class UpcomingActivityServiceBean extends AbstractJpaService implements UpcomingActivityService {
+
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(UpcomingActivityServiceBean.class);
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // Internal state
+    private final Object lock = new Object();
+    private volatile UpcomingIndex<Long, ActivityVO> index;
+
+    /**
+     * Builds the index of upcoming Activities at startup. Failures are logged, implying that the
+     * index is built when first used instead.
+     */
+    @PostConstruct
+    public void initialize() {
+
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Could not build the index of upcoming Activities at startup. Building it when first used.", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Activities getUpcomingActivities(final Membership activeMembership, final int maxResults) {
+
+        // Check sanity
+        Validate.notNull(activeMembership, "activeMembership");
+        Validate.isTrue(maxResults > 0, "Cannot handle non-positive 'maxResults'.");
+
+        final List<ActivityVO> upcoming = getIndex().getUpcoming(activeMembership.getId(),
+                LocalDateTime.now(),
+                maxResults);
+
+        // All Done.
+        return new Activities(upcoming.toArray(new ActivityVO[upcoming.size()]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int rebuild() {
+
+        synchronized (lock) {
+
+            final LocalDateTime now = LocalDateTime.now();
+
+            // #1) Find the admitted Memberships of all upcoming Activities.
+            final Map<Long, List<Long>> activityID2MembershipIDs = new HashMap<>();
+            entityManager.createNamedQuery(Admission.NAMEDQ_GET_UPCOMING_ADMITTED_IDS, Object[].class)
+                    .setParameter(OrganisationPatterns.PARAM_START_TIME, now)
+                    .getResultList()
+                    .forEach(current -> activityID2MembershipIDs
+                            .computeIfAbsent((Long) current[0], k -> new ArrayList<>())
+                            .add((Long) current[1]));
+
+            // #2) Index the ActivityVOs of all upcoming Activities under their admitted Memberships.
+            final UpcomingIndex<Long, ActivityVO> rebuilt = new UpcomingIndex<>();
+            entityManager.createNamedQuery(Activity.NAMEDQ_GET_UPCOMING_VO, ActivityVO.class)
+                    .setParameter(OrganisationPatterns.PARAM_START_TIME, now)
+                    .getResultList()
+                    .forEach(current -> rebuilt.put(current.getJpaID(),
+                            current.getStartTime(),
+                            current.getEndTime(),
+                            current,
+                            activityID2MembershipIDs.getOrDefault(current.getJpaID(), Collections.emptyList()),
+                            now));
+
+            index = rebuilt;
+
+            if (log.isInfoEnabled()) {
+                log.info("Built index of upcoming Activities: " + rebuilt);
+            }
+
+            // All Done.
+            return rebuilt.size();
+        }
+    }
+
+    /**
+     * Removes all ended Activities from the index.
+     */
+    @Schedule(minute = "*/15", hour = "*", persistent = false)
+    public void prune() {
+
+        final UpcomingIndex<Long, ActivityVO> current = index;
+        if (current != null) {
+
+            final int numPruned = current.prune(LocalDateTime.now());
+            if (numPruned > 0 && log.isDebugEnabled()) {
+                log.debug("Pruned [" + numPruned + "] ended Activities from the index of upcoming Activities.");
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesChanged(final List<Activity> changed) {
+
+        // Check sanity
+        Validate.notNull(changed, "changed");
+
+        applyAfterCommit(changed.stream()
+                .map(activity -> {
+
+                    final long activityID = activity.getId();
+                    if (activity.isCancelled()) {
+                        return (Runnable) () -> applyToIndex(upcoming -> upcoming.remove(activityID));
+                    }
+
+                    // Snapshot the Activity, since it may be changed after this transaction.
+                    final ActivityVO snapshot = new ActivityVO(activity);
+                    snapshot.getAdmissions().clear();
+                    final List<Long> membershipIDs = activity.getAdmissions().stream()
+                            .map(adm -> adm.getAdmitted().getId())
+                            .collect(Collectors.toList());
+
+                    return (Runnable) () -> applyToIndex(upcoming -> upcoming.put(activityID,
+                            snapshot.getStartTime(),
+                            snapshot.getEndTime(),
+                            snapshot,
+                            membershipIDs,
+                            LocalDateTime.now()));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void activitiesRemoved(final List<Activity> removed) {
+
+        // Check sanity
+        Validate.notNull(removed, "removed");
+
+        applyAfterCommit(removed.stream()
+                .map(activity -> {
+
+                    final long activityID = activity.getId();
+                    return (Runnable) () -> applyToIndex(upcoming -> upcoming.remove(activityID));
+                })
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void admissionsChanged(final Activity activity,
+                                  final Collection<Long> admittedMembershipIDs,
+                                  final Collection<Long> revokedMembershipIDs) {
+
+        // Check sanity
+        Validate.notNull(activity, "activity");
+        Validate.notNull(admittedMembershipIDs, "admittedMembershipIDs");
+        Validate.notNull(revokedMembershipIDs, "revokedMembershipIDs");
+
+        final long activityID = activity.getId();
+        final List<Long> admitted = new ArrayList<>(admittedMembershipIDs);
+        final List<Long> revoked = new ArrayList<>(revokedMembershipIDs);
+
+        applyAfterCommit(Collections.singletonList(() -> applyToIndex(
+                upcoming -> upcoming.updateKeys(activityID, admitted, revoked))));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private UpcomingIndex<Long, ActivityVO> getIndex() {
+
+        if (index == null) {
+            rebuild();
+        }
+        return index;
+    }
+
+    private void applyToIndex(final Consumer<UpcomingIndex<Long, ActivityVO>> change) {
+
+        synchronized (lock) {
+
+            // Not yet built? Then the change is read when the index is built.
+            if (index != null) {
+                change.accept(index);
+            }
+        }
+    }
+
+    private void applyAfterCommit(final List<Runnable> changes) {
+        TransactionCallbacks.runAfterCommit(transactionSynchronizationRegistry, changes);
+    }
+}
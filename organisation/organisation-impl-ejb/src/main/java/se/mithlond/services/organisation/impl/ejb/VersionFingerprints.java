@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import java.util.List;
+
+/**
+ * Utility to fingerprint the (ordered) rows of version queries, i.e. queries retrieving the JPA IDs, versions
+ * and any other relevant values of entities rendered in a cached or tagged representation. Unlike aggregates
+ * (such as counts and sums of versions), the FNV-1a fingerprint changes whenever any entity is replaced by
+ * another, or has any retrieved value changed.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class VersionFingerprints {
+
+    /**
+     * The FNV-1a offset basis, i.e. the fingerprint of no rows.
+     */
+    public static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    // The FNV-1a prime.
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /*
+     * Hide constructor for utility classes.
+     */
+    private VersionFingerprints() {
+        // Do nothing
+    }
+
+    /**
+     * Folds all values of the supplied rows into the supplied FNV-1a hash.
+     *
+     * @param hash The hash to fold the rows into; use {@link #FNV_OFFSET_BASIS} for the first rows.
+     * @param rows The non-null, ordered, rows of a version query.
+     * @return The resulting hash.
+     */
+    public static long fingerprint(final long hash, final List<Object[]> rows) {
+
+        long toReturn = hash;
+        for (Object[] row : rows) {
+            for (Object value : row) {
+                toReturn = fingerprint(toReturn, value);
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Folds the 8 bytes of the supplied value into the supplied FNV-1a hash.
+     */
+    private static long fingerprint(final long hash, final Object value) {
+
+        final long bits = value == null
+                ? -1L
+                : value instanceof Number ? ((Number) value).longValue() : value.hashCode();
+
+        long toReturn = hash;
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            toReturn ^= (bits >>> shift) & 0xFF;
+            toReturn *= FNV_PRIME;
+        }
+
+        // All Done.
+        return toReturn;
+    }
+}
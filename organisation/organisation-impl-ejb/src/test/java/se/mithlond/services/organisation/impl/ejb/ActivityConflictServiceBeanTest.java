@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.ActivityConflictService;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflictVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityConflicts;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ActivityConflictServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private OrganisationServiceBean organisationServiceBean;
+    private ActivityServiceBean activityServiceBean;
+    private Membership zap;
+    private CategorizedAddress address;
+    private LocalDateTime tomorrowEvening;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        organisationServiceBean = new OrganisationServiceBean();
+        final MembershipServiceBean membershipServiceBean = new MembershipServiceBean();
+        activityServiceBean = new ActivityServiceBean(organisationServiceBean);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(membershipServiceBean);
+        injectEntityManager(activityServiceBean);
+
+        zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses()
+                .get(0);
+
+        // The conflict index only holds Activities which have not yet ended.
+        tomorrowEvening = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1).plusHours(19);
+    }
+
+    @Test
+    public void validateIndexIsBuiltFromDatabase() {
+
+        // Assemble
+        final Long existingID = createActivity(activityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+
+        final ActivityConflictServiceBean unitUnderTest = createUnitUnderTest(
+                ActivityConflictService.ConflictPolicy.WARN);
+
+        // Act
+        final ActivityConflicts overlapping = unitUnderTest.getConflicts(FJODJIM_JPA_ID,
+                createActivityVO(tomorrowEvening.plusHours(1)));
+        final ActivityConflicts touching = unitUnderTest.getConflicts(FJODJIM_JPA_ID,
+                createActivityVO(tomorrowEvening.plusHours(2)));
+
+        // Assert
+        Assert.assertEquals(2, overlapping.getConflicts().size());
+        Assert.assertTrue(overlapping.getConflicts().stream()
+                .allMatch(conflict -> existingID.equals(conflict.getConflictingActivityID())));
+        Assert.assertEquals(ActivityConflictVO.ConflictType.LOCATION,
+                overlapping.getConflicts().get(0).getConflictType());
+        Assert.assertEquals(ActivityConflictVO.ConflictType.MEMBERSHIP,
+                overlapping.getConflicts().get(1).getConflictType());
+        Assert.assertEquals(Long.valueOf(zap.getId()), overlapping.getConflicts().get(1).getMembershipID());
+        Assert.assertEquals(0, touching.getConflicts().size());
+    }
+
+    @Test
+    public void validateIndexIsMaintainedIncrementally() {
+
+        // Assemble
+        final ActivityConflictServiceBean unitUnderTest = createUnitUnderTest(
+                ActivityConflictService.ConflictPolicy.WARN);
+        final ActivityServiceBean notifyingActivityServiceBean = new ActivityServiceBean(
+                organisationServiceBean, unitUnderTest);
+        injectEntityManager(notifyingActivityServiceBean);
+
+        // Build the (empty) index before creating any Activity.
+        final ActivityConflicts before = unitUnderTest.getConflicts(FJODJIM_JPA_ID,
+                createActivityVO(tomorrowEvening));
+
+        // Act
+        final Long existingID = createActivity(notifyingActivityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+
+        final ActivityConflicts after = unitUnderTest.getConflicts(FJODJIM_JPA_ID,
+                createActivityVO(tomorrowEvening));
+
+        // Assert
+        Assert.assertEquals(0, before.getConflicts().size());
+        Assert.assertEquals(2, after.getConflicts().size());
+        Assert.assertTrue(after.getConflicts().stream()
+                .allMatch(conflict -> existingID.equals(conflict.getConflictingActivityID())));
+        Assert.assertEquals(ActivityConflictVO.ConflictType.LOCATION, after.getConflicts().get(0).getConflictType());
+    }
+
+    @Test
+    public void validateConflictingActivityIsRejected() {
+
+        // Assemble
+        final ActivityConflictServiceBean unitUnderTest = createUnitUnderTest(
+                ActivityConflictService.ConflictPolicy.REJECT);
+        final ActivityServiceBean notifyingActivityServiceBean = new ActivityServiceBean(
+                organisationServiceBean, unitUnderTest);
+        injectEntityManager(notifyingActivityServiceBean);
+
+        createActivity(notifyingActivityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+
+        // Act
+        try {
+            createActivity(notifyingActivityServiceBean, tomorrowEvening.plusMinutes(30));
+            Assert.fail("Conflicting Activity should have been rejected.");
+        } catch (IllegalArgumentException expected) {
+
+            // Assert
+            Assert.assertTrue(expected.getMessage().contains("krockar med"));
+        }
+
+        // A non-overlapping Activity is accepted.
+        Assert.assertNotNull(createActivity(notifyingActivityServiceBean, tomorrowEvening.plusDays(1)));
+    }
+
+    @Test
+    public void validateChangesCommittedDuringIndexBuildAreReplayed() throws Exception {
+
+        // Assemble
+        final Long existingID = createActivity(activityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+
+        final Activity existing = entityManager.find(Activity.class, existingID);
+        final ActivityConflictServiceBean unitUnderTest = new ActivityConflictServiceBean(
+                ActivityConflictService.ConflictPolicy.WARN);
+
+        //
+        // Report the Activity as removed (and committed) after the index has read the
+        // Activities, but before it is published. Without a transaction, changes are applied at once.
+        //
+        final EntityManager delegate = entityManager;
+        final EntityManager reportingEntityManager = (EntityManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+
+                    if ("createNamedQuery".equals(method.getName())
+                            && Admission.NAMEDQ_GET_ADMITTED_IDS_BY_ORGANISATION_ID.equals(args[0])) {
+                        unitUnderTest.activitiesRemoved(Collections.singletonList(existing));
+                    }
+
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        final Field entityManagerField = AbstractJpaService.class.getDeclaredField("entityManager");
+        entityManagerField.setAccessible(true);
+        entityManagerField.set(unitUnderTest, reportingEntityManager);
+
+        // Act
+        final ActivityConflicts result = unitUnderTest.getConflicts(FJODJIM_JPA_ID,
+                createActivityVO(tomorrowEvening));
+
+        // Assert
+        Assert.assertEquals(0, result.getConflicts().size());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private ActivityConflictServiceBean createUnitUnderTest(final ActivityConflictService.ConflictPolicy policy) {
+
+        final ActivityConflictServiceBean toReturn = new ActivityConflictServiceBean(policy);
+        injectEntityManager(toReturn);
+        return toReturn;
+    }
+
+    private Long createActivity(final ActivityServiceBean serviceBean, final LocalDateTime startTime) {
+
+        final Activities created = serviceBean.createActivities(
+                new Activities(createActivityVO(startTime)), zap);
+        return created.getActivityVOs()
+                .stream()
+                .map(ActivityVO::getJpaID)
+                .collect(Collectors.toList())
+                .get(0);
+    }
+
+    private ActivityVO createActivityVO(final LocalDateTime startTime) {
+
+        final ActivityVO toReturn = new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                "Fäktning",
+                "Träning i svärdsfäktning",
+                startTime,
+                startTime.plusHours(2),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                startTime.toLocalDate(),
+                false,
+                null,
+                address.getCategory().getCategoryID(),
+                address.getAddress(),
+                address.getShortDesc(),
+                null,
+                false,
+                null);
+
+        // Zap is responsible for all Activities.
+        toReturn.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                zap.getId(),
+                zap.getAlias(),
+                ORG_FJODJIM,
+                startTime.minusDays(1),
+                startTime.minusDays(1),
+                null,
+                true));
+
+        // All Done.
+        return toReturn;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.ActivitySeriesService;
+import se.mithlond.services.organisation.api.parameters.ActivitySearchParameters;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.activity.ActivitySeries;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivitySeriesVO;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.shared.spi.algorithms.calendar.RecurrenceRule;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ActivitySeriesServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private ActivitySeriesServiceBean unitUnderTest;
+    private ActivityServiceBean activityServiceBean;
+    private MembershipServiceBean membershipServiceBean;
+    private Membership zap;
+    private LocalDateTime firstStart;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test unit
+        final OrganisationServiceBean organisationServiceBean = new OrganisationServiceBean();
+        membershipServiceBean = new MembershipServiceBean();
+        activityServiceBean = new ActivityServiceBean(organisationServiceBean);
+        unitUnderTest = new ActivitySeriesServiceBean(organisationServiceBean, Clock.systemDefaultZone());
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(activityServiceBean);
+        injectEntityManager(membershipServiceBean);
+        injectEntityManager(organisationServiceBean);
+
+        zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+
+        // The materialization horizon is relative to the current time within the organisation.
+        firstStart = LocalDateTime.now(zap.getOrganisation().getTimeZone().toZoneId())
+                .truncatedTo(ChronoUnit.DAYS)
+                .plusDays(1)
+                .plusHours(19);
+    }
+
+    @Test
+    public void validateOnlyOccurrencesWithinHorizonAreMaterialized() {
+
+        // Assemble
+        final ActivitySeriesVO seriesVO = createSeriesVO(20);
+        final ActivitySearchParameters searchParameters = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(firstStart.minusDays(1))
+                .withEndPeriod(firstStart.plusWeeks(52))
+                .build();
+
+        // Act
+        final Activities result = unitUnderTest.createActivitySeries(seriesVO, zap);
+        commitAndStartNewTransaction();
+
+        final List<ActivityVO> listed = activityServiceBean.getActivities(searchParameters, zap)
+                .getActivityVOs()
+                .stream()
+                .filter(vo -> vo.getSeriesID() != null)
+                .collect(Collectors.toList());
+
+        // Assert
+        Assert.assertEquals(ActivitySeriesServiceBean.MATERIALIZATION_HORIZON_WEEKS,
+                result.getActivityVOs().size());
+        Assert.assertEquals(ActivitySeriesServiceBean.MATERIALIZATION_HORIZON_WEEKS,
+                listed.stream().filter(vo -> vo.getJpaID() != null).count());
+        Assert.assertEquals(20, listed.size());
+        Assert.assertEquals(firstStart, listed.get(0).getStartTime());
+        Assert.assertEquals(firstStart.plusWeeks(19), listed.get(19).getStartTime());
+        Assert.assertNull(listed.get(19).getJpaID());
+    }
+
+    @Test
+    public void validateMaterializingOccurrencesMovesHighWaterMark() {
+
+        // Assemble
+        unitUnderTest.createActivitySeries(createSeriesVO(10), zap);
+        commitAndStartNewTransaction();
+
+        final LocalDateTime horizon = ActivitySeriesServiceBean.getMaterializationHorizon(firstStart.minusDays(1));
+
+        // Act
+        final int numCreated = unitUnderTest.materializeOccurrences(horizon.plusWeeks(4));
+        final int numCreatedAgain = unitUnderTest.materializeOccurrences(horizon.plusWeeks(4));
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(2, numCreated);
+        Assert.assertEquals(0, numCreatedAgain);
+        Assert.assertEquals(10, getOccurrences().size());
+    }
+
+    @Test
+    public void validateEditingSingleOccurrence() {
+
+        // Assemble
+        unitUnderTest.createActivitySeries(createSeriesVO(20), zap);
+        commitAndStartNewTransaction();
+
+        final long seriesID = getSeries().get(0).getId();
+        final LocalDateTime tenthOccurrence = firstStart.plusWeeks(9);
+        final ActivityVO targetState = new ActivityVO();
+
+        // Act
+        final Activities result = unitUnderTest.updateOccurrence(seriesID,
+                tenthOccurrence,
+                targetState,
+                ActivitySeriesService.EditScope.THIS_OCCURRENCE,
+                zap);
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(1, result.getActivityVOs().size());
+        Assert.assertEquals(1, getSeries().size());
+
+        final List<Activity> occurrences = getOccurrences();
+        Assert.assertEquals(10, occurrences.size());
+        Assert.assertEquals(tenthOccurrence, occurrences.get(9).getSeriesOccurrence());
+    }
+
+    @Test
+    public void validateEditingAllFutureOccurrencesSplitsSeries() {
+
+        // Assemble
+        unitUnderTest.createActivitySeries(createSeriesVO(20), zap);
+        commitAndStartNewTransaction();
+
+        final long seriesID = getSeries().get(0).getId();
+        final LocalDateTime thirdOccurrence = firstStart.plusWeeks(2);
+        final ActivityVO targetState = new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                "Flyttad träning",
+                "Träningen flyttas en timme senare",
+                thirdOccurrence.plusHours(1),
+                thirdOccurrence.plusHours(3),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                null,
+                false,
+                null,
+                null,
+                null,
+                null,
+                null,
+                true,
+                null);
+
+        // Act
+        final Activities result = unitUnderTest.updateOccurrence(seriesID,
+                thirdOccurrence,
+                targetState,
+                ActivitySeriesService.EditScope.ALL_FUTURE,
+                zap);
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(ActivitySeriesServiceBean.MATERIALIZATION_HORIZON_WEEKS - 2,
+                result.getActivityVOs().size());
+
+        final List<ActivitySeries> series = getSeries();
+        Assert.assertEquals(2, series.size());
+        Assert.assertEquals(thirdOccurrence.toLocalDate().minusDays(1),
+                series.get(0).getRecurrenceRule().getUntil());
+        Assert.assertEquals(Integer.valueOf(18), series.get(1).getRecurrenceRule().getCount());
+
+        final List<Activity> occurrences = getOccurrences();
+        Assert.assertEquals(ActivitySeriesServiceBean.MATERIALIZATION_HORIZON_WEEKS, occurrences.size());
+        for (int i = 2; i < occurrences.size(); i++) {
+
+            final Activity current = occurrences.get(i);
+            Assert.assertEquals(series.get(1).getId(), current.getSeries().getId());
+            Assert.assertEquals("Flyttad träning", current.getShortDesc());
+            Assert.assertEquals(firstStart.plusWeeks(i).plusHours(1), current.getStartTime());
+        }
+        Assert.assertEquals("Träning", occurrences.get(1).getShortDesc());
+    }
+
+    @Test
+    public void validateSplittingSeriesNeverRemovesOccurrencesWithAdmissions() {
+
+        // Assemble
+        //
+        // Moving the third occurrence one day later makes the exception date (which is no occurrence of
+        // the original ActivitySeries) exclude the sixth occurrence of the new ActivitySeries. Hence, the
+        // last materialized occurrence is no longer needed, but Zap is admitted to it.
+        //
+        final LocalDateTime thirdOccurrence = firstStart.plusWeeks(2);
+        final LocalDate exception = firstStart.plusWeeks(5).plusDays(1).toLocalDate();
+        unitUnderTest.createActivitySeries(createSeriesVO(20, exception), zap);
+        commitAndStartNewTransaction();
+
+        final long seriesID = getSeries().get(0).getId();
+        final List<Activity> occurrences = getOccurrences();
+        final Activity lastOccurrence = occurrences.get(occurrences.size() - 1);
+        final Admission admission = new Admission(lastOccurrence, zap, LocalDateTime.now(), LocalDateTime.now(),
+                "Zap fäktas också.", false, null);
+        lastOccurrence.getAdmissions().add(admission);
+        entityManager.persist(admission);
+        commitAndStartNewTransaction();
+
+        final ActivityVO targetState = createTargetState("Träning",
+                thirdOccurrence.plusDays(1),
+                thirdOccurrence.plusDays(1).plusHours(2),
+                null);
+
+        // Act
+        try {
+            unitUnderTest.updateOccurrence(seriesID,
+                    thirdOccurrence,
+                    targetState,
+                    ActivitySeriesService.EditScope.ALL_FUTURE,
+                    zap);
+            Assert.fail("Splitting an ActivitySeries should never remove occurrences holding Admissions.");
+        } catch (IllegalArgumentException expected) {
+
+            // Assert
+            Assert.assertTrue(expected.getMessage().contains("anmälningar"));
+        }
+    }
+
+    @Test
+    public void validateEditingAllFutureOccurrencesKeepsCancelledOccurrences() {
+
+        // Assemble
+        unitUnderTest.createActivitySeries(createSeriesVO(20), zap);
+        commitAndStartNewTransaction();
+
+        final long seriesID = getSeries().get(0).getId();
+        final LocalDateTime thirdOccurrence = firstStart.plusWeeks(2);
+        final LocalDateTime fourthOccurrence = firstStart.plusWeeks(3);
+        for (LocalDateTime current : Arrays.asList(thirdOccurrence, fourthOccurrence)) {
+            unitUnderTest.updateOccurrence(seriesID,
+                    current,
+                    createTargetState("Träning", null, null, true),
+                    ActivitySeriesService.EditScope.THIS_OCCURRENCE,
+                    zap);
+            commitAndStartNewTransaction();
+        }
+
+        // Act
+        unitUnderTest.updateOccurrence(seriesID,
+                thirdOccurrence,
+                createTargetState("Omdöpt träning", null, null, null),
+                ActivitySeriesService.EditScope.ALL_FUTURE,
+                zap);
+        commitAndStartNewTransaction();
+
+        // Assert
+        final List<Activity> occurrences = getOccurrences();
+        Assert.assertFalse(occurrences.get(1).isCancelled());
+        Assert.assertTrue(occurrences.get(2).isCancelled());
+        Assert.assertTrue(occurrences.get(3).isCancelled());
+        Assert.assertFalse(occurrences.get(4).isCancelled());
+        Assert.assertEquals("Omdöpt träning", occurrences.get(3).getShortDesc());
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Creates an ActivityVO target state, where null values leave the corresponding properties unchanged.
+     */
+    private ActivityVO createTargetState(final String shortDesc,
+                                         final LocalDateTime startTime,
+                                         final LocalDateTime endTime,
+                                         final Boolean cancelled) {
+
+        return new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                shortDesc,
+                null,
+                startTime,
+                endTime,
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                null,
+                cancelled,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null);
+    }
+
+    private ActivitySeriesVO createSeriesVO(final int count, final LocalDate... exceptions) {
+
+        final CategorizedAddress address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses()
+                .get(0);
+
+        final ActivityVO template = new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                "Träning",
+                "Veckovis träning i svärdsfäktning",
+                firstStart,
+                firstStart.plusHours(2),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                firstStart.toLocalDate(),
+                false,
+                null,
+                address.getCategory().getCategoryID(),
+                address.getAddress(),
+                address.getShortDesc(),
+                null,
+                false,
+                null);
+
+        return new ActivitySeriesVO(null,
+                template,
+                new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1, null, count, Arrays.asList(exceptions)));
+    }
+
+    private List<ActivitySeries> getSeries() {
+        return entityManager.createQuery("select s from ActivitySeries s order by s.id", ActivitySeries.class)
+                .getResultList();
+    }
+
+    private List<Activity> getOccurrences() {
+        return entityManager.createQuery("select a from Activity a where a.series is not null "
+                + "order by a.startTime", Activity.class)
+                .getResultList();
+    }
+}
@@ -33,15 +33,29 @@ import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.transport.OrganisationVO;
 import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityFacetVO;
 import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
 import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+import se.mithlond.services.organisation.model.transport.activity.FreeBusy;
+import se.mithlond.services.organisation.model.transport.activity.MemberBusyVO;
+import se.mithlond.services.organisation.model.transport.activity.TimeIntervalVO;
 import se.mithlond.services.organisation.model.transport.address.CategoriesAndAddresses;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
 
+import javax.persistence.EntityManager;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -120,6 +134,58 @@ public class ActivityServiceBeanTest extends AbstractOrganisationIntegrationTest
         Assert.assertTrue(detailedMap.containsKey("Sköldmålning"));
     }
 
+    @Test
+    public void validateProjectedActivityVOsMatchConvertedEntities() throws Exception {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final ActivitySearchParameters detailSearchParams = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .withDetailedResponsePreferred(true)
+                .build();
+        final ActivitySearchParameters shallowSearchParams = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .build();
+
+        final Map<Long, ActivityVO> expected = unitUnderTest.getActivities(detailSearchParams, zap)
+                .getActivities()
+                .stream()
+                .map(ActivityVO::new)
+                .collect(Collectors.toMap(ActivityVO::getJpaID, vo -> vo));
+        entityManager.clear();
+
+        // Act
+        final Activities result = unitUnderTest.getActivities(shallowSearchParams, zap);
+
+        // Assert
+        Assert.assertEquals(0, result.getActivities().size());
+        Assert.assertEquals(expected.size(), result.getActivityVOs().size());
+
+        for (ActivityVO current : result.getActivityVOs()) {
+
+            final ActivityVO converted = expected.get(current.getJpaID());
+            Assert.assertNotNull(converted);
+
+            Assert.assertEquals(converted.getShortDesc(), current.getShortDesc());
+            Assert.assertEquals(converted.getFullDesc(), current.getFullDesc());
+            Assert.assertEquals(converted.getStartTime(), current.getStartTime());
+            Assert.assertEquals(converted.getEndTime(), current.getEndTime());
+            Assert.assertEquals(0, converted.getCost().getValue().compareTo(current.getCost().getValue()));
+            Assert.assertEquals(converted.getCost().getCurrency(), current.getCost().getCurrency());
+            Assert.assertEquals(converted.getAddressCategory(), current.getAddressCategory());
+            Assert.assertEquals(converted.getAddressShortDescription(), current.getAddressShortDescription());
+            Assert.assertEquals(converted.getLocation().getStreet(), current.getLocation().getStreet());
+            Assert.assertEquals(converted.getLocation().getCity(), current.getLocation().getCity());
+            Assert.assertEquals(converted.getResponsibleGroupName(), current.getResponsibleGroupName());
+            Assert.assertEquals(converted.getOrganisation().getJpaID(), current.getOrganisation().getJpaID());
+            Assert.assertEquals(converted.isCancelled(), current.isCancelled());
+            Assert.assertEquals(converted.getAdmissions(), current.getAdmissions());
+            Assert.assertFalse(current.getAdmissions().isEmpty());
+        }
+    }
+
     @Test
     public void validateAddingActivities() throws Exception {
 
@@ -165,7 +231,8 @@ public class ActivityServiceBeanTest extends AbstractOrganisationIntegrationTest
                 mifflondActivityAddress.getAddress(),
                 mifflondActivityAddress.getShortDesc(),
                 null,
-                true);
+                true,
+                null);
 
         final ActivityVO fjodjimActivityVO = new ActivityVO(0L,
                 fjodjimVO,
@@ -183,7 +250,8 @@ public class ActivityServiceBeanTest extends AbstractOrganisationIntegrationTest
                 fjodjimActivityAddress.getAddress(),
                 fjodjimActivityAddress.getShortDesc(),
                 null,
-                true);
+                true,
+                null);
 
         mifflondActivityVO.getAdmissions().add(new AdmissionVO(
                 AdmissionVO.UNINITIALIZED,
@@ -249,4 +317,291 @@ public class ActivityServiceBeanTest extends AbstractOrganisationIntegrationTest
         Assert.assertEquals(1, shallowFjodjimActivities.getActivityVOs().size());
         Assert.assertEquals(1, shallowMifflondActivities.getActivityVOs().size());
     }
+
+    @Test
+    public void validateStreamingCalendarFeed() throws Exception {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final ActivitySearchParameters allParams = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .build();
+        final ActivitySearchParameters admittedParams = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withMembershipIDs(zap.getId())
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .build();
+        final List<String> allShortDescs = new ArrayList<>();
+        final List<String> admittedShortDescs = new ArrayList<>();
+
+        // Act
+        final String allVersion = unitUnderTest.getCalendarFeedVersion(allParams);
+        final String admittedVersion = unitUnderTest.getCalendarFeedVersion(admittedParams);
+        final int numAll = unitUnderTest.streamCalendarFeed(allParams, a -> allShortDescs.add(a.getShortDesc()));
+        final int numAdmitted = unitUnderTest.streamCalendarFeed(admittedParams,
+                a -> admittedShortDescs.add(a.getShortDesc()));
+
+        // Assert
+        Assert.assertEquals(2, numAll);
+        Assert.assertEquals(Arrays.asList("Svärdsfäktning", "Sköldmålning"), allShortDescs);
+        Assert.assertEquals(1, numAdmitted);
+        Assert.assertEquals(Collections.singletonList("Sköldmålning"), admittedShortDescs);
+
+        Assert.assertNotEquals(allVersion, admittedVersion);
+        Assert.assertEquals(allVersion, unitUnderTest.getCalendarFeedVersion(allParams));
+        Assert.assertEquals(1, allParams.getOrganisationIDs().size());
+        Assert.assertEquals(0, allParams.getMembershipIDs().size());
+    }
+
+    @Test
+    public void validateStreamingCalendarFeedAcrossBatches() throws Exception {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final CategorizedAddress address = unitUnderTest.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses().get(0);
+        final LocalDateTime firstStartTime = LocalDateTime.of(2030, Month.MARCH, 1, 18, 0);
+        final int numActivities = 2 * ActivityServiceBean.CALENDAR_FEED_BATCH_SIZE + 1;
+
+        // Three Activities share each startTime, so batches end in the middle of equal startTimes.
+        final List<Long> createdIDs = new ArrayList<>();
+        for (int i = 0; i < numActivities; i++) {
+            createdIDs.add(PersistenceHelper.createActivity(true,
+                    zap,
+                    "Feed " + i,
+                    firstStartTime.plusHours(i / 3),
+                    new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                    address).getId());
+        }
+        commitAndStartNewTransaction();
+
+        final ActivitySearchParameters params = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(firstStartTime)
+                .withEndPeriod(firstStartTime.plusYears(1))
+                .build();
+        final List<Activity> streamed = new ArrayList<>();
+        final Activity managed = entityManager.find(Activity.class, createdIDs.get(0));
+
+        // Act
+        final int numStreamed = unitUnderTest.streamCalendarFeed(params, streamed::add);
+
+        // Assert
+        Assert.assertEquals(numActivities, numStreamed);
+        Assert.assertEquals(numActivities, streamed.stream().map(Activity::getId).distinct().count());
+        for (int i = 1; i < streamed.size(); i++) {
+
+            final Activity previous = streamed.get(i - 1);
+            final Activity current = streamed.get(i);
+            Assert.assertTrue(previous.getStartTime().isBefore(current.getStartTime())
+                    || (previous.getStartTime().equals(current.getStartTime())
+                    && previous.getId() < current.getId()));
+        }
+        Assert.assertTrue(entityManager.contains(managed));
+    }
+
+    @Test
+    public void validateCalendarFeedVersionDetectsRenderedDataChanges() throws Exception {
+
+        // Assemble
+        final ActivitySearchParameters params = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .build();
+        final List<Long> activityIDs = new ArrayList<>();
+        unitUnderTest.streamCalendarFeed(params, a -> activityIDs.add(a.getId()));
+        final String originalVersion = unitUnderTest.getCalendarFeedVersion(params);
+
+        // Act
+        // Bulk updates bypass the JPA versions of the Activity and the Organisation.
+        entityManager.createQuery("update Activity a set a.location.city = 'Ankeborg' where a.id = :id")
+                .setParameter("id", activityIDs.get(0))
+                .executeUpdate();
+        commitAndStartNewTransaction();
+        final String relocatedVersion = unitUnderTest.getCalendarFeedVersion(params);
+
+        entityManager.createQuery("update Organisation o set o.timeZoneID = 'America/New_York' where o.id = :id")
+                .setParameter("id", FJODJIM_JPA_ID)
+                .executeUpdate();
+        commitAndStartNewTransaction();
+        final String rezonedVersion = unitUnderTest.getCalendarFeedVersion(params);
+
+        // Assert
+        Assert.assertEquals(2, activityIDs.size());
+        Assert.assertNotEquals(originalVersion, relocatedVersion);
+        Assert.assertNotEquals(relocatedVersion, rezonedVersion);
+        Assert.assertEquals(rezonedVersion, unitUnderTest.getCalendarFeedVersion(params));
+    }
+
+    @Test
+    public void validateFacetedSearch() throws Exception {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final ActivitySearchParameters params = ActivitySearchParameters.builder()
+                .withOrganisationIDs(FJODJIM_JPA_ID)
+                .withStartPeriod(LocalDateTime.of(2016, Month.SEPTEMBER, 16, 0, 0))
+                .withFacets(ActivityFacetVO.Facet.MONTH,
+                        ActivityFacetVO.Facet.RESPONSIBLE_GROUP,
+                        ActivityFacetVO.Facet.ADMITTED)
+                .withPage(1, 1)
+                .build();
+
+        // Act
+        final Activities result = unitUnderTest.searchActivities(params, zap);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(2L), result.getTotalCount());
+        Assert.assertEquals(1, result.getActivityVOs().size());
+        Assert.assertEquals("Sköldmålning", result.getActivityVOs().get(0).getShortDesc());
+
+        Assert.assertEquals(Arrays.asList(
+                new ActivityFacetVO(ActivityFacetVO.Facet.MONTH, "2016-10", 2L),
+                new ActivityFacetVO(ActivityFacetVO.Facet.RESPONSIBLE_GROUP, "", 2L),
+                new ActivityFacetVO(ActivityFacetVO.Facet.ADMITTED, "false", 1L),
+                new ActivityFacetVO(ActivityFacetVO.Facet.ADMITTED, "true", 1L)), result.getFacets());
+    }
+
+    @Test
+    public void validateFreeBusy() throws Exception {
+
+        // Assemble
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final LocalDateTime from = LocalDateTime.of(2016, Month.OCTOBER, 1, 0, 0);
+        final LocalDateTime to = LocalDateTime.of(2016, Month.NOVEMBER, 1, 0, 0);
+
+        // Act
+        final FreeBusy result = unitUnderTest.getFreeBusy(FJODJIM_JPA_ID,
+                Arrays.asList(zap.getId(), aragorn.getId(), zap.getId()), from, to);
+
+        // Assert
+        Assert.assertEquals(2, result.getMembers().size());
+
+        final Map<Long, List<TimeIntervalVO>> busy = result.getMembers()
+                .stream()
+                .collect(Collectors.toMap(MemberBusyVO::getMembershipID, MemberBusyVO::getBusy));
+        Assert.assertEquals(1, busy.get(aragorn.getId()).size());
+        Assert.assertEquals(LocalDateTime.of(2016, Month.OCTOBER, 5, 18, 0),
+                busy.get(aragorn.getId()).get(0).getStart());
+        Assert.assertEquals(1, busy.get(zap.getId()).size());
+        Assert.assertEquals(LocalDateTime.of(2016, Month.OCTOBER, 28, 21, 30),
+                busy.get(zap.getId()).get(0).getEnd());
+
+        final List<TimeIntervalVO> free = result.getFree();
+        Assert.assertEquals(3, free.size());
+        Assert.assertEquals(from, free.get(0).getStart());
+        Assert.assertEquals(LocalDateTime.of(2016, Month.OCTOBER, 5, 20, 0), free.get(1).getStart());
+        Assert.assertEquals(LocalDateTime.of(2016, Month.OCTOBER, 28, 19, 30), free.get(1).getEnd());
+        Assert.assertEquals(to, free.get(2).getEnd());
+    }
+
+    @Test
+    public void validateLookupStatementCountIsIndependentOfNumberOfActivities() throws Exception {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Membership pledra = membershipServiceBean.getMembership(ORG_FJODJIM, "Pledra");
+
+        // Act
+        final int statementsForOneActivity = countStatementsForCreatingActivities(1, zap, pledra);
+        final int statementsForTenActivities = countStatementsForCreatingActivities(10, zap, pledra);
+
+        // Assert
+        // Organisation, address Category and Memberships should each be fetched in a single query,
+        // irrespective of the number of ActivityVOs and AdmissionVOs.
+        Assert.assertTrue(statementsForOneActivity > 0);
+        Assert.assertEquals(statementsForOneActivity, statementsForTenActivities);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private int countStatementsForCreatingActivities(final int numActivities,
+                                                     final Membership responsible,
+                                                     final Membership participant) {
+
+        // Wrap the EntityManager within a proxy counting all created queries and finds.
+        final AtomicInteger statementCounter = new AtomicInteger();
+        final EntityManager countingEntityManager = (EntityManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+
+                    final String methodName = method.getName();
+                    if ((methodName.startsWith("create") && methodName.contains("Query"))
+                            || methodName.equals("find")) {
+                        statementCounter.incrementAndGet();
+                    }
+
+                    try {
+                        return method.invoke(entityManager, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        final ActivityServiceBean countingUnitUnderTest = new ActivityServiceBean(organisationServiceBean);
+        try {
+            final Field entityManagerField = AbstractJpaService.class.getDeclaredField("entityManager");
+            entityManagerField.setAccessible(true);
+            entityManagerField.set(countingUnitUnderTest, countingEntityManager);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not inject counting EntityManager.", e);
+        }
+
+        final CategorizedAddress address = unitUnderTest.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses().get(0);
+        final Activities toCreate = new Activities();
+
+        for (int i = 0; i < numActivities; i++) {
+
+            final ActivityVO current = new ActivityVO(0L,
+                    new OrganisationVO(responsible.getOrganisation()),
+                    "Kvällsfika " + i,
+                    "Välkommen till kvällsfika nummer " + i,
+                    LocalDateTime.of(2016, Month.NOVEMBER, 1, 18, 0).plusDays(i),
+                    LocalDateTime.of(2016, Month.NOVEMBER, 1, 21, 0).plusDays(i),
+                    new Amount(BigDecimal.ZERO, WellKnownCurrency.SEK),
+                    new Amount(BigDecimal.ZERO, WellKnownCurrency.SEK),
+                    LocalDate.of(2016, Month.OCTOBER, 30),
+                    LocalDate.of(2016, Month.OCTOBER, 31),
+                    false,
+                    null,
+                    address.getCategory().getCategoryID(),
+                    address.getAddress(),
+                    address.getShortDesc(),
+                    null,
+                    true,
+                    null);
+
+            current.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                    responsible.getId(),
+                    responsible.getAlias(),
+                    responsible.getOrganisation().getOrganisationName(),
+                    aTimestamp,
+                    aTimestamp,
+                    null,
+                    true));
+            current.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                    participant.getId(),
+                    participant.getAlias(),
+                    participant.getOrganisation().getOrganisationName(),
+                    aTimestamp,
+                    aTimestamp,
+                    null,
+                    false));
+
+            toCreate.addActivityVOs(current);
+        }
+
+        // Create the Activities, and verify that they were all created.
+        final Activities created = countingUnitUnderTest.createActivities(toCreate, responsible);
+        Assert.assertEquals(numActivities, created.getActivityVOs().size());
+
+        // All Done.
+        return statementCounter.get();
+    }
 }
@@ -0,0 +1,298 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+import se.mithlond.services.shared.test.entity.JpaIdMutator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class AdmissionDiffTest {
+
+    // Shared state
+    private static final int NUM_ACTIVITIES = 500;
+    private static final int NUM_MEMBERSHIPS = 200;
+
+    private Organisation organisation;
+    private Category category;
+    private List<Membership> memberships;
+    private LocalDateTime aTimestamp;
+
+    @Before
+    public void setupSharedState() {
+
+        aTimestamp = LocalDateTime.of(2016, Month.JUNE, 20, 17, 0);
+        organisation = PersistenceHelper.createOrganisation(false, "Mifflond", "Göteborgs Toksällskap", "mifflond.se");
+        JpaIdMutator.setId(organisation, 1L);
+        category = new Category("Restaurang", CategorizedAddress.ACTIVITY_CLASSIFICATION, "Restaurang eller Café");
+
+        // Memberships have JPA IDs [1 - NUM_MEMBERSHIPS]
+        memberships = new ArrayList<>();
+        memberships.add(null);
+        for (int i = 1; i <= NUM_MEMBERSHIPS; i++) {
+
+            final Membership current = new Membership("alias_" + i, null, "alias" + i, true,
+                    PersistenceHelper.createUser(false, "user" + i, "First" + i, "Last" + i),
+                    organisation);
+            JpaIdMutator.setId(current, i);
+            memberships.add(current);
+        }
+    }
+
+    @Test
+    public void validateMergeRules() {
+
+        // Assemble
+        final Activity activity = createActivity(1L);
+        final List<Admission> existing = Arrays.asList(
+                createAdmission(activity, 1, true),
+                createAdmission(activity, 2, false),
+                createAdmission(activity, 3, false),
+                createAdmission(activity, 5, false));
+        final List<AdmissionVO> desired = Arrays.asList(
+                createAdmissionVO(activity, 1, false),
+                createAdmissionVO(activity, 2, true),
+                createAdmissionVO(activity, 3, false),
+                createAdmissionVO(activity, 4, true),
+                createAdmissionVO(activity, 6, false));
+
+        // Act
+        final AdmissionDiff result = AdmissionDiff.merge(activity, existing, desired);
+
+        // Assert
+        Assert.assertFalse(result.isEmpty());
+        Assert.assertSame(activity, result.getActivity());
+        Assert.assertEquals(Arrays.asList(4L), getMembershipIDs(result.getToCreate()));
+        Assert.assertEquals(1, result.getToModify().size());
+        Assert.assertSame(existing.get(1), result.getToModify().get(0).getKey());
+        Assert.assertSame(desired.get(1), result.getToModify().get(0).getValue());
+        Assert.assertEquals(1, result.getToDelete().size());
+        Assert.assertSame(existing.get(2), result.getToDelete().get(0));
+
+        // The only responsible Admission cannot be removed.
+        Assert.assertEquals(Arrays.asList(1L), getMembershipIDs(result.getRejected()));
+    }
+
+    @Test
+    public void validateAtLeastOneResponsibleRemains() {
+
+        // Assemble
+        final Activity activity = createActivity(1L);
+        final List<Admission> existing = Arrays.asList(
+                createAdmission(activity, 7, true),
+                createAdmission(activity, 8, true));
+        final List<AdmissionVO> desired = Arrays.asList(
+                createAdmissionVO(activity, 7, false),
+                createAdmissionVO(activity, 8, false));
+
+        // Act
+        final AdmissionDiff result = AdmissionDiff.merge(activity, existing, desired);
+
+        // Assert
+        Assert.assertEquals(1, result.getToDelete().size());
+        Assert.assertSame(existing.get(0), result.getToDelete().get(0));
+        Assert.assertEquals(Arrays.asList(8L), getMembershipIDs(result.getRejected()));
+    }
+
+    @Test
+    public void validateResponsibleGroupDoesNotPermitRemovingLastResponsibleAdmission() {
+
+        // Assemble
+        final Activity activity = createActivity(1L);
+        activity.setResponsible(new Group("Festkommittén", "Ansvariga för fester", organisation, null, "fest"));
+        final List<Admission> existing = Arrays.asList(
+                createAdmission(activity, 7, true),
+                createAdmission(activity, 8, true));
+        final List<AdmissionVO> desired = Arrays.asList(
+                createAdmissionVO(activity, 7, false),
+                createAdmissionVO(activity, 8, false));
+
+        // Act
+        final AdmissionDiff result = AdmissionDiff.merge(activity, existing, desired);
+
+        // Assert
+        Assert.assertEquals(1, result.getToDelete().size());
+        Assert.assertSame(existing.get(0), result.getToDelete().get(0));
+        Assert.assertEquals(Arrays.asList(8L), getMembershipIDs(result.getRejected()));
+    }
+
+    @Test
+    public void validateNoChangesYieldsEmptyDiff() {
+
+        // Assemble
+        final Activity activity = createActivity(1L);
+        final List<Admission> existing = Arrays.asList(
+                createAdmission(activity, 1, true),
+                createAdmission(activity, 2, false));
+
+        // Act
+        final AdmissionDiff result = AdmissionDiff.merge(activity, existing, new ArrayList<>());
+
+        // Assert
+        Assert.assertTrue(result.isEmpty());
+        Assert.assertEquals(0, result.getRejected().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnUnsortedDesiredAdmissions() {
+
+        // Assemble
+        final Activity activity = createActivity(1L);
+        final List<AdmissionVO> desired = Arrays.asList(
+                createAdmissionVO(activity, 4, true),
+                createAdmissionVO(activity, 2, true));
+
+        // Act & Assert
+        AdmissionDiff.merge(activity, new ArrayList<>(), desired);
+    }
+
+    @Test
+    public void validateMergingManyActivitiesAndAdmissions() {
+
+        // Assemble
+        //
+        // Each Activity has existing Admissions for all even membership IDs, where membership 2 is responsible.
+        // The desired state holds AdmissionVOs for all memberships, where memberships whose IDs are
+        // multiples of 3 should not be admitted. Hence, for each Activity ...
+        //
+        // toCreate: odd IDs which are not multiples of 3  --> 100 - 33 = 67
+        // toModify: even IDs which are not multiples of 3 --> 100 - 33 = 67
+        // toDelete: even IDs which are multiples of 3     --> 33
+        //
+        final List<Activity> activities = new ArrayList<>();
+        final List<List<Admission>> existingAdmissions = new ArrayList<>();
+        final List<List<AdmissionVO>> desiredAdmissions = new ArrayList<>();
+
+        for (long activityID = 1; activityID <= NUM_ACTIVITIES; activityID++) {
+
+            final Activity activity = createActivity(activityID);
+            final List<Admission> existing = new ArrayList<>();
+            final List<AdmissionVO> desired = new ArrayList<>();
+
+            for (int membershipID = 1; membershipID <= NUM_MEMBERSHIPS; membershipID++) {
+                if (membershipID % 2 == 0) {
+                    existing.add(createAdmission(activity, membershipID, membershipID == 2));
+                }
+                desired.add(createAdmissionVO(activity, membershipID, membershipID % 3 != 0));
+            }
+
+            activities.add(activity);
+            existingAdmissions.add(existing);
+            desiredAdmissions.add(desired);
+        }
+
+        // Act
+        final List<AdmissionDiff> result = new ArrayList<>();
+        for (int i = 0; i < activities.size(); i++) {
+            result.add(AdmissionDiff.merge(activities.get(i), existingAdmissions.get(i), desiredAdmissions.get(i)));
+        }
+
+        // Assert
+        Assert.assertEquals(NUM_ACTIVITIES, result.size());
+        for (AdmissionDiff current : result) {
+            Assert.assertEquals(67, current.getToCreate().size());
+            Assert.assertEquals(67, current.getToModify().size());
+            Assert.assertEquals(33, current.getToDelete().size());
+            Assert.assertEquals(0, current.getRejected().size());
+        }
+
+        Assert.assertEquals(NUM_ACTIVITIES * 67, result.stream().mapToInt(d -> d.getToCreate().size()).sum());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Activity createActivity(final long jpaID) {
+
+        final LocalDateTime startTime = aTimestamp.plusDays(jpaID);
+        final Activity toReturn = new Activity("Aktivitet " + jpaID,
+                "Full description for aktivitet " + jpaID,
+                startTime,
+                startTime.plusHours(2),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                new Amount(BigDecimal.valueOf(25L), WellKnownCurrency.SEK),
+                startTime.minusDays(2L).toLocalDate(),
+                startTime.minusDays(2L).toLocalDate(),
+                false,
+                "Midgårda Dräkt",
+                category,
+                new Address(null, null, "Linnégatan", "52", "Göteborg", "413 08", "Sverige", "Hello Monkey"),
+                "Hello Monkey",
+                organisation,
+                null,
+                true);
+        JpaIdMutator.setId(toReturn, jpaID);
+        return toReturn;
+    }
+
+    private Admission createAdmission(final Activity activity, final int membershipID, final boolean responsible) {
+        return new Admission(activity,
+                memberships.get(membershipID),
+                aTimestamp,
+                aTimestamp,
+                null,
+                responsible,
+                null);
+    }
+
+    private AdmissionVO createAdmissionVO(final Activity activity, final int membershipID, final boolean admitted) {
+
+        final Membership membership = memberships.get(membershipID);
+        final AdmissionVO toReturn = new AdmissionVO(activity.getId(),
+                membership.getId(),
+                membership.getAlias(),
+                organisation.getOrganisationName(),
+                aTimestamp,
+                aTimestamp,
+                null,
+                false);
+        toReturn.setAdmitted(admitted);
+        return toReturn;
+    }
+
+    private static List<Long> getMembershipIDs(final List<AdmissionVO> admissionVOs) {
+        return admissionVOs.stream().map(AdmissionVO::getMembershipID).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.AdmissionService;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+import se.mithlond.services.organisation.model.transport.activity.Admissions;
+import se.mithlond.services.organisation.model.user.User;
+import se.mithlond.services.shared.spi.jpa.AbstractJpaService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Status;
+import javax.transaction.UserTransaction;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class AdmissionServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private static final int NUM_THREADS = 200;
+    private static final int MAX_PARTICIPANTS = 50;
+
+    private List<Membership> memberships;
+    private long activityID;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        final MembershipServiceBean membershipServiceBean = new MembershipServiceBean();
+        final ActivityServiceBean activityServiceBean = new ActivityServiceBean(new OrganisationServiceBean());
+        injectEntityManager(membershipServiceBean);
+        injectEntityManager(activityServiceBean);
+
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final CategorizedAddress address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses().get(0);
+
+        // Create an Activity with a participant cap in the future; Aragorn is admitted as responsible.
+        final Activity activity = PersistenceHelper.createActivity(true,
+                aragorn,
+                "Ölprovning",
+                LocalDateTime.now().plusDays(30),
+                new Amount(BigDecimal.valueOf(100L), WellKnownCurrency.SEK),
+                address);
+        activity.setMaxParticipants(MAX_PARTICIPANTS);
+        activityID = activity.getId();
+
+        // Create NUM_THREADS Memberships competing for admissions.
+        memberships = new ArrayList<>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+
+            final User user = PersistenceHelper.createUser(true, "user_" + i, "Förnamn" + i, "Efternamn" + i);
+            final Membership current = new Membership("Medlem_" + i, null, "medlem" + i, true, user,
+                    aragorn.getOrganisation());
+            entityManager.persist(current);
+            memberships.add(current);
+        }
+
+        entityManager.flush();
+        commitAndStartNewTransaction();
+    }
+
+    @Test
+    public void validateConcurrentAdmissionsRespectParticipantCap() throws Exception {
+
+        // Assemble
+        final EntityManagerFactory factory = entityManager.getEntityManagerFactory();
+
+        // Act
+        final Map<AdmissionService.AdmissionOutcome, Integer> firstRound = admitConcurrently(factory);
+        final Map<AdmissionService.AdmissionOutcome, Integer> secondRound = admitConcurrently(factory);
+
+        // Assert
+        // Aragorn occupies one of the MAX_PARTICIPANTS places.
+        final int expectedAdmitted = MAX_PARTICIPANTS - 1;
+
+        Assert.assertEquals(expectedAdmitted, getCount(firstRound, AdmissionService.AdmissionOutcome.ADMITTED));
+        Assert.assertEquals(NUM_THREADS - expectedAdmitted,
+                getCount(firstRound, AdmissionService.AdmissionOutcome.FULL));
+        Assert.assertEquals(0, getCount(firstRound, AdmissionService.AdmissionOutcome.ALREADY_ADMITTED));
+
+        Assert.assertEquals(0, getCount(secondRound, AdmissionService.AdmissionOutcome.ADMITTED));
+        Assert.assertEquals(expectedAdmitted,
+                getCount(secondRound, AdmissionService.AdmissionOutcome.ALREADY_ADMITTED));
+        Assert.assertEquals(NUM_THREADS - expectedAdmitted,
+                getCount(secondRound, AdmissionService.AdmissionOutcome.FULL));
+
+        final Long numAdmissions = entityManager.createQuery(
+                "select count(adm) from Admission adm where adm.activity.id = :id", Long.class)
+                .setParameter("id", activityID)
+                .getSingleResult();
+        Assert.assertEquals(MAX_PARTICIPANTS, numAdmissions.intValue());
+    }
+
+    @Test
+    public void validateUpdatingAdmissionsRespectsParticipantCap() {
+
+        // Assemble
+        final EntityManager threadEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+        try {
+            final AdmissionServiceBean admissionServiceBean = createUnitUnderTest(threadEntityManager);
+            for (int i = 0; i < MAX_PARTICIPANTS - 1; i++) {
+                Assert.assertEquals(AdmissionService.AdmissionOutcome.ADMITTED,
+                        admissionServiceBean.admit(memberships.get(i), activityID, null));
+            }
+        } finally {
+            threadEntityManager.close();
+        }
+
+        final ActivityServiceBean activityServiceBean = new ActivityServiceBean(new OrganisationServiceBean());
+        injectEntityManager(activityServiceBean);
+
+        final Membership latecomer = entityManager.find(Membership.class, memberships.get(MAX_PARTICIPANTS).getId());
+        final Admissions admissions = new Admissions();
+        admissions.getDetails().add(new AdmissionVO(activityID,
+                latecomer.getId(),
+                latecomer.getAlias(),
+                ORG_FJODJIM,
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                null,
+                false));
+
+        // Act
+        try {
+            activityServiceBean.updateAdmissions(latecomer, admissions);
+            Assert.fail("Admitting beyond the participant cap should yield an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // Assert
+        final Long numAdmissions = entityManager.createQuery(
+                "select count(adm) from Admission adm where adm.activity.id = :id", Long.class)
+                .setParameter("id", activityID)
+                .getSingleResult();
+        Assert.assertEquals(MAX_PARTICIPANTS, numAdmissions.intValue());
+    }
+
+    @Test
+    public void validateParticipantCapAssignedByCreatingActivities() {
+
+        // Assemble
+        final ActivityServiceBean activityServiceBean = new ActivityServiceBean(new OrganisationServiceBean());
+        injectEntityManager(activityServiceBean);
+
+        final Membership aragorn = getResponsibleMembership();
+        final CategorizedAddress address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses().get(0);
+        final LocalDateTime startTime = LocalDateTime.now().plusDays(40);
+
+        // Aragorn is responsible for an Activity with room for 3 participants.
+        final ActivityVO toCreate = new ActivityVO(null,
+                new OrganisationVO(aragorn.getOrganisation()),
+                "Vinprovning",
+                "Vi provar viner från Dorwinion",
+                startTime,
+                startTime.plusHours(3),
+                new Amount(BigDecimal.valueOf(200L), WellKnownCurrency.SEK),
+                null,
+                null,
+                startTime.toLocalDate().minusDays(1),
+                false,
+                null,
+                address.getCategory().getCategoryID(),
+                address.getAddress(),
+                address.getShortDesc(),
+                null,
+                false,
+                3);
+        toCreate.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                aragorn.getId(),
+                aragorn.getAlias(),
+                ORG_FJODJIM,
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                null,
+                true));
+
+        final ActivityVO created = activityServiceBean.createActivities(new Activities(toCreate), aragorn)
+                .getActivityVOs()
+                .get(0);
+        commitAndStartNewTransaction();
+
+        // Act
+        final List<AdmissionService.AdmissionOutcome> outcomes = new ArrayList<>();
+        final EntityManager threadEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+        try {
+            final AdmissionServiceBean admissionServiceBean = createUnitUnderTest(threadEntityManager);
+            for (int i = 0; i < 4; i++) {
+                outcomes.add(admissionServiceBean.admit(memberships.get(i), created.getJpaID(), null));
+            }
+        } finally {
+            threadEntityManager.close();
+        }
+
+        // Assert
+        Assert.assertEquals(Integer.valueOf(3), created.getMaxParticipants());
+        Assert.assertEquals(Integer.valueOf(3),
+                entityManager.find(Activity.class, created.getJpaID()).getMaxParticipants());
+        Assert.assertEquals(Arrays.asList(AdmissionService.AdmissionOutcome.ADMITTED,
+                AdmissionService.AdmissionOutcome.ADMITTED,
+                AdmissionService.AdmissionOutcome.FULL,
+                AdmissionService.AdmissionOutcome.FULL), outcomes);
+    }
+
+    @Test
+    public void validateLastResponsibleAdmissionIsNotRevoked() {
+
+        // Assemble
+        final Membership aragorn = getResponsibleMembership();
+
+        // Act
+        revokeAdmission(aragorn);
+
+        // Assert
+        Assert.assertEquals(1, getNumAdmissions(aragorn));
+    }
+
+    @Test
+    public void validateResponsibleGroupDoesNotPermitRevokingLastResponsibleAdmission() {
+
+        // Assemble
+        final Membership aragorn = getResponsibleMembership();
+        final Group responsibleGroup = entityManager.createNamedQuery(Group.NAMEDQ_GET_BY_ORGANISATION, Group.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, ORG_FJODJIM)
+                .getResultList()
+                .get(0);
+        entityManager.find(Activity.class, activityID).setResponsible(responsibleGroup);
+        commitAndStartNewTransaction();
+
+        // Act
+        revokeAdmission(aragorn);
+
+        // Assert
+        Assert.assertEquals(1, getNumAdmissions(aragorn));
+    }
+
+    @Test
+    public void validateUpdatingAdmissionsUsesBatchedQueriesAndSingleFlush() {
+
+        // Assemble
+        final int[] forOneAdmission = updateAdmissionsCounting(1, 1);
+
+        // Act
+        final int[] forManyAdmissions = updateAdmissionsCounting(20, 10);
+
+        // Assert
+        // The number of statements does not depend on the number of Activities or Admissions.
+        Assert.assertEquals(forOneAdmission[0], forManyAdmissions[0]);
+        Assert.assertEquals(1, forOneAdmission[1]);
+        Assert.assertEquals(1, forManyAdmissions[1]);
+        Assert.assertEquals(20 * 10 + 20, getNumAdmissionsByShortDesc("Batch 20"));
+    }
+
+    @Test
+    public void validateLockStripesAreStable() {
+
+        // Act & Assert
+        for (long id = 0; id < 1000; id++) {
+            Assert.assertSame(AdmissionServiceBean.getLockFor(id), AdmissionServiceBean.getLockFor(id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnNonexistentActivity() {
+
+        // Assemble
+        final EntityManager threadEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+        final AdmissionServiceBean unitUnderTest = createUnitUnderTest(threadEntityManager);
+
+        // Act & Assert
+        try {
+            unitUnderTest.admit(memberships.get(0), Long.MAX_VALUE - 1, null);
+        } finally {
+            threadEntityManager.close();
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Map<AdmissionService.AdmissionOutcome, Integer> admitConcurrently(final EntityManagerFactory factory)
+            throws Exception {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final List<Future<AdmissionService.AdmissionOutcome>> futures = new ArrayList<>();
+
+        try {
+            for (Membership current : memberships) {
+
+                final Callable<AdmissionService.AdmissionOutcome> task = () -> {
+
+                    final EntityManager threadEntityManager = factory.createEntityManager();
+                    try {
+                        startSignal.await();
+                        return createUnitUnderTest(threadEntityManager).admit(current, activityID, null);
+                    } finally {
+                        threadEntityManager.close();
+                    }
+                };
+
+                futures.add(executorService.submit(task));
+            }
+
+            // Release all threads at once.
+            startSignal.countDown();
+
+            final Map<AdmissionService.AdmissionOutcome, Integer> toReturn =
+                    new EnumMap<>(AdmissionService.AdmissionOutcome.class);
+            for (Future<AdmissionService.AdmissionOutcome> current : futures) {
+                toReturn.merge(current.get(60, TimeUnit.SECONDS), 1, Integer::sum);
+            }
+
+            // All Done.
+            return toReturn;
+
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Membership getResponsibleMembership() {
+        return entityManager.find(Activity.class, activityID)
+                .getAdmissions()
+                .stream()
+                .filter(Admission::isResponsible)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Aragorn should be admitted as responsible."))
+                .getAdmitted();
+    }
+
+    private void revokeAdmission(final Membership membership) {
+
+        final ActivityServiceBean activityServiceBean = new ActivityServiceBean(new OrganisationServiceBean());
+        injectEntityManager(activityServiceBean);
+
+        final AdmissionVO revocation = new AdmissionVO(activityID,
+                membership.getId(),
+                membership.getAlias(),
+                ORG_FJODJIM,
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                null,
+                true);
+        revocation.setAdmitted(false);
+
+        final Admissions admissions = new Admissions();
+        admissions.getDetails().add(revocation);
+        activityServiceBean.updateAdmissions(membership, admissions);
+        commitAndStartNewTransaction();
+    }
+
+    /**
+     * Admits numMemberships Memberships to numActivities new Activities within a single updateAdmissions call,
+     * and returns the number of queries (and finds) created and the number of flushes.
+     */
+    private int[] updateAdmissionsCounting(final int numActivities, final int numMemberships) {
+
+        final Membership aragorn = getResponsibleMembership();
+        final ActivityServiceBean activityServiceBean = new ActivityServiceBean(new OrganisationServiceBean());
+        injectEntityManager(activityServiceBean);
+        final CategorizedAddress address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses().get(0);
+
+        final Admissions admissions = new Admissions();
+        for (int i = 0; i < numActivities; i++) {
+
+            final Activity activity = PersistenceHelper.createActivity(true,
+                    aragorn,
+                    "Batch " + numActivities,
+                    LocalDateTime.now().plusDays(10 + i),
+                    new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                    address);
+
+            for (int j = 0; j < numMemberships; j++) {
+                final Membership current = memberships.get(j);
+                admissions.getDetails().add(new AdmissionVO(activity.getId(),
+                        current.getId(),
+                        current.getAlias(),
+                        ORG_FJODJIM,
+                        LocalDateTime.now(),
+                        LocalDateTime.now(),
+                        null,
+                        false));
+            }
+        }
+        commitAndStartNewTransaction();
+
+        // Wrap the EntityManager within a proxy counting all created queries, finds and flushes.
+        final AtomicInteger statementCounter = new AtomicInteger();
+        final AtomicInteger flushCounter = new AtomicInteger();
+        final EntityManager countingEntityManager = (EntityManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+
+                    final String methodName = method.getName();
+                    if ((methodName.startsWith("create") && methodName.contains("Query"))
+                            || methodName.equals("find")) {
+                        statementCounter.incrementAndGet();
+                    } else if (methodName.equals("flush")) {
+                        flushCounter.incrementAndGet();
+                    }
+
+                    try {
+                        return method.invoke(entityManager, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        // Aragorn administers the admissions of other Memberships.
+        final ActivityServiceBean countingUnitUnderTest = new ActivityServiceBean(new OrganisationServiceBean() {
+            @Override
+            public boolean isAdministratorFor(final Membership adminCandidate, final Organisation organisation) {
+                return true;
+            }
+        });
+        try {
+            final Field entityManagerField = AbstractJpaService.class.getDeclaredField("entityManager");
+            entityManagerField.setAccessible(true);
+            entityManagerField.set(countingUnitUnderTest, countingEntityManager);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not inject counting EntityManager.", e);
+        }
+
+        final Admissions result = countingUnitUnderTest.updateAdmissions(aragorn, admissions);
+        commitAndStartNewTransaction();
+        Assert.assertEquals(numActivities * numMemberships, result.getDetails().size());
+
+        // All Done.
+        return new int[]{statementCounter.get(), flushCounter.get()};
+    }
+
+    private int getNumAdmissionsByShortDesc(final String shortDesc) {
+        return entityManager.createQuery("select count(adm) from Admission adm "
+                + "where adm.activity.shortDesc = :shortDesc", Long.class)
+                .setParameter("shortDesc", shortDesc)
+                .getSingleResult()
+                .intValue();
+    }
+
+    private int getNumAdmissions(final Membership membership) {
+        return entityManager.createQuery("select count(adm) from Admission adm "
+                + "where adm.activity.id = :id and adm.admitted.id = :membershipId", Long.class)
+                .setParameter("id", activityID)
+                .setParameter("membershipId", membership.getId())
+                .getSingleResult()
+                .intValue();
+    }
+
+    private static int getCount(final Map<AdmissionService.AdmissionOutcome, Integer> outcomes,
+                                final AdmissionService.AdmissionOutcome outcome) {
+        return outcomes.getOrDefault(outcome, 0);
+    }
+
+    private static AdmissionServiceBean createUnitUnderTest(final EntityManager threadEntityManager) {
+
+        final AdmissionServiceBean toReturn = new AdmissionServiceBean(
+                new ResourceLocalUserTransaction(threadEntityManager));
+
+        try {
+            final Field entityManagerField = AbstractJpaService.class.getDeclaredField("entityManager");
+            entityManagerField.setAccessible(true);
+            entityManagerField.set(toReturn, threadEntityManager);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not inject EntityManager into AdmissionServiceBean.", e);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * UserTransaction adapter for resource-local EntityManagers.
+     */
+    private static class ResourceLocalUserTransaction implements UserTransaction {
+
+        private final EntityManager entityManager;
+
+        ResourceLocalUserTransaction(final EntityManager entityManager) {
+            this.entityManager = entityManager;
+        }
+
+        @Override
+        public void begin() {
+            entityManager.getTransaction().begin();
+        }
+
+        @Override
+        public void commit() {
+            entityManager.getTransaction().commit();
+        }
+
+        @Override
+        public void rollback() {
+            entityManager.getTransaction().rollback();
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            entityManager.getTransaction().setRollbackOnly();
+        }
+
+        @Override
+        public int getStatus() {
+            return entityManager.getTransaction().isActive() ? Status.STATUS_ACTIVE : Status.STATUS_NO_TRANSACTION;
+        }
+
+        @Override
+        public void setTransactionTimeout(final int seconds) {
+            // Not supported.
+        }
+    }
+}
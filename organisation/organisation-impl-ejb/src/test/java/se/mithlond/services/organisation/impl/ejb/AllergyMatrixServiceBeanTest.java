@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.Admission;
+import se.mithlond.services.organisation.model.food.Allergy;
+import se.mithlond.services.organisation.model.food.AllergySeverity;
+import se.mithlond.services.organisation.model.food.Food;
+import se.mithlond.services.organisation.model.food.FoodPreference;
+import se.mithlond.services.organisation.model.localization.Localizable;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrix;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrixCellVO;
+import se.mithlond.services.organisation.model.transport.food.AllergyMatrixRowVO;
+import se.mithlond.services.organisation.model.transport.food.FoodPreferenceCountVO;
+import se.mithlond.services.shared.spi.algorithms.TimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class AllergyMatrixServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private AllergyMatrixServiceBean unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+    private Food peanuts;
+    private Food carrot;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        unitUnderTest = new AllergyMatrixServiceBean();
+        membershipServiceBean = new MembershipServiceBean();
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(membershipServiceBean);
+
+        // Create Foods, AllergySeverities and a FoodPreference category.
+        final Category vegetables = PersistenceHelper.getCategory("Grönsaker");
+        final Category roots = PersistenceHelper.getCategory("Rotfrukter och Betor");
+        peanuts = PersistenceHelper.createFood("Jordnötter", "Peanuts", vegetables, roots);
+        carrot = PersistenceHelper.createFood("Morot", "Carrot", vegetables, roots);
+
+        final AllergySeverity mild = PersistenceHelper.createAllergySeverity(1, "Lindrig", "Mild");
+        final AllergySeverity severe = PersistenceHelper.createAllergySeverity(2, "Svår", "Severe");
+        final Category vegetarian = new Category("Vegetarian",
+                FoodPreference.FOOD_PREFERENCE_CATEGORY_CLASSIFICATION,
+                "Äter inte kött eller fisk");
+        entityManager.persist(vegetarian);
+
+        // Aragorn (admitted to Svärdsfäktning) is severely allergic to peanuts, and vegetarian.
+        // Zap (not admitted) is mildly allergic to peanuts and carrots.
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        entityManager.persist(new Allergy(peanuts, aragorn.getUser(), severe, "Anafylaktisk chock"));
+        entityManager.persist(new FoodPreference(vegetarian, aragorn.getUser()));
+        entityManager.persist(new Allergy(peanuts, zap.getUser(), mild, null));
+        entityManager.persist(new Allergy(carrot, zap.getUser(), mild, null));
+
+        entityManager.flush();
+        commitAndStartNewTransaction();
+    }
+
+    @Test
+    public void validateCachingMatrixPerActivityVersion() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+
+        // Act
+        final AllergyMatrix matrix = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+        final AllergyMatrix cachedMatrix = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+        final String version = unitUnderTest.getAllergyMatrixVersion(FJODJIM_JPA_ID, activityID);
+
+        // Assert
+        Assert.assertEquals(activityID, matrix.getActivityJpaID());
+        Assert.assertEquals(1, matrix.getNumAdmitted());
+        Assert.assertSame(matrix, cachedMatrix);
+        Assert.assertEquals(version, matrix.getVersion());
+    }
+
+    @Test
+    public void validateMatrixCellsAndFoodPreferences() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Membership zap = admitZap(activityID);
+
+        // Act
+        final AllergyMatrix matrix = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        // Assert
+        Assert.assertEquals(2, matrix.getNumAdmitted());
+
+        // Rows are sorted by (Swedish) Food name; cells by AllergySeverity.
+        final List<AllergyMatrixRowVO> rows = matrix.getRows();
+        Assert.assertEquals(2, rows.size());
+
+        final AllergyMatrixRowVO peanutRow = rows.get(0);
+        Assert.assertEquals(peanuts.getId(), peanutRow.getFoodJpaID());
+        Assert.assertEquals("Jordnötter", peanutRow.getFoodName());
+        Assert.assertEquals(2, peanutRow.getTotal());
+        Assert.assertEquals(2, peanutRow.getCells().size());
+        validateCell(peanutRow.getCells().get(0), 1, "Lindrig", zap);
+        validateCell(peanutRow.getCells().get(1), 2, "Svår", aragorn);
+
+        final AllergyMatrixRowVO carrotRow = rows.get(1);
+        Assert.assertEquals(carrot.getId(), carrotRow.getFoodJpaID());
+        Assert.assertEquals("Morot", carrotRow.getFoodName());
+        Assert.assertEquals(1, carrotRow.getTotal());
+        Assert.assertEquals(1, carrotRow.getCells().size());
+        validateCell(carrotRow.getCells().get(0), 1, "Lindrig", zap);
+
+        final List<FoodPreferenceCountVO> preferences = matrix.getFoodPreferences();
+        Assert.assertEquals(1, preferences.size());
+        Assert.assertEquals("Vegetarian", preferences.get(0).getPreference());
+        Assert.assertEquals(1, preferences.get(0).getCount());
+    }
+
+    @Test
+    public void validateRebuildingMatrixWhenAdmissionsChange() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+        final AllergyMatrix before = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+        admitZap(activityID);
+
+        // Act
+        final AllergyMatrix after = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        // Assert
+        Assert.assertNotSame(before, after);
+        Assert.assertNotEquals(before.getVersion(), after.getVersion());
+        Assert.assertEquals(2, after.getNumAdmitted());
+        Assert.assertEquals(1, before.getRows().size());
+        Assert.assertEquals(2, after.getRows().size());
+    }
+
+    @Test
+    public void validateRebuildingMatrixWhenAdmissionIsReplaced() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+        final AllergyMatrix before = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        // Replace Aragorn's Admission with Zap's, retaining the number of Admissions.
+        final Activity activity = entityManager.find(Activity.class, activityID);
+        final Admission aragornsAdmission = activity.getAdmissions().iterator().next();
+        activity.getAdmissions().remove(aragornsAdmission);
+        entityManager.remove(aragornsAdmission);
+        entityManager.flush();
+        commitAndStartNewTransaction();
+        final Membership zap = admitZap(activityID);
+
+        // Act
+        final AllergyMatrix after = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        // Assert
+        Assert.assertEquals(before.getNumAdmitted(), after.getNumAdmitted());
+        Assert.assertNotEquals(before.getVersion(), after.getVersion());
+        Assert.assertEquals(Collections.singletonList(zap.getId()),
+                after.getRows().get(0).getCells().get(0).getMembershipIDs());
+    }
+
+    @Test
+    public void validateRebuildingMatrixWhenFoodIsRenamed() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+        final AllergyMatrix before = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        entityManager.find(Food.class, peanuts.getId()).getLocalizedFoodName().setText(
+                TimeFormat.SWEDISH_LOCALE,
+                Localizable.DEFAULT_CLASSIFIER,
+                "Jordnöt");
+        commitAndStartNewTransaction();
+
+        // Act
+        final AllergyMatrix after = unitUnderTest.getAllergyMatrix(FJODJIM_JPA_ID, activityID);
+
+        // Assert
+        Assert.assertEquals("Jordnötter", before.getRows().get(0).getFoodName());
+        Assert.assertNotEquals(before.getVersion(), after.getVersion());
+        Assert.assertEquals("Jordnöt", after.getRows().get(0).getFoodName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnActivityWithinOtherOrganisation() {
+
+        // Assemble
+        final Long activityID = getActivityID("Svärdsfäktning");
+
+        // Act & Assert
+        unitUnderTest.getAllergyMatrix(MIFFLOND_JPA_ID, activityID);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Long getActivityID(final String shortDesc) {
+        return entityManager.createQuery("select a.id from Activity a where a.shortDesc = :shortDesc", Long.class)
+                .setParameter("shortDesc", shortDesc)
+                .getSingleResult();
+    }
+
+    private Membership admitZap(final Long activityID) {
+
+        final Activity activity = entityManager.find(Activity.class, activityID);
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Admission admission = new Admission(activity, zap, LocalDateTime.now(), LocalDateTime.now(),
+                "Zap fäktas också.", false, null);
+        activity.getAdmissions().add(admission);
+        entityManager.persist(admission);
+        commitAndStartNewTransaction();
+
+        return zap;
+    }
+
+    private static void validateCell(final AllergyMatrixCellVO cell,
+                                     final int severitySortOrder,
+                                     final String severity,
+                                     final Membership membership) {
+
+        Assert.assertEquals(severitySortOrder, cell.getSeveritySortOrder());
+        Assert.assertEquals(severity, cell.getSeverity());
+        Assert.assertEquals(1, cell.getCount());
+        Assert.assertEquals(Collections.singletonList(membership.getId()), cell.getMembershipIDs());
+        Assert.assertEquals(Collections.singletonList(membership.getAlias()), cell.getAliases());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.food.FoodPreference;
+import se.mithlond.services.organisation.model.transport.food.FoodVO;
+import se.mithlond.services.organisation.model.transport.food.Foods;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class FoodCatalogueServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private FoodCatalogueServiceBean unitUnderTest;
+    private FoodAndAllergyServiceBean foodAndAllergyServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units; check the catalogue version on each call.
+        foodAndAllergyServiceBean = new FoodAndAllergyServiceBean();
+        unitUnderTest = new FoodCatalogueServiceBean(foodAndAllergyServiceBean, 0L);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(foodAndAllergyServiceBean);
+        injectEntityManager(unitUnderTest);
+    }
+
+    @Test
+    public void validateCachingCataloguePerLocale() {
+
+        // Assemble
+        final Locale swedish = new Locale("sv", "SE");
+
+        // Act
+        final String version = unitUnderTest.getCatalogueVersion();
+        final Foods foods = unitUnderTest.getFoods(swedish);
+        final Foods cachedFoods = unitUnderTest.getFoods(swedish);
+        final Foods englishFoods = unitUnderTest.getFoods(Locale.ENGLISH);
+        final Foods searchResult = unitUnderTest.searchFoods(swedish, "potatis", 10);
+
+        // Assert
+        Assert.assertEquals(version, unitUnderTest.getCatalogueVersion());
+        Assert.assertSame(foods, cachedFoods);
+        Assert.assertNotSame(foods, englishFoods);
+        Assert.assertEquals(swedish, foods.getLocale());
+        Assert.assertTrue(foods.getFoods().isEmpty());
+        Assert.assertTrue(searchResult.getFoods().isEmpty());
+        Assert.assertNotSame(foods, searchResult);
+    }
+
+    @Test
+    public void validateDiscardingCataloguesWhenVersionChanges() {
+
+        // Assemble
+        final Foods before = unitUnderTest.getFoods(Locale.ENGLISH);
+        final String versionBefore = unitUnderTest.getCatalogueVersion();
+
+        entityManager.persist(new Category("Vegetariskt",
+                FoodPreference.FOOD_PREFERENCE_CATEGORY_CLASSIFICATION,
+                "Äter inte kött eller fisk"));
+        commitAndStartNewTransaction();
+
+        // Act
+        final Foods after = unitUnderTest.getFoods(Locale.ENGLISH);
+
+        // Assert
+        Assert.assertNotSame(before, after);
+        Assert.assertNotEquals(versionBefore, unitUnderTest.getCatalogueVersion());
+        Assert.assertTrue(before.getFoodPreferences().isEmpty());
+        Assert.assertEquals(1, after.getFoodPreferences().size());
+        Assert.assertEquals("Vegetariskt", after.getFoodPreferences().first().getCategoryID());
+    }
+
+    @Test
+    public void validateSearchingFoodsByPrefixAndTypo() {
+
+        // Assemble
+        final Category vegetables = PersistenceHelper.getCategory("Grönsaker");
+        final Category roots = PersistenceHelper.getCategory("Rotfrukter och Betor");
+        final Category fruit = PersistenceHelper.getCategory("Frukt & Bär");
+        final Category stoneFruit = PersistenceHelper.getCategory("Stenfrukt");
+        PersistenceHelper.createFood("Morot", "Carrot", vegetables, roots);
+        PersistenceHelper.createFood("Potatis", "Potato", vegetables, roots);
+        PersistenceHelper.createFood("Plommon", "Plum", fruit, stoneFruit);
+        commitAndStartNewTransaction();
+
+        final Locale swedish = new Locale("sv", "SE");
+
+        // Act
+        final Foods prefixResult = unitUnderTest.searchFoods(swedish, "pot", 10);
+        final Foods subCategoryResult = unitUnderTest.searchFoods(swedish, "rotf", 10);
+        final Foods typoResult = unitUnderTest.searchFoods(swedish, "Potatos", 10);
+        final Foods englishTypoResult = unitUnderTest.searchFoods(Locale.ENGLISH, "carot", 10);
+        final Foods limitedResult = unitUnderTest.searchFoods(swedish, "rotf", 1);
+
+        // Assert
+        Assert.assertEquals(3, unitUnderTest.getFoods(swedish).getFoods().size());
+        Assert.assertEquals(Collections.singletonList("Potatis"), getFoodNames(prefixResult));
+        Assert.assertTrue(prefixResult.getCategories().contains(vegetables));
+        Assert.assertTrue(prefixResult.getSubCategories().contains(roots));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("Morot", "Potatis")),
+                new TreeSet<>(getFoodNames(subCategoryResult)));
+        Assert.assertEquals(Collections.singletonList("Potatis"), getFoodNames(typoResult));
+        Assert.assertEquals(Collections.singletonList("Carrot"), getFoodNames(englishTypoResult));
+        Assert.assertEquals(1, limitedResult.getFoods().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnNonPositiveMaxResults() {
+
+        // Act & Assert
+        unitUnderTest.searchFoods(Locale.ENGLISH, "pot", 0);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static List<String> getFoodNames(final Foods foods) {
+        return foods.getFoods()
+                .stream()
+                .map(FoodVO::getFoodName)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.GroupMembership;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.membership.GroupTree;
+import se.mithlond.services.organisation.model.transport.membership.GroupTreeNodeVO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class GroupHierarchyServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private GroupHierarchyServiceBean unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+    private OrganisationServiceBean organisationServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        unitUnderTest = new GroupHierarchyServiceBean();
+        organisationServiceBean = new OrganisationServiceBean(unitUnderTest);
+        membershipServiceBean = new MembershipServiceBean(organisationServiceBean, null, unitUnderTest, null, null);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(membershipServiceBean);
+    }
+
+    @Test
+    public void validateAdministratorsWithinAdministratorSubtree() {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Group webmasters = addAdministratorGroups(zap.getOrganisation());
+
+        zap.getGroupMemberships().add(new GroupMembership(webmasters, zap));
+        commitAndStartNewTransaction();
+
+        final Membership adminZap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Membership gromp = membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp");
+
+        // Act & Assert
+        Assert.assertTrue(unitUnderTest.isAdministrator(adminZap));
+        Assert.assertFalse(unitUnderTest.isAdministrator(aragorn));
+        Assert.assertFalse(unitUnderTest.isAdministrator(gromp));
+        Assert.assertTrue(organisationServiceBean.isAdministratorFor(adminZap, adminZap.getOrganisation()));
+        Assert.assertFalse(organisationServiceBean.isAdministratorFor(adminZap, gromp.getOrganisation()));
+        Assert.assertTrue(organisationServiceBean.resolveAdministrativeScopes(adminZap,
+                Arrays.asList(MIFFLOND_JPA_ID, FJODJIM_JPA_ID)).get(adminZap.getOrganisation()));
+    }
+
+    @Test
+    public void validateEvictingCachedAdministratorFlags() {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Group webmasters = addAdministratorGroups(zap.getOrganisation());
+        commitAndStartNewTransaction();
+
+        final Membership nonAdminZap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        Assert.assertFalse(unitUnderTest.isAdministrator(nonAdminZap));
+
+        // Act #1: The cached flag is used until the Membership is reported as changed.
+        nonAdminZap.getGroupMemberships().add(new GroupMembership(
+                entityManager.find(Group.class, webmasters.getId()), nonAdminZap));
+        final boolean cachedFlag = unitUnderTest.isAdministrator(nonAdminZap);
+        unitUnderTest.membershipsChanged(Collections.singletonList(nonAdminZap));
+        final boolean evictedFlag = unitUnderTest.isAdministrator(nonAdminZap);
+
+        // Assert
+        Assert.assertFalse(cachedFlag);
+        Assert.assertTrue(evictedFlag);
+    }
+
+    @Test
+    public void validateAdministratorFlagsIgnoreUnpersistedGroupMemberships() {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Group webmasters = addAdministratorGroups(zap.getOrganisation());
+        commitAndStartNewTransaction();
+
+        final Membership detachedZap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        entityManager.detach(detachedZap);
+        detachedZap.getGroupMemberships().add(new GroupMembership(webmasters, detachedZap));
+
+        // Act
+        final boolean detachedFlag = unitUnderTest.isAdministrator(detachedZap);
+        final boolean unpersistedFlag = unitUnderTest.isAdministrator(new Membership());
+
+        // Assert
+        Assert.assertFalse(detachedFlag);
+        Assert.assertFalse(unpersistedFlag);
+    }
+
+    @Test
+    public void validateApplyingGroupChanges() {
+
+        // Assemble
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Organisation fjodjim = zap.getOrganisation();
+        final Group webmasters = addAdministratorGroups(fjodjim);
+        commitAndStartNewTransaction();
+
+        final int numGroupsBefore = unitUnderTest.rebuild(FJODJIM_JPA_ID);
+        final Long adminsID = webmasters.getParent().getId();
+
+        // Act #1: Add a Group below the Webmasters, and report it.
+        final Group editors = new Group("Redaktörer", "Fjodjims redaktörer", fjodjim,
+                entityManager.find(Group.class, webmasters.getId()), "editors");
+        entityManager.persist(editors);
+        commitAndStartNewTransaction();
+        unitUnderTest.groupChanged(editors);
+
+        final Membership editorZap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        editorZap.getGroupMemberships().add(new GroupMembership(
+                entityManager.find(Group.class, editors.getId()), editorZap));
+        final boolean editorIsAdministrator = unitUnderTest.isAdministrator(editorZap);
+        final List<Long> unrelatedIDs = Collections.singletonList(4711L);
+
+        // Assert #1
+        Assert.assertEquals(numGroupsBefore + 1, unitUnderTest.rebuild(FJODJIM_JPA_ID));
+        Assert.assertTrue(editorIsAdministrator);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(adminsID, webmasters.getId(), editors.getId())),
+                unitUnderTest.getSubtree(FJODJIM_JPA_ID, adminsID));
+        Assert.assertTrue(unitUnderTest.isAnyWithinSubtree(FJODJIM_JPA_ID, adminsID,
+                Collections.singletonList(editors.getId())));
+        Assert.assertFalse(unitUnderTest.isAnyWithinSubtree(FJODJIM_JPA_ID, editors.getId(),
+                Collections.singletonList(adminsID)));
+        Assert.assertFalse(unitUnderTest.isAnyWithinSubtree(FJODJIM_JPA_ID, adminsID, unrelatedIDs));
+
+        // Act & Assert #2: Removing the Editors evicts the cached Administrator flags.
+        unitUnderTest.groupRemoved(editors);
+        Assert.assertFalse(unitUnderTest.getSubtree(FJODJIM_JPA_ID, adminsID).contains(editors.getId()));
+        Assert.assertFalse(unitUnderTest.isAdministrator(editorZap));
+    }
+
+    @Test
+    public void validateGroupTreeWithMemberCounts() {
+
+        // Assemble
+        final GroupMembershipIndexServiceBean indexServiceBean = new GroupMembershipIndexServiceBean();
+        final GroupHierarchyServiceBean treeUnitUnderTest = new GroupHierarchyServiceBean(indexServiceBean);
+        injectEntityManager(indexServiceBean);
+        injectEntityManager(treeUnitUnderTest);
+
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Group inbyggare = getGroup(zap.getOrganisation(), "Inbyggare");
+        final Group storaRadet = getGroup(zap.getOrganisation(), "Stora Rådet");
+
+        zap.getGroupMemberships().add(new GroupMembership(inbyggare, zap));
+        zap.getGroupMemberships().add(new GroupMembership(storaRadet, zap));
+        aragorn.getGroupMemberships().add(new GroupMembership(inbyggare, aragorn));
+        commitAndStartNewTransaction();
+
+        // Act
+        final GroupTree fullTree = treeUnitUnderTest.getGroupTree(FJODJIM_JPA_ID, null, 1);
+        final GroupTree rootsOnly = treeUnitUnderTest.getGroupTree(FJODJIM_JPA_ID, null, 0);
+        final GroupTree subtree = treeUnitUnderTest.getGroupTree(FJODJIM_JPA_ID, storaRadet.getId(), 1);
+        final GroupTree unknownRoot = treeUnitUnderTest.getGroupTree(FJODJIM_JPA_ID, 4711L, 1);
+
+        // Assert
+        Assert.assertEquals("Fjodjim", fullTree.getOrganisationName());
+        Assert.assertEquals(2, fullTree.getRoots().size());
+
+        final GroupTreeNodeVO inbyggareNode = fullTree.getRoots().get(0);
+        Assert.assertEquals("Inbyggare", inbyggareNode.getName());
+        Assert.assertFalse(inbyggareNode.isGuild());
+        Assert.assertEquals(2, inbyggareNode.getDirectMembers());
+        Assert.assertEquals(2, inbyggareNode.getRecursiveMembers());
+        Assert.assertEquals(1, inbyggareNode.getNumChildren());
+        Assert.assertEquals(1, inbyggareNode.getChildren().size());
+
+        final GroupTreeNodeVO storaRadetNode = inbyggareNode.getChildren().get(0);
+        Assert.assertEquals("Stora Rådet", storaRadetNode.getName());
+        Assert.assertEquals(1, storaRadetNode.getDirectMembers());
+        Assert.assertEquals(1, storaRadetNode.getRecursiveMembers());
+        Assert.assertEquals(0, storaRadetNode.getNumChildren());
+
+        final GroupTreeNodeVO olgilletNode = fullTree.getRoots().get(1);
+        Assert.assertEquals("Ölgillet", olgilletNode.getName());
+        Assert.assertTrue(olgilletNode.isGuild());
+        Assert.assertEquals(3, olgilletNode.getDirectMembers());
+        Assert.assertEquals(2, olgilletNode.getDirectLoginPermitted());
+        Assert.assertEquals(2, olgilletNode.getRecursiveLoginPermitted());
+
+        Assert.assertEquals(1, rootsOnly.getRoots().get(0).getNumChildren());
+        Assert.assertTrue(rootsOnly.getRoots().get(0).getChildren().isEmpty());
+        Assert.assertEquals(1, subtree.getRoots().size());
+        Assert.assertEquals(storaRadet.getId(), subtree.getRoots().get(0).getJpaID());
+        Assert.assertTrue(unknownRoot.getRoots().isEmpty());
+    }
+
+    @Test
+    public void validateEvictingCachedMemberCounts() {
+
+        // Assemble
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final Group storaRadet = getGroup(aragorn.getOrganisation(), "Stora Rådet");
+        final GroupTree before = unitUnderTest.getGroupTree(FJODJIM_JPA_ID, storaRadet.getId(), 0);
+
+        aragorn.getGroupMemberships().add(new GroupMembership(storaRadet, aragorn));
+        commitAndStartNewTransaction();
+
+        // Act
+        final GroupTree cached = unitUnderTest.getGroupTree(FJODJIM_JPA_ID, storaRadet.getId(), 0);
+        unitUnderTest.membershipsChanged(Collections.singletonList(aragorn));
+        final GroupTree evicted = unitUnderTest.getGroupTree(FJODJIM_JPA_ID, storaRadet.getId(), 0);
+
+        // Assert
+        Assert.assertEquals(0, before.getRoots().get(0).getDirectMembers());
+        Assert.assertEquals(0, cached.getRoots().get(0).getDirectMembers());
+        Assert.assertEquals(1, evicted.getRoots().get(0).getDirectMembers());
+        Assert.assertEquals(1, evicted.getRoots().get(0).getRecursiveMembers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnRebuildingUnknownOrganisation() {
+
+        // Act & Assert
+        unitUnderTest.rebuild(4711L);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Group getGroup(final Organisation organisation, final String groupName) {
+
+        return entityManager.createQuery("select g from Group g where g.organisation.id = :orgID "
+                + "and g.groupName = :groupName", Group.class)
+                .setParameter("orgID", organisation.getId())
+                .setParameter("groupName", groupName)
+                .getSingleResult();
+    }
+
+    private Group addAdministratorGroups(final Organisation organisation) {
+
+        final Group admins = new Group("Administratörer", "Administratörer", organisation, null, "admins");
+        final Group webmasters = new Group("Webbgruppen", "Webbmästare", organisation, admins, "webb");
+        entityManager.persist(admins);
+        entityManager.persist(webmasters);
+        entityManager.flush();
+
+        // All Done.
+        return webmasters;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGuildMembershipVO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class GroupMembershipIndexServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private GroupMembershipIndexServiceBean unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        final OrganisationServiceBean organisationServiceBean = new OrganisationServiceBean();
+        unitUnderTest = new GroupMembershipIndexServiceBean();
+        membershipServiceBean = new MembershipServiceBean(organisationServiceBean, null, null, null, unitUnderTest);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(membershipServiceBean);
+    }
+
+    @Test
+    public void validateMailingListRecipients() {
+
+        // Act
+        final SortedMap<String, SortedSet<String>> result = unitUnderTest.getMailingListRecipients(MIFFLOND_JPA_ID);
+        final SortedSet<String> memberAddresses = unitUnderTest.getMemberEmailAddresses(MIFFLOND_JPA_ID);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("alvgillet@mifflond.se", "graradet@mifflond.se",
+                "inbyggare@mifflond.se", "kämpaleksgillet@mifflond.se"), new ArrayList<>(result.keySet()));
+        Assert.assertEquals(asSet("bilbo@mifflond.se", "gromp@mifflond.se"), result.get("alvgillet@mifflond.se"));
+        Assert.assertEquals(asSet("bilbo@mifflond.se", "dildo@mifflond.se", "gromp@mifflond.se"),
+                result.get("kämpaleksgillet@mifflond.se"));
+        Assert.assertTrue(result.get("inbyggare@mifflond.se").isEmpty());
+        Assert.assertEquals(asSet("bilbo@mifflond.se", "dildo@mifflond.se", "gromp@mifflond.se"), memberAddresses);
+        Assert.assertEquals(asSet("aragorn@fjodrim.se", "zap@fjodrim.se"),
+                unitUnderTest.getMemberEmailAddresses(FJODJIM_JPA_ID));
+    }
+
+    @Test
+    public void validateGroupSetOperations() {
+
+        // Assemble
+        final Membership bilbo = membershipServiceBean.getMembership(ORG_MIFFLOND, "Bilbo Baggins");
+        final Membership dildo = membershipServiceBean.getMembership(ORG_MIFFLOND, "Dildo Baggins");
+        final Membership gromp = membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp");
+        final Membership grima = membershipServiceBean.getMembership(ORG_MIFFLOND, "Grima");
+        final Long alvgilletID = getGuildID(gromp, "Alvgillet");
+        final Long kampaleksgilletID = getGuildID(gromp, "Kämpaleksgillet");
+
+        // Act
+        final SortedSet<Long> alvgilletOnly = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(alvgilletID), Collections.singletonList(kampaleksgilletID), true);
+        final SortedSet<Long> loginPermittedAlvgilletOnly = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(alvgilletID), Collections.singletonList(kampaleksgilletID), false);
+        final SortedSet<Long> anyGuild = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Arrays.asList(alvgilletID, kampaleksgilletID), null, false);
+        final SortedSet<Long> notInKampaleksgillet = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                null, Collections.singletonList(kampaleksgilletID), true);
+        final SortedSet<Long> unknownGroup = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(-1L), null, true);
+
+        // Assert
+        Assert.assertEquals(asSet(grima.getId()), alvgilletOnly);
+        Assert.assertTrue(loginPermittedAlvgilletOnly.isEmpty());
+        Assert.assertEquals(asSet(bilbo.getId(), dildo.getId(), gromp.getId()), anyGuild);
+        Assert.assertEquals(asSet(grima.getId()), notInKampaleksgillet);
+        Assert.assertTrue(unknownGroup.isEmpty());
+    }
+
+    @Test
+    public void validateSynchronizingWithMembershipChanges() {
+
+        // Assemble
+        final Membership bilbo = membershipServiceBean.getMembership(ORG_MIFFLOND, "Bilbo Baggins");
+        final Membership gromp = membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp");
+        final Membership grima = membershipServiceBean.getMembership(ORG_MIFFLOND, "Grima");
+        final Long alvgilletID = getGuildID(gromp, "Alvgillet");
+        Assert.assertEquals(asSet("bilbo@mifflond.se", "gromp@mifflond.se"),
+                unitUnderTest.getMailingListRecipients(MIFFLOND_JPA_ID).get("alvgillet@mifflond.se"));
+
+        // Act #1: Remove Gromp from Alvgillet using the MembershipService.
+        final MembershipListVO desiredState = new MembershipListVO(gromp.getOrganisation());
+        desiredState.add(gromp);
+        final List<SlimGuildMembershipVO> desiredGuilds = desiredState.getMemberInformation().get(0).getGuilds();
+        desiredGuilds.removeIf(guild -> alvgilletID.equals(guild.getJpaID()));
+        membershipServiceBean.updateGuildMemberships(gromp, desiredState);
+        commitAndStartNewTransaction();
+        final SortedSet<String> afterGrompLeft = unitUnderTest.getMailingListRecipients(MIFFLOND_JPA_ID)
+                .get("alvgillet@mifflond.se");
+
+        // Act #2: Permit Grima login, and notify the index.
+        grima.setLoginPermitted(true);
+        unitUnderTest.membershipsChanged(Collections.singletonList(grima));
+        final SortedSet<String> afterGrimaPermitted = unitUnderTest.getMailingListRecipients(MIFFLOND_JPA_ID)
+                .get("alvgillet@mifflond.se");
+
+        // Act #3: Remove Bilbo from the index, and re-add him (re-using the freed ordinal).
+        unitUnderTest.membershipsRemoved(Collections.singletonList(bilbo));
+        final SortedSet<Long> afterBilboRemoved = unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(alvgilletID), null, true);
+        unitUnderTest.membershipsChanged(Collections.singletonList(bilbo));
+
+        // Assert
+        Assert.assertEquals(asSet("bilbo@mifflond.se"), afterGrompLeft);
+        Assert.assertEquals(asSet("bilbo@mifflond.se", "grima@mifflond.se"), afterGrimaPermitted);
+        Assert.assertEquals(asSet(grima.getId()), afterBilboRemoved);
+        Assert.assertEquals(asSet(bilbo.getId(), grima.getId()), unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(alvgilletID), null, true));
+        Assert.assertEquals(4, unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID, null, null, true).size());
+
+        // Rebuilding from the database restores the committed state.
+        Assert.assertEquals(4, unitUnderTest.rebuild(MIFFLOND_JPA_ID));
+        Assert.assertEquals(asSet(bilbo.getId(), grima.getId()), unitUnderTest.getMembershipIDs(MIFFLOND_JPA_ID,
+                Collections.singletonList(alvgilletID), null, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnRebuildingUnknownOrganisation() {
+
+        // Act & Assert
+        unitUnderTest.rebuild(-1L);
+    }
+
+    //
+    // Private helpers
+    //
+
+    @SafeVarargs
+    private static <T extends Comparable<T>> SortedSet<T> asSet(final T... values) {
+        return new TreeSet<>(Arrays.asList(values));
+    }
+
+    private static Long getGuildID(final Membership membership, final String guildName) {
+        return membership.getGroupMemberships()
+                .stream()
+                .filter(current -> current instanceof GuildMembership)
+                .map(current -> ((GuildMembership) current).getGuild())
+                .filter(guild -> guildName.equals(guild.getGroupName()))
+                .map(guild -> guild.getId())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No Guild [" + guildName + "]"));
+    }
+}
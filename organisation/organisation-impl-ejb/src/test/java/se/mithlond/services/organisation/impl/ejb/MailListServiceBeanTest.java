@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.MailListService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.MailingListPushState;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.shared.spi.algorithms.messages.JmsCompliantMap;
+
+import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class MailListServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private CapturingMailListServiceBean unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        final OrganisationServiceBean organisationServiceBean = new OrganisationServiceBean();
+        final GroupMembershipIndexServiceBean indexServiceBean = new GroupMembershipIndexServiceBean();
+        unitUnderTest = new CapturingMailListServiceBean(indexServiceBean);
+        membershipServiceBean = new MembershipServiceBean(organisationServiceBean, null, null, null,
+                indexServiceBean);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(indexServiceBean);
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(membershipServiceBean);
+    }
+
+    @Test
+    public void validateFullPushOfNeverPushedMailingLists() {
+
+        // Act
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+
+        // Assert
+        Assert.assertEquals(1, unitUnderTest.sent.size());
+        Assert.assertEquals(ORG_MIFFLOND, unitUnderTest.properties.get(0).get(MailListService.ORGANISATION_NAME_PARAM));
+        Assert.assertEquals(false, unitUnderTest.properties.get(0).get(MailListService.FULL_RESYNC_PARAM));
+        Assert.assertEquals(Arrays.asList(
+                "full 1 alvgillet@mifflond.se bilbo@mifflond.se,gromp@mifflond.se",
+                "full 1 graradet@mifflond.se",
+                "full 1 inbyggare@mifflond.se",
+                "full 1 kämpaleksgillet@mifflond.se bilbo@mifflond.se,dildo@mifflond.se,gromp@mifflond.se"),
+                unitUnderTest.getLines(0));
+
+        final List<MailingListPushState> states = getPushStates();
+        Assert.assertEquals(4, states.size());
+        Assert.assertEquals("kämpaleksgillet@mifflond.se", states.get(3).getListAddress());
+        Assert.assertEquals(1L, states.get(3).getSequenceNumber());
+        Assert.assertEquals(3, states.get(3).getRecipients().size());
+    }
+
+    @Test
+    public void validateDeltaPushOfChangedMailingLists() {
+
+        // Assemble
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+        entityManager.persist(new MailingListPushState(ORG_MIFFLOND, "gone@mifflond.se",
+                Collections.singletonList("bilbo@mifflond.se")));
+        commitAndStartNewTransaction();
+
+        // Act #1: Remove Gromp from Kämpaleksgillet, and push the mailing lists.
+        removeGuildMembership("Gromp", "Kämpaleksgillet");
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        // Act #2: Push again, without changes.
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(2, unitUnderTest.sent.size());
+        Assert.assertEquals(Arrays.asList(
+                "delta 2 kämpaleksgillet@mifflond.se -gromp@mifflond.se",
+                "removed 2 gone@mifflond.se"),
+                unitUnderTest.getLines(1));
+        Assert.assertEquals(4, getPushStates().size());
+        Assert.assertEquals(2L, getPushStates().get(3).getSequenceNumber());
+    }
+
+    @Test
+    public void validateStatesUnchangedWhenSendingFails() {
+
+        // Assemble
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+        removeGuildMembership("Gromp", "Kämpaleksgillet");
+
+        // Act
+        unitUnderTest.failSending = true;
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        unitUnderTest.failSending = false;
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(2, unitUnderTest.sent.size());
+        Assert.assertEquals(Collections.singletonList("delta 2 kämpaleksgillet@mifflond.se -gromp@mifflond.se"),
+                unitUnderTest.getLines(1));
+    }
+
+    @Test
+    public void validateFullResync() {
+
+        // Assemble
+        unitUnderTest.pushMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        // Act
+        unitUnderTest.resyncMailingLists(ORG_MIFFLOND);
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(2, unitUnderTest.sent.size());
+        Assert.assertEquals(true, unitUnderTest.properties.get(1).get(MailListService.FULL_RESYNC_PARAM));
+        Assert.assertEquals(Arrays.asList(
+                "full 2 alvgillet@mifflond.se bilbo@mifflond.se,gromp@mifflond.se",
+                "full 2 graradet@mifflond.se",
+                "full 2 inbyggare@mifflond.se",
+                "full 2 kämpaleksgillet@mifflond.se bilbo@mifflond.se,dildo@mifflond.se,gromp@mifflond.se"),
+                unitUnderTest.getLines(1));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void removeGuildMembership(final String alias, final String guildName) {
+
+        final Membership membership = membershipServiceBean.getMembership(ORG_MIFFLOND, alias);
+        final Long guildID = membership.getGroupMemberships()
+                .stream()
+                .filter(current -> current instanceof GuildMembership)
+                .map(current -> ((GuildMembership) current).getGuild())
+                .filter(guild -> guildName.equals(guild.getGroupName()))
+                .map(guild -> guild.getId())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No Guild [" + guildName + "]"));
+
+        final MembershipListVO desiredState = new MembershipListVO(membership.getOrganisation());
+        desiredState.add(membership);
+        desiredState.getMemberInformation().get(0).getGuilds().removeIf(guild -> guildID.equals(guild.getJpaID()));
+        membershipServiceBean.updateGuildMemberships(membership, desiredState);
+        commitAndStartNewTransaction();
+    }
+
+    private List<MailingListPushState> getPushStates() {
+        return entityManager.createNamedQuery(MailingListPushState.NAMEDQ_GET_BY_ORGANISATION,
+                MailingListPushState.class)
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, ORG_MIFFLOND)
+                .getResultList();
+    }
+
+    /**
+     * MailListServiceBean capturing (or failing) the sent messages.
+     */
+    static class CapturingMailListServiceBean extends MailListServiceBean {
+
+        // Internal state
+        private final List<String> sent = new ArrayList<>();
+        private final List<JmsCompliantMap> properties = new ArrayList<>();
+        private boolean failSending;
+
+        CapturingMailListServiceBean(final GroupMembershipIndexServiceBean indexServiceBean) {
+            super(indexServiceBean);
+        }
+
+        @Override
+        protected void send(final JmsCompliantMap propertyMap, final String body) throws JMSException {
+
+            if (failSending) {
+                throw new JMSException("Broker unavailable");
+            }
+
+            properties.add(propertyMap);
+            sent.add(body);
+        }
+
+        List<String> getLines(final int index) {
+            return Arrays.stream(sent.get(index).split("\n")).collect(Collectors.toList());
+        }
+    }
+}
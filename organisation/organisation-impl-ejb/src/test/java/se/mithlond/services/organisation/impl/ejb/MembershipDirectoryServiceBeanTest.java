@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGuildMembershipVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimMemberVO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class MembershipDirectoryServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private MembershipDirectoryServiceBean unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        final OrganisationServiceBean organisationServiceBean = new OrganisationServiceBean();
+        unitUnderTest = new MembershipDirectoryServiceBean();
+        membershipServiceBean = new MembershipServiceBean(organisationServiceBean, unitUnderTest, null, null, null);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(unitUnderTest);
+        injectEntityManager(membershipServiceBean);
+    }
+
+    @Test
+    public void validateSearchingByPrefix() {
+
+        // Assemble
+        final Long alvgilletID = getGuildID(membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp"), "Alvgillet");
+
+        // Act
+        final MembershipListVO baggins = unitUnderTest.search(MIFFLOND_JPA_ID, "bag", null, false, 10);
+        final MembershipListVO swedishUpperCase = unitUnderTest.search(MIFFLOND_JPA_ID, "ÖST", null, false, 10);
+        final MembershipListVO withoutSwedishLetter = unitUnderTest.search(MIFFLOND_JPA_ID, "ost", null, false, 10);
+        final MembershipListVO loginPermittedG = unitUnderTest.search(MIFFLOND_JPA_ID, "g", null, false, 10);
+        final MembershipListVO allG = unitUnderTest.search(MIFFLOND_JPA_ID, "g", null, true, 10);
+        final MembershipListVO alvgillet = unitUnderTest.search(MIFFLOND_JPA_ID, "", alvgilletID, true, 10);
+        final MembershipListVO limited = unitUnderTest.search(MIFFLOND_JPA_ID, null, null, true, 2);
+        final MembershipListVO otherOrganisation = unitUnderTest.search(FJODJIM_JPA_ID, "ö", null, true, 10);
+        final MembershipListVO groupMembers = unitUnderTest.getGroupMembers(MIFFLOND_JPA_ID, alvgilletID, true);
+
+        // Assert
+        Assert.assertEquals(ORG_MIFFLOND, baggins.getOrganisationName());
+        Assert.assertEquals(MIFFLOND_JPA_ID, baggins.getOrganisationJpaID());
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Dildo Baggins, The nemesis"), getSortedAliases(baggins));
+        Assert.assertEquals(Collections.singletonList("Dildo Baggins, The nemesis"),
+                getSortedAliases(swedishUpperCase));
+        Assert.assertEquals(0, withoutSwedishLetter.getMemberInformation().size());
+        Assert.assertEquals(Collections.singletonList("Gromp"), getSortedAliases(loginPermittedG));
+        Assert.assertEquals(Arrays.asList("Grima, the Wyrmtongue", "Gromp"), getSortedAliases(allG));
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Grima, the Wyrmtongue", "Gromp"),
+                getSortedAliases(alvgillet));
+        Assert.assertEquals(2, limited.getMemberInformation().size());
+        Assert.assertEquals(Collections.singletonList("Pledra, The sneak"), getSortedAliases(otherOrganisation));
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Grima, the Wyrmtongue", "Gromp"),
+                groupMembers.getMemberInformation()
+                        .stream()
+                        .map(SlimMemberVO::getFullAlias)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void validateSynchronizingWithMembershipChanges() {
+
+        // Assemble
+        final Membership gromp = membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp");
+        final Membership grima = membershipServiceBean.getMembership(ORG_MIFFLOND, "Grima");
+        final Long alvgilletID = getGuildID(gromp, "Alvgillet");
+        Assert.assertEquals(3, unitUnderTest.getGroupMembers(MIFFLOND_JPA_ID, alvgilletID, true)
+                .getMemberInformation()
+                .size());
+
+        // Act #1: Remove Gromp from Alvgillet using the MembershipService.
+        final MembershipListVO desiredState = new MembershipListVO(gromp.getOrganisation());
+        desiredState.add(gromp);
+        final List<SlimGuildMembershipVO> desiredGuilds = desiredState.getMemberInformation().get(0).getGuilds();
+        desiredGuilds.removeIf(guild -> alvgilletID.equals(guild.getJpaID()));
+        membershipServiceBean.updateGuildMemberships(gromp, desiredState);
+        commitAndStartNewTransaction();
+
+        // Act #2: Permit Grima login, and notify the directory.
+        grima.setLoginPermitted(true);
+        unitUnderTest.membershipsChanged(Collections.singletonList(grima));
+        final MembershipListVO loginPermittedG = unitUnderTest.search(MIFFLOND_JPA_ID, "g", null, false, 10);
+
+        // Act #3: Remove Grima from the directory.
+        unitUnderTest.membershipsRemoved(Collections.singletonList(grima));
+        final MembershipListVO allAfterRemoval = unitUnderTest.search(MIFFLOND_JPA_ID, "", null, true, 10);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Grima, the Wyrmtongue"),
+                getSortedAliases(unitUnderTest.search(MIFFLOND_JPA_ID, null, alvgilletID, true, 10)));
+        Assert.assertEquals(Arrays.asList("Grima, the Wyrmtongue", "Gromp"), getSortedAliases(loginPermittedG));
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Dildo Baggins, The nemesis", "Gromp"),
+                getSortedAliases(allAfterRemoval));
+
+        // Rebuilding from the database restores the removed Membership.
+        Assert.assertEquals(4, unitUnderTest.rebuild(MIFFLOND_JPA_ID));
+        Assert.assertEquals(2, unitUnderTest.getGroupMembers(MIFFLOND_JPA_ID, alvgilletID, true)
+                .getMemberInformation()
+                .size());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static List<String> getSortedAliases(final MembershipListVO membershipList) {
+        return membershipList.getMemberInformation()
+                .stream()
+                .map(SlimMemberVO::getFullAlias)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static Long getGuildID(final Membership membership, final String guildName) {
+        return membership.getGroupMemberships()
+                .stream()
+                .filter(current -> current instanceof GuildMembership)
+                .map(current -> ((GuildMembership) current).getGuild())
+                .filter(guild -> guildName.equals(guild.getGroupName()))
+                .map(guild -> guild.getId())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No Guild [" + guildName + "]"));
+    }
+}
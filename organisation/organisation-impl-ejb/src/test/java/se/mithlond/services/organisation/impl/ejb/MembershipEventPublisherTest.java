@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.event.MembershipChangedEvent;
+import se.mithlond.services.organisation.api.event.MembershipReplica;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class MembershipEventPublisherTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private List<String> sentMessageBodies;
+    private MembershipEventPublisher unitUnderTest;
+    private MembershipServiceBean membershipServiceBean;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units, capturing the sent message bodies instead of sending them to a JMS Topic.
+        sentMessageBodies = new ArrayList<>();
+        unitUnderTest = new MembershipEventPublisher() {
+            @Override
+            protected void send(final List<MembershipChangedEvent> events) {
+                sentMessageBodies.add(MembershipChangedEvent.toMessageBody(events));
+            }
+        };
+
+        final OrganisationServiceBean organisationServiceBean = new OrganisationServiceBean();
+        membershipServiceBean = new MembershipServiceBean(organisationServiceBean, null, null, unitUnderTest, null);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(membershipServiceBean);
+    }
+
+    @Test
+    public void validatePublishingGuildMembershipChanges() {
+
+        // Assemble
+        final Membership gromp = membershipServiceBean.getMembership(ORG_MIFFLOND, "Gromp");
+        final MembershipListVO desiredState = new MembershipListVO(gromp.getOrganisation());
+        desiredState.add(gromp);
+        desiredState.getMemberInformation().get(0).getGuilds().clear();
+
+        final MembershipReplica<String> replica = new MembershipReplica<>(
+                event -> "Reloaded " + event.getMembershipJpaID());
+
+        // Act
+        membershipServiceBean.updateGuildMemberships(gromp, desiredState);
+        commitAndStartNewTransaction();
+        membershipServiceBean.updateGuildMemberships(gromp, desiredState);
+
+        // Assert
+        Assert.assertEquals(1, sentMessageBodies.size());
+
+        final List<MembershipChangedEvent> events = MembershipChangedEvent.parseMessageBody(
+                sentMessageBodies.get(0));
+        Assert.assertEquals(1, events.size());
+
+        final MembershipChangedEvent event = events.get(0);
+        Assert.assertEquals(MIFFLOND_JPA_ID.longValue(), event.getOrganisationJpaID());
+        Assert.assertEquals(gromp.getId().longValue(), event.getMembershipJpaID());
+        Assert.assertEquals(EnumSet.of(MembershipChangedEvent.ChangeKind.GUILDS), event.getChangeKinds());
+
+        Assert.assertEquals(1, replica.applyMessageBody(sentMessageBodies.get(0)));
+        Assert.assertEquals(0, replica.applyMessageBody(sentMessageBodies.get(0)));
+        Assert.assertEquals("Reloaded " + gromp.getId(), replica.get(gromp.getId()));
+    }
+
+    @Test
+    public void validateNotPublishingUnpersistedMemberships() {
+
+        // Act
+        unitUnderTest.publishAfterCommit(Collections.singletonList(new Membership()),
+                EnumSet.of(MembershipChangedEvent.ChangeKind.CREATED));
+
+        // Assert
+        Assert.assertTrue(sentMessageBodies.isEmpty());
+    }
+}
@@ -23,8 +23,21 @@ package se.mithlond.services.organisation.impl.ejb;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.membership.Group;
 import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.membership.guild.Guild;
+import se.mithlond.services.organisation.model.membership.guild.GuildMembership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimGuildMembershipVO;
+import se.mithlond.services.organisation.model.transport.convenience.membership.SlimMemberVO;
+import se.mithlond.services.organisation.model.transport.membership.Memberships;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -35,6 +48,9 @@ import java.util.stream.Stream;
  */
 public class MembershipServiceBeanTest extends AbstractOrganisationIntegrationTest {
 
+    // Our Logger
+    private static final Logger log = LoggerFactory.getLogger(MembershipServiceBeanTest.class);
+
     // Shared state
     private MembershipServiceBean unitUnderTest;
 
@@ -94,6 +110,26 @@ public class MembershipServiceBeanTest extends AbstractOrganisationIntegrationTe
         Assert.assertEquals("bilbo", bilboMifflondMembership.getEmailAlias());
     }
 
+    @Test
+    public void validatePagingMembershipsInOrganisation() {
+
+        // Act
+        final List<Membership> firstPage = unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, false, 0, 2);
+        final List<Membership> secondPage = unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, false, 2, 2);
+        final List<Membership> beyondLastPage = unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, false, 4, 2);
+        final List<Membership> allPaged = unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, true, 0, 1000);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("Bilbo Baggins", "Dildo Baggins"), firstPage.stream()
+                .map(Membership::getAlias)
+                .collect(Collectors.toList()));
+        Assert.assertEquals(Collections.singletonList("Gromp"), secondPage.stream()
+                .map(Membership::getAlias)
+                .collect(Collectors.toList()));
+        Assert.assertTrue(beyondLastPage.isEmpty());
+        Assert.assertEquals(unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, true), allPaged);
+    }
+
     @Test
     public void validateNoExceptionWhenRequestingMembershipsInNonexistentOrganisation() {
 
@@ -115,4 +151,122 @@ public class MembershipServiceBeanTest extends AbstractOrganisationIntegrationTe
         Assert.assertNull(imaginaryMembership);
         Assert.assertNull(imaginaryFjodjimMembership);
     }
+
+    @Test
+    public void validateSlimMembershipProjectionMatchesEntityConversion() {
+
+        // Assemble
+        final Membership bilbo = unitUnderTest.getMembership(ORG_MIFFLOND, "Bilbo Baggins");
+        bilbo.getUser().getContactDetails().put("EMAIL", "allan@octamac.se");
+        bilbo.getUser().getContactDetails().put("CELL_PHONE", "0701-234567");
+
+        final Group council = entityManager.createNamedQuery(Group.NAMEDQ_GET_BY_NAME_ORGANISATION, Group.class)
+                .setParameter(OrganisationPatterns.PARAM_GROUP_NAME, "Grå Rådet")
+                .setParameter(OrganisationPatterns.PARAM_ORGANISATION_NAME, ORG_MIFFLOND)
+                .getSingleResult();
+        bilbo.addOrGetGroupMembership(council);
+        commitAndStartNewTransaction();
+
+        final MembershipListVO expected = new MembershipListVO(bilbo.getOrganisation());
+        final List<Membership> allMemberships = unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, true);
+        expected.add(allMemberships.toArray(new Membership[allMemberships.size()]));
+
+        // Act
+        final MembershipListVO result = unitUnderTest.getSlimMembershipsIn(MIFFLOND_JPA_ID, true);
+        final MembershipListVO loginPermitted = unitUnderTest.getSlimMembershipsIn(MIFFLOND_JPA_ID, false);
+
+        // Assert
+        Assert.assertEquals(ORG_MIFFLOND, result.getOrganisationName());
+        Assert.assertEquals(4, result.getMemberInformation().size());
+        Assert.assertEquals(3, loginPermitted.getMemberInformation().size());
+        Assert.assertEquals(expected.toString(), result.toString());
+
+        final SlimMemberVO slimBilbo = result.getMemberInformation().get(0);
+        Assert.assertEquals("Bilbo Baggins", slimBilbo.getFullAlias());
+        Assert.assertEquals(2, slimBilbo.getContactInfo().size());
+        Assert.assertEquals(2, slimBilbo.getGuilds().size());
+        Assert.assertEquals(1, slimBilbo.getGroups().size());
+        Assert.assertEquals("group_Mifflond_Inbyggare", slimBilbo.getGroups().get(0).getParentXmlId());
+    }
+
+    @Test
+    public void validateSlimMembershipListPayloadIsSmallerThanFullMemberships() {
+
+        // Assemble
+        // The full representation is assembled as the /membership/all resource does (without details).
+        final Memberships fullMemberships = new Memberships();
+        unitUnderTest.getMembershipsIn(MIFFLOND_JPA_ID, true).forEach(fullMemberships::addMembership);
+
+        // Act
+        final MembershipListVO slimMemberships = unitUnderTest.getSlimMembershipsIn(MIFFLOND_JPA_ID, true);
+        final int fullSize = marshalToXML(fullMemberships).getBytes(StandardCharsets.UTF_8).length;
+        final int slimSize = marshalToXML(slimMemberships).getBytes(StandardCharsets.UTF_8).length;
+
+        // Assert
+        log.info("Marshalled XML payload for [" + slimMemberships.getMemberInformation().size() + "] Memberships in ["
+                + ORG_MIFFLOND + "]: /membership/all [" + fullSize + "] bytes, MembershipListVO [" + slimSize
+                + "] bytes. Latency is not measured.");
+
+        Assert.assertEquals(fullMemberships.getMemberships().size(),
+                slimMemberships.getMemberInformation().size());
+        Assert.assertTrue(slimSize < fullSize);
+    }
+
+    @Test
+    public void validateUpdatingGuildMemberships() {
+
+        // Assemble
+        //
+        // Gromp is deputy guild master of both Alvgillet and Kämpaleksgillet.
+        // Promote Gromp to guild master of Kämpaleksgillet, and leave Alvgillet.
+        //
+        final Membership gromp = unitUnderTest.getMembership(ORG_MIFFLOND, "Gromp");
+        final Long alvgilletID = getGuildID(gromp, "Alvgillet");
+        final Long kampaleksgilletID = getGuildID(gromp, "Kämpaleksgillet");
+
+        final MembershipListVO desiredState = new MembershipListVO(gromp.getOrganisation());
+        desiredState.add(gromp);
+        final List<SlimGuildMembershipVO> guilds = desiredState.getMemberInformation().get(0).getGuilds();
+        guilds.clear();
+        guilds.add(new SlimGuildMembershipVO(kampaleksgilletID, null, GuildMembership.GuildRole.guildMaster));
+
+        // Act
+        unitUnderTest.updateGuildMemberships(gromp, desiredState);
+        commitAndStartNewTransaction();
+
+        // Assert
+        final List<GuildMembership> result = unitUnderTest.getMembership(ORG_MIFFLOND, "Gromp")
+                .getGroupMemberships()
+                .stream()
+                .filter(current -> current instanceof GuildMembership)
+                .map(current -> (GuildMembership) current)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(kampaleksgilletID, result.get(0).getGuild().getId());
+        Assert.assertEquals(GuildMembership.GuildRole.guildMaster, GuildMembership.toGuildRole(result.get(0)));
+        Assert.assertFalse(result.stream().anyMatch(current -> alvgilletID.equals(current.getGuild().getId())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnSlimMembershipsInNonexistentOrganisation() {
+
+        // Act & Assert
+        unitUnderTest.getSlimMembershipsIn(-24L, true);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static Long getGuildID(final Membership membership, final String guildName) {
+        return membership.getGroupMemberships()
+                .stream()
+                .filter(current -> current instanceof GuildMembership)
+                .map(current -> ((GuildMembership) current).getGuild())
+                .filter(guild -> guildName.equals(guild.getGroupName()))
+                .map(Guild::getId)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No Guild [" + guildName + "]"));
+    }
 }
@@ -26,16 +26,22 @@ import org.junit.Test;
 import se.jguru.nazgul.test.xmlbinding.XmlTestUtils;
 import se.mithlond.services.organisation.api.parameters.CategorizedAddressSearchParameters;
 import se.mithlond.services.organisation.api.parameters.GroupIdSearchParameters;
+import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.address.CategorizedAddress;
 import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.GroupMembership;
+import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.organisation.model.membership.guild.Guild;
 import se.mithlond.services.organisation.model.transport.Organisations;
 import se.mithlond.services.organisation.model.transport.address.CategoriesAndAddresses;
 import se.mithlond.services.organisation.model.transport.membership.GroupVO;
 import se.mithlond.services.organisation.model.transport.membership.Groups;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -180,6 +186,50 @@ public class OrganisationServiceBeanTest extends AbstractOrganisationIntegration
         Assert.assertEquals(mifflondMembers, mifflondCouncil.getParent());
     }
 
+    @Test
+    public void validateResolvingAdministrativeScopes() {
+
+        // Assemble
+        final MembershipServiceBean membershipServiceBean = new MembershipServiceBean();
+        injectEntityManager(membershipServiceBean);
+
+        final Membership zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Organisation fjodjim = zap.getOrganisation();
+        final Group admins = new Group("Administratörer", "Fjodjims administratörer", fjodjim, null, "admins");
+        final Group webmasters = new Group("Webbgruppen", "Fjodjims webbmästare", fjodjim, admins, "webb");
+        entityManager.persist(admins);
+        entityManager.persist(webmasters);
+        entityManager.flush();
+
+        zap.getGroupMemberships().add(new GroupMembership(webmasters, zap));
+        commitAndStartNewTransaction();
+
+        final Membership adminZap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        final Membership aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        final List<Long> orgIDs = Arrays.asList(MIFFLOND_JPA_ID, FJODJIM_JPA_ID, FJODJIM_JPA_ID, 4711L);
+
+        // Act
+        final SortedMap<Organisation, Boolean> zapScopes = unitUnderTest.resolveAdministrativeScopes(adminZap, orgIDs);
+        final SortedMap<Organisation, Boolean> aragornScopes = unitUnderTest.resolveAdministrativeScopes(
+                aragorn, orgIDs);
+
+        // Assert
+        Assert.assertEquals(2, zapScopes.size());
+        zapScopes.forEach((org, isAdmin) -> Assert.assertEquals(org.getId() == FJODJIM_JPA_ID, isAdmin));
+        Assert.assertEquals(2, aragornScopes.size());
+        Assert.assertFalse(aragornScopes.containsValue(true));
+        Assert.assertTrue(unitUnderTest.isAdministratorFor(adminZap, adminZap.getOrganisation()));
+        Assert.assertFalse(unitUnderTest.isAdministratorFor(aragorn, aragorn.getOrganisation()));
+        Assert.assertTrue(unitUnderTest.resolveAdministrativeScopes(adminZap, Collections.emptyList()).isEmpty());
+
+        try {
+            zapScopes.clear();
+            Assert.fail("Administrative scopes should be unmodifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
     @Test
     public void validateCategorizedAddressSearch() throws Exception {
 
@@ -34,6 +34,7 @@ import se.mithlond.services.organisation.model.food.Allergy;
 import se.mithlond.services.organisation.model.food.AllergySeverity;
 import se.mithlond.services.organisation.model.food.Food;
 import se.mithlond.services.organisation.model.localization.LocaleDefinition;
+import se.mithlond.services.organisation.model.localization.Localizable;
 import se.mithlond.services.organisation.model.localization.LocalizedText;
 import se.mithlond.services.organisation.model.localization.LocalizedTexts;
 import se.mithlond.services.organisation.model.membership.Group;
@@ -48,6 +49,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -193,6 +195,100 @@ public final class PersistenceHelper {
         return persist ? persist(activity) : activity;
     }
 
+    /**
+     * Creates and persists a LocalizedTexts suite holding the supplied Swedish (default) and English texts.
+     * The LocaleDefinitions of the texts are persisted on first use, and reused thereafter.
+     *
+     * @param suiteIdentifier The unique suite identifier.
+     * @param swedishText     The Swedish text.
+     * @param englishText     The English text.
+     * @return The persisted LocalizedTexts.
+     */
+    public static LocalizedTexts createLocalizedTexts(final String suiteIdentifier,
+                                                      final String swedishText,
+                                                      final String englishText) {
+
+        final LocalizedTexts toReturn = new LocalizedTexts(suiteIdentifier,
+                new LocaleDefinition(TimeFormat.SWEDISH_LOCALE),
+                Localizable.DEFAULT_CLASSIFIER,
+                swedishText);
+        toReturn.setText(Locale.ENGLISH, Localizable.DEFAULT_CLASSIFIER, englishText);
+
+        // The LocalizedTexts creates unmanaged LocaleDefinitions; replace them with managed ones.
+        toReturn.assignManagedLocalizations(Arrays.asList(
+                getLocaleDefinition(TimeFormat.SWEDISH_LOCALE),
+                getLocaleDefinition(Locale.ENGLISH)));
+
+        return persist(toReturn);
+    }
+
+    /**
+     * Creates and persists a Food with the supplied names.
+     *
+     * @param swedishFoodName The Swedish name of the Food.
+     * @param englishFoodName The English name of the Food.
+     * @param category        The persisted Food category.
+     * @param subCategory     The persisted Food subcategory.
+     * @return The persisted Food.
+     */
+    public static Food createFood(final String swedishFoodName,
+                                  final String englishFoodName,
+                                  final Category category,
+                                  final Category subCategory) {
+
+        final LocalizedTexts foodName = createLocalizedTexts(
+                Food.FOOD_LOCALIZATION_SUITE_PREFIX + swedishFoodName.trim().replaceAll(" ", "_"),
+                swedishFoodName,
+                englishFoodName);
+
+        return persist(new Food(foodName, category, subCategory));
+    }
+
+    /**
+     * Creates and persists an AllergySeverity with the supplied sort order and descriptions.
+     *
+     * @param severitySortOrder       The unique sort order of the AllergySeverity.
+     * @param swedishShortDescription The Swedish short description.
+     * @param englishShortDescription The English short description.
+     * @return The persisted AllergySeverity.
+     */
+    public static AllergySeverity createAllergySeverity(final int severitySortOrder,
+                                                        final String swedishShortDescription,
+                                                        final String englishShortDescription) {
+
+        return persist(new AllergySeverity(severitySortOrder,
+                createLocalizedTexts("AllergySeverity_short_" + severitySortOrder,
+                        swedishShortDescription,
+                        englishShortDescription),
+                createLocalizedTexts("AllergySeverity_full_" + severitySortOrder,
+                        "Allergi: " + swedishShortDescription,
+                        "Allergy: " + englishShortDescription)));
+    }
+
+    /**
+     * Retrieves the persisted Category with the supplied categoryID.
+     *
+     * @param categoryID The categoryID of a persisted Category.
+     * @return The persisted Category.
+     */
+    public static Category getCategory(final String categoryID) {
+        return entityManager.createQuery("select c from Category c where c.categoryID = :categoryID", Category.class)
+                .setParameter("categoryID", categoryID)
+                .getSingleResult();
+    }
+
+    private static LocaleDefinition getLocaleDefinition(final Locale locale) {
+
+        final List<LocaleDefinition> existing = entityManager.createQuery(
+                "select l from LocaleDefinition l where l.language = :language and l.country = :country",
+                LocaleDefinition.class)
+                .setParameter("language", locale.getLanguage())
+                .setParameter("country", locale.getCountry())
+                .getResultList();
+
+        return existing.isEmpty() ? persist(new LocaleDefinition(locale)) : existing.get(0);
+    }
+
     /**
      * Performs a base population of the Database.
      */
@@ -0,0 +1,258 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.api.ReminderService;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.ReminderHighWaterMark;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ReminderServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private OrganisationServiceBean organisationServiceBean;
+    private ActivityServiceBean activityServiceBean;
+    private VirtualClock clock;
+    private List<String> dispatched;
+    private Membership zap;
+    private CategorizedAddress address;
+    private LocalDateTime startTime;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        organisationServiceBean = new OrganisationServiceBean();
+        final MembershipServiceBean membershipServiceBean = new MembershipServiceBean();
+        activityServiceBean = new ActivityServiceBean(organisationServiceBean);
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(membershipServiceBean);
+        injectEntityManager(activityServiceBean);
+
+        zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses()
+                .get(0);
+
+        // The standard setup only holds Activities which have ended long before the virtual clock starts.
+        clock = new VirtualClock(LocalDateTime.of(2030, Month.MARCH, 4, 10, 0));
+        dispatched = new ArrayList<>();
+        startTime = LocalDateTime.of(2030, Month.MARCH, 6, 19, 0);
+    }
+
+    @Test
+    public void validateDispatchingDueRemindersByVirtualClock() {
+
+        // Assemble
+        final long activityID = createActivity(activityServiceBean);
+        commitAndStartNewTransaction();
+        final ReminderServiceBean unitUnderTest = createUnitUnderTest();
+
+        // Act
+        final int numScheduled = unitUnderTest.reload();
+
+        clock.setTime(LocalDateTime.of(2030, Month.MARCH, 4, 23, 59));
+        final int numDispatchedBeforeDeadline = unitUnderTest.dispatchDueReminders();
+
+        clock.setTime(LocalDateTime.of(2030, Month.MARCH, 5, 0, 0));
+        final int numDispatchedAtDeadline = unitUnderTest.dispatchDueReminders();
+
+        clock.setTime(LocalDateTime.of(2030, Month.MARCH, 5, 19, 0, 30));
+        final int numDispatchedAtStart = unitUnderTest.dispatchDueReminders();
+        commitAndStartNewTransaction();
+
+        // Assert
+        Assert.assertEquals(2, numScheduled);
+        Assert.assertEquals(0, numDispatchedBeforeDeadline);
+        Assert.assertEquals(1, numDispatchedAtDeadline);
+        Assert.assertEquals(1, numDispatchedAtStart);
+        Assert.assertEquals(Arrays.asList(
+                activityID + ":" + ReminderService.ReminderType.LAST_ADMISSION,
+                activityID + ":" + ReminderService.ReminderType.ACTIVITY_START), dispatched);
+        Assert.assertEquals(0, unitUnderTest.getNumberOfScheduledReminders());
+        Assert.assertEquals(LocalDateTime.of(2030, Month.MARCH, 5, 19, 0, 30), getHighWaterMark());
+    }
+
+    @Test
+    public void validateIncrementalSchedulingAndSafeRestart() {
+
+        // Assemble
+        final ReminderServiceBean unitUnderTest = createUnitUnderTest();
+        Assert.assertEquals(0, unitUnderTest.reload());
+        final ActivityServiceBean notifyingActivityServiceBean = new ActivityServiceBean(
+                organisationServiceBean, null, null, unitUnderTest);
+        injectEntityManager(notifyingActivityServiceBean);
+
+        // Act
+        final long activityID = createActivity(notifyingActivityServiceBean);
+        commitAndStartNewTransaction();
+        final int numScheduledAfterCreate = unitUnderTest.getNumberOfScheduledReminders();
+
+        clock.setTime(LocalDateTime.of(2030, Month.MARCH, 5, 0, 0));
+        final int numDispatchedBeforeRestart = unitUnderTest.dispatchDueReminders();
+        commitAndStartNewTransaction();
+
+        final ReminderServiceBean restarted = createUnitUnderTest();
+        final int numScheduledAfterRestart = restarted.reload();
+
+        clock.setTime(LocalDateTime.of(2030, Month.MARCH, 5, 19, 0));
+        final int numDispatchedAfterRestart = restarted.dispatchDueReminders();
+        commitAndStartNewTransaction();
+
+        final Activity activity = entityManager.find(Activity.class, activityID);
+        unitUnderTest.activitiesRemoved(Collections.singletonList(activity));
+
+        // Assert
+        Assert.assertEquals(2, numScheduledAfterCreate);
+        Assert.assertEquals(1, numDispatchedBeforeRestart);
+        Assert.assertEquals(1, numScheduledAfterRestart);
+        Assert.assertEquals(1, numDispatchedAfterRestart);
+        Assert.assertEquals(Arrays.asList(
+                activityID + ":" + ReminderService.ReminderType.LAST_ADMISSION,
+                activityID + ":" + ReminderService.ReminderType.ACTIVITY_START), dispatched);
+        Assert.assertEquals(0, unitUnderTest.getNumberOfScheduledReminders());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private ReminderServiceBean createUnitUnderTest() {
+
+        final ReminderServiceBean toReturn = new ReminderServiceBean(clock, Duration.ofHours(24), Duration.ofDays(7)) {
+            @Override
+            protected void send(final List<Reminder> batch) {
+                dispatched.addAll(Arrays.asList(toMessageBody(batch).split(",")));
+            }
+        };
+        injectEntityManager(toReturn);
+        return toReturn;
+    }
+
+    private LocalDateTime getHighWaterMark() {
+        return entityManager.createNamedQuery(ReminderHighWaterMark.NAMEDQ_GET_BY_NAME, ReminderHighWaterMark.class)
+                .setParameter(OrganisationPatterns.PARAM_REMINDER_MARK_NAME, ReminderServiceBean.HIGH_WATER_MARK_NAME)
+                .getSingleResult()
+                .getDispatchedUntil();
+    }
+
+    private long createActivity(final ActivityServiceBean serviceBean) {
+
+        final ActivityVO toCreate = new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                "Sköldmålning",
+                "Vi målar sköldar",
+                startTime,
+                startTime.plusHours(2),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                startTime.toLocalDate().minusDays(1),
+                false,
+                null,
+                address.getCategory().getCategoryID(),
+                address.getAddress(),
+                address.getShortDesc(),
+                null,
+                false,
+                null);
+
+        // Zap is responsible for the Activity.
+        toCreate.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                zap.getId(),
+                zap.getAlias(),
+                ORG_FJODJIM,
+                startTime.minusDays(3),
+                startTime.minusDays(3),
+                null,
+                true));
+
+        final Activities created = serviceBean.createActivities(new Activities(toCreate), zap);
+        return created.getActivityVOs().get(0).getJpaID();
+    }
+
+    /**
+     * Clock whose time is set by the test.
+     */
+    private static final class VirtualClock extends Clock {
+
+        // Internal state
+        private Instant instant;
+
+        private VirtualClock(final LocalDateTime time) {
+            setTime(time);
+        }
+
+        private void setTime(final LocalDateTime time) {
+            this.instant = time.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-impl-ejb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.impl.ejb;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.address.CategorizedAddress;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.organisation.model.transport.activity.Activities;
+import se.mithlond.services.organisation.model.transport.activity.ActivityVO;
+import se.mithlond.services.organisation.model.transport.activity.AdmissionVO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class UpcomingActivityServiceBeanTest extends AbstractOrganisationIntegrationTest {
+
+    // Shared state
+    private OrganisationServiceBean organisationServiceBean;
+    private ActivityServiceBean activityServiceBean;
+    private UpcomingActivityServiceBean unitUnderTest;
+    private Membership zap;
+    private Membership aragorn;
+    private CategorizedAddress address;
+    private LocalDateTime tomorrowEvening;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCustomSetup() {
+
+        // First, handle the standard setup.
+        super.doCustomSetup();
+
+        // Create the test units
+        organisationServiceBean = new OrganisationServiceBean();
+        final MembershipServiceBean membershipServiceBean = new MembershipServiceBean();
+        activityServiceBean = new ActivityServiceBean(organisationServiceBean);
+        unitUnderTest = new UpcomingActivityServiceBean();
+
+        // Inject the EntityManager connected to the in-memory DB.
+        injectEntityManager(organisationServiceBean);
+        injectEntityManager(membershipServiceBean);
+        injectEntityManager(activityServiceBean);
+        injectEntityManager(unitUnderTest);
+
+        zap = membershipServiceBean.getMembership(ORG_FJODJIM, "Zap");
+        aragorn = membershipServiceBean.getMembership(ORG_FJODJIM, "Aragorn");
+        address = activityServiceBean.getActivityLocationAddresses(FJODJIM_JPA_ID)
+                .getCategorizedAddresses()
+                .get(0);
+
+        // The standard setup only holds Activities which have already ended.
+        tomorrowEvening = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1).plusHours(19);
+    }
+
+    @Test
+    public void validateIndexIsBuiltFromDatabase() {
+
+        // Assemble
+        final Long laterID = createActivity(activityServiceBean, tomorrowEvening.plusDays(7));
+        final Long soonerID = createActivity(activityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+
+        // Act
+        final int numIndexed = unitUnderTest.rebuild();
+        final Activities upcoming = unitUnderTest.getUpcomingActivities(zap, 10);
+        final Activities next = unitUnderTest.getUpcomingActivities(zap, 1);
+
+        // Assert
+        Assert.assertEquals(2, numIndexed);
+        Assert.assertEquals(2, upcoming.getActivityVOs().size());
+        Assert.assertEquals(soonerID, upcoming.getActivityVOs().get(0).getJpaID());
+        Assert.assertEquals(laterID, upcoming.getActivityVOs().get(1).getJpaID());
+        Assert.assertEquals(1, next.getActivityVOs().size());
+        Assert.assertEquals(soonerID, next.getActivityVOs().get(0).getJpaID());
+        Assert.assertEquals(0, unitUnderTest.getUpcomingActivities(aragorn, 10).getActivityVOs().size());
+    }
+
+    @Test
+    public void validateIndexIsMaintainedIncrementally() {
+
+        // Assemble
+        Assert.assertEquals(0, unitUnderTest.rebuild());
+        final ActivityServiceBean notifyingActivityServiceBean = new ActivityServiceBean(
+                organisationServiceBean, null, unitUnderTest);
+        injectEntityManager(notifyingActivityServiceBean);
+
+        // Act
+        final Long activityID = createActivity(notifyingActivityServiceBean, tomorrowEvening);
+        commitAndStartNewTransaction();
+        final List<Long> zapAfterCreate = getUpcomingIDs(zap);
+
+        final Activity activity = entityManager.find(Activity.class, activityID);
+        unitUnderTest.admissionsChanged(activity,
+                Collections.singletonList(aragorn.getId()),
+                Collections.singletonList(zap.getId()));
+        final List<Long> zapAfterRevoke = getUpcomingIDs(zap);
+        final List<Long> aragornAfterAdmit = getUpcomingIDs(aragorn);
+
+        unitUnderTest.activitiesRemoved(Collections.singletonList(activity));
+        final List<Long> aragornAfterRemove = getUpcomingIDs(aragorn);
+
+        // Assert
+        Assert.assertEquals(Collections.singletonList(activityID), zapAfterCreate);
+        Assert.assertTrue(zapAfterRevoke.isEmpty());
+        Assert.assertEquals(Collections.singletonList(activityID), aragornAfterAdmit);
+        Assert.assertTrue(aragornAfterRemove.isEmpty());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private List<Long> getUpcomingIDs(final Membership membership) {
+        return unitUnderTest.getUpcomingActivities(membership, 10)
+                .getActivityVOs()
+                .stream()
+                .map(ActivityVO::getJpaID)
+                .collect(Collectors.toList());
+    }
+
+    private Long createActivity(final ActivityServiceBean serviceBean, final LocalDateTime startTime) {
+
+        final Activities created = serviceBean.createActivities(
+                new Activities(createActivityVO(startTime)), zap);
+        return created.getActivityVOs()
+                .stream()
+                .map(ActivityVO::getJpaID)
+                .collect(Collectors.toList())
+                .get(0);
+    }
+
+    private ActivityVO createActivityVO(final LocalDateTime startTime) {
+
+        final ActivityVO toReturn = new ActivityVO(null,
+                new OrganisationVO(zap.getOrganisation()),
+                "Sköldmålning",
+                "Vi målar sköldar",
+                startTime,
+                startTime.plusHours(2),
+                new Amount(BigDecimal.TEN, WellKnownCurrency.SEK),
+                null,
+                null,
+                startTime.toLocalDate(),
+                false,
+                null,
+                address.getCategory().getCategoryID(),
+                address.getAddress(),
+                address.getShortDesc(),
+                null,
+                false,
+                null);
+
+        // Zap is responsible for all Activities.
+        toReturn.getAdmissions().add(new AdmissionVO(AdmissionVO.UNINITIALIZED,
+                zap.getId(),
+                zap.getAlias(),
+                ORG_FJODJIM,
+                startTime.minusDays(1),
+                startTime.minusDays(1),
+                null,
+                true));
+
+        // All Done.
+        return toReturn;
+    }
+}
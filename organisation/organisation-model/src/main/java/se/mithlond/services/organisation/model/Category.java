@@ -54,6 +54,11 @@ import javax.xml.bind.annotation.XmlType;
                 query = "select a from Category a"
                         + " where lower(a.categoryID) like lower(:" + OrganisationPatterns.PARAM_CATEGORY_ID
                         + ") and a.classification like :" + OrganisationPatterns.PARAM_CLASSIFICATION
+                        + " order by a.categoryID"),
+        @NamedQuery(name = Category.NAMEDQ_GET_BY_IDS_CLASSIFICATION,
+                query = "select a from Category a"
+                        + " where lower(a.categoryID) in :" + OrganisationPatterns.PARAM_CATEGORY_IDS
+                        + " and a.classification like :" + OrganisationPatterns.PARAM_CLASSIFICATION
                         + " order by a.categoryID")
 })
 @Entity
@@ -79,6 +84,12 @@ public class Category extends NazgulEntity implements Comparable<Category>, Cate
     public static final String NAMEDQ_GET_BY_ID_CLASSIFICATION =
             "Category.getByIdAndClassification";
 
+    /**
+     * NamedQuery for getting Categories by a List of lowercase CategoryIDs and classification.
+     */
+    public static final String NAMEDQ_GET_BY_IDS_CLASSIFICATION =
+            "Category.getByIdsAndClassification";
+
     /**
      * The category id - comparable to a short description or single word. Cannot be null or empty.
      */
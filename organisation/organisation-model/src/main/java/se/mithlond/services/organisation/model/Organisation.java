@@ -60,6 +60,14 @@ import java.util.TimeZone;
         @NamedQuery(name = Organisation.NAMEDQ_GET_BY_NAME,
                 query = "select a from Organisation a where a.organisationName like :"
                         + OrganisationPatterns.PARAM_ORGANISATION_NAME
+                        + " order by a.organisationName"),
+        @NamedQuery(name = Organisation.NAMEDQ_GET_BY_NAMES,
+                query = "select a from Organisation a where a.organisationName in :"
+                        + OrganisationPatterns.PARAM_ORGANISATION_NAMES
+                        + " order by a.organisationName"),
+        @NamedQuery(name = Organisation.NAMEDQ_GET_BY_IDS,
+                query = "select a from Organisation a where a.id in :"
+                        + OrganisationPatterns.PARAM_ORGANISATION_IDS
                         + " order by a.organisationName")
 })
 @Table(uniqueConstraints = {@UniqueConstraint(name = "organisationNameIsUnique", columnNames = {"organisationName"})})
@@ -78,6 +86,16 @@ public class Organisation extends NazgulEntity implements Comparable<Organisatio
      */
     public static final String NAMEDQ_GET_BY_NAME = "Organisation.getByName";
 
+    /**
+     * NamedQuery for getting Organisations by a List of organisationNames.
+     */
+    public static final String NAMEDQ_GET_BY_NAMES = "Organisation.getByNames";
+
+    /**
+     * NamedQuery for getting Organisations by a List of JPA IDs.
+     */
+    public static final String NAMEDQ_GET_BY_IDS = "Organisation.getByIds";
+
     /**
      * NamedQuery for getting Organisations by organisationName.
      */
@@ -81,6 +81,11 @@ public final class OrganisationPatterns {
      */
     public static final String PARAM_LOGIN_PERMITTED = "loginPermitted";
 
+    /**
+     * NamedQuery parameter name for a List of acceptable loginPermitted values.
+     */
+    public static final String PARAM_LOGIN_PERMITTED_VALUES = "loginPermittedValues";
+
     /**
      * NamedQuery parameter name for classification.
      */
@@ -151,6 +156,11 @@ public final class OrganisationPatterns {
      */
     public static final String PARAM_ORGANISATION_ID = "organisationID";
 
+    /**
+     * NamedQuery parameter name for the JPA ID of an Activity.
+     */
+    public static final String PARAM_ACTIVITY_ID = "activityID";
+
     /**
      * NamedQuery parameter name for the number of activityIDs found.
      */
@@ -271,6 +281,46 @@ public final class OrganisationPatterns {
      */
     public static final String PARAM_FOODNAME = "foodname";
 
+    /**
+     * NamedQuery parameter name for a List of organisation names.
+     */
+    public static final String PARAM_ORGANISATION_NAMES = "organisationNames";
+
+    /**
+     * NamedQuery parameter name for a List of Membership aliases.
+     */
+    public static final String PARAM_ALIASES = "aliases";
+
+    /**
+     * NamedQuery parameter name for the JPA ID of an ActivitySeries.
+     */
+    public static final String PARAM_SERIES_ID = "seriesID";
+
+    /**
+     * NamedQuery parameter name for the first date of a date range.
+     */
+    public static final String PARAM_START_DATE = "startDate";
+
+    /**
+     * NamedQuery parameter name for the last date of a date range.
+     */
+    public static final String PARAM_END_DATE = "endDate";
+
+    /**
+     * NamedQuery parameter name for the name of a reminder high-water mark.
+     */
+    public static final String PARAM_REMINDER_MARK_NAME = "reminderMarkName";
+
+    /**
+     * NamedQuery parameter name for the startTime of the last row within the previous page (keyset paging).
+     */
+    public static final String PARAM_AFTER_START_TIME = "afterStartTime";
+
+    /**
+     * NamedQuery parameter name for the JPA ID of the last row within the previous page (keyset paging).
+     */
+    public static final String PARAM_AFTER_ID = "afterID";
+
     /*
      * Hide utility-class constructors.
      */
@@ -54,6 +54,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -83,13 +84,115 @@ import java.util.TreeSet;
                         + " or a.id in :" + OrganisationPatterns.PARAM_IDS + " ) "
                         + " and ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
                         + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
-                        + " order by a.startTime")
+                        + " order by a.startTime"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS,
+                query = "select new se.mithlond.services.organisation.model.transport.activity.ActivityVO("
+                        + " a.id, o.id, o.organisationName, o.suffix, a.shortDesc, a.fullDesc, "
+                        + " a.startTime, a.endTime, a.cost, a.lateAdmissionCost, a.currency, "
+                        + " a.lateAdmissionDate, a.lastAdmissionDate, a.cancelled, a.dressCode, "
+                        + " c.categoryID, a.addressShortDescription, "
+                        + " a.location.careOfLine, a.location.departmentName, a.location.street, "
+                        + " a.location.number, a.location.city, a.location.zipCode, a.location.country, "
+                        + " a.location.description, r.groupName, a.openToGeneralPublic, a.maxParticipants, s.id ) "
+                        + " from Activity a join a.owningOrganisation o join a.addressCategory c "
+                        + " left join a.responsible r left join a.series s "
+                        + " where ( 0 = :" + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS
+                        + " or o.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
+                        + " and ( 0 = :" + OrganisationPatterns.PARAM_NUM_ACTIVITYIDS
+                        + " or a.id in :" + OrganisationPatterns.PARAM_IDS + " ) "
+                        + " and ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
+                        + " order by a.startTime, a.id"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_BY_IDS,
+                query = "select a from Activity a "
+                        + " where a.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by a.id"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_CALENDAR_FEED,
+                query = "select a from Activity a "
+                        + " where ( 0 = :" + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS
+                        + " or a.owningOrganisation.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
+                        + " and ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
+                        + " and ( 0 = :" + OrganisationPatterns.PARAM_NUM_MEMBERSHIPIDS
+                        + " or exists ( select adm from Admission adm where adm.activity = a "
+                        + " and adm.admitted.id in :" + OrganisationPatterns.PARAM_MEMBERSHIP_IDS + " ) ) "
+                        + " and ( a.startTime > :" + OrganisationPatterns.PARAM_AFTER_START_TIME
+                        + " or ( a.startTime = :" + OrganisationPatterns.PARAM_AFTER_START_TIME
+                        + " and a.id > :" + OrganisationPatterns.PARAM_AFTER_ID + " ) ) "
+                        + " order by a.startTime, a.id"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_CALENDAR_FEED_VERSION,
+                query = "select a.id, a.version, a.addressShortDescription, a.location.street, "
+                        + " a.location.number, a.location.city, o.id, o.version, o.organisationName, o.timeZoneID "
+                        + " from Activity a join a.owningOrganisation o "
+                        + " where ( 0 = :" + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS
+                        + " or o.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
+                        + " and ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
+                        + " and ( 0 = :" + OrganisationPatterns.PARAM_NUM_MEMBERSHIPIDS
+                        + " or exists ( select adm from Admission adm where adm.activity = a "
+                        + " and adm.admitted.id in :" + OrganisationPatterns.PARAM_MEMBERSHIP_IDS + " ) ) "
+                        + " order by a.id"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_ADMISSIONS_VERSION,
+                query = "select a.version, a.owningOrganisation.id, m.id, m.version "
+                        + " from Activity a left join a.admissions adm left join adm.admitted m "
+                        + " where a.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " order by m.id"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_BY_SERIES_ID_FROM_OCCURRENCE,
+                query = "select a from Activity a "
+                        + " where a.series.id = :" + OrganisationPatterns.PARAM_SERIES_ID
+                        + " and a.seriesOccurrence >= :" + OrganisationPatterns.PARAM_START_TIME
+                        + " order by a.seriesOccurrence"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_INTERVAL_DATA_BY_ORGANISATION_ID,
+                query = "select a.id, a.startTime, a.endTime, a.shortDesc, a.addressShortDescription, a.location "
+                        + " from Activity a "
+                        + " where a.owningOrganisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " and a.endTime > :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and a.cancelled = false "
+                        + " order by a.startTime"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_UPCOMING_VO,
+                query = "select new se.mithlond.services.organisation.model.transport.activity.ActivityVO("
+                        + " a.id, o.id, o.organisationName, o.suffix, a.shortDesc, a.fullDesc, "
+                        + " a.startTime, a.endTime, a.cost, a.lateAdmissionCost, a.currency, "
+                        + " a.lateAdmissionDate, a.lastAdmissionDate, a.cancelled, a.dressCode, "
+                        + " c.categoryID, a.addressShortDescription, "
+                        + " a.location.careOfLine, a.location.departmentName, a.location.street, "
+                        + " a.location.number, a.location.city, a.location.zipCode, a.location.country, "
+                        + " a.location.description, r.groupName, a.openToGeneralPublic, a.maxParticipants, s.id ) "
+                        + " from Activity a join a.owningOrganisation o join a.addressCategory c "
+                        + " left join a.responsible r left join a.series s "
+                        + " where a.endTime > :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and a.cancelled = false "
+                        + " order by a.startTime"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_FACET_COUNTS_BY_SEARCH_PARAMETERS,
+                query = "select c.categoryID, EXTRACT(YEAR FROM a.startTime), EXTRACT(MONTH FROM a.startTime), "
+                        + " r.groupName, adm.admissionId.membershipId, count(a) "
+                        + " from Activity a join a.addressCategory c left join a.responsible r "
+                        + " left join a.admissions adm on adm.admissionId.membershipId = :"
+                        + OrganisationPatterns.PARAM_MEMBERSHIP_ID
+                        + " where ( 0 = :" + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS
+                        + " or a.owningOrganisation.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
+                        + " and ( 0 = :" + OrganisationPatterns.PARAM_NUM_ACTIVITYIDS
+                        + " or a.id in :" + OrganisationPatterns.PARAM_IDS + " ) "
+                        + " and ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
+                        + " group by c.categoryID, EXTRACT(YEAR FROM a.startTime), EXTRACT(MONTH FROM a.startTime), "
+                        + " r.groupName, adm.admissionId.membershipId"),
+        @NamedQuery(name = Activity.NAMEDQ_GET_REMINDER_TIMES_BY_DATERANGE,
+                query = "select a.id, a.startTime, a.lateAdmissionDate, a.lastAdmissionDate from Activity a "
+                        + " where a.cancelled = false "
+                        + " and ( ( a.startTime between :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and :" + OrganisationPatterns.PARAM_END_TIME + " ) "
+                        + " or ( a.lateAdmissionDate between :" + OrganisationPatterns.PARAM_START_DATE
+                        + " and :" + OrganisationPatterns.PARAM_END_DATE + " ) "
+                        + " or ( a.lastAdmissionDate between :" + OrganisationPatterns.PARAM_START_DATE
+                        + " and :" + OrganisationPatterns.PARAM_END_DATE + " ) ) "
+                        + " order by a.id")
 })
 @Entity
 @XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"cancelled", "responsible", "admissions",
         "startTime", "endTime", "cost", "currency", "lateAdmissionCost", "lateAdmissionDate",
         "lastAdmissionDate", "location", "addressCategory", "addressShortDescription", "dressCode",
-        "openToGeneralPublic"})
+        "openToGeneralPublic", "maxParticipants", "seriesOccurrence"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Activity extends Listable {
 
@@ -105,6 +208,88 @@ public class Activity extends Listable {
     public static final String NAMEDQ_GET_BY_SEARCH_PARAMETERS =
             "Activity.getBySearchParameters";
 
+    /**
+     * NamedQuery for getting ActivityVOs matching the state within an ActivitySearchParameters instance.
+     * Uses the same criteria as {@link #NAMEDQ_GET_BY_SEARCH_PARAMETERS}, but projects the scalar values
+     * directly into ActivityVO transport objects, implying that no Activity entities are loaded.
+     * The admissions of the resulting ActivityVOs are not populated.
+     */
+    public static final String NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS =
+            "Activity.getVoBySearchParameters";
+
+    /**
+     * NamedQuery for getting Activities by their JPA IDs, ordered by JPA ID.
+     */
+    public static final String NAMEDQ_GET_BY_IDS =
+            "Activity.getByIDs";
+
+    /**
+     * NamedQuery for getting Activities (ordered by startTime and id) to be emitted within a calendar feed,
+     * optionally restricted to Activities to which any of a set of Memberships are admitted. Pages are read
+     * using keyset paging, i.e. only Activities ordered after the supplied (afterStartTime, afterID) are
+     * retrieved.
+     */
+    public static final String NAMEDQ_GET_CALENDAR_FEED =
+            "Activity.getCalendarFeed";
+
+    /**
+     * NamedQuery for getting [activityJpaID, activityVersion, addressShortDescription, street, number, city,
+     * organisationJpaID, organisationVersion, organisationName, timeZoneID] for each Activity within a
+     * calendar feed, ordered by Activity JPA ID. Used to calculate an entity tag for the calendar feed from
+     * the rendered location and Organisation data, without loading any Activities.
+     */
+    public static final String NAMEDQ_GET_CALENDAR_FEED_VERSION =
+            "Activity.getCalendarFeedVersion";
+
+    /**
+     * NamedQuery for getting [activityVersion, owningOrganisationJpaID, membershipJpaID, membershipVersion]
+     * for each Admission of a single Activity, ordered by Membership JPA ID. An Activity without Admissions
+     * yields a single row with {@code null} Membership data. Used to detect changes to the Activity, its
+     * Admissions or the admitted Memberships (such as their aliases) without loading the Activity.
+     */
+    public static final String NAMEDQ_GET_ADMISSIONS_VERSION =
+            "Activity.getAdmissionsVersion";
+
+    /**
+     * NamedQuery for getting the materialized occurrences of an ActivitySeries, whose
+     * recurrence ID (i.e. original start time) is at or after a given time.
+     */
+    public static final String NAMEDQ_GET_BY_SERIES_ID_FROM_OCCURRENCE =
+            "Activity.getBySeriesIdFromOccurrence";
+
+    /**
+     * NamedQuery for getting the JPA ID, startTime, endTime, shortDesc, addressShortDescription and location
+     * of all non-cancelled Activities within an Organisation ending after a given time.
+     * Used to build time interval indices without loading any Activity entities.
+     */
+    public static final String NAMEDQ_GET_INTERVAL_DATA_BY_ORGANISATION_ID =
+            "Activity.getIntervalDataByOrganisationId";
+
+    /**
+     * NamedQuery for getting ActivityVOs of all non-cancelled Activities (within all Organisations) ending
+     * after a given time, projected in the same way as {@link #NAMEDQ_GET_VO_BY_SEARCH_PARAMETERS}.
+     * Used to build the read model of upcoming Activities per Membership.
+     */
+    public static final String NAMEDQ_GET_UPCOMING_VO =
+            "Activity.getUpcomingVo";
+
+    /**
+     * NamedQuery for getting the number of Activities matching the same criteria as
+     * {@link #NAMEDQ_GET_BY_SEARCH_PARAMETERS}, grouped by [address categoryID, start year, start month,
+     * responsible group name, admitted Membership JPA ID]. The admitted Membership JPA ID is that of the
+     * supplied Membership if admitted, and null otherwise. Used to calculate all facet counts in one pass.
+     */
+    public static final String NAMEDQ_GET_FACET_COUNTS_BY_SEARCH_PARAMETERS =
+            "Activity.getFacetCountsBySearchParameters";
+
+    /**
+     * NamedQuery for getting the JPA ID, startTime, lateAdmissionDate and lastAdmissionDate of all
+     * non-cancelled Activities (within all Organisations) starting, or having an admission date, within
+     * a given range. Used to schedule reminders without loading any Activity entities.
+     */
+    public static final String NAMEDQ_GET_REMINDER_TIMES_BY_DATERANGE =
+            "Activity.getReminderTimesByDateRange";
+
     /**
      * The start time of the Activity. Never null.
      */
@@ -230,6 +415,32 @@ public class Activity extends Listable {
     @XmlAttribute
     private boolean openToGeneralPublic;
 
+    /**
+     * The optional maximum number of Admissions to this Activity.
+     * A {@code null} value indicates that the number of participants is unlimited.
+     */
+    @Min(value = 1, message = "Cannot handle 'maxParticipants' less than 1.")
+    @Basic
+    @Column
+    @XmlElement
+    private Integer maxParticipants;
+
+    /**
+     * The optional ActivitySeries of which this Activity is a materialized occurrence.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @XmlTransient
+    private ActivitySeries series;
+
+    /**
+     * The recurrence ID of this Activity, i.e. the start time of the occurrence within its ActivitySeries
+     * as defined by the recurrence rule. This is retained even if the startTime of this Activity is modified.
+     * Null unless this Activity is an occurrence of an ActivitySeries.
+     */
+    @Column
+    @XmlElement
+    private LocalDateTime seriesOccurrence;
+
     /**
      * JAXB/JPA-friendly constructor.
      */
@@ -404,6 +615,31 @@ public class Activity extends Listable {
         return admissions;
     }
 
+    /**
+     * @return The maximum number of Admissions to this Activity, or {@code null} if the
+     * number of participants is unlimited.
+     */
+    public Integer getMaxParticipants() {
+        return maxParticipants;
+    }
+
+    /**
+     * Assigns the maximum number of Admissions to this Activity.
+     *
+     * @param maxParticipants The maximum number of participants, or {@code null} to indicate an unlimited number
+     *                        of participants. Must be positive if non-null.
+     */
+    public void setMaxParticipants(final Integer maxParticipants) {
+
+        // Check sanity
+        if (maxParticipants != null) {
+            Validate.isTrue(maxParticipants > 0, "Cannot handle non-positive 'maxParticipants'.");
+        }
+
+        // Assign internal state
+        this.maxParticipants = maxParticipants;
+    }
+
     /**
      * Assigns the startTime of this Activity.
      *
@@ -549,6 +785,40 @@ public class Activity extends Listable {
         this.openToGeneralPublic = openToGeneralPublic;
     }
 
+    /**
+     * @return The optional ActivitySeries of which this Activity is a materialized occurrence.
+     */
+    public ActivitySeries getSeries() {
+        return series;
+    }
+
+    /**
+     * @return The recurrence ID of this Activity within its ActivitySeries, or null if this Activity
+     * is not an occurrence of an ActivitySeries.
+     */
+    public LocalDateTime getSeriesOccurrence() {
+        return seriesOccurrence;
+    }
+
+    /**
+     * Assigns the ActivitySeries of which this Activity is a materialized occurrence.
+     *
+     * @param series           The ActivitySeries of this Activity. Null to detach this Activity from any series.
+     * @param seriesOccurrence The recurrence ID of this Activity within the supplied ActivitySeries.
+     *                         Ignored if {@code series} is null.
+     */
+    public void setSeries(final ActivitySeries series, final LocalDateTime seriesOccurrence) {
+
+        // Check sanity
+        if (series != null) {
+            Validate.notNull(seriesOccurrence, "seriesOccurrence");
+        }
+
+        // Assign internal state
+        this.series = series;
+        this.seriesOccurrence = series == null ? null : seriesOccurrence;
+    }
+
     /**
      * {@inheritDoc}
      */
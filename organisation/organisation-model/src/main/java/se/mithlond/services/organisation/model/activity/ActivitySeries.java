@@ -0,0 +1,583 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.activity;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.jguru.nazgul.tools.validation.api.exception.InternalStateValidationException;
+import se.mithlond.services.organisation.model.Category;
+import se.mithlond.services.organisation.model.Listable;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.shared.spi.algorithms.calendar.RecurrenceRule;
+
+import javax.persistence.Basic;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Embedded;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlType;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>Entity class defining a recurring series of Activities, such as weekly rehearsals or monthly meetings.
+ * The ActivitySeries holds a template (i.e. the properties of its first occurrence) and a recurrence rule
+ * (a subset of the RFC 5545 RRULE, as defined by {@link RecurrenceRule}).</p>
+ * <p>Occurrences are materialized lazily as Activity entities, but only within a rolling horizon.
+ * The {@link #getMaterializedUntil()} property holds the high-water mark of the materialized occurrences;
+ * all occurrences starting before it are persisted as Activities (which may have been individually modified),
+ * while occurrences starting at or after it are only available by expanding the recurrence rule in memory.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@NamedQueries({
+        @NamedQuery(name = ActivitySeries.NAMEDQ_GET_IDS_TO_MATERIALIZE,
+                query = "select s.id from ActivitySeries s "
+                        + " where s.materializedUntil < :" + OrganisationPatterns.PARAM_END_TIME
+                        + " order by s.id"),
+        @NamedQuery(name = ActivitySeries.NAMEDQ_GET_UNMATERIALIZED_BY_ORGANISATION_IDS_AND_DATERANGE,
+                query = "select s from ActivitySeries s "
+                        + " where ( 0 = :" + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS
+                        + " or s.owningOrganisation.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
+                        + " and s.startTime <= :" + OrganisationPatterns.PARAM_END_TIME
+                        + " and s.materializedUntil <= :" + OrganisationPatterns.PARAM_END_TIME
+                        + " order by s.id")
+})
+@Entity
+@XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"startTime", "endTime", "cost", "currency",
+        "lateAdmissionCost", "lateAdmissionDaysBefore", "lastAdmissionDaysBefore", "location", "addressCategory",
+        "addressShortDescription", "dressCode", "openToGeneralPublic", "responsible", "responsibleMembership",
+        "frequency", "recurrenceInterval", "untilDate", "occurrenceCount", "exceptionDates", "materializedUntil"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ActivitySeries extends Listable {
+
+    /**
+     * NamedQuery for getting the JPA IDs of all ActivitySeries whose materialization high-water mark is
+     * before a given time.
+     */
+    public static final String NAMEDQ_GET_IDS_TO_MATERIALIZE =
+            "ActivitySeries.getIdsToMaterialize";
+
+    /**
+     * NamedQuery for getting ActivitySeries (within some organisations) which start before a given time,
+     * but are not materialized until that time.
+     */
+    public static final String NAMEDQ_GET_UNMATERIALIZED_BY_ORGANISATION_IDS_AND_DATERANGE =
+            "ActivitySeries.getUnmaterializedByOrganisationIdsAndDateRange";
+
+    /**
+     * The start time of the first occurrence of this ActivitySeries. Never null.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private LocalDateTime startTime;
+
+    /**
+     * The end time of the first occurrence of this ActivitySeries. Never null.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private LocalDateTime endTime;
+
+    /**
+     * The cost of attending each occurrence.
+     */
+    @NotNull
+    @Min(value = 0, message = "Cannot handle negative 'cost'.")
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private BigDecimal cost;
+
+    /**
+     * The currency of the cost and lateAdmissionCost.
+     */
+    @NotNull
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private String currency;
+
+    /**
+     * The cost of attending each occurrence, if admitted after its late admission date.
+     */
+    @Column
+    @XmlElement
+    private BigDecimal lateAdmissionCost;
+
+    /**
+     * The number of days before the start of each occurrence, after which the lateAdmissionCost applies.
+     * Null if no late admission date applies.
+     */
+    @Column
+    @XmlElement
+    private Integer lateAdmissionDaysBefore;
+
+    /**
+     * The number of days before the start of each occurrence, which is the last admission date.
+     */
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private int lastAdmissionDaysBefore;
+
+    /**
+     * The location of each occurrence.
+     */
+    @NotNull
+    @Embedded
+    @XmlElement(required = true)
+    private Address location;
+
+    /**
+     * The Category of the location where each occurrence takes place.
+     */
+    @NotNull
+    @ManyToOne(optional = false)
+    @XmlElement(required = true)
+    private Category addressCategory;
+
+    /**
+     * The short description of the location, such as "Stadsbiblioteket".
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private String addressShortDescription;
+
+    /**
+     * An optional dress code for each occurrence.
+     */
+    @Column
+    @XmlElement
+    private String dressCode;
+
+    /**
+     * "true" to indicate that each occurrence is open to the general public.
+     */
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlAttribute
+    private boolean openToGeneralPublic;
+
+    /**
+     * The optional Group organizing each occurrence.
+     */
+    @XmlIDREF
+    @ManyToOne(fetch = FetchType.EAGER)
+    @XmlElement
+    private Group responsible;
+
+    /**
+     * The optional Membership admitted as responsible for each occurrence.
+     * At least one of responsible and responsibleMembership must be given.
+     */
+    @ManyToOne(fetch = FetchType.EAGER)
+    @XmlElement
+    private Membership responsibleMembership;
+
+    /**
+     * The {@link RecurrenceRule.Frequency} of this ActivitySeries, in String form.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false, length = 16)
+    @XmlElement(required = true)
+    private String frequency;
+
+    /**
+     * The number of weeks or months between occurrences.
+     */
+    @Min(value = 1, message = "Cannot handle 'recurrenceInterval' less than 1.")
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private int recurrenceInterval;
+
+    /**
+     * The optional last date (inclusive) of any occurrence.
+     */
+    @Column
+    @XmlElement
+    private LocalDate untilDate;
+
+    /**
+     * The optional maximum number of occurrences.
+     */
+    @Column
+    @XmlElement
+    private Integer occurrenceCount;
+
+    /**
+     * The dates on which no occurrence should take place.
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "activityseries_exceptions", joinColumns = @JoinColumn(name = "series_id"))
+    @Column(name = "exception_date")
+    @XmlElementWrapper(name = "exceptionDates")
+    @XmlElement(name = "exceptionDate")
+    private Set<LocalDate> exceptionDates;
+
+    /**
+     * The materialization high-water mark: all occurrences starting before this time are persisted as Activities.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private LocalDateTime materializedUntil;
+
+    /**
+     * JAXB/JPA-friendly constructor.
+     */
+    public ActivitySeries() {
+    }
+
+    /**
+     * Compound constructor creating an ActivitySeries whose first occurrence has the properties of the supplied
+     * template Activity, and recurs according to the supplied RecurrenceRule. No occurrence is materialized.
+     *
+     * @param template              A non-null (and typically not persisted) Activity whose properties are used
+     *                              as the template of all occurrences.
+     * @param recurrenceRule        The non-null RecurrenceRule of this ActivitySeries.
+     * @param responsibleMembership The optional Membership admitted as responsible for each occurrence.
+     *                              Must be supplied unless the template Activity has a responsible Group.
+     */
+    public ActivitySeries(final Activity template,
+                          final RecurrenceRule recurrenceRule,
+                          final Membership responsibleMembership) {
+
+        // Delegate
+        super(Validate.notNull(template, "template").getShortDesc(),
+                template.getFullDesc(),
+                template.getOwningOrganisation());
+
+        // Check sanity
+        Validate.isTrue(responsibleMembership != null || template.getResponsible() != null,
+                "En aktivitetsserie måste ha minst 1 ansvarig (person eller grupp).");
+
+        // Assign internal state
+        this.responsibleMembership = responsibleMembership;
+        this.exceptionDates = new TreeSet<>();
+        this.startTime = template.getStartTime();
+        this.materializedUntil = template.getStartTime();
+
+        setTemplate(template);
+        setRecurrenceRule(recurrenceRule);
+    }
+
+    /**
+     * @return The start time of the first occurrence of this ActivitySeries.
+     */
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The end time of the first occurrence of this ActivitySeries.
+     */
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The duration of each occurrence.
+     */
+    public Duration getDuration() {
+        return Duration.between(startTime, endTime);
+    }
+
+    /**
+     * @return The cost of attending each occurrence.
+     */
+    public Amount getCost() {
+        return new Amount(cost, WellKnownCurrency.valueOf(currency));
+    }
+
+    /**
+     * @return The optional Group organizing each occurrence.
+     */
+    public Group getResponsible() {
+        return responsible;
+    }
+
+    /**
+     * @return The optional Membership admitted as responsible for each occurrence.
+     */
+    public Membership getResponsibleMembership() {
+        return responsibleMembership;
+    }
+
+    /**
+     * @return The materialization high-water mark: all occurrences starting before this time are
+     * persisted as Activities.
+     */
+    public LocalDateTime getMaterializedUntil() {
+        return materializedUntil;
+    }
+
+    /**
+     * Assigns the materialization high-water mark of this ActivitySeries.
+     *
+     * @param materializedUntil The non-null materialization high-water mark, which cannot be moved backwards.
+     */
+    public void setMaterializedUntil(final LocalDateTime materializedUntil) {
+
+        // Check sanity
+        Validate.notNull(materializedUntil, "materializedUntil");
+        Validate.isTrue(!materializedUntil.isBefore(this.materializedUntil),
+                "Cannot move 'materializedUntil' backwards.");
+
+        // Assign internal state
+        this.materializedUntil = materializedUntil;
+    }
+
+    /**
+     * @return The RecurrenceRule of this ActivitySeries.
+     */
+    public RecurrenceRule getRecurrenceRule() {
+        return new RecurrenceRule(RecurrenceRule.Frequency.valueOf(frequency),
+                recurrenceInterval,
+                untilDate,
+                occurrenceCount,
+                exceptionDates);
+    }
+
+    /**
+     * Assigns the RecurrenceRule of this ActivitySeries.
+     *
+     * @param recurrenceRule The non-null RecurrenceRule of this ActivitySeries.
+     */
+    public void setRecurrenceRule(final RecurrenceRule recurrenceRule) {
+
+        // Check sanity
+        Validate.notNull(recurrenceRule, "recurrenceRule");
+
+        // Assign internal state
+        this.frequency = recurrenceRule.getFrequency().name();
+        this.recurrenceInterval = recurrenceRule.getInterval();
+        this.untilDate = recurrenceRule.getUntil();
+        this.occurrenceCount = recurrenceRule.getCount();
+        this.exceptionDates.clear();
+        this.exceptionDates.addAll(recurrenceRule.getExceptions());
+    }
+
+    /**
+     * Assigns all template properties of this ActivitySeries from the supplied Activity.
+     * The start time of the first occurrence is not changed, but the duration of each occurrence
+     * is taken from the supplied template.
+     *
+     * @param template A non-null Activity whose properties should be used as template for all occurrences.
+     */
+    public final void setTemplate(final Activity template) {
+
+        // Check sanity
+        Validate.notNull(template, "template");
+
+        // Assign internal state
+        setShortDesc(template.getShortDesc());
+        setFullDesc(template.getFullDesc());
+
+        this.endTime = this.startTime.plus(Duration.between(template.getStartTime(), template.getEndTime()));
+        this.cost = template.getCost().getValue();
+        this.currency = template.getCost().getCurrency().toString();
+        this.lateAdmissionCost = template.getLateAdmissionCost().getValue();
+
+        final LocalDate templateDate = template.getStartTime().toLocalDate();
+        this.lateAdmissionDaysBefore = template.getLateAdmissionDate() == null
+                ? null
+                : (int) ChronoUnit.DAYS.between(template.getLateAdmissionDate(), templateDate);
+        this.lastAdmissionDaysBefore = (int) ChronoUnit.DAYS.between(template.getLastAdmissionDate(), templateDate);
+
+        this.location = copyOf(template.getLocation());
+        this.addressCategory = template.getAddressCategory();
+        this.addressShortDescription = template.getAddressShortDescription();
+        this.dressCode = template.getDressCode();
+        this.openToGeneralPublic = template.isOpenToGeneralPublic();
+        this.responsible = template.getResponsible();
+    }
+
+    /**
+     * Retrieves the start times of all occurrences starting within the supplied (inclusive) range,
+     * irrespective of whether they are materialized or not.
+     *
+     * @param rangeStart The inclusive start of the range.
+     * @param rangeEnd   The inclusive end of the range.
+     * @return The start times of all occurrences within the range, in ascending order.
+     */
+    public List<LocalDateTime> getOccurrences(final LocalDateTime rangeStart, final LocalDateTime rangeEnd) {
+        return getRecurrenceRule().getOccurrences(startTime, rangeStart, rangeEnd);
+    }
+
+    /**
+     * Creates a new (not persisted) Activity for the occurrence starting at the supplied time, holding the template
+     * properties of this ActivitySeries. If a responsibleMembership is defined, it is admitted as responsible
+     * to the created Activity.
+     *
+     * @param occurrenceStart The start time of the occurrence.
+     * @param now             The current time, used as admission timestamp.
+     * @return An Activity for the occurrence starting at the supplied time.
+     */
+    public Activity createOccurrence(final LocalDateTime occurrenceStart, final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(occurrenceStart, "occurrenceStart");
+
+        final LocalDate occurrenceDate = occurrenceStart.toLocalDate();
+        final Activity toReturn = new Activity(getShortDesc(),
+                getFullDesc(),
+                occurrenceStart,
+                occurrenceStart.plus(getDuration()),
+                getCost(),
+                lateAdmissionCost == null ? null : new Amount(lateAdmissionCost, WellKnownCurrency.valueOf(currency)),
+                lateAdmissionDaysBefore == null ? null : occurrenceDate.minusDays(lateAdmissionDaysBefore),
+                occurrenceDate.minusDays(lastAdmissionDaysBefore),
+                false,
+                dressCode,
+                addressCategory,
+                copyOf(location),
+                addressShortDescription,
+                getOwningOrganisation(),
+                responsible,
+                openToGeneralPublic);
+        toReturn.setSeries(this, occurrenceStart);
+
+        if (responsibleMembership != null) {
+            toReturn.getAdmissions().add(new Admission(toReturn,
+                    responsibleMembership,
+                    now,
+                    now,
+                    null,
+                    true,
+                    responsibleMembership));
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Re-applies the template properties of this ActivitySeries to an already materialized occurrence,
+     * which is moved to the supplied start time. Admissions and the cancelled flag are retained.
+     *
+     * @param occurrence      The non-null occurrence Activity.
+     * @param occurrenceStart The start time of the occurrence, as defined by this ActivitySeries.
+     */
+    public void applyTemplateTo(final Activity occurrence, final LocalDateTime occurrenceStart) {
+
+        // Check sanity
+        Validate.notNull(occurrence, "occurrence");
+        Validate.notNull(occurrenceStart, "occurrenceStart");
+
+        final LocalDate occurrenceDate = occurrenceStart.toLocalDate();
+
+        occurrence.setShortDesc(getShortDesc());
+        occurrence.setFullDesc(getFullDesc());
+        occurrence.setStartTime(occurrenceStart);
+        occurrence.setEndTime(occurrenceStart.plus(getDuration()));
+        occurrence.setCost(getCost());
+        occurrence.setLateAdmissionCost(lateAdmissionCost == null
+                ? getCost()
+                : new Amount(lateAdmissionCost, WellKnownCurrency.valueOf(currency)));
+        if (lateAdmissionDaysBefore != null) {
+            occurrence.setLateAdmissionDate(occurrenceDate.minusDays(lateAdmissionDaysBefore));
+        }
+        occurrence.setLastAdmissionDate(occurrenceDate.minusDays(lastAdmissionDaysBefore));
+        occurrence.setDressCode(dressCode);
+        occurrence.setLocation(copyOf(location));
+        occurrence.setAddressShortDescription(addressShortDescription);
+        occurrence.setResponsible(responsible);
+        occurrence.setOpenToGeneralPublic(openToGeneralPublic);
+        occurrence.setSeries(this, occurrenceStart);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateListableEntityState() throws InternalStateValidationException {
+
+        InternalStateValidationException.create()
+                .notNull(startTime, "startTime")
+                .notNull(endTime, "endTime")
+                .notNull(addressCategory, "addressCategory")
+                .notNull(cost, "cost")
+                .notNullOrEmpty(addressShortDescription, "addressShortDescription")
+                .notNullOrEmpty(frequency, "frequency")
+                .notNull(materializedUntil, "materializedUntil")
+                .endExpressionAndValidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ActivitySeries [" + getId() + "] " + getShortDesc() + ", starting " + startTime
+                + " (" + getRecurrenceRule() + "), materialized until " + materializedUntil;
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Embeddable instances must not be shared between entities; each occurrence gets its own Address copy.
+     */
+    private static Address copyOf(final Address address) {
+        return new Address(address.getCareOfLine(),
+                address.getDepartmentName(),
+                address.getStreet(),
+                address.getNumber(),
+                address.getCity(),
+                address.getZipCode(),
+                address.getCountry(),
+                address.getDescription());
+    }
+}
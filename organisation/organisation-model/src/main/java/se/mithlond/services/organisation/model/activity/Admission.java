@@ -37,6 +37,8 @@ import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.validation.constraints.NotNull;
@@ -54,6 +56,44 @@ import java.time.LocalDateTime;
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
+@NamedQueries({
+        @NamedQuery(name = Admission.NAMEDQ_GET_BY_ACTIVITY_IDS,
+                query = "select adm from Admission adm join fetch adm.admitted "
+                        + " where adm.activity.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by adm.activity.id, adm.admitted.id"),
+        @NamedQuery(name = Admission.NAMEDQ_GET_VO_BY_ACTIVITY_IDS,
+                query = "select new se.mithlond.services.organisation.model.transport.activity.AdmissionVO("
+                        + " act.id, m.id, m.alias, o.organisationName, adm.admissionTimestamp, "
+                        + " adm.lastModifiedAt, adm.admissionNote, adm.responsible ) "
+                        + " from Admission adm join adm.activity act join act.owningOrganisation o "
+                        + " join adm.admitted m "
+                        + " where act.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by act.id, m.id"),
+        @NamedQuery(name = Admission.NAMEDQ_GET_COUNT_BY_ACTIVITY_ID_AND_MEMBERSHIP_ID,
+                query = "select count(adm), "
+                        + " sum(case when adm.admitted.id = :" + OrganisationPatterns.PARAM_MEMBERSHIP_ID
+                        + " then 1 else 0 end) from Admission adm "
+                        + " where adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID),
+        @NamedQuery(name = Admission.NAMEDQ_GET_ADMITTED_IDS_BY_ORGANISATION_ID,
+                query = "select act.id, adm.admitted.id from Admission adm join adm.activity act "
+                        + " where act.owningOrganisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " and act.endTime > :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and act.cancelled = false "
+                        + " order by act.id, adm.admitted.id"),
+        @NamedQuery(name = Admission.NAMEDQ_GET_BUSY_INTERVALS_BY_MEMBERSHIP_IDS,
+                query = "select adm.admitted.id, act.startTime, act.endTime from Admission adm join adm.activity act "
+                        + " where adm.admitted.id in :" + OrganisationPatterns.PARAM_MEMBERSHIP_IDS
+                        + " and adm.admitted.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " and act.endTime > :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and act.startTime < :" + OrganisationPatterns.PARAM_END_TIME
+                        + " and act.cancelled = false "
+                        + " order by adm.admitted.id, act.startTime"),
+        @NamedQuery(name = Admission.NAMEDQ_GET_UPCOMING_ADMITTED_IDS,
+                query = "select act.id, adm.admitted.id from Admission adm join adm.activity act "
+                        + " where act.endTime > :" + OrganisationPatterns.PARAM_START_TIME
+                        + " and act.cancelled = false "
+                        + " order by act.id, adm.admitted.id")
+})
 @Entity
 @Access(value = AccessType.FIELD)
 @XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {
@@ -61,6 +101,48 @@ import java.time.LocalDateTime;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Admission implements Serializable, Comparable<Admission>, Validatable {
 
+    /**
+     * NamedQuery for getting all Admissions (and their admitted Memberships) to the Activities with the supplied
+     * JPA IDs, ordered by Activity JPA ID and admitted Membership JPA ID.
+     */
+    public static final String NAMEDQ_GET_BY_ACTIVITY_IDS = "Admission.getByActivityIDs";
+
+    /**
+     * NamedQuery for getting AdmissionVOs for all Admissions to the Activities with the supplied JPA IDs,
+     * ordered by Activity JPA ID and admitted Membership JPA ID. The AdmissionVOs are projected directly
+     * from scalar values, implying that no Admission, Activity or Membership entities are loaded.
+     */
+    public static final String NAMEDQ_GET_VO_BY_ACTIVITY_IDS = "Admission.getVoByActivityIDs";
+
+    /**
+     * NamedQuery for getting the total number of Admissions to an Activity, as well as the number of
+     * Admissions to the same Activity for a given Membership (i.e. 0 or 1).
+     */
+    public static final String NAMEDQ_GET_COUNT_BY_ACTIVITY_ID_AND_MEMBERSHIP_ID =
+            "Admission.getCountByActivityIdAndMembershipId";
+
+    /**
+     * NamedQuery for getting [Activity JPA ID, admitted Membership JPA ID] pairs for all Admissions to
+     * non-cancelled Activities within an Organisation ending after a given time.
+     */
+    public static final String NAMEDQ_GET_ADMITTED_IDS_BY_ORGANISATION_ID =
+            "Admission.getAdmittedIdsByOrganisationId";
+
+    /**
+     * NamedQuery for getting [membershipID, startTime, endTime] rows of all non-cancelled Activities
+     * overlapping a time window, to which any of the supplied Memberships are admitted.
+     * Rows are sorted by Membership ID and then startTime.
+     */
+    public static final String NAMEDQ_GET_BUSY_INTERVALS_BY_MEMBERSHIP_IDS =
+            "Admission.getBusyIntervalsByMembershipIds";
+
+    /**
+     * NamedQuery for getting [Activity JPA ID, admitted Membership JPA ID] pairs for all Admissions to
+     * non-cancelled Activities (within all Organisations) ending after a given time.
+     */
+    public static final String NAMEDQ_GET_UPCOMING_ADMITTED_IDS =
+            "Admission.getUpcomingAdmittedIds";
+
     // Internal state
     @EmbeddedId
     @XmlTransient
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.activity;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.jguru.nazgul.core.persistence.model.NazgulEntity;
+import se.jguru.nazgul.tools.validation.api.exception.InternalStateValidationException;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import java.time.LocalDateTime;
+
+/**
+ * Entity class holding the high-water mark of dispatched reminders, i.e. the time up to which all due
+ * reminders have been dispatched. Reminders due after the mark are re-scheduled following a restart,
+ * while reminders due at or before it are never dispatched again.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@NamedQueries({
+        @NamedQuery(name = ReminderHighWaterMark.NAMEDQ_GET_BY_NAME,
+                query = "select m from ReminderHighWaterMark m "
+                        + " where m.name = :" + OrganisationPatterns.PARAM_REMINDER_MARK_NAME)
+})
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "reminderHighWaterMarkNameIsUnique", columnNames = {"name"})})
+@XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"name", "dispatchedUntil"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ReminderHighWaterMark extends NazgulEntity {
+
+    /**
+     * NamedQuery for getting a ReminderHighWaterMark by name.
+     */
+    public static final String NAMEDQ_GET_BY_NAME = "ReminderHighWaterMark.getByName";
+
+    /**
+     * The name of this ReminderHighWaterMark, identifying the kind of reminders it tracks.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false, length = 64)
+    @XmlAttribute(required = true)
+    private String name;
+
+    /**
+     * The time up to which all due reminders have been dispatched. Never null.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private LocalDateTime dispatchedUntil;
+
+    /**
+     * JAXB/JPA-friendly constructor.
+     */
+    public ReminderHighWaterMark() {
+    }
+
+    /**
+     * Compound constructor creating a ReminderHighWaterMark wrapping the supplied data.
+     *
+     * @param name            The non-empty name of this ReminderHighWaterMark.
+     * @param dispatchedUntil The non-null time up to which all due reminders have been dispatched.
+     */
+    public ReminderHighWaterMark(final String name, final LocalDateTime dispatchedUntil) {
+
+        // Check sanity
+        Validate.notEmpty(name, "name");
+        Validate.notNull(dispatchedUntil, "dispatchedUntil");
+
+        // Assign internal state
+        this.name = name;
+        this.dispatchedUntil = dispatchedUntil;
+    }
+
+    /**
+     * @return The name of this ReminderHighWaterMark, identifying the kind of reminders it tracks.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The time up to which all due reminders have been dispatched.
+     */
+    public LocalDateTime getDispatchedUntil() {
+        return dispatchedUntil;
+    }
+
+    /**
+     * Moves this ReminderHighWaterMark forward. Attempts to move it backwards are ignored.
+     *
+     * @param dispatchedUntil The non-null time up to which all due reminders have been dispatched.
+     * @return {@code true} if this ReminderHighWaterMark was moved.
+     */
+    public boolean advanceTo(final LocalDateTime dispatchedUntil) {
+
+        // Check sanity
+        Validate.notNull(dispatchedUntil, "dispatchedUntil");
+
+        if (!dispatchedUntil.isAfter(this.dispatchedUntil)) {
+            return false;
+        }
+
+        // Assign internal state
+        this.dispatchedUntil = dispatchedUntil;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateEntityState() throws InternalStateValidationException {
+
+        InternalStateValidationException.create()
+                .notNullOrEmpty(name, "name")
+                .notNull(dispatchedUntil, "dispatchedUntil")
+                .endExpressionAndValidate();
+    }
+}
@@ -64,7 +64,26 @@ import java.io.Serializable;
         @NamedQuery(name = Allergy.NAMEDQ_GET_ALL,
                 query = "select a from Allergy a order by a.severity, a.user.firstName"),
         @NamedQuery(name = Allergy.NAMEDQ_GET_BY_FOOD_ID,
-                query = "select a from Allergy a where a.food.id = :foodID order by a.severity")
+                query = "select a from Allergy a where a.food.id = :foodID order by a.severity"),
+        @NamedQuery(name = Allergy.NAMEDQ_GET_ADMITTED_BY_ACTIVITY_ID,
+                query = "select a.food, a.severity, m.id, m.alias "
+                        + " from Admission adm join adm.admitted m, Allergy a "
+                        + " where a.user.id = m.user.id "
+                        + " and adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " order by a.food.id, a.severity.severitySortOrder, m.alias"),
+        @NamedQuery(name = Allergy.NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID,
+                query = "select m.id, a.food.id, a.severity.id, a.version "
+                        + " from Admission adm join adm.admitted m, Allergy a "
+                        + " where a.user.id = m.user.id "
+                        + " and adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " order by m.id, a.food.id"),
+        @NamedQuery(name = Allergy.NAMEDQ_GET_ADMITTED_FOOD_NAME_VERSION_BY_ACTIVITY_ID,
+                query = "select distinct f.id, t.textLocale.id, t.classifier, t.version "
+                        + " from Admission adm join adm.admitted m, Allergy a join a.food f "
+                        + " join f.localizedFoodName.texts t "
+                        + " where a.user.id = m.user.id "
+                        + " and adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " order by f.id, t.textLocale.id, t.classifier")
 })
 @Entity
 @Access(value = AccessType.FIELD)
@@ -88,6 +107,28 @@ public class Allergy implements Serializable, Comparable<Allergy>, Validatable,
      */
     public static final String NAMEDQ_GET_BY_FOOD_ID = "Allergy.getAllergiesByFoodId";
 
+    /**
+     * {@link NamedQuery} which retrieves [Food, AllergySeverity, membershipJpaID, alias] for each Allergy of
+     * the Memberships admitted to an Activity (identified by its JPA ID).
+     */
+    public static final String NAMEDQ_GET_ADMITTED_BY_ACTIVITY_ID = "Allergy.getAdmittedByActivityId";
+
+    /**
+     * {@link NamedQuery} which retrieves [membershipJpaID, foodJpaID, allergySeverityJpaID, version] for each
+     * Allergy of the Memberships admitted to an Activity, ordered by Membership and Food JPA ID.
+     * Used to detect changes to those Allergies without loading them.
+     */
+    public static final String NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID =
+            "Allergy.getAdmittedVersionByActivityId";
+
+    /**
+     * {@link NamedQuery} which retrieves [foodJpaID, localeDefinitionJpaID, classifier, version] for each
+     * LocalizedText of the names of the Foods to which the Memberships admitted to an Activity are allergic.
+     * Used to detect renamed Foods without loading them.
+     */
+    public static final String NAMEDQ_GET_ADMITTED_FOOD_NAME_VERSION_BY_ACTIVITY_ID =
+            "Allergy.getAdmittedFoodNameVersionByActivityId";
+
     /**
      * The JPA Version of this Allergy.
      */
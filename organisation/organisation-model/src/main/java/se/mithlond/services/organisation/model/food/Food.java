@@ -82,7 +82,16 @@ import static se.mithlond.services.organisation.model.OrganisationPatterns.PARAM
                         + " and a.category.classification = '" + Food.FOOD_CATEGORY_CLASSIFICATION + "' "
                         + " and a.subCategory.categoryID like :" + PARAM_SUBCATEGORY_ID
                         + " and a.subCategory.classification = '" + Food.FOOD_SUBCATEGORY_CLASSIFICATION + "' "
-                        + " order by localized_texts.text")
+                        + " order by localized_texts.text"),
+        @NamedQuery(name = Food.NAMEDQ_GET_CATALOGUE_VERSION,
+                query = "select count(distinct a.id), sum(a.version), count(localized_texts), "
+                        + " sum(localized_texts.version) "
+                        + " from Food a join a.localizedFoodName.texts localized_texts"),
+        @NamedQuery(name = Food.NAMEDQ_GET_CATEGORIES_VERSION,
+                query = "select count(a), sum(a.version) from Category a where a.classification in ('"
+                        + Food.FOOD_CATEGORY_CLASSIFICATION + "', '"
+                        + Food.FOOD_SUBCATEGORY_CLASSIFICATION + "', '"
+                        + FoodPreference.FOOD_PREFERENCE_CATEGORY_CLASSIFICATION + "')")
 })
 @Entity
 @Access(value = AccessType.FIELD)
@@ -133,6 +142,18 @@ public class Food extends NazgulEntity implements Comparable<Food> {
     public static final String NAMEDQ_GET_BY_LANGUAGE_CATEGORY_AND_SUBCATEGORY =
             "Food.getByLanguageCategoryAndSubCategory";
 
+    /**
+     * NamedQuery which retrieves the count and version sum of all Foods, along with the count and version sum
+     * of their localized names. Used to detect changes to the Food catalogue without loading it.
+     */
+    public static final String NAMEDQ_GET_CATALOGUE_VERSION = "Food.getCatalogueVersion";
+
+    /**
+     * NamedQuery which retrieves the count and version sum of all food category, food subcategory and
+     * food preference Categories. Used to detect changes to the Food catalogue without loading it.
+     */
+    public static final String NAMEDQ_GET_CATEGORIES_VERSION = "Food.getCategoriesVersion";
+
     /**
      * A localized texts instance containing the name of this Food.
      */
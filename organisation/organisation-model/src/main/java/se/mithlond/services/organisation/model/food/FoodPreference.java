@@ -60,7 +60,19 @@ import java.io.Serializable;
                         + FoodPreference.FOOD_PREFERENCE_CATEGORY_CLASSIFICATION + "' order by a.categoryID"),
         @NamedQuery(name = FoodPreference.NAMEDQ_GET_BY_USERID,
                 query = "select a from FoodPreference a where a.user.id = :" + OrganisationPatterns.PARAM_USER_ID
-                        + " order by a.category.categoryID")
+                        + " order by a.category.categoryID"),
+        @NamedQuery(name = FoodPreference.NAMEDQ_GET_ADMITTED_COUNTS_BY_ACTIVITY_ID,
+                query = "select c.categoryID, count(distinct m.id) "
+                        + " from Admission adm join adm.admitted m, FoodPreference a join a.category c "
+                        + " where a.user.id = m.user.id "
+                        + " and adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " group by c.categoryID order by c.categoryID"),
+        @NamedQuery(name = FoodPreference.NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID,
+                query = "select m.id, a.category.id, a.version "
+                        + " from Admission adm join adm.admitted m, FoodPreference a "
+                        + " where a.user.id = m.user.id "
+                        + " and adm.activity.id = :" + OrganisationPatterns.PARAM_ACTIVITY_ID
+                        + " order by m.id, a.category.id")
 })
 @Entity
 @Access(value = AccessType.FIELD)
@@ -83,6 +95,21 @@ public class FoodPreference implements Serializable, Comparable<FoodPreference>,
      */
     public static final String NAMEDQ_GET_BY_USERID = "FoodPreference.getByUserID";
 
+    /**
+     * NamedQuery which retrieves [categoryID, count] of the FoodPreferences of the Memberships admitted to
+     * an Activity (identified by its JPA ID), counting each Membership once per FoodPreference.
+     */
+    public static final String NAMEDQ_GET_ADMITTED_COUNTS_BY_ACTIVITY_ID =
+            "FoodPreference.getAdmittedCountsByActivityID";
+
+    /**
+     * NamedQuery which retrieves [membershipJpaID, categoryJpaID, version] for each FoodPreference of the
+     * Memberships admitted to an Activity, ordered by Membership and Category JPA ID. Used to detect changes
+     * to those FoodPreferences without loading them.
+     */
+    public static final String NAMEDQ_GET_ADMITTED_VERSION_BY_ACTIVITY_ID =
+            "FoodPreference.getAdmittedVersionByActivityID";
+
     // Internal state
     @Version
     @XmlAttribute(required = false)
@@ -103,7 +103,14 @@ import java.util.TreeSet;
                         + " and ( 0 = :"
                         + OrganisationPatterns.PARAM_NUM_ORGANISATIONIDS + " or g.organisation.id in :"
                         + OrganisationPatterns.PARAM_ORGANISATION_IDS + " ) "
-                        + " order by g.groupName")
+                        + " order by g.groupName"),
+        @NamedQuery(name = Group.NAMEDQ_GET_ANCESTRY_BY_ORGANISATION_IDS,
+                query = "select g.id, p.id, g.groupName from Group g left join g.parent p "
+                        + " where g.organisation.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS),
+        @NamedQuery(name = Group.NAMEDQ_GET_GUILD_IDS_BY_ORGANISATION_IDS,
+                query = "select g.id from Group g "
+                        + " where g.organisation.id in :" + OrganisationPatterns.PARAM_ORGANISATION_IDS
+                        + " and type(g) = Guild")
 })
 @XmlType(namespace = OrganisationPatterns.NAMESPACE,
         propOrder = {"groupName", "description", "organisation", "emailList", "parentXmlID"})
@@ -134,6 +141,19 @@ public class Group extends NazgulEntity implements Comparable<Group>, SemanticAu
     public static final String NAMEDQ_GET_BY_SEARCHPARAMETERS =
             "Group.getBySearchParameters";
 
+    /**
+     * NamedQuery for getting the JPA ID, parent JPA ID and groupName of all Groups within some Organisations.
+     * Used to walk the Group hierarchy without loading any Group entities.
+     */
+    public static final String NAMEDQ_GET_ANCESTRY_BY_ORGANISATION_IDS =
+            "Group.getAncestryByOrganisationIds";
+
+    /**
+     * NamedQuery for getting the JPA IDs of all Guilds within some Organisations.
+     */
+    public static final String NAMEDQ_GET_GUILD_IDS_BY_ORGANISATION_IDS =
+            "Group.getGuildIdsByOrganisationIds";
+
     /**
      * Name of this Group, which must be non-empty and unique within each Organisation.
      */
@@ -287,11 +307,11 @@ public class Group extends NazgulEntity implements Comparable<Group>, SemanticAu
      *
      * @return If the emailList property does not contain a full email address, the email suffix of the
      * Organisation will be appended to form the full mail address of
-     * <code>[emailList]@[organisation email suffix]</code>.
+     * <code>[emailList]@[organisation email suffix]</code>. Null if this Group has no emailList.
      */
     public String getEmailList() {
 
-        if (emailList.contains("@")) {
+        if (emailList == null || emailList.contains("@")) {
             return emailList;
         }
 
@@ -411,6 +431,20 @@ public class Group extends NazgulEntity implements Comparable<Group>, SemanticAu
         return "Group [" + groupName + "]" + parentGroupName;
     }
 
+    /**
+     * Creates the XML ID of a (non-Guild) Group, given its groupName and the name of its Organisation.
+     * Used where the XML ID is required without loading the Group entity itself.
+     *
+     * @param organisationName The name of the Organisation in which the Group exists.
+     * @param groupName        The name of the Group.
+     * @return The XML ID of the Group.
+     */
+    public static String getXmlID(final String organisationName, final String groupName) {
+        return "group_"
+                + organisationName.replaceAll("\\s+", "_")
+                + "_" + groupName.trim().replaceAll("\\s+", "_");
+    }
+
     //
     // Private helpers
     //
@@ -427,9 +461,7 @@ public class Group extends NazgulEntity implements Comparable<Group>, SemanticAu
     }
 
     private void setXmlID() {
-        this.xmlID = "group_"
-                + organisation.getOrganisationName().replaceAll("\\s+", "_")
-                + "_" + groupName.trim().replaceAll("\\s+", "_");
+        this.xmlID = getXmlID(organisation.getOrganisationName(), groupName);
 
         if(getParent() != null) {
 
@@ -41,6 +41,8 @@ import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Version;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -62,6 +64,23 @@ import java.util.TreeSet;
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "membership_type")
 @DiscriminatorValue("group")
+@NamedQueries({
+        @NamedQuery(name = GroupMembership.NAMEDQ_GET_GROUP_DATA_BY_MEMBERSHIP_IDS,
+                query = "select gm.membership.id, g.id, g.groupName, p.groupName, o.organisationName "
+                        + " from GroupMembership gm join gm.group g join g.organisation o left join g.parent p"
+                        + " where gm.membership.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " and type(gm) = GroupMembership"
+                        + " order by gm.membership.id, g.groupName"),
+        @NamedQuery(name = GroupMembership.NAMEDQ_GET_GROUP_IDS_BY_MEMBERSHIP_ID,
+                query = "select gm.group.id from GroupMembership gm"
+                        + " where gm.membership.id = :" + OrganisationPatterns.PARAM_MEMBERSHIP_ID
+                        + " and type(gm) = GroupMembership"),
+        @NamedQuery(name = GroupMembership.NAMEDQ_GET_MEMBER_COUNTS_BY_ORGANISATION_ID,
+                query = "select g.id, m.loginPermitted, count(m.id) "
+                        + " from GroupMembership gm join gm.group g join gm.membership m"
+                        + " where g.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " group by g.id, m.loginPermitted")
+})
 @XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"group"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class GroupMembership implements Serializable, Comparable<GroupMembership>,
@@ -73,6 +92,26 @@ public class GroupMembership implements Serializable, Comparable<GroupMembership
 
     private static final long serialVersionUID = 88299927L;
 
+    /**
+     * NamedQuery for getting the membership JPA ID, group JPA ID, group name, parent group name (or null)
+     * and organisation name of all (non-Guild) GroupMemberships for the Memberships with the supplied JPA IDs.
+     */
+    public static final String NAMEDQ_GET_GROUP_DATA_BY_MEMBERSHIP_IDS =
+            "GroupMembership.getGroupDataByMembershipIDs";
+
+    /**
+     * NamedQuery for getting the JPA IDs of all Groups (but not Guilds) of the Membership with the supplied JPA ID.
+     */
+    public static final String NAMEDQ_GET_GROUP_IDS_BY_MEMBERSHIP_ID =
+            "GroupMembership.getGroupIDsByMembershipID";
+
+    /**
+     * NamedQuery for getting the number of Memberships within each Group and Guild of an Organisation,
+     * as rows of group JPA ID, loginPermitted flag and number of Memberships.
+     */
+    public static final String NAMEDQ_GET_MEMBER_COUNTS_BY_ORGANISATION_ID =
+            "GroupMembership.getMemberCountsByOrganisationID";
+
     // Internal state
     @Version
     @XmlTransient
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.membership;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.jguru.nazgul.core.persistence.model.NazgulEntity;
+import se.jguru.nazgul.tools.validation.api.exception.InternalStateValidationException;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Entity class holding the last state of a mailing list pushed to the remote MailingList service, i.e. the
+ * recipients pushed, a hash of them and the sequence number of the last push. Subsequent pushes need only
+ * contain the recipients added and removed since the last push, and are skipped if the hash is unchanged.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@NamedQueries({
+        @NamedQuery(name = MailingListPushState.NAMEDQ_GET_BY_ORGANISATION,
+                query = "select s from MailingListPushState s "
+                        + " where s.organisationName = :" + OrganisationPatterns.PARAM_ORGANISATION_NAME
+                        + " order by s.listAddress")
+})
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "mailingListPushStateListIsUniquePerOrganisation",
+                columnNames = {"organisationName", "listAddress"})})
+@XmlType(namespace = OrganisationPatterns.NAMESPACE,
+        propOrder = {"organisationName", "listAddress", "sequenceNumber", "contentHash", "recipients"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MailingListPushState extends NazgulEntity {
+
+    /**
+     * NamedQuery for getting the MailingListPushStates of an Organisation, by organisation name.
+     */
+    public static final String NAMEDQ_GET_BY_ORGANISATION = "MailingListPushState.getByOrganisationName";
+
+    /**
+     * The name of the Organisation owning the mailing list.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false, length = 64)
+    @XmlAttribute(required = true)
+    private String organisationName;
+
+    /**
+     * The full email address of the mailing list.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private String listAddress;
+
+    /**
+     * The sequence number of the last push of the mailing list, starting with 1 for its first push.
+     */
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlAttribute(required = true)
+    private long sequenceNumber;
+
+    /**
+     * The hex-encoded SHA-256 hash of the recipients last pushed.
+     */
+    @NotNull
+    @Basic(optional = false)
+    @Column(nullable = false, length = 64)
+    @XmlElement(required = true)
+    private String contentHash;
+
+    /**
+     * The recipients last pushed, sorted and separated by newlines.
+     */
+    @NotNull
+    @Lob
+    @Basic(optional = false)
+    @Column(nullable = false)
+    @XmlElement(required = true)
+    private String recipients;
+
+    /**
+     * JAXB/JPA-friendly constructor.
+     */
+    public MailingListPushState() {
+    }
+
+    /**
+     * Compound constructor creating a MailingListPushState for the first push of a mailing list.
+     *
+     * @param organisationName The non-empty name of the Organisation owning the mailing list.
+     * @param listAddress      The non-empty full email address of the mailing list.
+     * @param recipients       The non-null recipients pushed.
+     */
+    public MailingListPushState(final String organisationName,
+                                final String listAddress,
+                                final Collection<String> recipients) {
+
+        // Check sanity
+        Validate.notEmpty(organisationName, "organisationName");
+        Validate.notEmpty(listAddress, "listAddress");
+
+        // Assign internal state
+        this.organisationName = organisationName;
+        this.listAddress = listAddress;
+        this.sequenceNumber = 0;
+        advance(recipients);
+    }
+
+    /**
+     * @return The name of the Organisation owning the mailing list.
+     */
+    public String getOrganisationName() {
+        return organisationName;
+    }
+
+    /**
+     * @return The full email address of the mailing list.
+     */
+    public String getListAddress() {
+        return listAddress;
+    }
+
+    /**
+     * @return The sequence number of the last push of the mailing list.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return The hex-encoded SHA-256 hash of the recipients last pushed.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return The recipients last pushed, sorted.
+     */
+    public SortedSet<String> getRecipients() {
+
+        final SortedSet<String> toReturn = new TreeSet<>();
+        if (!recipients.isEmpty()) {
+            toReturn.addAll(Arrays.asList(recipients.split("\n")));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Records a push of the supplied recipients, increasing the sequence number.
+     *
+     * @param recipients The non-null recipients pushed.
+     * @return The sequence number of the recorded push.
+     */
+    public long advance(final Collection<String> recipients) {
+
+        // Check sanity
+        Validate.notNull(recipients, "recipients");
+
+        // Assign internal state
+        final SortedSet<String> sorted = new TreeSet<>(recipients);
+        this.recipients = String.join("\n", sorted);
+        this.contentHash = hashOf(sorted);
+        return ++sequenceNumber;
+    }
+
+    /**
+     * Calculates the content hash of the supplied recipients, independent of their order.
+     *
+     * @param recipients The non-null recipients.
+     * @return The hex-encoded SHA-256 hash of the supplied recipients.
+     */
+    public static String hashOf(final Collection<String> recipients) {
+
+        // Check sanity
+        Validate.notNull(recipients, "recipients");
+
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(String.join("\n", new TreeSet<>(recipients))
+                    .getBytes(StandardCharsets.UTF_8));
+
+            final StringBuilder toReturn = new StringBuilder();
+            for (byte current : hash) {
+                toReturn.append(String.format("%02x", current));
+            }
+            return toReturn.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateEntityState() throws InternalStateValidationException {
+
+        InternalStateValidationException.create()
+                .notNullOrEmpty(organisationName, "organisationName")
+                .notNullOrEmpty(listAddress, "listAddress")
+                .notNull(contentHash, "contentHash")
+                .notNull(recipients, "recipients")
+                .endExpressionAndValidate();
+    }
+}
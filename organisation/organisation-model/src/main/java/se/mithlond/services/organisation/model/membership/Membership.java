@@ -84,6 +84,11 @@ import java.util.TreeSet;
                         + " where a.alias like :" + OrganisationPatterns.PARAM_ALIAS
                         + " and a.organisation.organisationName like :" + OrganisationPatterns.PARAM_ORGANISATION_NAME
                         + " order by a.alias"),
+        @NamedQuery(name = Membership.NAMEDQ_GET_BY_ALIASES_ORGANISATIONS,
+                query = "select a from Membership a "
+                        + " where a.alias in :" + OrganisationPatterns.PARAM_ALIASES
+                        + " and a.organisation.organisationName in :" + OrganisationPatterns.PARAM_ORGANISATION_NAMES
+                        + " order by a.alias"),
         @NamedQuery(name = Membership.NAMEDQ_GET_BY_NAME_ORGANISATION,
                 query = "select a from Membership a "
                         + " where a.user.firstName like :" + OrganisationPatterns.PARAM_FIRSTNAME
@@ -101,11 +106,37 @@ import java.util.TreeSet;
                         + " where a.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
                         + " and a.loginPermitted = :" + OrganisationPatterns.PARAM_LOGIN_PERMITTED
                         + " order by a.alias"),
+        @NamedQuery(name = Membership.NAMEDQ_GET_PAGE_BY_ORGANISATION_ID,
+                query = "select a from Membership a"
+                        + " where a.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " and (a.loginPermitted = true or a.loginPermitted = :"
+                        + OrganisationPatterns.PARAM_LOGIN_PERMITTED + ")"
+                        + " order by a.loginPermitted desc, a.alias, a.id"),
         @NamedQuery(name = Membership.NAMEDQ_GET_BY_ORGANISATION_ID_LOGINPERMITTED_AND_USERID,
                 query = "select a from Membership a"
                         + " where a.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
                         + " and a.loginPermitted = :" + OrganisationPatterns.PARAM_LOGIN_PERMITTED
                         + " and a.user.id = :" + OrganisationPatterns.PARAM_USER_ID),
+        @NamedQuery(name = Membership.NAMEDQ_GET_BY_IDS,
+                query = "select a from Membership a"
+                        + " where a.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by a.id"),
+        @NamedQuery(name = Membership.NAMEDQ_GET_SLIM_BY_ORGANISATION_ID_LOGINPERMITTED,
+                query = "select new se.mithlond.services.organisation.model.transport.convenience.membership"
+                        + ".SlimMemberVO( a.id, a.alias, a.subAlias, a.emailAlias, a.loginPermitted, "
+                        + " u.firstName, u.lastName, u.birthday, "
+                        + " u.homeAddress.careOfLine, u.homeAddress.departmentName, u.homeAddress.street, "
+                        + " u.homeAddress.number, u.homeAddress.city, u.homeAddress.zipCode, "
+                        + " u.homeAddress.country, u.homeAddress.description ) "
+                        + " from Membership a join a.user u"
+                        + " where a.organisation.id = :" + OrganisationPatterns.PARAM_ORGANISATION_ID
+                        + " and a.loginPermitted in :" + OrganisationPatterns.PARAM_LOGIN_PERMITTED_VALUES
+                        + " order by a.alias"),
+        @NamedQuery(name = Membership.NAMEDQ_GET_CONTACTDETAILS_BY_IDS,
+                query = "select a.id, key(details), value(details) from Membership a "
+                        + " join a.user u join u.contactDetails details"
+                        + " where a.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by a.id"),
 })
 @Entity
 @Table(uniqueConstraints = {
@@ -155,6 +186,13 @@ public class Membership extends NazgulEntity implements Comparable<Membership>,
     public static final String NAMEDQ_GET_BY_ALIAS_ORGANISATION =
             "Membership.getByAliasAndOrganisation";
 
+    /**
+     * NamedQuery for getting Memberships having any of the supplied aliases, within any of the supplied
+     * organisations (given by name). Found Memberships are retrieved irrespective of their LoginPermitted flag.
+     */
+    public static final String NAMEDQ_GET_BY_ALIASES_ORGANISATIONS =
+            "Membership.getByAliasesAndOrganisations";
+
     /**
      * NamedQuery for getting Memberships by name and organisation name.
      */
@@ -173,12 +211,41 @@ public class Membership extends NazgulEntity implements Comparable<Membership>,
     public static final String NAMEDQ_GET_BY_ORGANISATION_ID_LOGINPERMITTED =
             "Membership.getByOrganisationAndLoginPermitted";
 
+    /**
+     * NamedQuery for getting a page of the Memberships within an Organisation, ordered by loginPermitted
+     * (permitted first) and alias. Supplying {@code false} for the loginPermitted parameter includes the
+     * Memberships not permitted login, whereas {@code true} excludes them.
+     */
+    public static final String NAMEDQ_GET_PAGE_BY_ORGANISATION_ID = "Membership.getPageByOrganisation";
+
     /**
      * NamedQuery for getting a single Membership by organisationID, loginPermitted and UserID.
      */
     public static final String NAMEDQ_GET_BY_ORGANISATION_ID_LOGINPERMITTED_AND_USERID =
             "Membership.getByOrganisationIdLoginPermittedAndUserId";
 
+    /**
+     * NamedQuery for getting Memberships by their JPA IDs.
+     */
+    public static final String NAMEDQ_GET_BY_IDS =
+            "Membership.getByIDs";
+
+    /**
+     * NamedQuery for getting SlimMemberVOs by organisation ID and a List of acceptable loginPermitted values.
+     * Projects the scalar values of each Membership and its User directly into SlimMemberVO transport objects,
+     * implying that no Membership or User entities are loaded. The contact information, groups and guilds
+     * of the resulting SlimMemberVOs are not populated.
+     */
+    public static final String NAMEDQ_GET_SLIM_BY_ORGANISATION_ID_LOGINPERMITTED =
+            "Membership.getSlimByOrganisationIdAndLoginPermitted";
+
+    /**
+     * NamedQuery for getting the membership JPA ID, contact type and address/number of all User contact
+     * details for the Memberships with the supplied JPA IDs.
+     */
+    public static final String NAMEDQ_GET_CONTACTDETAILS_BY_IDS =
+            "Membership.getContactDetailsByIDs";
+
 
     /**
      * The alias of this Membership. Never null/empty, and unique within the Organisation.
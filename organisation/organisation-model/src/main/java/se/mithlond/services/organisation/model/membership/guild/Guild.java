@@ -143,6 +143,20 @@ public class Guild extends Group {
         return Objects.hash(super.hashCode(), quenyaName, quenyaPrefix);
     }
 
+    /**
+     * Creates the XML ID of a Guild, given its groupName and the name of its Organisation.
+     * Used where the XML ID is required without loading the Guild entity itself.
+     *
+     * @param organisationName The name of the Organisation in which the Guild exists.
+     * @param groupName        The name of the Guild.
+     * @return The XML ID of the Guild.
+     */
+    public static String getGuildXmlID(final String organisationName, final String groupName) {
+        return "guild_"
+                + organisationName.replaceAll("\\s+", "_")
+                + "_" + groupName.trim().replaceAll("\\s+", "_");
+    }
+
     //
     // Private helpers
     //
@@ -159,9 +173,7 @@ public class Guild extends Group {
     }
 
     private void setXmlID() {
-        this.xmlID = "guild_"
-                + getOrganisation().getOrganisationName().replaceAll("\\s+", "_")
-                + "_" + getGroupName().trim().replaceAll("\\s+", "_");
+        this.xmlID = getGuildXmlID(getOrganisation().getOrganisationName(), getGroupName());
     }
 
     /**
@@ -36,6 +36,8 @@ import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorType;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAccessType;
@@ -53,6 +55,14 @@ import java.util.TreeSet;
  */
 @Entity
 @DiscriminatorValue("guild")
+@NamedQueries({
+        @NamedQuery(name = GuildMembership.NAMEDQ_GET_GUILD_DATA_BY_MEMBERSHIP_IDS,
+                query = "select gm.membership.id, g.id, g.groupName, o.organisationName, "
+                        + " gm.guildMaster, gm.deputyGuildMaster, gm.auditor "
+                        + " from GuildMembership gm join gm.group g join g.organisation o"
+                        + " where gm.membership.id in :" + OrganisationPatterns.PARAM_IDS
+                        + " order by gm.membership.id, g.groupName")
+})
 @Access(value = AccessType.FIELD)
 @XmlType(namespace = OrganisationPatterns.NAMESPACE, propOrder = {"guildMaster", "deputyGuildMaster", "auditor"})
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -89,6 +99,14 @@ public class GuildMembership extends GroupMembership {
         auditor
     }
 
+    /**
+     * NamedQuery for getting the membership JPA ID, guild JPA ID, guild name, organisation name and the
+     * guildMaster, deputyGuildMaster and auditor flags of all GuildMemberships for the Memberships with
+     * the supplied JPA IDs.
+     */
+    public static final String NAMEDQ_GET_GUILD_DATA_BY_MEMBERSHIP_IDS =
+            "GuildMembership.getGuildDataByMembershipIDs";
+
     // Internal state
     @Basic
     @XmlAttribute(required = true)
@@ -300,12 +318,32 @@ public class GuildMembership extends GroupMembership {
             return GuildRole.none;
         }
 
+        // Delegate
+        return toGuildRole(guildMembership.isGuildMaster(),
+                guildMembership.isDeputyGuildMaster(),
+                guildMembership.isAuditor());
+    }
+
+    /**
+     * Factory method to extract a GuildRole from the flags of a GuildMembership, typically retrieved
+     * within a projection query rather than from a loaded GuildMembership entity.
+     *
+     * @param guildMaster       {@code true} if the GuildMembership is held by the guild master.
+     * @param deputyGuildMaster {@code true} if the GuildMembership is held by the deputy guild master.
+     * @param auditor           {@code true} if the GuildMembership is held by the auditor.
+     * @return The GuildRole corresponding to the supplied flags.
+     */
+    @NotNull
+    public static GuildRole toGuildRole(final boolean guildMaster,
+                                        final boolean deputyGuildMaster,
+                                        final boolean auditor) {
+
         GuildRole toReturn = GuildRole.member;
-        if(guildMembership.isGuildMaster()) {
+        if(guildMaster) {
             toReturn = GuildRole.guildMaster;
-        } else if(guildMembership.isDeputyGuildMaster()) {
+        } else if(deputyGuildMaster) {
             toReturn = GuildRole.deputyGuildMaster;
-        } else if(guildMembership.isAuditor()) {
+        } else if(auditor) {
             toReturn = GuildRole.auditor;
         }
 
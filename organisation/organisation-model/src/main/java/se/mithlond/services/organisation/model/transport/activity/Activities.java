@@ -21,19 +21,24 @@
  */
 package se.mithlond.services.organisation.model.transport.activity;
 
+import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.activity.Activity;
 import se.mithlond.services.organisation.model.transport.OrganisationVO;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -46,7 +51,7 @@ import java.util.Objects;
  */
 @XmlRootElement(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE)
 @XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
-        propOrder = {"activities", "organisationVOs", "activityVOs"})
+        propOrder = {"activities", "organisationVOs", "activityVOs", "facets"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Activities extends AbstractSimpleTransporter {
 
@@ -73,6 +78,24 @@ public class Activities extends AbstractSimpleTransporter {
     @XmlElement(name = "activity")
     private List<Activity> activities;
 
+    /**
+     * The facet counts of a faceted search, sorted by facet and value. Empty unless facets were requested.
+     */
+    @XmlElementWrapper
+    @XmlElement(name = "facet")
+    private List<ActivityFacetVO> facets;
+
+    /**
+     * The total number of Activities matching a paginated search, of which this Activities holds a page.
+     * Null unless the search was paginated.
+     */
+    @XmlAttribute
+    private Long totalCount;
+
+    // Transient index, de-duplicating the OrganisationVOs.
+    @XmlTransient
+    private final TransportIndex<OrganisationVO> organisationVOIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor.
      */
@@ -80,6 +103,7 @@ public class Activities extends AbstractSimpleTransporter {
         activityVOs = new ArrayList<>();
         organisationVOs = new ArrayList<>();
         activities = new ArrayList<>();
+        facets = new ArrayList<>();
     }
 
     /**
@@ -116,20 +140,28 @@ public class Activities extends AbstractSimpleTransporter {
     public final void addActivityVOs(final ActivityVO ... theVOs) {
 
         if (theVOs != null) {
+            addActivityVOs(Arrays.asList(theVOs));
+        }
+    }
 
-            Arrays.stream(theVOs)
-                    .filter(Objects::nonNull)
-                    .forEach(aVO -> {
+    /**
+     * Helper method to add ActivityVOs to this Activities instance. The OrganisationVOs of the added
+     * ActivityVOs are de-duplicated using a hash index rather than a linear search.
+     *
+     * @param theVOs The non-null Collection of ActivityVOs to add. Null elements are ignored.
+     */
+    public final void addActivityVOs(final Collection<ActivityVO> theVOs) {
 
-                        final OrganisationVO orgVO = aVO.getOrganisation();
+        // Check sanity
+        Validate.notNull(theVOs, "theVOs");
 
-                        if (!this.organisationVOs.contains(orgVO)) {
-                            this.organisationVOs.add(orgVO);
-                        }
+        theVOs.stream()
+                .filter(Objects::nonNull)
+                .forEach(aVO -> {
 
-                        this.activityVOs.add(aVO);
-                    });
-        }
+                    organisationVOIndex.addIfAbsent(this.organisationVOs, aVO.getOrganisation());
+                    this.activityVOs.add(aVO);
+                });
     }
 
     /**
@@ -149,4 +181,29 @@ public class Activities extends AbstractSimpleTransporter {
     public List<Activity> getActivities() {
         return activities;
     }
+
+    /**
+     * Retrieves the facet counts of a faceted search.
+     *
+     * @return The facet counts of a faceted search, sorted by facet and value. Empty unless facets were requested.
+     */
+    public List<ActivityFacetVO> getFacets() {
+        return facets;
+    }
+
+    /**
+     * @return The total number of Activities matching a paginated search. Null unless the search was paginated.
+     */
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Assigns the total number of Activities matching a paginated search.
+     *
+     * @param totalCount The total number of Activities matching the search, of which this Activities holds a page.
+     */
+    public void setTotalCount(final Long totalCount) {
+        this.totalCount = totalCount;
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransportable;
+
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import java.time.LocalDateTime;
+
+/**
+ * Transport holder of a conflict between a proposed Activity (or Admission) and an existing Activity, such as
+ * two Activities booked at the same location or a Membership admitted to two Activities at the same time.
+ * The JPA ID of this ActivityConflictVO is the JPA ID of the existing, conflicting Activity.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
+        propOrder = {"conflictType", "proposedActivityID", "membershipID", "startTime", "endTime",
+                "shortDesc", "addressShortDescription"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ActivityConflictVO extends AbstractSimpleTransportable {
+
+    /**
+     * The kinds of conflicts detected.
+     */
+    public enum ConflictType {
+
+        /**
+         * The Activities overlap in time at the same location.
+         */
+        LOCATION,
+
+        /**
+         * The same Membership is admitted to Activities overlapping in time.
+         */
+        MEMBERSHIP
+    }
+
+    /**
+     * The kind of conflict.
+     */
+    @XmlAttribute(required = true)
+    private ConflictType conflictType;
+
+    /**
+     * The JPA ID of the proposed Activity, or {@code null} if the proposed Activity is not yet created.
+     */
+    @XmlAttribute
+    private Long proposedActivityID;
+
+    /**
+     * The JPA ID of the doubly admitted Membership, for {@link ConflictType#MEMBERSHIP} conflicts.
+     */
+    @XmlAttribute
+    private Long membershipID;
+
+    /**
+     * The start time of the conflicting Activity.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime startTime;
+
+    /**
+     * The end time of the conflicting Activity.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime endTime;
+
+    /**
+     * The short description of the conflicting Activity.
+     */
+    @XmlElement
+    private String shortDesc;
+
+    /**
+     * The short description of the location of the conflicting Activity.
+     */
+    @XmlElement
+    private String addressShortDescription;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public ActivityConflictVO() {
+    }
+
+    /**
+     * Compound constructor creating an ActivityConflictVO wrapping the supplied data.
+     *
+     * @param conflictingActivityID   The JPA ID of the existing, conflicting Activity.
+     * @param conflictType            The kind of conflict.
+     * @param proposedActivityID      The JPA ID of the proposed Activity, or {@code null} if not yet created.
+     * @param membershipID            The JPA ID of the doubly admitted Membership, or {@code null} for
+     *                                {@link ConflictType#LOCATION} conflicts.
+     * @param startTime               The start time of the conflicting Activity.
+     * @param endTime                 The end time of the conflicting Activity.
+     * @param shortDesc               The short description of the conflicting Activity.
+     * @param addressShortDescription The short description of the location of the conflicting Activity.
+     */
+    public ActivityConflictVO(@NotNull final Long conflictingActivityID,
+                              @NotNull final ConflictType conflictType,
+                              final Long proposedActivityID,
+                              final Long membershipID,
+                              @NotNull final LocalDateTime startTime,
+                              @NotNull final LocalDateTime endTime,
+                              final String shortDesc,
+                              final String addressShortDescription) {
+
+        // Delegate
+        super(conflictingActivityID);
+
+        // Assign internal state
+        this.conflictType = conflictType;
+        this.proposedActivityID = proposedActivityID;
+        this.membershipID = membershipID;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.shortDesc = shortDesc;
+        this.addressShortDescription = addressShortDescription;
+    }
+
+    /**
+     * @return The JPA ID of the existing, conflicting Activity.
+     */
+    public Long getConflictingActivityID() {
+        return getJpaID();
+    }
+
+    /**
+     * @return The kind of conflict.
+     */
+    public ConflictType getConflictType() {
+        return conflictType;
+    }
+
+    /**
+     * @return The JPA ID of the proposed Activity, or {@code null} if the proposed Activity is not yet created.
+     */
+    public Long getProposedActivityID() {
+        return proposedActivityID;
+    }
+
+    /**
+     * @return The JPA ID of the doubly admitted Membership, or {@code null} for
+     * {@link ConflictType#LOCATION} conflicts.
+     */
+    public Long getMembershipID() {
+        return membershipID;
+    }
+
+    /**
+     * @return The start time of the conflicting Activity.
+     */
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The end time of the conflicting Activity.
+     */
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The short description of the conflicting Activity.
+     */
+    public String getShortDesc() {
+        return shortDesc;
+    }
+
+    /**
+     * @return The short description of the location of the conflicting Activity.
+     */
+    public String getAddressShortDescription() {
+        return addressShortDescription;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ActivityConflictVO [" + conflictType + ", proposed: " + proposedActivityID
+                + ", conflicting: " + getConflictingActivityID()
+                + (membershipID == null ? "" : ", membership: " + membershipID)
+                + ", " + startTime + " - " + endTime + "]";
+    }
+}
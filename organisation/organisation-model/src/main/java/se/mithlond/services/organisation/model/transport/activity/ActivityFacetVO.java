@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Transport holder of a facet count, i.e. the number of Activities within a search result sharing the
+ * same value of a {@link Facet} (such as the number of Activities in a given month).
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"facet", "value", "count"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ActivityFacetVO implements Serializable, Comparable<ActivityFacetVO> {
+
+    /**
+     * The properties of Activities which can be counted within a faceted search.
+     */
+    public enum Facet {
+
+        /**
+         * The categoryID of the address category of the Activity, such as "Restaurang".
+         */
+        ADDRESS_CATEGORY,
+
+        /**
+         * The month of the start time of the Activity, in the form {@code yyyy-MM}.
+         */
+        MONTH,
+
+        /**
+         * The name of the Group organizing the Activity. Empty for Activities without a responsible Group.
+         */
+        RESPONSIBLE_GROUP,
+
+        /**
+         * Whether the active Membership is admitted to the Activity; {@code true} or {@code false}.
+         */
+        ADMITTED
+    }
+
+    // Shared state
+    private static final Comparator<ActivityFacetVO> ORDER = Comparator
+            .comparing(ActivityFacetVO::getFacet)
+            .thenComparing(ActivityFacetVO::getValue);
+
+    /**
+     * The counted Facet.
+     */
+    @XmlAttribute(required = true)
+    private Facet facet;
+
+    /**
+     * The value of the Facet.
+     */
+    @XmlAttribute(required = true)
+    private String value;
+
+    /**
+     * The number of Activities having the value.
+     */
+    @XmlAttribute(required = true)
+    private long count;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public ActivityFacetVO() {
+    }
+
+    /**
+     * Compound constructor creating an ActivityFacetVO wrapping the supplied data.
+     *
+     * @param facet The counted Facet.
+     * @param value The value of the Facet.
+     * @param count The number of Activities having the value.
+     */
+    public ActivityFacetVO(final Facet facet, final String value, final long count) {
+        this.facet = facet;
+        this.value = value;
+        this.count = count;
+    }
+
+    /**
+     * @return The counted Facet.
+     */
+    public Facet getFacet() {
+        return facet;
+    }
+
+    /**
+     * @return The value of the Facet.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return The number of Activities having the value.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sorts ActivityFacetVOs by Facet and value.
+     *
+     * @param that The ActivityFacetVO to compare with.
+     * @return The result of comparing the Facet and value of this and that ActivityFacetVO.
+     */
+    @Override
+    public int compareTo(final ActivityFacetVO that) {
+        return ORDER.compare(this, that);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        // Fail fast
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ActivityFacetVO)) {
+            return false;
+        }
+
+        // Delegate to internal state
+        final ActivityFacetVO that = (ActivityFacetVO) o;
+        return facet == that.facet && count == that.count && value.equals(that.value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * facet.hashCode() + value.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return facet + "[" + value + "]: " + count;
+    }
+}
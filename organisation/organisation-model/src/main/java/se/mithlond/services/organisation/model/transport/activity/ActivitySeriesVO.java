@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+import se.mithlond.services.organisation.model.transport.OrganisationVO;
+import se.mithlond.services.shared.spi.algorithms.calendar.RecurrenceRule;
+import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.time.LocalDate;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Transport model for an ActivitySeries, i.e. a template {@link ActivityVO} describing the first occurrence
+ * and the recurrence rule defining the start times of all subsequent occurrences.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlRootElement(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE)
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
+        propOrder = {"seriesID", "frequency", "interval", "until", "count", "organisationVO", "template",
+                "exceptions"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ActivitySeriesVO extends AbstractSimpleTransporter {
+
+    /**
+     * The JPA ID of the ActivitySeries, or {@code null} for an ActivitySeries not yet created.
+     */
+    @XmlAttribute
+    private Long seriesID;
+
+    /**
+     * The frequency of the occurrences. (Create: Mandatory).
+     */
+    @XmlAttribute(required = true)
+    private RecurrenceRule.Frequency frequency;
+
+    /**
+     * The number of weeks or months between occurrences.
+     */
+    @XmlAttribute(required = true)
+    private int interval;
+
+    /**
+     * The optional last date (inclusive) of any occurrence.
+     */
+    @XmlAttribute
+    private LocalDate until;
+
+    /**
+     * The optional maximum number of occurrences.
+     */
+    @XmlAttribute
+    private Integer count;
+
+    /**
+     * The OrganisationVO referenced by the template ActivityVO.
+     */
+    @XmlElement
+    private OrganisationVO organisationVO;
+
+    /**
+     * The ActivityVO describing the first occurrence of the ActivitySeries. (Create: Mandatory).
+     */
+    @XmlElement(required = true)
+    private ActivityVO template;
+
+    /**
+     * The dates on which no occurrence should take place.
+     */
+    @XmlElementWrapper
+    @XmlElement(name = "exception")
+    private SortedSet<LocalDate> exceptions;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public ActivitySeriesVO() {
+        exceptions = new TreeSet<>();
+    }
+
+    /**
+     * Compound constructor creating an ActivitySeriesVO wrapping the supplied data.
+     *
+     * @param seriesID       The JPA ID of the ActivitySeries, or {@code null} for an ActivitySeries not yet created.
+     * @param template       The non-null ActivityVO describing the first occurrence of the ActivitySeries.
+     * @param recurrenceRule The non-null RecurrenceRule of the ActivitySeries.
+     */
+    public ActivitySeriesVO(final Long seriesID, final ActivityVO template, final RecurrenceRule recurrenceRule) {
+
+        this();
+
+        // Check sanity
+        Validate.notNull(template, "template");
+        Validate.notNull(recurrenceRule, "recurrenceRule");
+
+        // Assign internal state
+        this.seriesID = seriesID;
+        this.template = template;
+        this.organisationVO = template.getOrganisation();
+        this.frequency = recurrenceRule.getFrequency();
+        this.interval = recurrenceRule.getInterval();
+        this.until = recurrenceRule.getUntil();
+        this.count = recurrenceRule.getCount();
+        this.exceptions.addAll(recurrenceRule.getExceptions());
+    }
+
+    /**
+     * @return The JPA ID of the ActivitySeries, or {@code null} for an ActivitySeries not yet created.
+     */
+    public Long getSeriesID() {
+        return seriesID;
+    }
+
+    /**
+     * @return The ActivityVO describing the first occurrence of the ActivitySeries.
+     */
+    public ActivityVO getTemplate() {
+        return template;
+    }
+
+    /**
+     * Converts the recurrence data within this ActivitySeriesVO to a RecurrenceRule.
+     *
+     * @return The RecurrenceRule defined by this ActivitySeriesVO.
+     * @throws IllegalArgumentException if the recurrence data is not valid.
+     */
+    public RecurrenceRule getRecurrenceRule() throws IllegalArgumentException {
+        return new RecurrenceRule(frequency, interval, until, count, exceptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " seriesID: " + seriesID + ", " + frequency + "/" + interval
+                + (until != null ? ", until " + until : "")
+                + (count != null ? ", count " + count : "")
+                + ", exceptions: " + exceptions
+                + ", template: " + template;
+    }
+}
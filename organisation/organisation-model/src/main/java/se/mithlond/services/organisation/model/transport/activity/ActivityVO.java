@@ -25,8 +25,10 @@ import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.XmlIdHolder;
 import se.mithlond.services.organisation.model.activity.Activity;
+import se.mithlond.services.organisation.model.activity.ActivitySeries;
 import se.mithlond.services.organisation.model.address.Address;
 import se.mithlond.services.organisation.model.finance.Amount;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
 import se.mithlond.services.organisation.model.transport.OrganisationVO;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransportable;
 
@@ -38,9 +40,12 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlIDREF;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
@@ -55,7 +60,7 @@ import java.util.stream.Collectors;
         propOrder = {"organisation", "shortDesc", "fullDesc", "startTime", "endTime",
                 "isOpenToGeneralPublic", "addressCategory", "addressShortDescription", "location",
                 "cancelled", "cost", "lateAdmissionCost", "lateAdmissionDate", "lastAdmissionDate",
-                "dressCode", "responsibleGroupName", "admissions"})
+                "dressCode", "responsibleGroupName", "admissions", "maxParticipants", "seriesID"})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHolder {
 
@@ -118,10 +123,10 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
     private LocalDate lastAdmissionDate;
 
     /**
-     * {@code true} to indicate that this Activity is cancelled.
+     * {@code true} to indicate that this Activity is cancelled. (Update: {@code null} leaves it unchanged).
      */
-    @XmlAttribute(required = true)
-    private boolean cancelled;
+    @XmlAttribute
+    private Boolean cancelled;
 
     /**
      * An optional dress code description for the Activity.
@@ -164,9 +169,25 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
     /**
      * If {@code true}, the activity is flagged as being open to the general public
      * (as opposed to being available to members of the supplied organisation only).
+     * (Update: {@code null} leaves it unchanged).
+     */
+    @XmlAttribute
+    private Boolean isOpenToGeneralPublic;
+
+    /**
+     * The maximum number of participants (i.e. Admissions) of the Activity. Optional; {@code null} indicates
+     * an unlimited number of participants.
      */
+    @Min(value = 1L, message = "Maximalt antal deltagare måste vara minst 1.")
     @XmlAttribute
-    private boolean isOpenToGeneralPublic;
+    private Integer maxParticipants;
+
+    /**
+     * The JPA ID of the ActivitySeries of which this Activity is an occurrence. Optional.
+     * An ActivityVO with a seriesID but without a JPA ID represents an occurrence which is not yet materialized.
+     */
+    @XmlAttribute
+    private Long seriesID;
 
     /**
      * JAXB-friendly constructor
@@ -195,6 +216,8 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
      *                                (Create: Mandatory).
      * @param lastAdmissionDate       The last date of admissions to the Activity. (Create: Mandatory).
      * @param cancelled               {@code true} to indicate that this Activity is cancelled.
+     *                                (Create: {@code null} implies {@code false}; Update: {@code null} leaves it
+     *                                unchanged).
      * @param dressCode               An optional dress code description for the Activity.
      * @param addressCategory         The address-classification category of the address supplied. (Create: Mandatory).
      * @param location                The location of the Activity. (Create: Mandatory).
@@ -203,6 +226,10 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
      * @param responsibleGroupName    The name of the Group organizing this Activity. Optional.
      * @param isOpenToGeneralPublic   If {@code true}, the activity is flagged as being open to the general public
      *                                (as opposed to being available to members of the supplied organisation only).
+     *                                (Create: {@code null} implies {@code false}; Update: {@code null} leaves it
+     *                                unchanged).
+     * @param maxParticipants         The maximum number of participants of the Activity. Optional; {@code null}
+     *                                indicates an unlimited number of participants.
      */
     public ActivityVO(final Long jpaID,
                       final OrganisationVO organisation,
@@ -214,13 +241,14 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
                       final Amount lateAdmissionCost,
                       final LocalDate lateAdmissionDate,
                       final LocalDate lastAdmissionDate,
-                      final boolean cancelled,
+                      final Boolean cancelled,
                       final String dressCode,
                       final String addressCategory,
                       final Address location,
                       final String addressShortDescription,
                       final String responsibleGroupName,
-                      final boolean isOpenToGeneralPublic) {
+                      final Boolean isOpenToGeneralPublic,
+                      final Integer maxParticipants) {
 
         super(jpaID);
 
@@ -244,6 +272,7 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
         this.addressShortDescription = addressShortDescription;
         this.responsibleGroupName = responsibleGroupName;
         this.isOpenToGeneralPublic = isOpenToGeneralPublic;
+        this.maxParticipants = maxParticipants;
     }
 
     /**
@@ -259,34 +288,137 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
         // Assign internal state
         initialize(activity.getId());
 
-        this.organisation = new OrganisationVO(activity.getOwningOrganisation());
-        this.shortDesc = Validate.notEmpty(activity.getShortDesc(), "shortDesc");
-        this.fullDesc = Validate.notEmpty(activity.getFullDesc(), "fullDesc");
+        copyState(activity);
+    }
 
-        this.startTime = activity.getStartTime();
-        this.endTime = activity.getEndTime();
-        this.lateAdmissionDate = activity.getLateAdmissionDate();
-        this.lastAdmissionDate = activity.getLastAdmissionDate();
-        this.cost = activity.getCost();
-        this.lateAdmissionCost = activity.getLateAdmissionCost();
+    /**
+     * Creates an ActivityVO for an occurrence of the supplied ActivitySeries, which is not (yet) materialized
+     * as an Activity. The resulting ActivityVO has no JPA ID, but holds the seriesID of the ActivitySeries.
+     * Any AdmissionVO (i.e. for the responsible Membership of the ActivitySeries) lacks an activityID.
+     *
+     * @param series          A non-null and persisted ActivitySeries.
+     * @param occurrenceStart The start time of the occurrence, as defined by the recurrence rule of the series.
+     */
+    public ActivityVO(final ActivitySeries series, final LocalDateTime occurrenceStart) {
 
-        this.addressCategory = activity.getAddressCategory().getCategoryID();
-        this.addressShortDescription = activity.getAddressShortDescription();
-        this.location = activity.getLocation();
+        // Check sanity
+        Validate.notNull(series, "series");
+        Validate.notNull(occurrenceStart, "occurrenceStart");
 
-        this.cancelled = activity.isCancelled();
-        this.isOpenToGeneralPublic = activity.isOpenToGeneralPublic();
-        this.dressCode = activity.getDressCode();
+        // Assign internal state
+        copyState(series.createOccurrence(occurrenceStart, occurrenceStart));
+        this.seriesID = series.getId();
+
+        final List<AdmissionVO> occurrenceAdmissions = this.admissions.stream()
+                .map(adm -> new AdmissionVO(null,
+                        adm.getMembershipID(),
+                        adm.getAlias(),
+                        adm.getOrganisation(),
+                        adm.getAdmissionTime(),
+                        adm.getLastModification(),
+                        adm.getNote().orElse(null),
+                        adm.isResponsible()))
+                .collect(Collectors.toList());
+        this.admissions.clear();
+        this.admissions.addAll(occurrenceAdmissions);
+    }
 
-        this.responsibleGroupName = activity.getResponsible() == null
-                ? null
-                : activity.getResponsible().getGroupName();
-        this.admissions = new TreeSet<>();
-        this.admissions.addAll(activity.getAdmissions()
-                .stream()
-                .filter(Objects::nonNull)
-                .map(AdmissionVO::new)
-                .collect(Collectors.toList()));
+    /**
+     * Projection constructor, invoked by JPQL constructor expressions (i.e. "select new ...") to create an
+     * ActivityVO directly from scalar column values without materializing any managed Activity entity.
+     * The admissions of the resulting ActivityVO are empty; they should be retrieved in a separate (batched)
+     * AdmissionVO projection and added to the {@link #getAdmissions()} Set.
+     *
+     * @param jpaID                   The JPA ID of the Activity.
+     * @param organisationID          The JPA ID of the Organisation owning the Activity.
+     * @param organisationName        The name of the Organisation owning the Activity.
+     * @param organisationSuffix      The optional suffix of the Organisation owning the Activity.
+     *                                If {@code null} or empty, the organisationName is used as description.
+     * @param shortDesc               The short description of this activity, visible in listings.
+     * @param fullDesc                The full description of this activity, visible in detailed listings.
+     * @param startTime               The start time of the Activity.
+     * @param endTime                 The end time of the Activity.
+     * @param cost                    The optional cost of admitting to this Activity. {@code null} implies zero.
+     * @param lateAdmissionCost       The optional cost for attending this Activity, if admitted after the
+     *                                lateAdmissionDate.
+     * @param currency                The name of the {@link WellKnownCurrency} of the cost and lateAdmissionCost.
+     * @param lateAdmissionDate       The date before which admitting to the Activty costs {@link #cost}.
+     * @param lastAdmissionDate       The last date of admissions to the Activity.
+     * @param cancelled               {@code true} to indicate that this Activity is cancelled.
+     * @param dressCode               An optional dress code description for the Activity.
+     * @param addressCategory         The categoryID of the address-classification category of the location.
+     * @param addressShortDescription The short description of the location for this Activity.
+     * @param careOfLine              The optional C/O-line of the location Address.
+     * @param departmentName          The optional name of the department of the location Address.
+     * @param street                  The street name of the location Address.
+     * @param number                  The number on the street or Box of the location Address.
+     * @param city                    The city of the location Address.
+     * @param zipCode                 The zipCode of the location Address.
+     * @param country                 The country of the location Address.
+     * @param addressDescription      The optional description of the location Address.
+     * @param responsibleGroupName    The name of the Group organizing this Activity. Optional.
+     * @param isOpenToGeneralPublic   If {@code true}, the activity is flagged as being open to the general public.
+     * @param maxParticipants         The maximum number of participants of the Activity, or {@code null}.
+     * @param seriesID                The JPA ID of the ActivitySeries of which the Activity is an occurrence,
+     *                                or {@code null} if the Activity is not an occurrence of any ActivitySeries.
+     */
+    @SuppressWarnings("all")
+    public ActivityVO(final Long jpaID,
+                      final Long organisationID,
+                      final String organisationName,
+                      final String organisationSuffix,
+                      final String shortDesc,
+                      final String fullDesc,
+                      final LocalDateTime startTime,
+                      final LocalDateTime endTime,
+                      final BigDecimal cost,
+                      final BigDecimal lateAdmissionCost,
+                      final String currency,
+                      final LocalDate lateAdmissionDate,
+                      final LocalDate lastAdmissionDate,
+                      final boolean cancelled,
+                      final String dressCode,
+                      final String addressCategory,
+                      final String addressShortDescription,
+                      final String careOfLine,
+                      final String departmentName,
+                      final String street,
+                      final String number,
+                      final String city,
+                      final String zipCode,
+                      final String country,
+                      final String addressDescription,
+                      final String responsibleGroupName,
+                      final boolean isOpenToGeneralPublic,
+                      final Integer maxParticipants,
+                      final Long seriesID) {
+
+        // Delegate
+        this(jpaID,
+                new OrganisationVO(organisationID,
+                        organisationName,
+                        organisationSuffix == null || organisationSuffix.isEmpty()
+                                ? organisationName
+                                : organisationSuffix),
+                shortDesc,
+                fullDesc,
+                startTime,
+                endTime,
+                new Amount(cost == null ? BigDecimal.ZERO : cost, WellKnownCurrency.valueOf(currency)),
+                new Amount(lateAdmissionCost, WellKnownCurrency.valueOf(currency)),
+                lateAdmissionDate,
+                lastAdmissionDate,
+                cancelled,
+                dressCode,
+                addressCategory,
+                new Address(careOfLine, departmentName, street, number, city, zipCode, country, addressDescription),
+                addressShortDescription,
+                responsibleGroupName,
+                isOpenToGeneralPublic,
+                maxParticipants);
+
+        // Assign internal state
+        this.seriesID = seriesID;
     }
 
     /**
@@ -361,7 +493,15 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
      * @return {@code true} to indicate that this Activity is cancelled.
      */
     public boolean isCancelled() {
-        return cancelled;
+        return cancelled != null && cancelled;
+    }
+
+    /**
+     * @return The cancelled flag of this ActivityVO, or an empty Optional if it was not given
+     * (implying that the cancelled flag of an updated Activity should be left unchanged).
+     */
+    public Optional<Boolean> getCancelled() {
+        return Optional.ofNullable(cancelled);
     }
 
     /**
@@ -413,7 +553,40 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
      * (as opposed to being available to members of the supplied organisation only).
      */
     public boolean isOpenToGeneralPublic() {
-        return isOpenToGeneralPublic;
+        return isOpenToGeneralPublic != null && isOpenToGeneralPublic;
+    }
+
+    /**
+     * @return The open-to-general-public flag of this ActivityVO, or an empty Optional if it was not given
+     * (implying that the flag of an updated Activity should be left unchanged).
+     */
+    public Optional<Boolean> getOpenToGeneralPublic() {
+        return Optional.ofNullable(isOpenToGeneralPublic);
+    }
+
+    /**
+     * @return The maximum number of participants of the Activity, or {@code null} to indicate an unlimited
+     * number of participants.
+     */
+    public Integer getMaxParticipants() {
+        return maxParticipants;
+    }
+
+    /**
+     * @return The JPA ID of the ActivitySeries of which this Activity is an occurrence, or {@code null} if
+     * this Activity is not an occurrence of any ActivitySeries.
+     */
+    public Long getSeriesID() {
+        return seriesID;
+    }
+
+    /**
+     * Assigns the JPA ID of the ActivitySeries of which this Activity is an occurrence.
+     *
+     * @param seriesID The JPA ID of the ActivitySeries of which this Activity is an occurrence. Optional.
+     */
+    public void setSeriesID(final Long seriesID) {
+        this.seriesID = seriesID;
     }
 
     /**
@@ -450,6 +623,46 @@ public class ActivityVO extends AbstractSimpleTransportable implements XmlIdHold
                 + ", responsibleGroupName='" + responsibleGroupName + '\''
                 + ", admissions=" + admissionsText
                 + ", isOpenToGeneralPublic=" + isOpenToGeneralPublic
+                + (maxParticipants != null ? ", maxParticipants=" + maxParticipants : "")
+                + (seriesID != null ? ", seriesID=" + seriesID : "")
                 + '}';
     }
+
+    //
+    // Private helpers
+    //
+
+    private void copyState(final Activity activity) {
+
+        this.organisation = new OrganisationVO(activity.getOwningOrganisation());
+        this.shortDesc = Validate.notEmpty(activity.getShortDesc(), "shortDesc");
+        this.fullDesc = Validate.notEmpty(activity.getFullDesc(), "fullDesc");
+
+        this.startTime = activity.getStartTime();
+        this.endTime = activity.getEndTime();
+        this.lateAdmissionDate = activity.getLateAdmissionDate();
+        this.lastAdmissionDate = activity.getLastAdmissionDate();
+        this.cost = activity.getCost();
+        this.lateAdmissionCost = activity.getLateAdmissionCost();
+
+        this.addressCategory = activity.getAddressCategory().getCategoryID();
+        this.addressShortDescription = activity.getAddressShortDescription();
+        this.location = activity.getLocation();
+
+        this.cancelled = activity.isCancelled();
+        this.isOpenToGeneralPublic = activity.isOpenToGeneralPublic();
+        this.dressCode = activity.getDressCode();
+        this.maxParticipants = activity.getMaxParticipants();
+
+        this.responsibleGroupName = activity.getResponsible() == null
+                ? null
+                : activity.getResponsible().getGroupName();
+        this.seriesID = activity.getSeries() == null ? null : activity.getSeries().getId();
+        this.admissions = new TreeSet<>();
+        this.admissions.addAll(activity.getAdmissions()
+                .stream()
+                .filter(Objects::nonNull)
+                .map(AdmissionVO::new)
+                .collect(Collectors.toList()));
+    }
 }
@@ -236,6 +236,16 @@ public class AdmissionVO extends AbstractSimpleTransportable implements XmlIdHol
         return admitted == null ? true : admitted;
     }
 
+    /**
+     * Assigns the admitted flag of this AdmissionVO.
+     *
+     * @param admitted {@code false} to indicate the desire to revoke the admission corresponding to
+     *                 this AdmissionVO. A {@code null} value is interpreted as {@code true}.
+     */
+    public void setAdmitted(final Boolean admitted) {
+        this.admitted = admitted;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transport wrapper for the free/busy information of several Memberships within a time window; the
+ * merged busy intervals of each Membership, as well as the free slots common to all Memberships.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlRootElement(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE)
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"from", "to", "members", "free"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class FreeBusy {
+
+    /**
+     * The (inclusive) start of the time window.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime from;
+
+    /**
+     * The (exclusive) end of the time window.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime to;
+
+    /**
+     * The busy intervals of each Membership.
+     */
+    @XmlElementWrapper(required = true)
+    @XmlElement(name = "member")
+    private List<MemberBusyVO> members;
+
+    /**
+     * The slots within the time window where none of the Memberships is busy.
+     */
+    @XmlElementWrapper(required = true)
+    @XmlElement(name = "slot")
+    private List<TimeIntervalVO> free;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public FreeBusy() {
+        members = new ArrayList<>();
+        free = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty FreeBusy for the supplied time window.
+     *
+     * @param from The (inclusive) start of the time window.
+     * @param to   The (exclusive) end of the time window.
+     */
+    public FreeBusy(final LocalDateTime from, final LocalDateTime to) {
+        this();
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return The (inclusive) start of the time window.
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * @return The (exclusive) end of the time window.
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    /**
+     * @return The busy intervals of each Membership.
+     */
+    public List<MemberBusyVO> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return The slots within the time window where none of the Memberships is busy.
+     */
+    public List<TimeIntervalVO> getFree() {
+        return free;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "FreeBusy [" + from + " - " + to + ", members: " + members + ", free: " + free + "]";
+    }
+}
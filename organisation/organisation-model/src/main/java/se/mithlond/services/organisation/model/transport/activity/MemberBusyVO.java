@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport holder of the merged busy intervals of a single Membership.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"membershipID", "busy"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MemberBusyVO implements Serializable {
+
+    /**
+     * The JPA ID of the Membership.
+     */
+    @XmlAttribute(required = true)
+    private Long membershipID;
+
+    /**
+     * The merged and sorted busy intervals of the Membership.
+     */
+    @XmlElement(name = "busy")
+    private List<TimeIntervalVO> busy;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public MemberBusyVO() {
+        busy = new ArrayList<>();
+    }
+
+    /**
+     * Creates a MemberBusyVO for the supplied Membership, without any busy intervals.
+     *
+     * @param membershipID The JPA ID of the Membership.
+     */
+    public MemberBusyVO(final Long membershipID) {
+        this();
+        this.membershipID = membershipID;
+    }
+
+    /**
+     * @return The JPA ID of the Membership.
+     */
+    public Long getMembershipID() {
+        return membershipID;
+    }
+
+    /**
+     * @return The merged and sorted busy intervals of the Membership.
+     */
+    public List<TimeIntervalVO> getBusy() {
+        return busy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "MemberBusyVO [" + membershipID + ": " + busy + "]";
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.activity;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Compact transport holder of a time interval {@code [start, end)}.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"start", "end"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class TimeIntervalVO implements Serializable {
+
+    /**
+     * The (inclusive) start of the interval.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime start;
+
+    /**
+     * The (exclusive) end of the interval.
+     */
+    @XmlAttribute(required = true)
+    private LocalDateTime end;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public TimeIntervalVO() {
+    }
+
+    /**
+     * Compound constructor creating a TimeIntervalVO wrapping the supplied data.
+     *
+     * @param start The (inclusive) start of the interval.
+     * @param end   The (exclusive) end of the interval.
+     */
+    public TimeIntervalVO(final LocalDateTime start, final LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return The (inclusive) start of the interval.
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /**
+     * @return The (exclusive) end of the interval.
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return start + "/" + end;
+    }
+}
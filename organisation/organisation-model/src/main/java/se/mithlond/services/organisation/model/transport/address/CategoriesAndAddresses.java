@@ -26,12 +26,14 @@ import se.mithlond.services.organisation.model.Organisation;
 import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.address.CategorizedAddress;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -73,6 +75,13 @@ public class CategoriesAndAddresses extends AbstractSimpleTransporter {
     @XmlElement(name = "categorizedAddress")
     private List<CategorizedAddress> categorizedAddresses;
 
+    // Transient indices, de-duplicating the Organisations and CategorizedAddresses.
+    @XmlTransient
+    private final TransportIndex<Organisation> organisationIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<CategorizedAddress> addressIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor.
      */
@@ -141,14 +150,8 @@ public class CategoriesAndAddresses extends AbstractSimpleTransporter {
                 categories.add(category);
             }
 
-            if (!categorizedAddresses.contains(toAdd)) {
-
-                final Organisation organisation = toAdd.getOwningOrganisation();
-                if (!organisations.contains(organisation)) {
-                    organisations.add(organisation);
-                }
-
-                categorizedAddresses.add(toAdd);
+            if (addressIndex.addIfAbsent(categorizedAddresses, toAdd)) {
+                organisationIndex.addIfAbsent(organisations, toAdd.getOwningOrganisation());
             }
         }
     }
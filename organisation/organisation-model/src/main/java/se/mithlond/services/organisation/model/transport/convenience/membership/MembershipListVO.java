@@ -26,6 +26,7 @@ import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.address.Address;
 import se.mithlond.services.organisation.model.membership.Membership;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlAccessType;
@@ -35,9 +36,11 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
@@ -72,6 +75,10 @@ public class MembershipListVO extends AbstractSimpleTransporter {
     @XmlElement(name = "memberData")
     private List<SlimMemberVO> memberInformation;
 
+    // Transient index, de-duplicating the SlimMemberVOs.
+    @XmlTransient
+    private final TransportIndex<SlimMemberVO> memberIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor.
      */
@@ -94,6 +101,23 @@ public class MembershipListVO extends AbstractSimpleTransporter {
         this.organisationJpaID = organisation.getId();
     }
 
+    /**
+     * Compound constructor creating a MembershiplistVO for the supplied organisation name and JPA ID,
+     * to which already converted SlimMemberVOs can be added.
+     *
+     * @param organisationName  The non-empty name of the organisation holding the transported Memberships.
+     * @param organisationJpaID The JPA ID of the organisation holding the transported Memberships.
+     */
+    public MembershipListVO(@NotNull final String organisationName, final Long organisationJpaID) {
+
+        // Delegate
+        this();
+
+        // Assign internal state
+        this.organisationName = organisationName;
+        this.organisationJpaID = organisationJpaID;
+    }
+
     /**
      * Converts and adds the supplied Memberships to this MembershipListVO.
      *
@@ -108,11 +132,20 @@ public class MembershipListVO extends AbstractSimpleTransporter {
                     .filter(Objects::nonNull)
                     .filter(m -> m.getOrganisation().getOrganisationName().equals(getOrganisationName()))
                     .map(SlimMemberVO::new)
-                    .filter(s -> !memberInformation.contains(s))
-                    .forEach(memberInformation::add);
+                    .forEach(s -> memberIndex.addIfAbsent(memberInformation, s));
         }
     }
 
+    /**
+     * Adds the supplied (already converted) SlimMemberVOs to this MembershipListVO, unless already added.
+     *
+     * @param toAdd The SlimMemberVOs to add. Null elements are ignored.
+     * @return The number of SlimMemberVOs added.
+     */
+    public int addAll(final Collection<SlimMemberVO> toAdd) {
+        return memberIndex.addAllIfAbsent(memberInformation, toAdd);
+    }
+
     /**
      * @return The name of the organisation holding the transported Memberships.
      */
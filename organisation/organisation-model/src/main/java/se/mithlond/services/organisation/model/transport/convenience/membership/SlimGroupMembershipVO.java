@@ -71,6 +71,25 @@ public class SlimGroupMembershipVO extends AbstractSimpleTransportable implement
         }
     }
 
+    /**
+     * Compound constructor creating a SlimGroupMembershipVO from already projected (i.e. scalar) Group data,
+     * implying that no GroupMembership or Group entity needs to be loaded.
+     *
+     * @param groupJpaID  The JPA ID of the Group.
+     * @param groupXmlID  The XML ID of the Group.
+     * @param parentXmlID The optional XML ID of the parent Group. Null or empty values indicate no parent.
+     */
+    public SlimGroupMembershipVO(final Long groupJpaID, final String groupXmlID, final String parentXmlID) {
+
+        // Delegate
+        super(groupJpaID, groupXmlID);
+
+        // Assign internal state
+        if (parentXmlID != null && !parentXmlID.isEmpty()) {
+            this.parentXmlId = parentXmlID;
+        }
+    }
+
     /**
      * Retrieves the optional (i.e. nullable) Parent XML ID of this Group.
      *
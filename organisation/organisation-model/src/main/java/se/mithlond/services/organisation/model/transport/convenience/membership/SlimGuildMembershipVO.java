@@ -64,6 +64,25 @@ public class SlimGuildMembershipVO extends SlimGroupMembershipVO {
         this.memberType = GuildMembership.toGuildRole(guildMembership).name();
     }
 
+    /**
+     * Compound constructor creating a SlimGuildMembershipVO from already projected (i.e. scalar) Guild data,
+     * implying that no GuildMembership or Guild entity needs to be loaded.
+     *
+     * @param guildJpaID The JPA ID of the Guild.
+     * @param guildXmlID The XML ID of the Guild.
+     * @param guildRole  The non-null role of the member within the Guild.
+     */
+    public SlimGuildMembershipVO(final Long guildJpaID,
+                                 final String guildXmlID,
+                                 @NotNull final GuildMembership.GuildRole guildRole) {
+
+        // Delegate
+        super(guildJpaID, guildXmlID, null);
+
+        // Assign internal state
+        this.memberType = guildRole.name();
+    }
+
     /**
      * @return The type of membership within this Guild.
      */
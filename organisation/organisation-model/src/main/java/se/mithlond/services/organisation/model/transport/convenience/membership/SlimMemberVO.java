@@ -176,6 +176,80 @@ public class SlimMemberVO extends AbstractSimpleTransportable {
                 .forEach(groups::add);
 
         // #3) Clean up somewhat
+        sortDetails();
+    }
+
+    /**
+     * Projection constructor, invoked by JPQL constructor expressions (i.e. "select new ...") to create a
+     * SlimMemberVO directly from scalar column values without materializing any managed Membership or User
+     * entity. The contact information, groups and guilds of the resulting SlimMemberVO are empty; they should
+     * be retrieved in separate (batched) queries, added to the respective Lists and finally sorted using
+     * {@link #sortDetails()}.
+     *
+     * @param membershipJpaID    The JPA ID of the Membership.
+     * @param alias              The alias of the Membership.
+     * @param subAlias           The optional subAlias of the Membership.
+     * @param emailAlias         The email alias (without domain part) of the Membership.
+     * @param loginPermitted     {@code true} if the Membership is permitted login.
+     * @param firstName          The first name of the User of the Membership.
+     * @param lastName           The last name of the User of the Membership.
+     * @param birthday           The birthday of the User of the Membership.
+     * @param careOfLine         The optional C/O-line of the home Address.
+     * @param departmentName     The optional name of the department of the home Address.
+     * @param street             The street name of the home Address.
+     * @param number             The number on the street or Box of the home Address.
+     * @param city               The city of the home Address.
+     * @param zipCode            The zipCode of the home Address.
+     * @param country            The country of the home Address.
+     * @param addressDescription The optional description of the home Address.
+     */
+    @SuppressWarnings("all")
+    public SlimMemberVO(final Long membershipJpaID,
+                        final String alias,
+                        final String subAlias,
+                        final String emailAlias,
+                        final boolean loginPermitted,
+                        final String firstName,
+                        final String lastName,
+                        final LocalDate birthday,
+                        final String careOfLine,
+                        final String departmentName,
+                        final String street,
+                        final String number,
+                        final String city,
+                        final String zipCode,
+                        final String country,
+                        final String addressDescription) {
+
+        // Delegate
+        super(membershipJpaID);
+
+        // Assign internal state
+        this.groups = new ArrayList<>();
+        this.guilds = new ArrayList<>();
+        this.contactInfo = new ArrayList<>();
+
+        this.fullAlias = alias + (subAlias != null ? ", " + subAlias : "");
+        this.emailAlias = emailAlias;
+        this.loginPermitted = loginPermitted;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.birthday = birthday;
+        this.homeAddress = new Address(careOfLine,
+                departmentName,
+                street,
+                number,
+                city,
+                zipCode,
+                country,
+                addressDescription);
+    }
+
+    /**
+     * Sorts the contact information, groups and guilds of this SlimMemberVO.
+     * Should be invoked after adding data to the respective Lists.
+     */
+    public final void sortDetails() {
         Collections.sort(groups);
         Collections.sort(guilds);
         Collections.sort(contactInfo);
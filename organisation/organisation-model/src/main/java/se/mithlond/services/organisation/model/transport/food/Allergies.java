@@ -27,14 +27,17 @@ import se.mithlond.services.organisation.model.food.FoodPreference;
 import se.mithlond.services.organisation.model.transport.AbstractLocalizedSimpleTransporter;
 import se.mithlond.services.organisation.model.transport.user.UserVO;
 import se.mithlond.services.organisation.model.user.User;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -74,6 +77,13 @@ public class Allergies extends AbstractLocalizedSimpleTransporter {
     @XmlElement(name = "preference")
     private SortedSet<FoodPreferenceVO> foodPreferences;
 
+    // Transient indices, de-duplicating the UserVOs and AllergyVOs.
+    @XmlTransient
+    private final TransportIndex<UserVO> userIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<AllergyVO> allergyIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor.
      */
@@ -100,12 +110,8 @@ public class Allergies extends AbstractLocalizedSimpleTransporter {
         initialize(locale);
 
         // Assign internal state
-        if (users != null) {
-            add(users.toArray(new UserVO[users.size()]));
-        }
-        if (allergyList != null) {
-            add(allergyList.toArray(new AllergyVO[allergyList.size()]));
-        }
+        userIndex.addAllIfAbsent(this.users, users);
+        allergyIndex.addAllIfAbsent(this.allergyList, allergyList);
         if (foodPreferences != null) {
             foodPreferences.stream()
                     .filter(f -> !this.foodPreferences.contains(f))
@@ -138,15 +144,8 @@ public class Allergies extends AbstractLocalizedSimpleTransporter {
 
         if (users != null) {
 
-            Stream.of(users)
-                    .filter(Objects::nonNull)
-                    .forEach(user -> {
-
-                        // Add the UserVOs, if missing from the current internal state
-                        if (!this.users.contains(user)) {
-                            this.users.add(user);
-                        }
-                    });
+            // Add the UserVOs, if missing from the current internal state
+            userIndex.addAllIfAbsent(this.users, Arrays.asList(users));
         }
     }
 
@@ -159,14 +158,7 @@ public class Allergies extends AbstractLocalizedSimpleTransporter {
 
         if (allergyVOs != null) {
 
-            Stream.of(allergyVOs)
-                    .filter(Objects::nonNull)
-                    .forEach(allergyVO -> {
-
-                        if (!allergyList.contains(allergyVO)) {
-                            allergyList.add(allergyVO);
-                        }
-                    });
+            allergyIndex.addAllIfAbsent(allergyList, Arrays.asList(allergyVOs));
         }
     }
 
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.food;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Transport wrapper for the aggregated Allergies and FoodPreferences of the Memberships admitted to an
+ * Activity, intended for caterers. Holds one row per Food and one cell per AllergySeverity, each cell holding
+ * the number and identities of the allergic Memberships, as well as the number of Memberships per
+ * FoodPreference.</p>
+ * <p>AllergyMatrix instances may be cached and shared; they should not be modified after being created.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlRootElement(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE)
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
+        propOrder = {"activityJpaID", "version", "numAdmitted", "rows", "foodPreferences"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AllergyMatrix implements Serializable {
+
+    /**
+     * The JPA ID of the Activity.
+     */
+    @XmlAttribute(required = true)
+    private Long activityJpaID;
+
+    /**
+     * The version of this AllergyMatrix, which changes whenever the Activity, its Admissions or the
+     * Allergies and FoodPreferences of its admitted Memberships change.
+     */
+    @XmlAttribute(required = true)
+    private String version;
+
+    /**
+     * The number of Memberships admitted to the Activity.
+     */
+    @XmlAttribute(required = true)
+    private int numAdmitted;
+
+    /**
+     * The rows of this AllergyMatrix, one per Food.
+     */
+    @XmlElementWrapper(required = true)
+    @XmlElement(name = "food")
+    private List<AllergyMatrixRowVO> rows;
+
+    /**
+     * The number of admitted Memberships per FoodPreference.
+     */
+    @XmlElementWrapper(required = true)
+    @XmlElement(name = "preference")
+    private List<FoodPreferenceCountVO> foodPreferences;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public AllergyMatrix() {
+        rows = new ArrayList<>();
+        foodPreferences = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty AllergyMatrix for the supplied Activity.
+     *
+     * @param activityJpaID The JPA ID of the Activity.
+     * @param version       The version of this AllergyMatrix.
+     * @param numAdmitted   The number of Memberships admitted to the Activity.
+     */
+    public AllergyMatrix(final Long activityJpaID, final String version, final int numAdmitted) {
+        this();
+        this.activityJpaID = activityJpaID;
+        this.version = version;
+        this.numAdmitted = numAdmitted;
+    }
+
+    /**
+     * @return The JPA ID of the Activity.
+     */
+    public Long getActivityJpaID() {
+        return activityJpaID;
+    }
+
+    /**
+     * @return The version of this AllergyMatrix, which changes whenever the Activity, its Admissions or the
+     * Allergies and FoodPreferences of its admitted Memberships change.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of Memberships admitted to the Activity.
+     */
+    public int getNumAdmitted() {
+        return numAdmitted;
+    }
+
+    /**
+     * @return The rows of this AllergyMatrix, one per Food.
+     */
+    public List<AllergyMatrixRowVO> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of admitted Memberships per FoodPreference.
+     */
+    public List<FoodPreferenceCountVO> getFoodPreferences() {
+        return foodPreferences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AllergyMatrix [activity: " + activityJpaID + ", version: " + version + ", admitted: "
+                + numAdmitted + ", foods: " + rows.size() + ", preferences: " + foodPreferences.size() + "]";
+    }
+}
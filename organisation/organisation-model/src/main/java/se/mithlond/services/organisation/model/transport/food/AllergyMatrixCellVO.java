@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.food;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single cell within an {@link AllergyMatrix}, holding the Memberships allergic to the Food of its row
+ * at one AllergySeverity.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
+        propOrder = {"severitySortOrder", "severity", "count", "membershipIDs", "aliases"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AllergyMatrixCellVO implements Serializable {
+
+    /**
+     * The sort order of the AllergySeverity of this cell; less severe allergies have lower values.
+     */
+    @XmlAttribute(required = true)
+    private int severitySortOrder;
+
+    /**
+     * The (localized) short description of the AllergySeverity of this cell.
+     */
+    @XmlAttribute(required = true)
+    private String severity;
+
+    /**
+     * The number of Memberships within this cell.
+     */
+    @XmlAttribute(required = true)
+    private int count;
+
+    /**
+     * The JPA IDs of the Memberships within this cell.
+     */
+    @XmlList
+    @XmlElement(required = true)
+    private List<Long> membershipIDs;
+
+    /**
+     * The aliases of the Memberships within this cell, in the same order as the membershipIDs.
+     */
+    @XmlElement(name = "alias")
+    private List<String> aliases;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public AllergyMatrixCellVO() {
+        membershipIDs = new ArrayList<>();
+        aliases = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty AllergyMatrixCellVO for the supplied AllergySeverity.
+     *
+     * @param severitySortOrder The sort order of the AllergySeverity of this cell.
+     * @param severity          The (localized) short description of the AllergySeverity of this cell.
+     */
+    public AllergyMatrixCellVO(final int severitySortOrder, final String severity) {
+        this();
+        this.severitySortOrder = severitySortOrder;
+        this.severity = severity;
+    }
+
+    /**
+     * Adds the supplied Membership to this cell.
+     *
+     * @param membershipJpaID The JPA ID of the Membership.
+     * @param alias           The alias of the Membership.
+     */
+    public void add(final Long membershipJpaID, final String alias) {
+        membershipIDs.add(membershipJpaID);
+        aliases.add(alias);
+        count = membershipIDs.size();
+    }
+
+    /**
+     * @return The sort order of the AllergySeverity of this cell; less severe allergies have lower values.
+     */
+    public int getSeveritySortOrder() {
+        return severitySortOrder;
+    }
+
+    /**
+     * @return The (localized) short description of the AllergySeverity of this cell.
+     */
+    public String getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return The number of Memberships within this cell.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The JPA IDs of the Memberships within this cell.
+     */
+    public List<Long> getMembershipIDs() {
+        return membershipIDs;
+    }
+
+    /**
+     * @return The aliases of the Memberships within this cell, in the same order as the membershipIDs.
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AllergyMatrixCellVO [" + severity + ": " + count + "]";
+    }
+}
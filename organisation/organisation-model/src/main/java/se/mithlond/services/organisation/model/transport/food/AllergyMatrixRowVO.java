@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.food;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single row within an {@link AllergyMatrix}, holding one cell per AllergySeverity at which any
+ * Membership is allergic to the Food of this row.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"foodJpaID", "foodName", "total", "cells"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AllergyMatrixRowVO implements Serializable {
+
+    /**
+     * The JPA ID of the Food of this row.
+     */
+    @XmlAttribute(required = true)
+    private Long foodJpaID;
+
+    /**
+     * The (localized) name of the Food of this row.
+     */
+    @XmlAttribute(required = true)
+    private String foodName;
+
+    /**
+     * The number of Memberships allergic to the Food of this row, at any AllergySeverity.
+     */
+    @XmlAttribute(required = true)
+    private int total;
+
+    /**
+     * The cells of this row, sorted by AllergySeverity.
+     */
+    @XmlElement(name = "cell")
+    private List<AllergyMatrixCellVO> cells;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public AllergyMatrixRowVO() {
+        cells = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty AllergyMatrixRowVO for the supplied Food.
+     *
+     * @param foodJpaID The JPA ID of the Food of this row.
+     * @param foodName  The (localized) name of the Food of this row.
+     */
+    public AllergyMatrixRowVO(final Long foodJpaID, final String foodName) {
+        this();
+        this.foodJpaID = foodJpaID;
+        this.foodName = foodName;
+    }
+
+    /**
+     * Retrieves the cell of the supplied AllergySeverity, creating it if required.
+     * Cells must be retrieved in ascending severity order.
+     *
+     * @param severitySortOrder The sort order of the AllergySeverity.
+     * @param severity          The (localized) short description of the AllergySeverity.
+     * @return The cell of the supplied AllergySeverity.
+     */
+    public AllergyMatrixCellVO getCell(final int severitySortOrder, final String severity) {
+
+        final AllergyMatrixCellVO last = cells.isEmpty() ? null : cells.get(cells.size() - 1);
+        if (last != null && last.getSeveritySortOrder() == severitySortOrder) {
+            return last;
+        }
+
+        final AllergyMatrixCellVO toReturn = new AllergyMatrixCellVO(severitySortOrder, severity);
+        cells.add(toReturn);
+        return toReturn;
+    }
+
+    /**
+     * Recalculates the total of this row from its cells.
+     */
+    public void updateTotal() {
+        total = cells.stream().mapToInt(AllergyMatrixCellVO::getCount).sum();
+    }
+
+    /**
+     * @return The JPA ID of the Food of this row.
+     */
+    public Long getFoodJpaID() {
+        return foodJpaID;
+    }
+
+    /**
+     * @return The (localized) name of the Food of this row.
+     */
+    public String getFoodName() {
+        return foodName;
+    }
+
+    /**
+     * @return The number of Memberships allergic to the Food of this row, at any AllergySeverity.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The cells of this row, sorted by AllergySeverity.
+     */
+    public List<AllergyMatrixCellVO> getCells() {
+        return cells;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AllergyMatrixRowVO [" + foodName + ": " + cells + "]";
+    }
+}
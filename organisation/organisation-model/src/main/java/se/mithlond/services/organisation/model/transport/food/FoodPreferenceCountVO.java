@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.food;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+
+/**
+ * The number of Memberships having a FoodPreference, within an {@link AllergyMatrix}.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"preference", "count"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class FoodPreferenceCountVO implements Serializable {
+
+    /**
+     * The category name of the FoodPreference.
+     */
+    @XmlAttribute(required = true)
+    private String preference;
+
+    /**
+     * The number of Memberships having the FoodPreference.
+     */
+    @XmlAttribute(required = true)
+    private int count;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public FoodPreferenceCountVO() {
+    }
+
+    /**
+     * Compound constructor creating a FoodPreferenceCountVO wrapping the supplied data.
+     *
+     * @param preference The category name of the FoodPreference.
+     * @param count      The number of Memberships having the FoodPreference.
+     */
+    public FoodPreferenceCountVO(final String preference, final int count) {
+        this.preference = preference;
+        this.count = count;
+    }
+
+    /**
+     * @return The category name of the FoodPreference.
+     */
+    public String getPreference() {
+        return preference;
+    }
+
+    /**
+     * @return The number of Memberships having the FoodPreference.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "FoodPreferenceCountVO [" + preference + ": " + count + "]";
+    }
+}
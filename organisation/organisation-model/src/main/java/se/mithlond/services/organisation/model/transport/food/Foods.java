@@ -26,12 +26,14 @@ import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.food.Food;
 import se.mithlond.services.organisation.model.localization.Localizable;
 import se.mithlond.services.organisation.model.transport.AbstractLocalizedSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.List;
@@ -86,6 +88,15 @@ public class Foods extends AbstractLocalizedSimpleTransporter {
     @XmlElement(name = "preference")
     private SortedSet<Category> foodPreferences;
 
+    // Transient indices, de-duplicating FoodVOs and (by case-insensitive localized name) detailed Foods.
+    @XmlTransient
+    private final TransportIndex<FoodVO> foodIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<Food> detailedFoodIndex = new TransportIndex<>(food -> food.getLocalizedFoodName()
+            .getText(getLocale(), Localizable.DEFAULT_CLASSIFIER)
+            .toLowerCase(getLocale()));
+
     /**
      * JAXB-friendly constructor.
      */
@@ -149,34 +160,12 @@ public class Foods extends AbstractLocalizedSimpleTransporter {
 
                 if (shallowRepresentation) {
 
-                    final FoodVO toAdd = new FoodVO(food, this.getLocale());
-                    if (!this.foods.contains(toAdd)) {
-                        this.foods.add(toAdd);
-                    }
+                    foodIndex.addIfAbsent(this.foods, new FoodVO(food, this.getLocale()));
 
                 } else {
 
                     // Use the DEFAULT_CLASSIFIER for the food name localization.
-                    final String localizedFoodName = food.getLocalizedFoodName().getText(
-                            this.getLocale(),
-                            Localizable.DEFAULT_CLASSIFIER);
-
-                    Food existingFood = null;
-                    if (!this.detailedFoods.isEmpty()) {
-
-                        existingFood = this.detailedFoods.stream()
-                                .filter(current ->
-                                        current
-                                                .getLocalizedFoodName()
-                                                .getText(this.getLocale(), Localizable.DEFAULT_CLASSIFIER)
-                                                .equalsIgnoreCase(localizedFoodName))
-                                .findFirst()
-                                .orElse(null);
-                    }
-
-                    if (existingFood == null) {
-                        this.detailedFoods.add(food);
-                    }
+                    detailedFoodIndex.addIfAbsent(this.detailedFoods, food);
                 }
             });
         }
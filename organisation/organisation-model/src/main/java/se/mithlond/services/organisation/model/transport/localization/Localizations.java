@@ -25,12 +25,14 @@ import se.mithlond.services.organisation.model.OrganisationPatterns;
 import se.mithlond.services.organisation.model.localization.LocaleDefinition;
 import se.mithlond.services.organisation.model.localization.LocalizedTexts;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -71,6 +73,16 @@ public class Localizations extends AbstractSimpleTransporter {
     @XmlElement(name = "localization")
     private List<LocalizedTexts> localizedTexts;
 
+    // Transient indices, de-duplicating the elements of the Lists above.
+    @XmlTransient
+    private final TransportIndex<LocaleDefinition> localeDefinitionIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<LocalizedTextVO> localizedTextVOIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<LocalizedTexts> localizedTextsIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor
      */
@@ -115,10 +127,7 @@ public class Localizations extends AbstractSimpleTransporter {
     public void addLocalizations(final LocaleDefinition... toAdd) {
 
         if (toAdd != null) {
-            Arrays.stream(toAdd)
-                    .filter(Objects::nonNull)
-                    .filter(c -> !localeDefinitions.contains(c))
-                    .forEach(c -> localeDefinitions.add(c));
+            localeDefinitionIndex.addAllIfAbsent(localeDefinitions, Arrays.asList(toAdd));
         }
     }
 
@@ -130,10 +139,7 @@ public class Localizations extends AbstractSimpleTransporter {
     public void addLocalizedTextVOs(final LocalizedTextVO... toAdd) {
 
         if (toAdd != null) {
-            Arrays.stream(toAdd)
-                    .filter(Objects::nonNull)
-                    .filter(c -> !localizedTextVOs.contains(c))
-                    .forEach(c -> localizedTextVOs.add(c));
+            localizedTextVOIndex.addAllIfAbsent(localizedTextVOs, Arrays.asList(toAdd));
         }
     }
 
@@ -147,7 +153,7 @@ public class Localizations extends AbstractSimpleTransporter {
         if (toAdd != null) {
             Arrays.stream(toAdd)
                     .filter(Objects::nonNull)
-                    .filter(c -> !localizedTexts.contains(c))
+                    .filter(c -> !localizedTextsIndex.contains(localizedTexts, c))
                     .forEach(c -> {
 
                         final SortedSet<LocaleDefinition> containedLocales = c.getContainedLocalizations();
@@ -158,7 +164,7 @@ public class Localizations extends AbstractSimpleTransporter {
                         }
 
                         addLocalizations();
-                        localizedTexts.add(c);
+                        localizedTextsIndex.addIfAbsent(localizedTexts, c);
                     });
         }
     }
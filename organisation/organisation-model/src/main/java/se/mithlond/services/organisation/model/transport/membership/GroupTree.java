@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.membership;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transport wrapper for (a part of) the hierarchy of Groups and Guilds within an Organisation, holding
+ * the member counts of each Group and Guild. The tree is expanded to a limited depth below its root nodes;
+ * deeper subtrees are retrieved on demand by requesting the GroupTree rooted at a node.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlRootElement(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE)
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE,
+        propOrder = {"organisationJpaID", "organisationName", "depth", "roots"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class GroupTree {
+
+    /**
+     * The JPA ID of the Organisation holding the Groups.
+     */
+    @XmlAttribute(required = true)
+    private Long organisationJpaID;
+
+    /**
+     * The name of the Organisation holding the Groups.
+     */
+    @XmlAttribute(required = true)
+    private String organisationName;
+
+    /**
+     * The number of levels expanded below the root nodes.
+     */
+    @XmlAttribute(required = true)
+    private int depth;
+
+    /**
+     * The root nodes of this GroupTree, sorted by name.
+     */
+    @XmlElementWrapper(required = true)
+    @XmlElement(name = "group")
+    private List<GroupTreeNodeVO> roots;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public GroupTree() {
+        roots = new ArrayList<>();
+    }
+
+    /**
+     * Creates an empty GroupTree for the supplied Organisation.
+     *
+     * @param organisationJpaID The JPA ID of the Organisation holding the Groups.
+     * @param organisationName  The name of the Organisation holding the Groups.
+     * @param depth             The number of levels expanded below the root nodes.
+     */
+    public GroupTree(final Long organisationJpaID, final String organisationName, final int depth) {
+        this();
+        this.organisationJpaID = organisationJpaID;
+        this.organisationName = organisationName;
+        this.depth = depth;
+    }
+
+    /**
+     * @return The JPA ID of the Organisation holding the Groups.
+     */
+    public Long getOrganisationJpaID() {
+        return organisationJpaID;
+    }
+
+    /**
+     * @return The name of the Organisation holding the Groups.
+     */
+    public String getOrganisationName() {
+        return organisationName;
+    }
+
+    /**
+     * @return The number of levels expanded below the root nodes.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The root nodes of this GroupTree, sorted by name.
+     */
+    public List<GroupTreeNodeVO> getRoots() {
+        return roots;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GroupTree [" + organisationName + ", depth: " + depth + ", roots: " + roots + "]";
+    }
+}
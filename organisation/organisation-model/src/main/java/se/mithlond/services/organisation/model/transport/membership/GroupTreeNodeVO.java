@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2010 - 2013 jGuru Europe AB
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.membership;
+
+import se.mithlond.services.organisation.model.OrganisationPatterns;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlType;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport node of a {@link GroupTree}, holding a Group or Guild with its member counts and (optionally)
+ * its child nodes. Nodes whose children were not expanded have an empty list of children but a positive
+ * number of children, and can be expanded by retrieving the GroupTree rooted at the node.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@XmlType(namespace = OrganisationPatterns.TRANSPORT_NAMESPACE, propOrder = {"jpaID", "name", "guild",
+        "directMembers", "directLoginPermitted", "recursiveMembers", "recursiveLoginPermitted",
+        "numChildren", "children"})
+@XmlAccessorType(XmlAccessType.FIELD)
+public class GroupTreeNodeVO implements Serializable {
+
+    private static final long serialVersionUID = 8829990049L;
+
+    /**
+     * The JPA ID of the Group or Guild.
+     */
+    @XmlAttribute(required = true)
+    private Long jpaID;
+
+    /**
+     * The name of the Group or Guild.
+     */
+    @XmlAttribute(required = true)
+    private String name;
+
+    /**
+     * Indicates if the node is a Guild (true), or a Group (null).
+     */
+    @XmlAttribute
+    private Boolean guild;
+
+    /**
+     * The number of Memberships within the Group or Guild itself.
+     */
+    @XmlAttribute(required = true)
+    private int directMembers;
+
+    /**
+     * The number of Memberships permitted to login within the Group or Guild itself.
+     */
+    @XmlAttribute(required = true)
+    private int directLoginPermitted;
+
+    /**
+     * The number of distinct Memberships within the Group or Guild or any of its descendants.
+     */
+    @XmlAttribute(required = true)
+    private int recursiveMembers;
+
+    /**
+     * The number of distinct Memberships permitted to login within the Group or Guild or any of its descendants.
+     */
+    @XmlAttribute(required = true)
+    private int recursiveLoginPermitted;
+
+    /**
+     * The number of children of the Group or Guild, irrespective of whether they are expanded.
+     */
+    @XmlAttribute(required = true)
+    private int numChildren;
+
+    /**
+     * The expanded child nodes, sorted by name.
+     */
+    @XmlElementWrapper
+    @XmlElement(name = "group")
+    private List<GroupTreeNodeVO> children;
+
+    /**
+     * JAXB-friendly constructor.
+     */
+    public GroupTreeNodeVO() {
+        this.children = new ArrayList<>();
+    }
+
+    /**
+     * Compound constructor creating a GroupTreeNodeVO wrapping the supplied data.
+     *
+     * @param jpaID                   The JPA ID of the Group or Guild.
+     * @param name                    The name of the Group or Guild.
+     * @param guild                   {@code true} if the node is a Guild.
+     * @param directMembers           The number of Memberships within the Group or Guild itself.
+     * @param directLoginPermitted    The number of Memberships permitted to login within the Group or Guild
+     *                                itself.
+     * @param recursiveMembers        The number of distinct Memberships within the Group or Guild or any of
+     *                                its descendants.
+     * @param recursiveLoginPermitted The number of distinct Memberships permitted to login within the Group
+     *                                or Guild or any of its descendants.
+     * @param numChildren             The number of children of the Group or Guild.
+     */
+    public GroupTreeNodeVO(final Long jpaID,
+                           final String name,
+                           final boolean guild,
+                           final int directMembers,
+                           final int directLoginPermitted,
+                           final int recursiveMembers,
+                           final int recursiveLoginPermitted,
+                           final int numChildren) {
+
+        // Delegate
+        this();
+
+        // Assign internal state
+        this.jpaID = jpaID;
+        this.name = name;
+        this.guild = guild ? true : null;
+        this.directMembers = directMembers;
+        this.directLoginPermitted = directLoginPermitted;
+        this.recursiveMembers = recursiveMembers;
+        this.recursiveLoginPermitted = recursiveLoginPermitted;
+        this.numChildren = numChildren;
+    }
+
+    /**
+     * @return The JPA ID of the Group or Guild.
+     */
+    public Long getJpaID() {
+        return jpaID;
+    }
+
+    /**
+     * @return The name of the Group or Guild.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return {@code true} if this node represents a Guild (rather than "only" a Group).
+     */
+    public boolean isGuild() {
+        return guild != null && guild;
+    }
+
+    /**
+     * @return The number of Memberships within the Group or Guild itself.
+     */
+    public int getDirectMembers() {
+        return directMembers;
+    }
+
+    /**
+     * @return The number of Memberships permitted to login within the Group or Guild itself.
+     */
+    public int getDirectLoginPermitted() {
+        return directLoginPermitted;
+    }
+
+    /**
+     * @return The number of distinct Memberships within the Group or Guild or any of its descendants.
+     */
+    public int getRecursiveMembers() {
+        return recursiveMembers;
+    }
+
+    /**
+     * @return The number of distinct Memberships permitted to login within the Group or Guild or any of
+     * its descendants.
+     */
+    public int getRecursiveLoginPermitted() {
+        return recursiveLoginPermitted;
+    }
+
+    /**
+     * @return The number of children of the Group or Guild, irrespective of whether they are expanded.
+     */
+    public int getNumChildren() {
+        return numChildren;
+    }
+
+    /**
+     * @return The expanded child nodes, sorted by name.
+     */
+    public List<GroupTreeNodeVO> getChildren() {
+        return children;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GroupTreeNodeVO [" + name + " (" + jpaID + "): " + directMembers + "/" + recursiveMembers
+                + " members, " + children.size() + "/" + numChildren + " children expanded]";
+    }
+}
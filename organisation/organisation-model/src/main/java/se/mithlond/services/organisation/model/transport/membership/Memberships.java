@@ -29,6 +29,7 @@ import se.mithlond.services.organisation.model.membership.guild.Guild;
 import se.mithlond.services.organisation.model.user.User;
 import se.jguru.nazgul.core.algorithms.api.Validate;
 import se.mithlond.services.shared.spi.jaxb.AbstractSimpleTransporter;
+import se.mithlond.services.shared.spi.jaxb.TransportIndex;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -36,9 +37,11 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlElements;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -94,6 +97,22 @@ public class Memberships extends AbstractSimpleTransporter {
     @XmlElement(name = "membership")
     private List<MembershipVO> membershipVOs;
 
+    // Transient indices, de-duplicating the elements of the Lists above.
+    @XmlTransient
+    private final TransportIndex<User> userIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<Organisation> organisationIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<Group> groupIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<Membership> membershipIndex = new TransportIndex<>();
+
+    @XmlTransient
+    private final TransportIndex<MembershipVO> membershipVOIndex = new TransportIndex<>();
+
     /**
      * JAXB-friendly constructor.
      */
@@ -116,7 +135,7 @@ public class Memberships extends AbstractSimpleTransporter {
         this();
 
         // Assign internal state
-        memberships.forEach(this::addMembership);
+        addMemberships(memberships);
     }
 
     /**
@@ -130,11 +149,7 @@ public class Memberships extends AbstractSimpleTransporter {
         Validate.notNull(toAdd, "Cannot handle null 'toAdd' argument.");
 
         // Add the current Organisation, unless already added.
-        Arrays.asList(toAdd).forEach(c -> {
-            if (c != null && !this.organisations.contains(c)) {
-                this.organisations.add(c);
-            }
-        });
+        organisationIndex.addAllIfAbsent(organisations, Arrays.asList(toAdd));
     }
 
     /**
@@ -156,9 +171,7 @@ public class Memberships extends AbstractSimpleTransporter {
                 // Add the Organisation, if not already added
                 addOrganisations(c.getOrganisation());
 
-                if (!this.groups.contains(c)) {
-                    this.groups.add(c);
-                }
+                groupIndex.addIfAbsent(groups, c);
             }
         });
     }
@@ -177,10 +190,7 @@ public class Memberships extends AbstractSimpleTransporter {
         addOrganisations(nonNull.getOrganisation());
 
         // Add the User, unless already added.
-        final User currentUser = nonNull.getUser();
-        if (!users.contains(currentUser)) {
-            users.add(currentUser);
-        }
+        userIndex.addIfAbsent(users, nonNull.getUser());
 
         // Add all Groups and Guilds.
         nonNull.getGroupMemberships().forEach(c -> {
@@ -188,9 +198,22 @@ public class Memberships extends AbstractSimpleTransporter {
         });
 
         // Add the membership itself, unless already added.
-        if (!this.memberships.contains(nonNull)) {
-            this.memberships.add(nonNull);
-        }
+        membershipIndex.addIfAbsent(memberships, nonNull);
+    }
+
+    /**
+     * Adds the supplied Memberships, including their internal state. Each Membership, User, Organisation
+     * and Group is added only once, using a hash index rather than a linear search for de-duplication.
+     *
+     * @param toAdd The non-null Collection of Memberships to add. Null elements are ignored.
+     */
+    public void addMemberships(final Collection<Membership> toAdd) {
+
+        // Check sanity
+        Validate.notNull(toAdd, "toAdd");
+
+        // Add each non-null Membership.
+        toAdd.stream().filter(Objects::nonNull).forEach(this::addMembership);
     }
 
     /**
@@ -205,9 +228,21 @@ public class Memberships extends AbstractSimpleTransporter {
         final MembershipVO nonNull = Objects.requireNonNull(toAdd, "Cannot handle null 'toAdd' argument.");
 
         // Add the Organisation, unless already added.
-        if (!this.membershipVOs.contains(nonNull)) {
-            this.membershipVOs.add(nonNull);
-        }
+        membershipVOIndex.addIfAbsent(membershipVOs, nonNull);
+    }
+
+    /**
+     * Adds the supplied MembershipVOs to this Memberships transport, unless already added.
+     *
+     * @param toAdd The non-null Collection of MembershipVOs to add. Null elements are ignored.
+     */
+    public void addMembershipVOs(final Collection<MembershipVO> toAdd) {
+
+        // Check sanity
+        Validate.notNull(toAdd, "toAdd");
+
+        // Add the MembershipVOs, unless already added.
+        membershipVOIndex.addAllIfAbsent(membershipVOs, toAdd);
     }
 
     /**
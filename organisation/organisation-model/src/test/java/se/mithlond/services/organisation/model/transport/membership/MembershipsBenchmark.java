@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-organisation-model
+ * %%
+ * Copyright (C) 2015 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.organisation.model.transport.membership;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.mithlond.services.organisation.model.Organisation;
+import se.mithlond.services.organisation.model.address.Address;
+import se.mithlond.services.organisation.model.finance.WellKnownCurrency;
+import se.mithlond.services.organisation.model.membership.Group;
+import se.mithlond.services.organisation.model.membership.Membership;
+import se.mithlond.services.organisation.model.transport.convenience.membership.MembershipListVO;
+import se.mithlond.services.organisation.model.user.User;
+import se.mithlond.services.shared.spi.algorithms.TimeFormat;
+import se.mithlond.services.shared.test.entity.JpaIdMutator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>JMH benchmark comparing the hash-indexed de-duplication within the Memberships and MembershipListVO
+ * transport wrappers with the linear {@code List.contains} de-duplication they previously used,
+ * when transporting 5,000 Memberships (each within 3 of 10 Groups).</p>
+ * <p>Not run as part of the build; launch the {@link #main(String[])} method from the test classpath.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MembershipsBenchmark {
+
+    /**
+     * The number of Memberships transported within each benchmark.
+     */
+    public static final int NUM_MEMBERSHIPS = 5000;
+
+    // Shared state
+    private Organisation organisation;
+    private List<Membership> memberships;
+
+    /**
+     * Creates the Memberships transported within each benchmark.
+     */
+    @Setup
+    public void createMemberships() {
+
+        final Address address = new Address(null, null, "Testgatan", "42", "Härryda", "45235", "Sverige", "Hemma");
+        organisation = new Organisation("Mifflond",
+                "Göteborgs Toksällskap",
+                "031-123456",
+                "1234-5678",
+                "12345-6",
+                address,
+                "mifflond.se",
+                TimeFormat.SWEDISH_TIMEZONE.normalized(),
+                TimeFormat.SWEDISH_LOCALE,
+                WellKnownCurrency.SEK);
+        JpaIdMutator.setId(organisation, 1L);
+
+        final Group[] groups = new Group[10];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new Group("groupName_" + i, "description_" + i, organisation, null, "emailList_" + i);
+            JpaIdMutator.setId(groups[i], 100 + i);
+        }
+
+        memberships = new ArrayList<>();
+        for (int i = 0; i < NUM_MEMBERSHIPS; i++) {
+
+            final User user = new User("firstName_" + i,
+                    "lastName_" + i,
+                    LocalDate.of(1950, 1, 1).plusDays(i),
+                    (short) i,
+                    address,
+                    new ArrayList<>(),
+                    new TreeMap<>(),
+                    "userIdentifierToken_" + i);
+            JpaIdMutator.setId(user, 10000 + i);
+
+            final Membership membership = new Membership("alias_" + i,
+                    null,
+                    "emailAlias_" + i,
+                    true,
+                    user,
+                    organisation);
+            JpaIdMutator.setId(membership, 20000 + i);
+
+            for (int j = 0; j < 3; j++) {
+                membership.addOrGetGroupMembership(groups[(i + j) % groups.length]);
+            }
+            memberships.add(membership);
+        }
+    }
+
+    @Benchmark
+    public Memberships addMembershipsWithHashIndex() {
+
+        final Memberships toReturn = new Memberships();
+        toReturn.addMemberships(memberships);
+        return toReturn;
+    }
+
+    @Benchmark
+    public MembershipListVO addSlimMembersWithHashIndex() {
+
+        final MembershipListVO toReturn = new MembershipListVO(organisation);
+        toReturn.add(memberships.toArray(new Membership[memberships.size()]));
+        return toReturn;
+    }
+
+    @Benchmark
+    public List<Object> addMembershipsWithListContains() {
+
+        // The de-duplication previously used within Memberships.addMembership.
+        final List<Object> toReturn = new ArrayList<>();
+        final List<User> users = new ArrayList<>();
+        final List<Group> groups = new ArrayList<>();
+        final List<Membership> added = new ArrayList<>();
+
+        for (Membership current : memberships) {
+
+            if (!users.contains(current.getUser())) {
+                users.add(current.getUser());
+            }
+            current.getGroupMemberships().forEach(gm -> {
+                if (!groups.contains(gm.getGroup())) {
+                    groups.add(gm.getGroup());
+                }
+            });
+            if (!added.contains(current)) {
+                added.add(current);
+            }
+        }
+
+        toReturn.add(users);
+        toReturn.add(groups);
+        toReturn.add(added);
+        return toReturn;
+    }
+
+    /**
+     * Runs this benchmark.
+     *
+     * @param args Ignored.
+     * @throws RunnerException if the benchmark could not be run.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MembershipsBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,728 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.bitmap;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>Compressed bitmap over non-negative int ordinals, using the container layout of Roaring bitmaps.
+ * The ordinal space is split into chunks of 65536 ordinals, keyed by the upper 16 bits of each ordinal.
+ * Each non-empty chunk is held in a container: a sorted array of the lower 16 bits while the chunk holds at
+ * most {@link #ARRAY_CONTAINER_MAX} ordinals, and a 65536-bit bitset otherwise. Hence, sparse bitmaps
+ * occupy two bytes per ordinal and dense bitmaps at most one bit per ordinal.</p>
+ * <p>The set operations {@link #or(CompressedBitmap)}, {@link #and(CompressedBitmap)} and
+ * {@link #andNot(CompressedBitmap)} return new bitmaps, leaving their operands unchanged; bitset containers
+ * are combined word by word. CompressedBitmaps are not thread-safe; share them between threads only after
+ * they are fully built (i.e. copy on write).</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class CompressedBitmap implements Serializable {
+
+    private static final long serialVersionUID = 8829990045L;
+
+    /**
+     * The maximum number of ordinals within an array container. Larger chunks are held in bitset containers,
+     * which occupy the same 8 kB as a full array container.
+     */
+    public static final int ARRAY_CONTAINER_MAX = 4096;
+
+    // Internal state
+    private int[] keys;
+    private Container[] containers;
+    private int numContainers;
+
+    /**
+     * Creates an empty CompressedBitmap.
+     */
+    public CompressedBitmap() {
+        this.keys = new int[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Creates a CompressedBitmap holding the supplied ordinals.
+     *
+     * @param ordinals The non-negative ordinals to add.
+     * @return A CompressedBitmap holding the supplied ordinals.
+     */
+    public static CompressedBitmap of(final int... ordinals) {
+
+        final CompressedBitmap toReturn = new CompressedBitmap();
+        for (int current : ordinals) {
+            toReturn.add(current);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Adds the supplied ordinal to this CompressedBitmap.
+     *
+     * @param ordinal A non-negative ordinal.
+     * @return {@code true} if the ordinal was added, and {@code false} if it was already present.
+     */
+    public boolean add(final int ordinal) {
+
+        // Check sanity
+        Validate.isTrue(ordinal >= 0, "Cannot handle negative ordinal [" + ordinal + "]");
+
+        final int key = ordinal >>> 16;
+        final int index = Arrays.binarySearch(keys, 0, numContainers, key);
+        if (index < 0) {
+            insertContainer(-index - 1, key, new ArrayContainer(new char[]{(char) ordinal}, 1));
+            return true;
+        }
+
+        final Container container = containers[index];
+        final int before = container.cardinality();
+        containers[index] = container.add((char) ordinal);
+        return containers[index].cardinality() > before;
+    }
+
+    /**
+     * Removes the supplied ordinal from this CompressedBitmap.
+     *
+     * @param ordinal An ordinal.
+     * @return {@code true} if the ordinal was removed, and {@code false} if it was not present.
+     */
+    public boolean remove(final int ordinal) {
+
+        if (ordinal < 0) {
+            return false;
+        }
+
+        final int index = Arrays.binarySearch(keys, 0, numContainers, ordinal >>> 16);
+        if (index < 0) {
+            return false;
+        }
+
+        final Container container = containers[index];
+        final int before = container.cardinality();
+        final Container after = container.remove((char) ordinal);
+        if (after == null) {
+            removeContainer(index);
+        } else {
+            containers[index] = after;
+        }
+
+        // All Done.
+        return after == null || after.cardinality() < before;
+    }
+
+    /**
+     * Checks if the supplied ordinal is present within this CompressedBitmap.
+     *
+     * @param ordinal An ordinal.
+     * @return {@code true} if the ordinal is present.
+     */
+    public boolean contains(final int ordinal) {
+
+        if (ordinal < 0) {
+            return false;
+        }
+
+        final int index = Arrays.binarySearch(keys, 0, numContainers, ordinal >>> 16);
+        return index >= 0 && containers[index].contains((char) ordinal);
+    }
+
+    /**
+     * @return The number of ordinals within this CompressedBitmap.
+     */
+    public int getCardinality() {
+
+        int toReturn = 0;
+        for (int i = 0; i < numContainers; i++) {
+            toReturn += containers[i].cardinality();
+        }
+        return toReturn;
+    }
+
+    /**
+     * @return {@code true} if this CompressedBitmap holds no ordinals.
+     */
+    public boolean isEmpty() {
+        return numContainers == 0;
+    }
+
+    /**
+     * @return The approximate number of bytes occupied by the containers of this CompressedBitmap.
+     */
+    public long getSizeInBytes() {
+
+        long toReturn = 0;
+        for (int i = 0; i < numContainers; i++) {
+            toReturn += 4 + containers[i].sizeInBytes();
+        }
+        return toReturn;
+    }
+
+    /**
+     * @return A deep copy of this CompressedBitmap.
+     */
+    public CompressedBitmap copy() {
+
+        final CompressedBitmap toReturn = new CompressedBitmap(numContainers);
+        for (int i = 0; i < numContainers; i++) {
+            toReturn.appendContainer(keys[i], containers[i].copy());
+        }
+        return toReturn;
+    }
+
+    /**
+     * Calculates the union of this and the supplied CompressedBitmap.
+     *
+     * @param that A non-null CompressedBitmap.
+     * @return A new CompressedBitmap holding the ordinals present within this or the supplied CompressedBitmap.
+     */
+    public CompressedBitmap or(final CompressedBitmap that) {
+
+        // Check sanity
+        Validate.notNull(that, "that");
+
+        final CompressedBitmap toReturn = new CompressedBitmap(numContainers + that.numContainers);
+        int i = 0;
+        int j = 0;
+        while (i < numContainers || j < that.numContainers) {
+
+            final int thisKey = i < numContainers ? keys[i] : Integer.MAX_VALUE;
+            final int thatKey = j < that.numContainers ? that.keys[j] : Integer.MAX_VALUE;
+
+            if (thisKey < thatKey) {
+                toReturn.appendContainer(thisKey, containers[i++].copy());
+            } else if (thisKey > thatKey) {
+                toReturn.appendContainer(thatKey, that.containers[j++].copy());
+            } else {
+                toReturn.appendContainer(thisKey, containers[i++].or(that.containers[j++]));
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Calculates the intersection of this and the supplied CompressedBitmap.
+     *
+     * @param that A non-null CompressedBitmap.
+     * @return A new CompressedBitmap holding the ordinals present within both this and the supplied
+     * CompressedBitmap.
+     */
+    public CompressedBitmap and(final CompressedBitmap that) {
+
+        // Check sanity
+        Validate.notNull(that, "that");
+
+        final CompressedBitmap toReturn = new CompressedBitmap(Math.min(numContainers, that.numContainers));
+        int i = 0;
+        int j = 0;
+        while (i < numContainers && j < that.numContainers) {
+
+            if (keys[i] < that.keys[j]) {
+                i++;
+            } else if (keys[i] > that.keys[j]) {
+                j++;
+            } else {
+                final Container result = containers[i].and(that.containers[j]);
+                if (result != null) {
+                    toReturn.appendContainer(keys[i], result);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Calculates the difference between this and the supplied CompressedBitmap.
+     *
+     * @param that A non-null CompressedBitmap.
+     * @return A new CompressedBitmap holding the ordinals present within this but not within the supplied
+     * CompressedBitmap.
+     */
+    public CompressedBitmap andNot(final CompressedBitmap that) {
+
+        // Check sanity
+        Validate.notNull(that, "that");
+
+        final CompressedBitmap toReturn = new CompressedBitmap(numContainers);
+        int j = 0;
+        for (int i = 0; i < numContainers; i++) {
+
+            while (j < that.numContainers && that.keys[j] < keys[i]) {
+                j++;
+            }
+
+            final Container result = j < that.numContainers && that.keys[j] == keys[i]
+                    ? containers[i].andNot(that.containers[j])
+                    : containers[i].copy();
+            if (result != null) {
+                toReturn.appendContainer(keys[i], result);
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Calculates the union of the supplied CompressedBitmaps.
+     *
+     * @param bitmaps The non-null CompressedBitmaps.
+     * @return A new CompressedBitmap holding the ordinals present within any of the supplied CompressedBitmaps.
+     */
+    public static CompressedBitmap orAll(final Collection<CompressedBitmap> bitmaps) {
+
+        // Check sanity
+        Validate.notNull(bitmaps, "bitmaps");
+
+        CompressedBitmap toReturn = new CompressedBitmap();
+        for (CompressedBitmap current : bitmaps) {
+            if (current != null && !current.isEmpty()) {
+                toReturn = toReturn.or(current);
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Invokes the supplied consumer for each ordinal within this CompressedBitmap, in ascending order.
+     *
+     * @param consumer The non-null consumer.
+     */
+    public void forEach(final IntConsumer consumer) {
+
+        // Check sanity
+        Validate.notNull(consumer, "consumer");
+
+        for (int i = 0; i < numContainers; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return The ordinals within this CompressedBitmap, in ascending order.
+     */
+    public int[] toArray() {
+
+        final int[] toReturn = new int[getCardinality()];
+        final int[] index = {0};
+        forEach(ordinal -> toReturn[index[0]++] = ordinal);
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressedBitmap)) {
+            return false;
+        }
+
+        final CompressedBitmap that = (CompressedBitmap) o;
+        return Arrays.equals(toArray(), that.toArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CompressedBitmap [" + getCardinality() + " ordinals in " + numContainers + " containers]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private CompressedBitmap(final int initialCapacity) {
+        this.keys = new int[Math.max(initialCapacity, 1)];
+        this.containers = new Container[Math.max(initialCapacity, 1)];
+    }
+
+    private void appendContainer(final int key, final Container container) {
+        insertContainer(numContainers, key, container);
+    }
+
+    private void insertContainer(final int index, final int key, final Container container) {
+
+        if (numContainers == keys.length) {
+            keys = Arrays.copyOf(keys, numContainers * 2);
+            containers = Arrays.copyOf(containers, numContainers * 2);
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, numContainers - index);
+        System.arraycopy(containers, index, containers, index + 1, numContainers - index);
+        keys[index] = key;
+        containers[index] = container;
+        numContainers++;
+    }
+
+    private void removeContainer(final int index) {
+
+        System.arraycopy(keys, index + 1, keys, index, numContainers - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, numContainers - index - 1);
+        numContainers--;
+        containers[numContainers] = null;
+    }
+
+    /**
+     * Container of the lower 16 bits of the ordinals within a single chunk.
+     * Mutators return the container to use after the mutation, which may be a converted container.
+     */
+    private abstract static class Container implements Serializable {
+
+        private static final long serialVersionUID = 8829990046L;
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        /**
+         * @return The container after removal, or {@code null} if the container became empty.
+         */
+        abstract Container remove(char low);
+
+        abstract int cardinality();
+
+        abstract int sizeInBytes();
+
+        abstract Container copy();
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        abstract Container or(Container that);
+
+        /**
+         * @return The resulting container, or {@code null} if empty.
+         */
+        abstract Container and(Container that);
+
+        /**
+         * @return The resulting container, or {@code null} if empty.
+         */
+        abstract Container andNot(Container that);
+    }
+
+    /**
+     * Container holding the sorted lower 16 bits of at most {@link #ARRAY_CONTAINER_MAX} ordinals.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private static final long serialVersionUID = 8829990047L;
+
+        // Internal state
+        private char[] values;
+        private int size;
+
+        private ArrayContainer(final char[] values, final int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        boolean contains(final char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        Container add(final char low) {
+
+            final int index = Arrays.binarySearch(values, 0, size, low);
+            if (index >= 0) {
+                return this;
+            }
+
+            if (size == ARRAY_CONTAINER_MAX) {
+                return toBitmapContainer().add(low);
+            }
+
+            final int insertionPoint = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(Math.max(size * 2, 4), ARRAY_CONTAINER_MAX));
+            }
+            System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+            values[insertionPoint] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(final char low) {
+
+            final int index = Arrays.binarySearch(values, 0, size, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return size == 0 ? null : this;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 2 * values.length;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+
+        @Override
+        void forEach(final int base, final IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container or(final Container that) {
+
+            if (that instanceof BitmapContainer) {
+                return that.or(this);
+            }
+
+            // Merge the two sorted arrays.
+            final ArrayContainer other = (ArrayContainer) that;
+            final char[] merged = new char[size + other.size];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size || j < other.size) {
+
+                if (j == other.size || (i < size && values[i] < other.values[j])) {
+                    merged[k++] = values[i++];
+                } else if (i == size || values[i] > other.values[j]) {
+                    merged[k++] = other.values[j++];
+                } else {
+                    merged[k++] = values[i++];
+                    j++;
+                }
+            }
+
+            final ArrayContainer toReturn = new ArrayContainer(merged, k);
+            return k > ARRAY_CONTAINER_MAX ? toReturn.toBitmapContainer() : toReturn;
+        }
+
+        @Override
+        Container and(final Container that) {
+            return filter(that, true);
+        }
+
+        @Override
+        Container andNot(final Container that) {
+            return filter(that, false);
+        }
+
+        private Container filter(final Container that, final boolean keepContained) {
+
+            final char[] filtered = new char[size];
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                if (that.contains(values[i]) == keepContained) {
+                    filtered[k++] = values[i];
+                }
+            }
+            return k == 0 ? null : new ArrayContainer(filtered, k);
+        }
+
+        private BitmapContainer toBitmapContainer() {
+
+            final BitmapContainer toReturn = new BitmapContainer(new long[1024], 0);
+            for (int i = 0; i < size; i++) {
+                toReturn.add(values[i]);
+            }
+            return toReturn;
+        }
+    }
+
+    /**
+     * Container holding a bitset over all 65536 lower 16 bits of a chunk.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private static final long serialVersionUID = 8829990048L;
+
+        // Internal state
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(final long[] words, final int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(final char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(final char low) {
+
+            final long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (before != words[low >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(final char low) {
+
+            final long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (before != words[low >>> 6]) {
+                cardinality--;
+            }
+            return normalize();
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 8 * words.length;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(final int base, final IntConsumer consumer) {
+
+            for (int i = 0; i < words.length; i++) {
+
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container or(final Container that) {
+
+            final long[] result = words.clone();
+            if (that instanceof BitmapContainer) {
+                final long[] other = ((BitmapContainer) that).words;
+                for (int i = 0; i < result.length; i++) {
+                    result[i] |= other[i];
+                }
+            } else {
+                that.forEach(0, low -> result[low >>> 6] |= 1L << low);
+            }
+            return new BitmapContainer(result, countBits(result));
+        }
+
+        @Override
+        Container and(final Container that) {
+
+            if (that instanceof ArrayContainer) {
+                return that.and(this);
+            }
+
+            final long[] result = words.clone();
+            final long[] other = ((BitmapContainer) that).words;
+            for (int i = 0; i < result.length; i++) {
+                result[i] &= other[i];
+            }
+            return new BitmapContainer(result, countBits(result)).normalize();
+        }
+
+        @Override
+        Container andNot(final Container that) {
+
+            final long[] result = words.clone();
+            if (that instanceof BitmapContainer) {
+                final long[] other = ((BitmapContainer) that).words;
+                for (int i = 0; i < result.length; i++) {
+                    result[i] &= ~other[i];
+                }
+            } else {
+                that.forEach(0, low -> result[low >>> 6] &= ~(1L << low));
+            }
+            return new BitmapContainer(result, countBits(result)).normalize();
+        }
+
+        private Container normalize() {
+
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_CONTAINER_MAX) {
+                return this;
+            }
+
+            // Convert to the more compact array container.
+            final char[] values = new char[cardinality];
+            final int[] index = {0};
+            forEach(0, low -> values[index[0]++] = (char) low);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private static int countBits(final long[] words) {
+
+            int toReturn = 0;
+            for (long current : words) {
+                toReturn += Long.bitCount(current);
+            }
+            return toReturn;
+        }
+    }
+}
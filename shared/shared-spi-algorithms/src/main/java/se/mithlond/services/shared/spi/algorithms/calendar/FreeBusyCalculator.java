@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Single-pass free/busy calculator over a window {@code [from, to)}. Busy intervals are supplied per key
+ * (such as a Membership JPA ID), sorted by key and start time - which is exactly the order in which a database
+ * query sorted by {@code (key, startTime)} delivers them. Overlapping or adjacent busy intervals of each key are
+ * merged as they arrive, implying that no intermediate collections of raw intervals are created.</p>
+ * <p>The common free slots are the gaps (within the window) of the union of the busy intervals of all keys,
+ * i.e. the slots within which no key is busy.</p>
+ *
+ * @param <K> The key type, such as a Membership JPA ID.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class FreeBusyCalculator<K extends Comparable<K>> {
+
+    // Internal state
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final SortedMap<K, List<TimeInterval>> key2Busy = new TreeMap<>();
+    private K currentKey;
+    private LocalDateTime lastStart;
+    private LocalDateTime currentStart;
+    private LocalDateTime currentEnd;
+
+    /**
+     * Creates a FreeBusyCalculator for the supplied window.
+     *
+     * @param from The non-null (inclusive) start of the window.
+     * @param to   The non-null (exclusive) end of the window. Must be after from.
+     */
+    public FreeBusyCalculator(final LocalDateTime from, final LocalDateTime to) {
+
+        // Check sanity
+        Validate.notNull(from, "from");
+        Validate.notNull(to, "to");
+        Validate.isTrue(to.isAfter(from), "Cannot handle 'to' not after 'from'.");
+
+        // Assign internal state
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Adds the supplied keys without any busy intervals, implying that they are included in the result
+     * even if they are never busy.
+     *
+     * @param keys The keys to add.
+     * @return This FreeBusyCalculator, for chaining.
+     */
+    public FreeBusyCalculator<K> addKeys(final Iterable<K> keys) {
+
+        Validate.notNull(keys, "keys");
+        keys.forEach(key -> key2Busy.computeIfAbsent(Validate.notNull(key, "key"), k -> new ArrayList<>()));
+        return this;
+    }
+
+    /**
+     * Adds a busy interval. Busy intervals must be added sorted by key and then start time.
+     * Intervals are clipped to the window, and intervals outside of it are ignored.
+     *
+     * @param key   The non-null key.
+     * @param start The non-null start of the busy interval.
+     * @param end   The non-null end of the busy interval.
+     * @throws IllegalArgumentException if the busy interval is not added in (key, start) order.
+     */
+    public void addBusy(final K key, final LocalDateTime start, final LocalDateTime end)
+            throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(start, "start");
+        Validate.notNull(end, "end");
+
+        final int keyOrder = currentKey == null ? 1 : key.compareTo(currentKey);
+        Validate.isTrue(keyOrder >= 0, "Busy intervals must be added sorted by key.");
+
+        if (keyOrder > 0) {
+
+            // A new key; close the open interval of the previous key.
+            closeCurrent();
+            currentKey = key;
+            key2Busy.computeIfAbsent(key, k -> new ArrayList<>());
+        } else {
+            Validate.isTrue(!start.isBefore(lastStart), "Busy intervals must be added sorted by start time.");
+        }
+        lastStart = start;
+
+        // Clip to the window, and ignore intervals outside of it.
+        final LocalDateTime clippedStart = start.isBefore(from) ? from : start;
+        final LocalDateTime clippedEnd = end.isAfter(to) ? to : end;
+        if (!clippedEnd.isAfter(clippedStart)) {
+            return;
+        }
+
+        if (currentStart != null && !clippedStart.isAfter(currentEnd)) {
+
+            // Overlapping or adjacent; extend the open interval.
+            if (clippedEnd.isAfter(currentEnd)) {
+                currentEnd = clippedEnd;
+            }
+        } else {
+
+            closeCurrent();
+            currentStart = clippedStart;
+            currentEnd = clippedEnd;
+        }
+    }
+
+    /**
+     * Retrieves the merged busy intervals of all keys.
+     *
+     * @return A SortedMap relating each key to its merged and sorted busy intervals.
+     */
+    public SortedMap<K, List<TimeInterval>> getBusy() {
+
+        closeCurrent();
+
+        final SortedMap<K, List<TimeInterval>> toReturn = new TreeMap<>();
+        key2Busy.forEach((key, busy) -> toReturn.put(key, Collections.unmodifiableList(busy)));
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the common free slots within the window, i.e. the slots within which no key is busy.
+     *
+     * @return The sorted free slots. Empty if some key is busy throughout the window.
+     */
+    public List<TimeInterval> getFree() {
+
+        closeCurrent();
+
+        // Union all busy intervals, sorted by start.
+        final List<TimeInterval> allBusy = new ArrayList<>();
+        key2Busy.values().forEach(allBusy::addAll);
+        Collections.sort(allBusy);
+
+        final List<TimeInterval> toReturn = new ArrayList<>();
+        LocalDateTime freeStart = from;
+        for (TimeInterval current : allBusy) {
+
+            if (current.getStart().isAfter(freeStart)) {
+                toReturn.add(new TimeInterval(freeStart, current.getStart()));
+            }
+            if (current.getEnd().isAfter(freeStart)) {
+                freeStart = current.getEnd();
+            }
+        }
+        if (to.isAfter(freeStart)) {
+            toReturn.add(new TimeInterval(freeStart, to));
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void closeCurrent() {
+
+        if (currentStart != null) {
+            key2Busy.get(currentKey).add(new TimeInterval(currentStart, currentEnd));
+            currentStart = null;
+            currentEnd = null;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * <p>Minimal, streaming writer of iCalendar (RFC 5545) content lines. Each content line is assembled within
+ * a single internal buffer which is reused for all lines written, implying that the memory footprint of
+ * the ICalendarWriter is constant regardless of how many components are written. Content lines are folded
+ * at {@link #MAX_LINE_OCTETS} octets (counted in UTF-8, as required by the RFC) and TEXT values are escaped
+ * as they are appended into the buffer.</p>
+ * <p>Typical usage:</p>
+ * <pre>
+ *     <code>
+ *         final ICalendarWriter writer = new ICalendarWriter(outputStream);
+ *         writer.begin(ICalendarWriter.VCALENDAR)
+ *               .property("VERSION", "2.0")
+ *               .property("PRODID", "-//Mithlond//Services//SV")
+ *               .begin(ICalendarWriter.VEVENT)
+ *               .text("SUMMARY", "Fika; med bullar")
+ *               .end(ICalendarWriter.VEVENT)
+ *               .end(ICalendarWriter.VCALENDAR)
+ *               .flush();
+ *     </code>
+ * </pre>
+ * <p>Instances are not thread-safe.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ICalendarWriter implements Flushable, Closeable {
+
+    /**
+     * The MIME type of iCalendar content.
+     */
+    public static final String CONTENT_TYPE = "text/calendar";
+
+    /**
+     * The line separator mandated by RFC 5545.
+     */
+    public static final String CRLF = "\r\n";
+
+    /**
+     * The maximum number of octets within a single (folded) line, excluding the line break.
+     */
+    public static final int MAX_LINE_OCTETS = 75;
+
+    /**
+     * The VCALENDAR component name.
+     */
+    public static final String VCALENDAR = "VCALENDAR";
+
+    /**
+     * The VEVENT component name.
+     */
+    public static final String VEVENT = "VEVENT";
+
+    // Internal state
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Creates an ICalendarWriter emitting UTF-8 encoded content to the supplied OutputStream.
+     *
+     * @param out The non-null OutputStream to write to.
+     */
+    public ICalendarWriter(final OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(
+                Validate.notNull(out, "out"), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates an ICalendarWriter emitting content to the supplied Writer.
+     * The Writer is assumed to encode its characters in UTF-8.
+     *
+     * @param out The non-null Writer to write to.
+     */
+    public ICalendarWriter(final Writer out) {
+        this.out = Validate.notNull(out, "out");
+    }
+
+    /**
+     * Writes a {@code BEGIN:[component]} line.
+     *
+     * @param component The non-empty name of the component to begin, such as {@link #VEVENT}.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter begin(final String component) throws IOException {
+        return property("BEGIN", component);
+    }
+
+    /**
+     * Writes an {@code END:[component]} line.
+     *
+     * @param component The non-empty name of the component to end, such as {@link #VEVENT}.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter end(final String component) throws IOException {
+        return property("END", component);
+    }
+
+    /**
+     * Writes a property whose value is emitted verbatim, i.e. without TEXT escaping.
+     * Null values are ignored.
+     *
+     * @param name  The non-empty property name, possibly including parameters (such as {@code DTSTART;VALUE=DATE}).
+     * @param value The property value.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter property(final String name, final String value) throws IOException {
+
+        if (value != null) {
+            startLine(name).append(value);
+            emitLine();
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Writes a property whose value is escaped as a RFC 5545 TEXT value, implying that backslashes,
+     * semicolons, commas and newlines are escaped. Null values are ignored.
+     *
+     * @param name  The non-empty property name.
+     * @param value The text value to escape and write.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter text(final String name, final String value) throws IOException {
+
+        if (value != null) {
+            startLine(name);
+            appendEscaped(value);
+            emitLine();
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Writes a numeric property, such as {@code SEQUENCE}.
+     *
+     * @param name  The non-empty property name.
+     * @param value The value to write.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter number(final String name, final long value) throws IOException {
+
+        startLine(name).append(value);
+        emitLine();
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Writes a DATE-TIME property in UTC form (i.e. {@code 20160503T174500Z}), converting
+     * the supplied LocalDateTime from the supplied ZoneId. Null values are ignored.
+     *
+     * @param name     The non-empty property name.
+     * @param dateTime The LocalDateTime to write.
+     * @param zone     The non-null ZoneId in which the dateTime is given.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter dateTime(final String name, final LocalDateTime dateTime, final ZoneId zone)
+            throws IOException {
+
+        if (dateTime != null) {
+
+            final ZonedDateTime utc = dateTime.atZone(zone).withZoneSameInstant(ZoneOffset.UTC);
+
+            startLine(name);
+            appendDate(utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth());
+            line.append('T');
+            appendPadded(utc.getHour(), 2);
+            appendPadded(utc.getMinute(), 2);
+            appendPadded(utc.getSecond(), 2);
+            line.append('Z');
+            emitLine();
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * Writes a DATE property (i.e. {@code NAME;VALUE=DATE:20160503}). Null values are ignored.
+     *
+     * @param name The non-empty property name.
+     * @param date The LocalDate to write.
+     * @return This ICalendarWriter, for chaining.
+     * @throws IOException if the underlying Writer could not be written to.
+     */
+    public ICalendarWriter date(final String name, final LocalDate date) throws IOException {
+
+        if (date != null) {
+
+            line.setLength(0);
+            line.append(name).append(";VALUE=DATE:");
+            appendDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            emitLine();
+        }
+
+        // All Done.
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private StringBuilder startLine(final String name) {
+
+        line.setLength(0);
+        return line.append(name).append(':');
+    }
+
+    private void appendEscaped(final String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+
+            final char current = value.charAt(i);
+            switch (current) {
+                case '\\':
+                case ';':
+                case ',':
+                    line.append('\\').append(current);
+                    break;
+
+                case '\n':
+                    line.append("\\n");
+                    break;
+
+                case '\r':
+                    // CRLF and lone CR are represented by the '\n' escape only.
+                    if (i + 1 >= value.length() || value.charAt(i + 1) != '\n') {
+                        line.append("\\n");
+                    }
+                    break;
+
+                default:
+                    line.append(current);
+            }
+        }
+    }
+
+    private void appendDate(final int year, final int month, final int day) {
+        appendPadded(year, 4);
+        appendPadded(month, 2);
+        appendPadded(day, 2);
+    }
+
+    private void appendPadded(final int value, final int width) {
+
+        final int start = line.length();
+        line.append(value);
+        while (line.length() - start < width) {
+            line.insert(start, '0');
+        }
+    }
+
+    private void emitLine() throws IOException {
+
+        int octetsOnLine = 0;
+        for (int i = 0; i < line.length(); i++) {
+
+            final char current = line.charAt(i);
+            final boolean isSurrogatePair = Character.isHighSurrogate(current)
+                    && i + 1 < line.length()
+                    && Character.isLowSurrogate(line.charAt(i + 1));
+            final int octets = isSurrogatePair ? 4 : utf8Length(current);
+
+            // Fold before the character if it would not fit on the current line.
+            // Continuation lines start with a single space, which counts towards the line length.
+            if (octetsOnLine + octets > MAX_LINE_OCTETS) {
+                out.write(CRLF);
+                out.write(' ');
+                octetsOnLine = 1;
+            }
+
+            out.write(current);
+            if (isSurrogatePair) {
+                out.write(line.charAt(++i));
+            }
+            octetsOnLine += octets;
+        }
+
+        out.write(CRLF);
+        line.setLength(0);
+    }
+
+    private static int utf8Length(final char aChar) {
+
+        if (aChar < 0x80) {
+            return 1;
+        } else if (aChar < 0x800) {
+            return 2;
+        }
+
+        // All Done.
+        return 3;
+    }
+}
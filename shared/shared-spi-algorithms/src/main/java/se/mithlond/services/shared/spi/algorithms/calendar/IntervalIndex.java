@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Thread-safe and incrementally maintained index of half-open time intervals {@code [start, end)}, grouped
+ * by key. Each value (such as the JPA ID of an Activity) can be indexed under several keys (such as a location
+ * and the admitted Memberships), but has a single interval under each key.</p>
+ * <p>The intervals of each key are kept sorted by start time, along with the longest interval duration of the
+ * key. An overlap query therefore sweeps only the intervals starting within {@code [start - longest, end)},
+ * which is found in O(log n) and - as long as interval durations are of similar magnitude, as is the case for
+ * Activities - contains little more than the k overlapping intervals.</p>
+ *
+ * @param <K> The key type, such as a location or Membership identifier.
+ * @param <V> The value type, such as an Activity identifier.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class IntervalIndex<K extends Comparable<K>, V extends Comparable<V>> {
+
+    // Internal state
+    private final SortedMap<K, Bucket> key2Bucket = new TreeMap<>();
+    private final Map<V, SortedSet<K>> value2Keys = new HashMap<>();
+    private int size;
+
+    /**
+     * Indexes the supplied value under the supplied key, replacing any interval previously indexed for the
+     * value under the same key.
+     *
+     * @param key   The non-null key.
+     * @param value The non-null value.
+     * @param start The non-null (inclusive) start of the interval.
+     * @param end   The non-null (exclusive) end of the interval. Must be after start.
+     */
+    public synchronized void put(final K key, final V value, final LocalDateTime start, final LocalDateTime end) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(value, "value");
+        Validate.notNull(start, "start");
+        Validate.notNull(end, "end");
+        Validate.isTrue(end.isAfter(start), "Cannot handle 'end' not after 'start'.");
+
+        // Replace any existing interval for the value.
+        remove(key, value);
+
+        final Bucket bucket = key2Bucket.computeIfAbsent(key, k -> new Bucket());
+        bucket.add(value, start, end);
+        value2Keys.computeIfAbsent(value, v -> new TreeSet<>()).add(key);
+        size++;
+    }
+
+    /**
+     * Removes the interval indexed for the supplied value under the supplied key.
+     *
+     * @param key   The non-null key.
+     * @param value The non-null value.
+     * @return {@code true} if an interval was removed.
+     */
+    public synchronized boolean remove(final K key, final V value) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(value, "value");
+
+        final Bucket bucket = key2Bucket.get(key);
+        if (bucket == null || !bucket.remove(value)) {
+            return false;
+        }
+
+        // Clean up empty structures.
+        if (bucket.isEmpty()) {
+            key2Bucket.remove(key);
+        }
+
+        final SortedSet<K> keys = value2Keys.get(value);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            value2Keys.remove(value);
+        }
+
+        // All Done.
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes the intervals indexed for the supplied value under all keys.
+     *
+     * @param value The non-null value.
+     * @return The number of removed intervals.
+     */
+    public synchronized int removeAll(final V value) {
+
+        // Check sanity
+        Validate.notNull(value, "value");
+
+        final SortedSet<K> keys = value2Keys.get(value);
+        if (keys == null) {
+            return 0;
+        }
+
+        int toReturn = 0;
+        for (K current : new TreeSet<>(keys)) {
+            if (remove(current, value)) {
+                toReturn++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the values whose intervals under the supplied key overlap the interval {@code [start, end)}.
+     * Intervals which merely touch (i.e. one ends when the other starts) do not overlap.
+     *
+     * @param key   The non-null key.
+     * @param start The non-null (inclusive) start of the interval.
+     * @param end   The non-null (exclusive) end of the interval.
+     * @return A SortedMap relating the overlapping values to their [start, end] intervals, held in a
+     * two-element array. Empty if no intervals overlap.
+     */
+    public synchronized SortedMap<V, LocalDateTime[]> getOverlapping(final K key,
+                                                                     final LocalDateTime start,
+                                                                     final LocalDateTime end) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(start, "start");
+        Validate.notNull(end, "end");
+
+        final SortedMap<V, LocalDateTime[]> toReturn = new TreeMap<>();
+        final Bucket bucket = key2Bucket.get(key);
+        if (bucket == null || !end.isAfter(start)) {
+            return toReturn;
+        }
+
+        // Only intervals starting after (start - longest) can end after start.
+        final LocalDateTime earliestStart = start.minus(bucket.longest);
+        bucket.byStart.subMap(earliestStart, false, end, false)
+                .forEach((intervalStart, value2End) -> value2End.forEach((value, intervalEnd) -> {
+                    if (intervalEnd.isAfter(start)) {
+                        toReturn.put(value, new LocalDateTime[]{intervalStart, intervalEnd});
+                    }
+                }));
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the keys under which the supplied value is indexed.
+     *
+     * @param value The non-null value.
+     * @return An unmodifiable SortedSet holding the keys of the supplied value. Empty if none.
+     */
+    public synchronized SortedSet<K> getKeys(final V value) {
+
+        final SortedSet<K> keys = value2Keys.get(Validate.notNull(value, "value"));
+        return keys == null
+                ? Collections.emptySortedSet()
+                : Collections.unmodifiableSortedSet(new TreeSet<>(keys));
+    }
+
+    /**
+     * @return The total number of indexed intervals.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "IntervalIndex [" + key2Bucket.size() + " keys, " + value2Keys.size() + " values, "
+                + size + " intervals]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * The sorted intervals of a single key.
+     */
+    private final class Bucket {
+
+        private final NavigableMap<LocalDateTime, SortedMap<V, LocalDateTime>> byStart = new TreeMap<>();
+        private final Map<V, LocalDateTime> value2Start = new HashMap<>();
+        private Duration longest = Duration.ZERO;
+
+        private void add(final V value, final LocalDateTime start, final LocalDateTime end) {
+
+            byStart.computeIfAbsent(start, s -> new TreeMap<>()).put(value, end);
+            value2Start.put(value, start);
+
+            final Duration duration = Duration.between(start, end);
+            if (duration.compareTo(longest) > 0) {
+                longest = duration;
+            }
+        }
+
+        private boolean remove(final V value) {
+
+            final LocalDateTime start = value2Start.remove(value);
+            if (start == null) {
+                return false;
+            }
+
+            final SortedMap<V, LocalDateTime> value2End = byStart.get(start);
+            value2End.remove(value);
+            if (value2End.isEmpty()) {
+                byStart.remove(start);
+            }
+
+            // The longest duration is never shortened, except when the Bucket becomes empty.
+            // This keeps removals cheap, at the cost of somewhat wider sweeps after long intervals are removed.
+            if (value2Start.isEmpty()) {
+                longest = Duration.ZERO;
+            }
+
+            return true;
+        }
+
+        private boolean isEmpty() {
+            return value2Start.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable subset of the RFC 5545 recurrence rule (RRULE), supporting weekly or monthly recurrence
+ * with an optional interval, an optional end (UNTIL date or occurrence COUNT) and a set of excepted dates
+ * (EXDATE). As in RFC 5545, monthly recurrences yielding non-existent dates (such as February 30th) are
+ * skipped and not counted, whereas excepted dates are counted but not emitted.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class RecurrenceRule implements Serializable {
+
+    /**
+     * The supported recurrence frequencies.
+     */
+    public enum Frequency {
+
+        /**
+         * Recurs every {@code interval} weeks, on the weekday of the first occurrence.
+         */
+        WEEKLY,
+
+        /**
+         * Recurs every {@code interval} months, on the day-of-month of the first occurrence.
+         */
+        MONTHLY
+    }
+
+    // Internal state
+    private final Frequency frequency;
+    private final int interval;
+    private final LocalDate until;
+    private final Integer count;
+    private final SortedSet<LocalDate> exceptions;
+
+    /**
+     * Compound constructor creating a RecurrenceRule wrapping the supplied data.
+     *
+     * @param frequency  The non-null recurrence frequency.
+     * @param interval   The number of weeks or months between occurrences. Must be positive.
+     * @param until      The optional last date (inclusive) of any occurrence. Must not be given with count.
+     * @param count      The optional maximum number of occurrences. Must be positive if given, and must not be
+     *                   given with until.
+     * @param exceptions The optional dates on which no occurrence should be emitted.
+     */
+    public RecurrenceRule(final Frequency frequency,
+                          final int interval,
+                          final LocalDate until,
+                          final Integer count,
+                          final Collection<LocalDate> exceptions) {
+
+        // Check sanity
+        Validate.notNull(frequency, "frequency");
+        Validate.isTrue(interval > 0, "Cannot handle non-positive 'interval'.");
+        Validate.isTrue(until == null || count == null, "Cannot handle both 'until' and 'count'.");
+        if (count != null) {
+            Validate.isTrue(count > 0, "Cannot handle non-positive 'count'.");
+        }
+
+        // Assign internal state
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+        this.exceptions = exceptions == null
+                ? Collections.unmodifiableSortedSet(new TreeSet<>())
+                : Collections.unmodifiableSortedSet(new TreeSet<>(exceptions));
+    }
+
+    /**
+     * @return The non-null recurrence frequency.
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return The positive number of weeks or months between occurrences.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The optional last date (inclusive) of any occurrence. Null if unbounded or bounded by count.
+     */
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * @return The optional maximum number of occurrences. Null if unbounded or bounded by until.
+     */
+    public Integer getCount() {
+        return count;
+    }
+
+    /**
+     * @return An unmodifiable SortedSet containing the dates on which no occurrence is emitted.
+     */
+    public SortedSet<LocalDate> getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * Retrieves the start times of all occurrences starting within the supplied (inclusive) range.
+     * Only the occurrences within the range are generated for unbounded and until-bounded weekly rules;
+     * other rules are generated from the first occurrence, since the count must be tracked.
+     *
+     * @param firstStart The start time of the first occurrence (i.e. DTSTART).
+     * @param rangeStart The inclusive start of the range.
+     * @param rangeEnd   The inclusive end of the range.
+     * @return The start times of all occurrences within the range, in ascending order.
+     */
+    public List<LocalDateTime> getOccurrences(final LocalDateTime firstStart,
+                                              final LocalDateTime rangeStart,
+                                              final LocalDateTime rangeEnd) {
+
+        // Check sanity
+        Validate.notNull(firstStart, "firstStart");
+        Validate.notNull(rangeStart, "rangeStart");
+        Validate.notNull(rangeEnd, "rangeEnd");
+
+        final List<LocalDateTime> toReturn = new ArrayList<>();
+
+        // Weekly occurrences are never skipped; hence the index of any occurrence is
+        // known without generating its predecessors.
+        long index = 0;
+        if (frequency == Frequency.WEEKLY && rangeStart.isAfter(firstStart)) {
+            index = ChronoUnit.WEEKS.between(firstStart, rangeStart) / interval;
+        }
+
+        for (long step = index; ; step++) {
+
+            final LocalDateTime candidate = getCandidate(firstStart, step);
+
+            // Monthly candidates on non-existing dates are skipped (and not counted).
+            if (frequency == Frequency.MONTHLY && candidate.getDayOfMonth() != firstStart.getDayOfMonth()) {
+                continue;
+            }
+
+            if (candidate.isAfter(rangeEnd)
+                    || (until != null && candidate.toLocalDate().isAfter(until))
+                    || (count != null && index >= count)) {
+                break;
+            }
+
+            if (!candidate.isBefore(rangeStart) && !exceptions.contains(candidate.toLocalDate())) {
+                toReturn.add(candidate);
+            }
+            index++;
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the number of occurrences (including excepted ones) starting before the supplied time.
+     * This is required to calculate the remaining count when splitting a count-bounded series.
+     *
+     * @param firstStart The start time of the first occurrence (i.e. DTSTART).
+     * @param before     The exclusive upper limit.
+     * @return The number of occurrences starting before the supplied time.
+     */
+    public int getNumberOfOccurrencesBefore(final LocalDateTime firstStart, final LocalDateTime before) {
+
+        // Check sanity
+        Validate.notNull(firstStart, "firstStart");
+        Validate.notNull(before, "before");
+
+        final RecurrenceRule withoutExceptions = new RecurrenceRule(frequency, interval, until, count, null);
+        return before.isAfter(firstStart)
+                ? withoutExceptions.getOccurrences(firstStart, firstStart, before.minusNanos(1)).size()
+                : 0;
+    }
+
+    /**
+     * Creates a copy of this RecurrenceRule, ending on the supplied date.
+     *
+     * @param newUntil The last date (inclusive) of any occurrence for the returned RecurrenceRule.
+     * @return A RecurrenceRule identical to this one, but ending on the supplied date and without count.
+     */
+    public RecurrenceRule withUntil(final LocalDate newUntil) {
+        return new RecurrenceRule(frequency, interval, Validate.notNull(newUntil, "newUntil"), null, exceptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "FREQ=" + frequency + ";INTERVAL=" + interval
+                + (until == null ? "" : ";UNTIL=" + until)
+                + (count == null ? "" : ";COUNT=" + count)
+                + (exceptions.isEmpty() ? "" : ", EXDATE=" + exceptions);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private LocalDateTime getCandidate(final LocalDateTime firstStart, final long step) {
+        return frequency == Frequency.WEEKLY
+                ? firstStart.plusWeeks(step * interval)
+                : firstStart.plusMonths(step * interval);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Immutable half-open time interval {@code [start, end)}, ordered by start and then end.
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class TimeInterval implements Serializable, Comparable<TimeInterval> {
+
+    // Internal state
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+    /**
+     * Creates a TimeInterval from the supplied start and end.
+     *
+     * @param start The non-null (inclusive) start of this TimeInterval.
+     * @param end   The non-null (exclusive) end of this TimeInterval. Must be after start.
+     */
+    public TimeInterval(final LocalDateTime start, final LocalDateTime end) {
+
+        // Check sanity
+        Validate.notNull(start, "start");
+        Validate.notNull(end, "end");
+        Validate.isTrue(end.isAfter(start), "Cannot handle 'end' not after 'start'.");
+
+        // Assign internal state
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return The (inclusive) start of this TimeInterval.
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /**
+     * @return The (exclusive) end of this TimeInterval.
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * Checks if this TimeInterval overlaps the supplied one. TimeIntervals which merely touch do not overlap.
+     *
+     * @param that The non-null TimeInterval to compare with.
+     * @return {@code true} if this TimeInterval and the supplied one overlap.
+     */
+    public boolean overlaps(final TimeInterval that) {
+        return start.isBefore(that.end) && that.start.isBefore(end);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final TimeInterval that) {
+
+        final int toReturn = start.compareTo(that.start);
+        return toReturn != 0 ? toReturn : end.compareTo(that.end);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        // Fail fast
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TimeInterval)) {
+            return false;
+        }
+
+        // Delegate to internal state
+        final TimeInterval that = (TimeInterval) o;
+        return start.equals(that.start) && end.equals(that.end);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    /**
+     * @return The ISO 8601 representation of this TimeInterval, i.e. {@code start/end}.
+     */
+    @Override
+    public String toString() {
+        return start + "/" + end;
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Hierarchical timing wheel (as described by Varghese and Lauck), holding payloads which are due at given
+ * times, such as reminders. Time is divided into ticks; the first level of the wheel has one bucket per tick,
+ * and each following level has buckets spanning a full revolution of the level below it. Levels are created
+ * lazily, so entries due far into the future only cost one more level per factor {@code wheelSize}.</p>
+ * <p>Scheduling and cancelling an entry is O(1). Advancing the wheel visits each elapsed tick only while the
+ * first level holds entries, and cascades the entries of a higher level bucket down the levels when its
+ * span is reached; an empty wheel jumps directly to the target time. Entries are never released before their
+ * due time, but may be released up to one tick after it.</p>
+ * <p>The wheel holds no clock of its own; the current time is supplied by the caller to
+ * {@link #advanceTo(LocalDateTime)}, making it simple to drive by a virtual clock.</p>
+ *
+ * @param <K> The key type, uniquely identifying each scheduled entry.
+ * @param <T> The payload type.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class TimingWheel<K, T> {
+
+    // Internal state
+    private final long tickSeconds;
+    private final int wheelSize;
+    private final List<Level<K, T>> levels = new ArrayList<>();
+    private final Map<K, Entry<K, T>> key2Entry = new HashMap<>();
+    private final Map<K, Entry<K, T>> overdue = new LinkedHashMap<>();
+    private long currentTick;
+    private long sequence;
+
+    /**
+     * Creates a TimingWheel with the supplied tick length and number of buckets per level.
+     *
+     * @param tick      The non-null length of each tick, which must be a positive number of whole seconds.
+     * @param wheelSize The number of buckets within each level. Must be at least 2.
+     * @param startTime The non-null initial current time of this TimingWheel.
+     */
+    public TimingWheel(final Duration tick, final int wheelSize, final LocalDateTime startTime) {
+
+        // Check sanity
+        Validate.notNull(tick, "tick");
+        Validate.notNull(startTime, "startTime");
+        Validate.isTrue(tick.getSeconds() > 0 && tick.getNano() == 0,
+                "Cannot handle 'tick' other than a positive number of whole seconds.");
+        Validate.isTrue(wheelSize >= 2, "Cannot handle 'wheelSize' less than 2.");
+
+        // Assign internal state
+        this.tickSeconds = tick.getSeconds();
+        this.wheelSize = wheelSize;
+        this.currentTick = Math.floorDiv(toEpochSecond(startTime), tickSeconds);
+        this.levels.add(new Level<>(1L, wheelSize));
+    }
+
+    /**
+     * Schedules the supplied payload to be due at the supplied time, replacing any entry previously scheduled
+     * with the same key. Payloads due at or before the current tick are released by the next advance.
+     *
+     * @param key     The non-null key of the entry.
+     * @param due     The non-null time when the payload is due.
+     * @param payload The non-null payload.
+     */
+    public synchronized void schedule(final K key, final LocalDateTime due, final T payload) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(due, "due");
+        Validate.notNull(payload, "payload");
+
+        // Never release an entry before its due time, i.e. round up to the next tick.
+        cancel(key);
+        final long dueTick = Math.floorDiv(toEpochSecond(due) + tickSeconds - 1, tickSeconds);
+        final Entry<K, T> entry = new Entry<>(key, due, dueTick, sequence++, payload);
+
+        key2Entry.put(key, entry);
+        insert(entry);
+    }
+
+    /**
+     * Cancels the entry scheduled with the supplied key.
+     *
+     * @param key The key of the entry to cancel.
+     * @return The payload of the cancelled entry, or {@code null} if no entry was scheduled with the key.
+     */
+    public synchronized T cancel(final K key) {
+
+        final Entry<K, T> entry = key2Entry.remove(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.level < 0) {
+            overdue.remove(key);
+        } else {
+            levels.get(entry.level).remove(entry);
+        }
+        return entry.payload;
+    }
+
+    /**
+     * Advances this TimingWheel to the supplied time, releasing all payloads which are due.
+     * Supplying a time before the current time only releases overdue payloads.
+     *
+     * @param now The non-null time to advance to.
+     * @return The released payloads, sorted by due time and (for equal due times) scheduling order.
+     */
+    public synchronized List<T> advanceTo(final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(now, "now");
+
+        final long targetTick = Math.floorDiv(toEpochSecond(now), tickSeconds);
+        final List<Entry<K, T>> released = new ArrayList<>(overdue.values());
+        overdue.clear();
+
+        while (currentTick < targetTick) {
+
+            if (key2Entry.size() == released.size()) {
+
+                // Nothing more is scheduled; jump directly to the target.
+                currentTick = targetTick;
+                break;
+            }
+
+            if (levels.get(0).size == 0 && levels.size() > 1) {
+
+                // Only cascades can happen; skip to the tick before the next revolution of the first level.
+                final long nextRevolution = (Math.floorDiv(currentTick, wheelSize) + 1) * wheelSize;
+                currentTick = Math.max(currentTick, Math.min(targetTick, nextRevolution) - 1);
+                if (currentTick == targetTick) {
+                    break;
+                }
+            }
+
+            currentTick++;
+
+            // Cascade the current bucket of higher levels downwards, starting at the top.
+            for (int i = levels.size() - 1; i > 0; i--) {
+
+                final Level<K, T> level = levels.get(i);
+                if (currentTick % level.span == 0) {
+                    for (Entry<K, T> current : level.drain(currentTick)) {
+                        if (current.dueTick <= currentTick) {
+                            released.add(current);
+                        } else {
+                            insert(current);
+                        }
+                    }
+                }
+            }
+
+            released.addAll(levels.get(0).drain(currentTick));
+        }
+
+        // All Done.
+        released.forEach(current -> key2Entry.remove(current.key));
+        return released.stream()
+                .sorted(Entry.DUE_ORDER)
+                .map(current -> current.payload)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The current time of this TimingWheel, i.e. the start of the current tick.
+     */
+    public synchronized LocalDateTime getCurrentTime() {
+        return LocalDateTime.ofEpochSecond(currentTick * tickSeconds, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param key The key of an entry.
+     * @return {@code true} if an entry is scheduled with the supplied key.
+     */
+    public synchronized boolean contains(final K key) {
+        return key2Entry.containsKey(key);
+    }
+
+    /**
+     * @return The number of scheduled entries.
+     */
+    public synchronized int size() {
+        return key2Entry.size();
+    }
+
+    /**
+     * @return The number of levels currently created within this TimingWheel.
+     */
+    public synchronized int getNumberOfLevels() {
+        return levels.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "TimingWheel [" + size() + " entries, " + levels.size() + " levels, current time "
+                + getCurrentTime() + "]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void insert(final Entry<K, T> entry) {
+
+        if (entry.dueTick <= currentTick) {
+
+            entry.level = -1;
+            overdue.put(entry.key, entry);
+            return;
+        }
+
+        // Find the lowest level within whose current revolution the entry is due.
+        int levelIndex = 0;
+        while (true) {
+
+            final Level<K, T> level = getOrCreateLevel(levelIndex);
+            final long revolution = level.span * wheelSize;
+            if (revolution <= 0 || revolution / wheelSize != level.span
+                    || Math.floorDiv(entry.dueTick, revolution) == Math.floorDiv(currentTick, revolution)) {
+                break;
+            }
+            levelIndex++;
+        }
+
+        entry.level = levelIndex;
+        levels.get(levelIndex).add(entry);
+    }
+
+    private Level<K, T> getOrCreateLevel(final int levelIndex) {
+
+        while (levels.size() <= levelIndex) {
+            levels.add(new Level<>(levels.get(levels.size() - 1).span * wheelSize, wheelSize));
+        }
+        return levels.get(levelIndex);
+    }
+
+    private static long toEpochSecond(final LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * A single level of the wheel, whose buckets each span a number of ticks.
+     */
+    private static final class Level<K, T> {
+
+        // Internal state
+        private final long span;
+        private final List<Map<K, Entry<K, T>>> buckets;
+        private int size;
+
+        private Level(final long span, final int wheelSize) {
+
+            this.span = span;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new LinkedHashMap<>());
+            }
+        }
+
+        private void add(final Entry<K, T> entry) {
+
+            entry.slot = (int) Math.floorMod(Math.floorDiv(entry.dueTick, span), (long) buckets.size());
+            buckets.get(entry.slot).put(entry.key, entry);
+            size++;
+        }
+
+        private void remove(final Entry<K, T> entry) {
+
+            if (buckets.get(entry.slot).remove(entry.key) != null) {
+                size--;
+            }
+        }
+
+        private List<Entry<K, T>> drain(final long tick) {
+
+            final int slot = (int) Math.floorMod(Math.floorDiv(tick, span), (long) buckets.size());
+            final Map<K, Entry<K, T>> bucket = buckets.get(slot);
+            if (bucket.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            final List<Entry<K, T>> toReturn = new ArrayList<>(bucket.values());
+            buckets.set(slot, new LinkedHashMap<>());
+            size -= toReturn.size();
+            return toReturn;
+        }
+    }
+
+    /**
+     * A scheduled payload, remembering its position within the wheel.
+     */
+    private static final class Entry<K, T> {
+
+        // Internal state
+        private static final Comparator<Entry<?, ?>> DUE_ORDER = Comparator
+                .comparing((Entry<?, ?> entry) -> entry.due)
+                .thenComparingLong(entry -> entry.sequence);
+
+        private final K key;
+        private final LocalDateTime due;
+        private final long dueTick;
+        private final long sequence;
+        private final T payload;
+        private int level;
+        private int slot;
+
+        private Entry(final K key, final LocalDateTime due, final long dueTick, final long sequence, final T payload) {
+            this.key = key;
+            this.due = due;
+            this.dueTick = dueTick;
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+    }
+}
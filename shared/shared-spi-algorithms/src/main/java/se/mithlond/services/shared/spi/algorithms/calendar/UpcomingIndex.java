@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * <p>Incrementally maintained read model of upcoming (i.e. not yet ended) items per key, such as the upcoming
+ * Activities of each Membership. Each item has a unique ID, a half-open time interval {@code [start, end)}
+ * and a value, and can be indexed under several keys.</p>
+ * <p>The items of each key are held in a skip list sorted by start time (and item ID), implying that the next
+ * N items of a key are read lock-free in O(N), while adding or removing an item costs O(log n) per key.
+ * Modifications are serialized. Ended items are skipped when read, and removed by {@link #prune(LocalDateTime)}
+ * which pops them from an end time ordered set.</p>
+ *
+ * @param <K> The key type, such as a Membership identifier.
+ * @param <V> The (immutable) value type, such as a transport representation of an Activity.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class UpcomingIndex<K, V> {
+
+    // Internal state
+    private final ConcurrentMap<K, NavigableSet<Item<K, V>>> key2Items = new ConcurrentHashMap<>();
+    private final Map<Long, Item<K, V>> id2Item = new HashMap<>();
+    private final NavigableSet<Item<K, V>> byEnd = new TreeSet<>(Item.END_ORDER);
+
+    /**
+     * Indexes the supplied item under the supplied keys, replacing any item previously indexed with the
+     * same ID. Items ending before the supplied time are not indexed.
+     *
+     * @param itemID The ID of the item, such as the JPA ID of an Activity.
+     * @param start  The non-null (inclusive) start of the item.
+     * @param end    The non-null (exclusive) end of the item. Must not be before start.
+     * @param value  The non-null value of the item.
+     * @param keys   The non-null keys under which the item should be indexed.
+     * @param now    The non-null current time.
+     */
+    public synchronized void put(final long itemID,
+                                 final LocalDateTime start,
+                                 final LocalDateTime end,
+                                 final V value,
+                                 final Collection<K> keys,
+                                 final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(start, "start");
+        Validate.notNull(end, "end");
+        Validate.notNull(value, "value");
+        Validate.notNull(keys, "keys");
+        Validate.notNull(now, "now");
+        Validate.isTrue(!end.isBefore(start), "Cannot handle 'end' before 'start'.");
+
+        // Replace any existing item.
+        remove(itemID);
+        if (!end.isAfter(now)) {
+            return;
+        }
+
+        final Item<K, V> item = new Item<>(itemID, start, end, value);
+        id2Item.put(itemID, item);
+        byEnd.add(item);
+        keys.forEach(key -> addKey(item, key));
+    }
+
+    /**
+     * Removes the item with the supplied ID from this UpcomingIndex.
+     *
+     * @param itemID The ID of the item to remove.
+     * @return {@code true} if an item was removed.
+     */
+    public synchronized boolean remove(final long itemID) {
+
+        final Item<K, V> item = id2Item.remove(itemID);
+        if (item == null) {
+            return false;
+        }
+
+        byEnd.remove(item);
+        new ArrayList<>(item.keys).forEach(key -> removeKey(item, key));
+        return true;
+    }
+
+    /**
+     * Adds and removes keys of an indexed item. Unknown item IDs are ignored.
+     *
+     * @param itemID      The ID of the item.
+     * @param addedKeys   The non-null keys under which the item should be indexed.
+     * @param removedKeys The non-null keys under which the item should no longer be indexed.
+     * @return {@code true} if the item was found within this UpcomingIndex.
+     */
+    public synchronized boolean updateKeys(final long itemID,
+                                           final Collection<K> addedKeys,
+                                           final Collection<K> removedKeys) {
+
+        // Check sanity
+        Validate.notNull(addedKeys, "addedKeys");
+        Validate.notNull(removedKeys, "removedKeys");
+
+        final Item<K, V> item = id2Item.get(itemID);
+        if (item == null) {
+            return false;
+        }
+
+        removedKeys.forEach(key -> removeKey(item, key));
+        addedKeys.forEach(key -> addKey(item, key));
+        return true;
+    }
+
+    /**
+     * Retrieves the values of the next items of the supplied key, i.e. items which have not ended at the
+     * supplied time, sorted by start time. This method does not block, and runs in O(maxResults) unless
+     * ended items remain to be pruned.
+     *
+     * @param key        The key.
+     * @param now        The non-null current time.
+     * @param maxResults The maximum number of values to retrieve. Must be positive.
+     * @return The values of the next (at most maxResults) items of the supplied key.
+     */
+    public List<V> getUpcoming(final K key, final LocalDateTime now, final int maxResults) {
+
+        // Check sanity
+        Validate.notNull(now, "now");
+        Validate.isTrue(maxResults > 0, "Cannot handle non-positive 'maxResults'.");
+
+        final NavigableSet<Item<K, V>> items = key2Items.get(key);
+        if (items == null) {
+            return Collections.emptyList();
+        }
+
+        final List<V> toReturn = new ArrayList<>(Math.min(maxResults, 16));
+        for (Item<K, V> current : items) {
+
+            if (current.end.isAfter(now)) {
+                toReturn.add(current.value);
+                if (toReturn.size() == maxResults) {
+                    break;
+                }
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Removes all items which have ended at the supplied time.
+     *
+     * @param now The non-null current time.
+     * @return The number of removed items.
+     */
+    public synchronized int prune(final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(now, "now");
+
+        int toReturn = 0;
+        while (!byEnd.isEmpty() && !byEnd.first().end.isAfter(now)) {
+            remove(byEnd.first().itemID);
+            toReturn++;
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Removes all items from this UpcomingIndex.
+     */
+    public synchronized void clear() {
+
+        id2Item.clear();
+        byEnd.clear();
+        key2Items.clear();
+    }
+
+    /**
+     * @return The number of items within this UpcomingIndex.
+     */
+    public synchronized int size() {
+        return id2Item.size();
+    }
+
+    /**
+     * @return The number of keys with indexed items.
+     */
+    public int getNumberOfKeys() {
+        return key2Items.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "UpcomingIndex [" + size() + " items, " + getNumberOfKeys() + " keys]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void addKey(final Item<K, V> item, final K key) {
+
+        if (item.keys.add(key)) {
+            key2Items.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(Item.START_ORDER)).add(item);
+        }
+    }
+
+    private void removeKey(final Item<K, V> item, final K key) {
+
+        if (item.keys.remove(key)) {
+
+            final NavigableSet<Item<K, V>> items = key2Items.get(key);
+            if (items != null) {
+                items.remove(item);
+                if (items.isEmpty()) {
+                    key2Items.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * An indexed item. The keys are only accessed while holding the UpcomingIndex lock.
+     */
+    private static final class Item<K, V> {
+
+        private static final Comparator<Item<?, ?>> START_ORDER = Comparator
+                .<Item<?, ?>, LocalDateTime>comparing(item -> item.start)
+                .thenComparingLong(item -> item.itemID);
+        private static final Comparator<Item<?, ?>> END_ORDER = Comparator
+                .<Item<?, ?>, LocalDateTime>comparing(item -> item.end)
+                .thenComparingLong(item -> item.itemID);
+
+        private final long itemID;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final V value;
+        private final Set<K> keys = new HashSet<>();
+
+        private Item(final long itemID, final LocalDateTime start, final LocalDateTime end, final V value) {
+            this.itemID = itemID;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.diff;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * DiffHolder implementation pairing the actual and comparison objects sharing a common key,
+ * as produced by the {@link SortedMergeDiff}. KeyedDiffHolders are ordered by their keys.
+ *
+ * @param <K> The key type, identifying both the actual and the comparison object.
+ * @param <A> The actual object type.
+ * @param <C> The comparison object type.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class KeyedDiffHolder<K extends Comparable<? super K>, A, C>
+        implements DiffHolder<A, C, KeyedDiffHolder<K, A, C>> {
+
+    private static final long serialVersionUID = 8829990041L;
+
+    // Internal state
+    private final K key;
+    private A actual;
+    private C comparison;
+
+    /**
+     * Compound constructor creating a KeyedDiffHolder wrapping the supplied data.
+     *
+     * @param key        The non-null key shared by the actual and comparison objects.
+     * @param actual     The actual object, or {@code null} if the comparison object has no actual counterpart.
+     * @param comparison The comparison object, or {@code null} if the actual object has no comparison counterpart.
+     */
+    public KeyedDiffHolder(final K key, final A actual, final C comparison) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+
+        // Assign internal state
+        this.key = key;
+        this.actual = actual;
+        this.comparison = comparison;
+    }
+
+    /**
+     * @return The key shared by the actual and comparison objects.
+     */
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<A> getActual() {
+        return Optional.ofNullable(actual);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<C> getComparison() {
+        return Optional.ofNullable(comparison);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setComparison(final C comparison) {
+        this.comparison = Validate.notNull(comparison, "comparison");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setActual(final A actual) {
+        this.actual = Validate.notNull(actual, "actual");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(final KeyedDiffHolder<K, A, C> that) {
+
+        if (this == that) {
+            return 0;
+        } else if (that == null) {
+            return -1;
+        }
+
+        int toReturn = this.key.compareTo(that.key);
+        if (toReturn == 0) {
+            toReturn = this.getModification().compareTo(that.getModification());
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KeyedDiffHolder)) {
+            return false;
+        }
+
+        final KeyedDiffHolder<?, ?, ?> that = (KeyedDiffHolder<?, ?, ?>) o;
+        return Objects.equals(key, that.key)
+                && Objects.equals(actual, that.actual)
+                && Objects.equals(comparison, that.comparison);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, actual, comparison);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "KeyedDiffHolder [" + getModification() + " " + key + "]";
+    }
+}
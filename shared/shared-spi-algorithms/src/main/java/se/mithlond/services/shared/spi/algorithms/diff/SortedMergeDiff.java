@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.diff;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * <p>Diff engine synchronizing an <strong>actual</strong> collection (typically the persisted state) with a
+ * <strong>comparison</strong> collection (typically the desired state), by a single sorted merge over the keys
+ * of both collections. The merge yields one {@link KeyedDiffHolder} per key, in ascending key order:</p>
+ * <ul>
+ * <li><strong>CREATED</strong> for comparison objects without an actual object with the same key.</li>
+ * <li><strong>DELETED</strong> for actual objects without a comparison object with the same key.</li>
+ * <li><strong>MODIFIED</strong> for actual and comparison objects with the same key, whose content differs
+ * according to the supplied content predicate.</li>
+ * </ul>
+ * <p>Pairs whose content is equal are not part of the result. The merge runs in O(n) when both collections are
+ * sorted by key, and in O(n log n) otherwise. Keys must be non-null and unique within each collection.</p>
+ *
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public final class SortedMergeDiff {
+
+    /*
+     * Hide the constructor for utility classes.
+     */
+    private SortedMergeDiff() {
+        // Do nothing
+    }
+
+    /**
+     * Calculates the difference between the supplied actual and comparison collections, sorting (copies of)
+     * the collections by key unless already sorted.
+     *
+     * @param actual        The non-null actual objects.
+     * @param actualKey     The non-null function extracting the key of an actual object.
+     * @param comparison    The non-null comparison objects.
+     * @param comparisonKey The non-null function extracting the key of a comparison object.
+     * @param sameContent   The non-null predicate returning {@code true} if an actual and a comparison object with
+     *                      the same key have equal content, implying that no modification is required.
+     * @param <K>           The key type.
+     * @param <A>           The actual object type.
+     * @param <C>           The comparison object type.
+     * @return The KeyedDiffHolders for all created, modified and deleted keys, in ascending key order.
+     * @throws IllegalArgumentException if any key was null, or not unique within its collection.
+     */
+    public static <K extends Comparable<? super K>, A, C> List<KeyedDiffHolder<K, A, C>> diff(
+            final Collection<A> actual,
+            final Function<? super A, K> actualKey,
+            final Collection<C> comparison,
+            final Function<? super C, K> comparisonKey,
+            final BiPredicate<? super A, ? super C> sameContent) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(actual, "actual");
+        Validate.notNull(actualKey, "actualKey");
+        Validate.notNull(comparison, "comparison");
+        Validate.notNull(comparisonKey, "comparisonKey");
+
+        // All Done.
+        return mergeSorted(sortedByKey(actual, actualKey), actualKey,
+                sortedByKey(comparison, comparisonKey), comparisonKey,
+                sameContent);
+    }
+
+    /**
+     * Calculates the difference between the supplied actual and comparison lists, which must both be sorted in
+     * ascending key order. This is a single O(n) pass over both lists.
+     *
+     * @param sortedActual     The non-null actual objects, sorted in ascending and unique key order.
+     * @param actualKey        The non-null function extracting the key of an actual object.
+     * @param sortedComparison The non-null comparison objects, sorted in ascending and unique key order.
+     * @param comparisonKey    The non-null function extracting the key of a comparison object.
+     * @param sameContent      The non-null predicate returning {@code true} if an actual and a comparison object
+     *                         with the same key have equal content, implying that no modification is required.
+     * @param <K>              The key type.
+     * @param <A>              The actual object type.
+     * @param <C>              The comparison object type.
+     * @return The KeyedDiffHolders for all created, modified and deleted keys, in ascending key order.
+     * @throws IllegalArgumentException if any key was null, or any list was not strictly sorted by key.
+     */
+    public static <K extends Comparable<? super K>, A, C> List<KeyedDiffHolder<K, A, C>> mergeSorted(
+            final List<A> sortedActual,
+            final Function<? super A, K> actualKey,
+            final List<C> sortedComparison,
+            final Function<? super C, K> comparisonKey,
+            final BiPredicate<? super A, ? super C> sameContent) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(sortedActual, "sortedActual");
+        Validate.notNull(actualKey, "actualKey");
+        Validate.notNull(sortedComparison, "sortedComparison");
+        Validate.notNull(comparisonKey, "comparisonKey");
+        Validate.notNull(sameContent, "sameContent");
+
+        final List<KeyedDiffHolder<K, A, C>> toReturn = new ArrayList<>();
+
+        int actualIndex = 0;
+        int comparisonIndex = 0;
+        K lastActualKey = null;
+        K lastComparisonKey = null;
+
+        while (actualIndex < sortedActual.size() || comparisonIndex < sortedComparison.size()) {
+
+            final A currentActual = actualIndex < sortedActual.size() ? sortedActual.get(actualIndex) : null;
+            final C currentComparison = comparisonIndex < sortedComparison.size()
+                    ? sortedComparison.get(comparisonIndex)
+                    : null;
+
+            final K currentActualKey = currentActual == null
+                    ? null
+                    : checkOrder(actualKey.apply(currentActual), lastActualKey, "actual");
+            final K currentComparisonKey = currentComparison == null
+                    ? null
+                    : checkOrder(comparisonKey.apply(currentComparison), lastComparisonKey, "comparison");
+
+            // Exhausted lists sort last.
+            final int order = currentActualKey == null
+                    ? 1
+                    : currentComparisonKey == null ? -1 : currentActualKey.compareTo(currentComparisonKey);
+
+            if (order < 0) {
+
+                // No comparison object for the current actual object.
+                toReturn.add(new KeyedDiffHolder<>(currentActualKey, currentActual, null));
+                lastActualKey = currentActualKey;
+                actualIndex++;
+
+            } else if (order > 0) {
+
+                // No actual object for the current comparison object.
+                toReturn.add(new KeyedDiffHolder<>(currentComparisonKey, null, currentComparison));
+                lastComparisonKey = currentComparisonKey;
+                comparisonIndex++;
+
+            } else {
+
+                if (!sameContent.test(currentActual, currentComparison)) {
+                    toReturn.add(new KeyedDiffHolder<>(currentActualKey, currentActual, currentComparison));
+                }
+
+                lastActualKey = currentActualKey;
+                lastComparisonKey = currentComparisonKey;
+                actualIndex++;
+                comparisonIndex++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static <K extends Comparable<? super K>> K checkOrder(final K key,
+                                                                  final K lastKey,
+                                                                  final String collectionName) {
+
+        Validate.notNull(key, collectionName + " key");
+        Validate.isTrue(lastKey == null || lastKey.compareTo(key) < 0,
+                "Keys within the " + collectionName + " list must be unique and sorted in ascending order. Found ["
+                        + key + "] after [" + lastKey + "]");
+
+        // All Done.
+        return key;
+    }
+
+    private static <K extends Comparable<? super K>, T> List<T> sortedByKey(final Collection<T> elements,
+                                                                           final Function<? super T, K> keyFunction) {
+
+        final List<T> toReturn = elements instanceof List ? (List<T>) elements : new ArrayList<>(elements);
+
+        // Already sorted? Then the merge is O(n).
+        K lastKey = null;
+        for (T current : toReturn) {
+
+            final K currentKey = keyFunction.apply(current);
+            if (currentKey == null || (lastKey != null && lastKey.compareTo(currentKey) >= 0)) {
+
+                // Sort a copy, leaving the supplied collection as is.
+                final List<T> sorted = new ArrayList<>(toReturn);
+                sorted.sort(Comparator.comparing(keyFunction, Comparator.nullsFirst(Comparator.naturalOrder())));
+                return sorted;
+            }
+            lastKey = currentKey;
+        }
+
+        // All Done.
+        return toReturn;
+    }
+}
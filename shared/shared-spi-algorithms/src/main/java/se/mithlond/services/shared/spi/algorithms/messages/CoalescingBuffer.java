@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.messages;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Thread-safe buffer which coalesces change notifications (i.e. entity IDs and versions) per key, and
+ * releases them as a single batch per key when the key is due. A key is due when either:</p>
+ * <ol>
+ * <li>no change has been received for the key within the debounce window (i.e. the changes have settled), or</li>
+ * <li>the first pending change for the key was received at least maxLatency ago (i.e. a steady stream of
+ * changes cannot postpone the batch indefinitely).</li>
+ * </ol>
+ * <p>Only the highest version of each entity ID is retained. The buffer holds no clock of its own; the current
+ * time is supplied by the caller, which makes it trivial to drive the buffer using a virtual clock.</p>
+ *
+ * @param <K> The key type, such as a composite of organisation and calendar identifiers.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class CoalescingBuffer<K extends Comparable<K>> {
+
+    // Internal state
+    private final Duration debounceWindow;
+    private final Duration maxLatency;
+    private final SortedMap<K, Pending> pending = new TreeMap<>();
+    private long numChangesReceived;
+    private long numChangesReleased;
+    private long numBatchesReleased;
+
+    /**
+     * Creates a CoalescingBuffer using the supplied timing.
+     *
+     * @param debounceWindow The non-null and positive duration without changes after which a key is due.
+     * @param maxLatency     The non-null duration after its first pending change at which a key is due, irrespective
+     *                       of subsequent changes. Must not be shorter than the debounceWindow.
+     */
+    public CoalescingBuffer(final Duration debounceWindow, final Duration maxLatency) {
+
+        // Check sanity
+        Validate.notNull(debounceWindow, "debounceWindow");
+        Validate.notNull(maxLatency, "maxLatency");
+        Validate.isTrue(!debounceWindow.isNegative() && !debounceWindow.isZero(),
+                "Cannot handle non-positive 'debounceWindow'.");
+        Validate.isTrue(maxLatency.compareTo(debounceWindow) >= 0,
+                "Cannot handle 'maxLatency' shorter than 'debounceWindow'.");
+
+        // Assign internal state
+        this.debounceWindow = debounceWindow;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Adds a change notification to this CoalescingBuffer.
+     *
+     * @param key     The non-null key of the change.
+     * @param id      The ID of the changed entity.
+     * @param version The version of the changed entity. Only the highest version of each ID is retained.
+     * @param now     The current time.
+     */
+    public synchronized void add(final K key, final long id, final long version, final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(key, "key");
+        Validate.notNull(now, "now");
+
+        final Pending current = pending.computeIfAbsent(key, k -> new Pending(now));
+        current.lastChange = now;
+        current.id2Version.merge(id, version, Math::max);
+        current.numChanges++;
+        numChangesReceived++;
+    }
+
+    /**
+     * Removes and retrieves the pending changes of all keys which are due at the supplied time.
+     *
+     * @param now The current time.
+     * @return A SortedMap relating each due key to a SortedMap of its changed IDs and their versions.
+     * Empty if no key is due.
+     */
+    public synchronized SortedMap<K, SortedMap<Long, Long>> drainDue(final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(now, "now");
+
+        final SortedMap<K, SortedMap<Long, Long>> toReturn = new TreeMap<>();
+        for (Iterator<Map.Entry<K, Pending>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+
+            final Map.Entry<K, Pending> current = it.next();
+            if (current.getValue().isDue(now)) {
+                release(current.getKey(), current.getValue(), toReturn);
+                it.remove();
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Removes and retrieves the pending changes of all keys, irrespective of whether they are due or not.
+     * Typically invoked on shutdown.
+     *
+     * @return A SortedMap relating each key to a SortedMap of its changed IDs and their versions.
+     */
+    public synchronized SortedMap<K, SortedMap<Long, Long>> drainAll() {
+
+        final SortedMap<K, SortedMap<Long, Long>> toReturn = new TreeMap<>();
+        pending.forEach((key, value) -> release(key, value, toReturn));
+        pending.clear();
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Re-adds previously drained changes, typically since they could not be delivered.
+     * The changes are due immediately at the next drain.
+     *
+     * @param drained The drained changes to re-add.
+     * @param now     The current time.
+     */
+    public synchronized void restore(final SortedMap<K, SortedMap<Long, Long>> drained, final LocalDateTime now) {
+
+        // Check sanity
+        Validate.notNull(drained, "drained");
+        Validate.notNull(now, "now");
+
+        drained.forEach((key, id2Version) -> {
+
+            final Pending current = pending.computeIfAbsent(key, k -> new Pending(now.minus(maxLatency)));
+            id2Version.forEach((id, version) -> current.id2Version.merge(id, version, Math::max));
+            current.numChanges += id2Version.size();
+
+            numBatchesReleased--;
+            numChangesReleased -= id2Version.size();
+        });
+    }
+
+    /**
+     * @return The number of keys which currently hold pending changes.
+     */
+    public synchronized int getNumberOfPendingKeys() {
+        return pending.size();
+    }
+
+    /**
+     * @return The number of change notifications received by this CoalescingBuffer.
+     */
+    public synchronized long getNumberOfChangesReceived() {
+        return numChangesReceived;
+    }
+
+    /**
+     * @return The number of batches released (i.e. drained) from this CoalescingBuffer.
+     */
+    public synchronized long getNumberOfBatchesReleased() {
+        return numBatchesReleased;
+    }
+
+    /**
+     * @return The number of change notifications which did not require a batch of their own,
+     * i.e. the number of messages saved by coalescing.
+     */
+    public synchronized long getNumberOfMessagesSaved() {
+        return numChangesReleased - numBatchesReleased;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "CoalescingBuffer [debounce: " + debounceWindow + ", maxLatency: " + maxLatency
+                + ", pendingKeys: " + pending.size() + ", received: " + numChangesReceived
+                + ", released: " + numBatchesReleased + "]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void release(final K key, final Pending toRelease, final SortedMap<K, SortedMap<Long, Long>> target) {
+
+        target.put(key, toRelease.id2Version);
+        numBatchesReleased++;
+        numChangesReleased += toRelease.numChanges;
+    }
+
+    /**
+     * The pending changes of a single key.
+     */
+    private final class Pending {
+
+        private final LocalDateTime firstChange;
+        private LocalDateTime lastChange;
+        private long numChanges;
+        private final SortedMap<Long, Long> id2Version = new TreeMap<>();
+
+        private Pending(final LocalDateTime firstChange) {
+            this.firstChange = firstChange;
+            this.lastChange = firstChange;
+        }
+
+        private boolean isDue(final LocalDateTime now) {
+            return !now.isBefore(lastChange.plus(debounceWindow)) || !now.isBefore(firstChange.plus(maxLatency));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.search;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Burkhard-Keller tree mapping String keys to values, used to find the values of keys within a bounded
+ * edit (Levenshtein) distance from a query, such as misspelled search terms. Each child of a node is stored at
+ * its distance from the node; since the edit distance is a metric, only the children whose distance lies
+ * within [d - maxDistance, d + maxDistance] (where d is the distance between the query and the node) need to
+ * be visited. For small maximum distances, this implies that only a small part of the tree is visited.</p>
+ * <p>Keys and queries are folded using {@link PrefixTrie#fold(String)}. Several values can be mapped to the
+ * same key; search results hold each value only once.</p>
+ * <p>BKTrees are thread-safe. A BKTree which is fully populated can be {@link #freeze() frozen}, after which
+ * it cannot be changed, and is searched without synchronization.</p>
+ *
+ * @param <V> The value type.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class BKTree<V> {
+
+    // Internal state
+    private Node<V> root;
+    private int size;
+    private volatile boolean frozen;
+
+    /**
+     * Calculates the Levenshtein distance between the supplied texts, i.e. the minimum number of
+     * single-character insertions, deletions and substitutions required to change one into the other.
+     *
+     * @param left  A non-null text.
+     * @param right Another non-null text.
+     * @return The Levenshtein distance between the supplied texts.
+     */
+    public static int getDistance(final String left, final String right) {
+
+        // Check sanity
+        Validate.notNull(left, "left");
+        Validate.notNull(right, "right");
+
+        // Only two rows of the distance matrix are required.
+        int[] previous = new int[right.length() + 1];
+        int[] current = new int[right.length() + 1];
+        for (int j = 0; j <= right.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= left.length(); i++) {
+
+            current[0] = i;
+            for (int j = 1; j <= right.length(); j++) {
+
+                final int substitutionCost = left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+                        previous[j - 1] + substitutionCost);
+            }
+
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        // All Done.
+        return previous[right.length()];
+    }
+
+    /**
+     * Maps the supplied value to the (folded) key.
+     *
+     * @param key   The key, which is folded before use. Blank keys are ignored.
+     * @param value The non-null value.
+     * @return {@code true} if the value was not previously mapped to the (folded) key.
+     * @throws IllegalStateException if this BKTree is frozen.
+     */
+    public synchronized boolean put(final String key, final V value) throws IllegalStateException {
+
+        // Check sanity
+        Validate.notNull(value, "value");
+        if (frozen) {
+            throw new IllegalStateException("Cannot change a frozen BKTree.");
+        }
+        final String folded = PrefixTrie.fold(key);
+        if (folded.isEmpty()) {
+            return false;
+        }
+
+        if (root == null) {
+            root = new Node<>(folded);
+        }
+
+        // Descend along the edges holding the distance to the key, until the key (or a free edge) is found.
+        Node<V> current = root;
+        int distance = getDistance(current.key, folded);
+        while (distance != 0) {
+
+            final Node<V> child = current.children.get(distance);
+            if (child == null) {
+
+                final Node<V> leaf = new Node<>(folded);
+                current.children.put(distance, leaf);
+                current = leaf;
+                break;
+            }
+
+            current = child;
+            distance = getDistance(current.key, folded);
+        }
+
+        final boolean added = current.values.add(value);
+        if (added) {
+            size++;
+        }
+
+        // All Done.
+        return added;
+    }
+
+    /**
+     * Retrieves the values mapped to keys within the supplied edit distance from the (folded) query, sorted
+     * by ascending distance and thereafter by key.
+     *
+     * @param query       The query, which is folded before use.
+     * @param maxDistance The maximum (Levenshtein) distance between the query and the keys of retrieved values.
+     *                    Must not be negative.
+     * @param maxResults  The maximum number of values to retrieve. Non-positive values imply no limit.
+     * @return The values mapped to keys within the supplied distance from the query, holding each value only once.
+     */
+    public List<V> search(final String query, final int maxDistance, final int maxResults) {
+
+        // Frozen BKTrees are immutable, and can hence be searched without synchronization.
+        if (frozen) {
+            return doSearch(query, maxDistance, maxResults);
+        }
+
+        synchronized (this) {
+            return doSearch(query, maxDistance, maxResults);
+        }
+    }
+
+    /**
+     * Freezes this BKTree, implying that it can no longer be changed. Since a frozen BKTree is
+     * immutable, concurrent searches do not synchronize (and hence never block each other).
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * @return {@code true} if this BKTree is frozen.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return The number of key/value mappings within this BKTree.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private List<V> doSearch(final String query, final int maxDistance, final int maxResults) {
+
+        // Check sanity
+        Validate.isTrue(maxDistance >= 0, "maxDistance must not be negative.");
+        final String folded = PrefixTrie.fold(query);
+        if (folded.isEmpty() || root == null) {
+            return new ArrayList<>();
+        }
+
+        // #1) Find all nodes within the distance, pruning edges outside of [d - maxDistance, d + maxDistance].
+        final List<Match<V>> matches = new ArrayList<>();
+        final Deque<Node<V>> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+        while (!toVisit.isEmpty()) {
+
+            final Node<V> current = toVisit.pop();
+            final int distance = getDistance(current.key, folded);
+            if (distance <= maxDistance) {
+                matches.add(new Match<>(distance, current));
+            }
+
+            for (int i = Math.max(1, distance - maxDistance); i <= distance + maxDistance; i++) {
+                final Node<V> child = current.children.get(i);
+                if (child != null) {
+                    toVisit.push(child);
+                }
+            }
+        }
+
+        // #2) Collect the values of the closest matches.
+        matches.sort(Comparator.<Match<V>>comparingInt(match -> match.distance)
+                .thenComparing(match -> match.node.key));
+
+        final int limit = maxResults <= 0 ? Integer.MAX_VALUE : maxResults;
+        final Set<V> toReturn = new LinkedHashSet<>();
+        for (Match<V> current : matches) {
+            for (V value : current.node.values) {
+                if (toReturn.size() >= limit) {
+                    return new ArrayList<>(toReturn);
+                }
+                toReturn.add(value);
+            }
+        }
+
+        // All Done.
+        return new ArrayList<>(toReturn);
+    }
+
+    /**
+     * Node within the tree, whose children are keyed by their distance to the node.
+     */
+    private static final class Node<V> {
+
+        // Internal state
+        private final String key;
+        private final Map<Integer, Node<V>> children = new HashMap<>();
+        private final Set<V> values = new LinkedHashSet<>(2);
+
+        private Node(final String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A Node found within a distance from a query.
+     */
+    private static final class Match<V> {
+
+        // Internal state
+        private final int distance;
+        private final Node<V> node;
+
+        private Match(final int distance, final Node<V> node) {
+            this.distance = distance;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.search;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>Compact (path-compressed, or radix) prefix trie mapping String keys to values, intended for autocomplete
+ * style lookups which should be answered from memory. Each edge of the trie carries a label of one or more
+ * characters, implying that the number of nodes is bounded by twice the number of distinct keys rather than
+ * by the total number of characters within them.</p>
+ * <p>All keys and prefixes are case folded using {@link #fold(String)}, which is aware of the Swedish alphabet:
+ * the letters &aring;, &auml; and &ouml; are distinct letters (and not accented versions of a and o), whereas
+ * other diacritics are stripped. Hence, a search for "ost" will not find "&Ouml;sten", but a search for "jose"
+ * will find "Jos&eacute;".</p>
+ * <p>Several values can be mapped to the same key, and the same value can be mapped to several keys;
+ * search results hold each value only once.</p>
+ * <p>PrefixTries are thread-safe. A PrefixTrie which is fully populated can be {@link #freeze() frozen},
+ * after which it cannot be changed, and is searched without synchronization.</p>
+ *
+ * @param <V> The value type.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class PrefixTrie<V> {
+
+    /**
+     * The Locale used to fold the case of keys and prefixes.
+     */
+    public static final Locale SWEDISH = new Locale("sv", "SE");
+
+    // Internal state
+    private final Node<V> root = new Node<>("");
+    private int size;
+    private volatile boolean frozen;
+
+    /**
+     * Folds the supplied text into the form used as keys within PrefixTries, by trimming it, converting it
+     * to lower case using Swedish rules and stripping all diacritics except the ones of the Swedish letters
+     * &aring;, &auml; and &ouml;. The letters &aelig;, &oslash; and &uuml; are folded into their Swedish
+     * counterparts &auml;, &ouml; and y respectively.
+     *
+     * @param text The text to fold. May be null.
+     * @return The folded text, which is empty for null or blank texts.
+     */
+    public static String fold(final String text) {
+
+        // Check sanity
+        if (text == null) {
+            return "";
+        }
+
+        final String lowerCase = text.trim().toLowerCase(SWEDISH);
+        final StringBuilder builder = new StringBuilder(lowerCase.length());
+        for (int i = 0; i < lowerCase.length(); i++) {
+
+            final char current = lowerCase.charAt(i);
+            switch (current) {
+                case 'å':
+                case 'ä':
+                case 'ö':
+                    builder.append(current);
+                    break;
+
+                case 'æ':
+                    builder.append('ä');
+                    break;
+
+                case 'ø':
+                    builder.append('ö');
+                    break;
+
+                case 'ü':
+                    builder.append('y');
+                    break;
+
+                default:
+                    if (current < 128) {
+                        builder.append(current);
+                    } else {
+                        builder.append(Normalizer.normalize(String.valueOf(current), Normalizer.Form.NFD)
+                                .replaceAll("\\p{M}", ""));
+                    }
+            }
+        }
+
+        // All Done.
+        return builder.toString();
+    }
+
+    /**
+     * Maps the supplied value to the (folded) key.
+     *
+     * @param key   The key, which is folded before use. Blank keys are ignored.
+     * @param value The non-null value.
+     * @return {@code true} if the value was not previously mapped to the (folded) key.
+     * @throws IllegalStateException if this PrefixTrie is frozen.
+     */
+    public synchronized boolean put(final String key, final V value) throws IllegalStateException {
+
+        // Check sanity
+        Validate.notNull(value, "value");
+        validateNotFrozen();
+        final String folded = fold(key);
+        if (folded.isEmpty()) {
+            return false;
+        }
+
+        Node<V> current = root;
+        String remainder = folded;
+        while (!remainder.isEmpty()) {
+
+            final Node<V> child = current.children.get(remainder.charAt(0));
+            if (child == null) {
+
+                // No edge starts with the remainder; simply add a leaf.
+                final Node<V> leaf = new Node<>(remainder);
+                current.children.put(remainder.charAt(0), leaf);
+                current = leaf;
+                remainder = "";
+
+            } else {
+
+                final int common = getCommonPrefixLength(child.label, remainder);
+                if (common < child.label.length()) {
+
+                    // Split the edge at the end of the common prefix.
+                    final Node<V> intermediate = new Node<>(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    intermediate.children.put(child.label.charAt(0), child);
+                    current.children.put(intermediate.label.charAt(0), intermediate);
+                    current = intermediate;
+                } else {
+                    current = child;
+                }
+                remainder = remainder.substring(common);
+            }
+        }
+
+        final boolean added = current.values.add(value);
+        if (added) {
+            size++;
+        }
+
+        // All Done.
+        return added;
+    }
+
+    /**
+     * Removes the mapping of the supplied value to the (folded) key, compacting the trie if required.
+     *
+     * @param key   The key, which is folded before use.
+     * @param value The non-null value.
+     * @return {@code true} if the value was mapped to the (folded) key before this call.
+     * @throws IllegalStateException if this PrefixTrie is frozen.
+     */
+    public synchronized boolean remove(final String key, final V value) throws IllegalStateException {
+
+        // Check sanity
+        Validate.notNull(value, "value");
+        validateNotFrozen();
+        final String folded = fold(key);
+        if (folded.isEmpty()) {
+            return false;
+        }
+
+        // Find the node of the exact key, remembering its parent.
+        Node<V> parent = null;
+        Node<V> current = root;
+        String remainder = folded;
+        while (!remainder.isEmpty()) {
+
+            final Node<V> child = current.children.get(remainder.charAt(0));
+            if (child == null || !remainder.startsWith(child.label)) {
+                return false;
+            }
+
+            parent = current;
+            current = child;
+            remainder = remainder.substring(child.label.length());
+        }
+
+        if (!current.values.remove(value)) {
+            return false;
+        }
+        size--;
+
+        // Compact the trie.
+        if (current.values.isEmpty()) {
+            if (current.children.isEmpty()) {
+
+                parent.children.remove(current.label.charAt(0));
+                if (parent != root && parent.values.isEmpty() && parent.children.size() == 1) {
+                    parent.mergeWithOnlyChild();
+                }
+            } else if (current.children.size() == 1) {
+                current.mergeWithOnlyChild();
+            }
+        }
+
+        // All Done.
+        return true;
+    }
+
+    /**
+     * Retrieves the values mapped to keys starting with the (folded) prefix, in the lexicographic order
+     * of their keys.
+     *
+     * @param prefix     The prefix, which is folded before use. A blank prefix matches all keys.
+     * @param maxResults The maximum number of values to retrieve. Non-positive values imply no limit.
+     * @return The values mapped to keys starting with the supplied prefix, holding each value only once.
+     */
+    public List<V> search(final String prefix, final int maxResults) {
+
+        // Frozen PrefixTries are immutable, and can hence be searched without synchronization.
+        if (frozen) {
+            return doSearch(prefix, maxResults);
+        }
+
+        synchronized (this) {
+            return doSearch(prefix, maxResults);
+        }
+    }
+
+    /**
+     * Removes all mappings from this PrefixTrie.
+     *
+     * @throws IllegalStateException if this PrefixTrie is frozen.
+     */
+    public synchronized void clear() throws IllegalStateException {
+
+        // Check sanity
+        validateNotFrozen();
+
+        root.children.clear();
+        root.values.clear();
+        size = 0;
+    }
+
+    /**
+     * Freezes this PrefixTrie, implying that it can no longer be changed. Since a frozen PrefixTrie is
+     * immutable, concurrent searches do not synchronize (and hence never block each other).
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * @return {@code true} if this PrefixTrie is frozen.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return The number of key/value mappings within this PrefixTrie.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of nodes within this PrefixTrie, excluding its root.
+     */
+    public synchronized int getNumberOfNodes() {
+        return countNodes(root) - 1;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void validateNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Cannot change a frozen PrefixTrie.");
+        }
+    }
+
+    private List<V> doSearch(final String prefix, final int maxResults) {
+
+        final Set<V> toReturn = new LinkedHashSet<>();
+        final int limit = maxResults <= 0 ? Integer.MAX_VALUE : maxResults;
+
+        // Find the topmost node whose key starts with the prefix.
+        Node<V> current = root;
+        String remainder = fold(prefix);
+        while (!remainder.isEmpty()) {
+
+            final Node<V> child = current.children.get(remainder.charAt(0));
+            if (child == null) {
+                return new ArrayList<>();
+            }
+
+            if (remainder.length() <= child.label.length()) {
+                if (!child.label.startsWith(remainder)) {
+                    return new ArrayList<>();
+                }
+                remainder = "";
+            } else {
+                if (!remainder.startsWith(child.label)) {
+                    return new ArrayList<>();
+                }
+                remainder = remainder.substring(child.label.length());
+            }
+            current = child;
+        }
+
+        // Collect the values of the node and all its descendants.
+        collect(current, toReturn, limit);
+
+        // All Done.
+        return new ArrayList<>(toReturn);
+    }
+
+    private static <V> void collect(final Node<V> node, final Set<V> result, final int limit) {
+
+        for (V current : node.values) {
+            if (result.size() >= limit) {
+                return;
+            }
+            result.add(current);
+        }
+
+        for (Node<V> current : node.children.values()) {
+            if (result.size() >= limit) {
+                return;
+            }
+            collect(current, result, limit);
+        }
+    }
+
+    private static <V> int countNodes(final Node<V> node) {
+
+        int toReturn = 1;
+        for (Node<V> current : node.children.values()) {
+            toReturn += countNodes(current);
+        }
+        return toReturn;
+    }
+
+    private static int getCommonPrefixLength(final String left, final String right) {
+
+        final int maxLength = Math.min(left.length(), right.length());
+        int toReturn = 0;
+        while (toReturn < maxLength && left.charAt(toReturn) == right.charAt(toReturn)) {
+            toReturn++;
+        }
+        return toReturn;
+    }
+
+    /**
+     * Node within the trie, whose label is the part of the key on the edge leading to it.
+     */
+    private static final class Node<V> {
+
+        // Internal state
+        private String label;
+        private Map<Character, Node<V>> children = new TreeMap<>();
+        private Set<V> values = new LinkedHashSet<>(2);
+
+        private Node(final String label) {
+            this.label = label;
+        }
+
+        private void mergeWithOnlyChild() {
+
+            final Node<V> onlyChild = children.values().iterator().next();
+            label = label + onlyChild.label;
+            children = onlyChild.children;
+            values = onlyChild.values;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.tree;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Transitive closure over a forest of nodes (such as Groups and their parent Groups), holding the ancestors
+ * and descendants of each node. This implies that questions like "is this node within the subtree of that
+ * node" are answered with a single hash lookup instead of walking the parent chain. The price is memory
+ * proportional to the number of nodes times the depth of the forest, which is small for organisational
+ * hierarchies.</p>
+ * <p>Nodes can be added, moved (i.e. re-parented, which moves their entire subtree) and removed incrementally.
+ * Parents need not be added before their children; unknown parents are added as root nodes, and placed
+ * when they are added themselves.</p>
+ *
+ * @param <K> The node (key) type, which must have proper equals and hashCode implementations.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class AncestryClosure<K> {
+
+    // Internal state
+    private final Map<K, K> parents = new HashMap<>();
+    private final Map<K, Set<K>> ancestors = new HashMap<>();
+    private final Map<K, Set<K>> descendants = new HashMap<>();
+
+    /**
+     * Adds the supplied node below the supplied parent, or moves it (and its subtree) there if it was
+     * already added.
+     *
+     * @param node   The non-null node to add or move.
+     * @param parent The parent of the node, or {@code null} to make the node a root node.
+     * @throws IllegalArgumentException if the parent is the node itself or any of its descendants.
+     */
+    public synchronized void put(final K node, final K parent) throws IllegalArgumentException {
+
+        // Check sanity
+        Validate.notNull(node, "node");
+        ensureNode(node);
+        if (parent != null) {
+            ensureNode(parent);
+        }
+
+        if (Objects.equals(parents.get(node), parent)) {
+            return;
+        }
+        final Set<K> subtree = descendants.get(node);
+        if (parent != null && subtree.contains(parent)) {
+            throw new IllegalArgumentException("Cannot place [" + node + "] below itself or its descendant ["
+                    + parent + "].");
+        }
+
+        // Detach the subtree from its former ancestors, and attach it to its new ones.
+        final Set<K> formerAncestors = new HashSet<>(ancestors.get(node));
+        formerAncestors.remove(node);
+        final Set<K> newAncestors = parent == null
+                ? Collections.emptySet()
+                : new HashSet<>(ancestors.get(parent));
+
+        for (K current : subtree) {
+            final Set<K> currentAncestors = ancestors.get(current);
+            currentAncestors.removeAll(formerAncestors);
+            currentAncestors.addAll(newAncestors);
+        }
+        formerAncestors.forEach(current -> descendants.get(current).removeAll(subtree));
+        newAncestors.forEach(current -> descendants.get(current).addAll(subtree));
+
+        if (parent == null) {
+            parents.remove(node);
+        } else {
+            parents.put(node, parent);
+        }
+    }
+
+    /**
+     * Removes the supplied node. The children of the removed node become root nodes, keeping their subtrees.
+     *
+     * @param node The node to remove.
+     * @return {@code true} if the node was removed, and {@code false} if it was not known.
+     */
+    public synchronized boolean remove(final K node) {
+
+        if (node == null || !ancestors.containsKey(node)) {
+            return false;
+        }
+
+        // Detach the children, which leaves the node as a leaf.
+        final List<K> children = new ArrayList<>();
+        descendants.get(node).stream()
+                .filter(current -> node.equals(parents.get(current)))
+                .forEach(children::add);
+        children.forEach(child -> put(child, null));
+
+        ancestors.get(node).stream()
+                .filter(current -> !current.equals(node))
+                .forEach(current -> descendants.get(current).remove(node));
+        ancestors.remove(node);
+        descendants.remove(node);
+        parents.remove(node);
+
+        // All Done.
+        return true;
+    }
+
+    /**
+     * @param node A node.
+     * @return {@code true} if the supplied node is known to this AncestryClosure.
+     */
+    public synchronized boolean contains(final K node) {
+        return node != null && ancestors.containsKey(node);
+    }
+
+    /**
+     * @param node A node.
+     * @return The parent of the supplied node, or {@code null} for root nodes and unknown nodes.
+     */
+    public synchronized K getParent(final K node) {
+        return node == null ? null : parents.get(node);
+    }
+
+    /**
+     * Checks if the supplied node is the supplied root node, or any of its descendants.
+     *
+     * @param node The node to check.
+     * @param root The root of the subtree.
+     * @return {@code true} if both nodes are known, and the node is within the subtree of the root.
+     */
+    public synchronized boolean isWithinSubtree(final K node, final K root) {
+
+        final Set<K> nodeAncestors = node == null ? null : ancestors.get(node);
+        return nodeAncestors != null && nodeAncestors.contains(root);
+    }
+
+    /**
+     * Checks if any of the supplied nodes is the supplied root node, or any of its descendants.
+     *
+     * @param nodes The nodes to check. Null or unknown nodes are ignored.
+     * @param root  The root of the subtree.
+     * @return {@code true} if any of the nodes is within the subtree of the root.
+     */
+    public synchronized boolean isAnyWithinSubtree(final Collection<K> nodes, final K root) {
+
+        final Set<K> subtree = root == null ? null : descendants.get(root);
+        if (subtree == null || nodes == null) {
+            return false;
+        }
+        for (K current : nodes) {
+            if (current != null && subtree.contains(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param node A node.
+     * @return The unmodifiable Set holding the supplied node and all its ancestors.
+     * Empty for unknown nodes.
+     */
+    public synchronized Set<K> getAncestors(final K node) {
+        return copyOf(node == null ? null : ancestors.get(node));
+    }
+
+    /**
+     * @param root The root of a subtree.
+     * @return The unmodifiable Set holding the supplied root node and all its descendants.
+     * Empty for unknown nodes.
+     */
+    public synchronized Set<K> getSubtree(final K root) {
+        return copyOf(root == null ? null : descendants.get(root));
+    }
+
+    /**
+     * @param node A node.
+     * @return The unmodifiable Set holding the children (i.e. not all descendants) of the supplied node.
+     * Empty for leaf nodes and unknown nodes.
+     */
+    public synchronized Set<K> getChildren(final K node) {
+
+        final Set<K> subtree = node == null ? null : descendants.get(node);
+        if (subtree == null) {
+            return Collections.emptySet();
+        }
+
+        final Set<K> toReturn = new HashSet<>();
+        subtree.stream()
+                .filter(current -> node.equals(parents.get(current)))
+                .forEach(toReturn::add);
+        return Collections.unmodifiableSet(toReturn);
+    }
+
+    /**
+     * @return The unmodifiable Set holding all nodes without parent.
+     */
+    public synchronized Set<K> getRoots() {
+
+        final Set<K> toReturn = new HashSet<>(ancestors.keySet());
+        toReturn.removeAll(parents.keySet());
+        return Collections.unmodifiableSet(toReturn);
+    }
+
+    /**
+     * @return The number of nodes within this AncestryClosure.
+     */
+    public synchronized int size() {
+        return ancestors.size();
+    }
+
+    /**
+     * Removes all nodes from this AncestryClosure.
+     */
+    public synchronized void clear() {
+        parents.clear();
+        ancestors.clear();
+        descendants.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "AncestryClosure [" + ancestors.size() + " nodes, " + getRoots().size() + " roots]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void ensureNode(final K node) {
+
+        if (!ancestors.containsKey(node)) {
+
+            final Set<K> self = new HashSet<>();
+            self.add(node);
+            ancestors.put(node, self);
+            descendants.put(node, new HashSet<>(self));
+        }
+    }
+
+    private static <K> Set<K> copyOf(final Set<K> nodes) {
+        return nodes == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(nodes));
+    }
+}
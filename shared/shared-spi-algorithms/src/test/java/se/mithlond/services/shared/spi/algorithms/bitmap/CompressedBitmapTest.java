@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.bitmap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class CompressedBitmapTest {
+
+    @Test
+    public void validateAddingAndRemovingOrdinals() {
+
+        // Assemble
+        final CompressedBitmap unitUnderTest = new CompressedBitmap();
+
+        // Act
+        final boolean addedFirst = unitUnderTest.add(5);
+        final boolean addedDuplicate = unitUnderTest.add(5);
+        unitUnderTest.add(70000);
+        unitUnderTest.add(0);
+        final boolean removedExisting = unitUnderTest.remove(70000);
+        final boolean removedMissing = unitUnderTest.remove(70001);
+
+        // Assert
+        Assert.assertTrue(addedFirst);
+        Assert.assertFalse(addedDuplicate);
+        Assert.assertTrue(removedExisting);
+        Assert.assertFalse(removedMissing);
+        Assert.assertArrayEquals(new int[]{0, 5}, unitUnderTest.toArray());
+        Assert.assertEquals(2, unitUnderTest.getCardinality());
+        Assert.assertTrue(unitUnderTest.contains(5));
+        Assert.assertFalse(unitUnderTest.contains(70000));
+        Assert.assertFalse(unitUnderTest.contains(-1));
+        Assert.assertEquals(CompressedBitmap.of(5, 0), unitUnderTest);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnNegativeOrdinal() {
+
+        // Act & Assert
+        new CompressedBitmap().add(-1);
+    }
+
+    @Test
+    public void validateConvertingBetweenContainers() {
+
+        // Assemble
+        final CompressedBitmap unitUnderTest = new CompressedBitmap();
+        for (int i = 0; i < 2 * CompressedBitmap.ARRAY_CONTAINER_MAX; i += 2) {
+            unitUnderTest.add(i);
+        }
+        final long arraySize = unitUnderTest.getSizeInBytes();
+
+        // Act
+        unitUnderTest.add(1);
+        final long bitmapSize = unitUnderTest.getSizeInBytes();
+        unitUnderTest.remove(1);
+        unitUnderTest.remove(0);
+
+        // Assert
+        Assert.assertTrue(arraySize <= 4 + 2 * CompressedBitmap.ARRAY_CONTAINER_MAX);
+        Assert.assertEquals(4 + 8 * 1024, bitmapSize);
+        Assert.assertEquals(CompressedBitmap.ARRAY_CONTAINER_MAX - 1, unitUnderTest.getCardinality());
+        Assert.assertTrue(unitUnderTest.getSizeInBytes() <= 4 + 2 * CompressedBitmap.ARRAY_CONTAINER_MAX);
+        Assert.assertFalse(unitUnderTest.contains(0));
+        Assert.assertTrue(unitUnderTest.contains(2));
+    }
+
+    @Test
+    public void validateSetOperations() {
+
+        // Assemble
+        final CompressedBitmap admins = CompressedBitmap.of(1, 2, 3, 100000);
+        final CompressedBitmap webmasters = CompressedBitmap.of(3, 4, 200000);
+
+        // Act
+        final CompressedBitmap anyOf = admins.or(webmasters);
+        final CompressedBitmap both = admins.and(webmasters);
+        final CompressedBitmap adminsOnly = admins.andNot(webmasters);
+        final CompressedBitmap union = CompressedBitmap.orAll(Arrays.asList(admins, null, webmasters));
+
+        // Assert
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 4, 100000, 200000}, anyOf.toArray());
+        Assert.assertArrayEquals(new int[]{3}, both.toArray());
+        Assert.assertArrayEquals(new int[]{1, 2, 100000}, adminsOnly.toArray());
+        Assert.assertEquals(anyOf, union);
+        Assert.assertArrayEquals(new int[]{1, 2, 3, 100000}, admins.toArray());
+        Assert.assertTrue(admins.and(new CompressedBitmap()).isEmpty());
+    }
+
+    @Test
+    public void validateConsistencyWithSortedSetForRandomOrdinals() {
+
+        // Assemble
+        final Random random = new Random(42L);
+        final SortedSet<Integer> expectedLeft = new TreeSet<>();
+        final SortedSet<Integer> expectedRight = new TreeSet<>();
+        final CompressedBitmap left = new CompressedBitmap();
+        final CompressedBitmap right = new CompressedBitmap();
+
+        // Dense ordinals within the first chunk, sparse ordinals within the others.
+        for (int i = 0; i < 40000; i++) {
+
+            final int ordinal = random.nextBoolean() ? random.nextInt(20000) : random.nextInt(300000);
+            final boolean toLeft = random.nextBoolean();
+            if (random.nextInt(5) == 0) {
+                Assert.assertEquals(expectedLeft.remove(ordinal), left.remove(ordinal));
+            } else if (toLeft) {
+                Assert.assertEquals(expectedLeft.add(ordinal), left.add(ordinal));
+            } else {
+                Assert.assertEquals(expectedRight.add(ordinal), right.add(ordinal));
+            }
+        }
+
+        final SortedSet<Integer> expectedOr = new TreeSet<>(expectedLeft);
+        expectedOr.addAll(expectedRight);
+        final SortedSet<Integer> expectedAnd = new TreeSet<>(expectedLeft);
+        expectedAnd.retainAll(expectedRight);
+        final SortedSet<Integer> expectedAndNot = new TreeSet<>(expectedLeft);
+        expectedAndNot.removeAll(expectedRight);
+
+        // Act & Assert
+        Assert.assertArrayEquals(toArray(expectedLeft), left.toArray());
+        Assert.assertArrayEquals(toArray(expectedOr), left.or(right).toArray());
+        Assert.assertArrayEquals(toArray(expectedAnd), left.and(right).toArray());
+        Assert.assertArrayEquals(toArray(expectedAndNot), left.andNot(right).toArray());
+        Assert.assertArrayEquals(toArray(expectedAnd), right.and(left).toArray());
+        Assert.assertEquals(left, left.copy());
+        Assert.assertEquals(expectedOr.size(), left.or(right).getCardinality());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static int[] toArray(final SortedSet<Integer> ordinals) {
+        return ordinals.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class FreeBusyCalculatorTest {
+
+    // Shared state
+    private final LocalDateTime from = LocalDateTime.of(2016, Month.OCTOBER, 3, 0, 0);
+    private final LocalDateTime to = from.plusDays(1);
+
+    @Test
+    public void validateMergingBusyIntervalsPerKey() {
+
+        // Assemble
+        final FreeBusyCalculator<Long> unitUnderTest = new FreeBusyCalculator<>(from, to);
+        unitUnderTest.addKeys(Arrays.asList(1L, 2L, 3L));
+
+        // Act
+        unitUnderTest.addBusy(1L, from.minusHours(2), from.plusHours(1));
+        unitUnderTest.addBusy(1L, from.minusHours(1), from.plusHours(2));
+        unitUnderTest.addBusy(1L, from.plusHours(2), from.plusHours(3));
+        unitUnderTest.addBusy(1L, from.plusHours(10), from.plusHours(12));
+        unitUnderTest.addBusy(2L, from.plusHours(11), from.plusHours(13));
+        unitUnderTest.addBusy(2L, to.plusHours(1), to.plusHours(2));
+        final SortedMap<Long, List<TimeInterval>> busy = unitUnderTest.getBusy();
+
+        // Assert
+        Assert.assertEquals(3, busy.size());
+        Assert.assertEquals(Arrays.asList(
+                new TimeInterval(from, from.plusHours(3)),
+                new TimeInterval(from.plusHours(10), from.plusHours(12))), busy.get(1L));
+        Assert.assertEquals(Arrays.asList(
+                new TimeInterval(from.plusHours(11), from.plusHours(13))), busy.get(2L));
+        Assert.assertTrue(busy.get(3L).isEmpty());
+    }
+
+    @Test
+    public void validateCommonFreeSlots() {
+
+        // Assemble
+        final FreeBusyCalculator<Long> unitUnderTest = new FreeBusyCalculator<>(from, to);
+        unitUnderTest.addBusy(1L, from.plusHours(8), from.plusHours(12));
+        unitUnderTest.addBusy(1L, from.plusHours(18), from.plusHours(20));
+        unitUnderTest.addBusy(2L, from.plusHours(11), from.plusHours(14));
+        unitUnderTest.addBusy(3L, from.plusHours(9), from.plusHours(10));
+
+        // Act
+        final List<TimeInterval> free = unitUnderTest.getFree();
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(
+                new TimeInterval(from, from.plusHours(8)),
+                new TimeInterval(from.plusHours(14), from.plusHours(18)),
+                new TimeInterval(from.plusHours(20), to)), free);
+    }
+
+    @Test
+    public void validateNoFreeSlotsWhenBusyThroughout() {
+
+        // Assemble
+        final FreeBusyCalculator<Long> unitUnderTest = new FreeBusyCalculator<>(from, to);
+        unitUnderTest.addBusy(1L, from.minusDays(1), to.plusDays(1));
+
+        // Act & Assert
+        Assert.assertTrue(unitUnderTest.getFree().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnUnsortedKeys() {
+
+        // Assemble
+        final FreeBusyCalculator<Long> unitUnderTest = new FreeBusyCalculator<>(from, to);
+        unitUnderTest.addBusy(2L, from.plusHours(1), from.plusHours(2));
+
+        // Act & Assert
+        unitUnderTest.addBusy(1L, from.plusHours(3), from.plusHours(4));
+    }
+}
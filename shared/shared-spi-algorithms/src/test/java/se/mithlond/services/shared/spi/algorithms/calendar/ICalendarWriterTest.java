@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class ICalendarWriterTest {
+
+    // Shared state
+    private StringWriter out;
+    private ICalendarWriter unitUnderTest;
+
+    @Before
+    public void setupSharedState() {
+        out = new StringWriter();
+        unitUnderTest = new ICalendarWriter(out);
+    }
+
+    @Test
+    public void validateEscapingTextValues() throws Exception {
+
+        // Assemble
+        final String expected = "SUMMARY:Fika\\; med bullar\\, kaffe och \\\\ tårta\\nKl 19\r\n";
+
+        // Act
+        unitUnderTest.text("SUMMARY", "Fika; med bullar, kaffe och \\ tårta\r\nKl 19").flush();
+
+        // Assert
+        Assert.assertEquals(expected, out.toString());
+    }
+
+    @Test
+    public void validateNullValuesAreIgnored() throws Exception {
+
+        // Act
+        unitUnderTest.text("DESCRIPTION", null)
+                .property("LOCATION", null)
+                .dateTime("DTSTART", null, ZoneId.of("UTC"))
+                .date("DTEND", null)
+                .flush();
+
+        // Assert
+        Assert.assertEquals("", out.toString());
+    }
+
+    @Test
+    public void validateDateAndDateTimeFormatting() throws Exception {
+
+        // Assemble
+        final ZoneId stockholm = ZoneId.of("Europe/Stockholm");
+        final LocalDateTime summerTime = LocalDateTime.of(2016, 5, 3, 19, 5, 7);
+
+        // Act
+        unitUnderTest.dateTime("DTSTART", summerTime, stockholm)
+                .date("DTEND", LocalDate.of(2016, 1, 9))
+                .number("SEQUENCE", 42L)
+                .flush();
+
+        // Assert
+        Assert.assertEquals("DTSTART:20160503T170507Z\r\n"
+                + "DTEND;VALUE=DATE:20160109\r\n"
+                + "SEQUENCE:42\r\n", out.toString());
+    }
+
+    @Test
+    public void validateFoldingLongLinesAtOctetBoundaries() throws Exception {
+
+        // Assemble
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append(i % 3 == 0 ? 'å' : 'x');
+        }
+        final String value = builder.toString();
+
+        // Act
+        unitUnderTest.text("DESCRIPTION", value).flush();
+        final String result = out.toString();
+
+        // Assert
+        Assert.assertTrue(result.endsWith("\r\n"));
+        final String[] lines = result.substring(0, result.length() - 2).split("\r\n", -1);
+        Assert.assertTrue(lines.length > 1);
+
+        final StringBuilder unfolded = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+
+            final int octets = lines[i].getBytes(StandardCharsets.UTF_8).length;
+            Assert.assertTrue("Line " + i + " has " + octets + " octets.", octets <= ICalendarWriter.MAX_LINE_OCTETS);
+
+            if (i == 0) {
+                unfolded.append(lines[i]);
+            } else {
+                Assert.assertEquals(' ', lines[i].charAt(0));
+                unfolded.append(lines[i].substring(1));
+            }
+        }
+        Assert.assertEquals("DESCRIPTION:" + value, unfolded.toString());
+    }
+
+    @Test
+    public void validateSurrogatePairsAreNeverSplit() throws Exception {
+
+        // Assemble
+        final String smiley = new String(Character.toChars(0x1F600));
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            builder.append(smiley);
+        }
+
+        // Act
+        unitUnderTest.property("X-EMOJI", builder.toString()).flush();
+
+        // Assert
+        for (String current : out.toString().split("\r\n")) {
+            Assert.assertFalse(Character.isHighSurrogate(current.charAt(current.length() - 1)));
+            Assert.assertFalse(Character.isLowSurrogate(current.charAt(current.charAt(0) == ' ' ? 1 : 0)));
+        }
+    }
+
+    @Test
+    public void validateComponentStructure() throws Exception {
+
+        // Act
+        unitUnderTest.begin(ICalendarWriter.VCALENDAR)
+                .property("VERSION", "2.0")
+                .begin(ICalendarWriter.VEVENT)
+                .property("UID", "1@mithlond")
+                .end(ICalendarWriter.VEVENT)
+                .end(ICalendarWriter.VCALENDAR)
+                .flush();
+
+        // Assert
+        Assert.assertEquals("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nBEGIN:VEVENT\r\nUID:1@mithlond\r\n"
+                + "END:VEVENT\r\nEND:VCALENDAR\r\n", out.toString());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.SortedMap;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class IntervalIndexTest {
+
+    // Shared state
+    private final LocalDateTime t0 = LocalDateTime.of(2016, Month.SEPTEMBER, 7, 18, 0);
+    private final IntervalIndex<String, Long> unitUnderTest = new IntervalIndex<>();
+
+    @Test
+    public void validateFindingOverlappingIntervals() {
+
+        // Assemble
+        unitUnderTest.put("Stora salen", 1L, t0, t0.plusHours(3));
+        unitUnderTest.put("Stora salen", 2L, t0.plusHours(3), t0.plusHours(4));
+        unitUnderTest.put("Stora salen", 3L, t0.minusDays(2), t0.plusDays(1));
+        unitUnderTest.put("Lilla salen", 4L, t0, t0.plusHours(3));
+
+        // Act
+        final SortedMap<Long, LocalDateTime[]> overlapping = unitUnderTest.getOverlapping(
+                "Stora salen", t0.plusHours(2), t0.plusHours(3));
+        final SortedMap<Long, LocalDateTime[]> touching = unitUnderTest.getOverlapping(
+                "Stora salen", t0.plusDays(1), t0.plusDays(2));
+
+        // Assert
+        Assert.assertEquals(2, overlapping.size());
+        Assert.assertTrue(overlapping.containsKey(1L));
+        Assert.assertTrue(overlapping.containsKey(3L));
+        Assert.assertEquals(t0.minusDays(2), overlapping.get(3L)[0]);
+        Assert.assertTrue(touching.isEmpty());
+        Assert.assertEquals(4, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateIncrementalMaintenance() {
+
+        // Assemble
+        unitUnderTest.put("Stora salen", 1L, t0, t0.plusHours(3));
+        unitUnderTest.put("member:42", 1L, t0, t0.plusHours(3));
+        unitUnderTest.put("member:43", 1L, t0, t0.plusHours(3));
+
+        // Act
+        unitUnderTest.put("Stora salen", 1L, t0.plusDays(1), t0.plusDays(1).plusHours(3));
+        final boolean removed = unitUnderTest.remove("member:43", 1L);
+        final SortedMap<Long, LocalDateTime[]> moved = unitUnderTest.getOverlapping(
+                "Stora salen", t0, t0.plusHours(3));
+        final int numRemoved = unitUnderTest.removeAll(1L);
+
+        // Assert
+        Assert.assertTrue(removed);
+        Assert.assertTrue(moved.isEmpty());
+        Assert.assertEquals(2, numRemoved);
+        Assert.assertEquals(0, unitUnderTest.size());
+        Assert.assertTrue(unitUnderTest.getKeys(1L).isEmpty());
+    }
+
+    @Test
+    public void validateOverlapAgainstBruteForce() {
+
+        // Assemble
+        final long[][] intervals = new long[500][];
+        for (int i = 0; i < intervals.length; i++) {
+
+            final long startMinutes = (i * 7919L) % 20000L;
+            final long durationMinutes = 30 + (i * 104729L) % 600L;
+            intervals[i] = new long[]{startMinutes, startMinutes + durationMinutes};
+            unitUnderTest.put("room", (long) i, t0.plusMinutes(startMinutes), t0.plusMinutes(intervals[i][1]));
+        }
+
+        // Act & Assert
+        for (long queryStart = 0; queryStart < 20000L; queryStart += 333L) {
+
+            final long queryEnd = queryStart + 90L;
+            final SortedMap<Long, LocalDateTime[]> result = unitUnderTest.getOverlapping(
+                    "room", t0.plusMinutes(queryStart), t0.plusMinutes(queryEnd));
+
+            for (int i = 0; i < intervals.length; i++) {
+                final boolean expected = intervals[i][0] < queryEnd && intervals[i][1] > queryStart;
+                Assert.assertEquals(expected, result.containsKey((long) i));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnEmptyInterval() {
+        unitUnderTest.put("Stora salen", 1L, t0, t0);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class RecurrenceRuleTest {
+
+    // Shared state
+    private final LocalDateTime firstStart = LocalDateTime.of(2016, Month.SEPTEMBER, 7, 19, 0);
+
+    @Test
+    public void validateWeeklyOccurrencesWithinRange() {
+
+        // Assemble
+        final RecurrenceRule unitUnderTest = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 2, null, null, null);
+
+        // Act
+        final List<LocalDateTime> result = unitUnderTest.getOccurrences(firstStart,
+                LocalDateTime.of(2016, Month.OCTOBER, 1, 0, 0),
+                LocalDateTime.of(2016, Month.OCTOBER, 31, 0, 0));
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(
+                LocalDateTime.of(2016, Month.OCTOBER, 5, 19, 0),
+                LocalDateTime.of(2016, Month.OCTOBER, 19, 19, 0)), result);
+    }
+
+    @Test
+    public void validateCountIncludesExceptionsButUntilIsInclusive() {
+
+        // Assemble
+        final RecurrenceRule counted = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1, null, 3,
+                Arrays.asList(LocalDate.of(2016, Month.SEPTEMBER, 14)));
+        final RecurrenceRule untilBounded = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1,
+                LocalDate.of(2016, Month.SEPTEMBER, 21), null, null);
+        final LocalDateTime rangeEnd = LocalDateTime.of(2017, Month.DECEMBER, 31, 0, 0);
+
+        // Act
+        final List<LocalDateTime> countedResult = counted.getOccurrences(firstStart, firstStart, rangeEnd);
+        final List<LocalDateTime> untilResult = untilBounded.getOccurrences(firstStart, firstStart, rangeEnd);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(firstStart, firstStart.plusWeeks(2)), countedResult);
+        Assert.assertEquals(Arrays.asList(firstStart, firstStart.plusWeeks(1), firstStart.plusWeeks(2)),
+                untilResult);
+        Assert.assertEquals(2, counted.getNumberOfOccurrencesBefore(firstStart, firstStart.plusWeeks(2)));
+        Assert.assertEquals(0, counted.getNumberOfOccurrencesBefore(firstStart, firstStart));
+    }
+
+    @Test
+    public void validateMonthlyOccurrencesSkipNonExistingDates() {
+
+        // Assemble
+        final LocalDateTime endOfMonth = LocalDateTime.of(2016, Month.JANUARY, 31, 18, 0);
+        final RecurrenceRule unitUnderTest = new RecurrenceRule(RecurrenceRule.Frequency.MONTHLY, 1, null, 4, null);
+
+        // Act
+        final List<LocalDateTime> result = unitUnderTest.getOccurrences(endOfMonth, endOfMonth,
+                LocalDateTime.of(2017, Month.DECEMBER, 31, 0, 0));
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(
+                endOfMonth,
+                LocalDateTime.of(2016, Month.MARCH, 31, 18, 0),
+                LocalDateTime.of(2016, Month.MAY, 31, 18, 0),
+                LocalDateTime.of(2016, Month.JULY, 31, 18, 0)), result);
+    }
+
+    @Test
+    public void validateWithUntilDropsCount() {
+
+        // Assemble
+        final RecurrenceRule unitUnderTest = new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1, null, 10, null);
+
+        // Act
+        final RecurrenceRule result = unitUnderTest.withUntil(LocalDate.of(2016, Month.SEPTEMBER, 13));
+
+        // Assert
+        Assert.assertNull(result.getCount());
+        Assert.assertEquals(1, result.getOccurrences(firstStart, firstStart, firstStart.plusYears(1)).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnBothUntilAndCount() {
+        new RecurrenceRule(RecurrenceRule.Frequency.WEEKLY, 1, LocalDate.of(2016, Month.DECEMBER, 1), 3, null);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class TimingWheelTest {
+
+    // Shared state
+    private final LocalDateTime start = LocalDateTime.of(2016, Month.OCTOBER, 3, 12, 0);
+
+    @Test
+    public void validateReleasingDuePayloadsInOrder() {
+
+        // Assemble
+        final TimingWheel<String, String> unitUnderTest = new TimingWheel<>(Duration.ofMinutes(1), 8, start);
+        unitUnderTest.schedule("c", start.plusMinutes(3), "third");
+        unitUnderTest.schedule("a", start.plusMinutes(1), "first");
+        unitUnderTest.schedule("b", start.plusMinutes(2), "second");
+        unitUnderTest.schedule("d", start.plusDays(2), "later");
+
+        // Act
+        final List<String> none = unitUnderTest.advanceTo(start.plusSeconds(59));
+        final List<String> firstTwo = unitUnderTest.advanceTo(start.plusMinutes(2));
+        final List<String> third = unitUnderTest.advanceTo(start.plusMinutes(10));
+
+        // Assert
+        Assert.assertTrue(none.isEmpty());
+        Assert.assertEquals(Arrays.asList("first", "second"), firstTwo);
+        Assert.assertEquals(Collections.singletonList("third"), third);
+        Assert.assertEquals(1, unitUnderTest.size());
+        Assert.assertTrue(unitUnderTest.getNumberOfLevels() > 1);
+        Assert.assertEquals(start.plusMinutes(10), unitUnderTest.getCurrentTime());
+    }
+
+    @Test
+    public void validateNeverReleasingBeforeDueTime() {
+
+        // Assemble
+        final TimingWheel<String, String> unitUnderTest = new TimingWheel<>(Duration.ofMinutes(1), 4, start);
+        unitUnderTest.schedule("a", start.plusMinutes(5).plusSeconds(10), "a");
+
+        // Act
+        final List<String> early = unitUnderTest.advanceTo(start.plusMinutes(5).plusSeconds(9));
+        final List<String> due = unitUnderTest.advanceTo(start.plusMinutes(6));
+
+        // Assert
+        Assert.assertTrue(early.isEmpty());
+        Assert.assertEquals(Collections.singletonList("a"), due);
+    }
+
+    @Test
+    public void validateReschedulingAndCancelling() {
+
+        // Assemble
+        final TimingWheel<String, String> unitUnderTest = new TimingWheel<>(Duration.ofMinutes(1), 8, start);
+        unitUnderTest.schedule("a", start.plusHours(3), "a1");
+        unitUnderTest.schedule("b", start.plusHours(1), "b");
+        unitUnderTest.schedule("c", start.minusHours(1), "overdue");
+
+        // Act
+        unitUnderTest.schedule("a", start.plusMinutes(30), "a2");
+        final String cancelled = unitUnderTest.cancel("b");
+        final String unknown = unitUnderTest.cancel("unknown");
+        final List<String> released = unitUnderTest.advanceTo(start.plusHours(4));
+
+        // Assert
+        Assert.assertEquals("b", cancelled);
+        Assert.assertNull(unknown);
+        Assert.assertEquals(Arrays.asList("overdue", "a2"), released);
+        Assert.assertEquals(0, unitUnderTest.size());
+        Assert.assertFalse(unitUnderTest.contains("a"));
+    }
+
+    @Test
+    public void validateReleasingRandomPayloadsExactlyOnceWhenDue() {
+
+        // Assemble
+        final Random random = new Random(42L);
+        final TimingWheel<Integer, LocalDateTime> unitUnderTest = new TimingWheel<>(Duration.ofMinutes(1), 16,
+                start);
+        final List<LocalDateTime> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+
+            final LocalDateTime due = start.plusSeconds(random.nextInt(60 * 60 * 24 * 30));
+            unitUnderTest.schedule(i, due, due);
+            expected.add(due);
+        }
+        Collections.sort(expected);
+
+        // Act
+        final List<LocalDateTime> released = new ArrayList<>();
+        for (LocalDateTime now = start; !now.isAfter(start.plusDays(31)); now = now.plusMinutes(7)) {
+
+            final List<LocalDateTime> current = unitUnderTest.advanceTo(now);
+            for (LocalDateTime due : current) {
+                Assert.assertFalse(due.isAfter(now));
+                Assert.assertTrue(due.plusMinutes(8).isAfter(now));
+            }
+            released.addAll(current);
+        }
+
+        // Assert
+        Assert.assertEquals(expected, released);
+        Assert.assertEquals(0, unitUnderTest.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnFractionalTick() {
+
+        // Act & Assert
+        new TimingWheel<String, String>(Duration.ofMillis(1500), 8, start);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class UpcomingIndexTest {
+
+    // Shared state
+    private final LocalDateTime now = LocalDateTime.of(2016, Month.OCTOBER, 3, 12, 0);
+
+    @Test
+    public void validateUpcomingItemsAreSortedByStartTime() {
+
+        // Assemble
+        final UpcomingIndex<Long, String> unitUnderTest = new UpcomingIndex<>();
+        unitUnderTest.put(1L, now.plusDays(3), now.plusDays(3).plusHours(2), "third", Arrays.asList(10L, 20L), now);
+        unitUnderTest.put(2L, now.plusDays(1), now.plusDays(1).plusHours(2), "first", Arrays.asList(10L), now);
+        unitUnderTest.put(3L, now.plusDays(2), now.plusDays(2).plusHours(2), "second", Arrays.asList(10L), now);
+        unitUnderTest.put(4L, now.minusDays(2), now.minusDays(1), "ended", Arrays.asList(10L), now);
+
+        // Act
+        final List<String> all = unitUnderTest.getUpcoming(10L, now, 10);
+        final List<String> limited = unitUnderTest.getUpcoming(10L, now, 2);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), all);
+        Assert.assertEquals(Arrays.asList("first", "second"), limited);
+        Assert.assertEquals(Collections.singletonList("third"), unitUnderTest.getUpcoming(20L, now, 10));
+        Assert.assertTrue(unitUnderTest.getUpcoming(30L, now, 10).isEmpty());
+        Assert.assertEquals(3, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateReplacingAndUpdatingKeys() {
+
+        // Assemble
+        final UpcomingIndex<Long, String> unitUnderTest = new UpcomingIndex<>();
+        unitUnderTest.put(1L, now.plusDays(1), now.plusDays(1).plusHours(2), "original", Arrays.asList(10L, 20L), now);
+
+        // Act
+        unitUnderTest.put(1L, now.plusDays(2), now.plusDays(2).plusHours(2), "moved", Arrays.asList(10L), now);
+        final boolean found = unitUnderTest.updateKeys(1L, Arrays.asList(30L), Arrays.asList(10L));
+        final boolean notFound = unitUnderTest.updateKeys(2L, Arrays.asList(30L), Collections.emptyList());
+
+        // Assert
+        Assert.assertTrue(found);
+        Assert.assertFalse(notFound);
+        Assert.assertTrue(unitUnderTest.getUpcoming(10L, now, 10).isEmpty());
+        Assert.assertTrue(unitUnderTest.getUpcoming(20L, now, 10).isEmpty());
+        Assert.assertEquals(Collections.singletonList("moved"), unitUnderTest.getUpcoming(30L, now, 10));
+        Assert.assertEquals(1, unitUnderTest.getNumberOfKeys());
+    }
+
+    @Test
+    public void validatePruningEndedItems() {
+
+        // Assemble
+        final UpcomingIndex<Long, String> unitUnderTest = new UpcomingIndex<>();
+        unitUnderTest.put(1L, now.plusHours(1), now.plusHours(3), "soon", Arrays.asList(10L), now);
+        unitUnderTest.put(2L, now.plusDays(1), now.plusDays(2), "later", Arrays.asList(10L, 20L), now);
+
+        // Act
+        final LocalDateTime later = now.plusHours(4);
+        final List<String> beforePruning = unitUnderTest.getUpcoming(10L, later, 10);
+        final int numPruned = unitUnderTest.prune(later);
+
+        // Assert
+        Assert.assertEquals(Collections.singletonList("later"), beforePruning);
+        Assert.assertEquals(1, numPruned);
+        Assert.assertEquals(1, unitUnderTest.size());
+        Assert.assertEquals(Collections.singletonList("later"), unitUnderTest.getUpcoming(10L, later, 10));
+    }
+
+    @Test
+    public void validateRemovingItems() {
+
+        // Assemble
+        final UpcomingIndex<Long, String> unitUnderTest = new UpcomingIndex<>();
+        unitUnderTest.put(1L, now.plusHours(1), now.plusHours(3), "soon", Arrays.asList(10L, 20L), now);
+
+        // Act
+        final boolean removed = unitUnderTest.remove(1L);
+        final boolean removedAgain = unitUnderTest.remove(1L);
+
+        // Assert
+        Assert.assertTrue(removed);
+        Assert.assertFalse(removedAgain);
+        Assert.assertEquals(0, unitUnderTest.size());
+        Assert.assertEquals(0, unitUnderTest.getNumberOfKeys());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.diff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class SortedMergeDiffTest {
+
+    private static final Function<String, String> KEY = s -> s.substring(0, s.indexOf(':'));
+
+    @Test
+    public void validateCreatedModifiedAndDeleted() {
+
+        // Assemble
+        final List<String> actual = Arrays.asList("c:1", "a:1", "d:1", "b:1");
+        final Set<String> comparison = new HashSet<>(Arrays.asList("e:1", "b:2", "a:1", "c:3"));
+
+        // Act
+        final List<KeyedDiffHolder<String, String, String>> result = SortedMergeDiff.diff(
+                actual, KEY, comparison, KEY, String::equals);
+
+        // Assert
+        Assert.assertEquals("[KeyedDiffHolder [MODIFIED b], KeyedDiffHolder [MODIFIED c], "
+                + "KeyedDiffHolder [DELETED d], KeyedDiffHolder [CREATED e]]", result.toString());
+        Assert.assertEquals("b:1", result.get(0).getActual().orElse(null));
+        Assert.assertEquals("b:2", result.get(0).getComparison().orElse(null));
+        Assert.assertFalse(result.get(2).getComparison().isPresent());
+        Assert.assertFalse(result.get(3).getActual().isPresent());
+        Assert.assertEquals(Arrays.asList("c:1", "a:1", "d:1", "b:1"), actual);
+    }
+
+    @Test
+    public void validateEmptyCollections() {
+
+        // Act
+        final List<KeyedDiffHolder<String, String, String>> none = SortedMergeDiff.diff(
+                Collections.emptyList(), KEY, Collections.emptyList(), KEY, String::equals);
+        final List<KeyedDiffHolder<String, String, String>> allCreated = SortedMergeDiff.diff(
+                Collections.emptyList(), KEY, Arrays.asList("b:1", "a:1"), KEY, String::equals);
+        final List<KeyedDiffHolder<String, String, String>> allDeleted = SortedMergeDiff.diff(
+                Arrays.asList("a:1", "b:1"), KEY, Collections.emptyList(), KEY, String::equals);
+
+        // Assert
+        Assert.assertTrue(none.isEmpty());
+        Assert.assertEquals("[KeyedDiffHolder [CREATED a], KeyedDiffHolder [CREATED b]]", allCreated.toString());
+        Assert.assertEquals("[KeyedDiffHolder [DELETED a], KeyedDiffHolder [DELETED b]]", allDeleted.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnDuplicateKeys() {
+
+        // Act & Assert
+        SortedMergeDiff.diff(Arrays.asList("b:1", "a:1", "b:2"), KEY,
+                Collections.singletonList("a:1"), KEY, String::equals);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnUnsortedInputToSortedMerge() {
+
+        // Act & Assert
+        SortedMergeDiff.mergeSorted(Arrays.asList("b:1", "a:1"), KEY,
+                Collections.singletonList("a:1"), KEY, String::equals);
+    }
+
+    @Test
+    public void validateConsistencyWithMapBasedDiffForRandomCollections() {
+
+        final Random random = new Random(42L);
+        for (int round = 0; round < 500; round++) {
+
+            // Assemble
+            final Map<Integer, Integer> actualMap = randomMap(random);
+            final Map<Integer, Integer> comparisonMap = randomMap(random);
+            final List<int[]> actual = toShuffledPairs(actualMap, random);
+            final List<int[]> comparison = toShuffledPairs(comparisonMap, random);
+
+            final List<String> expected = new ArrayList<>();
+            final Set<Integer> allKeys = new HashSet<>(actualMap.keySet());
+            allKeys.addAll(comparisonMap.keySet());
+            allKeys.stream().sorted().forEach(key -> {
+
+                final Integer actualValue = actualMap.get(key);
+                final Integer comparisonValue = comparisonMap.get(key);
+                if (actualValue == null) {
+                    expected.add("CREATED " + key + "=" + comparisonValue);
+                } else if (comparisonValue == null) {
+                    expected.add("DELETED " + key + "=" + actualValue);
+                } else if (!actualValue.equals(comparisonValue)) {
+                    expected.add("MODIFIED " + key + "=" + actualValue + "->" + comparisonValue);
+                }
+            });
+
+            // Act
+            final List<KeyedDiffHolder<Integer, int[], int[]>> result = SortedMergeDiff.diff(
+                    actual, pair -> pair[0], comparison, pair -> pair[0], (l, r) -> l[1] == r[1]);
+
+            // Assert
+            final List<String> resultDescriptions = new ArrayList<>();
+            for (KeyedDiffHolder<Integer, int[], int[]> current : result) {
+
+                final DiffHolder.Modification modification = current.getModification();
+                final String description;
+                switch (modification) {
+                    case CREATED:
+                        description = current.getComparison().get()[1] + "";
+                        break;
+                    case DELETED:
+                        description = current.getActual().get()[1] + "";
+                        break;
+                    default:
+                        description = current.getActual().get()[1] + "->" + current.getComparison().get()[1];
+                        break;
+                }
+                resultDescriptions.add(modification + " " + current.getKey() + "=" + description);
+            }
+            Assert.assertEquals(expected, resultDescriptions);
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static Map<Integer, Integer> randomMap(final Random random) {
+
+        final Map<Integer, Integer> toReturn = new TreeMap<>();
+        final int size = random.nextInt(20);
+        for (int i = 0; i < size; i++) {
+            toReturn.put(random.nextInt(30), random.nextInt(3));
+        }
+        return toReturn;
+    }
+
+    private static List<int[]> toShuffledPairs(final Map<Integer, Integer> map, final Random random) {
+
+        final List<int[]> toReturn = new ArrayList<>();
+        map.forEach((key, value) -> toReturn.add(new int[]{key, value}));
+
+        // Keep about half of the lists sorted, exercising the O(n) path.
+        if (random.nextBoolean()) {
+            Collections.shuffle(toReturn, random);
+        }
+        return toReturn;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.messages;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.SortedMap;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class CoalescingBufferTest {
+
+    // Shared state
+    private final LocalDateTime t0 = LocalDateTime.of(2016, Month.SEPTEMBER, 7, 19, 0);
+    private final CoalescingBuffer<String> unitUnderTest = new CoalescingBuffer<>(
+            Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+    @Test
+    public void validateBurstIsCoalescedIntoOneBatchPerKey() {
+
+        // Assemble
+        for (int i = 0; i < 100; i++) {
+            unitUnderTest.add("Fjodjim/calendar", i % 10, i, t0.plusNanos(i * 1000L));
+        }
+        unitUnderTest.add("Mifflond/calendar", 42L, 1L, t0);
+
+        // Act
+        final SortedMap<String, SortedMap<Long, Long>> early = unitUnderTest.drainDue(t0.plusSeconds(1));
+        final SortedMap<String, SortedMap<Long, Long>> settled = unitUnderTest.drainDue(t0.plusSeconds(3));
+
+        // Assert
+        Assert.assertTrue(early.isEmpty());
+        Assert.assertEquals(2, settled.size());
+        Assert.assertEquals(10, settled.get("Fjodjim/calendar").size());
+        Assert.assertEquals(Long.valueOf(99L), settled.get("Fjodjim/calendar").get(9L));
+        Assert.assertEquals(101L, unitUnderTest.getNumberOfChangesReceived());
+        Assert.assertEquals(2L, unitUnderTest.getNumberOfBatchesReleased());
+        Assert.assertEquals(99L, unitUnderTest.getNumberOfMessagesSaved());
+        Assert.assertEquals(0, unitUnderTest.getNumberOfPendingKeys());
+    }
+
+    @Test
+    public void validateMaxLatencyBoundsSteadyStream() {
+
+        // Assemble
+        LocalDateTime now = t0;
+        SortedMap<String, SortedMap<Long, Long>> released = null;
+
+        // Act
+        //
+        // A change every second never lets the 2 second debounce window settle,
+        // so only the 10 second max latency can release the batch.
+        for (int i = 0; i <= 10 && (released == null || released.isEmpty()); i++) {
+            unitUnderTest.add("Fjodjim/calendar", i, 1L, now);
+            now = now.plusSeconds(1);
+            released = unitUnderTest.drainDue(now);
+        }
+
+        // Assert
+        Assert.assertNotNull(released);
+        Assert.assertEquals(1, released.size());
+        Assert.assertEquals(10, released.get("Fjodjim/calendar").size());
+    }
+
+    @Test
+    public void validateDrainAllAndRestore() {
+
+        // Assemble
+        unitUnderTest.add("Fjodjim/calendar", 1L, 3L, t0);
+        unitUnderTest.add("Fjodjim/calendar", 1L, 2L, t0);
+
+        // Act
+        final SortedMap<String, SortedMap<Long, Long>> all = unitUnderTest.drainAll();
+        unitUnderTest.restore(all, t0);
+        final SortedMap<String, SortedMap<Long, Long>> restored = unitUnderTest.drainDue(t0);
+
+        // Assert
+        Assert.assertEquals(Long.valueOf(3L), all.get("Fjodjim/calendar").get(1L));
+        Assert.assertEquals(all, restored);
+        Assert.assertEquals(1L, unitUnderTest.getNumberOfBatchesReleased());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validateExceptionOnMaxLatencyShorterThanDebounceWindow() {
+        new CoalescingBuffer<String>(Duration.ofSeconds(5), Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.search;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class BKTreeTest {
+
+    @Test
+    public void validateLevenshteinDistance() {
+
+        // Act & Assert
+        Assert.assertEquals(3, BKTree.getDistance("kitten", "sitting"));
+        Assert.assertEquals(0, BKTree.getDistance("morot", "morot"));
+        Assert.assertEquals(5, BKTree.getDistance("", "morot"));
+        Assert.assertEquals(2, BKTree.getDistance("morot", "motro"));
+        Assert.assertEquals(BKTree.getDistance("apelsin", "äpple"), BKTree.getDistance("äpple", "apelsin"));
+    }
+
+    @Test
+    public void validateSearchingWithinDistance() {
+
+        // Assemble
+        final BKTree<String> unitUnderTest = new BKTree<>();
+        unitUnderTest.put("Äpple", "apple");
+        unitUnderTest.put("Apelsin", "orange");
+        unitUnderTest.put("Morot", "carrot");
+        unitUnderTest.put("Potatis", "potato");
+        unitUnderTest.put("Potatismos", "potato");
+        unitUnderTest.put("Morötter", "carrot");
+
+        // Act
+        final List<String> misspelledApple = unitUnderTest.search("apple", 1, 0);
+        final List<String> misspelledCarrot = unitUnderTest.search("MORTO", 2, 0);
+        final List<String> exactPotato = unitUnderTest.search("potatis", 0, 0);
+        final List<String> tooDistant = unitUnderTest.search("banan", 1, 0);
+        final List<String> limited = unitUnderTest.search("morot", 5, 1);
+
+        // Assert
+        Assert.assertEquals(Collections.singletonList("apple"), misspelledApple);
+        Assert.assertEquals(Collections.singletonList("carrot"), misspelledCarrot);
+        Assert.assertEquals(Collections.singletonList("potato"), exactPotato);
+        Assert.assertTrue(tooDistant.isEmpty());
+        Assert.assertEquals(Collections.singletonList("carrot"), limited);
+        Assert.assertEquals(6, unitUnderTest.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void validateFrozenTreeIsSearchableButImmutable() {
+
+        // Assemble
+        final BKTree<String> unitUnderTest = new BKTree<>();
+        unitUnderTest.put("Morot", "carrot");
+        unitUnderTest.freeze();
+
+        // Act
+        final List<String> misspelledCarrot = unitUnderTest.search("morrot", 1, 0);
+
+        // Assert
+        Assert.assertTrue(unitUnderTest.isFrozen());
+        Assert.assertEquals(Collections.singletonList("carrot"), misspelledCarrot);
+        unitUnderTest.put("Potatis", "potato");
+    }
+
+    @Test
+    public void validateResultsAreSortedByDistance() {
+
+        // Assemble
+        final BKTree<String> unitUnderTest = new BKTree<>();
+        Arrays.asList("ost", "oste", "ostar", "osten", "gröt").forEach(current -> unitUnderTest.put(current, current));
+
+        // Act
+        final List<String> result = unitUnderTest.search("osta", 2, 0);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("ost", "ostar", "oste", "osten"), result);
+        Assert.assertFalse(unitUnderTest.put("OST", "ost"));
+        Assert.assertFalse(unitUnderTest.put("   ", "blank"));
+    }
+}
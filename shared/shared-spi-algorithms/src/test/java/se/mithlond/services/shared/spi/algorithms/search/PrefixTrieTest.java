@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.search;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class PrefixTrieTest {
+
+    @Test
+    public void validateSwedishCaseFolding() {
+
+        // Act & Assert
+        Assert.assertEquals("östen", PrefixTrie.fold(" ÖSTEN "));
+        Assert.assertEquals("åsa", PrefixTrie.fold("Åsa"));
+        Assert.assertEquals("jose", PrefixTrie.fold("José"));
+        Assert.assertEquals("söräna", PrefixTrie.fold("SØRÆNA"));
+        Assert.assertEquals("myller", PrefixTrie.fold("Müller"));
+        Assert.assertEquals("", PrefixTrie.fold(null));
+        Assert.assertEquals("", PrefixTrie.fold("   "));
+    }
+
+    @Test
+    public void validateSearchingByPrefix() {
+
+        // Assemble
+        final PrefixTrie<String> unitUnderTest = new PrefixTrie<>();
+        unitUnderTest.put("Östen", "östen");
+        unitUnderTest.put("Osten", "osten");
+        unitUnderTest.put("Oskar", "oskar");
+        unitUnderTest.put("Os", "os");
+        unitUnderTest.put("José", "jose");
+        unitUnderTest.put("Jösse", "josse");
+
+        // Act
+        final List<String> os = unitUnderTest.search("os", 0);
+        final List<String> oeUpper = unitUnderTest.search("ÖS", 0);
+        final List<String> jos = unitUnderTest.search("JOS", 0);
+        final List<String> limited = unitUnderTest.search("o", 2);
+        final List<String> none = unitUnderTest.search("osq", 0);
+        final List<String> all = unitUnderTest.search("", 0);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("os", "oskar", "osten"), os);
+        Assert.assertEquals(Collections.singletonList("östen"), oeUpper);
+        Assert.assertEquals(Collections.singletonList("jose"), jos);
+        Assert.assertEquals(Arrays.asList("os", "oskar"), limited);
+        Assert.assertTrue(none.isEmpty());
+        Assert.assertEquals(6, all.size());
+        Assert.assertEquals(6, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateSearchingFrozenTrie() {
+
+        // Assemble
+        final PrefixTrie<String> unitUnderTest = new PrefixTrie<>();
+        unitUnderTest.put("Oskar", "oskar");
+        unitUnderTest.put("Osten", "osten");
+
+        // Act
+        unitUnderTest.freeze();
+        final List<String> os = unitUnderTest.search("os", 0);
+
+        // Assert
+        Assert.assertTrue(unitUnderTest.isFrozen());
+        Assert.assertEquals(Arrays.asList("oskar", "osten"), os);
+
+        try {
+            unitUnderTest.put("Os", "os");
+            Assert.fail("Frozen PrefixTries should not accept changes.");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+
+        try {
+            unitUnderTest.remove("Oskar", "oskar");
+            Assert.fail("Frozen PrefixTries should not accept changes.");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        Assert.assertEquals(2, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateDistinctValuesForSeveralKeys() {
+
+        // Assemble
+        final PrefixTrie<Long> unitUnderTest = new PrefixTrie<>();
+        unitUnderTest.put("Bilbo", 1L);
+        unitUnderTest.put("Bilbo", 1L);
+        unitUnderTest.put("Baggins", 1L);
+        unitUnderTest.put("Bilbo", 2L);
+
+        // Act
+        final List<Long> result = unitUnderTest.search("b", 0);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(1L, 2L), result);
+        Assert.assertEquals(3, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateCompactingOnRemove() {
+
+        // Assemble
+        final PrefixTrie<String> unitUnderTest = new PrefixTrie<>();
+        unitUnderTest.put("romer", "romer");
+        unitUnderTest.put("roman", "roman");
+        unitUnderTest.put("romulus", "romulus");
+        final int numNodesBeforeRemove = unitUnderTest.getNumberOfNodes();
+
+        // Act
+        final boolean removedRomulus = unitUnderTest.remove("Romulus", "romulus");
+        final boolean removedUnknown = unitUnderTest.remove("Romulus", "romulus");
+        final boolean removedWrongValue = unitUnderTest.remove("roman", "romer");
+        final boolean removedRomer = unitUnderTest.remove("romer", "romer");
+
+        // Assert
+        Assert.assertEquals(4, numNodesBeforeRemove);
+        Assert.assertTrue(removedRomulus);
+        Assert.assertFalse(removedUnknown);
+        Assert.assertFalse(removedWrongValue);
+        Assert.assertTrue(removedRomer);
+        Assert.assertEquals(1, unitUnderTest.getNumberOfNodes());
+        Assert.assertEquals(Collections.singletonList("roman"), unitUnderTest.search("r", 0));
+        Assert.assertEquals(1, unitUnderTest.size());
+    }
+
+    @Test
+    public void validateConsistencyWithSortedSetForRandomKeys() {
+
+        // Assemble
+        final Random random = new Random(42L);
+        final PrefixTrie<String> unitUnderTest = new PrefixTrie<>();
+        final SortedSet<String> expected = new TreeSet<>();
+        final char[] alphabet = "abcåäö".toCharArray();
+
+        for (int i = 0; i < 3000; i++) {
+
+            final StringBuilder builder = new StringBuilder();
+            final int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            final String key = builder.toString();
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), unitUnderTest.remove(key, key));
+            } else {
+                Assert.assertEquals(expected.add(key), unitUnderTest.put(key, key));
+            }
+        }
+
+        // Act & Assert
+        for (String prefix : Arrays.asList("a", "ab", "å", "äö", "cc", "öäå")) {
+
+            final List<String> expectedMatches = new ArrayList<>();
+            for (String current : expected) {
+                if (current.startsWith(prefix)) {
+                    expectedMatches.add(current);
+                }
+            }
+
+            final List<String> result = unitUnderTest.search(prefix, 0);
+            Collections.sort(result);
+            Assert.assertEquals(expectedMatches, result);
+        }
+        Assert.assertEquals(expected.size(), unitUnderTest.size());
+        Assert.assertTrue(unitUnderTest.getNumberOfNodes() < 2 * expected.size());
+    }
+}
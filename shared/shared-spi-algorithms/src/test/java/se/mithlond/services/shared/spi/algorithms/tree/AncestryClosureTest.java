@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-algorithms
+ * %%
+ * Copyright (C) 2015 - 2017 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.algorithms.tree;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class AncestryClosureTest {
+
+    @Test
+    public void validateBuildingClosureWithChildrenBeforeParents() {
+
+        // Assemble
+        final AncestryClosure<String> unitUnderTest = new AncestryClosure<>();
+
+        // Act
+        unitUnderTest.put("webmasters", "admins");
+        unitUnderTest.put("editors", "webmasters");
+        unitUnderTest.put("admins", "members");
+        unitUnderTest.put("guild", null);
+
+        // Assert
+        Assert.assertEquals(5, unitUnderTest.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("members", "guild")), unitUnderTest.getRoots());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("editors", "webmasters", "admins", "members")),
+                unitUnderTest.getAncestors("editors"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("admins", "webmasters", "editors")),
+                unitUnderTest.getSubtree("admins"));
+
+        Assert.assertTrue(unitUnderTest.isWithinSubtree("editors", "members"));
+        Assert.assertTrue(unitUnderTest.isWithinSubtree("admins", "admins"));
+        Assert.assertFalse(unitUnderTest.isWithinSubtree("admins", "editors"));
+        Assert.assertFalse(unitUnderTest.isWithinSubtree("guild", "members"));
+        Assert.assertFalse(unitUnderTest.isWithinSubtree("unknown", "members"));
+        Assert.assertTrue(unitUnderTest.isAnyWithinSubtree(Arrays.asList("guild", null, "editors"), "admins"));
+        Assert.assertFalse(unitUnderTest.isAnyWithinSubtree(Collections.singletonList("guild"), "admins"));
+        Assert.assertTrue(unitUnderTest.getSubtree("unknown").isEmpty());
+        Assert.assertEquals(Collections.singleton("webmasters"), unitUnderTest.getChildren("admins"));
+        Assert.assertTrue(unitUnderTest.getChildren("editors").isEmpty());
+        Assert.assertTrue(unitUnderTest.getChildren("unknown").isEmpty());
+    }
+
+    @Test
+    public void validateMovingSubtrees() {
+
+        // Assemble
+        final AncestryClosure<String> unitUnderTest = new AncestryClosure<>();
+        unitUnderTest.put("admins", "members");
+        unitUnderTest.put("webmasters", "admins");
+        unitUnderTest.put("editors", "webmasters");
+        unitUnderTest.put("council", "members");
+
+        // Act
+        unitUnderTest.put("webmasters", "council");
+
+        // Assert
+        Assert.assertEquals("council", unitUnderTest.getParent("webmasters"));
+        Assert.assertTrue(unitUnderTest.isWithinSubtree("editors", "council"));
+        Assert.assertFalse(unitUnderTest.isWithinSubtree("editors", "admins"));
+        Assert.assertEquals(Collections.singleton("admins"), unitUnderTest.getSubtree("admins"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("editors", "webmasters", "council", "members")),
+                unitUnderTest.getAncestors("editors"));
+
+        // Act & Assert #2: Moving a node below its own descendant is not permitted.
+        try {
+            unitUnderTest.put("council", "editors");
+            Assert.fail("Cycles should not be permitted.");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        Assert.assertEquals("members", unitUnderTest.getParent("council"));
+    }
+
+    @Test
+    public void validateRemovingNodes() {
+
+        // Assemble
+        final AncestryClosure<String> unitUnderTest = new AncestryClosure<>();
+        unitUnderTest.put("admins", "members");
+        unitUnderTest.put("webmasters", "admins");
+        unitUnderTest.put("editors", "webmasters");
+
+        // Act
+        final boolean removedAdmins = unitUnderTest.remove("admins");
+        final boolean removedUnknown = unitUnderTest.remove("unknown");
+
+        // Assert
+        Assert.assertTrue(removedAdmins);
+        Assert.assertFalse(removedUnknown);
+        Assert.assertEquals(3, unitUnderTest.size());
+        Assert.assertFalse(unitUnderTest.contains("admins"));
+        Assert.assertNull(unitUnderTest.getParent("webmasters"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("members", "webmasters")), unitUnderTest.getRoots());
+        Assert.assertEquals(Collections.singleton("members"), unitUnderTest.getSubtree("members"));
+        Assert.assertTrue(unitUnderTest.isWithinSubtree("editors", "webmasters"));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-jaxb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.jaxb;
+
+import se.jguru.nazgul.core.algorithms.api.Validate;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * <p>Transient hash index over the elements of a JAXB-bound List within a transporter, used to de-duplicate
+ * elements added to the List in O(1) rather than O(n) per element (as {@link List#contains(Object)} would).
+ * By default, elements are keyed by their own equals and hashCode methods, implying that the de-duplication
+ * semantics are identical to the ones of {@link List#contains(Object)}; for {@link AbstractSimpleTransportable}s,
+ * the key is the class name, JPA ID and XML ID. A {@link KeyFunction} can be supplied for Lists whose elements
+ * are considered duplicates by other criteria.</p>
+ * <p>The index is not part of the transported state. It remembers the List instance it was built from, and the
+ * number of List elements indexed. It is rebuilt from the List whenever another List instance is supplied or the
+ * List has shrunk, which is the case after unmarshalling or deserializing the transporter, or after elements were
+ * removed from the List directly. Elements appended to the List directly are indexed incrementally. Hence, null
+ * or duplicate elements within the List never trigger a rebuild. (Replacing List elements directly, without
+ * changing its size, is not detected.)</p>
+ *
+ * @param <T> The type of element within the indexed List.
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class TransportIndex<T> implements Serializable {
+
+    /**
+     * Serializable function extracting the key of an element.
+     *
+     * @param <T> The type of element.
+     */
+    @FunctionalInterface
+    public interface KeyFunction<T> extends Function<T, Object>, Serializable {
+    }
+
+    // Internal state
+    private final KeyFunction<T> keyFunction;
+    private transient Set<Object> index;
+    private transient List<T> indexed;
+    private transient int numIndexed;
+
+    /**
+     * Creates a TransportIndex keying elements by their own equals and hashCode methods.
+     */
+    public TransportIndex() {
+        this(element -> element);
+    }
+
+    /**
+     * Creates a TransportIndex keying elements by the supplied KeyFunction.
+     *
+     * @param keyFunction The non-null KeyFunction extracting the key of each (non-null) element.
+     */
+    public TransportIndex(final KeyFunction<T> keyFunction) {
+
+        // Check sanity
+        Validate.notNull(keyFunction, "keyFunction");
+
+        // Assign internal state
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Adds the supplied element to the target List, unless it is null or already present within it.
+     *
+     * @param target The non-null List to which the element should be added.
+     * @param toAdd  The element to add. Null values are ignored.
+     * @return {@code true} if the element was added to the target List.
+     */
+    public boolean addIfAbsent(final List<T> target, final T toAdd) {
+
+        // Check sanity
+        Validate.notNull(target, "target");
+
+        if (toAdd == null || !synchronizeWith(target).add(keyFunction.apply(toAdd))) {
+            return false;
+        }
+        target.add(toAdd);
+        numIndexed++;
+
+        // All Done.
+        return true;
+    }
+
+    /**
+     * Adds all supplied elements to the target List, except null elements and elements already present within
+     * it, in the iteration order of the supplied Collection.
+     *
+     * @param target The non-null List to which the elements should be added.
+     * @param toAdd  The elements to add. A null Collection is ignored.
+     * @return The number of elements added to the target List.
+     */
+    public int addAllIfAbsent(final List<T> target, final Collection<? extends T> toAdd) {
+
+        // Check sanity
+        Validate.notNull(target, "target");
+        if (toAdd == null || toAdd.isEmpty()) {
+            return 0;
+        }
+
+        final Set<Object> current = synchronizeWith(target);
+        int toReturn = 0;
+        for (T candidate : toAdd) {
+            if (candidate != null && current.add(keyFunction.apply(candidate))) {
+                target.add(candidate);
+                toReturn++;
+            }
+        }
+        numIndexed += toReturn;
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Checks if the supplied element is present within the target List.
+     *
+     * @param target    The non-null List which should be checked.
+     * @param candidate The element to check for.
+     * @return {@code true} if the candidate is present within the target List.
+     */
+    public boolean contains(final List<T> target, final T candidate) {
+
+        // Check sanity
+        Validate.notNull(target, "target");
+
+        // All Done.
+        return candidate != null && synchronizeWith(target).contains(keyFunction.apply(candidate));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Set<Object> synchronizeWith(final List<T> target) {
+
+        if (index == null || indexed != target || numIndexed > target.size()) {
+            index = new HashSet<>();
+            indexed = target;
+            numIndexed = 0;
+        }
+
+        // Index the elements appended to the List since it was last indexed.
+        if (numIndexed < target.size()) {
+            target.subList(numIndexed, target.size())
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .map(keyFunction)
+                    .forEach(index::add);
+            numIndexed = target.size();
+        }
+
+        // All Done.
+        return index;
+    }
+}
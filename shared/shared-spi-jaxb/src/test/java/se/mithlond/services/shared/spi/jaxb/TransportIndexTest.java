@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Nazgul Project: mithlond-services-shared-spi-jaxb
+ * %%
+ * Copyright (C) 2015 - 2016 Mithlond
+ * %%
+ * Licensed under the jGuru Europe AB license (the "License"), based
+ * on Apache License, Version 2.0; you may not use this file except
+ * in compliance with the License.
+ * 
+ * You may obtain a copy of the License at
+ * 
+ *       http://www.jguru.se/licenses/jguruCorporateSourceLicense-2.0.txt
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package se.mithlond.services.shared.spi.jaxb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
+ */
+public class TransportIndexTest {
+
+    @Test
+    public void validateDeduplicatingAddedElements() {
+
+        // Assemble
+        final List<String> target = new ArrayList<>();
+        final TransportIndex<String> unitUnderTest = new TransportIndex<>();
+
+        // Act
+        final boolean addedFirst = unitUnderTest.addIfAbsent(target, "first");
+        final boolean addedDuplicate = unitUnderTest.addIfAbsent(target, "first");
+        final boolean addedNull = unitUnderTest.addIfAbsent(target, null);
+        final int numAdded = unitUnderTest.addAllIfAbsent(target, Arrays.asList("second", "first", null, "second"));
+
+        // Assert
+        Assert.assertTrue(addedFirst);
+        Assert.assertFalse(addedDuplicate);
+        Assert.assertFalse(addedNull);
+        Assert.assertEquals(1, numAdded);
+        Assert.assertEquals(Arrays.asList("first", "second"), target);
+    }
+
+    @Test
+    public void validateRebuildingIndexWhenListIsChangedDirectly() {
+
+        // Assemble
+        final List<String> target = new ArrayList<>();
+        final TransportIndex<String> unitUnderTest = new TransportIndex<>();
+        unitUnderTest.addIfAbsent(target, "first");
+
+        // Act
+        target.add("unmarshalled");
+        final boolean containsUnmarshalled = unitUnderTest.contains(target, "unmarshalled");
+        final boolean addedUnmarshalled = unitUnderTest.addIfAbsent(target, "unmarshalled");
+        target.remove("first");
+        final boolean addedFirstAgain = unitUnderTest.addIfAbsent(target, "first");
+
+        // Assert
+        Assert.assertTrue(containsUnmarshalled);
+        Assert.assertFalse(addedUnmarshalled);
+        Assert.assertTrue(addedFirstAgain);
+        Assert.assertEquals(Arrays.asList("unmarshalled", "first"), target);
+    }
+
+    @Test
+    public void validateNullAndDuplicateElementsNeverTriggerRebuilds() {
+
+        // Assemble
+        final List<String> target = new ArrayList<>(Arrays.asList("first", "first", null));
+        final AtomicInteger numKeysExtracted = new AtomicInteger();
+        final TransportIndex<String> unitUnderTest = new TransportIndex<>(element -> {
+            numKeysExtracted.incrementAndGet();
+            return element;
+        });
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            unitUnderTest.addIfAbsent(target, "element_" + i);
+        }
+        target.add("appended");
+        final boolean containsAppended = unitUnderTest.contains(target, "appended");
+
+        // Assert
+        Assert.assertTrue(containsAppended);
+        Assert.assertEquals(104, target.size());
+        Assert.assertEquals(2 + 100 + 2, numKeysExtracted.get());
+    }
+
+    @Test
+    public void validateRebuildingIndexForAnotherList() {
+
+        // Assemble
+        final TransportIndex<String> unitUnderTest = new TransportIndex<>();
+        unitUnderTest.addIfAbsent(new ArrayList<>(), "first");
+        final List<String> unmarshalled = new ArrayList<>(Arrays.asList("second"));
+
+        // Act
+        final boolean addedFirst = unitUnderTest.addIfAbsent(unmarshalled, "first");
+        final boolean addedSecond = unitUnderTest.addIfAbsent(unmarshalled, "second");
+
+        // Assert
+        Assert.assertTrue(addedFirst);
+        Assert.assertFalse(addedSecond);
+        Assert.assertEquals(Arrays.asList("second", "first"), unmarshalled);
+    }
+
+    @Test
+    public void validateDeduplicatingByKeyFunction() {
+
+        // Assemble
+        final List<String> target = new ArrayList<>();
+        final TransportIndex<String> unitUnderTest = new TransportIndex<>(element -> element.toLowerCase());
+
+        // Act
+        final int numAdded = unitUnderTest.addAllIfAbsent(target, Arrays.asList("Pasta", "PASTA", "Pizza"));
+
+        // Assert
+        Assert.assertEquals(2, numAdded);
+        Assert.assertEquals(Arrays.asList("Pasta", "Pizza"), target);
+        Assert.assertTrue(unitUnderTest.contains(target, "pizza"));
+    }
+}